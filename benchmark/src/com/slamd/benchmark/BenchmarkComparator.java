@@ -0,0 +1,420 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.benchmark;
+
+
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.unboundid.util.json.JSONNumber;
+import com.unboundid.util.json.JSONObject;
+import com.unboundid.util.json.JSONValue;
+
+
+
+/**
+ * This program compares a set of JMH benchmark results against a baseline and
+ * reports any benchmark whose score or allocation rate has become worse by
+ * more than a given percentage.  Both sets of results must have been written
+ * by JMH in JSON format.  For throughput benchmarks a lower score is worse,
+ * and for all other modes a higher score is worse.  Allocation is taken from
+ * the normalized allocation rate reported by the GC profiler, and is only
+ * compared if both sets of results include it.
+ * <BR><BR>
+ * The program exits with a status of 1 if any regressions are found or the
+ * baseline file does not exist, or 0 otherwise.  A missing baseline is treated
+ * as a failure so that a regression check can't silently be skipped.
+ */
+public final class BenchmarkComparator
+{
+  /**
+   * The default percentage by which a result may become worse before it is
+   * considered a regression.
+   */
+  public static final double DEFAULT_THRESHOLD_PERCENT = 10.0D;
+
+
+
+  /**
+   * The suffix of the name of the GC profiler metric that holds the number of
+   * bytes allocated per operation.  Older versions of JMH prefix the name with
+   * a middle dot.
+   */
+  public static final String ALLOCATION_METRIC_SUFFIX = "gc.alloc.rate.norm";
+
+
+
+  /**
+   * The minimum increase in bytes allocated per operation that will be
+   * considered a regression, so that measurement noise in benchmarks that
+   * allocate very little is not reported.
+   */
+  public static final double MIN_ALLOCATION_INCREASE = 16.0D;
+
+
+
+  /**
+   * The JMH mode name for throughput benchmarks.
+   */
+  private static final String MODE_THROUGHPUT = "thrpt";
+
+
+
+  /**
+   * Prevent this utility class from being instantiated.
+   */
+  private BenchmarkComparator()
+  {
+    // No implementation required.
+  }
+
+
+
+  /**
+   * Parses the command-line arguments and performs the comparison.
+   *
+   * @param  args  The command-line arguments provided to this program.
+   *
+   * @throws  Exception  If a problem occurs while reading the results or
+   *                     writing the report.
+   */
+  public static void main(String[] args)
+         throws Exception
+  {
+    String baselineFile = null;
+    String currentFile  = null;
+    String reportFile   = null;
+    double threshold    = DEFAULT_THRESHOLD_PERCENT;
+
+
+    // Parse the command-line arguments provided to the program.
+    for (int i=0; i < args.length; i++)
+    {
+      if (args[i].equals("-b"))
+      {
+        baselineFile = args[++i];
+      }
+      else if (args[i].equals("-c"))
+      {
+        currentFile = args[++i];
+      }
+      else if (args[i].equals("-o"))
+      {
+        reportFile = args[++i];
+      }
+      else if (args[i].equals("-t"))
+      {
+        threshold = Double.parseDouble(args[++i]);
+      }
+      else if (args[i].equals("-H"))
+      {
+        displayUsage();
+        System.exit(0);
+      }
+      else
+      {
+        System.err.println("ERROR:  Unrecognized argument \"" + args[i] +
+                           '"');
+        displayUsage();
+        System.exit(1);
+      }
+    }
+
+
+    // Validate the parameters provided.
+    if (baselineFile == null)
+    {
+      System.err.println("ERROR:  No baseline results file provided (use -b)");
+      displayUsage();
+      System.exit(1);
+    }
+
+    if (currentFile == null)
+    {
+      System.err.println("ERROR:  No current results file provided (use -c)");
+      displayUsage();
+      System.exit(1);
+    }
+
+    if (! new File(baselineFile).exists())
+    {
+      System.err.println("ERROR:  No baseline results were found in " +
+                         baselineFile + ".  Record the results of a run on " +
+                         "the reference system as the baseline before " +
+                         "comparing against it.");
+      System.exit(1);
+    }
+
+
+    Map<String,JSONObject> baseline = readResults(new File(baselineFile));
+    Map<String,JSONObject> current  = readResults(new File(currentFile));
+
+    List<String> report = new ArrayList<String>();
+    int regressions = compare(baseline, current, threshold, report);
+    report.add("");
+    report.add(regressions + " regression(s) found using a threshold of " +
+               threshold + "%");
+
+    for (String line : report)
+    {
+      System.out.println(line);
+    }
+
+    if (reportFile != null)
+    {
+      PrintWriter writer = new PrintWriter(reportFile, "UTF-8");
+      try
+      {
+        for (String line : report)
+        {
+          writer.println(line);
+        }
+      }
+      finally
+      {
+        writer.close();
+      }
+    }
+
+    if (regressions > 0)
+    {
+      System.exit(1);
+    }
+  }
+
+
+
+  /**
+   * Compares the current results against the baseline and adds a line to the
+   * report for each benchmark.
+   *
+   * @param  baseline   The baseline results, mapped from benchmark key.
+   * @param  current    The current results, mapped from benchmark key.
+   * @param  threshold  The percentage by which a result may become worse
+   *                    before it is considered a regression.
+   * @param  report     The list to which the lines of the report will be
+   *                    added.
+   *
+   * @return  The number of regressions found.
+   */
+  static int compare(Map<String,JSONObject> baseline,
+                     Map<String,JSONObject> current, double threshold,
+                     List<String> report)
+  {
+    report.add(String.format("%-8s  %-60s  %14s  %14s  %9s  %9s", "Status",
+                             "Benchmark", "Baseline", "Current", "Change",
+                             "Alloc"));
+
+    int regressions = 0;
+    for (Map.Entry<String,JSONObject> e : current.entrySet())
+    {
+      String     key            = e.getKey();
+      JSONObject currentResult  = e.getValue();
+      JSONObject baselineResult = baseline.get(key);
+      double     currentScore   = getScore(currentResult);
+      if (baselineResult == null)
+      {
+        report.add(String.format("%-8s  %-60s  %14s  %14.3f  %9s  %9s", "NEW",
+                                 key, "-", currentScore, "-", "-"));
+        continue;
+      }
+
+      double baselineScore = getScore(baselineResult);
+      double change = percentChange(baselineScore, currentScore);
+      boolean regressed;
+      if (MODE_THROUGHPUT.equals(currentResult.getFieldAsString("mode")))
+      {
+        regressed = (-change > threshold);
+      }
+      else
+      {
+        regressed = (change > threshold);
+      }
+
+      String allocString = "-";
+      double baselineAlloc = getAllocation(baselineResult);
+      double currentAlloc  = getAllocation(currentResult);
+      if (! (Double.isNaN(baselineAlloc) || Double.isNaN(currentAlloc)))
+      {
+        double allocChange = percentChange(baselineAlloc, currentAlloc);
+        allocString = String.format("%+.1f%%", allocChange);
+        if (((currentAlloc - baselineAlloc) >= MIN_ALLOCATION_INCREASE) &&
+            ((baselineAlloc <= 0.0D) || (allocChange > threshold)))
+        {
+          regressed = true;
+        }
+      }
+
+      if (regressed)
+      {
+        regressions++;
+      }
+
+      report.add(String.format("%-8s  %-60s  %14.3f  %14.3f  %+8.1f%%  %9s",
+                               (regressed ? "REGRESS" : "OK"), key,
+                               baselineScore, currentScore, change,
+                               allocString));
+    }
+
+    for (String key : baseline.keySet())
+    {
+      if (! current.containsKey(key))
+      {
+        report.add(String.format("%-8s  %s", "MISSING", key));
+      }
+    }
+
+    return regressions;
+  }
+
+
+
+  /**
+   * Reads a set of JMH results from the provided JSON file.
+   *
+   * @param  file  The file containing the results.
+   *
+   * @return  The results read from the file, mapped from a key made up of the
+   *          benchmark name and any parameter values.
+   *
+   * @throws  Exception  If the file cannot be read or parsed.
+   */
+  static Map<String,JSONObject> readResults(File file)
+         throws Exception
+  {
+    String text = new String(Files.readAllBytes(file.toPath()),
+                             StandardCharsets.UTF_8);
+    JSONObject wrapper = new JSONObject("{\"results\":" + text + '}');
+
+    LinkedHashMap<String,JSONObject> results =
+         new LinkedHashMap<String,JSONObject>();
+    for (JSONValue v : wrapper.getFieldAsArray("results"))
+    {
+      JSONObject result = (JSONObject) v;
+      StringBuilder key = new StringBuilder();
+      key.append(result.getFieldAsString("benchmark"));
+
+      JSONObject params = result.getFieldAsObject("params");
+      if (params != null)
+      {
+        for (String name : params.getFields().keySet())
+        {
+          key.append(' ');
+          key.append(name);
+          key.append('=');
+          key.append(params.getFieldAsString(name));
+        }
+      }
+
+      results.put(key.toString(), result);
+    }
+
+    return results;
+  }
+
+
+
+  /**
+   * Retrieves the primary score from the provided result.
+   *
+   * @param  result  The result from which to retrieve the score.
+   *
+   * @return  The primary score from the provided result.
+   */
+  private static double getScore(JSONObject result)
+  {
+    BigDecimal score =
+         result.getFieldAsObject("primaryMetric").getFieldAsBigDecimal("score");
+    return score.doubleValue();
+  }
+
+
+
+  /**
+   * Retrieves the number of bytes allocated per operation from the provided
+   * result.
+   *
+   * @param  result  The result from which to retrieve the allocation rate.
+   *
+   * @return  The number of bytes allocated per operation, or
+   *          {@code Double.NaN} if the result does not include it.
+   */
+  private static double getAllocation(JSONObject result)
+  {
+    JSONObject secondary = result.getFieldAsObject("secondaryMetrics");
+    if (secondary == null)
+    {
+      return Double.NaN;
+    }
+
+    for (Map.Entry<String,JSONValue> e : secondary.getFields().entrySet())
+    {
+      if (e.getKey().endsWith(ALLOCATION_METRIC_SUFFIX) &&
+          (e.getValue() instanceof JSONObject))
+      {
+        JSONValue score = ((JSONObject) e.getValue()).getField("score");
+        if (score instanceof JSONNumber)
+        {
+          return ((JSONNumber) score).getValue().doubleValue();
+        }
+      }
+    }
+
+    return Double.NaN;
+  }
+
+
+
+  /**
+   * Computes the percentage by which the current value differs from the
+   * baseline value.
+   *
+   * @param  baseline  The baseline value.
+   * @param  current   The current value.
+   *
+   * @return  The percentage change from the baseline value to the current
+   *          value, or zero if both are zero.
+   */
+  private static double percentChange(double baseline, double current)
+  {
+    if (baseline == 0.0D)
+    {
+      return ((current == 0.0D) ? 0.0D : 100.0D);
+    }
+
+    return (100.0D * (current - baseline) / baseline);
+  }
+
+
+
+  /**
+   * Displays usage information for this program.
+   */
+  public static void displayUsage()
+  {
+    System.out.println("USAGE:  java BenchmarkComparator -b {baselineFile} " +
+                       "-c {currentFile} [-t {thresholdPercent}] " +
+                       "[-o {reportFile}]");
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.benchmark;
+
+
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.unboundid.ldap.sdk.Entry;
+
+import com.slamd.jobs.ldap.TemplateBasedEntryGenerator;
+
+
+
+/**
+ * This class provides a JMH benchmark for generating entries from a template,
+ * as is done by the LDAP add jobs for every entry that they add.  The template
+ * is the same as the default template used by those jobs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntryGeneratorBenchmark
+{
+  /**
+   * The template lines that will be used to generate entries.
+   */
+  private static final String[] TEMPLATE_LINES =
+  {
+    "objectClass: top",
+    "objectClass: person",
+    "objectClass: organizationalPerson",
+    "objectClass: inetOrgPerson",
+    "uid: <entryNumber>",
+    "givenName: <random:alpha:8>",
+    "sn: <random:alpha:10>",
+    "cn: {givenName} {sn}",
+    "initials: {givenName:1}<random:alpha:1>{sn:1}",
+    "employeeNumber: {uid}",
+    "mail: {uid}@example.com",
+    "userPassword: password",
+    "telephoneNumber: <random:telephone>",
+    "homePhone: <random:telephone>",
+    "pager: <random:telephone>",
+    "mobile: <random:telephone>",
+    "street: <random:numeric:5> <random:alpha:10> Street",
+    "l: <random:alpha:10>",
+    "st: <random:alpha:2>",
+    "postalCode: <random:numeric:5>",
+    "postalAddress: {cn}${street}${l}, {st}  {postalCode}",
+    "description:  This is the description for {cn}",
+  };
+
+
+
+  // The entry number for the next entry to generate.
+  private int entryNumber;
+
+  // The random number generator used to generate entries.
+  private Random random;
+
+  // The entry generator being measured.
+  private TemplateBasedEntryGenerator generator;
+
+
+
+  /**
+   * Creates the entry generator.
+   *
+   * @throws  Exception  If the template cannot be parsed.
+   */
+  @Setup()
+  public void setUp()
+         throws Exception
+  {
+    generator   = new TemplateBasedEntryGenerator(TEMPLATE_LINES, 1);
+    random      = new Random(0L);
+    entryNumber = 1;
+  }
+
+
+
+  /**
+   * Measures the cost of generating a single entry.
+   *
+   * @return  The generated entry.
+   *
+   * @throws  Exception  If the entry cannot be generated.
+   */
+  @Benchmark()
+  public Entry createEntry()
+         throws Exception
+  {
+    int n = entryNumber++;
+    return generator.createEntry(random, n,
+                                 "uid=" + n + ",ou=People,dc=example,dc=com");
+  }
+}
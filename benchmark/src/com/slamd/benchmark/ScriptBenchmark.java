@@ -0,0 +1,113 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.benchmark;
+
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.slamd.scripting.ScriptedJobClass;
+import com.slamd.scripting.engine.ScriptParser;
+
+
+
+/**
+ * This class provides a JMH benchmark for the interpretation overhead of the
+ * SLAMD scripting language.  The script performs only simple integer and
+ * string operations, so the time measured is almost entirely spent in the
+ * script engine rather than in the work that the script asks it to do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptBenchmark
+{
+  /**
+   * The script that will be executed.  Each execution performs 100 iterations
+   * of the loop.
+   */
+  private static final String[] SCRIPT_LINES =
+  {
+    "variable int     counter;",
+    "variable int     length;",
+    "variable string  text;",
+    "",
+    "loop 100",
+    "begin",
+    "  counter = counter.add(1);",
+    "  text = \"entry-\";",
+    "  text = text.append(counter.toString());",
+    "  length = text.length();",
+    "end;"
+  };
+
+
+
+  // The job thread with which the script will be executed.
+  private ScriptedJobClass jobThread;
+
+  // The parser containing the script to be executed.
+  private ScriptParser parser;
+
+
+
+  /**
+   * Parses the script to be executed.
+   *
+   * @throws  Exception  If the script cannot be parsed.
+   */
+  @Setup()
+  public void setUp()
+         throws Exception
+  {
+    parser = new ScriptParser();
+    parser.setScriptLines(SCRIPT_LINES);
+    parser.parse();
+
+    jobThread = new ScriptedJobClass();
+  }
+
+
+
+  /**
+   * Measures the cost of executing the script.
+   *
+   * @return  The parser used to execute the script.
+   *
+   * @throws  Exception  If a problem occurs while executing the script.
+   */
+  @Benchmark()
+  public ScriptParser execute()
+         throws Exception
+  {
+    parser.execute(jobThread);
+    return parser;
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.benchmark;
+
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.unboundid.asn1.ASN1Element;
+import com.unboundid.asn1.ASN1Sequence;
+
+import com.slamd.message.Message;
+import com.slamd.message.ReportStatisticMessage;
+import com.slamd.stat.StatEncoder;
+import com.slamd.stat.StatTracker;
+import com.slamd.stat.TimeTracker;
+
+
+
+/**
+ * This class provides JMH benchmarks for encoding the statistics that a client
+ * reports to the server, both when converting stat trackers to ASN.1 and when
+ * encoding and decoding the messages that carry them.  Each benchmark is run
+ * with the original ASN.1 encoding, the compact encoding, and the compact
+ * encoding with compression, so that the encodings can be compared.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatEncodingBenchmark
+{
+  // The number of stat trackers to encode.
+  @Param({ "1", "16" })
+  public int numTrackers;
+
+  // The number of collection intervals of data in each tracker.
+  @Param({ "60", "86400" })
+  public int numIntervals;
+
+  // The encoding to use for the tracker data.
+  @Param({ "asn1", "compact", "compact-deflate" })
+  public String encoding;
+
+
+
+  // The original settings for the stat encoder.
+  private boolean origCompact;
+  private boolean origCompress;
+
+  // The encoded form of the report statistic message.
+  private ASN1Element encodedMessage;
+
+  // The encoded form of the stat trackers.
+  private ASN1Sequence encodedTrackers;
+
+  // The report statistic message to be encoded.
+  private ReportStatisticMessage message;
+
+  // The stat trackers to be encoded.
+  private StatTracker[] trackers;
+
+
+
+  /**
+   * Creates the stat trackers and messages to be encoded and decoded.
+   */
+  @Setup()
+  public void setUp()
+  {
+    origCompact  = StatEncoder.useCompactEncoding();
+    origCompress = StatEncoder.compressEncodedData();
+    StatEncoder.setUseCompactEncoding(! encoding.equals("asn1"));
+    StatEncoder.setCompressEncodedData(encoding.equals("compact-deflate"));
+
+    trackers = new StatTracker[numTrackers];
+    for (int i=0; i < numTrackers; i++)
+    {
+      int[] counts    = new int[numIntervals];
+      int[] durations = new int[numIntervals];
+      for (int j=0; j < numIntervals; j++)
+      {
+        counts[j]    = 1000 + j;
+        durations[j] = 5000 + (7 * j);
+      }
+
+      TimeTracker tracker = new TimeTracker("benchmark", String.valueOf(i),
+                                            "Operation Time", 10);
+      tracker.setIntervalData(durations, counts);
+      trackers[i] = tracker;
+    }
+
+    ASN1Sequence[] sequences = new ASN1Sequence[numTrackers];
+    for (int i=0; i < numTrackers; i++)
+    {
+      sequences[i] = StatEncoder.trackerToSequence(trackers[i]);
+    }
+
+    message         = new ReportStatisticMessage(1, "benchmark", sequences);
+    encodedMessage  = message.encode();
+    encodedTrackers = StatEncoder.trackersToSequence(trackers);
+  }
+
+
+
+  /**
+   * Restores the original settings for the stat encoder.
+   */
+  @TearDown()
+  public void tearDown()
+  {
+    StatEncoder.setUseCompactEncoding(origCompact);
+    StatEncoder.setCompressEncodedData(origCompress);
+  }
+
+
+
+  /**
+   * Measures the cost of encoding a set of stat trackers.
+   *
+   * @return  The encoded stat trackers.
+   */
+  @Benchmark()
+  public ASN1Sequence trackersToSequence()
+  {
+    return StatEncoder.trackersToSequence(trackers);
+  }
+
+
+
+  /**
+   * Measures the cost of decoding a set of stat trackers.
+   *
+   * @return  The decoded stat trackers.
+   *
+   * @throws  Exception  If the stat trackers cannot be decoded.
+   */
+  @Benchmark()
+  public StatTracker[] sequenceToTrackers()
+         throws Exception
+  {
+    return StatEncoder.sequenceToTrackers(encodedTrackers);
+  }
+
+
+
+  /**
+   * Measures the cost of encoding a report statistic message.
+   *
+   * @return  The encoded message.
+   */
+  @Benchmark()
+  public byte[] encodeMessage()
+  {
+    return message.encode().encode();
+  }
+
+
+
+  /**
+   * Measures the cost of decoding a report statistic message.
+   *
+   * @return  The decoded message.
+   *
+   * @throws  Exception  If the message cannot be decoded.
+   */
+  @Benchmark()
+  public Message decodeMessage()
+         throws Exception
+  {
+    return Message.decode(ASN1Element.decode(encodedMessage.encode()));
+  }
+}
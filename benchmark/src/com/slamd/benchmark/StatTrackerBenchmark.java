@@ -0,0 +1,135 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.benchmark;
+
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.slamd.stat.CategoricalTracker;
+import com.slamd.stat.TimeTracker;
+
+
+
+/**
+ * This class provides JMH benchmarks for the stat tracker methods that job
+ * threads invoke for every operation that they perform, so that any overhead
+ * they add to the load generated by a client can be measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatTrackerBenchmark
+{
+  /**
+   * The categories that will be used for the categorical tracker.
+   */
+  private static final String[] CATEGORIES =
+  {
+    "Success",
+    "No Such Object",
+    "Busy",
+    "Unavailable",
+    "Other"
+  };
+
+
+
+  // The categorical tracker being measured.
+  private CategoricalTracker categoricalTracker;
+
+  // The position in the category list of the next category to use.
+  private int categoryPos;
+
+  // The time tracker being measured.
+  private TimeTracker timeTracker;
+
+
+
+  /**
+   * Creates and starts the stat trackers to be measured.
+   */
+  @Setup()
+  public void setUp()
+  {
+    timeTracker = new TimeTracker("benchmark", "0", "Operation Time", 10);
+    timeTracker.startTracker();
+
+    categoricalTracker = new CategoricalTracker("benchmark", "0",
+                                                "Result Codes", 10);
+    categoricalTracker.startTracker();
+
+    categoryPos = 0;
+  }
+
+
+
+  /**
+   * Stops the stat trackers.
+   */
+  @TearDown()
+  public void tearDown()
+  {
+    timeTracker.stopTracker();
+    categoricalTracker.stopTracker();
+  }
+
+
+
+  /**
+   * Measures the cost of timing a single operation.
+   *
+   * @return  The duration recorded for the operation, so that the call cannot
+   *          be eliminated.
+   */
+  @Benchmark()
+  public int timeTrackerStartStop()
+  {
+    timeTracker.startTimer();
+    timeTracker.stopTimer();
+    return timeTracker.getLastOperationTime();
+  }
+
+
+
+  /**
+   * Measures the cost of counting an occurrence of a category.
+   *
+   * @return  The categorical tracker, so that the call cannot be eliminated.
+   */
+  @Benchmark()
+  public CategoricalTracker categoricalTrackerIncrement()
+  {
+    categoricalTracker.increment(CATEGORIES[categoryPos]);
+    categoryPos = (categoryPos + 1) % CATEGORIES.length;
+    return categoricalTracker;
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.http;
+
+
+
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * This class provides a JMH benchmark for parsing HTTP responses.  It is in
+ * the same package as the HTTP client so that it can invoke the method that
+ * reads a response directly with an in-memory stream, which keeps network
+ * latency out of the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HTTPClientBenchmark
+{
+  // The size in bytes of the response body.
+  @Param({ "1024", "65536" })
+  public int bodySize;
+
+
+
+  // The complete response as it would be read from the server.
+  private byte[] responseBytes;
+
+  // The HTTP client used to read the response.
+  private HTTPClient client;
+
+  // The URL of the request that triggered the response.
+  private URL requestURL;
+
+
+
+  /**
+   * Creates the HTTP client and the response to be parsed.
+   *
+   * @throws  Exception  If a problem occurs during setup.
+   */
+  @Setup()
+  public void setUp()
+         throws Exception
+  {
+    client     = new HTTPClient();
+    requestURL = new URL("http://www.example.com/index.html");
+
+    byte[] body = new byte[bodySize];
+    Arrays.fill(body, (byte) 'x');
+
+    String header = "HTTP/1.1 200 OK\r\n" +
+                    "Date: Mon, 01 Jan 2024 00:00:00 GMT\r\n" +
+                    "Server: Benchmark\r\n" +
+                    "Content-Type: text/html\r\n" +
+                    "Content-Length: " + bodySize + "\r\n" +
+                    "\r\n";
+    byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
+
+    responseBytes = new byte[headerBytes.length + body.length];
+    System.arraycopy(headerBytes, 0, responseBytes, 0, headerBytes.length);
+    System.arraycopy(body, 0, responseBytes, headerBytes.length, body.length);
+  }
+
+
+
+  /**
+   * Measures the cost of reading and parsing a response.
+   *
+   * @return  The parsed response.
+   *
+   * @throws  Exception  If the response cannot be parsed.
+   */
+  @Benchmark()
+  public HTTPResponse readResponse()
+         throws Exception
+  {
+    return client.readResponse(requestURL,
+                               new ByteArrayInputStream(responseBytes), false);
+  }
+}
@@ -18,7 +18,13 @@ package com.slamd.admin;
 
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import netscape.ldap.LDAPAttribute;
 import netscape.ldap.LDAPConnection;
@@ -40,6 +46,13 @@ import com.slamd.server.SLAMDServer;
  * administrative interface.  It caches user access information for better
  * performance, but also provides a mechanism for flushing that cache so that
  * access can be re-evaluated.
+ * <BR><BR>
+ * Requests are serviced concurrently, using a small pool of connections to the
+ * user directory rather than a single shared connection.  Cached entries
+ * expire after a fixed length of time, and users that could not be found are
+ * also cached for a shorter period.  Entries that are still in use as they
+ * approach their expiration are reloaded by a background thread so that
+ * active users do not have to wait for the user directory.
  *
  * Note that this class does not actually restrict access or require
  * authentication, because that must be configured in the Web server itself.
@@ -78,8 +91,63 @@ public class AccessManager
 
 
 
+  /**
+   * The maximum number of connections that will be established to the user
+   * directory.
+   */
+  private static final int CONNECTION_POOL_SIZE = 4;
+
+
+
+  /**
+   * The maximum length of time in milliseconds to wait for a connection to the
+   * user directory to become available.
+   */
+  private static final long CONNECTION_WAIT_MILLIS = 30000L;
+
+
+
+  /**
+   * The maximum number of users for which access information will be cached.
+   */
+  private static final int MAX_CACHE_SIZE = 10000;
+
+
+
+  /**
+   * The length of time in milliseconds that information about the resources
+   * that a user may access will be cached.
+   */
+  private static final long CACHE_TIME_TO_LIVE_MILLIS = 600000L;
+
+
+
+  /**
+   * The length of time in milliseconds that the fact that a user could not be
+   * found in the user directory will be cached.
+   */
+  private static final long NEGATIVE_CACHE_TIME_TO_LIVE_MILLIS = 60000L;
+
+
+
+  // The number of cache lookups that were satisfied from the cache.
+  private final AtomicLong cacheHits;
+
+  // The number of cache lookups that required a search of the user directory.
+  private final AtomicLong cacheMisses;
+
+  // The number of times that the user cache has been flushed, used to avoid
+  // caching information that was read from the directory before a flush.
+  private final AtomicLong cacheGeneration;
+
+  // The total length of time in nanoseconds spent in cache lookups.
+  private final AtomicLong totalLookupNanos;
+
+  // The thread used to refresh cache entries in the background.
+  private AccessRefreshThread refreshThread;
+
   // Indicates whether the access manager has been stopped.
-  private boolean managerStopped;
+  private volatile boolean managerStopped;
 
   // Indicates whether communication with the user directory should use SSL.
   private boolean useSSL;
@@ -89,23 +157,28 @@ public class AccessManager
   private boolean userDirBlindTrust;
 
   // A cache of information about what a particular user may access.
-  private HashMap<String,String[]> userInfoCache;
+  private final ConcurrentHashMap<String,CachedAccessInfo> userInfoCache;
+
+  // The number of connections to the user directory that have been
+  // established and not yet closed.
+  private int connectionCount;
 
   // The port number for the user directory.
   private int userDirectoryPort;
 
-  // The connection to the user directory.
-  private LDAPConnection userDirConn;
+  // The connections to the user directory that are not currently in use.
+  private final LinkedBlockingQueue<LDAPConnection> availableConnections;
 
-  // The mutex used to provide threadsafe access to the user directory
-  // connection.
+  // The mutex used to provide threadsafe access to the connection count and
+  // the refresh thread.
   private final Object connMutex;
 
   // The mutex used to provide threadsafe access to the list of protected
   // resources.
   private final Object protectedResourceMutex;
 
-  // The mutex used to provide threadsafe access to the user info cache.
+  // The mutex used to ensure that only one thread prunes the user info cache
+  // at a time.
   private final Object userCacheMutex;
 
   // The SLAMD server with which this access manager is associated.
@@ -221,7 +294,14 @@ public class AccessManager
     this.connMutex               = new Object();
     this.protectedResourceMutex  = new Object();
     this.userCacheMutex          = new Object();
-    this.userInfoCache           = new HashMap<String,String[]>();
+    this.userInfoCache           =
+         new ConcurrentHashMap<String,CachedAccessInfo>();
+    this.availableConnections    = new LinkedBlockingQueue<LDAPConnection>();
+    this.connectionCount         = 0;
+    this.cacheHits               = new AtomicLong(0L);
+    this.cacheMisses             = new AtomicLong(0L);
+    this.cacheGeneration         = new AtomicLong(0L);
+    this.totalLookupNanos        = new AtomicLong(0L);
     this.protectedResources      = new String[0][];
   }
 
@@ -247,8 +327,9 @@ public class AccessManager
 
   /**
    * Starts the access manager.  If it is already running, then this does
-   * nothing.  Otherwise, it establishes the connection to the user directory
-   * and configures recreates the user cache.
+   * nothing.  Otherwise, it establishes a connection to the user directory and
+   * starts the thread used to refresh the user cache.  Additional connections
+   * will be established as they are needed.
    *
    * @throws  LDAPException  If there is a problem establishing the connection
    *                         to the user directory.
@@ -258,56 +339,20 @@ public class AccessManager
   {
     logMessage("Starting the access manager");
 
-    // Grab all the locks
     synchronized (connMutex)
     {
-      synchronized (protectedResourceMutex)
+      if (refreshThread != null)
       {
-        synchronized (userCacheMutex)
-        {
-          // Grab the connection to the user directory.
-          if (useSSL)
-          {
-            if (userDirBlindTrust)
-            {
-              JSSEBlindTrustSocketFactory socketFactory =
-                   new JSSEBlindTrustSocketFactory();
-              userDirConn = new LDAPConnection(socketFactory);
-            }
-            else
-            {
-              if ((sslKeyStore != null) && (sslKeyStore.length() > 0))
-              {
-                System.setProperty(Constants.SSL_KEY_STORE_PROPERTY,
-                                   sslKeyStore);
-              }
-              if ((sslKeyPassword != null) && (sslKeyPassword.length() > 0))
-              {
-                System.setProperty(Constants.SSL_KEY_PASSWORD_PROPERTY,
-                                   sslKeyPassword);
-              }
-              if ((sslTrustStore != null) && (sslTrustStore.length() > 0))
-              {
-                System.setProperty(Constants.SSL_TRUST_STORE_PROPERTY,
-                                   sslTrustStore);
-              }
-              if ((sslTrustPassword != null) && (sslTrustPassword.length() > 0))
-              {
-                System.setProperty(Constants.SSL_TRUST_PASSWORD_PROPERTY,
-                                   sslTrustPassword);
-              }
-
-              userDirConn = new LDAPConnection(new JSSESocketFactory(null));
-            }
-          }
-          else
-          {
-            userDirConn = new LDAPConnection();
-          }
-          userDirConn.connect(3, userDirectoryHost, userDirectoryPort,
-                              userDirectoryBindDN, userDirectoryBindPW);
-        }
+        return;
       }
+
+      // Establish the first connection to the user directory now so that any
+      // problem with the configuration is reported immediately.
+      availableConnections.offer(createConnection());
+      connectionCount++;
+
+      refreshThread = new AccessRefreshThread(this);
+      refreshThread.start();
     }
 
     managerStopped = false;
@@ -317,7 +362,7 @@ public class AccessManager
 
 
   /**
-   * Closes the connection to the user directory and stops the access manager.
+   * Closes the connections to the user directory and stops the access manager.
    * Note that when the access manager is stopped, any requests to the access
    * manager will indicate that no access is allowed to anything.
    */
@@ -326,32 +371,29 @@ public class AccessManager
     logMessage("Stopping the access manager");
     managerStopped = true;
 
-    // Grab all the locks
+    AccessRefreshThread thread;
     synchronized (connMutex)
     {
-      synchronized (protectedResourceMutex)
-      {
-        synchronized (userCacheMutex)
-        {
-          // Close the connection to the user directory
-          try
-          {
-            synchronized (connMutex)
-            {
-              userDirConn.disconnect();
-            }
-          }
-          catch (LDAPException le)
-          {
-            logMessage("Exception while closing the user directory " +
-                       "connection:  " + le);
-          }
+      thread        = refreshThread;
+      refreshThread = null;
+    }
 
-          // Flush the user cache
-          userInfoCache.clear();
-        }
-      }
+    if (thread != null)
+    {
+      thread.stopRunning();
+    }
+
+
+    // Close the connections that are not in use.  Any that are in use will be
+    // closed as they are released.
+    LDAPConnection conn;
+    while ((conn = availableConnections.poll()) != null)
+    {
+      closeConnection(conn);
     }
+
+    // Flush the user cache
+    flushUserCache();
   }
 
 
@@ -497,10 +539,92 @@ public class AccessManager
   {
     logMessage("Flushing the user info cache");
 
-    synchronized (userCacheMutex)
+    cacheGeneration.incrementAndGet();
+    userInfoCache.clear();
+  }
+
+
+
+  /**
+   * Retrieves the number of users for which access information is currently
+   * cached.
+   *
+   * @return  The number of users for which access information is currently
+   *          cached.
+   */
+  public int getCacheSize()
+  {
+    return userInfoCache.size();
+  }
+
+
+
+  /**
+   * Retrieves the number of requests for user access information that were
+   * satisfied from the cache.
+   *
+   * @return  The number of requests for user access information that were
+   *          satisfied from the cache.
+   */
+  public long getCacheHits()
+  {
+    return cacheHits.get();
+  }
+
+
+
+  /**
+   * Retrieves the number of requests for user access information that required
+   * a search of the user directory.
+   *
+   * @return  The number of requests for user access information that required
+   *          a search of the user directory.
+   */
+  public long getCacheMisses()
+  {
+    return cacheMisses.get();
+  }
+
+
+
+  /**
+   * Retrieves the percentage of requests for user access information that were
+   * satisfied from the cache.
+   *
+   * @return  The percentage of requests for user access information that were
+   *          satisfied from the cache, or zero if there have not been any
+   *          requests.
+   */
+  public double getCacheHitPercent()
+  {
+    long hits  = cacheHits.get();
+    long total = hits + cacheMisses.get();
+    if (total == 0L)
+    {
+      return 0.0D;
+    }
+
+    return (100.0D * hits / total);
+  }
+
+
+
+  /**
+   * Retrieves the average length of time required to obtain user access
+   * information, including any time spent searching the user directory.
+   *
+   * @return  The average length of time in milliseconds required to obtain user
+   *          access information, or zero if there have not been any requests.
+   */
+  public double getAverageLookupMillis()
+  {
+    long total = cacheHits.get() + cacheMisses.get();
+    if (total == 0L)
     {
-      userInfoCache.clear();
+      return 0.0D;
     }
+
+    return (totalLookupNanos.get() / 1000000.0D / total);
   }
 
 
@@ -538,23 +662,209 @@ public class AccessManager
     }
 
 
-    String[] accessibleResources = null;
-    synchronized (userCacheMutex)
+    long startTime = System.nanoTime();
+    try
     {
       // First, check the user cache to see if we already have this information.
-      accessibleResources = userInfoCache.get(userIdentifier);
-
-      if (accessibleResources == null)
+      long now = System.currentTimeMillis();
+      CachedAccessInfo cachedInfo = userInfoCache.get(userIdentifier);
+      if ((cachedInfo != null) && (! cachedInfo.isExpired(now)))
       {
-        accessibleResources = getUserInfoFromDirectory(userIdentifier);
-        if (accessibleResources != null)
+        cacheHits.incrementAndGet();
+        cachedInfo.setLastAccessTime(now);
+
+        // If the entry is nearing its expiration, then reload it in the
+        // background so that it is still current the next time it is used.
+        if (cachedInfo.startRefresh(now))
+        {
+          AccessRefreshThread thread = refreshThread;
+          if (thread != null)
+          {
+            thread.requestRefresh(userIdentifier);
+          }
+        }
+
+        if (cachedInfo.userNotFound())
         {
-          userInfoCache.put(userIdentifier, accessibleResources);
+          throw new AccessDeniedException("Could not find user " +
+                                          userIdentifier +
+                                          " in the user directory");
         }
+
+        return cachedInfo.getAccessibleResources();
       }
+
+      cacheMisses.incrementAndGet();
+      return loadUserInfo(userIdentifier);
+    }
+    finally
+    {
+      totalLookupNanos.addAndGet(System.nanoTime() - startTime);
+    }
+  }
+
+
+
+  /**
+   * Reloads the access information for the specified user from the user
+   * directory.  This is invoked by the refresh thread, and any problem that
+   * occurs will leave the existing cache entry in place until it expires.
+   *
+   * @param  userIdentifier  The ID of the user for which to reload the access
+   *                         information.
+   */
+  void refreshUserInfo(String userIdentifier)
+  {
+    try
+    {
+      loadUserInfo(userIdentifier);
+    }
+    catch (AccessDeniedException ade)
+    {
+      // The user no longer exists, which has already been recorded in the
+      // cache.
+    }
+    catch (LDAPException le)
+    {
+      logMessage("Unable to refresh access information for user " +
+                 userIdentifier + ":  " + le);
+    }
+  }
+
+
+
+  /**
+   * Retrieves the access information for the specified user from the user
+   * directory and places it in the cache.  If the user cannot be found, then
+   * that is cached as well.
+   *
+   * @param  userIdentifier  The ID of the user for which to retrieve the access
+   *                         information.
+   *
+   * @return  The names of all the protected resources that the specified user
+   *          may access.
+   *
+   * @throws  AccessDeniedException  If the user entry could not be found in the
+   *                                 user directory.
+   *
+   * @throws  LDAPException  If a problem occurs while retrieving information
+   *                         from the user directory.
+   */
+  private String[] loadUserInfo(String userIdentifier)
+          throws AccessDeniedException, LDAPException
+  {
+    long generation = cacheGeneration.get();
+    long now        = System.currentTimeMillis();
+
+    try
+    {
+      String[] accessibleResources = getUserInfoFromDirectory(userIdentifier);
+      cacheUserInfo(userIdentifier,
+           new CachedAccessInfo(accessibleResources, now,
+                                CACHE_TIME_TO_LIVE_MILLIS),
+           generation);
+      return accessibleResources;
+    }
+    catch (AccessDeniedException ade)
+    {
+      cacheUserInfo(userIdentifier,
+           new CachedAccessInfo(null, now, NEGATIVE_CACHE_TIME_TO_LIVE_MILLIS),
+           generation);
+      throw ade;
+    }
+  }
+
+
+
+  /**
+   * Places the provided access information in the user cache, unless the cache
+   * has been flushed since the information was read from the user directory.
+   * If the cache has grown too large, then it will be pruned.
+   *
+   * @param  userIdentifier  The ID of the user with which the information is
+   *                         associated.
+   * @param  cachedInfo      The access information to cache.
+   * @param  generation      The cache generation at the time the information
+   *                         was read from the user directory.
+   */
+  private void cacheUserInfo(String userIdentifier, CachedAccessInfo cachedInfo,
+                             long generation)
+  {
+    if (cacheGeneration.get() != generation)
+    {
+      return;
+    }
+
+    userInfoCache.put(userIdentifier, cachedInfo);
+
+    // If the cache was flushed while the entry was being added, then make sure
+    // that it does not survive the flush.
+    if (cacheGeneration.get() != generation)
+    {
+      userInfoCache.remove(userIdentifier, cachedInfo);
+      return;
+    }
+
+    if (userInfoCache.size() > MAX_CACHE_SIZE)
+    {
+      pruneUserCache();
     }
+  }
+
+
+
+  /**
+   * Removes entries from the user cache until it is comfortably below the
+   * maximum size.  Expired entries are removed first, followed by the entries
+   * that have gone the longest without being used.
+   */
+  private void pruneUserCache()
+  {
+    synchronized (userCacheMutex)
+    {
+      if (userInfoCache.size() <= MAX_CACHE_SIZE)
+      {
+        return;
+      }
+
+      long now = System.currentTimeMillis();
+      Iterator<CachedAccessInfo> iterator = userInfoCache.values().iterator();
+      while (iterator.hasNext())
+      {
+        if (iterator.next().isExpired(now))
+        {
+          iterator.remove();
+        }
+      }
+
+      ArrayList<Map.Entry<String,CachedAccessInfo>> entries =
+           new ArrayList<Map.Entry<String,CachedAccessInfo>>(
+                userInfoCache.entrySet());
+      int numToRemove = entries.size() - (MAX_CACHE_SIZE * 9 / 10);
+      if (numToRemove <= 0)
+      {
+        return;
+      }
+
+      long[] accessTimes = new long[entries.size()];
+      for (int i=0; i < accessTimes.length; i++)
+      {
+        accessTimes[i] = entries.get(i).getValue().getLastAccessTime();
+      }
+      Arrays.sort(accessTimes);
 
-    return accessibleResources;
+      long cutoffTime = accessTimes[numToRemove-1];
+      for (Map.Entry<String,CachedAccessInfo> e : entries)
+      {
+        if (e.getValue().getLastAccessTime() <= cutoffTime)
+        {
+          userInfoCache.remove(e.getKey(), e.getValue());
+        }
+      }
+
+      logMessage("Pruned the user info cache to " + userInfoCache.size() +
+                 " entries");
+    }
   }
 
 
@@ -636,184 +946,221 @@ public class AccessManager
   {
     logMessage("In getUserInfoFromDirectory(" + userIdentifier + ')');
 
+    LDAPConnection conn = getConnection();
+    boolean connValid = true;
+    try
+    {
+      return getUserInfoFromDirectory(conn, userIdentifier);
+    }
+    catch (LDAPException le)
+    {
+      connValid = false;
+      throw le;
+    }
+    finally
+    {
+      releaseConnection(conn, connValid);
+    }
+  }
+
+
+
+  /**
+   * Retrieves the set of all accessible resources for the specified user from
+   * the user directory using the provided connection.
+   *
+   * @param  userDirConn     The connection to use to communicate with the user
+   *                         directory.
+   * @param  userIdentifier  The identifier used to find the user entry in the
+   *                         user directory.
+   *
+   * @return  The names of all the resources that the user may access.
+   *
+   * @throws  AccessDeniedException  If the user entry could not be found in the
+   *                                 user directory.
+   *
+   * @throws  LDAPException  If there is a problem retrieving information from
+   *                         the user directory.
+   */
+  private String[] getUserInfoFromDirectory(LDAPConnection userDirConn,
+                                            String userIdentifier)
+          throws AccessDeniedException, LDAPException
+  {
     ArrayList<String> resourceList = new ArrayList<String>();
     String[][] resources = getProtectedResources();
 
     // First, retrieve the user entry from the directory.
-    synchronized (connMutex)
+    String userDN = null;
+    String filter = '(' + userIDAttribute + '=' + userIdentifier + ')';
+    LDAPSearchResults results = userDirConn.search(userBaseDN,
+                                                   LDAPConnection.SCOPE_SUB,
+                                                   filter, roleAttrs, false);
+    while (results.hasMoreElements())
     {
-      String userDN = null;
-      String filter = '(' + userIDAttribute + '=' + userIdentifier + ')';
-      LDAPSearchResults results = userDirConn.search(userBaseDN,
-                                                     LDAPConnection.SCOPE_SUB,
-                                                     filter, roleAttrs, false);
-      while (results.hasMoreElements())
+      Object element = results.nextElement();
+      if (element instanceof LDAPEntry)
       {
-        Object element = results.nextElement();
-        if (element instanceof LDAPEntry)
-        {
-          // We have an entry, so first get the user's DN
-          LDAPEntry entry = (LDAPEntry) element;
-          userDN = LDAPDN.normalize(entry.getDN().toLowerCase());
+        // We have an entry, so first get the user's DN
+        LDAPEntry entry = (LDAPEntry) element;
+        userDN = LDAPDN.normalize(entry.getDN().toLowerCase());
 
 
-          // Next, check to see if this user is associated with any roles.
-          LDAPAttribute attr = entry.getAttribute(Constants.ROLE_DN_AT);
-          if (attr != null)
+        // Next, check to see if this user is associated with any roles.
+        LDAPAttribute attr = entry.getAttribute(Constants.ROLE_DN_AT);
+        if (attr != null)
+        {
+          String[] values = attr.getStringValueArray();
+          if ((values != null) && (values.length > 0))
           {
-            String[] values = attr.getStringValueArray();
-            if ((values != null) && (values.length > 0))
+            for (int i=0; i < values.length; i++)
             {
-              for (int i=0; i < values.length; i++)
+              String roleDN = LDAPDN.normalize(values[i].toLowerCase());
+              for (int j=0; j < resources.length; j++)
               {
-                String roleDN = LDAPDN.normalize(values[i].toLowerCase());
-                for (int j=0; j < resources.length; j++)
+                if (roleDN.equals(resources[j][1]))
                 {
-                  if (roleDN.equals(resources[j][1]))
-                  {
-                    resourceList.add(resources[j][0]);
-                    logMessage(userIdentifier + " allowed for role resource " +
-                               resources[i][0]);
-                    break;
-                  }
+                  resourceList.add(resources[j][0]);
+                  logMessage(userIdentifier + " allowed for role resource " +
+                             resources[i][0]);
+                  break;
                 }
               }
             }
           }
+        }
+
+        break;
+      }
+    }
+
 
+    // If the user DN is null, then we couldn't find the user.
+    if (userDN == null)
+    {
+      logMessage("Could not find user " + userIdentifier + " in directory");
+      throw new AccessDeniedException("Could not find user " +
+                                      userIdentifier +
+                                      " in the user directory");
+    }
+
+
+    // Now look at the remaining resource DNs and see which apply to the user.
+    for (int i=0; i < resources.length; i++)
+    {
+      // If the resource list already contains this resource name, then we
+      // can go on to the next one.
+      boolean matched = false;
+      for (int j=0; j < resourceList.size(); j++)
+      {
+        if (resourceList.get(j).equals(resources[i][0]))
+        {
+          matched = true;
           break;
         }
       }
 
 
-      // If the user DN is null, then we couldn't find the user.
-      if (userDN == null)
+      // If we found a match in the resource list, then go to the next
+      // protected resource.
+      if (matched)
       {
-        logMessage("Could not find user " + userIdentifier + " in directory");
-        throw new AccessDeniedException("Could not find user " +
-                                        userIdentifier +
-                                        " in the user directory");
+        continue;
       }
 
 
-      // Now look at the remaining resource DNs and see which apply to the user.
-      for (int i=0; i < resources.length; i++)
+      // See if this entry is a static group and the user is a member
+      filter = "(|(&(objectclass=groupOfNames)(member=" + userDN +
+               "))(&(objectclass=groupOfUniqueNames)(uniqueMember=" + userDN +
+               ")))";
+      try
       {
-        // If the resource list already contains this resource name, then we
-        // can go on to the next one.
-        boolean matched = false;
-        for (int j=0; j < resourceList.size(); j++)
+        results = userDirConn.search(resources[i][1],
+                                     LDAPConnection.SCOPE_BASE, filter,
+                                     noAttrs, false);
+        while (results.hasMoreElements())
         {
-          if (resourceList.get(j).equals(resources[i][0]))
+          Object element = results.nextElement();
+          if (element instanceof LDAPEntry)
           {
+            resourceList.add(resources[i][0]);
+            logMessage(userIdentifier +
+                       " allowed for static group resource " +
+                       resources[i][0]);
             matched = true;
             break;
           }
         }
-
-
-        // If we found a match in the resource list, then go to the next
-        // protected resource.
-        if (matched)
+      }
+      catch (LDAPException le)
+      {
+        if (le.getLDAPResultCode() == LDAPException.NO_SUCH_OBJECT)
         {
+          // If we know the group entry doesn't exist, then there's no need
+          // to try to retrieve it for dynamic groups either.
+          logMessage("Resource DN entry " + resources[i][1] +
+                     " not found in the user directory");
           continue;
         }
-
-
-        // See if this entry is a static group and the user is a member
-        filter = "(|(&(objectclass=groupOfNames)(member=" + userDN +
-                 "))(&(objectclass=groupOfUniqueNames)(uniqueMember=" + userDN +
-                 ")))";
-        try
-        {
-          results = userDirConn.search(resources[i][1],
-                                       LDAPConnection.SCOPE_BASE, filter,
-                                       noAttrs, false);
-          while (results.hasMoreElements())
-          {
-            Object element = results.nextElement();
-            if (element instanceof LDAPEntry)
-            {
-              resourceList.add(resources[i][0]);
-              logMessage(userIdentifier +
-                         " allowed for static group resource " +
-                         resources[i][0]);
-              matched = true;
-              break;
-            }
-          }
-        }
-        catch (LDAPException le)
+        else
         {
-          if (le.getLDAPResultCode() == LDAPException.NO_SUCH_OBJECT)
-          {
-            // If we know the group entry doesn't exist, then there's no need
-            // to try to retrieve it for dynamic groups either.
-            logMessage("Resource DN entry " + resources[i][1] +
-                       " not found in the user directory");
-            continue;
-          }
-          else
-          {
-            throw le;
-          }
+          throw le;
         }
+      }
 
 
-        // If we found a match as a static group, then go to the next protected
-        // resource.
-        if (matched)
-        {
-          continue;
-        }
+      // If we found a match as a static group, then go to the next protected
+      // resource.
+      if (matched)
+      {
+        continue;
+      }
 
 
-        // See if this entry is a dynamic group and the user matches the
-        // criteria.
-        filter = "(objectclass=groupOfURLs)";
-        results = userDirConn.search(resources[i][1],
-                                     LDAPConnection.SCOPE_BASE, filter,
-                                     memberURLAttrs, false);
-        while (results.hasMoreElements())
+      // See if this entry is a dynamic group and the user matches the
+      // criteria.
+      filter = "(objectclass=groupOfURLs)";
+      results = userDirConn.search(resources[i][1],
+                                   LDAPConnection.SCOPE_BASE, filter,
+                                   memberURLAttrs, false);
+      while (results.hasMoreElements())
+      {
+        Object element = results.nextElement();
+        if (element instanceof LDAPEntry)
         {
-          Object element = results.nextElement();
-          if (element instanceof LDAPEntry)
+          LDAPEntry entry = (LDAPEntry) element;
+          LDAPAttribute attr = entry.getAttribute(Constants.MEMBER_URL_AT);
+          if (attr != null)
           {
-            LDAPEntry entry = (LDAPEntry) element;
-            LDAPAttribute attr = entry.getAttribute(Constants.MEMBER_URL_AT);
-            if (attr != null)
+            String[] values = attr.getStringValueArray();
+            if ((values != null) && (values.length > 0))
             {
-              String[] values = attr.getStringValueArray();
-              if ((values != null) && (values.length > 0))
+              try
               {
-                try
+                LDAPUrl url = new LDAPUrl(values[0]);
+                String base = LDAPDN.normalize(url.getDN().toLowerCase());
+                if (userDN.endsWith(base))
                 {
-                  LDAPUrl url = new LDAPUrl(values[0]);
-                  String base = LDAPDN.normalize(url.getDN().toLowerCase());
-                  if (userDN.endsWith(base))
+                  filter = url.getFilter();
+                  LDAPSearchResults results2 =
+                       userDirConn.search(userDN, LDAPConnection.SCOPE_BASE,
+                                          filter, noAttrs, false);
+                  while (results2.hasMoreElements())
                   {
-                    filter = url.getFilter();
-                    LDAPSearchResults results2 =
-                         userDirConn.search(userDN, LDAPConnection.SCOPE_BASE,
-                                            filter, noAttrs, false);
-                    while (results2.hasMoreElements())
+                    Object element2 = results2.nextElement();
+                    if (element2 instanceof LDAPEntry)
                     {
-                      Object element2 = results2.nextElement();
-                      if (element2 instanceof LDAPEntry)
-                      {
-                        resourceList.add(resources[i][0]);
-                        logMessage(userIdentifier + " allowed for dynamic " +
-                                   "group resource " + resources[i][0]);
-                        break;
-                      }
+                      resourceList.add(resources[i][0]);
+                      logMessage(userIdentifier + " allowed for dynamic " +
+                                 "group resource " + resources[i][0]);
+                      break;
                     }
                   }
-                } catch (Exception e) {}
-              }
+                }
+              } catch (Exception e) {}
             }
-
-            break;
           }
+
+          break;
         }
       }
     }
@@ -840,238 +1187,454 @@ public class AccessManager
   public int authenticateClient(String authID, String authCredentials,
                                 StringBuilder msgBuffer)
   {
-    synchronized (connMutex)
+    LDAPConnection conn;
+    try
+    {
+      conn = getConnection();
+    }
+    catch (LDAPException le)
     {
-      // First, find the user's entry in the directory.
-      String filter = '(' + userIDAttribute + '=' + authID + ')';
+      msgBuffer.append("Unable to connect to the user directory:  " + le);
+      return Constants.MESSAGE_RESPONSE_SERVER_ERROR;
+    }
 
-      LDAPSearchResults results;
-      try
-      {
-        results = userDirConn.search(userBaseDN, LDAPConnection.SCOPE_SUB,
-                                     filter, roleAttrs, false);
-      }
-      catch (LDAPException le)
-      {
-        msgBuffer.append("Unable to search user directory:  " + le);
-        return Constants.MESSAGE_RESPONSE_SERVER_ERROR;
-      }
+    int resultCode = Constants.MESSAGE_RESPONSE_SERVER_ERROR;
+    try
+    {
+      resultCode = authenticateClient(conn, authID, authCredentials,
+                                      msgBuffer);
+      return resultCode;
+    }
+    finally
+    {
+      releaseConnection(conn,
+           (resultCode != Constants.MESSAGE_RESPONSE_SERVER_ERROR));
+    }
+  }
 
-      LDAPEntry userEntry = null;
-      while (results.hasMoreElements())
-      {
-        Object element = results.nextElement();
-        if (element instanceof LDAPEntry)
-        {
-          if (userEntry == null)
-          {
-            userEntry = (LDAPEntry) element;
-          }
-          else
-          {
-            msgBuffer.append("Multiple entries found matching filter " +
-                             filter);
-            return Constants.MESSAGE_RESPONSE_UNKNOWN_AUTH_ID;
-          }
-        }
-      }
 
-      if (userEntry == null)
-      {
-        msgBuffer.append("Unknown user \"" + authID + '"');
-        return Constants.MESSAGE_RESPONSE_UNKNOWN_AUTH_ID;
-      }
 
+  /**
+   * Attempts to authenticate the client based on the provided information,
+   * using the provided connection to search the user directory.
+   *
+   * @param  userDirConn      The connection to use to search the user
+   *                          directory.
+   * @param  authID           The authentication ID provided by the client.
+   * @param  authCredentials  The credentials provided by the client.
+   * @param  msgBuffer        The string buffer in which an explanation will be
+   *                          placed in the event of a failure.
+   *
+   * @return  The result code from the authentication process.
+   */
+  private int authenticateClient(LDAPConnection userDirConn, String authID,
+                                 String authCredentials,
+                                 StringBuilder msgBuffer)
+  {
+    // First, find the user's entry in the directory.
+    String filter = '(' + userIDAttribute + '=' + authID + ')';
 
-      // Next, bind as the user to verify the credentials.
-      String userDN = userEntry.getDN();
-      LDAPConnection bindConn;
-      if (useSSL)
-      {
-        bindConn = new LDAPConnection(new JSSESocketFactory(null));
-      }
-      else
-      {
-        bindConn = new LDAPConnection();
-      }
+    LDAPSearchResults results;
+    try
+    {
+      results = userDirConn.search(userBaseDN, LDAPConnection.SCOPE_SUB,
+                                   filter, roleAttrs, false);
+    }
+    catch (LDAPException le)
+    {
+      msgBuffer.append("Unable to search user directory:  " + le);
+      return Constants.MESSAGE_RESPONSE_SERVER_ERROR;
+    }
 
-      try
-      {
-        bindConn.connect(userDirectoryHost, userDirectoryPort,
-                         userDN, authCredentials);
-      }
-      catch (LDAPException le)
+    LDAPEntry userEntry = null;
+    while (results.hasMoreElements())
+    {
+      Object element = results.nextElement();
+      if (element instanceof LDAPEntry)
       {
-        try
+        if (userEntry == null)
         {
-          bindConn.disconnect();
-        } catch (Exception e) {}
-
-        int resultCode = le.getLDAPResultCode();
-        if (resultCode == LDAPException.INVALID_CREDENTIALS)
-        {
-          msgBuffer.append("Invalid credentials");
-          return Constants.MESSAGE_RESPONSE_INVALID_CREDENTIALS;
+          userEntry = (LDAPEntry) element;
         }
         else
         {
-          msgBuffer.append("Unable to verify user credentials:  " + le);
-          return Constants.MESSAGE_RESPONSE_SERVER_ERROR;
+          msgBuffer.append("Multiple entries found matching filter " +
+                           filter);
+          return Constants.MESSAGE_RESPONSE_UNKNOWN_AUTH_ID;
         }
       }
+    }
+
+    if (userEntry == null)
+    {
+      msgBuffer.append("Unknown user \"" + authID + '"');
+      return Constants.MESSAGE_RESPONSE_UNKNOWN_AUTH_ID;
+    }
+
 
+    // Next, bind as the user to verify the credentials.
+    String userDN = userEntry.getDN();
+    LDAPConnection bindConn;
+    if (useSSL)
+    {
+      bindConn = new LDAPConnection(new JSSESocketFactory(null));
+    }
+    else
+    {
+      bindConn = new LDAPConnection();
+    }
+
+    try
+    {
+      bindConn.connect(userDirectoryHost, userDirectoryPort,
+                       userDN, authCredentials);
+    }
+    catch (LDAPException le)
+    {
       try
       {
         bindConn.disconnect();
       } catch (Exception e) {}
 
-
-      // See if a group or role has been defined that specifies which clients
-      // may authenticate.  If so, then verify that the client is a member of
-      // that group or role.
-      String authDN = AdminServlet.resourceDNAuthenticateClient;
-      if ((authDN != null) && (authDN.length() > 0))
+      int resultCode = le.getLDAPResultCode();
+      if (resultCode == LDAPException.INVALID_CREDENTIALS)
+      {
+        msgBuffer.append("Invalid credentials");
+        return Constants.MESSAGE_RESPONSE_INVALID_CREDENTIALS;
+      }
+      else
       {
-        String normDN = LDAPDN.normalize(authDN);
+        msgBuffer.append("Unable to verify user credentials:  " + le);
+        return Constants.MESSAGE_RESPONSE_SERVER_ERROR;
+      }
+    }
+
+    try
+    {
+      bindConn.disconnect();
+    } catch (Exception e) {}
 
-        // First, check to see if the it is a role to which the user belongs.
-        LDAPAttribute roleAttr = userEntry.getAttribute(Constants.ROLE_DN_AT);
-        if (roleAttr != null)
+
+    // See if a group or role has been defined that specifies which clients
+    // may authenticate.  If so, then verify that the client is a member of
+    // that group or role.
+    String authDN = AdminServlet.resourceDNAuthenticateClient;
+    if ((authDN != null) && (authDN.length() > 0))
+    {
+      String normDN = LDAPDN.normalize(authDN);
+
+      // First, check to see if the it is a role to which the user belongs.
+      LDAPAttribute roleAttr = userEntry.getAttribute(Constants.ROLE_DN_AT);
+      if (roleAttr != null)
+      {
+        String[] userRoles = roleAttr.getStringValueArray();
+        for (int i=0; ((userRoles != null) && (i < userRoles.length)); i++)
         {
-          String[] userRoles = roleAttr.getStringValueArray();
-          for (int i=0; ((userRoles != null) && (i < userRoles.length)); i++)
+          if (normDN.equalsIgnoreCase(LDAPDN.normalize(userRoles[i])))
           {
-            if (normDN.equalsIgnoreCase(LDAPDN.normalize(userRoles[i])))
-            {
-              return Constants.MESSAGE_RESPONSE_SUCCESS;
-            }
+            return Constants.MESSAGE_RESPONSE_SUCCESS;
           }
+        }
 
 
-          // See if this entry is a static group and the user is a member
-          filter = "(|(&(objectclass=groupOfNames)(member=" + userDN +
-                   "))(&(objectclass=groupOfUniqueNames)(uniqueMember=" +
-                   userDN + ")))";
-          try
+        // See if this entry is a static group and the user is a member
+        filter = "(|(&(objectclass=groupOfNames)(member=" + userDN +
+                 "))(&(objectclass=groupOfUniqueNames)(uniqueMember=" +
+                 userDN + ")))";
+        try
+        {
+          results = userDirConn.search(authDN, LDAPConnection.SCOPE_BASE,
+                                       filter, noAttrs, false);
+          while (results.hasMoreElements())
           {
-            results = userDirConn.search(authDN, LDAPConnection.SCOPE_BASE,
-                                         filter, noAttrs, false);
-            while (results.hasMoreElements())
+            Object element = results.nextElement();
+            if (element instanceof LDAPEntry)
             {
-              Object element = results.nextElement();
-              if (element instanceof LDAPEntry)
-              {
-                return Constants.MESSAGE_RESPONSE_SUCCESS;
-              }
+              return Constants.MESSAGE_RESPONSE_SUCCESS;
             }
           }
-          catch (LDAPException le)
+        }
+        catch (LDAPException le)
+        {
+          if (le.getLDAPResultCode() == LDAPException.NO_SUCH_OBJECT)
           {
-            if (le.getLDAPResultCode() == LDAPException.NO_SUCH_OBJECT)
-            {
-              // If we know the group entry doesn't exist, then there's no need
-              // to try to retrieve it for dynamic groups either.
-              msgBuffer.append("Resource DN \"" + authDN +
-                               "\" that specifies the clients that may " +
-                               "authenticate does not exist in the user " +
-                               "directory.");
-              return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
-            }
-            else
-            {
-              msgBuffer.append("Unable to search the user directory for " +
-                               "resource DN \"" + authDN + "\":  " + le);
-              return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
-            }
+            // If we know the group entry doesn't exist, then there's no need
+            // to try to retrieve it for dynamic groups either.
+            msgBuffer.append("Resource DN \"" + authDN +
+                             "\" that specifies the clients that may " +
+                             "authenticate does not exist in the user " +
+                             "directory.");
+            return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
           }
+          else
+          {
+            msgBuffer.append("Unable to search the user directory for " +
+                             "resource DN \"" + authDN + "\":  " + le);
+            return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
+          }
+        }
 
 
-          // See if the DN is a dynamic group and if so whether the user is a
-          // member.
-          String memberURL = null;
-          filter = "(objectClass=groupOfURLs)";
-          try
+        // See if the DN is a dynamic group and if so whether the user is a
+        // member.
+        String memberURL = null;
+        filter = "(objectClass=groupOfURLs)";
+        try
+        {
+          results = userDirConn.search(authDN, LDAPConnection.SCOPE_BASE,
+                                       filter, memberURLAttrs, false);
+          while (results.hasMoreElements())
           {
-            results = userDirConn.search(authDN, LDAPConnection.SCOPE_BASE,
-                                         filter, memberURLAttrs, false);
-            while (results.hasMoreElements())
+            Object element = results.nextElement();
+            if (element instanceof LDAPEntry)
             {
-              Object element = results.nextElement();
-              if (element instanceof LDAPEntry)
+              LDAPEntry entry = (LDAPEntry) element;
+              LDAPAttribute urlAttr =
+                   entry.getAttribute(Constants.MEMBER_URL_AT);
+              if (urlAttr == null)
               {
-                LDAPEntry entry = (LDAPEntry) element;
-                LDAPAttribute urlAttr =
-                     entry.getAttribute(Constants.MEMBER_URL_AT);
-                if (urlAttr == null)
-                {
-                  msgBuffer.append("Unable to verify user \"" + authID +
-                                   "\" as a member of \"" + authDN + '"');
-                  return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
-                }
-
-                String[] values = urlAttr.getStringValueArray();
-                if ((values == null) || (values.length != 1))
-                {
-                  msgBuffer.append("Unable to verify user \"" + authID +
-                                   "\" as a member of \"" + authDN + '"');
-                  return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
-                }
+                msgBuffer.append("Unable to verify user \"" + authID +
+                                 "\" as a member of \"" + authDN + '"');
+                return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
+              }
 
-                memberURL = values[0];
-                break;
+              String[] values = urlAttr.getStringValueArray();
+              if ((values == null) || (values.length != 1))
+              {
+                msgBuffer.append("Unable to verify user \"" + authID +
+                                 "\" as a member of \"" + authDN + '"');
+                return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
               }
+
+              memberURL = values[0];
+              break;
             }
           }
-          catch (LDAPException le)
-          {
-            msgBuffer.append("Unable to search the user directory for " +
-                             "resource DN \"" + authDN + "\":  " + le);
-            return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
-          }
+        }
+        catch (LDAPException le)
+        {
+          msgBuffer.append("Unable to search the user directory for " +
+                           "resource DN \"" + authDN + "\":  " + le);
+          return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
+        }
 
-          if (memberURL == null)
-          {
-            msgBuffer.append("Unable to verify user \"" + authID +
-                             "\" as a member of \"" + authDN + '"');
-            return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
-          }
+        if (memberURL == null)
+        {
+          msgBuffer.append("Unable to verify user \"" + authID +
+                           "\" as a member of \"" + authDN + '"');
+          return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
+        }
 
-          try
+        try
+        {
+          LDAPUrl url = new LDAPUrl(memberURL);
+          String base = LDAPDN.normalize(url.getDN().toLowerCase());
+          userDN = LDAPDN.normalize(userDN);
+          if (userDN.endsWith(base))
           {
-            LDAPUrl url = new LDAPUrl(memberURL);
-            String base = LDAPDN.normalize(url.getDN().toLowerCase());
-            userDN = LDAPDN.normalize(userDN);
-            if (userDN.endsWith(base))
+            filter = url.getFilter();
+            LDAPSearchResults results2 =
+                 userDirConn.search(userDN, LDAPConnection.SCOPE_BASE,
+                                    filter, noAttrs, false);
+            while (results2.hasMoreElements())
             {
-              filter = url.getFilter();
-              LDAPSearchResults results2 =
-                   userDirConn.search(userDN, LDAPConnection.SCOPE_BASE,
-                                      filter, noAttrs, false);
-              while (results2.hasMoreElements())
+              Object element2 = results2.nextElement();
+              if (element2 instanceof LDAPEntry)
               {
-                Object element2 = results2.nextElement();
-                if (element2 instanceof LDAPEntry)
-                {
-                  return Constants.MESSAGE_RESPONSE_SUCCESS;
-                }
+                return Constants.MESSAGE_RESPONSE_SUCCESS;
               }
             }
           }
-          catch (Exception e)
-          {
-            msgBuffer.append("Unable to verify user \"" + authID +
-                             "\" as a member of \"" + authDN +
-                             "\" -- " + e);
-            return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
-          }
+        }
+        catch (Exception e)
+        {
+          msgBuffer.append("Unable to verify user \"" + authID +
+                           "\" as a member of \"" + authDN +
+                           "\" -- " + e);
+          return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
+        }
+      }
+
+      msgBuffer.append("User \"" + authID + "\" is not authorized to " +
+                       "connect to the SLAMD server as a client.");
+      return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
+    }
+
+    return Constants.MESSAGE_RESPONSE_SUCCESS;
+  }
+
+
+
+  /**
+   * Creates a new connection to the user directory and binds as the configured
+   * user.
+   *
+   * @return  The new connection to the user directory.
+   *
+   * @throws  LDAPException  If a problem occurs while establishing the
+   *                         connection.
+   */
+  private LDAPConnection createConnection()
+          throws LDAPException
+  {
+    LDAPConnection conn;
+    if (useSSL)
+    {
+      if (userDirBlindTrust)
+      {
+        JSSEBlindTrustSocketFactory socketFactory =
+             new JSSEBlindTrustSocketFactory();
+        conn = new LDAPConnection(socketFactory);
+      }
+      else
+      {
+        if ((sslKeyStore != null) && (sslKeyStore.length() > 0))
+        {
+          System.setProperty(Constants.SSL_KEY_STORE_PROPERTY, sslKeyStore);
+        }
+        if ((sslKeyPassword != null) && (sslKeyPassword.length() > 0))
+        {
+          System.setProperty(Constants.SSL_KEY_PASSWORD_PROPERTY,
+                             sslKeyPassword);
+        }
+        if ((sslTrustStore != null) && (sslTrustStore.length() > 0))
+        {
+          System.setProperty(Constants.SSL_TRUST_STORE_PROPERTY,
+                             sslTrustStore);
+        }
+        if ((sslTrustPassword != null) && (sslTrustPassword.length() > 0))
+        {
+          System.setProperty(Constants.SSL_TRUST_PASSWORD_PROPERTY,
+                             sslTrustPassword);
         }
 
-        msgBuffer.append("User \"" + authID + "\" is not authorized to " +
-                         "connect to the SLAMD server as a client.");
-        return Constants.MESSAGE_RESPONSE_CLIENT_REJECTED;
+        conn = new LDAPConnection(new JSSESocketFactory(null));
       }
+    }
+    else
+    {
+      conn = new LDAPConnection();
+    }
+
+    conn.connect(3, userDirectoryHost, userDirectoryPort, userDirectoryBindDN,
+                 userDirectoryBindPW);
+    return conn;
+  }
 
-      return Constants.MESSAGE_RESPONSE_SUCCESS;
+
+
+  /**
+   * Retrieves a connection to the user directory from the pool, establishing a
+   * new connection if none are available and the pool is not full, or waiting
+   * for one to be released otherwise.  The connection must be returned using
+   * the <CODE>releaseConnection</CODE> method.
+   *
+   * @return  A connection to the user directory.
+   *
+   * @throws  LDAPException  If a new connection could not be established, or if
+   *                         no connection became available in a reasonable
+   *                         length of time.
+   */
+  private LDAPConnection getConnection()
+          throws LDAPException
+  {
+    LDAPConnection conn = availableConnections.poll();
+    if (conn != null)
+    {
+      return conn;
+    }
+
+    boolean createNew = false;
+    synchronized (connMutex)
+    {
+      if (connectionCount < CONNECTION_POOL_SIZE)
+      {
+        connectionCount++;
+        createNew = true;
+      }
+    }
+
+    if (createNew)
+    {
+      try
+      {
+        return createConnection();
+      }
+      catch (LDAPException le)
+      {
+        synchronized (connMutex)
+        {
+          connectionCount--;
+        }
+        throw le;
+      }
+    }
+
+    try
+    {
+      conn = availableConnections.poll(CONNECTION_WAIT_MILLIS,
+                                       TimeUnit.MILLISECONDS);
+    }
+    catch (InterruptedException ie)
+    {
+      Thread.currentThread().interrupt();
+    }
+
+    if (conn == null)
+    {
+      throw new LDAPException("Timed out waiting for a connection to the " +
+                              "user directory", LDAPException.CONNECT_ERROR);
+    }
+
+    return conn;
+  }
+
+
+
+  /**
+   * Returns the provided connection to the pool.  If the connection may no
+   * longer be usable or the access manager has been stopped, then it will be
+   * closed instead.
+   *
+   * @param  conn   The connection to return to the pool.
+   * @param  valid  Indicates whether the connection is believed to still be
+   *                usable.
+   */
+  private void releaseConnection(LDAPConnection conn, boolean valid)
+  {
+    if (valid && (! managerStopped) && conn.isConnected())
+    {
+      availableConnections.offer(conn);
+    }
+    else
+    {
+      closeConnection(conn);
+    }
+  }
+
+
+
+  /**
+   * Closes the provided connection to the user directory and removes it from
+   * the count of established connections.
+   *
+   * @param  conn  The connection to close.
+   */
+  private void closeConnection(LDAPConnection conn)
+  {
+    synchronized (connMutex)
+    {
+      connectionCount--;
+    }
+
+    try
+    {
+      conn.disconnect();
+    }
+    catch (LDAPException le)
+    {
+      logMessage("Exception while closing the user directory " +
+                 "connection:  " + le);
     }
   }
 
@@ -0,0 +1,119 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.admin;
+
+
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * This class defines a thread that reloads access manager cache entries from
+ * the user directory in the background.  When a cached entry is used after its
+ * refresh time, the access manager continues to answer from the cache but asks
+ * this thread to reload the entry, so that active users rarely have to wait
+ * for the user directory.
+ */
+final class AccessRefreshThread
+       extends Thread
+{
+  // The access manager whose cache entries will be refreshed.
+  private final AccessManager accessManager;
+
+  // The queue of user identifiers whose entries should be refreshed.
+  private final LinkedBlockingQueue<String> refreshQueue;
+
+  // Indicates whether a request has been received for this thread to stop.
+  private volatile boolean stopRequested;
+
+
+
+  /**
+   * Creates a new refresh thread for the provided access manager.
+   *
+   * @param  accessManager  The access manager whose cache entries will be
+   *                        refreshed.
+   */
+  AccessRefreshThread(AccessManager accessManager)
+  {
+    this.accessManager = accessManager;
+
+    setName("Access Manager Refresh Thread");
+    setDaemon(true);
+
+    refreshQueue  = new LinkedBlockingQueue<String>();
+    stopRequested = false;
+  }
+
+
+
+  /**
+   * Requests that the cache entry for the specified user be reloaded.
+   *
+   * @param  userIdentifier  The identifier of the user whose entry should be
+   *                         reloaded.
+   */
+  void requestRefresh(String userIdentifier)
+  {
+    refreshQueue.offer(userIdentifier);
+  }
+
+
+
+  /**
+   * Requests that this thread stop running, and waits for it to finish.
+   */
+  void stopRunning()
+  {
+    stopRequested = true;
+    interrupt();
+
+    try
+    {
+      join();
+    } catch (Exception e) {}
+  }
+
+
+
+  /**
+   * Reloads the entries for any users whose refresh has been requested until
+   * this thread is asked to stop.
+   */
+  @Override()
+  public void run()
+  {
+    while (! stopRequested)
+    {
+      String userIdentifier;
+      try
+      {
+        userIdentifier = refreshQueue.poll(1000L, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException ie)
+      {
+        continue;
+      }
+
+      if (userIdentifier != null)
+      {
+        accessManager.refreshUserInfo(userIdentifier);
+      }
+    }
+  }
+}
@@ -197,6 +197,15 @@ public final class AdminConfig
                               "-1 indicates that there should not be any " +
                               "limit imposed.", true, maxUploadSize, true, -1,
                               false, 0);
+    IntegerParameter jobListPageSizeParameter =
+         new IntegerParameter(Constants.PARAM_JOB_LIST_PAGE_SIZE,
+                              "Jobs Per Folder Page",
+                              "The maximum number of jobs or optimizing jobs " +
+                              "to display on each page when viewing the " +
+                              "contents of a job folder.  A value of 0 " +
+                              "indicates that all of them should be " +
+                              "displayed on a single page.", true,
+                              jobListPageSize, true, 0, false, 0);
 
     String[] generatorClasses = new String[reportGenerators.length];
     for (int i=0; i < reportGenerators.length; i++)
@@ -301,6 +310,7 @@ public final class AdminConfig
       maxUploadSizeParameter,
       manageReadOnlyParameter,
       hideOptimizingIterationsParameter,
+      jobListPageSizeParameter,
       reportGeneratorsParameter,
       headerLinesParameter,
       styleSheetParameter,
@@ -2280,6 +2290,23 @@ public final class AdminConfig
       maxUploadSize = Constants.DEFAULT_MAX_UPLOAD_SIZE;
     }
 
+    param = configDB.getConfigParameter(Constants.PARAM_JOB_LIST_PAGE_SIZE);
+    if ((param != null) && (param.length() > 0))
+    {
+      try
+      {
+        jobListPageSize = Integer.parseInt(param);
+      }
+      catch (NumberFormatException nfe)
+      {
+        jobListPageSize = Constants.DEFAULT_JOB_LIST_PAGE_SIZE;
+      }
+    }
+    else
+    {
+      jobListPageSize = Constants.DEFAULT_JOB_LIST_PAGE_SIZE;
+    }
+
     param =
          configDB.getConfigParameter(Constants.PARAM_INCLUDE_SERVER_IN_TITLE);
     includeAddressInPageTitle = ((param != null) &&
@@ -2520,6 +2547,25 @@ public final class AdminConfig
         maxUploadSize = Constants.DEFAULT_MAX_UPLOAD_SIZE;
       }
     }
+    else if (parameterName.equalsIgnoreCase(
+                                Constants.PARAM_JOB_LIST_PAGE_SIZE))
+    {
+      if ((param != null) && (param.length() > 0))
+      {
+        try
+        {
+          jobListPageSize = Integer.parseInt(param);
+        }
+        catch (NumberFormatException nfe)
+        {
+          jobListPageSize = Constants.DEFAULT_JOB_LIST_PAGE_SIZE;
+        }
+      }
+      else
+      {
+        jobListPageSize = Constants.DEFAULT_JOB_LIST_PAGE_SIZE;
+      }
+    }
     else if (parameterName.equalsIgnoreCase(Constants.PARAM_MANAGE_READ_ONLY))
     {
       enableReadOnlyManagement = ((param != null) &&
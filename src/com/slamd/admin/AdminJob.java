@@ -211,6 +211,15 @@ public final class AdminJob
       String category = null;
       Job[] jobs = null;
 
+      // The job IDs after which the current and next pages of a folder start.
+      String startAfterJobID =
+           request.getParameter(Constants.SERVLET_PARAM_START_AFTER_JOB_ID);
+      if ((startAfterJobID != null) && (startAfterJobID.length() == 0))
+      {
+        startAfterJobID = null;
+      }
+      String nextStartAfterJobID = null;
+
       if (subsection.equals(Constants.SERVLET_SECTION_JOB_VIEW_VIRTUAL))
       {
         if ((vFolderName == null) || (vFolderName.length() == 0))
@@ -284,22 +293,69 @@ public final class AdminJob
         category = "completed";
         try
         {
-          jobs = configDB.getCompletedSummaryJobs(folderName);
-          if (jobs == null)
+          // Only retrieve one page of the folder at a time, since it may
+          // contain a very large number of jobs.  Jobs that can't be shown are
+          // skipped, so keep reading until there is one job more than fits on
+          // the page or the folder runs out.  The jobs are listed in the same
+          // job ID order that is used to page through the folder.
+          int pageLimit = ((jobListPageSize > 0) ? (jobListPageSize + 1) : 0);
+          ArrayList<Job> jobList = new ArrayList<Job>();
+          String afterJobID = startAfterJobID;
+          boolean unknownFolder = false;
+          while (true)
+          {
+            int batchSize =
+                 ((pageLimit > 0) ? (pageLimit - jobList.size()) : 0);
+            String[] jobIDs =
+                 configDB.getJobIDs(folderName, afterJobID, batchSize);
+            if (jobIDs == null)
+            {
+              unknownFolder = true;
+              break;
+            }
+
+            for (int i=0; i < jobIDs.length; i++)
+            {
+              afterJobID = jobIDs[i];
+
+              Job job;
+              try
+              {
+                job = configDB.getSummaryJob(jobIDs[i]);
+              }
+              catch (Exception e)
+              {
+                continue;
+              }
+
+              if ((job == null) || (! job.doneRunning()) ||
+                  (hideOptimizingIterations &&
+                   (job.getOptimizingJobID() != null)))
+              {
+                continue;
+              }
+
+              jobList.add(job);
+            }
+
+            if ((batchSize <= 0) || (jobIDs.length < batchSize) ||
+                (jobList.size() >= pageLimit))
+            {
+              break;
+            }
+          }
+
+          if (unknownFolder)
           {
             jobs = new Job[0];
             infoMessage.append("Unknown folder \"" + folderName + '"');
           }
-
-          if (hideOptimizingIterations)
+          else
           {
-            ArrayList<Job> jobList = new ArrayList<Job>(jobs.length);
-            for (int i=0; i < jobs.length; i++)
+            if ((pageLimit > 0) && (jobList.size() >= pageLimit))
             {
-              if (jobs[i].getOptimizingJobID() == null)
-              {
-                jobList.add(jobs[i]);
-              }
+              jobList.remove(jobList.size() - 1);
+              nextStartAfterJobID = jobList.get(jobList.size() - 1).getJobID();
             }
 
             jobs = new Job[jobList.size()];
@@ -510,6 +566,13 @@ public final class AdminJob
       }
 
 
+      if (category.equals("completed"))
+      {
+        htmlBody.append(generateFolderPageLinks(requestInfo,
+                             Constants.SERVLET_SECTION_JOB_VIEW_COMPLETED,
+                             folderName, startAfterJobID, nextStartAfterJobID));
+      }
+
       if ((jobs == null) || (jobs.length == 0))
       {
         if (category.equals("completed"))
@@ -558,6 +621,13 @@ public final class AdminJob
                           EOL);
         }
 
+        if (startAfterJobID != null)
+        {
+          htmlBody.append("  " +
+               generateHidden(Constants.SERVLET_PARAM_START_AFTER_JOB_ID,
+                              startAfterJobID) + EOL);
+        }
+
         if (requestInfo.debugHTML)
         {
           htmlBody.append(generateHidden(Constants.SERVLET_PARAM_HTML_DEBUG,
@@ -1105,6 +1175,59 @@ public final class AdminJob
 
 
 
+  /**
+   * Generates the links used to move between the pages of a job folder when
+   * its contents are displayed one page at a time.
+   *
+   * @param  requestInfo          The state information for this request.
+   * @param  subsection           The subsection used to view the folder.
+   * @param  folderName           The name of the folder being viewed.
+   * @param  startAfterJobID      The ID after which the current page starts,
+   *                              or {@code null} if it is the first page.
+   * @param  nextStartAfterJobID  The ID after which the next page starts, or
+   *                              {@code null} if this is the last page.
+   *
+   * @return  The HTML for the page links, or an empty string if the entire
+   *          folder fits on a single page.
+   */
+  static String generateFolderPageLinks(RequestInfo requestInfo,
+                                        String subsection, String folderName,
+                                        String startAfterJobID,
+                                        String nextStartAfterJobID)
+  {
+    if ((startAfterJobID == null) && (nextStartAfterJobID == null))
+    {
+      return "";
+    }
+
+    StringBuilder html = new StringBuilder();
+    if (startAfterJobID != null)
+    {
+      html.append(generateLink(requestInfo, Constants.SERVLET_SECTION_JOB,
+                               subsection, Constants.SERVLET_PARAM_JOB_FOLDER,
+                               folderName, "First Page"));
+    }
+
+    if (nextStartAfterJobID != null)
+    {
+      if (startAfterJobID != null)
+      {
+        html.append(" &nbsp; ");
+      }
+
+      html.append(generateLink(requestInfo, Constants.SERVLET_SECTION_JOB,
+                               subsection, Constants.SERVLET_PARAM_JOB_FOLDER,
+                               folderName,
+                               Constants.SERVLET_PARAM_START_AFTER_JOB_ID,
+                               nextStartAfterJobID, "Next Page"));
+    }
+
+    html.append("<BR><BR>" + EOL);
+    return html.toString();
+  }
+
+
+
   /**
    * Handles the work of retrieving information about the specified job as a
    * plain text document.
@@ -2579,6 +2702,18 @@ public final class AdminJob
 
     if (! (readOnlyMode && hideSensitiveInformation))
     {
+      // The client profiling settings
+      String profileSettings = job.getProfileSettings();
+      if (profileSettings != null)
+      {
+        htmlBody.append("        <TR CLASS=\"" +
+                        Constants.STYLE_JOB_SUMMARY_LINE_B + "\">" + EOL);
+        htmlBody.append("    <TD>Client Profiling Settings</TD>" + EOL);
+        htmlBody.append("    <TD>&nbsp;</TD>" + EOL);
+        htmlBody.append("    <TD>" + profileSettings + "</TD>" + EOL);
+        htmlBody.append("  </TR>" + EOL);
+      }
+
       // The set of clients to use
       String[] requestedClients = job.getRequestedClients();
       if ((requestedClients != null) && (requestedClients.length > 0))
@@ -7088,6 +7223,16 @@ public final class AdminJob
                       generateHidden(
                            Constants.SERVLET_PARAM_JOB_THREAD_STARTUP_DELAY,
                            String.valueOf(threadStartupDelay)) + EOL);
+
+      String profileSettings =
+           request.getParameter(Constants.SERVLET_PARAM_JOB_PROFILE_SETTINGS);
+      if ((profileSettings != null) && (profileSettings.length() > 0))
+      {
+        htmlBody.append("  " +
+                        generateHidden(
+                             Constants.SERVLET_PARAM_JOB_PROFILE_SETTINGS,
+                             profileSettings) + EOL);
+      }
       htmlBody.append("  <INPUT TYPE=\"SUBMIT\" NAME=\"" +
                            Constants.SERVLET_PARAM_SHOW_ADVANCED +
                            "\" VALUE=\"Show Advanced Scheduling Options\">" +
@@ -7442,6 +7587,27 @@ public final class AdminJob
                       "\" SIZE=\"80\"></TD>" + EOL);
       htmlBody.append("  </TR>" + EOL);
 
+      // The client profiling settings
+      String profileSettings =
+           request.getParameter(Constants.SERVLET_PARAM_JOB_PROFILE_SETTINGS);
+      if (profileSettings == null)
+      {
+        profileSettings = "";
+      }
+      htmlBody.append("  <TR>" + EOL);
+      htmlBody.append("    <TD><A CLASS=\"form_caption\" TITLE=\"The Java " +
+           "Flight Recorder configuration (e.g., profile) or .jfc file that " +
+           "each client should use to capture a profile of the job while it " +
+           "is running, optionally followed by semicolon-delimited " +
+           "event#setting=value overrides.  Leave blank to disable " +
+           "profiling.\">Client Profiling Settings</A></TD>" + EOL);
+      htmlBody.append("    <TD>&nbsp;</TD>" + EOL);
+      htmlBody.append("    <TD><INPUT TYPE=\"TEXT\" NAME=\"" +
+                      Constants.SERVLET_PARAM_JOB_PROFILE_SETTINGS +
+                      "\" VALUE=\"" + profileSettings +
+                      "\" SIZE=\"80\"></TD>" + EOL);
+      htmlBody.append("  </TR>" + EOL);
+
       // The job dependencies
       Job[] pendingJobs    = scheduler.getPendingJobs();
       Job[] runningJobs    = scheduler.getRunningJobs();
@@ -7792,6 +7958,7 @@ public final class AdminJob
     int      collectionInterval        = -1;
     String   folderName                = null;
     String   jobComments               = null;
+    String   profileSettings           = null;
     String[] dependencyIDs             = null;
     String[] notifyAddresses           = null;
     String[] requestedClients          = null;
@@ -8114,6 +8281,14 @@ public final class AdminJob
       }
     }
 
+    // Handle the client profiling settings
+    String profileStr =
+         request.getParameter(Constants.SERVLET_PARAM_JOB_PROFILE_SETTINGS);
+    if ((profileStr != null) && (profileStr.trim().length() > 0))
+    {
+      profileSettings = profileStr.trim();
+    }
+
     // Handle the determination to wait for available clients.
     String waitStr =
          request.getParameter(Constants.SERVLET_PARAM_JOB_WAIT_FOR_CLIENTS);
@@ -8342,6 +8517,7 @@ public final class AdminJob
             job.setFolderName(folderName);
             job.setJobDescription(jobDescription);
             job.setWaitForClients(waitForClients);
+            job.setProfileSettings(profileSettings);
             job.setRequestedClients(requestedClients);
             job.setResourceMonitorClients(monitorClients);
             job.setMonitorClientsIfAvailable(monitorClientsIfAvailable);
@@ -9122,6 +9298,18 @@ public final class AdminJob
         }
       }
 
+      // Get the client profiling settings.
+      String profileSettings =
+           request.getParameter(Constants.SERVLET_PARAM_JOB_PROFILE_SETTINGS);
+      if (profileSettings != null)
+      {
+        profileSettings = profileSettings.trim();
+        if (profileSettings.length() == 0)
+        {
+          profileSettings = null;
+        }
+      }
+
       // Get the job dependencies.
       String[] dependencyIDs =
            request.getParameterValues(Constants.SERVLET_PARAM_JOB_DEPENDENCY);
@@ -9211,6 +9399,7 @@ public final class AdminJob
           job.setWaitForClients(waitForClients);
           job.setThreadsPerClient(threadsPerClient);
           job.setThreadStartupDelay(threadStartupDelay);
+          job.setProfileSettings(profileSettings);
           job.setCollectionInterval(collectionInterval);
           job.setDependencies(dependencyIDs);
           job.setNotifyAddresses(notifyAddresses);
@@ -9499,6 +9688,18 @@ public final class AdminJob
                     "\" SIZE=\"80\"></TD>" + EOL);
     htmlBody.append("  </TR>" + EOL);
 
+    // The client profiling settings
+    String profileSettings = job.getProfileSettings();
+    htmlBody.append("  <TR>" + EOL);
+    htmlBody.append("    <TD>Client Profiling Settings</TD>" + EOL);
+    htmlBody.append("    <TD>&nbsp;</TD>" + EOL);
+    htmlBody.append("    <TD><INPUT TYPE=\"TEXT\" NAME=\"" +
+                    Constants.SERVLET_PARAM_JOB_PROFILE_SETTINGS +
+                    "\" VALUE=\"" +
+                    ((profileSettings == null) ? "" : profileSettings) +
+                    "\" SIZE=\"80\"></TD>" + EOL);
+    htmlBody.append("  </TR>" + EOL);
+
     // The job dependencies
     String[] dependencyIDs = job.getDependencies();
     Job[] pendingJobs = scheduler.getPendingJobs();
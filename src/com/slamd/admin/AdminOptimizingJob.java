@@ -4157,12 +4157,73 @@ public final class AdminOptimizingJob
     }
 
 
-    // Get the list of optimizing jobs that have been defined in the config
-    // directory.
+    // Get one page of the optimizing jobs that have been defined in the
+    // config directory, since the folder may contain a very large number.
+    String startAfterJobID =
+         request.getParameter(Constants.SERVLET_PARAM_START_AFTER_JOB_ID);
+    if ((startAfterJobID != null) && (startAfterJobID.length() == 0))
+    {
+      startAfterJobID = null;
+    }
+
+    String nextStartAfterJobID = null;
     OptimizingJob[] optimizingJobs = null;
     try
     {
-      optimizingJobs = configDB.getSummaryOptimizingJobs(folderName);
+      // Keep reading until there is one optimizing job more than fits on the
+      // page or the folder runs out, and list them in the same order that is
+      // used to page through the folder.
+      int pageLimit = ((jobListPageSize > 0) ? (jobListPageSize + 1) : 0);
+      ArrayList<OptimizingJob> optimizingJobList =
+           new ArrayList<OptimizingJob>();
+      String afterJobID = startAfterJobID;
+      boolean unknownFolder = false;
+      while (true)
+      {
+        int batchSize =
+             ((pageLimit > 0) ? (pageLimit - optimizingJobList.size()) : 0);
+        String[] optimizingJobIDs =
+             configDB.getOptimizingJobIDs(folderName, afterJobID, batchSize);
+        if (optimizingJobIDs == null)
+        {
+          unknownFolder = true;
+          break;
+        }
+
+        for (int i=0; i < optimizingJobIDs.length; i++)
+        {
+          afterJobID = optimizingJobIDs[i];
+
+          try
+          {
+            OptimizingJob optimizingJob =
+                 configDB.getSummaryOptimizingJob(optimizingJobIDs[i]);
+            if (optimizingJob != null)
+            {
+              optimizingJobList.add(optimizingJob);
+            }
+          } catch (Exception e) {}
+        }
+
+        if ((batchSize <= 0) || (optimizingJobIDs.length < batchSize) ||
+            (optimizingJobList.size() >= pageLimit))
+        {
+          break;
+        }
+      }
+
+      if (! unknownFolder)
+      {
+        if ((pageLimit > 0) && (optimizingJobList.size() >= pageLimit))
+        {
+          optimizingJobList.remove(optimizingJobList.size() - 1);
+          nextStartAfterJobID = optimizingJobList.get(
+               optimizingJobList.size() - 1).getOptimizingJobID();
+        }
+
+        optimizingJobs = new OptimizingJob[optimizingJobList.size()];
+        optimizingJobList.toArray(optimizingJobs);
+      }
     }
     catch (Exception e)
     {
@@ -4172,6 +4233,10 @@ public final class AdminOptimizingJob
       return;
     }
 
+    htmlBody.append(generateFolderPageLinks(requestInfo,
+                         Constants.SERVLET_SECTION_JOB_VIEW_OPTIMIZING,
+                         folderName, startAfterJobID, nextStartAfterJobID));
+
     if ((optimizingJobs == null) || (optimizingJobs.length == 0))
     {
       if ((folders == null) || (folders.length == 0))
@@ -4212,6 +4277,13 @@ public final class AdminOptimizingJob
                                        folderName) + EOL);
       }
 
+      if (startAfterJobID != null)
+      {
+        htmlBody.append("  " +
+             generateHidden(Constants.SERVLET_PARAM_START_AFTER_JOB_ID,
+                            startAfterJobID) + EOL);
+      }
+
       if (requestInfo.debugHTML)
       {
         htmlBody.append("  " +
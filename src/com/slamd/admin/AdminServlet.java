@@ -356,6 +356,15 @@ public class AdminServlet
 
 
 
+  /**
+   * The maximum number of jobs to display on each page when viewing the
+   * contents of a job folder.  A value that is less than or equal to zero
+   * indicates no limit.
+   */
+  static int jobListPageSize;
+
+
+
   /**
    * The request ID that will be used for the next request.
    */
@@ -704,6 +713,7 @@ public class AdminServlet
     defaultGraphWidth  = Constants.DEFAULT_GRAPH_WIDTH;
     defaultGraphHeight = Constants.DEFAULT_GRAPH_HEIGHT;
     defaultMonitorGraphHeight = Constants.DEFAULT_MONITOR_GRAPH_HEIGHT;
+    jobListPageSize    = Constants.DEFAULT_JOB_LIST_PAGE_SIZE;
     decimalFormat      = new DecimalFormat("0.000");
     webInfBasePath     =  getServletContext().getRealPath(
                                Constants.DEFAULT_WEB_APP_PATH);
@@ -1648,7 +1658,7 @@ public class AdminServlet
       UploadedFile file = null;
       try
       {
-        file = configDB.getUploadedFile(folderName, fileName);
+        file = configDB.getUploadedFileWithoutData(folderName, fileName);
       }
       catch (Exception e)
       {
@@ -2069,24 +2079,13 @@ public class AdminServlet
         }
 
 
-        // Read in the file data.
-        byte[] fileData;
-        int    fileSize;
+        // Open the file so that its data can be streamed into the database.
+        FileInputStream inputStream;
         String fileName;
         try
         {
-          fileName = uploadFile.getName();
-          fileSize = (int) uploadFile.length();
-          fileData = new byte[fileSize];
-
-          int bytesRead = 0;
-          FileInputStream inputStream = new FileInputStream(uploadFile);
-          while (bytesRead < fileSize)
-          {
-            bytesRead += inputStream.read(fileData, bytesRead,
-                                          (fileSize - bytesRead));
-          }
-          inputStream.close();
+          fileName    = uploadFile.getName();
+          inputStream = new FileInputStream(uploadFile);
         }
         catch (Exception e)
         {
@@ -2110,11 +2109,11 @@ public class AdminServlet
 
         // Create the upload file and store it in the config directory.
         UploadedFile uploadedFile = new UploadedFile(fileName, fileType,
-                                                     fileSize, fileDescription,
-                                                     fileData);
+                                                     uploadFile.length(),
+                                                     fileDescription);
         try
         {
-          configDB.writeUploadedFile(uploadedFile, folderName);
+          configDB.writeUploadedFile(uploadedFile, folderName, inputStream);
           infoMessage.append("The file was uploaded successfully.");
           if (inOptimizing)
           {
@@ -2128,9 +2127,9 @@ public class AdminServlet
           }
           return;
         }
-        catch (DatabaseException de)
+        catch (DatabaseException | IOException e)
         {
-          String message = de.getMessage();
+          String message = e.getMessage();
           infoMessage.append("ERROR:  " + message);
           response.addHeader(Constants.RESPONSE_HEADER_ERROR_MESSAGE, message);
           if (inOptimizing)
@@ -2145,6 +2144,13 @@ public class AdminServlet
           }
           return;
         }
+        finally
+        {
+          try
+          {
+            inputStream.close();
+          } catch (IOException ioe) {}
+        }
       }
     }
     else
@@ -2190,22 +2196,28 @@ public class AdminServlet
     String fileName = request.getParameter(Constants.SERVLET_PARAM_FILE_NAME);
 
     UploadedFile file = null;
+    InputStream fileData = null;
     String message = "Unable to retrieve information about file \"" + fileName +
                      "\" from folder \"" + folderName + "\" -- ";
     try
     {
-      file = configDB.getUploadedFile(folderName, fileName);
+      file = configDB.getUploadedFileWithoutData(folderName, fileName);
       if (file == null)
       {
         message += " no uploaded file found matching that criteria.";
       }
+      else
+      {
+        fileData = configDB.getUploadedFileData(folderName, fileName);
+      }
     }
     catch (Exception e)
     {
+      file = null;
       message += e.getMessage();
     }
 
-    if (file == null)
+    if ((file == null) || (fileData == null))
     {
       infoMessage.append(message + "<BR>" + EOL);
       if (inOptimizing)
@@ -2233,12 +2245,32 @@ public class AdminServlet
     response.addHeader("Content-Disposition",
                        "filename=\"" + file.getFileName() + '"');
 
+    // Copy the data one buffer at a time so that large files don't need to be
+    // held in memory.
     try
     {
       OutputStream outputStream = response.getOutputStream();
-      outputStream.write(file.getFileData());
+      byte[] buffer = new byte[8192];
+      while (true)
+      {
+        int bytesRead = fileData.read(buffer);
+        if (bytesRead < 0)
+        {
+          break;
+        }
+
+        outputStream.write(buffer, 0, bytesRead);
+      }
       outputStream.flush();
-    } catch (IOException ioe) {}
+    }
+    catch (IOException ioe) {}
+    finally
+    {
+      try
+      {
+        fileData.close();
+      } catch (IOException ioe) {}
+    }
   }
 
 
@@ -2271,11 +2303,10 @@ public class AdminServlet
 
     try
     {
-      String  fileName     = null;
-      String  fileType     = null;
-      String  fileDesc     = null;
-      int     fileSize     = -1;
-      byte[]  fileData     = null;
+      String   fileName     = null;
+      String   fileType     = null;
+      String   fileDesc     = null;
+      FileItem fileDataItem = null;
 
       Iterator<FileItem> iterator = requestInfo.multipartFieldList.iterator();
       while (iterator.hasNext())
@@ -2293,10 +2324,9 @@ public class AdminServlet
         }
         else if (fieldName.equals(Constants.SERVLET_PARAM_UPLOAD_FILE))
         {
-          fileData = fileItem.get();
-          fileSize = fileData.length;
-          fileType = fileItem.getContentType();
-          fileName = fileItem.getName();
+          fileDataItem = fileItem;
+          fileType     = fileItem.getContentType();
+          fileName     = fileItem.getName();
         }
         else if (fieldName.equals(Constants.SERVLET_PARAM_IN_OPTIMIZING))
         {
@@ -2322,9 +2352,19 @@ public class AdminServlet
         return;
       }
 
-      UploadedFile file = new UploadedFile(fileName, fileType, fileSize,
-                                           fileDesc, fileData);
-      configDB.writeUploadedFile(file, folderName);
+      // Stream the data from the upload into the database rather than reading
+      // it all into memory, since uploaded files may be very large.
+      UploadedFile file = new UploadedFile(fileName, fileType,
+                                           fileDataItem.getSize(), fileDesc);
+      InputStream inputStream = fileDataItem.getInputStream();
+      try
+      {
+        configDB.writeUploadedFile(file, folderName, inputStream);
+      }
+      finally
+      {
+        inputStream.close();
+      }
       infoMessage.append("Successfully uploaded file \"" + fileName + "\"<BR>" +
                          EOL);
     }
@@ -4816,6 +4856,7 @@ public class AdminServlet
 
           newJob.setJobDescription(j.getJobDescription());
           newJob.setWaitForClients(j.waitForClients());
+          newJob.setProfileSettings(j.getProfileSettings());
           newJob.setRequestedClients(j.getRequestedClients());
           newJob.setResourceMonitorClients(j.getResourceMonitorClients());
           newJob.setJobComments(j.getJobComments());
@@ -8089,6 +8130,12 @@ public class AdminServlet
       {
         exportAll = true;
       }
+      else if ((exportChoice != null) &&
+               exportChoice.equals(Constants.EXPORT_CHOICE_JOB_ARCHIVE))
+      {
+        handleJobArchiveExport(requestInfo);
+        return;
+      }
 
       ArrayList<String> realList = new ArrayList<String>();
       ArrayList<String> virtualList  = new ArrayList<String>();
@@ -8245,8 +8292,19 @@ public class AdminServlet
       htmlBody.append("    <OPTION VALUE=\"" +
                       Constants.EXPORT_CHOICE_SELECTED + "\">" +
                       Constants.EXPORT_CHOICE_SELECTED + EOL);
+      htmlBody.append("    <OPTION VALUE=\"" +
+                      Constants.EXPORT_CHOICE_JOB_ARCHIVE + "\">" +
+                      Constants.EXPORT_CHOICE_JOB_ARCHIVE + EOL);
       htmlBody.append("  </SELECT>" + EOL);
       htmlBody.append("  <BR><BR>" + EOL);
+      htmlBody.append("  Job archive start job ID:  <INPUT TYPE=\"TEXT\" " +
+                      "NAME=\"" + Constants.SERVLET_PARAM_EXPORT_START_JOB_ID +
+                      "\" SIZE=\"40\">" + EOL);
+      htmlBody.append("  <BR>" + EOL);
+      htmlBody.append("  Job archive end job ID:  <INPUT TYPE=\"TEXT\" " +
+                      "NAME=\"" + Constants.SERVLET_PARAM_EXPORT_END_JOB_ID +
+                      "\" SIZE=\"40\">" + EOL);
+      htmlBody.append("  <BR><BR>" + EOL);
 
       try
       {
@@ -8315,6 +8373,87 @@ public class AdminServlet
 
 
 
+  /**
+   * Writes the jobs in the range specified in the request to the response as a
+   * compressed job archive.  The caller must already have verified that the
+   * user is allowed to export job data.
+   *
+   * @param  requestInfo  The state information for this request.
+   */
+  static void handleJobArchiveExport(RequestInfo requestInfo)
+  {
+    logMessage(requestInfo, "In handleJobArchiveExport()");
+
+    HttpServletRequest request     = requestInfo.request;
+    StringBuilder      htmlBody    = requestInfo.htmlBody;
+    StringBuilder      infoMessage = requestInfo.infoMessage;
+
+    String startJobID =
+         request.getParameter(Constants.SERVLET_PARAM_EXPORT_START_JOB_ID);
+    if ((startJobID != null) && (startJobID.trim().length() == 0))
+    {
+      startJobID = null;
+    }
+
+    String endJobID =
+         request.getParameter(Constants.SERVLET_PARAM_EXPORT_END_JOB_ID);
+    if ((endJobID != null) && (endJobID.trim().length() == 0))
+    {
+      endJobID = null;
+    }
+
+    String resumeStr =
+         request.getParameter(Constants.SERVLET_PARAM_EXPORT_RESUME);
+    boolean resume = ((resumeStr != null) &&
+                      (resumeStr.equalsIgnoreCase("true") ||
+                       resumeStr.equalsIgnoreCase("on") ||
+                       resumeStr.equalsIgnoreCase("yes") ||
+                       resumeStr.equals("1")));
+
+
+    OutputStream outputStream;
+    try
+    {
+      outputStream = requestInfo.response.getOutputStream();
+    }
+    catch (IOException ioe)
+    {
+      infoMessage.append("Unable to obtain output writer -- " + ioe +
+                         "<BR>" + EOL);
+      htmlBody.append("<SPAN CLASS=\"" + Constants.STYLE_MAIN_HEADER +
+                      "\">Export Failed</SPAN>" + EOL);
+      htmlBody.append("<BR><BR>" + EOL);
+      htmlBody.append("An error occurred that prevented the export from " +
+                      "being processed successfully.");
+      return;
+    }
+
+
+    // As with the folder export, once the output has started there isn't much
+    // that can be done about an error other than to log it.  The archive will
+    // not have an end record, so the client can tell that it is incomplete.
+    requestInfo.generateHTML = false;
+    requestInfo.response.setContentType("application/x-slamd-job-archive");
+    requestInfo.response.addHeader("Content-Disposition",
+                                   "filename=\"slamd_job_archive." +
+                                   dateFormat.format(new Date()) + '"');
+
+    try
+    {
+      configDB.exportJobArchive(startJobID, (! resume), endJobID, (! resume),
+                                outputStream);
+    }
+    catch (Exception e)
+    {
+      slamdServer.logMessage(Constants.LOG_LEVEL_ANY,
+                             "Job archive export failed:  " + e);
+      slamdServer.logMessage(Constants.LOG_LEVEL_EXCEPTION_DEBUG,
+                             JobClass.stackTraceToString(e));
+    }
+  }
+
+
+
   /**
    * Handles all processing required to allow the user to view the set of job
    * classes that have been defined in the SLAMD server, or to view detailed
@@ -2919,6 +2919,37 @@ public final class AdminUI
         htmlBody.append("<B>Access Control Manager</B>" + EOL);
         htmlBody.append("<BR>" + EOL);
         htmlBody.append("<TABLE CELLSPACING=\"0\" BORDER=\"0\">" + EOL);
+        htmlBody.append("  <TR CLASS=\"" +
+                        Constants.STYLE_JOB_SUMMARY_LINE_A + "\">" + EOL);
+        htmlBody.append("    <TD>Cached Users</TD>" + EOL);
+        htmlBody.append("    <TD>" + accessManager.getCacheSize() + "</TD>" +
+                        EOL);
+        htmlBody.append("  </TR>" + EOL);
+        htmlBody.append("  <TR CLASS=\"" +
+                        Constants.STYLE_JOB_SUMMARY_LINE_B + "\">" + EOL);
+        htmlBody.append("    <TD>Cache Hits / Misses</TD>" + EOL);
+        htmlBody.append("    <TD>" + accessManager.getCacheHits() + " / " +
+                        accessManager.getCacheMisses() + "</TD>" + EOL);
+        htmlBody.append("  </TR>" + EOL);
+        htmlBody.append("  <TR CLASS=\"" +
+                        Constants.STYLE_JOB_SUMMARY_LINE_A + "\">" + EOL);
+        htmlBody.append("    <TD>Cache Hit Rate</TD>" + EOL);
+        htmlBody.append("    <TD>" +
+                        decimalFormat.format(
+                             accessManager.getCacheHitPercent()) +
+                        "%</TD>" + EOL);
+        htmlBody.append("  </TR>" + EOL);
+        htmlBody.append("  <TR CLASS=\"" +
+                        Constants.STYLE_JOB_SUMMARY_LINE_B + "\">" + EOL);
+        htmlBody.append("    <TD>Average Lookup Time (ms)</TD>" + EOL);
+        htmlBody.append("    <TD>" +
+                        decimalFormat.format(
+                             accessManager.getAverageLookupMillis()) +
+                        "</TD>" + EOL);
+        htmlBody.append("  </TR>" + EOL);
+        htmlBody.append("</TABLE>" + EOL);
+        htmlBody.append("<BR>" + EOL);
+        htmlBody.append("<TABLE CELLSPACING=\"0\" BORDER=\"0\">" + EOL);
 
         // The "Restart ACL Manager" Button
         htmlBody.append("  <TR>" + EOL);
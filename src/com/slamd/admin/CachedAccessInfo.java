@@ -0,0 +1,157 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.admin;
+
+
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+
+/**
+ * This class defines a data structure used by the access manager to cache the
+ * set of protected resources that a user may access.  A cached entry may also
+ * record that the user could not be found in the user directory, so that
+ * repeated requests for an unknown user do not each require a search.  Each
+ * entry has a refresh time after which it should be reloaded in the background
+ * and a later expiration time after which it should no longer be used.
+ */
+final class CachedAccessInfo
+{
+  // Indicates whether a background refresh is pending for this entry.
+  private final AtomicBoolean refreshPending;
+
+  // The time at which this entry expires and should no longer be used.
+  private final long expirationTime;
+
+  // The time at which this entry should be refreshed in the background.
+  private final long refreshTime;
+
+  // The time at which this entry was most recently used.
+  private volatile long lastAccessTime;
+
+  // The names of the resources that the user may access, or null if the user
+  // could not be found.
+  private final String[] accessibleResources;
+
+
+
+  /**
+   * Creates a new cached access entry with the provided information.
+   *
+   * @param  accessibleResources  The names of the resources that the user may
+   *                              access, or {@code null} if the user could not
+   *                              be found in the user directory.
+   * @param  createTime           The time at which the information was read
+   *                              from the user directory.
+   * @param  timeToLive           The length of time in milliseconds that the
+   *                              entry may be used.
+   */
+  CachedAccessInfo(String[] accessibleResources, long createTime,
+                   long timeToLive)
+  {
+    this.accessibleResources = accessibleResources;
+
+    expirationTime = createTime + timeToLive;
+    refreshTime    = createTime + (timeToLive * 3 / 4);
+    lastAccessTime = createTime;
+    refreshPending = new AtomicBoolean(false);
+  }
+
+
+
+  /**
+   * Retrieves the names of the resources that the user may access.
+   *
+   * @return  The names of the resources that the user may access, or
+   *          {@code null} if the user could not be found in the user
+   *          directory.
+   */
+  String[] getAccessibleResources()
+  {
+    return accessibleResources;
+  }
+
+
+
+  /**
+   * Indicates whether this entry records that the user could not be found in
+   * the user directory.
+   *
+   * @return  {@code true} if the user could not be found, or {@code false} if
+   *          this entry holds the set of resources that the user may access.
+   */
+  boolean userNotFound()
+  {
+    return (accessibleResources == null);
+  }
+
+
+
+  /**
+   * Indicates whether this entry has expired and should no longer be used.
+   *
+   * @param  now  The current time.
+   *
+   * @return  {@code true} if this entry has expired, or {@code false} if not.
+   */
+  boolean isExpired(long now)
+  {
+    return (now >= expirationTime);
+  }
+
+
+
+  /**
+   * Marks this entry as needing a background refresh if it has reached its
+   * refresh time and no refresh has been requested yet.  Only the first caller
+   * to do so will be told to schedule the refresh.
+   *
+   * @param  now  The current time.
+   *
+   * @return  {@code true} if the caller should schedule a refresh of this
+   *          entry, or {@code false} if not.
+   */
+  boolean startRefresh(long now)
+  {
+    return ((now >= refreshTime) && refreshPending.compareAndSet(false, true));
+  }
+
+
+
+  /**
+   * Retrieves the time at which this entry was most recently used.
+   *
+   * @return  The time at which this entry was most recently used.
+   */
+  long getLastAccessTime()
+  {
+    return lastAccessTime;
+  }
+
+
+
+  /**
+   * Specifies the time at which this entry was most recently used.
+   *
+   * @param  lastAccessTime  The time at which this entry was most recently
+   *                         used.
+   */
+  void setLastAccessTime(long lastAccessTime)
+  {
+    this.lastAccessTime = lastAccessTime;
+  }
+}
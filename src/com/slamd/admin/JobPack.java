@@ -37,6 +37,7 @@ import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 
 import com.slamd.common.Constants;
+import com.slamd.common.JobPackArchive;
 import com.slamd.job.JobClass;
 import com.slamd.server.SLAMDServer;
 import com.slamd.server.SLAMDServerException;
@@ -398,6 +399,29 @@ public class JobPack
     }
 
 
+    // Keep a copy of the job pack itself so that it can be sent to clients as
+    // a single archive rather than one class at a time.
+    try
+    {
+      JobPackArchive archive =
+           slamdServer.getJobPackRepository().addJobPack(fileData);
+      htmlBody.append("<B>Stored job pack archive</B>" + Constants.EOL);
+      htmlBody.append("<UL>" + Constants.EOL);
+      htmlBody.append("  <LI>" + archive.getFile().getAbsolutePath() +
+                      "</LI>" + Constants.EOL);
+      htmlBody.append("</UL>" + Constants.EOL);
+      htmlBody.append("<BR><BR>" + Constants.EOL);
+    }
+    catch (SLAMDServerException sse)
+    {
+      // This isn't fatal, since clients can still retrieve the classes
+      // individually.
+      htmlBody.append("<B>Unable to store job pack archive:  " +
+                      sse.getMessage() + "</B>" + Constants.EOL);
+      htmlBody.append("<BR><BR>" + Constants.EOL);
+    }
+
+
     // Finally, parse the manifest to get the names of the classes that should
     // be registered with the SLAMD server.
     Attributes manifestAttributes = manifest.getMainAttributes();
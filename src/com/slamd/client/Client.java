@@ -46,14 +46,17 @@ import com.slamd.common.SLAMDException;
 import com.slamd.job.JobClass;
 import com.slamd.message.ClassTransferResponseMessage;
 import com.slamd.message.ClientHelloMessage;
+import com.slamd.message.FileStageRequestMessage;
 import com.slamd.message.HelloResponseMessage;
 import com.slamd.message.JobCompletedMessage;
 import com.slamd.message.JobControlRequestMessage;
 import com.slamd.message.JobControlResponseMessage;
+import com.slamd.message.JobPackResponseMessage;
 import com.slamd.message.JobRequestMessage;
 import com.slamd.message.JobResponseMessage;
 import com.slamd.message.KeepAliveMessage;
 import com.slamd.message.Message;
+import com.slamd.message.RateQuotaMessage;
 import com.slamd.message.ServerShutdownMessage;
 import com.slamd.message.StatusRequestMessage;
 import com.slamd.message.StatusResponseMessage;
@@ -163,6 +166,9 @@ public class Client
   // The local definition of a job that is currently defined
   private ClientSideJob jobInProgress;
 
+  // The cache of job pack archives retrieved from the server.
+  private JobPackCache jobPackCache;
+
   // The type of authentication that the client will perform with the SLAMD
   // server.
   private int authType;
@@ -173,6 +179,10 @@ public class Client
   // Specifies the message ID of the next message the client will send.
   private int messageID;
 
+  // The number of child processes among which the threads for each job should
+  // be divided, or one if jobs should be run in this process.
+  private int numChildProcesses;
+
   // The port number that will be used to communicate with the SLAMD server.
   private int serverPort;
 
@@ -206,6 +216,9 @@ public class Client
   // will be written
   private String classPath;
 
+  // The processor lists with which child processes should be pinned, if any.
+  private String childCPUSets;
+
   // The address of the SLAMD server to which the client will authenticate.
   private String serverAddress;
 
@@ -561,6 +574,8 @@ public class Client
       throw new ClientException("No job class path specified", false);
     }
 
+    jobPackCache = new JobPackCache(classPath);
+
 
     // Indicate that the client has not yet received a stop request for the
     // current job.
@@ -574,6 +589,8 @@ public class Client
     aggregateThreadData = false;
     clientState         = Constants.CLIENT_STATE_NOT_CONNECTED;
     messageID           = 0;
+    numChildProcesses   = 1;
+    childCPUSets        = null;
 
 
     // Next, establish the connection to the server.  If it can't be done, then
@@ -925,6 +942,31 @@ public class Client
 
 
 
+  /**
+   * Specifies that each job should be run in the given number of child client
+   * processes, with the job threads divided among them, rather than in this
+   * process.  The SLAMD server will still see a single client, and the thread
+   * IDs of the stat trackers will identify the process that collected them.
+   *
+   * @param  numChildProcesses  The number of child processes to use for each
+   *                            job.  A value of one or less indicates that
+   *                            jobs should be run in this process.
+   * @param  childCPUSets       The processor lists with which the child
+   *                            processes should be pinned, separated by
+   *                            slashes, or
+   *                            {@code ClientProcessGroup.CPU_SETS_AUTO} to
+   *                            divide the available processors evenly.  It
+   *                            may be {@code null} if the processes should
+   *                            not be pinned.
+   */
+  public void setChildProcesses(int numChildProcesses, String childCPUSets)
+  {
+    this.numChildProcesses = numChildProcesses;
+    this.childCPUSets      = childCPUSets;
+  }
+
+
+
   /**
    * Indicates whether the connection between the client and the server is using
    * SSL.
@@ -991,6 +1033,18 @@ public class Client
 
 
 
+  /**
+   * Retrieves the cache of job pack archives retrieved from the server.
+   *
+   * @return  The cache of job pack archives retrieved from the server.
+   */
+  public JobPackCache getJobPackCache()
+  {
+    return jobPackCache;
+  }
+
+
+
   /**
    * Retrieves the user-friendly client ID that should show up in log messages.
    *
@@ -1277,6 +1331,51 @@ public class Client
           }
         }
       }
+      else if (message instanceof JobPackResponseMessage)
+      {
+        // Received a job pack response.  Store the archive if it was included,
+        // and remember which archive is current for the requested class.  If
+        // the server doesn't have a job pack for the class, then any class
+        // transfer request will have been handled separately.
+        JobPackResponseMessage packResponse = (JobPackResponseMessage) message;
+        if (messageWriter.usingVerboseMode())
+        {
+          writeVerbose("Received a job pack response");
+          writeVerbose(packResponse.toString());
+        }
+
+        String className = packResponse.getClassName();
+        if (packResponse.getResponseCode() ==
+            Constants.MESSAGE_RESPONSE_SUCCESS)
+        {
+          String packHash = packResponse.getPackHash();
+          byte[] packData = packResponse.getPackData();
+          try
+          {
+            if (packData.length > 0)
+            {
+              jobPackCache.store(packHash, packData);
+              writeVerbose("Stored job pack " + packHash + " (" +
+                           packData.length + " bytes)");
+            }
+
+            if (! jobPackCache.setCurrentArchive(className, packHash))
+            {
+              writeMessage("Job pack " + packHash + " for class " + className +
+                           " is not available in the local cache");
+            }
+          }
+          catch (Exception e)
+          {
+            jobPackCache.clearCurrentArchive(className);
+            writeMessage("Unable to store job pack " + packHash + ":  " + e);
+          }
+        }
+        else
+        {
+          jobPackCache.clearCurrentArchive(className);
+        }
+      }
       else if (message instanceof KeepAliveMessage)
       {
         // Received a keepalive message.  Ignore it.
@@ -1297,6 +1396,34 @@ public class Client
         }
         handleStatusRequestMessage((StatusRequestMessage) message);
       }
+      else if (message instanceof FileStageRequestMessage)
+      {
+        // The server would like us to retrieve the files for an upcoming job
+        // ahead of time.  Do that in the background.
+        if (messageWriter.usingVerboseMode())
+        {
+          writeVerbose("Received a file stage request message");
+          writeVerbose(message.toString());
+        }
+
+        new FileStageThread(this, (FileStageRequestMessage) message).start();
+      }
+      else if (message instanceof RateQuotaMessage)
+      {
+        // Received a new share of the rate for a job using coordinated rate
+        // limiting.  Pass it along to the job.
+        if (messageWriter.usingVerboseMode())
+        {
+          writeVerbose("Received a rate quota message");
+          writeVerbose(message.toString());
+        }
+
+        ClientSideJob job = jobInProgress;
+        if (job != null)
+        {
+          job.rateQuotaReceived((RateQuotaMessage) message);
+        }
+      }
       else if (message instanceof ServerShutdownMessage)
       {
         // Received a server shutdown message.  We're done.
@@ -1554,6 +1681,8 @@ public class Client
                                           threadStartupDelay, parameters,
                                           useCustomClassLoader,
                                           enableRealTimeStats, statReporter);
+        jobInProgress.setProfileSettings(request.getProfileSettings());
+        jobInProgress.setChildProcesses(numChildProcesses, childCPUSets);
         response = new JobResponseMessage(request.getMessageID(), jobID,
                             Constants.MESSAGE_RESPONSE_SUCCESS,
                             "Accepted job " + jobID + " for processing");
@@ -1772,6 +1901,7 @@ public class Client
       StatTracker[] statTrackers =
            jobInProgress.getStatTrackers(aggregateThreadData);
       String[] logMessages = jobInProgress.getLogMessages();
+      byte[] profileData = jobInProgress.getProfileData();
 
       JobCompletedMessage msg = new JobCompletedMessage(getMessageID(),
                                                         jobID, jobState,
@@ -1779,7 +1909,8 @@ public class Client
                                                         actualStopTime,
                                                         actualDuration,
                                                         statTrackers,
-                                                        logMessages);
+                                                        logMessages,
+                                                        profileData);
 
 
       try
@@ -1867,8 +1998,13 @@ public class Client
   void writeElement(final ASN1Element element)
        throws IOException
   {
-    ASN1Writer.writeElement(element, outputStream);
-    outputStream.flush();
+    // Job threads may send messages while the main client thread is also
+    // sending responses, so make sure that they can't interleave.
+    synchronized (outputStream)
+    {
+      ASN1Writer.writeElement(element, outputStream);
+      outputStream.flush();
+    }
   }
 }
 
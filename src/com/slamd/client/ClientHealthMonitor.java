@@ -0,0 +1,613 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.client;
+
+
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import com.slamd.common.Constants;
+import com.slamd.stat.FloatValueTracker;
+import com.slamd.stat.IntegerValueTracker;
+import com.slamd.stat.StatTracker;
+
+
+
+/**
+ * This class defines a thread that monitors the health of the client JVM while
+ * a job is running, so that it is possible to tell whether the response times
+ * measured by the job may have been inflated because the client itself was
+ * overloaded rather than because the target server was slow.  Once per
+ * collection interval, it captures the CPU utilization of the client process,
+ * the time spent in and number of garbage collections, the rate at which
+ * memory was allocated, and the number of runnable threads per available
+ * processor.  A separate thread repeatedly sleeps for a very short time and
+ * measures how much later than requested it wakes up, which captures
+ * scheduling delays from any cause, including safepoint pauses and CPU
+ * contention from other processes.
+ * <BR><BR>
+ * The statistics are reported along with those of the job.  When the job
+ * completes, a warning is written to the job's log if any collection interval
+ * exceeded the configured saturation thresholds.  Those thresholds may be
+ * changed with the Java properties defined in the {@code Constants} class.
+ */
+public class ClientHealthMonitor
+       extends Thread
+{
+  /**
+   * The display name of the stat tracker used to report the CPU utilization of
+   * the client process as a percentage of all available processors.
+   */
+  public static final String STAT_TRACKER_PROCESS_CPU =
+       "Client Process CPU Utilization (%)";
+
+
+
+  /**
+   * The display name of the stat tracker used to report the time spent in
+   * garbage collection.
+   */
+  public static final String STAT_TRACKER_GC_TIME =
+       "Client GC Pause Time (ms)";
+
+
+
+  /**
+   * The display name of the stat tracker used to report the number of garbage
+   * collections.
+   */
+  public static final String STAT_TRACKER_GC_COUNT = "Client GC Count";
+
+
+
+  /**
+   * The display name of the stat tracker used to report the rate at which
+   * memory is allocated.
+   */
+  public static final String STAT_TRACKER_ALLOCATION_RATE =
+       "Client Allocation Rate (MB/s)";
+
+
+
+  /**
+   * The display name of the stat tracker used to report the number of runnable
+   * threads per available processor.
+   */
+  public static final String STAT_TRACKER_RUNNABLE_THREADS =
+       "Client Runnable Threads per Processor";
+
+
+
+  /**
+   * The display name of the stat tracker used to report the longest scheduling
+   * delay observed by the hiccup thread.
+   */
+  public static final String STAT_TRACKER_SCHEDULING_LAG =
+       "Client Maximum Scheduling Lag (ms)";
+
+
+
+  /**
+   * The default threshold for the process CPU utilization, as a percentage of
+   * all available processors, above which the client will be considered
+   * saturated.
+   */
+  public static final int DEFAULT_CPU_THRESHOLD = 90;
+
+
+
+  /**
+   * The default threshold for the time spent in garbage collection, as a
+   * percentage of the collection interval, above which the client will be
+   * considered saturated.
+   */
+  public static final int DEFAULT_GC_THRESHOLD = 10;
+
+
+
+  /**
+   * The default threshold for the maximum scheduling lag, in milliseconds,
+   * above which the client will be considered saturated.
+   */
+  public static final int DEFAULT_SCHEDULING_LAG_THRESHOLD = 50;
+
+
+
+  // The interval in milliseconds that the hiccup thread will sleep.
+  private static final long HICCUP_SLEEP_MILLIS = 1L;
+
+
+
+  // The job whose client is being monitored.
+  private final ClientSideJob job;
+
+  // The stat trackers used to report the client health.
+  private final FloatValueTracker   allocationRate;
+  private final FloatValueTracker   gcTime;
+  private final FloatValueTracker   processCPU;
+  private final FloatValueTracker   runnableThreads;
+  private final FloatValueTracker   schedulingLag;
+  private final IntegerValueTracker gcCount;
+
+  // The values collected for each interval.
+  private final ArrayList<Double>  allocationList;
+  private final ArrayList<Double>  gcTimeList;
+  private final ArrayList<Double>  processCPUList;
+  private final ArrayList<Double>  runnableThreadsList;
+  private final ArrayList<Double>  schedulingLagList;
+  private final ArrayList<Integer> gcCountList;
+
+  // The amount of memory allocated by each live thread as of the last sample,
+  // so that memory allocated by threads that exit is not counted twice.
+  private final HashMap<Long,Long> threadAllocations;
+
+  // The management beans used to obtain the information.
+  private final List<GarbageCollectorMXBean> gcBeans;
+  private final OperatingSystemMXBean        osBean;
+  private final ThreadMXBean                 threadBean;
+
+  // The collection interval in seconds.
+  private final int collectionInterval;
+
+  // The number of available processors.
+  private final int numProcessors;
+
+  // The thresholds above which the client will be considered saturated.
+  private final int cpuThreshold;
+  private final int gcThreshold;
+  private final int schedulingLagThreshold;
+
+  // The longest scheduling delay in nanoseconds observed by the hiccup thread
+  // during the current interval.
+  private long maxLagNanos;
+
+  // A mutex used to protect access to the maximum lag.
+  private final Object lagMutex;
+
+  // Indicates whether the monitor has been asked to stop, whether it has
+  // stopped, and whether the collected data has been stored in the trackers.
+  private volatile boolean hasStopped;
+  private volatile boolean shouldStop;
+  private volatile boolean statsAvailable;
+
+
+
+  /**
+   * Creates a new client health monitor for the provided job.
+   *
+   * @param  job                 The job whose client should be monitored.
+   * @param  clientID            The client ID to use for the stat trackers.
+   * @param  collectionInterval  The statistics collection interval in seconds.
+   */
+  public ClientHealthMonitor(ClientSideJob job, String clientID,
+                             int collectionInterval)
+  {
+    this.job                = job;
+    this.collectionInterval = (collectionInterval > 0)
+                              ? collectionInterval
+                              : Constants.DEFAULT_COLLECTION_INTERVAL;
+
+    String threadID = "health";
+    processCPU = new FloatValueTracker(clientID, threadID,
+                                       STAT_TRACKER_PROCESS_CPU,
+                                       this.collectionInterval);
+    gcTime = new FloatValueTracker(clientID, threadID, STAT_TRACKER_GC_TIME,
+                                   this.collectionInterval);
+    gcCount = new IntegerValueTracker(clientID, threadID,
+                                      STAT_TRACKER_GC_COUNT,
+                                      this.collectionInterval);
+    allocationRate = new FloatValueTracker(clientID, threadID,
+                                           STAT_TRACKER_ALLOCATION_RATE,
+                                           this.collectionInterval);
+    runnableThreads = new FloatValueTracker(clientID, threadID,
+                                            STAT_TRACKER_RUNNABLE_THREADS,
+                                            this.collectionInterval);
+    schedulingLag = new FloatValueTracker(clientID, threadID,
+                                          STAT_TRACKER_SCHEDULING_LAG,
+                                          this.collectionInterval);
+
+    allocationList      = new ArrayList<Double>();
+    gcTimeList          = new ArrayList<Double>();
+    processCPUList      = new ArrayList<Double>();
+    runnableThreadsList = new ArrayList<Double>();
+    schedulingLagList   = new ArrayList<Double>();
+    gcCountList         = new ArrayList<Integer>();
+    threadAllocations   = new HashMap<Long,Long>();
+
+    gcBeans       = ManagementFactory.getGarbageCollectorMXBeans();
+    osBean        = ManagementFactory.getOperatingSystemMXBean();
+    threadBean    = ManagementFactory.getThreadMXBean();
+    numProcessors = Runtime.getRuntime().availableProcessors();
+
+    cpuThreshold = getThreshold(Constants.PROPERTY_CLIENT_CPU_THRESHOLD,
+                                DEFAULT_CPU_THRESHOLD);
+    gcThreshold = getThreshold(Constants.PROPERTY_CLIENT_GC_THRESHOLD,
+                               DEFAULT_GC_THRESHOLD);
+    schedulingLagThreshold =
+         getThreshold(Constants.PROPERTY_CLIENT_SCHEDULING_LAG_THRESHOLD,
+                      DEFAULT_SCHEDULING_LAG_THRESHOLD);
+
+    lagMutex    = new Object();
+    maxLagNanos = 0L;
+    hasStopped     = false;
+    shouldStop     = false;
+    statsAvailable = false;
+
+    setName("Client Health Monitor");
+    setDaemon(true);
+  }
+
+
+
+  /**
+   * Retrieves the value of the specified threshold from the Java properties.
+   *
+   * @param  propertyName  The name of the Java property that may be used to
+   *                       override the threshold.
+   * @param  defaultValue  The value to use if the property is not set or does
+   *                       not contain a valid integer.
+   *
+   * @return  The value to use for the threshold.
+   */
+  private static int getThreshold(String propertyName, int defaultValue)
+  {
+    String value = System.getProperty(propertyName);
+    if (value != null)
+    {
+      try
+      {
+        return Integer.parseInt(value.trim());
+      } catch (NumberFormatException nfe) {}
+    }
+
+    return defaultValue;
+  }
+
+
+
+  /**
+   * Captures the client health information once per collection interval until
+   * the monitor is stopped.
+   */
+  @Override()
+  public void run()
+  {
+    Thread hiccupThread = new Thread("Client Hiccup Monitor")
+    {
+      @Override()
+      public void run()
+      {
+        measureHiccups();
+      }
+    };
+    hiccupThread.setDaemon(true);
+    hiccupThread.start();
+
+    long   intervalMillis   = 1000L * collectionInterval;
+    long   nextSampleTime   = System.currentTimeMillis() + intervalMillis;
+    long[] previousCounters = getCounters();
+    long   previousTime     = System.nanoTime();
+
+    while (! shouldStop)
+    {
+      long sleepTime = nextSampleTime - System.currentTimeMillis();
+      if (sleepTime > 0L)
+      {
+        try
+        {
+          Thread.sleep(Math.min(sleepTime, 100L));
+        } catch (InterruptedException ie) {}
+        continue;
+      }
+
+      nextSampleTime += intervalMillis;
+
+      long[] counters = getCounters();
+      long   now      = System.nanoTime();
+      takeSample(previousCounters, counters, now - previousTime);
+      previousCounters = counters;
+      previousTime     = now;
+    }
+
+    hasStopped = true;
+  }
+
+
+
+  /**
+   * Repeatedly sleeps for a very short period of time, keeping track of the
+   * longest amount of time beyond that period that passed before the thread
+   * woke up.
+   */
+  private void measureHiccups()
+  {
+    long sleepNanos = HICCUP_SLEEP_MILLIS * 1000000L;
+    while (! shouldStop)
+    {
+      long start = System.nanoTime();
+      try
+      {
+        Thread.sleep(HICCUP_SLEEP_MILLIS);
+      } catch (InterruptedException ie) {}
+
+      long lag = System.nanoTime() - start - sleepNanos;
+      synchronized (lagMutex)
+      {
+        if (lag > maxLagNanos)
+        {
+          maxLagNanos = lag;
+        }
+      }
+    }
+  }
+
+
+
+  /**
+   * Retrieves the current values of the cumulative counters used to compute
+   * the client health information.
+   *
+   * @return  An array containing the process CPU time in nanoseconds, the total
+   *          garbage collection time in milliseconds, the total number of
+   *          garbage collections, and the number of bytes allocated by all
+   *          threads since the counters were last retrieved.  The CPU time
+   *          and allocated bytes will be -1 if they are not available.
+   */
+  private long[] getCounters()
+  {
+    long cpuTime = -1L;
+    if (osBean instanceof com.sun.management.OperatingSystemMXBean)
+    {
+      cpuTime = ((com.sun.management.OperatingSystemMXBean) osBean).
+                     getProcessCpuTime();
+    }
+
+    long collectionTime  = 0L;
+    long collectionCount = 0L;
+    for (GarbageCollectorMXBean gcBean : gcBeans)
+    {
+      collectionTime  += Math.max(0L, gcBean.getCollectionTime());
+      collectionCount += Math.max(0L, gcBean.getCollectionCount());
+    }
+
+    return new long[]
+    {
+      cpuTime,
+      collectionTime,
+      collectionCount,
+      getAllocatedBytes()
+    };
+  }
+
+
+
+  /**
+   * Retrieves the total number of bytes allocated by all threads since the
+   * previous call to this method.
+   *
+   * @return  The number of bytes allocated since the previous call to this
+   *          method, or -1 if that information is not available.
+   */
+  private long getAllocatedBytes()
+  {
+    if (! (threadBean instanceof com.sun.management.ThreadMXBean))
+    {
+      return -1L;
+    }
+
+    com.sun.management.ThreadMXBean bean =
+         (com.sun.management.ThreadMXBean) threadBean;
+    if (! bean.isThreadAllocatedMemoryEnabled())
+    {
+      return -1L;
+    }
+
+    long[] threadIDs = bean.getAllThreadIds();
+    long[] allocated = bean.getThreadAllocatedBytes(threadIDs);
+
+    long total = 0L;
+    HashMap<Long,Long> previousAllocations =
+         new HashMap<Long,Long>(threadAllocations);
+    threadAllocations.clear();
+    for (int i=0; i < threadIDs.length; i++)
+    {
+      if (allocated[i] < 0L)
+      {
+        continue;
+      }
+
+      Long previous = previousAllocations.get(threadIDs[i]);
+      total += allocated[i] - ((previous == null) ? 0L : previous);
+      threadAllocations.put(threadIDs[i], allocated[i]);
+    }
+
+    return total;
+  }
+
+
+
+  /**
+   * Computes the client health information for the interval between the two
+   * provided sets of counters and records it.
+   *
+   * @param  previous      The counters at the start of the interval.
+   * @param  current       The counters at the end of the interval.
+   * @param  elapsedNanos  The length of the interval in nanoseconds.
+   */
+  private void takeSample(long[] previous, long[] current, long elapsedNanos)
+  {
+    double elapsedSeconds = elapsedNanos / 1.0e9;
+
+    double cpu = 0.0;
+    if ((current[0] >= 0L) && (previous[0] >= 0L))
+    {
+      cpu = 100.0 * (current[0] - previous[0]) /
+            (elapsedNanos * (double) numProcessors);
+    }
+
+    double allocation = 0.0;
+    if (current[3] >= 0L)
+    {
+      allocation = current[3] / (1024.0 * 1024.0 * elapsedSeconds);
+    }
+
+    long lagNanos;
+    synchronized (lagMutex)
+    {
+      lagNanos    = maxLagNanos;
+      maxLagNanos = 0L;
+    }
+
+    processCPUList.add(cpu);
+    gcTimeList.add((double) (current[1] - previous[1]));
+    gcCountList.add((int) (current[2] - previous[2]));
+    allocationList.add(allocation);
+    runnableThreadsList.add(1.0 * countRunnableThreads() / numProcessors);
+    schedulingLagList.add(lagNanos / 1000000.0);
+  }
+
+
+
+  /**
+   * Determines the number of live threads that are currently runnable.  Note
+   * that the JVM considers a thread blocked in a native call, including a
+   * socket read, to be runnable.
+   *
+   * @return  The number of live threads that are currently runnable.
+   */
+  private int countRunnableThreads()
+  {
+    int runnable = 0;
+    for (ThreadInfo info :
+         threadBean.getThreadInfo(threadBean.getAllThreadIds(), 0))
+    {
+      if ((info != null) && (info.getThreadState() == State.RUNNABLE))
+      {
+        runnable++;
+      }
+    }
+
+    return runnable;
+  }
+
+
+
+  /**
+   * Stops the monitor and waits for it to finish.  The collected data will then
+   * be made available in the stat trackers, and a warning will be written to
+   * the job's log if any interval exceeded the saturation thresholds.
+   */
+  public void stopAndWait()
+  {
+    shouldStop = true;
+    interrupt();
+    while (! hasStopped)
+    {
+      try
+      {
+        Thread.sleep(10);
+      } catch (InterruptedException ie) {}
+    }
+
+    int numIntervals = processCPUList.size();
+    int[]    countArray      = new int[numIntervals];
+    int[]    gcCountArray    = new int[numIntervals];
+    double[] allocationArray = new double[numIntervals];
+    double[] cpuArray        = new double[numIntervals];
+    double[] gcTimeArray     = new double[numIntervals];
+    double[] lagArray        = new double[numIntervals];
+    double[] runnableArray   = new double[numIntervals];
+
+    int    saturatedIntervals = 0;
+    double peakCPU            = 0.0;
+    double peakGCPercent      = 0.0;
+    double peakLag            = 0.0;
+    for (int i=0; i < numIntervals; i++)
+    {
+      countArray[i]      = 1;
+      cpuArray[i]        = processCPUList.get(i);
+      gcTimeArray[i]     = gcTimeList.get(i);
+      gcCountArray[i]    = gcCountList.get(i);
+      allocationArray[i] = allocationList.get(i);
+      runnableArray[i]   = runnableThreadsList.get(i);
+      lagArray[i]        = schedulingLagList.get(i);
+
+      double gcPercent = gcTimeArray[i] / (10.0 * collectionInterval);
+      peakCPU       = Math.max(peakCPU, cpuArray[i]);
+      peakGCPercent = Math.max(peakGCPercent, gcPercent);
+      peakLag       = Math.max(peakLag, lagArray[i]);
+
+      if ((cpuArray[i] > cpuThreshold) || (gcPercent > gcThreshold) ||
+          (lagArray[i] > schedulingLagThreshold))
+      {
+        saturatedIntervals++;
+      }
+    }
+
+    processCPU.setIntervalData(cpuArray, countArray);
+    gcTime.setIntervalData(gcTimeArray, countArray);
+    gcCount.setIntervalData(gcCountArray, countArray);
+    allocationRate.setIntervalData(allocationArray, countArray);
+    runnableThreads.setIntervalData(runnableArray, countArray);
+    schedulingLag.setIntervalData(lagArray, countArray);
+    statsAvailable = true;
+
+    if (saturatedIntervals > 0)
+    {
+      job.logMessage(getName(),
+           "WARNING:  The client may have been saturated during " +
+           saturatedIntervals + " of " + numIntervals +
+           " collection intervals (peak process CPU utilization " +
+           Math.round(peakCPU) + "%, peak GC pause time " +
+           Math.round(peakGCPercent) + "% of the interval, peak " +
+           "scheduling lag " + Math.round(peakLag) + "ms).  Response " +
+           "times measured on this client may be inflated.");
+    }
+  }
+
+
+
+  /**
+   * Retrieves the stat trackers containing the client health information.
+   * No trackers will be returned until the monitor has been stopped.
+   *
+   * @return  The stat trackers containing the client health information.
+   */
+  public StatTracker[] getStatTrackers()
+  {
+    if (! statsAvailable)
+    {
+      return new StatTracker[0];
+    }
+
+    return new StatTracker[]
+    {
+      processCPU,
+      gcTime,
+      gcCount,
+      allocationRate,
+      runnableThreads,
+      schedulingLag
+    };
+  }
+}
@@ -0,0 +1,981 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.client;
+
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.StringTokenizer;
+
+import com.unboundid.asn1.ASN1Element;
+import com.unboundid.asn1.ASN1Integer;
+import com.unboundid.asn1.ASN1Sequence;
+import com.unboundid.asn1.ASN1StreamReader;
+import com.unboundid.asn1.ASN1Writer;
+import com.unboundid.util.StaticUtils;
+
+import com.slamd.common.Constants;
+import com.slamd.parameter.BooleanParameter;
+import com.slamd.parameter.IntegerParameter;
+import com.slamd.parameter.LabelParameter;
+import com.slamd.parameter.Parameter;
+import com.slamd.parameter.ParameterList;
+import com.slamd.parameter.PlaceholderParameter;
+import com.slamd.stat.StatEncoder;
+import com.slamd.stat.StatTracker;
+
+
+
+/**
+ * This class defines a thread that runs a job in a number of child client
+ * processes rather than in the current JVM, so that a single client system
+ * with a large number of processors is not limited by the garbage collection
+ * and allocation contention of a single JVM.  The job threads are divided as
+ * evenly as possible among the child processes, and each process may be pinned
+ * to its own subset of the processors with the {@code taskset} command where
+ * it is available.  Each child process is a standalone client that writes its
+ * stat trackers to a results file when the job completes, and this thread
+ * waits for all of them to exit and then merges those results so that the
+ * SLAMD server sees a single client.  The thread IDs of the trackers identify
+ * the process that collected them, so the per-process breakdown is retained.
+ * <BR><BR>
+ * Child processes are stopped by writing a stop command to their standard
+ * input, and will also stop if their standard input is closed because the
+ * parent process has exited.
+ */
+public final class ClientProcessGroup
+       extends Thread
+{
+  /**
+   * The name of the class that will be run in each child process.
+   */
+  public static final String CHILD_MAIN_CLASS =
+       "com.slamd.tools.StandaloneClient";
+
+
+
+  /**
+   * The command written to the standard input of a child process to ask it to
+   * stop.  It will be followed by a space and the stop reason.
+   */
+  public static final String STOP_COMMAND = "stop";
+
+
+
+  /**
+   * The value that may be used for the CPU sets to indicate that the available
+   * processors should be divided evenly among the child processes.
+   */
+  public static final String CPU_SETS_AUTO = "auto";
+
+
+
+  /**
+   * The character used to separate the processor lists for the individual
+   * child processes in a CPU set specification.
+   */
+  public static final char CPU_SET_SEPARATOR = '/';
+
+
+
+  /**
+   * The thread ID used for messages logged on behalf of the child processes.
+   */
+  static final String PROCESS_THREAD_ID = "Client Process Group";
+
+
+
+  /**
+   * The names of the job parameters that hold per-client limits.  Each child
+   * process is given a share of these limits in proportion to the number of
+   * threads it runs, so that the client as a whole honors the configured
+   * values.
+   */
+  static final String[] PER_CLIENT_LIMIT_PARAMETER_NAMES =
+  {
+    "maxRate",
+    "max_rate",
+    "latencyTargetInitialRate",
+    "maxOutstandingRequests"
+  };
+
+
+
+  /**
+   * The name of the job parameter that indicates whether the request rate is
+   * coordinated across clients by the server.  The child processes have no
+   * connection to the server, so they cannot take part in that coordination.
+   */
+  static final String COORDINATED_RATE_PARAMETER_NAME = "coordinateRate";
+
+
+
+  // The child processes that have been started.
+  private final ArrayList<Process> processes;
+
+  // The threads used to read the output of the child processes.
+  private final ArrayList<ClientProcessOutputThread> outputThreads;
+
+  // The results files written by the child processes.
+  private final ArrayList<File> resultFiles;
+
+  // The number of job threads run by each child process.
+  private final ArrayList<Integer> threadCounts;
+
+  // The client-side job with which this process group is associated.
+  private final ClientSideJob job;
+
+  // The configuration files used to provide the job parameters to the child
+  // processes, with one file for each process.
+  private final ArrayList<File> configFiles;
+
+  // The number of child processes to use.
+  private final int numProcesses;
+
+  // The job state derived from the results of the child processes.
+  private int jobState;
+
+  // The stat trackers collected by each of the child processes, in the order
+  // in which the processes were started.
+  private volatile StatTracker[][] processTrackers;
+
+  // The CPU sets with which the child processes will be pinned, or null if
+  // they should not be pinned.
+  private final String cpuSets;
+
+
+
+  /**
+   * Creates a new client process group with the provided information.
+   *
+   * @param  job           The client-side job with which this process group is
+   *                       associated.
+   * @param  numProcesses  The number of child processes to use.
+   * @param  cpuSets       The processor lists with which the child processes
+   *                       should be pinned, separated by slashes, or
+   *                       {@code CPU_SETS_AUTO} to divide the available
+   *                       processors evenly.  It may be {@code null} if the
+   *                       child processes should not be pinned.
+   */
+  public ClientProcessGroup(ClientSideJob job, int numProcesses,
+                            String cpuSets)
+  {
+    this.job          = job;
+    this.numProcesses = Math.max(1, numProcesses);
+
+    if ((cpuSets == null) || (cpuSets.trim().length() == 0))
+    {
+      this.cpuSets = null;
+    }
+    else
+    {
+      this.cpuSets = cpuSets.trim();
+    }
+
+    processes       = new ArrayList<Process>(this.numProcesses);
+    outputThreads   =
+         new ArrayList<ClientProcessOutputThread>(this.numProcesses);
+    resultFiles     = new ArrayList<File>(this.numProcesses);
+    threadCounts    = new ArrayList<Integer>(this.numProcesses);
+    configFiles     = new ArrayList<File>(this.numProcesses);
+    jobState        = Constants.JOB_STATE_COMPLETED_SUCCESSFULLY;
+    processTrackers = new StatTracker[0][];
+
+    setName("Client Process Group Thread");
+    setDaemon(true);
+  }
+
+
+
+  /**
+   * Divides the specified number of job threads as evenly as possible among
+   * the specified number of processes.
+   *
+   * @param  numThreads    The total number of job threads.
+   * @param  numProcesses  The number of processes.
+   *
+   * @return  The number of threads to run in each process.  No process will be
+   *          given zero threads, so there may be fewer elements than the
+   *          requested number of processes.
+   */
+  public static int[] splitThreads(int numThreads, int numProcesses)
+  {
+    int count = Math.max(1, Math.min(numThreads, numProcesses));
+    int[] threads = new int[count];
+    for (int i=0; i < count; i++)
+    {
+      threads[i] = numThreads / count;
+      if (i < (numThreads % count))
+      {
+        threads[i]++;
+      }
+    }
+
+    return threads;
+  }
+
+
+
+  /**
+   * Determines the processor list with which each of the specified number of
+   * processes should be pinned.
+   *
+   * @param  cpuSets        The processor lists for the processes, separated by
+   *                        slashes, or {@code CPU_SETS_AUTO} to divide the
+   *                        processors evenly.  If fewer lists are given than
+   *                        there are processes, then they will be reused in
+   *                        order.
+   * @param  numProcesses   The number of processes.
+   * @param  numProcessors  The number of processors available on the system.
+   *
+   * @return  The processor list for each process, in the form accepted by the
+   *          {@code taskset} command.
+   *
+   * @throws  IllegalArgumentException  If the CPU set specification is not
+   *                                    valid.
+   */
+  public static String[] assignCPUs(String cpuSets, int numProcesses,
+                                    int numProcessors)
+         throws IllegalArgumentException
+  {
+    String[] assignments = new String[numProcesses];
+    if (cpuSets.equalsIgnoreCase(CPU_SETS_AUTO))
+    {
+      for (int i=0; i < numProcesses; i++)
+      {
+        int first = (i * numProcessors) / numProcesses;
+        int last  = (((i + 1) * numProcessors) / numProcesses) - 1;
+        if (last <= first)
+        {
+          assignments[i] = String.valueOf(first % numProcessors);
+        }
+        else
+        {
+          assignments[i] = first + "-" + last;
+        }
+      }
+
+      return assignments;
+    }
+
+    ArrayList<String> lists = new ArrayList<String>();
+    StringTokenizer tokenizer =
+         new StringTokenizer(cpuSets, String.valueOf(CPU_SET_SEPARATOR));
+    while (tokenizer.hasMoreTokens())
+    {
+      String list = tokenizer.nextToken().trim();
+      for (int i=0; i < list.length(); i++)
+      {
+        char c = list.charAt(i);
+        if (! (((c >= '0') && (c <= '9')) || (c == ',') || (c == '-')))
+        {
+          throw new IllegalArgumentException("Invalid character '" + c +
+               "' in processor list \"" + list + '"');
+        }
+      }
+
+      if (list.length() > 0)
+      {
+        lists.add(list);
+      }
+    }
+
+    if (lists.isEmpty())
+    {
+      throw new IllegalArgumentException("No processor lists were found in " +
+                                         "CPU set specification \"" +
+                                         cpuSets + '"');
+    }
+
+    for (int i=0; i < numProcesses; i++)
+    {
+      assignments[i] = lists.get(i % lists.size());
+    }
+
+    return assignments;
+  }
+
+
+
+  /**
+   * Starts the child processes to run the job.
+   *
+   * @param  jobClass              The name of the job class to run.
+   * @param  numThreads            The total number of job threads to run.
+   * @param  duration              The maximum length of time in seconds that
+   *                               the job should run, or zero if there is no
+   *                               maximum.
+   * @param  collectionInterval    The statistics collection interval in
+   *                               seconds.
+   * @param  parameters            The parameters for the job.
+   * @param  classPath             The location of the job class files, or
+   *                               {@code null} if none was specified.
+   * @param  jobPackFile           The job pack archive containing the job
+   *                               class, or {@code null} if the job class is
+   *                               not provided by a job pack.
+   * @param  useCustomClassLoader  Indicates whether the child processes should
+   *                               use the custom job class loader.
+   *
+   * @throws  IOException  If a problem occurs while starting the processes, or
+   *                       if the job coordinates its request rate with the
+   *                       server.  Any processes that had already been
+   *                       started will be destroyed.
+   */
+  public void startProcesses(String jobClass, int numThreads, int duration,
+                             int collectionInterval, ParameterList parameters,
+                             String classPath, File jobPackFile,
+                             boolean useCustomClassLoader)
+         throws IOException
+  {
+    BooleanParameter coordinateParameter =
+         parameters.getBooleanParameter(COORDINATED_RATE_PARAMETER_NAME);
+    if ((coordinateParameter != null) &&
+        coordinateParameter.getBooleanValue())
+    {
+      throw new IOException("Jobs that coordinate their request rate with " +
+                            "the server cannot be run in child client " +
+                            "processes.");
+    }
+
+    int[] threads = splitThreads(numThreads, numProcesses);
+
+    String[] cpuLists = null;
+    String   taskset  = null;
+    if (cpuSets != null)
+    {
+      try
+      {
+        cpuLists = assignCPUs(cpuSets, threads.length,
+                              Runtime.getRuntime().availableProcessors());
+      }
+      catch (IllegalArgumentException iae)
+      {
+        throw new IOException(iae.getMessage(), iae);
+      }
+
+      taskset = findTaskset();
+      if (taskset == null)
+      {
+        job.logMessage(PROCESS_THREAD_ID, "The child client processes will " +
+                       "not be pinned to processors because the taskset " +
+                       "command is not available on this system.");
+        cpuLists = null;
+      }
+    }
+
+    int threadOffset = 0;
+    try
+    {
+      for (int i=0; i < threads.length; i++)
+      {
+        File configFile = writeConfigFile(jobClass, parameters, threadOffset,
+                                          threads[i], numThreads);
+        threadOffset += threads[i];
+        configFiles.add(configFile);
+
+        File resultFile =
+             createPrivateTempFile("slamd-client-results-", ".asn1");
+        resultFiles.add(resultFile);
+
+        ArrayList<String> command = new ArrayList<String>();
+        if (cpuLists != null)
+        {
+          command.add(taskset);
+          command.add("-c");
+          command.add(cpuLists[i]);
+        }
+
+        command.add(System.getProperty("java.home") + File.separator + "bin" +
+                    File.separator + "java");
+        command.addAll(getChildJVMArguments());
+        command.add("-cp");
+        if (jobPackFile == null)
+        {
+          command.add(System.getProperty("java.class.path"));
+        }
+        else
+        {
+          command.add(jobPackFile.getAbsolutePath() + File.pathSeparator +
+                      System.getProperty("java.class.path"));
+        }
+
+        command.add(CHILD_MAIN_CLASS);
+        command.add("-f");
+        command.add(configFile.getAbsolutePath());
+        command.add("-t");
+        command.add(String.valueOf(threads[i]));
+        command.add("-d");
+        command.add(String.valueOf(duration));
+        command.add("-i");
+        command.add(String.valueOf(collectionInterval));
+        command.add("-R");
+        command.add(resultFile.getAbsolutePath());
+
+        if ((jobPackFile != null) || (! useCustomClassLoader))
+        {
+          command.add("-L");
+        }
+        else if (classPath != null)
+        {
+          command.add("-c");
+          command.add(classPath);
+        }
+
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectErrorStream(true);
+        Process process = processBuilder.start();
+        processes.add(process);
+        threadCounts.add(threads[i]);
+
+        ClientProcessOutputThread outputThread =
+             new ClientProcessOutputThread(job, process, i);
+        outputThreads.add(outputThread);
+        outputThread.start();
+
+        job.writeVerbose("Started child client process " + i + " with " +
+                         threads[i] + " threads" +
+                         ((cpuLists == null)
+                          ? ""
+                          : (" on processors " + cpuLists[i])));
+      }
+    }
+    catch (IOException ioe)
+    {
+      destroyProcesses();
+      cleanUp();
+      throw ioe;
+    }
+  }
+
+
+
+  /**
+   * Writes the job class and parameters to a configuration file in the form
+   * used by the standalone client.  Since the parameters may include
+   * passwords, only the current user will be able to read the file.  Any
+   * per-client limits will be scaled down to the share of the process that
+   * will use the file.
+   *
+   * @param  jobClass        The name of the job class.
+   * @param  parameters      The parameters for the job.
+   * @param  threadOffset    The number of threads run by the processes that
+   *                         were started before this one.
+   * @param  processThreads  The number of threads the process will run.
+   * @param  totalThreads    The total number of threads across all of the
+   *                         processes.
+   *
+   * @return  The configuration file that was written.
+   *
+   * @throws  IOException  If a problem occurs while writing the file.
+   */
+  private static File writeConfigFile(String jobClass,
+                                      ParameterList parameters,
+                                      int threadOffset, int processThreads,
+                                      int totalThreads)
+          throws IOException
+  {
+    Properties properties = new Properties();
+    properties.setProperty(Constants.SERVLET_PARAM_JOB_CLASS, jobClass);
+
+    Parameter[] params = parameters.getParameters();
+    for (int i=0; i < params.length; i++)
+    {
+      if ((params[i] instanceof PlaceholderParameter) ||
+          (params[i] instanceof LabelParameter))
+      {
+        continue;
+      }
+
+      properties.setProperty(params[i].getName(), params[i].getValueString());
+    }
+
+    for (String name : PER_CLIENT_LIMIT_PARAMETER_NAMES)
+    {
+      IntegerParameter p = parameters.getIntegerParameter(name);
+      if ((p != null) && (p.getIntValue() > 0))
+      {
+        properties.setProperty(name, String.valueOf(
+             getProcessShare(p.getIntValue(), threadOffset, processThreads,
+                             totalThreads)));
+      }
+    }
+
+    File file = createPrivateTempFile("slamd-client-job-", ".properties");
+    OutputStream outputStream =
+         new BufferedOutputStream(new FileOutputStream(file));
+    try
+    {
+      properties.store(outputStream, "SLAMD child client job configuration");
+    }
+    finally
+    {
+      outputStream.close();
+    }
+
+    return file;
+  }
+
+
+
+  /**
+   * Determines the share of a per-client limit that should be given to a
+   * single child process.  The shares are proportional to the number of
+   * threads in each process and add up to the full limit across all of the
+   * processes, although no process will be given less than one.
+   *
+   * @param  limit           The per-client limit to divide.
+   * @param  threadOffset    The number of threads run by the processes that
+   *                         were started before this one.
+   * @param  processThreads  The number of threads the process will run.
+   * @param  totalThreads    The total number of threads across all of the
+   *                         processes.
+   *
+   * @return  The share of the limit for the process.
+   */
+  static int getProcessShare(int limit, int threadOffset, int processThreads,
+                             int totalThreads)
+  {
+    if (totalThreads <= 0)
+    {
+      return limit;
+    }
+
+    long end   = (long) limit * (threadOffset + processThreads) / totalThreads;
+    long start = (long) limit * threadOffset / totalThreads;
+    return (int) Math.max(1L, end - start);
+  }
+
+
+
+  /**
+   * Creates an empty temporary file that only the current user may read or
+   * write.
+   *
+   * @param  prefix  The prefix for the file name.
+   * @param  suffix  The suffix for the file name.
+   *
+   * @return  The file that was created.
+   *
+   * @throws  IOException  If a problem occurs while creating the file.
+   */
+  private static File createPrivateTempFile(String prefix, String suffix)
+          throws IOException
+  {
+    File file = File.createTempFile(prefix, suffix);
+    file.setReadable(false, false);
+    file.setWritable(false, false);
+    file.setReadable(true, true);
+    file.setWritable(true, true);
+    return file;
+  }
+
+
+
+  /**
+   * Retrieves the arguments of the current JVM that should also be provided to
+   * the child processes.  These are the heap and garbage collection settings
+   * and system properties, but not agents or flight recordings.
+   *
+   * @return  The arguments that should be provided to the child processes.
+   */
+  private static List<String> getChildJVMArguments()
+  {
+    ArrayList<String> arguments = new ArrayList<String>();
+    for (String argument :
+         ManagementFactory.getRuntimeMXBean().getInputArguments())
+    {
+      if (argument.startsWith("-XX:") &&
+          (argument.indexOf("FlightRecord") < 0))
+      {
+        arguments.add(argument);
+      }
+      else if (argument.startsWith("-Xm") || argument.startsWith("-Xss") ||
+               argument.startsWith("-D"))
+      {
+        arguments.add(argument);
+      }
+    }
+
+    return arguments;
+  }
+
+
+
+  /**
+   * Finds the taskset command that may be used to pin the child processes to
+   * processors.
+   *
+   * @return  The path to the taskset command, or {@code null} if it is not
+   *          available.
+   */
+  private static String findTaskset()
+  {
+    String osName = System.getProperty("os.name");
+    if ((osName == null) || (! osName.toLowerCase().startsWith("linux")))
+    {
+      return null;
+    }
+
+    String path = System.getenv("PATH");
+    if (path == null)
+    {
+      path = "/usr/bin" + File.pathSeparator + "/bin";
+    }
+
+    StringTokenizer tokenizer = new StringTokenizer(path, File.pathSeparator);
+    while (tokenizer.hasMoreTokens())
+    {
+      File file = new File(tokenizer.nextToken(), "taskset");
+      if (file.isFile() && file.canExecute())
+      {
+        return file.getAbsolutePath();
+      }
+    }
+
+    return null;
+  }
+
+
+
+  /**
+   * Waits for all of the child processes to exit, collects their results, and
+   * notifies the client-side job that it is done.
+   */
+  @Override()
+  public void run()
+  {
+    ArrayList<StatTracker[]> trackerList = new ArrayList<StatTracker[]>();
+    for (int i=0; i < processes.size(); i++)
+    {
+      Process process = processes.get(i);
+      int exitCode;
+      while (true)
+      {
+        try
+        {
+          exitCode = process.waitFor();
+          break;
+        } catch (InterruptedException ie) {}
+      }
+
+      try
+      {
+        outputThreads.get(i).join();
+      } catch (InterruptedException ie) {}
+
+      StatTracker[] trackers = null;
+      try
+      {
+        trackers = readResults(resultFiles.get(i), i);
+      }
+      catch (Exception e)
+      {
+        job.logMessage(PROCESS_THREAD_ID, "Unable to read the results of " +
+                       "child client process " + i + ", which exited with " +
+                       "code " + exitCode + ":  " + e);
+        jobState = Constants.JOB_STATE_STOPPED_DUE_TO_ERROR;
+      }
+
+      if (trackers == null)
+      {
+        trackers = new StatTracker[0];
+      }
+      trackerList.add(trackers);
+    }
+
+    StatTracker[][] trackerArray = new StatTracker[trackerList.size()][];
+    processTrackers = trackerList.toArray(trackerArray);
+    cleanUp();
+
+    job.processGroupDone(jobState);
+  }
+
+
+
+  /**
+   * Reads the results written by the specified child process, relabeling the
+   * stat trackers so that they identify the process.
+   *
+   * @param  resultFile    The results file written by the process.
+   * @param  processIndex  The position of the process in this group.
+   *
+   * @return  The stat trackers collected by the child process.
+   *
+   * @throws  Exception  If a problem occurs while reading the results.
+   */
+  private StatTracker[] readResults(File resultFile, int processIndex)
+          throws Exception
+  {
+    ASN1Element[] elements;
+    InputStream inputStream =
+         new BufferedInputStream(new FileInputStream(resultFile));
+    try
+    {
+      ASN1Element element = new ASN1StreamReader(inputStream).readElement();
+      if (element == null)
+      {
+        throw new IOException("The results file is empty.");
+      }
+
+      elements = element.decodeAsSequence().elements();
+    }
+    finally
+    {
+      inputStream.close();
+    }
+
+    int processState = elements[0].decodeAsInteger().intValue();
+    if ((processState != Constants.JOB_STATE_COMPLETED_SUCCESSFULLY) &&
+        (jobState == Constants.JOB_STATE_COMPLETED_SUCCESSFULLY))
+    {
+      jobState = processState;
+    }
+
+    StatTracker[] trackers =
+         StatEncoder.sequenceToTrackers(elements[1].decodeAsSequence());
+
+    String clientID = job.getClientID();
+    String prefix = "p" + processIndex + '-';
+    if (clientID != null)
+    {
+      prefix = clientID + '-' + prefix;
+    }
+
+    for (int i=0; i < trackers.length; i++)
+    {
+      trackers[i].setClientID(clientID);
+      trackers[i].setThreadID(prefix + trackers[i].getThreadID());
+    }
+
+    return trackers;
+  }
+
+
+
+  /**
+   * Writes the results of a child process to the specified file.  This is
+   * used by the child process itself.
+   *
+   * @param  resultFile  The file to which the results should be written.
+   * @param  jobState    The state of the job in the child process.
+   * @param  trackers    The stat trackers collected by the child process.
+   *
+   * @throws  IOException  If a problem occurs while writing the file.
+   */
+  public static void writeResults(String resultFile, int jobState,
+                                  StatTracker[] trackers)
+         throws IOException
+  {
+    OutputStream outputStream =
+         new BufferedOutputStream(new FileOutputStream(resultFile));
+    try
+    {
+      ASN1Writer.writeElement(new ASN1Sequence(
+           new ASN1Integer(jobState),
+           StatEncoder.trackersToSequence(trackers)), outputStream);
+    }
+    finally
+    {
+      outputStream.close();
+    }
+  }
+
+
+
+  /**
+   * Asks all of the child processes to stop.
+   *
+   * @param  stopReason  The reason that the job is to be stopped.
+   */
+  public void stopProcesses(int stopReason)
+  {
+    for (int i=0; i < processes.size(); i++)
+    {
+      try
+      {
+        OutputStream outputStream = processes.get(i).getOutputStream();
+        outputStream.write(StaticUtils.getBytes(STOP_COMMAND + ' ' +
+                                                stopReason + Constants.EOL));
+        outputStream.flush();
+      }
+      catch (IOException ioe)
+      {
+        // This most likely means that the process has already exited.
+        job.writeVerbose("Unable to send the stop command to child client " +
+                         "process " + i + ":  " + ioe);
+      }
+    }
+  }
+
+
+
+  /**
+   * Forcefully terminates all of the child processes.  This should only be
+   * used if they are not responding to normal stop requests.
+   */
+  public void destroyProcesses()
+  {
+    for (Process process : processes)
+    {
+      try
+      {
+        process.destroy();
+      } catch (Exception e) {}
+    }
+  }
+
+
+
+  /**
+   * Removes the configuration and results files used by the child processes.
+   */
+  private void cleanUp()
+  {
+    for (File file : configFiles)
+    {
+      file.delete();
+    }
+
+    for (File file : resultFiles)
+    {
+      file.delete();
+    }
+  }
+
+
+
+  /**
+   * Retrieves the number of job threads in child processes that are still
+   * running.
+   *
+   * @return  The number of job threads in child processes that are still
+   *          running.
+   */
+  public int getActiveThreadCount()
+  {
+    int count = 0;
+    for (int i=0; i < processes.size(); i++)
+    {
+      if (processes.get(i).isAlive())
+      {
+        count += threadCounts.get(i);
+      }
+    }
+
+    return count;
+  }
+
+
+
+  /**
+   * Retrieves the stat trackers collected by the child processes.  They will
+   * only be available once all of the processes have exited.
+   *
+   * @param  aggregateThreadData  Indicates whether the data collected by the
+   *                              threads in each process should be aggregated.
+   *                              The data for different processes will not be
+   *                              aggregated, so that the per-process breakdown
+   *                              is retained.
+   *
+   * @return  The stat trackers collected by the child processes.
+   */
+  public StatTracker[] getStatTrackers(boolean aggregateThreadData)
+  {
+    StatTracker[][] trackerArrays = processTrackers;
+
+    ArrayList<StatTracker> trackerList = new ArrayList<StatTracker>();
+    for (int i=0; i < trackerArrays.length; i++)
+    {
+      StatTracker[] trackers = trackerArrays[i];
+      if (aggregateThreadData)
+      {
+        String threadID = "p" + i + "-aggregated";
+        if (job.getClientID() != null)
+        {
+          threadID = job.getClientID() + '-' + threadID;
+        }
+
+        trackers = aggregateByName(trackers, threadID);
+      }
+
+      for (int j=0; j < trackers.length; j++)
+      {
+        trackerList.add(trackers[j]);
+      }
+    }
+
+    StatTracker[] trackers = new StatTracker[trackerList.size()];
+    return trackerList.toArray(trackers);
+  }
+
+
+
+  /**
+   * Aggregates the provided stat trackers by display name, preserving the
+   * order in which each name first appears.
+   *
+   * @param  trackers  The stat trackers to aggregate.
+   * @param  threadID  The thread ID to use for the aggregated trackers.
+   *
+   * @return  The aggregated stat trackers.
+   */
+  public static StatTracker[] aggregateByName(StatTracker[] trackers,
+                                              String threadID)
+  {
+    LinkedHashMap<String,ArrayList<StatTracker>> hashMap =
+         new LinkedHashMap<String,ArrayList<StatTracker>>();
+    for (int i=0; i < trackers.length; i++)
+    {
+      ArrayList<StatTracker> trackerList =
+           hashMap.get(trackers[i].getDisplayName());
+      if (trackerList == null)
+      {
+        trackerList = new ArrayList<StatTracker>();
+        hashMap.put(trackers[i].getDisplayName(), trackerList);
+      }
+      trackerList.add(trackers[i]);
+    }
+
+    Collection<ArrayList<StatTracker>> values = hashMap.values();
+    StatTracker[] aggregateTrackers = new StatTracker[values.size()];
+    int i = 0;
+    for (ArrayList<StatTracker> trackerList : values)
+    {
+      StatTracker[] trackerArray = new StatTracker[trackerList.size()];
+      trackerList.toArray(trackerArray);
+      aggregateTrackers[i] = trackerArray[0].newInstance();
+      aggregateTrackers[i].aggregate(trackerArray);
+      aggregateTrackers[i].setClientID(trackerArray[0].getClientID());
+      aggregateTrackers[i].setThreadID(threadID);
+      i++;
+    }
+
+    return aggregateTrackers;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.client;
+
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+
+
+/**
+ * This class defines a thread that reads the output of a child client process
+ * and writes each line to the log of the client-side job that started it.  It
+ * must keep reading until the process exits so that the process will never
+ * block because its output pipe is full.
+ */
+final class ClientProcessOutputThread
+       extends Thread
+{
+  // The reader used to read the output of the child process.
+  private final BufferedReader reader;
+
+  // The client-side job to which the output will be written.
+  private final ClientSideJob job;
+
+  // The string that will be prepended to each line of output.
+  private final String prefix;
+
+
+
+  /**
+   * Creates a new output thread for the provided process.
+   *
+   * @param  job           The client-side job to which the output should be
+   *                       written.
+   * @param  process       The child process whose output should be read.
+   * @param  processIndex  The position of the process in its group.
+   */
+  ClientProcessOutputThread(ClientSideJob job, Process process,
+                            int processIndex)
+  {
+    this.job = job;
+
+    reader = new BufferedReader(
+         new InputStreamReader(process.getInputStream()));
+    prefix = "Process " + processIndex + ":  ";
+
+    setName("Client Process Output Thread " + processIndex);
+    setDaemon(true);
+  }
+
+
+
+  /**
+   * Reads lines of output from the child process until it exits.
+   */
+  @Override()
+  public void run()
+  {
+    try
+    {
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        if (line.length() > 0)
+        {
+          job.logMessage(ClientProcessGroup.PROCESS_THREAD_ID,
+                         prefix + line);
+        }
+      }
+    }
+    catch (IOException ioe)
+    {
+      job.writeVerbose(prefix + "Unable to read output:  " + ioe);
+    }
+    finally
+    {
+      try
+      {
+        reader.close();
+      } catch (Exception e) {}
+    }
+  }
+}
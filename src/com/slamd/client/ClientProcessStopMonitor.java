@@ -0,0 +1,97 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.client;
+
+
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import com.slamd.common.Constants;
+
+
+
+/**
+ * This class defines a thread that runs in a child client process started by
+ * a {@code ClientProcessGroup}, and stops the job when the parent process
+ * writes a stop command to the standard input of the child.  If the standard
+ * input is closed, then the parent process has exited, and the job will be
+ * stopped so that the child does not keep running unattended.
+ */
+public final class ClientProcessStopMonitor
+       extends Thread
+{
+  // The input stream from which stop commands will be read.
+  private final InputStream inputStream;
+
+  // The client-side job that will be stopped.
+  private final ClientSideJob job;
+
+
+
+  /**
+   * Creates a new stop monitor for the provided job.
+   *
+   * @param  job          The client-side job that should be stopped.
+   * @param  inputStream  The input stream from which stop commands should be
+   *                      read.
+   */
+  public ClientProcessStopMonitor(ClientSideJob job, InputStream inputStream)
+  {
+    this.job         = job;
+    this.inputStream = inputStream;
+
+    setName("Client Process Stop Monitor");
+    setDaemon(true);
+  }
+
+
+
+  /**
+   * Waits for a stop command and then stops the job.
+   */
+  @Override()
+  public void run()
+  {
+    int stopReason = Constants.JOB_STATE_STOPPED_BY_USER;
+    try
+    {
+      BufferedReader reader =
+           new BufferedReader(new InputStreamReader(inputStream));
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        line = line.trim();
+        if (line.startsWith(ClientProcessGroup.STOP_COMMAND))
+        {
+          try
+          {
+            stopReason = Integer.parseInt(line.substring(
+                 ClientProcessGroup.STOP_COMMAND.length()).trim());
+          } catch (NumberFormatException nfe) {}
+          break;
+        }
+      }
+    }
+    catch (Exception e)
+    {
+      job.writeVerbose("Unable to read stop commands:  " + e);
+    }
+
+    job.stop(stopReason);
+  }
+}
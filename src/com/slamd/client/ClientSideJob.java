@@ -30,8 +30,14 @@ import com.slamd.job.JobClass;
 import com.slamd.job.UnableToRunException;
 import com.slamd.common.Constants;
 import com.slamd.common.JobClassLoader;
+import com.slamd.common.JobPackClassLoader;
 import com.slamd.common.SLAMDException;
 import com.slamd.message.ClassTransferRequestMessage;
+import com.slamd.message.JobPackRequestMessage;
+import com.slamd.message.RateQuotaMessage;
+import com.slamd.message.RateReportMessage;
+import com.slamd.parameter.FileURLParameter;
+import com.slamd.parameter.Parameter;
 import com.slamd.parameter.ParameterList;
 import com.slamd.stat.RealTimeStatReporter;
 import com.slamd.stat.StatPersistenceThread;
@@ -128,6 +134,33 @@ public class ClientSideJob
   // The client with which this job is associated.
   private Client client;
 
+  // The group of child processes running this job, if it is not being run in
+  // this process.
+  private volatile ClientProcessGroup processGroup;
+
+  // The number of child processes that should be used to run this job, or one
+  // if it should be run in this process.
+  private int numProcesses;
+
+  // The processor lists with which the child processes should be pinned, if
+  // any.
+  private String cpuSets;
+
+  // The monitor used to capture the health of the client while the job is
+  // running, if any.
+  private ClientHealthMonitor healthMonitor;
+
+  // The flight recorder session capturing a profile of the job, if any.
+  private JobProfiler profiler;
+
+  // The compressed flight recording captured while the job was running, if
+  // any.
+  private volatile byte[] profileData;
+
+  // The rate limiter used to coordinate the job's rate with the server, if
+  // any.
+  private volatile CoordinatedRateLimiter coordinatedRateLimiter;
+
   // The set of job threads that are associated with this job.
   private JobClass[] jobThreads;
 
@@ -143,6 +176,10 @@ public class ClientSideJob
   // The name of the Java class file that serves as the job thread
   private String jobClass;
 
+  // The flight recorder settings that should be used to profile the job, if
+  // any.
+  private String profileSettings;
+
 
 
   /**
@@ -208,6 +245,8 @@ public class ClientSideJob
     jobThreads         = new JobClass[threadsPerClient];
     activeThreads      = new ArrayList<JobClass>(threadsPerClient);
     logMessages        = new ArrayList<String>();
+    numProcesses       = 1;
+    cpuSets            = null;
 
     checkForJobClass();
   }
@@ -271,16 +310,34 @@ public class ClientSideJob
     jobThreads         = new JobClass[threadsPerClient];
     activeThreads      = new ArrayList<JobClass>(threadsPerClient);
     logMessages        = new ArrayList<String>();
+    numProcesses       = 1;
+    cpuSets            = null;
   }
 
 
 
   /**
-   * Checks to see if the client has the specified class in its classpath.  If
-   * not, then request it from the server.
+   * Asks the server for the job pack containing the job class, which it will
+   * only send if the client does not already have the current version.  Then
+   * checks to see if the client has the specified class in its classpath, and
+   * if not, requests the class by itself from the server as well so that the
+   * job can still be run with a server that does not support job packs.
    */
   private void checkForJobClass()
   {
+    JobPackRequestMessage packRequest =
+         new JobPackRequestMessage(client.getMessageID(), jobClass,
+                                   client.getJobPackCache().getCachedHashes());
+    try
+    {
+      client.sendMessage(packRequest);
+    }
+    catch (IOException ioe)
+    {
+      writeVerbose("Unable to send job pack request for " + jobClass + ":  " +
+                   ioe);
+    }
+
     // See if we can load the specified job class.  If so, then return
     // "success".  Otherwise, request it from the server.
     try
@@ -331,6 +388,19 @@ public class ClientSideJob
 
 
 
+  /**
+   * Retrieves the ID of the client that is being used to run this job.
+   *
+   * @return  The ID of the client that is being used to run this job, or
+   *          {@code null} if it is being run by a standalone client.
+   */
+  public String getClientID()
+  {
+    return clientID;
+  }
+
+
+
   /**
    * Retrieves the name of the Java class that should be invoked to run this
    * job.
@@ -486,6 +556,122 @@ public class ClientSideJob
 
 
 
+  /**
+   * Specifies the rate limiter that should be used to coordinate the job's
+   * rate with the server.
+   *
+   * @param  rateLimiter  The rate limiter that should be used to coordinate
+   *                      the job's rate with the server.
+   */
+  void setCoordinatedRateLimiter(CoordinatedRateLimiter rateLimiter)
+  {
+    coordinatedRateLimiter = rateLimiter;
+  }
+
+
+
+  /**
+   * Specifies the flight recorder settings that should be used to capture a
+   * profile of this job while it is running.
+   *
+   * @param  profileSettings  The flight recorder settings that should be used
+   *                          to profile this job, or {@code null} if it should
+   *                          not be profiled.
+   */
+  void setProfileSettings(String profileSettings)
+  {
+    this.profileSettings = profileSettings;
+  }
+
+
+
+  /**
+   * Specifies that this job should be run in the given number of child client
+   * processes rather than in this process, with the job threads divided among
+   * them.  This must be called before the job is started.
+   *
+   * @param  numProcesses  The number of child processes to use.  A value of
+   *                       one or less indicates that the job should be run in
+   *                       this process.
+   * @param  cpuSets       The processor lists with which the child processes
+   *                       should be pinned, separated by slashes, or
+   *                       {@code ClientProcessGroup.CPU_SETS_AUTO} to divide
+   *                       the available processors evenly.  It may be
+   *                       {@code null} if the processes should not be pinned.
+   */
+  public void setChildProcesses(int numProcesses, String cpuSets)
+  {
+    this.numProcesses = numProcesses;
+    this.cpuSets      = cpuSets;
+  }
+
+
+
+  /**
+   * Retrieves the flight recording captured while this job was running.  It
+   * will only be available once all of the job threads have completed.
+   *
+   * @return  The gzip-compressed flight recording captured while this job was
+   *          running, or {@code null} if the job was not profiled or the
+   *          recording could not be obtained.
+   */
+  public byte[] getProfileData()
+  {
+    return profileData;
+  }
+
+
+
+  /**
+   * Sends a report of the rate achieved for this job to the SLAMD server.  If
+   * this job is not associated with a client connected to a SLAMD server, then
+   * no action will be taken.
+   *
+   * @param  requestedRate        The per-client rate, in operations per
+   *                              second, that the job requested.
+   * @param  operationsCompleted  The number of operations completed during
+   *                              the interval.
+   * @param  intervalMillis       The length of the interval covered by the
+   *                              report, in milliseconds.
+   */
+  void sendRateReport(int requestedRate, long operationsCompleted,
+                      int intervalMillis)
+  {
+    if (client == null)
+    {
+      return;
+    }
+
+    RateReportMessage report = new RateReportMessage(client.getMessageID(),
+         jobID, requestedRate, operationsCompleted, intervalMillis);
+    try
+    {
+      client.sendMessage(report);
+    }
+    catch (IOException ioe)
+    {
+      writeVerbose("Unable to send rate report:  " + ioe);
+    }
+  }
+
+
+
+  /**
+   * Indicates that the server has provided a new rate quota for this job.
+   *
+   * @param  message  The rate quota message received from the server.
+   */
+  void rateQuotaReceived(RateQuotaMessage message)
+  {
+    CoordinatedRateLimiter rateLimiter = coordinatedRateLimiter;
+    if ((rateLimiter != null) && jobID.equals(message.getJobID()))
+    {
+      rateLimiter.quotaReceived(message);
+    }
+  }
+
+
+
   /**
    * Retrieves the list of job-specific parameters associated with this job.
    *
@@ -548,9 +734,37 @@ public class ClientSideJob
     jobState = Constants.JOB_STATE_STOPPED_DUE_TO_ERROR;
 
 
-    // Get an instance of the job class.
+    // Get an instance of the job class, using the job pack for it if the
+    // server has provided one.
     JobClass jobInstance;
-    if (useCustomClassLoader)
+    JobPackClassLoader jobPackClassLoader = null;
+    if (client != null)
+    {
+      try
+      {
+        jobPackClassLoader = client.getJobPackCache().getClassLoader(jobClass,
+                                  getClass().getClassLoader());
+      }
+      catch (IOException ioe)
+      {
+        logMessage("Unable to open the job pack for " + jobClass + ":  " +
+                   ioe);
+      }
+    }
+
+    if (jobPackClassLoader != null)
+    {
+      try
+      {
+        jobInstance = jobPackClassLoader.getJobClass(jobClass);
+      }
+      catch (SLAMDException se)
+      {
+        logMessage(se.getMessage());
+        return Constants.MESSAGE_RESPONSE_CLASS_NOT_FOUND;
+      }
+    }
+    else if (useCustomClassLoader)
     {
       JobClassLoader jobClassLoader =
            new JobClassLoader(getClass().getClassLoader(), classPath);
@@ -580,6 +794,14 @@ public class ClientSideJob
     }
 
 
+    // If the job should be run in child processes, then start them and let
+    // them take care of all of the client-level processing.
+    if (numProcesses > 1)
+    {
+      return startProcessGroup(jobPackClassLoader);
+    }
+
+
     // Perform client-level initialization for the job class.
     try
     {
@@ -609,6 +831,21 @@ public class ClientSideJob
     }
 
 
+    // Report whether any files used by the job could be reused from the file
+    // URL cache.
+    for (Parameter p : parameters.getParameters())
+    {
+      if (p instanceof FileURLParameter)
+      {
+        String status = ((FileURLParameter) p).getCacheStatus();
+        if (status != null)
+        {
+          logMessage(status);
+        }
+      }
+    }
+
+
     // The job is ready to be started, so create the appropriate number of
     // threads and start them.  It is safe to assume that if an illegal access
     // or instantiation exception occurs as a result of this, it will be on the
@@ -675,6 +912,37 @@ public class ClientSideJob
     actualStartTime = new Date().getTime();
 
 
+    // Start monitoring the health of the client unless that has been disabled.
+    String propertyStr =
+         System.getProperty(Constants.PROPERTY_DISABLE_CLIENT_HEALTH_MONITOR);
+    if ((propertyStr == null) ||
+        (! (propertyStr.equalsIgnoreCase("true") ||
+            propertyStr.equalsIgnoreCase("yes") ||
+            propertyStr.equalsIgnoreCase("on") ||
+            propertyStr.equalsIgnoreCase("1"))))
+    {
+      healthMonitor = new ClientHealthMonitor(this, clientID,
+                                              collectionInterval);
+      healthMonitor.start();
+    }
+
+
+    // Start capturing a flight recording if the job is to be profiled.
+    if (profileSettings != null)
+    {
+      try
+      {
+        profiler = new JobProfiler(jobID, profileSettings);
+        profiler.start();
+      }
+      catch (Exception | LinkageError e)
+      {
+        profiler = null;
+        logMessage("Unable to start flight recording:  " + e);
+      }
+    }
+
+
     // Iterate through all of the job threads and signal them to start
     for (int i=0; i < jobThreads.length; i++)
     {
@@ -710,6 +978,90 @@ public class ClientSideJob
 
 
 
+  /**
+   * Starts the child processes that will run this job.
+   *
+   * @param  jobPackClassLoader  The class loader for the job pack containing
+   *                             the job class, or {@code null} if the job
+   *                             class is not provided by a job pack.
+   *
+   * @return  The result code from the attempted start operation.
+   */
+  private int startProcessGroup(JobPackClassLoader jobPackClassLoader)
+  {
+    if (enableRealTimeStats || (profileSettings != null))
+    {
+      logMessage("Real-time statistics and profiling are not available " +
+                 "when a job is run in child client processes.");
+    }
+
+    // The child processes can't be told when to stop, so convert any stop
+    // time into a duration.
+    int processDuration = duration;
+    if (stopTime != null)
+    {
+      int remaining = (int) Math.max(1L,
+           (stopTime.getTime() - System.currentTimeMillis() + 999L) / 1000L);
+      if ((processDuration <= 0) || (remaining < processDuration))
+      {
+        processDuration = remaining;
+      }
+    }
+
+    ClientProcessGroup group =
+         new ClientProcessGroup(this, numProcesses, cpuSets);
+    try
+    {
+      group.startProcesses(jobClass, threadsPerClient, processDuration,
+                           collectionInterval, parameters, classPath,
+                           ((jobPackClassLoader == null)
+                            ? null
+                            : jobPackClassLoader.getArchive().getFile()),
+                           useCustomClassLoader);
+    }
+    catch (IOException ioe)
+    {
+      logMessage("Unable to start the child client processes:  " + ioe);
+      return Constants.MESSAGE_RESPONSE_JOB_CREATION_FAILURE;
+    }
+
+    processGroup    = group;
+    jobState        = Constants.JOB_STATE_RUNNING;
+    actualStartTime = new Date().getTime();
+    group.start();
+
+    return Constants.MESSAGE_RESPONSE_SUCCESS;
+  }
+
+
+
+  /**
+   * Indicates that all of the child processes running this job have exited.
+   *
+   * @param  processState  The job state derived from the results of the child
+   *                       processes.
+   */
+  void processGroupDone(int processState)
+  {
+    synchronized (jobThreadMutex)
+    {
+      messageWriter.writeVerbose("All child client processes have completed");
+      actualStopTime = new Date().getTime();
+      if (jobState == Constants.JOB_STATE_RUNNING)
+      {
+        jobState = processState;
+      }
+      isDone = true;
+
+      if (client != null)
+      {
+        client.jobDone();
+      }
+    }
+  }
+
+
+
   /**
    * Attempts to stop processing on the job.
    *
@@ -729,7 +1081,12 @@ public class ClientSideJob
       }
 
       // Is the job running?  If so, then try to stop it.
-      if (jobState == Constants.JOB_STATE_RUNNING)
+      if ((jobState == Constants.JOB_STATE_RUNNING) && (processGroup != null))
+      {
+        processGroup.stopProcesses(stopReason);
+        jobState = stopReason;
+      }
+      else if (jobState == Constants.JOB_STATE_RUNNING)
       {
         for (int i=0; i < activeThreads.size(); i++)
         {
@@ -784,6 +1141,12 @@ public class ClientSideJob
    */
   public final void forcefullyStop(int stopReason)
   {
+    if (processGroup != null)
+    {
+      processGroup.destroyProcesses();
+      return;
+    }
+
     while (! activeThreads.isEmpty())
     {
       JobClass jobThread = activeThreads.remove(0);
@@ -858,6 +1221,11 @@ public class ClientSideJob
    */
   public int getActiveThreadCount()
   {
+    if (processGroup != null)
+    {
+      return processGroup.getActiveThreadCount();
+    }
+
     return activeThreads.size();
   }
 
@@ -874,6 +1242,12 @@ public class ClientSideJob
    */
   public StatTracker[] getStatTrackers(boolean aggregateThreadData)
   {
+    // If the job was run in child processes, then they collected the data.
+    if (processGroup != null)
+    {
+      return processGroup.getStatTrackers(aggregateThreadData);
+    }
+
     // If there are no job threads defined, then return an empty array
     if ((jobThreads == null) || (jobThreads.length == 0))
     {
@@ -925,7 +1299,7 @@ public class ClientSideJob
         i++;
       }
 
-      return aggregateTrackers;
+      return addHealthTrackers(aggregateTrackers);
     }
     else
     {
@@ -944,8 +1318,40 @@ public class ClientSideJob
       // Return the set of status counters
       StatTracker[] trackers = new StatTracker[trackerList.size()];
       trackerList.toArray(trackers);
+      return addHealthTrackers(trackers);
+    }
+  }
+
+
+
+  /**
+   * Appends the client health stat trackers, if they are available, to the
+   * provided set of job stat trackers.
+   *
+   * @param  trackers  The stat trackers collected by the job threads.
+   *
+   * @return  The provided stat trackers followed by any client health stat
+   *          trackers.
+   */
+  private StatTracker[] addHealthTrackers(StatTracker[] trackers)
+  {
+    if (healthMonitor == null)
+    {
+      return trackers;
+    }
+
+    StatTracker[] healthTrackers = healthMonitor.getStatTrackers();
+    if (healthTrackers.length == 0)
+    {
       return trackers;
     }
+
+    StatTracker[] allTrackers =
+         new StatTracker[trackers.length + healthTrackers.length];
+    System.arraycopy(trackers, 0, allTrackers, 0, trackers.length);
+    System.arraycopy(healthTrackers, 0, allTrackers, trackers.length,
+                     healthTrackers.length);
+    return allTrackers;
   }
 
 
@@ -1089,9 +1495,29 @@ public class ClientSideJob
       if (activeThreads.isEmpty())
       {
         messageWriter.writeVerbose("All job threads have completed");
-        isDone = true;
         actualStopTime = new Date().getTime();
 
+        // Stop the health monitor so that its statistics and any saturation
+        // warning are included in what is reported for the job.
+        if (healthMonitor != null)
+        {
+          healthMonitor.stopAndWait();
+        }
+
+        if (profiler != null)
+        {
+          try
+          {
+            profileData = profiler.stop();
+          }
+          catch (SLAMDException se)
+          {
+            logMessage(se.getMessage());
+          }
+          profiler = null;
+        }
+        isDone = true;
+
         // Run the per-client finalization
         try
         {
@@ -0,0 +1,277 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.client;
+
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.unboundid.util.FixedRateBarrier;
+
+import com.slamd.message.RateQuotaMessage;
+import com.slamd.message.RateReportMessage;
+import com.slamd.stat.IntegerValueTracker;
+import com.slamd.stat.StatTracker;
+
+
+
+/**
+ * This class defines a thread that allows the rate limit for a job to be
+ * coordinated across all of the clients running it, rather than dividing the
+ * rate statically.  Once per interval it reports the number of operations that
+ * the client completed to the SLAMD server, and the server replies with the
+ * client's share of the aggregate rate, which is applied to the job's
+ * {@code FixedRateBarrier}.  If the server does not have a share for the
+ * client, or if the job is not running under the control of a SLAMD server,
+ * then the rate limiter is left at the originally requested per-client rate.
+ */
+public class CoordinatedRateLimiter
+       extends Thread
+{
+  /**
+   * The display name for the stat tracker used to record the quota assigned by
+   * the server.
+   */
+  public static final String STAT_RATE_QUOTA =
+       "Coordinated Rate Quota (Operations/Second)";
+
+
+
+  /**
+   * The thread ID that will be used for the stat tracker maintained by this
+   * class.
+   */
+  public static final String RATE_LIMITER_THREAD_ID =
+       "Coordinated Rate Limiter";
+
+
+
+  // The number of operations completed since the last report.
+  private final AtomicLong operationsCompleted;
+
+  // Indicates whether a request has been received for this thread to start.
+  private volatile boolean startRequested;
+
+  // Indicates whether a request has been received for this thread to stop.
+  private volatile boolean stopRequested;
+
+  // The client-side job with which this rate limiter is associated.
+  private final ClientSideJob clientSideJob;
+
+  // The rate limiter that will be adjusted based on the assigned quota.
+  private final FixedRateBarrier rateLimiter;
+
+  // The length of each report interval in milliseconds.
+  private final int intervalMillis;
+
+  // The per-client rate originally requested for the job.
+  private final int requestedRate;
+
+  // The quota most recently assigned by the server.
+  private volatile int currentQuota;
+
+  // The stat tracker used to record the quota assigned by the server.
+  private final IntegerValueTracker quotaTracker;
+
+
+
+  /**
+   * Creates a new coordinated rate limiter with the provided information.
+   *
+   * @param  clientSideJob       The client-side job with which this rate
+   *                             limiter is associated.
+   * @param  rateLimiter         The rate limiter that will be adjusted based
+   *                             on the assigned quota.
+   * @param  requestedRate       The per-client rate, in operations per second,
+   *                             originally requested for the job.
+   * @param  intervalSeconds     The length of time in seconds between rate
+   *                             reports.
+   * @param  clientID            The client ID to use for the stat tracker.
+   * @param  collectionInterval  The statistics collection interval for the
+   *                             stat tracker.
+   */
+  public CoordinatedRateLimiter(ClientSideJob clientSideJob,
+                                FixedRateBarrier rateLimiter,
+                                int requestedRate, int intervalSeconds,
+                                String clientID, int collectionInterval)
+  {
+    this.clientSideJob  = clientSideJob;
+    this.rateLimiter    = rateLimiter;
+    this.requestedRate  = requestedRate;
+    this.intervalMillis = 1000 * Math.max(1, intervalSeconds);
+
+    setName("Coordinated Rate Limiter Thread");
+    setDaemon(true);
+
+    operationsCompleted = new AtomicLong(0L);
+    startRequested      = false;
+    stopRequested       = false;
+    currentQuota        = requestedRate;
+
+    quotaTracker = new IntegerValueTracker(clientID, RATE_LIMITER_THREAD_ID,
+         STAT_RATE_QUOTA, collectionInterval);
+
+    clientSideJob.setCoordinatedRateLimiter(this);
+  }
+
+
+
+  /**
+   * Retrieves a stub for the stat tracker maintained by this class.
+   *
+   * @param  clientID            The client ID to use for the stub.
+   * @param  collectionInterval  The collection interval to use for the stub.
+   *
+   * @return  A stub for the stat tracker maintained by this class.
+   */
+  public static StatTracker getStatTrackerStub(String clientID,
+                                               int collectionInterval)
+  {
+    return new IntegerValueTracker(clientID, RATE_LIMITER_THREAD_ID,
+                                   STAT_RATE_QUOTA, collectionInterval);
+  }
+
+
+
+  /**
+   * Retrieves the stat tracker maintained by this class.
+   *
+   * @return  The stat tracker maintained by this class.
+   */
+  public StatTracker getStatTracker()
+  {
+    return quotaTracker;
+  }
+
+
+
+  /**
+   * Retrieves the quota most recently assigned by the server.
+   *
+   * @return  The quota most recently assigned by the server, in operations per
+   *          second.
+   */
+  public int getCurrentQuota()
+  {
+    return currentQuota;
+  }
+
+
+
+  /**
+   * Indicates that an operation has been completed.  This method may be called
+   * concurrently by any number of job threads.
+   */
+  public void operationCompleted()
+  {
+    operationsCompleted.incrementAndGet();
+  }
+
+
+
+  /**
+   * Applies the quota contained in the provided message from the server.
+   *
+   * @param  message  The rate quota message received from the server.
+   */
+  void quotaReceived(RateQuotaMessage message)
+  {
+    int quota = Math.max(1, message.getQuota());
+    if (quota != currentQuota)
+    {
+      currentQuota = quota;
+      rateLimiter.setRate(1000L, quota);
+    }
+  }
+
+
+
+  /**
+   * Sets a flag that indicates that the rate limiter should start reporting.
+   */
+  public void startRunning()
+  {
+    startRequested = true;
+  }
+
+
+
+  /**
+   * Sets a flag that indicates that the rate limiter should stop reporting,
+   * and waits for it to finish.
+   */
+  public void stopRunning()
+  {
+    stopRequested = true;
+    interrupt();
+
+    try
+    {
+      join();
+    } catch (Exception e) {}
+  }
+
+
+
+  /**
+   * Waits for the job to start, and then reports the achieved rate to the
+   * server at the end of each interval until the job stops.
+   */
+  @Override()
+  public void run()
+  {
+    while (! (startRequested || stopRequested))
+    {
+      try
+      {
+        Thread.sleep(10);
+      } catch (Exception e) {}
+    }
+
+    if (stopRequested)
+    {
+      return;
+    }
+
+    quotaTracker.startTracker();
+    operationsCompleted.set(0L);
+
+    long lastReportTime = System.currentTimeMillis();
+    long nextReportTime = lastReportTime + intervalMillis;
+    while (! stopRequested)
+    {
+      long now = System.currentTimeMillis();
+      if (now < nextReportTime)
+      {
+        try
+        {
+          Thread.sleep(Math.min(100L, nextReportTime - now));
+        } catch (Exception e) {}
+        continue;
+      }
+
+      long completed = operationsCompleted.getAndSet(0L);
+      int elapsedMillis = (int) (now - lastReportTime);
+      lastReportTime = now;
+      nextReportTime += intervalMillis;
+
+      clientSideJob.sendRateReport(requestedRate, completed, elapsedMillis);
+      quotaTracker.addValue(currentQuota);
+    }
+
+    quotaTracker.stopTracker();
+  }
+}
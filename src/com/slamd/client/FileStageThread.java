@@ -0,0 +1,100 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.client;
+
+
+
+import com.slamd.message.FileStageRequestMessage;
+import com.slamd.parameter.FileURLCache;
+import com.slamd.parameter.FileURLParameter;
+import com.slamd.parameter.Parameter;
+
+
+
+/**
+ * This class defines a thread that retrieves the files referenced by an
+ * upcoming job into the client's file URL cache in the background, so that
+ * they are already available locally when the job starts.  Failures are only
+ * reported in verbose mode, since the job will simply retrieve the file
+ * itself if it was not staged.
+ */
+public class FileStageThread
+       extends Thread
+{
+  // The client on whose behalf the files are being staged.
+  private final Client client;
+
+  // The request identifying the files to stage.
+  private final FileStageRequestMessage request;
+
+
+
+  /**
+   * Creates a new file stage thread for the provided request.
+   *
+   * @param  client   The client on whose behalf the files are being staged.
+   * @param  request  The request identifying the files to stage.
+   */
+  public FileStageThread(Client client, FileStageRequestMessage request)
+  {
+    this.client  = client;
+    this.request = request;
+
+    setName("File Stage Thread for Job " + request.getJobID());
+    setDaemon(true);
+  }
+
+
+
+  /**
+   * Retrieves each of the requested files into the file URL cache.
+   */
+  @Override()
+  public void run()
+  {
+    if (FileURLCache.getInstance() == null)
+    {
+      return;
+    }
+
+    for (Parameter p : request.getParameters().getParameters())
+    {
+      if (! (p instanceof FileURLParameter))
+      {
+        continue;
+      }
+
+      FileURLParameter fileParameter = (FileURLParameter) p;
+      try
+      {
+        fileParameter.getLocalFile();
+
+        String status = fileParameter.getCacheStatus();
+        if (status != null)
+        {
+          client.writeVerbose("Staged file for job " + request.getJobID() +
+                              ":  " + status);
+        }
+      }
+      catch (Exception e)
+      {
+        client.writeVerbose("Unable to stage file " +
+                            fileParameter.getFileURL() + " for job " +
+                            request.getJobID() + ":  " + e);
+      }
+    }
+  }
+}
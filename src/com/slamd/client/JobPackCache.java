@@ -0,0 +1,310 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.client;
+
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.slamd.common.Constants;
+import com.slamd.common.JobPackArchive;
+import com.slamd.common.JobPackClassLoader;
+
+
+
+/**
+ * This class maintains the set of job pack archives that a client has retrieved
+ * from the SLAMD server.  Archives are stored on disk under the hash of their
+ * contents so that they survive client restarts, and the hashes of all cached
+ * archives are included in each job pack request so that the server only needs
+ * to send an archive that the client does not already have.  A cached archive
+ * will only be used to load a job class once the server has confirmed that it
+ * is the current version of the job pack containing that class.  The least
+ * recently used archives will be removed once the cache holds more than a
+ * fixed number of them.
+ */
+public class JobPackCache
+{
+  /**
+   * The maximum number of archives that will be kept in the cache.
+   */
+  private static final int MAX_CACHED_ARCHIVES = 32;
+
+
+
+  // The cached archives, indexed by hash and ordered from the least to the
+  // most recently used.
+  private final LinkedHashMap<String,JobPackArchive> archives;
+
+  // The directory in which the archives are stored.
+  private final File cacheDirectory;
+
+  // The class loaders that have been created for the cached archives, indexed
+  // by hash.
+  private final HashMap<String,JobPackClassLoader> classLoaders;
+
+  // The hash of the archive that the server has confirmed to be current for
+  // each job class, indexed by class name.
+  private final HashMap<String,String> currentHashes;
+
+
+
+  /**
+   * Creates a new job pack cache that will use the job pack directory beneath
+   * the provided job class path.  Any archives already in that directory will
+   * be made available.
+   *
+   * @param  classPath  The path to which Java class files provided by the
+   *                    server are written.
+   */
+  public JobPackCache(String classPath)
+  {
+    cacheDirectory = new File(classPath, Constants.JOB_PACK_DIRECTORY_NAME);
+    classLoaders   = new HashMap<String,JobPackClassLoader>();
+    currentHashes  = new HashMap<String,String>();
+    archives       =
+         new LinkedHashMap<String,JobPackArchive>(16, 0.75f, true)
+         {
+           private static final long serialVersionUID = 1L;
+
+           @Override()
+           protected boolean removeEldestEntry(
+                                  Map.Entry<String,JobPackArchive> eldest)
+           {
+             if (size() <= MAX_CACHED_ARCHIVES)
+             {
+               return false;
+             }
+
+             discard(eldest.getValue());
+             return true;
+           }
+         };
+
+    File[] files = cacheDirectory.listFiles();
+    if (files == null)
+    {
+      return;
+    }
+
+    Arrays.sort(files, new Comparator<File>()
+    {
+      @Override()
+      public int compare(File f1, File f2)
+      {
+        return Long.compare(f1.lastModified(), f2.lastModified());
+      }
+    });
+
+    for (File f : files)
+    {
+      if (f.getName().endsWith(JobPackArchive.ARCHIVE_FILE_EXTENSION))
+      {
+        try
+        {
+          JobPackArchive archive = new JobPackArchive(f);
+          archives.put(archive.getHash(), archive);
+        }
+        catch (IOException ioe)
+        {
+          // The file is not a valid archive, possibly because the client was
+          // interrupted while writing it.
+          f.delete();
+        }
+      }
+    }
+  }
+
+
+
+  /**
+   * Retrieves the hashes of all archives in this cache.
+   *
+   * @return  The hashes of all archives in this cache.
+   */
+  public synchronized List<String> getCachedHashes()
+  {
+    return new ArrayList<String>(archives.keySet());
+  }
+
+
+
+  /**
+   * Stores the provided job pack archive in this cache.
+   *
+   * @param  hash      The hash of the archive as provided by the server.
+   * @param  packData  The contents of the archive.
+   *
+   * @throws  IOException  If the archive does not match the hash provided by
+   *                       the server, or if a problem occurs while writing
+   *                       it.
+   */
+  public synchronized void store(String hash, byte[] packData)
+         throws IOException
+  {
+    if (! JobPackArchive.isValidHash(hash))
+    {
+      throw new IOException("Invalid job pack hash " + hash);
+    }
+
+    if (! hash.equals(JobPackArchive.computeHash(packData)))
+    {
+      throw new IOException("The contents of job pack " + hash + " do not " +
+                            "match its hash");
+    }
+
+    cacheDirectory.mkdirs();
+
+    File archiveFile =
+         new File(cacheDirectory, hash + JobPackArchive.ARCHIVE_FILE_EXTENSION);
+    File tempFile = new File(archiveFile.getPath() + ".tmp");
+    FileOutputStream outputStream = new FileOutputStream(tempFile);
+    try
+    {
+      outputStream.write(packData);
+    }
+    finally
+    {
+      outputStream.close();
+    }
+
+    archiveFile.delete();
+    if (! tempFile.renameTo(archiveFile))
+    {
+      tempFile.delete();
+      throw new IOException("Unable to rename " + tempFile.getPath() + " to " +
+                            archiveFile.getPath());
+    }
+
+    archives.put(hash, new JobPackArchive(archiveFile));
+  }
+
+
+
+  /**
+   * Records that the server has confirmed that the archive with the given hash
+   * is the current version of the job pack containing the specified class.
+   *
+   * @param  className  The name of the job class.
+   * @param  hash       The hash of the current archive for that class.
+   *
+   * @return  {@code true} if the archive is available in this cache, or
+   *          {@code false} if not.
+   */
+  public synchronized boolean setCurrentArchive(String className, String hash)
+  {
+    JobPackArchive archive = archives.get(hash);
+    if ((archive == null) || (! archive.containsClass(className)))
+    {
+      currentHashes.remove(className);
+      return false;
+    }
+
+    currentHashes.put(className, hash);
+    archive.getFile().setLastModified(System.currentTimeMillis());
+    return true;
+  }
+
+
+
+  /**
+   * Records that the server does not have a job pack containing the specified
+   * class, so that any cached archive will no longer be used to load it.
+   *
+   * @param  className  The name of the job class.
+   */
+  public synchronized void clearCurrentArchive(String className)
+  {
+    currentHashes.remove(className);
+  }
+
+
+
+  /**
+   * Retrieves a class loader that may be used to load the specified job class
+   * from the archive that the server has confirmed to be current for it.  The
+   * same class loader will be returned for all jobs that use the same archive,
+   * so that its classes only need to be loaded once.
+   *
+   * @param  className     The name of the job class to be loaded.
+   * @param  parentLoader  The class loader to use for classes that are not
+   *                       contained in the archive.
+   *
+   * @return  A class loader that may be used to load the specified job class,
+   *          or {@code null} if there is no current archive for it.
+   *
+   * @throws  IOException  If the archive cannot be opened.
+   */
+  public synchronized JobPackClassLoader
+                           getClassLoader(String className,
+                                          ClassLoader parentLoader)
+         throws IOException
+  {
+    String hash = currentHashes.get(className);
+    if (hash == null)
+    {
+      return null;
+    }
+
+    JobPackArchive archive = archives.get(hash);
+    if (archive == null)
+    {
+      currentHashes.remove(className);
+      return null;
+    }
+
+    JobPackClassLoader classLoader = classLoaders.get(hash);
+    if (classLoader == null)
+    {
+      classLoader = new JobPackClassLoader(parentLoader, archive);
+      classLoaders.put(hash, classLoader);
+    }
+
+    return classLoader;
+  }
+
+
+
+  /**
+   * Removes all information about the provided archive and deletes it from the
+   * cache directory.
+   *
+   * @param  archive  The archive to discard.
+   */
+  private void discard(JobPackArchive archive)
+  {
+    String hash = archive.getHash();
+
+    JobPackClassLoader classLoader = classLoaders.remove(hash);
+    if (classLoader != null)
+    {
+      classLoader.close();
+    }
+
+    currentHashes.values().removeAll(Collections.singleton(hash));
+    archive.getFile().delete();
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.client;
+
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.zip.GZIPOutputStream;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import com.slamd.common.SLAMDException;
+
+
+
+/**
+ * This class provides a means of capturing a Java Flight Recorder session on
+ * a client for the length of time that a job is active.  The profile settings
+ * string provided when the job is scheduled has the form
+ * "{@code configuration[;event#setting=value]...}", where the configuration
+ * is either the name of a configuration bundled with the JVM (e.g., "default"
+ * or "profile") or the path to a .jfc file on the client system, and each
+ * optional override replaces a single setting from that configuration (e.g.,
+ * "{@code profile;jdk.ExecutionSample#period=10 ms}").  When the recording is
+ * stopped, it is returned as gzip-compressed bytes so that it can be sent back
+ * to the SLAMD server along with the rest of the job results.
+ */
+final class JobProfiler
+{
+  // The recording being captured for the job.
+  private final Recording recording;
+
+
+
+  /**
+   * Creates a new job profiler with the provided information.  The recording
+   * will not be started until the {@code start} method is called.
+   *
+   * @param  jobID            The ID of the job being profiled.
+   * @param  profileSettings  The profile settings string that indicates which
+   *                          configuration and overrides should be used.
+   *
+   * @throws  SLAMDException  If the profile settings string is malformed or
+   *                          references a configuration that does not exist.
+   */
+  JobProfiler(String jobID, String profileSettings)
+       throws SLAMDException
+  {
+    String[] settingStrs = profileSettings.split(";");
+    String configName = settingStrs[0].trim();
+    if (configName.length() == 0)
+    {
+      configName = "default";
+    }
+
+    Configuration config;
+    try
+    {
+      File configFile = new File(configName);
+      if (configFile.isFile())
+      {
+        config = Configuration.create(configFile.toPath());
+      }
+      else
+      {
+        config = Configuration.getConfiguration(configName);
+      }
+    }
+    catch (Exception e)
+    {
+      throw new SLAMDException("Unable to load flight recorder configuration " +
+                               '"' + configName + "\":  " + e, e);
+    }
+
+    HashMap<String,String> settings =
+         new HashMap<String,String>(config.getSettings());
+    for (int i=1; i < settingStrs.length; i++)
+    {
+      String settingStr = settingStrs[i].trim();
+      if (settingStr.length() == 0)
+      {
+        continue;
+      }
+
+      int hashPos   = settingStr.indexOf('#');
+      int equalsPos = settingStr.indexOf('=');
+      if ((hashPos <= 0) || (equalsPos < hashPos + 2))
+      {
+        throw new SLAMDException("Invalid flight recorder setting \"" +
+                                 settingStr + "\" -- settings must be in the " +
+                                 "form event#setting=value");
+      }
+
+      settings.put(settingStr.substring(0, equalsPos).trim(),
+                   settingStr.substring(equalsPos+1).trim());
+    }
+
+    recording = new Recording(settings);
+    recording.setName("SLAMD job " + jobID);
+    recording.setToDisk(true);
+  }
+
+
+
+  /**
+   * Starts capturing the flight recording.
+   */
+  void start()
+  {
+    recording.start();
+  }
+
+
+
+  /**
+   * Stops capturing the flight recording and retrieves its contents.
+   *
+   * @return  The gzip-compressed contents of the flight recording.
+   *
+   * @throws  SLAMDException  If a problem occurs while trying to retrieve the
+   *                          recording data.
+   */
+  byte[] stop()
+         throws SLAMDException
+  {
+    File tempFile = null;
+    try
+    {
+      recording.stop();
+
+      tempFile = File.createTempFile("slamd-job-", ".jfr");
+      recording.dump(tempFile.toPath());
+
+      ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+      try (GZIPOutputStream gzipStream = new GZIPOutputStream(byteStream))
+      {
+        Files.copy(tempFile.toPath(), gzipStream);
+      }
+
+      return byteStream.toByteArray();
+    }
+    catch (Exception e)
+    {
+      throw new SLAMDException("Unable to retrieve the flight recording:  " +
+                               e, e);
+    }
+    finally
+    {
+      recording.close();
+      if (tempFile != null)
+      {
+        tempFile.delete();
+      }
+    }
+  }
+}
+
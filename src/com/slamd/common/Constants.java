@@ -665,6 +665,14 @@ public final class Constants
 
 
 
+  /**
+   * The name of the database that is used to hold the chunks of data for
+   * uploaded files that are stored separately from the file information.
+   */
+  public static final String DB_NAME_FILE_DATA = "file_data";
+
+
+
   /**
    * The name of the database that is used to hold job folder information.
    */
@@ -714,6 +722,23 @@ public final class Constants
 
 
 
+  /**
+   * The name of the secondary database that is used to index jobs by the name
+   * of the folder that contains them.
+   */
+  public static final String DB_NAME_FOLDER_JOB_INDEX = "folder_job_index";
+
+
+
+  /**
+   * The name of the secondary database that is used to index optimizing jobs
+   * by the name of the folder that contains them.
+   */
+  public static final String DB_NAME_FOLDER_OPTIMIZING_JOB_INDEX =
+       "folder_optimizing_job_index";
+
+
+
   /**
    * The end-of-line character that is appropriate for this platform.
    */
@@ -1132,6 +1157,14 @@ public final class Constants
 
 
 
+  /**
+   * The default time in seconds before a job's start time that clients should
+   * be asked to stage the files referenced by the job into their file caches.
+   */
+  public static final int DEFAULT_SCHEDULER_FILE_STAGE_LEAD_TIME = 300;
+
+
+
   /**
    * The default length of time in seconds to use as the statistics collection
    * interval.
@@ -1776,6 +1809,46 @@ public final class Constants
 
 
 
+  /**
+   * The message type that is used by a client to report the rate that it
+   * achieved for a job using coordinated rate limiting.
+   */
+  public static final int MESSAGE_TYPE_RATE_REPORT = 21;
+
+
+
+  /**
+   * The message type that is used by the server to provide a client with its
+   * share of the aggregate rate for a job using coordinated rate limiting.
+   */
+  public static final int MESSAGE_TYPE_RATE_QUOTA = 22;
+
+
+
+  /**
+   * The message type that is used by the server to ask a client to retrieve
+   * the files referenced by an upcoming job into its local file cache.
+   */
+  public static final int MESSAGE_TYPE_FILE_STAGE_REQUEST = 23;
+
+
+
+  /**
+   * The message type that is used by a client to request the job pack that
+   * contains a job class.
+   */
+  public static final int MESSAGE_TYPE_JOB_PACK_REQUEST = 24;
+
+
+
+  /**
+   * The message type that is used by the server to provide a client with a job
+   * pack archive.
+   */
+  public static final int MESSAGE_TYPE_JOB_PACK_RESPONSE = 25;
+
+
+
   /**
    * The name of the configuration parameter that specifies the location of
    * configuration parameters in the configuration directory.
@@ -1934,6 +2007,16 @@ public final class Constants
 
 
 
+  /**
+   * The name of the configuration parameter that specifies the number of
+   * seconds before the job's actual start time that the scheduler should ask
+   * clients to stage the files referenced by the job into their file caches.
+   */
+  public static final String PARAM_SCHEDULER_FILE_STAGE_LEAD_TIME =
+       "scheduler_file_stage_lead_time";
+
+
+
   /**
    * The name of the configuration parameter that holds a list of all jobs that
    * have been marked disabled.
@@ -2159,6 +2242,23 @@ public final class Constants
 
 
 
+  /**
+   * The name of the configuration parameter that specifies the maximum number
+   * of jobs or optimizing jobs to display on each page when viewing the
+   * contents of a job folder.
+   */
+  public static final String PARAM_JOB_LIST_PAGE_SIZE = "job_list_page_size";
+
+
+
+  /**
+   * The default number of jobs or optimizing jobs to display on each page when
+   * viewing the contents of a job folder.
+   */
+  public static final int DEFAULT_JOB_LIST_PAGE_SIZE = 250;
+
+
+
   /**
    * The name of the configuration parameter that specifies the set of
    * optimization algorithms that have been defined for use in the SLAMD server.
@@ -2532,6 +2632,67 @@ public final class Constants
 
 
 
+  /**
+   * The name of the Java property that, if set with a value of "true" or "yes"
+   * or "on" or "1", will prevent clients from reporting client health
+   * statistics with each job.
+   */
+  public static final String PROPERTY_DISABLE_CLIENT_HEALTH_MONITOR =
+       "com.slamd.disableClientHealthMonitor";
+
+
+
+  /**
+   * The name of the Java property that, if set with a value of "true" or "yes"
+   * or "on" or "1", will cause stat trackers to encode their data in the
+   * compact format rather than the original ASN.1 format.  This should only
+   * be enabled once every client and server that will see the data, and any
+   * server that may read the job database, supports the compact format.
+   */
+  public static final String PROPERTY_ENABLE_COMPACT_STAT_ENCODING =
+       "com.slamd.enableCompactStatEncoding";
+
+
+
+  /**
+   * The name of the Java property that, if set with a value of "true" or "yes"
+   * or "on" or "1", will cause stat tracker data encoded in the compact format
+   * to be compressed when that makes it smaller.
+   */
+  public static final String PROPERTY_COMPRESS_STAT_DATA =
+       "com.slamd.compressStatData";
+
+
+
+  /**
+   * The name of the Java property that specifies the process CPU utilization,
+   * as a percentage of all available processors, above which a client will be
+   * considered saturated.
+   */
+  public static final String PROPERTY_CLIENT_CPU_THRESHOLD =
+       "com.slamd.clientCPUThreshold";
+
+
+
+  /**
+   * The name of the Java property that specifies the time spent in garbage
+   * collection, as a percentage of the collection interval, above which a
+   * client will be considered saturated.
+   */
+  public static final String PROPERTY_CLIENT_GC_THRESHOLD =
+       "com.slamd.clientGCThreshold";
+
+
+
+  /**
+   * The name of the Java property that specifies the maximum scheduling lag in
+   * milliseconds above which a client will be considered saturated.
+   */
+  public static final String PROPERTY_CLIENT_SCHEDULING_LAG_THRESHOLD =
+       "com.slamd.clientSchedulingLagThreshold";
+
+
+
   /**
    * The name of the configuration parameter that specifies the number of jobs
    * that should be stored in the job cache.
@@ -4154,6 +4315,16 @@ public final class Constants
 
 
 
+  /**
+   * The name of the request parameter that specifies the job ID or optimizing
+   * job ID after which to start when viewing a page of the contents of a job
+   * folder.
+   */
+  public static final String SERVLET_PARAM_START_AFTER_JOB_ID =
+       "start_after_job_id";
+
+
+
   /**
    * The name of the request parameter that indicates the name of a virtual job
    * folder that should be used.
@@ -5066,6 +5237,42 @@ public final class Constants
 
 
 
+  /**
+   * The string that indicates that the jobs in the SLAMD server should be
+   * exported as a compressed job archive rather than by folder.
+   */
+  public static final String EXPORT_CHOICE_JOB_ARCHIVE =
+       "Export jobs as a compressed job archive";
+
+
+
+  /**
+   * The name of the servlet parameter that will be used to specify the job ID
+   * at which a job archive export should start.
+   */
+  public static final String SERVLET_PARAM_EXPORT_START_JOB_ID =
+       "export_start_job_id";
+
+
+
+  /**
+   * The name of the servlet parameter that will be used to specify the job ID
+   * before which a job archive export should end.
+   */
+  public static final String SERVLET_PARAM_EXPORT_END_JOB_ID =
+       "export_end_job_id";
+
+
+
+  /**
+   * The name of the servlet parameter that will be used to indicate that a job
+   * archive export is resuming an interrupted export, so the start job should
+   * be excluded and the archive header omitted.
+   */
+  public static final String SERVLET_PARAM_EXPORT_RESUME = "export_resume";
+
+
+
   /**
    * The name of the servlet parameter that will be used to indicate whether the
    * unclassified jobs should be included in the export.
@@ -5288,6 +5495,15 @@ public final class Constants
 
 
 
+  /**
+   * The name of the directory beneath the job class path in which the server
+   * keeps the job pack archives that it can provide to clients, and in which
+   * clients cache the job pack archives that they have retrieved.
+   */
+  public static final String JOB_PACK_DIRECTORY_NAME = "job-packs";
+
+
+
   /**
    * The name of the request parameter that indicates whether the user is
    * performing the operation in the context of the optimizing jobs.
@@ -5895,6 +6111,15 @@ public final class Constants
 
 
 
+  /**
+   * The name of the request parameter that specifies the flight recorder
+   * settings that the clients should use to profile a job.
+   */
+  public static final String SERVLET_PARAM_JOB_PROFILE_SETTINGS =
+       "job_profile_settings";
+
+
+
   /**
    * The name of the request parameter that indicates whether the job should
    * wait for the number of clients to be available.
@@ -0,0 +1,82 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.common;
+
+
+
+/**
+ * This file has been dynamically generated as part of the SLAMD build
+ * process.  Do not edit it directly.
+ */
+public final class DynamicConstants
+{
+  /**
+   * Indicates whether this is an official build.
+   */
+  public static final boolean OFFICIAL_BUILD = false;
+
+
+
+  /**
+   * The SLAMD version string to be displayed to the end user.
+   */
+  public static final String SLAMD_VERSION = "3.0.0-20261018222149";
+
+
+
+  /**
+   * The timestamp that this SLAMD build was created.
+   */
+  public static final String BUILD_DATE = "20261018222149";
+
+
+
+  /**
+   * The major version number for this SLAMD build.
+   */
+  public static final int MAJOR_VERSION = 3;
+
+
+
+  /**
+   * The minor version number for this SLAMD build.
+   */
+  public static final int MINOR_VERSION = 0;
+
+
+
+  /**
+   * The point version number for this SLAMD build.
+   */
+  public static final int POINT_VERSION = 0;
+
+
+
+  /**
+   * The version qualifier string for this SLAMD build.
+   */
+  public static final String VERSION_QUALIFIER = "";
+
+
+
+  /**
+   * Prevent this utility class from being instantiated.
+   */
+  private DynamicConstants()
+  {
+    // No implementation required.
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.common;
+
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+
+/**
+ * This class provides read-only, random access to the non-blank lines of a
+ * potentially very large text file without holding those lines on the heap.
+ * The file is memory-mapped, and a sparse index is built over it that records
+ * the byte offset of every sixteenth non-blank line.  A line is located by
+ * starting at the nearest indexed offset and skipping forward over at most
+ * fifteen lines, so the heap cost of the index is about half a byte per line
+ * regardless of how long the lines are.
+ * <BR><BR>
+ * Lines are treated as UTF-8, and may be terminated by a line feed, a carriage
+ * return, or a carriage return followed by a line feed, which matches the
+ * behavior of <CODE>FileURLParameter.getNonBlankFileLines</CODE>.  Instances
+ * of this class may be safely used by multiple threads at once until they are
+ * closed.  If the file is a temporary copy owned by the instance, then it will
+ * be deleted when the instance is closed.
+ */
+public final class IndexedLineFile
+{
+  /**
+   * The number of non-blank lines covered by each entry in the index.
+   */
+  private static final int INDEX_STRIDE = 16;
+
+
+
+  /**
+   * The number of bits used to address a byte within a mapped segment.
+   */
+  private static final int SEGMENT_BITS = 30;
+
+
+
+  /**
+   * The size in bytes of each mapped segment of the file.
+   */
+  private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+
+
+  /**
+   * The mask used to obtain the position of a byte within its segment.
+   */
+  private static final long SEGMENT_MASK = SEGMENT_SIZE - 1L;
+
+
+
+  // Indicates whether the file is owned by this instance and should be deleted
+  // when it is closed.
+  private final boolean deleteOnClose;
+
+  // The file that has been mapped.
+  private final File file;
+
+  // The number of non-blank lines in the file.
+  private final int lineCount;
+
+  // The total size of the file in bytes.
+  private final long fileSize;
+
+  // The byte offsets of every INDEX_STRIDEth non-blank line.
+  private final long[] index;
+
+  // The memory-mapped segments of the file.
+  private final MappedByteBuffer[] segments;
+
+
+
+  /**
+   * Maps the specified file into memory and builds the line index for it.
+   *
+   * @param  file  The file to be indexed.
+   *
+   * @throws  IOException  If a problem occurs while mapping or reading the
+   *                       file, or if it contains more non-blank lines than
+   *                       can be addressed.
+   */
+  public IndexedLineFile(final File file)
+         throws IOException
+  {
+    this(file, false);
+  }
+
+
+
+  /**
+   * Maps the specified file into memory and builds the line index for it.
+   *
+   * @param  file           The file to be indexed.
+   * @param  deleteOnClose  Indicates whether the file is owned by this
+   *                        instance and should be deleted when it is closed,
+   *                        or if the index cannot be built.
+   *
+   * @throws  IOException  If a problem occurs while mapping or reading the
+   *                       file, or if it contains more non-blank lines than
+   *                       can be addressed.
+   */
+  public IndexedLineFile(final File file, final boolean deleteOnClose)
+         throws IOException
+  {
+    this.file          = file;
+    this.deleteOnClose = deleteOnClose;
+
+    boolean indexed = false;
+    try
+    {
+      try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+           FileChannel channel = raf.getChannel())
+      {
+        fileSize = channel.size();
+
+        final int numSegments =
+             (int) ((fileSize + SEGMENT_SIZE - 1L) >>> SEGMENT_BITS);
+        segments = new MappedByteBuffer[numSegments];
+        for (int i=0; i < numSegments; i++)
+        {
+          final long start = ((long) i) << SEGMENT_BITS;
+          segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+               Math.min(SEGMENT_SIZE, fileSize - start));
+        }
+      }
+
+
+      // Make a single pass through the file to find the start of each non-blank
+      // line, and remember every INDEX_STRIDEth one.
+      long[] offsets = new long[1024];
+      int numOffsets = 0;
+      long count = 0L;
+      boolean atLineStart = true;
+      for (int s=0; s < segments.length; s++)
+      {
+        final MappedByteBuffer segment = segments[s];
+        final long segmentStart = ((long) s) << SEGMENT_BITS;
+        final int limit = segment.limit();
+        for (int i=0; i < limit; i++)
+        {
+          final byte b = segment.get(i);
+          if ((b == '\n') || (b == '\r'))
+          {
+            atLineStart = true;
+          }
+          else if (atLineStart)
+          {
+            atLineStart = false;
+            if ((count % INDEX_STRIDE) == 0L)
+            {
+              if (numOffsets == offsets.length)
+              {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+              }
+
+              offsets[numOffsets++] = segmentStart + i;
+            }
+
+            count++;
+          }
+        }
+      }
+
+      if (count > Integer.MAX_VALUE)
+      {
+        throw new IOException("File " + file.getAbsolutePath() + " contains " +
+             count + " non-blank lines, which is more than the maximum of " +
+             Integer.MAX_VALUE + '.');
+      }
+
+      lineCount = (int) count;
+      index     = Arrays.copyOf(offsets, numOffsets);
+
+      indexed = true;
+    }
+    finally
+    {
+      if (! indexed)
+      {
+        deleteOwnedFile();
+      }
+    }
+  }
+
+
+
+  /**
+   * Retrieves the file that has been indexed.
+   *
+   * @return  The file that has been indexed.
+   */
+  public File getFile()
+  {
+    return file;
+  }
+
+
+
+  /**
+   * Retrieves the number of non-blank lines in the file.
+   *
+   * @return  The number of non-blank lines in the file.
+   */
+  public int getLineCount()
+  {
+    return lineCount;
+  }
+
+
+
+  /**
+   * Retrieves the specified non-blank line from the file.
+   *
+   * @param  lineNumber  The zero-based position of the line to retrieve among
+   *                     all non-blank lines in the file.
+   *
+   * @return  The requested line, without any line terminator.
+   *
+   * @throws  IndexOutOfBoundsException  If the provided line number is
+   *                                     negative or is not less than the
+   *                                     number of lines in the file.
+   */
+  public String getLine(final int lineNumber)
+  {
+    if ((lineNumber < 0) || (lineNumber >= lineCount))
+    {
+      throw new IndexOutOfBoundsException("Line " + lineNumber +
+           " is out of range for a file with " + lineCount + " lines.");
+    }
+
+    long pos = index[lineNumber / INDEX_STRIDE];
+    for (int i = lineNumber % INDEX_STRIDE; i > 0; i--)
+    {
+      while (! isTerminator(byteAt(pos)))
+      {
+        pos++;
+      }
+
+      while (isTerminator(byteAt(pos)))
+      {
+        pos++;
+      }
+    }
+
+    long end = pos;
+    while ((end < fileSize) && (! isTerminator(byteAt(end))))
+    {
+      end++;
+    }
+
+    final byte[] lineBytes = new byte[(int) (end - pos)];
+    for (int i=0; i < lineBytes.length; i++)
+    {
+      lineBytes[i] = byteAt(pos + i);
+    }
+
+    return new String(lineBytes, StandardCharsets.UTF_8);
+  }
+
+
+
+  /**
+   * Closes this instance and, if the file is owned by it, deletes the file.
+   * The mapping is released when this instance is garbage collected, which is
+   * also when the space used by a deleted file is reclaimed.  This instance
+   * should not be used after it has been closed.
+   */
+  public void close()
+  {
+    deleteOwnedFile();
+  }
+
+
+
+  /**
+   * Deletes the file if it is owned by this instance.  If it cannot be deleted
+   * now, then an attempt will be made to delete it when the JVM exits.
+   */
+  private void deleteOwnedFile()
+  {
+    if (deleteOnClose && file.exists() && (! file.delete()))
+    {
+      file.deleteOnExit();
+    }
+  }
+
+
+
+  /**
+   * Retrieves the byte at the specified position in the file.  This uses only
+   * absolute reads, so it does not alter the state of any buffer.
+   *
+   * @param  pos  The position of the byte to retrieve.
+   *
+   * @return  The byte at the specified position.
+   */
+  private byte byteAt(final long pos)
+  {
+    return segments[(int) (pos >>> SEGMENT_BITS)].get(
+         (int) (pos & SEGMENT_MASK));
+  }
+
+
+
+  /**
+   * Indicates whether the provided byte is a line terminator.
+   *
+   * @param  b  The byte for which to make the determination.
+   *
+   * @return  {@code true} if the provided byte is a line terminator, or
+   *          {@code false} if not.
+   */
+  private static boolean isTerminator(final byte b)
+  {
+    return ((b == '\n') || (b == '\r'));
+  }
+}
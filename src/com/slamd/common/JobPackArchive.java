@@ -0,0 +1,246 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.common;
+
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+
+
+/**
+ * This class provides information about a job pack archive, which is a JAR
+ * file containing a set of job classes and their supporting classes that may be
+ * transferred from the server to clients as a single unit.  Archives are
+ * identified by the SHA-256 digest of their contents, so that a client that
+ * already has a copy of an archive does not need to retrieve it again, and so
+ * that a new version of a job pack is always treated as a different archive.
+ */
+public final class JobPackArchive
+{
+  /**
+   * The file extension used for job pack archives.
+   */
+  public static final String ARCHIVE_FILE_EXTENSION = ".jar";
+
+
+
+  // The file containing the archive.
+  private final File file;
+
+  // The names of the classes contained in the archive.
+  private final Set<String> classNames;
+
+  // The hex-encoded SHA-256 digest of the archive contents.
+  private final String hash;
+
+
+
+  /**
+   * Creates a new job pack archive from the provided file, whose name must be
+   * the hash of its contents followed by the archive file extension.
+   *
+   * @param  file  The file containing the archive.
+   *
+   * @throws  IOException  If the file cannot be read as a JAR file or its name
+   *                       is not valid.
+   */
+  public JobPackArchive(File file)
+         throws IOException
+  {
+    this.file = file;
+
+    String fileName = file.getName();
+    if (! fileName.endsWith(ARCHIVE_FILE_EXTENSION))
+    {
+      throw new IOException("Job pack archive " + file.getPath() + " does " +
+                            "not have the " + ARCHIVE_FILE_EXTENSION +
+                            " extension.");
+    }
+
+    hash = fileName.substring(0,
+                              fileName.length() -
+                              ARCHIVE_FILE_EXTENSION.length());
+    if (! isValidHash(hash))
+    {
+      throw new IOException("The name of job pack archive " + file.getPath() +
+                            " is not a SHA-256 hash.");
+    }
+
+    HashSet<String> names = new HashSet<String>();
+    ZipFile zipFile = new ZipFile(file);
+    try
+    {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements())
+      {
+        String entryName = entries.nextElement().getName();
+        if (entryName.endsWith(".class"))
+        {
+          names.add(entryName.substring(0, entryName.length() - 6).
+                         replace('/', '.'));
+        }
+      }
+    }
+    finally
+    {
+      zipFile.close();
+    }
+
+    classNames = Collections.unmodifiableSet(names);
+  }
+
+
+
+  /**
+   * Retrieves the file containing this archive.
+   *
+   * @return  The file containing this archive.
+   */
+  public File getFile()
+  {
+    return file;
+  }
+
+
+
+  /**
+   * Retrieves the hex-encoded SHA-256 digest of the contents of this archive.
+   *
+   * @return  The hex-encoded SHA-256 digest of the contents of this archive.
+   */
+  public String getHash()
+  {
+    return hash;
+  }
+
+
+
+  /**
+   * Retrieves the names of the classes contained in this archive.
+   *
+   * @return  The names of the classes contained in this archive.
+   */
+  public Set<String> getClassNames()
+  {
+    return classNames;
+  }
+
+
+
+  /**
+   * Indicates whether this archive contains the specified class.
+   *
+   * @param  className  The fully-qualified name of the class for which to make
+   *                    the determination.
+   *
+   * @return  {@code true} if this archive contains the specified class, or
+   *          {@code false} if not.
+   */
+  public boolean containsClass(String className)
+  {
+    return classNames.contains(className);
+  }
+
+
+
+  /**
+   * Reads the complete contents of this archive.
+   *
+   * @return  The complete contents of this archive.
+   *
+   * @throws  IOException  If a problem occurs while reading the archive.
+   */
+  public byte[] readData()
+         throws IOException
+  {
+    return Files.readAllBytes(file.toPath());
+  }
+
+
+
+  /**
+   * Computes the hex-encoded SHA-256 digest of the provided data.
+   *
+   * @param  data  The data for which to compute the digest.
+   *
+   * @return  The hex-encoded SHA-256 digest of the provided data.
+   */
+  public static String computeHash(byte[] data)
+  {
+    byte[] digest;
+    try
+    {
+      digest = MessageDigest.getInstance("SHA-256").digest(data);
+    }
+    catch (Exception e)
+    {
+      // This should never happen, since every Java implementation is required
+      // to support SHA-256.
+      throw new IllegalStateException("SHA-256 is not available:  " + e, e);
+    }
+
+    StringBuilder buffer = new StringBuilder(2 * digest.length);
+    for (byte b : digest)
+    {
+      buffer.append(Character.forDigit((b >> 4) & 0x0F, 16));
+      buffer.append(Character.forDigit(b & 0x0F, 16));
+    }
+
+    return buffer.toString();
+  }
+
+
+
+  /**
+   * Indicates whether the provided string is a valid hex-encoded SHA-256
+   * digest as created by the {@code computeHash} method.  This is used to make
+   * sure that a hash received from another system is safe to use as a file
+   * name.
+   *
+   * @param  hash  The string to examine.
+   *
+   * @return  {@code true} if the provided string is a valid hash, or
+   *          {@code false} if not.
+   */
+  public static boolean isValidHash(String hash)
+  {
+    if ((hash == null) || (hash.length() != 64))
+    {
+      return false;
+    }
+
+    for (int i=0; i < hash.length(); i++)
+    {
+      char c = hash.charAt(i);
+      if (! (((c >= '0') && (c <= '9')) || ((c >= 'a') && (c <= 'f'))))
+      {
+        return false;
+      }
+    }
+
+    return true;
+  }
+}
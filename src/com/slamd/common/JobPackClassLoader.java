@@ -0,0 +1,338 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.common;
+
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.slamd.job.JobClass;
+
+
+
+/**
+ * This class defines a class loader that will load job classes and their
+ * supporting classes directly from a job pack archive, without extracting them
+ * to the filesystem.  Classes and resources contained in the archive are loaded
+ * from it in preference to those available through the parent class loader, so
+ * that a newer version of a job pack will always be used even if an older copy
+ * of one of its classes is present in the job class path.  Everything else is
+ * delegated to the parent class loader.
+ */
+public class JobPackClassLoader
+       extends ClassLoader
+{
+  static
+  {
+    registerAsParallelCapable();
+  }
+
+
+
+  // The archive from which classes will be loaded.
+  private final JobPackArchive archive;
+
+  // The zip file used to read the archive contents.
+  private final ZipFile zipFile;
+
+
+
+  /**
+   * Creates a new instance of this job pack class loader.
+   *
+   * @param  parentClassLoader  The class loader that should be used for any
+   *                            class not contained in the archive.
+   * @param  archive            The archive from which classes should be
+   *                            loaded.
+   *
+   * @throws  IOException  If the archive cannot be opened.
+   */
+  public JobPackClassLoader(ClassLoader parentClassLoader,
+                            JobPackArchive archive)
+         throws IOException
+  {
+    super(parentClassLoader);
+
+    this.archive = archive;
+    zipFile      = new ZipFile(archive.getFile());
+  }
+
+
+
+  /**
+   * Retrieves the archive from which this class loader loads classes.
+   *
+   * @return  The archive from which this class loader loads classes.
+   */
+  public JobPackArchive getArchive()
+  {
+    return archive;
+  }
+
+
+
+  /**
+   * Retrieves an instance of the job class with the specified name.
+   *
+   * @param  className  The fully-qualified name of the Java class to retrieve.
+   *
+   * @return  The requested job class.
+   *
+   * @throws  SLAMDException  If a problem occurs while trying to load the
+   *                          requested class.
+   */
+  public JobClass getJobClass(String className)
+         throws SLAMDException
+  {
+    Class<?> jobClass;
+    try
+    {
+      jobClass = loadClass(className, true);
+    }
+    catch (Throwable t)
+    {
+      throw new SLAMDException("Unable to load job class " + className +
+                               " from job pack archive " +
+                               archive.getHash() + ":  " + t, t);
+    }
+
+    try
+    {
+      return (JobClass) jobClass.getDeclaredConstructor().newInstance();
+    }
+    catch (Exception e)
+    {
+      throw new SLAMDException("Unable to instantiate class " + className +
+                               " as a job class:  " + e, e);
+    }
+  }
+
+
+
+  /**
+   * Loads the class with the specified name, using the archive if it contains
+   * that class and the parent class loader otherwise.
+   *
+   * @param  name     The fully-qualified name of the class to load.
+   * @param  resolve  Indicates whether to resolve the class.
+   *
+   * @return  The requested class.
+   *
+   * @throws  ClassNotFoundException  If the class cannot be found.
+   */
+  @Override()
+  protected Class<?> loadClass(String name, boolean resolve)
+            throws ClassNotFoundException
+  {
+    if (! archive.containsClass(name))
+    {
+      return super.loadClass(name, resolve);
+    }
+
+    synchronized (getClassLoadingLock(name))
+    {
+      Class<?> c = findLoadedClass(name);
+      if (c == null)
+      {
+        c = findClass(name);
+      }
+
+      if (resolve)
+      {
+        resolveClass(c);
+      }
+
+      return c;
+    }
+  }
+
+
+
+  /**
+   * Defines the class with the specified name from the archive.
+   *
+   * @param  name  The fully-qualified name of the class to define.
+   *
+   * @return  The requested class.
+   *
+   * @throws  ClassNotFoundException  If the class is not contained in the
+   *                                  archive or cannot be read.
+   */
+  @Override()
+  protected Class<?> findClass(String name)
+            throws ClassNotFoundException
+  {
+    ZipEntry entry = zipFile.getEntry(name.replace('.', '/') + ".class");
+    if (entry == null)
+    {
+      throw new ClassNotFoundException(name);
+    }
+
+    byte[] classBytes;
+    try
+    {
+      classBytes = readEntry(entry);
+    }
+    catch (IOException ioe)
+    {
+      throw new ClassNotFoundException("Unable to read class " + name +
+                                       " from job pack archive " +
+                                       archive.getHash() + ":  " + ioe, ioe);
+    }
+
+    return defineClass(name, classBytes, 0, classBytes.length);
+  }
+
+
+
+  /**
+   * Retrieves a URL that may be used to read the specified resource from the
+   * archive.
+   *
+   * @param  name  The name of the resource to retrieve.
+   *
+   * @return  A URL that may be used to read the specified resource, or
+   *          {@code null} if the archive does not contain it.
+   */
+  @Override()
+  protected URL findResource(String name)
+  {
+    if (zipFile.getEntry(name) == null)
+    {
+      return null;
+    }
+
+    try
+    {
+      return new URL("jar:" + archive.getFile().toURI() + "!/" + name);
+    }
+    catch (MalformedURLException mue)
+    {
+      return null;
+    }
+  }
+
+
+
+  /**
+   * Retrieves a URL that may be used to read the specified resource, looking
+   * in the archive before the parent class loader.
+   *
+   * @param  name  The name of the resource to retrieve.
+   *
+   * @return  A URL that may be used to read the specified resource, or
+   *          {@code null} if it cannot be found.
+   */
+  @Override()
+  public URL getResource(String name)
+  {
+    URL url = findResource(name);
+    if (url == null)
+    {
+      url = super.getResource(name);
+    }
+
+    return url;
+  }
+
+
+
+  /**
+   * Retrieves an input stream that may be used to read the specified resource,
+   * looking in the archive before the parent class loader.
+   *
+   * @param  name  The name of the resource to retrieve.
+   *
+   * @return  An input stream that may be used to read the specified resource,
+   *          or {@code null} if it cannot be found.
+   */
+  @Override()
+  public InputStream getResourceAsStream(String name)
+  {
+    ZipEntry entry = zipFile.getEntry(name);
+    if (entry != null)
+    {
+      try
+      {
+        return zipFile.getInputStream(entry);
+      } catch (IOException ioe) {}
+    }
+
+    return super.getResourceAsStream(name);
+  }
+
+
+
+  /**
+   * Closes the archive used by this class loader.  Classes that have already
+   * been loaded will remain usable, but no more classes or resources will be
+   * loaded from the archive.
+   */
+  public void close()
+  {
+    try
+    {
+      zipFile.close();
+    } catch (IOException ioe) {}
+  }
+
+
+
+  /**
+   * Reads the complete contents of the provided archive entry.
+   *
+   * @param  entry  The entry to read.
+   *
+   * @return  The contents of the entry.
+   *
+   * @throws  IOException  If a problem occurs while reading the entry.
+   */
+  private byte[] readEntry(ZipEntry entry)
+          throws IOException
+  {
+    long size = entry.getSize();
+    ByteArrayOutputStream outputStream =
+         new ByteArrayOutputStream((size > 0L) ? (int) size : 8192);
+
+    InputStream inputStream = zipFile.getInputStream(entry);
+    try
+    {
+      byte[] buffer = new byte[8192];
+      while (true)
+      {
+        int bytesRead = inputStream.read(buffer);
+        if (bytesRead < 0)
+        {
+          break;
+        }
+
+        outputStream.write(buffer, 0, bytesRead);
+      }
+    }
+    finally
+    {
+      inputStream.close();
+    }
+
+    return outputStream.toByteArray();
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.db;
+
+
+
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.SecondaryDatabase;
+import com.sleepycat.je.SecondaryKeyCreator;
+import com.unboundid.util.StaticUtils;
+
+import com.slamd.job.Job;
+import com.slamd.job.OptimizingJob;
+
+
+
+/**
+ * This class provides the key creator for the secondary databases that index
+ * jobs and optimizing jobs by the name of the folder that contains them.  The
+ * secondary key is the folder name, and since the index allows duplicates that
+ * are sorted by primary key, the entries for a folder are ordered by job ID
+ * and any slice of them may be read with a cursor.
+ */
+final class FolderIndexKeyCreator
+       implements SecondaryKeyCreator
+{
+  // Indicates whether this key creator is used for optimizing jobs rather than
+  // jobs.
+  private final boolean optimizingJobs;
+
+
+
+  /**
+   * Creates a new folder index key creator.
+   *
+   * @param  optimizingJobs  Indicates whether this key creator will be used for
+   *                         the optimizing job database rather than the job
+   *                         database.
+   */
+  FolderIndexKeyCreator(final boolean optimizingJobs)
+  {
+    this.optimizingJobs = optimizingJobs;
+  }
+
+
+
+  /**
+   * Creates the secondary key for the provided primary record.
+   *
+   * @param  secondary  The secondary database for which the key is created.
+   * @param  key        The primary key of the record.
+   * @param  data       The encoded job or optimizing job.
+   * @param  result     The entry that should be updated with the secondary
+   *                    key.
+   *
+   * @return  {@code true} if a secondary key was created, or {@code false}
+   *          if the record does not specify a folder and should not be
+   *          indexed.
+   */
+  public boolean createSecondaryKey(final SecondaryDatabase secondary,
+                                    final DatabaseEntry key,
+                                    final DatabaseEntry data,
+                                    final DatabaseEntry result)
+  {
+    final byte[] encodedRecord = data.getData();
+    if (encodedRecord == null)
+    {
+      return false;
+    }
+
+    final String folderName;
+    if (optimizingJobs)
+    {
+      folderName = OptimizingJob.decodeFolderName(encodedRecord);
+    }
+    else
+    {
+      folderName = Job.decodeFolderName(encodedRecord);
+    }
+
+    if ((folderName == null) || (folderName.length() == 0))
+    {
+      return false;
+    }
+
+    result.setData(StaticUtils.getBytes(folderName));
+    return true;
+  }
+}
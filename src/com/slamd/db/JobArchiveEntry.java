@@ -0,0 +1,277 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.db;
+
+
+
+import com.unboundid.asn1.ASN1Element;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.asn1.ASN1Sequence;
+
+import com.slamd.common.SLAMDException;
+import com.slamd.job.Job;
+import com.slamd.stat.StatEncoder;
+import com.slamd.stat.StatTracker;
+
+
+
+/**
+ * This class defines a single job read from a job archive.  The stat tracker
+ * series are only decoded on request, so a reader that needs only the job
+ * metadata or a few of the series does not pay to decode the rest.
+ */
+public final class JobArchiveEntry
+{
+  // The descriptors for the stat tracker series.
+  private final ASN1Element[] columns;
+
+  // The per-interval data for the stat tracker series.
+  private final ASN1Element[] columnData;
+
+  // The encoded resource monitor stat trackers.
+  private final ASN1Element[] resourceStats;
+
+  // The encoded job record without its statistics.
+  private final byte[] metadata;
+
+  // The ID of the job.
+  private final String jobID;
+
+
+
+  /**
+   * Creates a new job archive entry with the provided information.
+   *
+   * @param  jobID          The ID of the job.
+   * @param  metadata       The encoded job record without its statistics.
+   * @param  columns        The descriptors for the stat tracker series.
+   * @param  columnData     The per-interval data for the stat tracker series.
+   * @param  resourceStats  The encoded resource monitor stat trackers.
+   */
+  JobArchiveEntry(final String jobID, final byte[] metadata,
+                  final ASN1Element[] columns, final ASN1Element[] columnData,
+                  final ASN1Element[] resourceStats)
+  {
+    this.jobID         = jobID;
+    this.metadata      = metadata;
+    this.columns       = columns;
+    this.columnData    = columnData;
+    this.resourceStats = resourceStats;
+  }
+
+
+
+  /**
+   * Retrieves the ID of the job.
+   *
+   * @return  The ID of the job.
+   */
+  public String getJobID()
+  {
+    return jobID;
+  }
+
+
+
+  /**
+   * Retrieves the encoded job record without any of its statistics.
+   *
+   * @return  The encoded job record without any of its statistics.
+   */
+  public byte[] getMetadata()
+  {
+    return metadata;
+  }
+
+
+
+  /**
+   * Retrieves the number of stat tracker series held for the job.
+   *
+   * @return  The number of stat tracker series held for the job.
+   */
+  public int getNumSeries()
+  {
+    return columns.length;
+  }
+
+
+
+  /**
+   * Retrieves the display name of the specified stat tracker series.
+   *
+   * @param  index  The position of the series.
+   *
+   * @return  The display name of the specified stat tracker series.
+   *
+   * @throws  DecodeException  If the series descriptor cannot be decoded.
+   */
+  public String getSeriesDisplayName(final int index)
+         throws DecodeException
+  {
+    try
+    {
+      return columns[index].decodeAsSequence().elements()[3].
+           decodeAsOctetString().stringValue();
+    }
+    catch (final Exception e)
+    {
+      throw new DecodeException("Unable to decode the descriptor for series " +
+                                index + " of job " + jobID + ":  " + e, e);
+    }
+  }
+
+
+
+  /**
+   * Decodes the specified stat tracker series.
+   *
+   * @param  index  The position of the series.
+   *
+   * @return  The stat tracker decoded from the specified series.
+   *
+   * @throws  DecodeException  If the series cannot be decoded.
+   */
+  public StatTracker getSeries(final int index)
+         throws DecodeException
+  {
+    try
+    {
+      return StatEncoder.sequenceToTracker(getTrackerSequence(index));
+    }
+    catch (final SLAMDException se)
+    {
+      throw new DecodeException("Unable to decode series " + index +
+                                " of job " + jobID + ":  " + se.getMessage(),
+                                se);
+    }
+  }
+
+
+
+  /**
+   * Decodes all of the stat tracker series for the job.
+   *
+   * @return  The stat trackers decoded from all of the series.
+   *
+   * @throws  DecodeException  If any of the series cannot be decoded.
+   */
+  public StatTracker[] getStatTrackers()
+         throws DecodeException
+  {
+    final StatTracker[] trackers = new StatTracker[columns.length];
+    for (int i=0; i < trackers.length; i++)
+    {
+      trackers[i] = getSeries(i);
+    }
+
+    return trackers;
+  }
+
+
+
+  /**
+   * Reassembles the complete job record, including its statistics, in the
+   * form in which it is held in the job database.
+   *
+   * @return  The complete encoded job record.
+   *
+   * @throws  DecodeException  If the job record cannot be reassembled.
+   */
+  public byte[] getEncodedJob()
+         throws DecodeException
+  {
+    try
+    {
+      final ASN1Element[] metadataElements =
+           ASN1Sequence.decodeAsSequence(metadata).elements();
+
+      int numElements = metadataElements.length;
+      if (columns.length > 0)
+      {
+        numElements += 2;
+      }
+      if (resourceStats.length > 0)
+      {
+        numElements += 2;
+      }
+
+      final ASN1Element[] jobElements = new ASN1Element[numElements];
+      System.arraycopy(metadataElements, 0, jobElements, 0,
+                       metadataElements.length);
+
+      int pos = metadataElements.length;
+      if (columns.length > 0)
+      {
+        final ASN1Element[] trackerSequences = new ASN1Element[columns.length];
+        for (int i=0; i < trackerSequences.length; i++)
+        {
+          trackerSequences[i] = getTrackerSequence(i);
+        }
+
+        jobElements[pos++] = new ASN1OctetString(Job.ELEMENT_STATS);
+        jobElements[pos++] = new ASN1Sequence(trackerSequences);
+      }
+
+      if (resourceStats.length > 0)
+      {
+        jobElements[pos++] =
+             new ASN1OctetString(Job.ELEMENT_RESOURCE_MONITOR_STATS);
+        jobElements[pos++] = new ASN1Sequence(resourceStats);
+      }
+
+      return new ASN1Sequence(jobElements).encode();
+    }
+    catch (final DecodeException de)
+    {
+      throw de;
+    }
+    catch (final Exception e)
+    {
+      throw new DecodeException("Unable to reassemble the record for job " +
+                                jobID + ":  " + e, e);
+    }
+  }
+
+
+
+  /**
+   * Rebuilds the sequence for the specified stat tracker in the form used by
+   * the {@code StatEncoder} class.
+   *
+   * @param  index  The position of the series.
+   *
+   * @return  The sequence for the specified stat tracker.
+   *
+   * @throws  DecodeException  If the series descriptor cannot be decoded.
+   */
+  private ASN1Sequence getTrackerSequence(final int index)
+          throws DecodeException
+  {
+    try
+    {
+      final ASN1Element[] descriptor =
+           columns[index].decodeAsSequence().elements();
+      return new ASN1Sequence(descriptor[0], descriptor[1], descriptor[2],
+           descriptor[3], descriptor[4], descriptor[5], columnData[index]);
+    }
+    catch (final Exception e)
+    {
+      throw new DecodeException("Unable to decode the descriptor for series " +
+                                index + " of job " + jobID + ":  " + e, e);
+    }
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.db;
+
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.unboundid.asn1.ASN1Element;
+import com.unboundid.asn1.ASN1Sequence;
+import com.unboundid.asn1.ASN1StreamReader;
+
+
+
+/**
+ * This class provides a mechanism for reading job data from an archive written
+ * by the {@code JobArchiveWriter} class, one job at a time.  If the archive
+ * ends in the middle of a record, then that record will be ignored, and the
+ * reader will indicate that the archive is incomplete so that the export that
+ * created it may be resumed.
+ */
+public final class JobArchiveReader
+{
+  // Indicates whether the end record has been read.
+  private boolean complete;
+
+  // Indicates whether the end of the archive has been reached.
+  private boolean endReached;
+
+  // The decompressor used for job payloads.
+  private final Inflater inflater;
+
+  // The number of jobs read from the archive.
+  private int jobCount;
+
+  // The number of bytes in the header and the complete records read so far.
+  private long validLength;
+
+  // The ASN.1 reader used to read the archive.
+  private final ASN1StreamReader reader;
+
+  // The ID of the last complete job read from the archive.
+  private String lastJobID;
+
+
+
+  /**
+   * Creates a new job archive reader that will read from the provided input
+   * stream, and verifies the archive header.
+   *
+   * @param  inputStream  The input stream from which to read the archive.
+   *
+   * @throws  IOException  If a problem occurs while reading the header.
+   *
+   * @throws  DecodeException  If the input stream does not contain a job
+   *                           archive.
+   */
+  public JobArchiveReader(final InputStream inputStream)
+         throws IOException, DecodeException
+  {
+    reader     = new ASN1StreamReader(inputStream);
+    inflater   = new Inflater();
+    complete   = false;
+    endReached = false;
+    jobCount   = 0;
+    lastJobID  = "";
+
+    final ASN1Element header = reader.readElement();
+    try
+    {
+      if ((header == null) || (header.getType() != JobArchiveWriter.TYPE_HEADER)
+          || (! JobArchiveWriter.ARCHIVE_HEADER.equals(
+                     header.decodeAsOctetString().stringValue())))
+      {
+        throw new DecodeException("The data is not a SLAMD job archive.");
+      }
+    }
+    catch (final DecodeException de)
+    {
+      throw de;
+    }
+    catch (final Exception e)
+    {
+      throw new DecodeException("Unable to decode the job archive header:  " +
+                                e, e);
+    }
+
+    validLength = getEncodedLength(header);
+  }
+
+
+
+  /**
+   * Indicates whether the first byte of the provided data could be the start
+   * of a job archive, rather than an export in the original format.
+   *
+   * @param  firstByte  The first byte of the data.
+   *
+   * @return  {@code true} if the data may be a job archive, or {@code false}
+   *          if not.
+   */
+  public static boolean isJobArchive(final int firstByte)
+  {
+    return (firstByte == (JobArchiveWriter.TYPE_HEADER & 0xFF));
+  }
+
+
+
+  /**
+   * Reads the next job from the archive.
+   *
+   * @return  The next job from the archive, or {@code null} if there are no
+   *          more complete jobs.
+   *
+   * @throws  IOException  If a problem occurs while reading from the archive.
+   *
+   * @throws  DecodeException  If the next record cannot be decoded.
+   */
+  public JobArchiveEntry readJob()
+         throws IOException, DecodeException
+  {
+    if (endReached)
+    {
+      return null;
+    }
+
+    final ASN1Element element;
+    try
+    {
+      element = reader.readElement();
+    }
+    catch (final IOException ioe)
+    {
+      // This means that the end of the data was reached in the middle of a
+      // record, which will happen if the export was interrupted.
+      endReached = true;
+      return null;
+    }
+
+    if (element == null)
+    {
+      endReached = true;
+      return null;
+    }
+    else if (element.getType() == JobArchiveWriter.TYPE_END)
+    {
+      endReached = true;
+      complete   = true;
+      validLength += getEncodedLength(element);
+      return null;
+    }
+    else if (element.getType() != JobArchiveWriter.TYPE_JOB)
+    {
+      throw new DecodeException("Unexpected record type " +
+                                (element.getType() & 0xFF) +
+                                " in the job archive.");
+    }
+
+    final JobArchiveEntry entry = decodeJob(element);
+    jobCount++;
+    lastJobID = entry.getJobID();
+    validLength += getEncodedLength(element);
+    return entry;
+  }
+
+
+
+  /**
+   * Decodes the provided job record.
+   *
+   * @param  element  The job record to decode.
+   *
+   * @return  The decoded job.
+   *
+   * @throws  DecodeException  If the job record cannot be decoded.
+   */
+  private JobArchiveEntry decodeJob(final ASN1Element element)
+          throws DecodeException
+  {
+    String jobID = null;
+    try
+    {
+      final ASN1Element[] elements = element.decodeAsSequence().elements();
+      jobID = elements[0].decodeAsOctetString().stringValue();
+      final int payloadLength = elements[1].decodeAsInteger().intValue();
+      final byte[] compressed = elements[2].decodeAsOctetString().getValue();
+
+      final byte[] payload = new byte[payloadLength];
+      inflater.reset();
+      inflater.setInput(compressed);
+      int pos = 0;
+      while (pos < payloadLength)
+      {
+        final int length =
+             inflater.inflate(payload, pos, payloadLength - pos);
+        if ((length == 0) && (inflater.finished() || inflater.needsInput()))
+        {
+          throw new DataFormatException("The payload is shorter than the " +
+                                        "expected " + payloadLength +
+                                        " bytes.");
+        }
+        pos += length;
+      }
+
+      final ASN1Element[] payloadElements =
+           ASN1Sequence.decodeAsSequence(payload).elements();
+      return new JobArchiveEntry(jobID,
+           payloadElements[0].decodeAsOctetString().getValue(),
+           payloadElements[1].decodeAsSequence().elements(),
+           payloadElements[2].decodeAsSequence().elements(),
+           payloadElements[3].decodeAsSequence().elements());
+    }
+    catch (final Exception e)
+    {
+      throw new DecodeException("Unable to decode the archive record for job " +
+                                jobID + ":  " + e, e);
+    }
+  }
+
+
+
+  /**
+   * Retrieves the number of bytes that the provided element occupied in the
+   * archive.
+   *
+   * @param  element  The element for which to make the determination.
+   *
+   * @return  The number of bytes that the provided element occupied in the
+   *          archive.
+   */
+  private static long getEncodedLength(final ASN1Element element)
+  {
+    final int valueLength = element.getValueLength();
+    return 1L + ASN1Element.encodeLength(valueLength).length + valueLength;
+  }
+
+
+
+  /**
+   * Indicates whether the end record has been read, which means that the
+   * archive was completely written.
+   *
+   * @return  {@code true} if the end record has been read, or {@code false}
+   *          if not.
+   */
+  public boolean isComplete()
+  {
+    return complete;
+  }
+
+
+
+  /**
+   * Retrieves the number of jobs read from the archive.
+   *
+   * @return  The number of jobs read from the archive.
+   */
+  public int getJobCount()
+  {
+    return jobCount;
+  }
+
+
+
+  /**
+   * Retrieves the ID of the last complete job read from the archive.
+   *
+   * @return  The ID of the last complete job read from the archive, or an
+   *          empty string if no jobs have been read.
+   */
+  public String getLastJobID()
+  {
+    return lastJobID;
+  }
+
+
+
+  /**
+   * Retrieves the number of bytes occupied by the header and the complete
+   * records read so far.  When appending to an interrupted archive, it should
+   * first be truncated to this length.
+   *
+   * @return  The number of bytes occupied by the header and the complete
+   *          records read so far.
+   */
+  public long getValidLength()
+  {
+    return validLength;
+  }
+
+
+
+  /**
+   * Closes the archive and releases the resources held by this reader.
+   *
+   * @throws  IOException  If a problem occurs while closing the archive.
+   */
+  public void close()
+         throws IOException
+  {
+    inflater.end();
+    reader.close();
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.db;
+
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.zip.Deflater;
+
+import com.unboundid.asn1.ASN1Element;
+import com.unboundid.asn1.ASN1Integer;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.asn1.ASN1Sequence;
+import com.unboundid.asn1.ASN1Writer;
+
+import com.slamd.job.Job;
+
+
+
+/**
+ * This class provides a mechanism for writing job data to a compressed,
+ * columnar archive that can be produced and consumed one job at a time, so
+ * that exporting or importing any number of jobs requires only a constant
+ * amount of memory.  The archive is a series of ASN.1 elements with the
+ * following BNF:
+ *
+ * <CODE>Header ::= [APPLICATION 0] OCTET STRING</CODE><BR>
+ * <CODE>Job ::= [APPLICATION 1] SEQUENCE {</CODE><BR>
+ * <CODE>  jobID          OCTET STRING,</CODE><BR>
+ * <CODE>  payloadLength  INTEGER,</CODE><BR>
+ * <CODE>  payload        OCTET STRING }</CODE><BR>
+ * <CODE>End ::= [APPLICATION 2] SEQUENCE {</CODE><BR>
+ * <CODE>  jobCount       INTEGER,</CODE><BR>
+ * <CODE>  lastJobID      OCTET STRING }</CODE><BR>
+ * <BR>
+ * The payload of each job record is compressed with the deflate algorithm,
+ * and the payload length is the length of the uncompressed payload, which is
+ * itself an ASN.1 sequence with the following BNF:
+ *
+ * <CODE>Payload ::= SEQUENCE {</CODE><BR>
+ * <CODE>  metadata       OCTET STRING,</CODE><BR>
+ * <CODE>  columns        SEQUENCE OF SEQUENCE {</CODE><BR>
+ * <CODE>    className           OCTET STRING,</CODE><BR>
+ * <CODE>    clientID            OCTET STRING,</CODE><BR>
+ * <CODE>    threadID            OCTET STRING,</CODE><BR>
+ * <CODE>    displayName         OCTET STRING,</CODE><BR>
+ * <CODE>    collectionInterval  INTEGER,</CODE><BR>
+ * <CODE>    duration            INTEGER },</CODE><BR>
+ * <CODE>  columnData     SEQUENCE OF OCTET STRING,</CODE><BR>
+ * <CODE>  resourceStats  SEQUENCE OF ANY }</CODE><BR>
+ * <BR>
+ * The metadata is the encoded job record with its statistics removed.  Each
+ * stat tracker series is described by one element of the columns sequence, and
+ * the element at the same position in the column data sequence holds the
+ * per-interval data for that series, so that a reader interested only in
+ * particular statistics can find them without decoding the rest.  The
+ * resource monitor statistics are kept in their original encoded form.
+ * <BR><BR>
+ * Job IDs are written in increasing order, and the job ID of each record is
+ * stored outside of the compressed payload so that the last complete job in
+ * an interrupted archive can be found cheaply and the export resumed from the
+ * next job.  An archive without an end record was not completed.
+ */
+public final class JobArchiveWriter
+{
+  /**
+   * The value that will be used for the archive header.
+   */
+  static final String ARCHIVE_HEADER = "SLAMD Job Archive v1";
+
+
+
+  /**
+   * The BER type for the archive header element.
+   */
+  static final byte TYPE_HEADER = 0x40;
+
+
+
+  /**
+   * The BER type for the job record element.
+   */
+  static final byte TYPE_JOB = 0x61;
+
+
+
+  /**
+   * The BER type for the end record element.
+   */
+  static final byte TYPE_END = 0x62;
+
+
+
+  // The buffer used to hold compressed data.
+  private final byte[] compressBuffer;
+
+  // The stream used to hold the compressed payload of each job.
+  private final ByteArrayOutputStream compressedPayload;
+
+  // The compressor used for job payloads.
+  private final Deflater deflater;
+
+  // The number of jobs written to the archive.
+  private int jobCount;
+
+  // The output stream to which the archive is written.
+  private final OutputStream outputStream;
+
+  // The ID of the last job written to the archive.
+  private String lastJobID;
+
+
+
+  /**
+   * Creates a new job archive writer that will write to the provided output
+   * stream, and writes the archive header.
+   *
+   * @param  outputStream  The output stream to which the archive should be
+   *                       written.
+   *
+   * @throws  IOException  If a problem occurs while writing the header.
+   */
+  public JobArchiveWriter(final OutputStream outputStream)
+         throws IOException
+  {
+    this(outputStream, true);
+  }
+
+
+
+  /**
+   * Creates a new job archive writer that will write to the provided output
+   * stream.
+   *
+   * @param  outputStream  The output stream to which the archive should be
+   *                       written.
+   * @param  writeHeader   Indicates whether to write the archive header.  It
+   *                       should be {@code false} only when appending to an
+   *                       incomplete archive that already has a header.
+   *
+   * @throws  IOException  If a problem occurs while writing the header.
+   */
+  public JobArchiveWriter(final OutputStream outputStream,
+                          final boolean writeHeader)
+         throws IOException
+  {
+    this.outputStream = outputStream;
+
+    compressBuffer    = new byte[8192];
+    compressedPayload = new ByteArrayOutputStream();
+    deflater          = new Deflater();
+    jobCount          = 0;
+    lastJobID         = "";
+
+    if (writeHeader)
+    {
+      ASN1Writer.writeElement(new ASN1OctetString(TYPE_HEADER, ARCHIVE_HEADER),
+                              outputStream);
+    }
+  }
+
+
+
+  /**
+   * Writes the provided job to the archive.
+   *
+   * @param  jobID       The ID of the job to write.
+   * @param  encodedJob  The encoded job record as held in the job database.
+   *
+   * @throws  IOException  If a problem occurs while writing the job.
+   *
+   * @throws  DecodeException  If the encoded job record cannot be decoded.
+   */
+  public void writeJob(final String jobID, final byte[] encodedJob)
+         throws IOException, DecodeException
+  {
+    final ASN1Element[] jobElements;
+    try
+    {
+      jobElements = ASN1Sequence.decodeAsSequence(encodedJob).elements();
+    }
+    catch (final Exception e)
+    {
+      throw new DecodeException("Unable to decode the record for job " + jobID +
+                                " as an ASN.1 sequence:  " + e, e);
+    }
+
+
+    // Separate the statistics from the rest of the job record.
+    final ArrayList<ASN1Element> metadataElements =
+         new ArrayList<ASN1Element>(jobElements.length);
+    ASN1Element[] statElements     = new ASN1Element[0];
+    ASN1Element[] resourceElements = new ASN1Element[0];
+    try
+    {
+      for (int i=0; i < jobElements.length; i += 2)
+      {
+        final String name = jobElements[i].decodeAsOctetString().stringValue();
+        if (name.equals(Job.ELEMENT_STATS))
+        {
+          statElements = jobElements[i+1].decodeAsSequence().elements();
+        }
+        else if (name.equals(Job.ELEMENT_RESOURCE_MONITOR_STATS))
+        {
+          resourceElements = jobElements[i+1].decodeAsSequence().elements();
+        }
+        else
+        {
+          metadataElements.add(jobElements[i]);
+          metadataElements.add(jobElements[i+1]);
+        }
+      }
+    }
+    catch (final Exception e)
+    {
+      throw new DecodeException("Unable to separate the statistics from the " +
+                                "record for job " + jobID + ":  " + e, e);
+    }
+
+
+    // Split each stat tracker into its descriptor and its data column.
+    final ASN1Element[] columns    = new ASN1Element[statElements.length];
+    final ASN1Element[] columnData = new ASN1Element[statElements.length];
+    try
+    {
+      for (int i=0; i < statElements.length; i++)
+      {
+        final ASN1Element[] trackerElements =
+             statElements[i].decodeAsSequence().elements();
+        columns[i] = new ASN1Sequence(trackerElements[0], trackerElements[1],
+             trackerElements[2], trackerElements[3], trackerElements[4],
+             trackerElements[5]);
+        columnData[i] = trackerElements[6];
+      }
+    }
+    catch (final Exception e)
+    {
+      throw new DecodeException("Unable to decode the statistics for job " +
+                                jobID + ":  " + e, e);
+    }
+
+    final ASN1Element[] metadataArray =
+         new ASN1Element[metadataElements.size()];
+    metadataElements.toArray(metadataArray);
+
+    final byte[] payload = new ASN1Sequence(
+         new ASN1OctetString(new ASN1Sequence(metadataArray).encode()),
+         new ASN1Sequence(columns),
+         new ASN1Sequence(columnData),
+         new ASN1Sequence(resourceElements)).encode();
+
+
+    // Compress the payload and write the record.
+    compressedPayload.reset();
+    deflater.reset();
+    deflater.setInput(payload);
+    deflater.finish();
+    while (! deflater.finished())
+    {
+      final int length = deflater.deflate(compressBuffer);
+      compressedPayload.write(compressBuffer, 0, length);
+    }
+
+    ASN1Writer.writeElement(new ASN1Sequence(TYPE_JOB,
+         new ASN1OctetString(jobID),
+         new ASN1Integer(payload.length),
+         new ASN1OctetString(compressedPayload.toByteArray())),
+         outputStream);
+
+    jobCount++;
+    lastJobID = jobID;
+  }
+
+
+
+  /**
+   * Retrieves the number of jobs that have been written to the archive.
+   *
+   * @return  The number of jobs that have been written to the archive.
+   */
+  public int getJobCount()
+  {
+    return jobCount;
+  }
+
+
+
+  /**
+   * Retrieves the ID of the last job written to the archive.
+   *
+   * @return  The ID of the last job written to the archive, or an empty string
+   *          if no jobs have been written.
+   */
+  public String getLastJobID()
+  {
+    return lastJobID;
+  }
+
+
+
+  /**
+   * Writes the end record to indicate that the archive is complete, and
+   * flushes the output stream.  The output stream will not be closed.
+   *
+   * @throws  IOException  If a problem occurs while writing the end record.
+   */
+  public void finish()
+         throws IOException
+  {
+    ASN1Writer.writeElement(new ASN1Sequence(TYPE_END,
+         new ASN1Integer(jobCount), new ASN1OctetString(lastJobID)),
+         outputStream);
+    outputStream.flush();
+    deflater.end();
+  }
+}
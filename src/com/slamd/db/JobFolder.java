@@ -18,6 +18,8 @@ package com.slamd.db;
 
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.TreeSet;
 
 import com.unboundid.asn1.ASN1Boolean;
 import com.unboundid.asn1.ASN1Element;
@@ -133,13 +135,13 @@ public final class JobFolder
   private String[] childNames;
 
   // The names of the uploaded files associated with this folder.
-  private String[] fileNames;
+  private final TreeSet<String> fileNames;
 
   // The job IDs of the jobs stored in this folder.
-  private String[] jobIDs;
+  private final TreeSet<String> jobIDs;
 
   // The optimizing job IDs of the optimizing jobs stored in this folder.
-  private String[] optimizingJobIDs;
+  private final TreeSet<String> optimizingJobIDs;
 
 
 
@@ -186,32 +188,12 @@ public final class JobFolder
       this.childNames = childNames;
     }
 
-    if (jobIDs == null)
-    {
-      this.jobIDs = new String[0];
-    }
-    else
-    {
-      this.jobIDs = jobIDs;
-    }
-
-    if (optimizingJobIDs == null)
-    {
-      this.optimizingJobIDs = new String[0];
-    }
-    else
-    {
-      this.optimizingJobIDs = optimizingJobIDs;
-    }
-
-    if (fileNames == null)
-    {
-      this.fileNames = new String[0];
-    }
-    else
-    {
-      this.fileNames = fileNames;
-    }
+    this.jobIDs           = new TreeSet<String>();
+    this.optimizingJobIDs = new TreeSet<String>();
+    this.fileNames        = new TreeSet<String>();
+    setMembers(this.jobIDs, jobIDs);
+    setMembers(this.optimizingJobIDs, optimizingJobIDs);
+    setMembers(this.fileNames, fileNames);
 
     if (permissions == null)
     {
@@ -444,7 +426,7 @@ public final class JobFolder
    */
   public String[] getJobIDs()
   {
-    return jobIDs;
+    return jobIDs.toArray(new String[jobIDs.size()]);
   }
 
 
@@ -459,20 +441,7 @@ public final class JobFolder
    */
   public boolean containsJobID(final String jobID)
   {
-    if (jobIDs == null)
-    {
-      return false;
-    }
-
-    for (int i=0; i < jobIDs.length; i++)
-    {
-      if (jobIDs[i].equals(jobID))
-      {
-        return true;
-      }
-    }
-
-    return false;
+    return jobIDs.contains(jobID);
   }
 
 
@@ -484,14 +453,7 @@ public final class JobFolder
    */
   public void setJobIDs(final String[] jobIDs)
   {
-    if (jobIDs == null)
-    {
-      this.jobIDs = new String[0];
-      return;
-    }
-
-    Arrays.sort(jobIDs);
-    this.jobIDs = jobIDs;
+    setMembers(this.jobIDs, jobIDs);
   }
 
 
@@ -504,22 +466,7 @@ public final class JobFolder
    */
   public void addJobID(final String jobID)
   {
-    final String[] newIDs = new String[jobIDs.length+1];
-    for (int i=0; i < jobIDs.length; i++)
-    {
-      if (jobIDs[i].equals(jobID))
-      {
-        return;
-      }
-      else
-      {
-        newIDs[i] = jobIDs[i];
-      }
-    }
-
-    newIDs[jobIDs.length] = jobID;
-    Arrays.sort(newIDs);
-    jobIDs = newIDs;
+    jobIDs.add(jobID);
   }
 
 
@@ -533,26 +480,7 @@ public final class JobFolder
    */
   public void removeJobID(final String jobID)
   {
-    int pos = -1;
-    for (int i=0; i < jobIDs.length; i++)
-    {
-      if (jobIDs[i].equals(jobID))
-      {
-        pos = i;
-        break;
-      }
-    }
-
-    if (pos == -1)
-    {
-      return;
-    }
-
-    final String[] newJobIDs = new String[jobIDs.length-1];
-    System.arraycopy(jobIDs, 0, newJobIDs, 0, pos);
-    System.arraycopy(jobIDs, pos+1, newJobIDs, pos,
-                     (newJobIDs.length - pos));
-    jobIDs = newJobIDs;
+    jobIDs.remove(jobID);
   }
 
 
@@ -566,7 +494,7 @@ public final class JobFolder
    */
   public String[] getOptimizingJobIDs()
   {
-    return optimizingJobIDs;
+    return optimizingJobIDs.toArray(new String[optimizingJobIDs.size()]);
   }
 
 
@@ -583,20 +511,7 @@ public final class JobFolder
    */
   public boolean containsOptimizingJobID(final String optimizingJobID)
   {
-    if (optimizingJobIDs == null)
-    {
-      return false;
-    }
-
-    for (int i=0; i < optimizingJobIDs.length; i++)
-    {
-      if (optimizingJobIDs[i].equals(optimizingJobID))
-      {
-        return true;
-      }
-    }
-
-    return false;
+    return optimizingJobIDs.contains(optimizingJobID);
   }
 
 
@@ -610,14 +525,7 @@ public final class JobFolder
    */
   public void setOptimzizingJobIDs(final String[] optimizingJobIDs)
   {
-    if (optimizingJobIDs == null)
-    {
-      this.optimizingJobIDs = new String[0];
-      return;
-    }
-
-    Arrays.sort(optimizingJobIDs);
-    this.optimizingJobIDs = optimizingJobIDs;
+    setMembers(this.optimizingJobIDs, optimizingJobIDs);
   }
 
 
@@ -631,22 +539,7 @@ public final class JobFolder
    */
   public void addOptimizingJobID(final String optimizingJobID)
   {
-    final String[] newIDs = new String[optimizingJobIDs.length+1];
-    for (int i=0; i < optimizingJobIDs.length; i++)
-    {
-      if (optimizingJobIDs[i].equals(optimizingJobID))
-      {
-        return;
-      }
-      else
-      {
-        newIDs[i] = optimizingJobIDs[i];
-      }
-    }
-
-    newIDs[optimizingJobIDs.length] = optimizingJobID;
-    Arrays.sort(newIDs);
-    optimizingJobIDs = newIDs;
+    optimizingJobIDs.add(optimizingJobID);
   }
 
 
@@ -660,26 +553,7 @@ public final class JobFolder
    */
   public void removeOptimizingJobID(final String optimizingJobID)
   {
-    int pos = -1;
-    for (int i=0; i < optimizingJobIDs.length; i++)
-    {
-      if (optimizingJobIDs[i].equals(optimizingJobID))
-      {
-        pos = i;
-        break;
-      }
-    }
-
-    if (pos == -1)
-    {
-      return;
-    }
-
-    final String[] newOptimizingIDs = new String[optimizingJobIDs.length-1];
-    System.arraycopy(optimizingJobIDs, 0, newOptimizingIDs, 0, pos);
-    System.arraycopy(optimizingJobIDs, pos+1, newOptimizingIDs, pos,
-                     (newOptimizingIDs.length - pos));
-    optimizingJobIDs = newOptimizingIDs;
+    optimizingJobIDs.remove(optimizingJobID);
   }
 
 
@@ -691,7 +565,7 @@ public final class JobFolder
    */
   public String[] getFileNames()
   {
-    return fileNames;
+    return fileNames.toArray(new String[fileNames.size()]);
   }
 
 
@@ -707,20 +581,7 @@ public final class JobFolder
    */
   public boolean containsFileName(final String fileName)
   {
-    if (fileNames == null)
-    {
-      return false;
-    }
-
-    for (int i=0; i < fileNames.length; i++)
-    {
-      if (fileNames[i].equals(fileName))
-      {
-        return true;
-      }
-    }
-
-    return false;
+    return fileNames.contains(fileName);
   }
 
 
@@ -733,14 +594,7 @@ public final class JobFolder
    */
   public void setFileNames(final String[] fileNames)
   {
-    if (fileNames == null)
-    {
-      this.fileNames = new String[0];
-    }
-    else
-    {
-      this.fileNames = fileNames;
-    }
+    setMembers(this.fileNames, fileNames);
   }
 
 
@@ -754,22 +608,7 @@ public final class JobFolder
    */
   public void addFileName(final String fileName)
   {
-    final String[] newFiles = new String[fileNames.length+1];
-    for (int i=0; i < fileNames.length; i++)
-    {
-      if (fileNames[i].equals(fileName))
-      {
-        return;
-      }
-      else
-      {
-        newFiles[i] = fileNames[i];
-      }
-    }
-
-    newFiles[fileNames.length] = fileName;
-    Arrays.sort(newFiles);
-    fileNames = newFiles;
+    fileNames.add(fileName);
   }
 
 
@@ -783,26 +622,65 @@ public final class JobFolder
    */
   public void removeFileName(final String fileName)
   {
-    int pos = -1;
-    for (int i=0; i < fileNames.length; i++)
+    fileNames.remove(fileName);
+  }
+
+
+
+  /**
+   * Indicates whether this folder record still lists any jobs, optimizing jobs,
+   * or uploaded files.  The membership of non-virtual folders is now kept in
+   * the folder indexes of the configuration database rather than in the
+   * folder record itself, so this will only be the case for virtual folders
+   * and for folders written by older versions of SLAMD.
+   *
+   * @return  {@code true} if this folder record lists any jobs, optimizing
+   *          jobs, or uploaded files, or {@code false} if not.
+   */
+  public boolean hasMemberList()
+  {
+    return (! (jobIDs.isEmpty() && optimizingJobIDs.isEmpty() &&
+               fileNames.isEmpty()));
+  }
+
+
+
+  /**
+   * Replaces the contents of the provided member set with the given values.
+   *
+   * @param  members  The member set to update.
+   * @param  values   The values to place in the member set.  It may be
+   *                  {@code null} if the set should be empty.
+   */
+  private static void setMembers(final TreeSet<String> members,
+                                 final String[] values)
+  {
+    members.clear();
+    if (values != null)
     {
-      if (fileNames[i].equals(fileName))
-      {
-        pos = i;
-        break;
-      }
+      members.addAll(Arrays.asList(values));
     }
+  }
 
-    if (pos == -1)
+
+
+  /**
+   * Encodes the provided member set as a sequence of octet strings.
+   *
+   * @param  members  The member set to encode.
+   *
+   * @return  The encoded member set.
+   */
+  private static ASN1Sequence encodeMembers(final Collection<String> members)
+  {
+    final ASN1Element[] elements = new ASN1Element[members.size()];
+    int i = 0;
+    for (final String member : members)
     {
-      return;
+      elements[i++] = new ASN1OctetString(member);
     }
 
-    final String[] newFileNames = new String[fileNames.length-1];
-    System.arraycopy(fileNames, 0, newFileNames, 0, pos);
-    System.arraycopy(fileNames, pos+1, newFileNames, pos,
-                     (newFileNames.length - pos));
-    fileNames = newFileNames;
+    return new ASN1Sequence(elements);
   }
 
 
@@ -938,25 +816,6 @@ public final class JobFolder
       childElements[i] = new ASN1OctetString(childNames[i]);
     }
 
-    final ASN1Element[] jobElements = new ASN1Element[jobIDs.length];
-    for (int i=0; i < jobIDs.length; i++)
-    {
-      jobElements[i] = new ASN1OctetString(jobIDs[i]);
-    }
-
-    final ASN1Element[] optimizingElements =
-         new ASN1Element[optimizingJobIDs.length];
-    for (int i=0; i < optimizingJobIDs.length; i++)
-    {
-      optimizingElements[i] = new ASN1OctetString(optimizingJobIDs[i]);
-    }
-
-    final ASN1Element[] fileElements = new ASN1Element[fileNames.length];
-    for (int i=0; i < fileNames.length; i++)
-    {
-      fileElements[i] = new ASN1OctetString(fileNames[i]);
-    }
-
     final ASN1Element[] permissionElements =
          new ASN1Element[permissions.length];
     for (int i=0; i < permissions.length; i++)
@@ -979,11 +838,11 @@ public final class JobFolder
       new ASN1OctetString(ELEMENT_DESCRIPTION),
       new ASN1OctetString(description),
       new ASN1OctetString(ELEMENT_JOB_IDS),
-      new ASN1Sequence(jobElements),
+      encodeMembers(jobIDs),
       new ASN1OctetString(ELEMENT_OPTIMIZING_JOB_IDS),
-      new ASN1Sequence(optimizingElements),
+      encodeMembers(optimizingJobIDs),
       new ASN1OctetString(ELEMENT_FILE_NAMES),
-      new ASN1Sequence(fileElements),
+      encodeMembers(fileNames),
       new ASN1OctetString(ELEMENT_PERMISSIONS),
       new ASN1Sequence(permissionElements)
     };
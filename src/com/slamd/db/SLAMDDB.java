@@ -17,6 +17,9 @@ package com.slamd.db;
 
 
 
+import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -29,6 +32,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.StringTokenizer;
+import java.util.UUID;
 
 import com.sleepycat.je.Cursor;
 import com.sleepycat.je.CursorConfig;
@@ -43,6 +47,9 @@ import com.sleepycat.je.EnvironmentConfig;
 import com.sleepycat.je.LockMode;
 import com.sleepycat.je.OperationStatus;
 import com.sleepycat.je.PreloadConfig;
+import com.sleepycat.je.SecondaryConfig;
+import com.sleepycat.je.SecondaryCursor;
+import com.sleepycat.je.SecondaryDatabase;
 import com.sleepycat.je.Transaction;
 import com.sleepycat.je.TransactionConfig;
 
@@ -97,6 +104,7 @@ import com.slamd.jobs.sql.SQLModifyRateJob;
 import com.slamd.jobs.sql.SQLSearchRateJob;
 import com.slamd.jobs.utility.BurnCPUJob;
 import com.slamd.jobs.utility.ExecJob;
+import com.slamd.jobs.utility.LoopbackCalibrationJob;
 import com.slamd.jobs.utility.NoOpJob;
 import com.slamd.jobs.utility.TCPReplayJob;
 import com.slamd.jobs.utility.ThroughputTestJob;
@@ -120,6 +128,38 @@ import com.slamd.server.UploadedFile;
  */
 public final class SLAMDDB
 {
+  /**
+   * The maximum number of bytes of uploaded file data that will be held in
+   * each chunk in the file data database.
+   */
+  private static final int FILE_CHUNK_SIZE = 256 * 1024;
+
+
+
+  /**
+   * The maximum number of file data chunks that will be examined while holding
+   * the database mutex when removing uploaded file data.
+   */
+  private static final int FILE_CHUNK_REMOVE_BATCH_SIZE = 100;
+
+
+
+  /**
+   * The maximum number of job records that will be read while holding the
+   * database mutex when exporting a job archive.
+   */
+  private static final int JOB_ARCHIVE_BATCH_SIZE = 16;
+
+
+
+  /**
+   * The number of bytes of job records after which no more records will be
+   * added to a batch when exporting a job archive.
+   */
+  private static final long JOB_ARCHIVE_BATCH_BYTES = 4L * 1024L * 1024L;
+
+
+
   // The set of transactions that are currently active in the database.
   private final ArrayList<Transaction> activeTransactions;
 
@@ -142,9 +182,23 @@ public final class SLAMDDB
   // The handle to the uploaded file database.
   private Database fileDB;
 
+  // The handle to the database holding chunks of uploaded file data, or null if
+  // it is not available because the environment is read-only and was last
+  // written by an older version.
+  private Database fileDataDB;
+
   // The handle to the folder database.
   private Database folderDB;
 
+  // The handle to the secondary database that indexes jobs by folder, or
+  // null if it is not available because the environment is read-only and was
+  // last written by an older version.
+  private SecondaryDatabase folderJobIndex;
+
+  // The handle to the secondary database that indexes optimizing jobs by
+  // folder, or null if it is not available.
+  private SecondaryDatabase folderOptimizingJobIndex;
+
   // The handle to the group database.
   private Database groupDB;
 
@@ -491,6 +545,7 @@ public final class SLAMDDB
     {
       dbEnv.openDatabase(null, Constants.DB_NAME_CONFIG, dbConfig).close();
       dbEnv.openDatabase(null, Constants.DB_NAME_FILE, dbConfig).close();
+      dbEnv.openDatabase(null, Constants.DB_NAME_FILE_DATA, dbConfig).close();
       dbEnv.openDatabase(null, Constants.DB_NAME_FOLDER, dbConfig).close();
       dbEnv.openDatabase(null, Constants.DB_NAME_GROUP, dbConfig).close();
       dbEnv.openDatabase(null, Constants.DB_NAME_JOB, dbConfig).close();
@@ -556,6 +611,7 @@ public final class SLAMDDB
 
       BurnCPUJob.class.getName(),
       ExecJob.class.getName(),
+      LoopbackCalibrationJob.class.getName(),
       NoOpJob.class.getName(),
       TCPReplayJob.class.getName(),
       ThroughputTestJob.class.getName(),
@@ -725,6 +781,23 @@ public final class SLAMDDB
         optimizingJobDB = openDB(Constants.DB_NAME_OPTIMIZING_JOB, dbConfig);
         userDB          = openDB(Constants.DB_NAME_USER, dbConfig);
         virtualFolderDB = openDB(Constants.DB_NAME_VIRTUAL_FOLDER, dbConfig);
+
+        try
+        {
+          fileDataDB = openDB(Constants.DB_NAME_FILE_DATA, dbConfig);
+        }
+        catch (final DatabaseNotFoundException dnfe)
+        {
+          // This can only happen in read-only mode for an environment that
+          // doesn't have any chunked file data.
+          fileDataDB = null;
+        }
+
+        folderJobIndex = openFolderIndex(Constants.DB_NAME_FOLDER_JOB_INDEX,
+             jobDB, false);
+        folderOptimizingJobIndex =
+             openFolderIndex(Constants.DB_NAME_FOLDER_OPTIMIZING_JOB_INDEX,
+                  optimizingJobDB, true);
       }
       catch (final DatabaseException dbe)
       {
@@ -753,6 +826,111 @@ public final class SLAMDDB
 
       // At this point, all the databases should be open.
       dbsOpen = true;
+
+
+      // Folder records written by older versions list the jobs, optimizing
+      // jobs, and uploaded files that they contain.  That information now
+      // comes from the folder indexes and the uploaded file keys, so remove it
+      // from the folder records so that it cannot get out of date.
+      if (! readOnly)
+      {
+        removeFolderMemberLists();
+      }
+    }
+  }
+
+
+
+  /**
+   * Removes the lists of jobs, optimizing jobs, and uploaded files from the
+   * provided folder.
+   *
+   * @param  folder  The folder to update.
+   */
+  private static void clearFolderMembers(final JobFolder folder)
+  {
+    folder.setJobIDs(null);
+    folder.setOptimzizingJobIDs(null);
+    folder.setFileNames(null);
+  }
+
+
+
+  /**
+   * Opens the secondary database that indexes the records in the provided
+   * database by folder name, creating and populating it if necessary.
+   *
+   * @param  dbName          The name of the secondary database to open.
+   * @param  primaryDB       The database containing the jobs or optimizing
+   *                         jobs to index.
+   * @param  optimizingJobs  Indicates whether the primary database contains
+   *                         optimizing jobs rather than jobs.
+   *
+   * @return  The secondary database that was opened, or {@code null} if it
+   *          does not exist and cannot be created because the environment is
+   *          read-only.
+   *
+   * @throws  DatabaseException  If a problem occurs while opening the database.
+   */
+  private SecondaryDatabase openFolderIndex(final String dbName,
+                                            final Database primaryDB,
+                                            final boolean optimizingJobs)
+          throws DatabaseException
+  {
+    final SecondaryConfig indexConfig = new SecondaryConfig();
+    indexConfig.setAllowCreate(! readOnly);
+    indexConfig.setReadOnly(readOnly);
+    indexConfig.setSortedDuplicates(true);
+    indexConfig.setTransactional(true);
+    indexConfig.setAllowPopulate(true);
+    indexConfig.setKeyCreator(new FolderIndexKeyCreator(optimizingJobs));
+
+    try
+    {
+      return dbEnv.openSecondaryDatabase(null, dbName, primaryDB, indexConfig);
+    }
+    catch (final DatabaseNotFoundException dnfe)
+    {
+      slamdServer.logMessage(Constants.LOG_LEVEL_CONFIG,
+           "The " + dbName + " database does not exist and cannot be " +
+                "created in read-only mode.  Folder contents will be " +
+                "obtained from the folder records.");
+      return null;
+    }
+  }
+
+
+
+  /**
+   * Removes the lists of jobs, optimizing jobs, and uploaded files from any
+   * folder records that still contain them.
+   *
+   * @throws  DatabaseException  If a problem occurs while updating the folder
+   *                             records.
+   */
+  private void removeFolderMemberLists()
+          throws DatabaseException
+  {
+    final ArrayList<JobFolder> folderList = new ArrayList<JobFolder>();
+    for (final JobFolder folder : getFolders())
+    {
+      if (folder.hasMemberList())
+      {
+        folderList.add(folder);
+      }
+    }
+
+    for (final JobFolder folder : folderList)
+    {
+      clearFolderMembers(folder);
+      put(null, folderDB, folder.getFolderName(), folder.encode());
+    }
+
+    if (! folderList.isEmpty())
+    {
+      slamdServer.logMessage(Constants.LOG_LEVEL_CONFIG,
+           "Moved the contents of " + folderList.size() + " job folder(s) " +
+                "into the folder indexes.");
     }
   }
 
@@ -831,9 +1009,15 @@ public final class SLAMDDB
       }
 
 
-      // Close all the databases.
+      // Close all the databases, starting with the secondary databases since
+      // they must be closed before the databases that they index.
+      closeDB(folderJobIndex);
+      closeDB(folderOptimizingJobIndex);
+      folderJobIndex           = null;
+      folderOptimizingJobIndex = null;
       closeDB(configDB);
       closeDB(fileDB);
+      closeDB(fileDataDB);
       closeDB(folderDB);
       closeDB(groupDB);
       closeDB(jobDB);
@@ -959,18 +1143,29 @@ public final class SLAMDDB
           continue;
         }
 
+        // The folder record no longer lists the folder contents, but include
+        // them in the export so that it can still be imported by older
+        // versions.
         final JobFolder folder = JobFolder.decode(folderBytes);
+        final String[] jobIDs = getFolderJobIDs(txn, folder);
+        final String[] optimizingJobIDs =
+             getFolderOptimizingJobIDs(txn, folder);
+        final String[] fileNames = getFolderFileNames(txn, realFolderName);
+        folder.setJobIDs(jobIDs);
+        folder.setOptimzizingJobIDs(optimizingJobIDs);
+        folder.setFileNames(fileNames);
+
         ASN1Element[] elements =
         {
           new ASN1OctetString(Constants.DB_NAME_FOLDER),
           new ASN1OctetString(realFolderName),
-          new ASN1OctetString(folderBytes)
+          new ASN1OctetString(folder.encode())
         };
         ASN1Writer.writeElement(new ASN1Sequence(elements), outputStream);
 
 
         // Get the set of jobs contained in that folder.
-        for (final String jobID : folder.getJobIDs())
+        for (final String jobID : jobIDs)
         {
           try
           {
@@ -1005,7 +1200,7 @@ public final class SLAMDDB
 
 
         // Get the set of optimizing jobs contained in the folder.
-        for (final String optimizingJobID : folder.getOptimizingJobIDs())
+        for (final String optimizingJobID : optimizingJobIDs)
         {
           try
           {
@@ -1042,7 +1237,7 @@ public final class SLAMDDB
 
 
         // Get the set of uploaded files contained in the folder.
-        for (final String fileName : folder.getFileNames())
+        for (final String fileName : fileNames)
         {
           try
           {
@@ -1056,13 +1251,45 @@ public final class SLAMDDB
               continue;
             }
 
+            // Use the full key so that the file will be found in the right
+            // folder when it is imported.
             elements = new ASN1Element[]
             {
               new ASN1OctetString(Constants.DB_NAME_FILE),
-              new ASN1OctetString(fileName),
+              new ASN1OctetString(key),
               new ASN1OctetString(fileBytes)
             };
             ASN1Writer.writeElement(new ASN1Sequence(elements), outputStream);
+
+
+            // If the file data is stored in chunks, then include them one at a
+            // time after the file record.
+            final String dataID =
+                 UploadedFile.decodeWithoutData(fileBytes).getDataID();
+            if (dataID != null)
+            {
+              final String chunkPrefix =
+                   getFileChunkPrefix(realFolderName, fileName, dataID);
+              for (int i=0; ; i++)
+              {
+                final String chunkKey = getFileChunkKey(chunkPrefix, i);
+                final byte[] chunkBytes =
+                     get(txn, fileDataDB, chunkKey, false);
+                if (chunkBytes == null)
+                {
+                  break;
+                }
+
+                elements = new ASN1Element[]
+                {
+                  new ASN1OctetString(Constants.DB_NAME_FILE_DATA),
+                  new ASN1OctetString(chunkKey),
+                  new ASN1OctetString(chunkBytes)
+                };
+                ASN1Writer.writeElement(new ASN1Sequence(elements),
+                                        outputStream);
+              }
+            }
           }
           catch (final DatabaseException | IOException e)
           {
@@ -1184,6 +1411,170 @@ public final class SLAMDDB
 
 
 
+  /**
+   * Writes the jobs with IDs in the specified range to the provided output
+   * stream as a job archive.  The job database is walked in order with a
+   * cursor, a small batch of records at a time, so the amount of memory used
+   * does not depend on the number of jobs exported, and the database lock is
+   * not held while writing to the output stream.
+   *
+   * @param  startJobID      The job ID at which to start the export.  It may
+   *                         be {@code null} to start with the first job.
+   * @param  startInclusive  Indicates whether the job with the start job ID
+   *                         should be included in the export.  It should be
+   *                         {@code false} when resuming an export that has
+   *                         already written that job.
+   * @param  endJobID        The job ID at which to end the export.  The job
+   *                         with this ID will not be included.  It may be
+   *                         {@code null} to continue through the last job.
+   * @param  writeHeader     Indicates whether to write the archive header.  It
+   *                         should be {@code false} only when the data will be
+   *                         appended to an incomplete archive.
+   * @param  outputStream    The output stream to which the archive should be
+   *                         written.
+   *
+   * @return  The number of jobs written to the archive.
+   *
+   * @throws  DatabaseException  If a problem occurs while interacting with the
+   *                             database.
+   *
+   * @throws  IOException  If a problem occurs while writing to the provided
+   *                       output stream.
+   */
+  public int exportJobArchive(final String startJobID,
+                              final boolean startInclusive,
+                              final String endJobID, final boolean writeHeader,
+                              final OutputStream outputStream)
+         throws DatabaseException, IOException
+  {
+    slamdServer.logMessage(Constants.LOG_LEVEL_CONFIG,
+         "Beginning job archive export starting " +
+              (startInclusive ? "with" : "after") + " job ID \"" +
+              ((startJobID == null) ? "" : startJobID) +
+              "\" and ending before job ID \"" +
+              ((endJobID == null) ? "" : endJobID) + '"');
+
+    final JobArchiveWriter writer =
+         new JobArchiveWriter(outputStream, writeHeader);
+    final ArrayList<String> jobIDs =
+         new ArrayList<String>(JOB_ARCHIVE_BATCH_SIZE);
+    final ArrayList<byte[]> jobBytes =
+         new ArrayList<byte[]>(JOB_ARCHIVE_BATCH_SIZE);
+
+    String lastJobID = (startJobID == null) ? "" : startJobID;
+    boolean inclusive = startInclusive;
+    while (readJobArchiveBatch(lastJobID, inclusive, endJobID, jobIDs,
+                               jobBytes))
+    {
+      for (int i=0; i < jobIDs.size(); i++)
+      {
+        try
+        {
+          writer.writeJob(jobIDs.get(i), jobBytes.get(i));
+        }
+        catch (final DecodeException de)
+        {
+          slamdServer.logMessage(Constants.LOG_LEVEL_CONFIG,
+               "Skipping job " + jobIDs.get(i) + " in the job archive " +
+                    "export:  " + de.getMessage());
+        }
+      }
+
+      outputStream.flush();
+      lastJobID = jobIDs.get(jobIDs.size() - 1);
+      inclusive = false;
+    }
+
+    writer.finish();
+    slamdServer.logMessage(Constants.LOG_LEVEL_CONFIG,
+         "Wrote " + writer.getJobCount() + " jobs to the job archive.");
+    return writer.getJobCount();
+  }
+
+
+
+  /**
+   * Reads the next batch of records from the job database for a job archive
+   * export.
+   *
+   * @param  startJobID  The job ID at which to start reading.
+   * @param  inclusive   Indicates whether the job with the start job ID should
+   *                     be included.
+   * @param  endJobID    The job ID at which to stop reading, or {@code null}
+   *                     to continue through the last job.
+   * @param  jobIDs      The list to which the IDs of the jobs read should be
+   *                     added.  It will be cleared first.
+   * @param  jobBytes    The list to which the encoded jobs read should be
+   *                     added.  It will be cleared first.
+   *
+   * @return  {@code true} if any records were read, or {@code false} if there
+   *          are no more records in the range.
+   *
+   * @throws  DatabaseException  If a problem occurs while interacting with the
+   *                             database.
+   */
+  private boolean readJobArchiveBatch(final String startJobID,
+                                      final boolean inclusive,
+                                      final String endJobID,
+                                      final List<String> jobIDs,
+                                      final List<byte[]> jobBytes)
+          throws DatabaseException
+  {
+    jobIDs.clear();
+    jobBytes.clear();
+
+    synchronized (dbMutex)
+    {
+      // Make sure that the databases are open before trying to use the cursor.
+      if (! dbsOpen)
+      {
+        final String message = "Cannot export the job archive because the " +
+             "databases are not open.";
+        slamdServer.logMessage(Constants.LOG_LEVEL_CONFIG, message);
+        throw new SLAMDDatabaseException(message);
+      }
+
+      final DatabaseEntry key =
+           new DatabaseEntry(StaticUtils.getBytes(startJobID));
+      final DatabaseEntry data = new DatabaseEntry();
+
+      long batchBytes = 0L;
+      final Cursor cursor = jobDB.openCursor(null, null);
+      try
+      {
+        OperationStatus status =
+             cursor.getSearchKeyRange(key, data, LockMode.DEFAULT);
+        while ((status == OperationStatus.SUCCESS) &&
+               (jobIDs.size() < JOB_ARCHIVE_BATCH_SIZE) &&
+               (batchBytes < JOB_ARCHIVE_BATCH_BYTES))
+        {
+          final String jobID = StaticUtils.toUTF8String(key.getData());
+          if ((endJobID != null) && (jobID.compareTo(endJobID) >= 0))
+          {
+            break;
+          }
+
+          if (inclusive || (! jobID.equals(startJobID)))
+          {
+            jobIDs.add(jobID);
+            jobBytes.add(data.getData());
+            batchBytes += data.getSize();
+          }
+
+          status = cursor.getNext(key, data, LockMode.DEFAULT);
+        }
+      }
+      finally
+      {
+        cursor.close();
+      }
+    }
+
+    return (! jobIDs.isEmpty());
+  }
+
+
+
   /**
    * Reads import data from the provided input stream and imports it into the
    * database.
@@ -1203,7 +1594,29 @@ public final class SLAMDDB
                                   final PrintWriter progressWriter,
                                   final boolean writeHTML)
   {
-    final ASN1StreamReader asn1StreamReader = new ASN1StreamReader(inputStream);
+    // Job archives and the original export format are both accepted, and can
+    // be told apart by the first byte.
+    final BufferedInputStream bufferedStream =
+         new BufferedInputStream(inputStream);
+    try
+    {
+      bufferedStream.mark(1);
+      final int firstByte = bufferedStream.read();
+      bufferedStream.reset();
+      if (JobArchiveReader.isJobArchive(firstByte))
+      {
+        return importJobArchive(bufferedStream, progressWriter, writeHTML);
+      }
+    }
+    catch (final IOException ioe)
+    {
+      progressWriter.println("Unable to read from the provided input " +
+           "stream:  " + ioe);
+      return false;
+    }
+
+    final ASN1StreamReader asn1StreamReader =
+         new ASN1StreamReader(bufferedStream);
 
     ASN1Element element;
     try
@@ -1340,6 +1753,11 @@ public final class SLAMDDB
               }
             }
 
+            if (folderJobIndex != null)
+            {
+              clearFolderMembers(existingFolder);
+            }
+
             final byte[] updatedEntry = existingFolder.encode();
             put(null, db, keyName, updatedEntry);
             if (writeHTML)
@@ -1374,7 +1792,19 @@ public final class SLAMDDB
         }
         else
         {
-          put(null, db, keyName, data);
+          // Real folders get their contents from the folder indexes, so don't
+          // keep the lists that the exported folder record includes.
+          if ((db == folderDB) && (folderJobIndex != null))
+          {
+            final JobFolder newFolder = JobFolder.decode(data);
+            clearFolderMembers(newFolder);
+            put(null, db, keyName, newFolder.encode());
+          }
+          else
+          {
+            put(null, db, keyName, data);
+          }
+
           progressWriter.println("Successfully wrote record with key \"" +
                keyName + "\" to database \"" + dbName + "\".");
         }
@@ -1445,6 +1875,150 @@ public final class SLAMDDB
 
 
 
+  /**
+   * Reads the jobs from the provided job archive and imports them into the job
+   * database.  Jobs that already exist in the database will not be
+   * overwritten.
+   *
+   * @param  inputStream     The input stream from which to read the archive.
+   * @param  progressWriter  The print writer that should be used to write
+   *                         progress about the import to the end user.
+   * @param  writeHTML       Indicates whether the progress information should
+   *                         be written in HTML format.  If not, then it will be
+   *                         plain text.
+   *
+   * @return  {@code true} if the import was completely successful, or
+   *          {@code false} if one or more problems were encountered.
+   */
+  private boolean importJobArchive(final InputStream inputStream,
+                                   final PrintWriter progressWriter,
+                                   final boolean writeHTML)
+  {
+    final String lineBreak = (writeHTML ? "<BR>" : "");
+    final long startTime = System.currentTimeMillis();
+
+    final JobArchiveReader reader;
+    try
+    {
+      reader = new JobArchiveReader(inputStream);
+    }
+    catch (final Exception e)
+    {
+      progressWriter.println("Unable to read the job archive header:  " + e +
+                             lineBreak);
+      return false;
+    }
+
+    boolean completeSuccess = true;
+    int numRecords = 0;
+    while (true)
+    {
+      final JobArchiveEntry entry;
+      try
+      {
+        entry = reader.readJob();
+      }
+      catch (final Exception e)
+      {
+        progressWriter.println("Unable to read the next job from the " +
+             "archive:  " + e + lineBreak);
+        completeSuccess = false;
+        break;
+      }
+
+      if (entry == null)
+      {
+        break;
+      }
+
+      numRecords++;
+      final String jobID = entry.getJobID();
+      try
+      {
+        if (get(null, jobDB, jobID, false) != null)
+        {
+          if (writeHTML)
+          {
+            progressWriter.println("<SPAN CLASS=\"" +
+                 Constants.STYLE_WARNING_TEXT +
+                 "\">Refusing to overwrite existing job \"" + jobID +
+                 "\".</SPAN><BR>");
+          }
+          else
+          {
+            progressWriter.println("Refusing to overwrite existing job \"" +
+                 jobID + "\".");
+          }
+        }
+        else
+        {
+          // Go through the same folder and job list handling as a new job
+          // written by the server, so that the imported job is visible in its
+          // folder and scheduled if it is still pending.
+          final byte[] encodedJob = entry.getEncodedJob();
+          final Job job = Job.decode(slamdServer, encodedJob);
+
+          final Transaction txn = getTransaction();
+          try
+          {
+            final String folderName = job.getFolderName();
+            if (get(txn, folderDB, folderName, false) == null)
+            {
+              final JobFolder folder = new JobFolder(folderName, false, false,
+                   null, null, null, null, null, null, null);
+              put(txn, folderDB, folderName, folder.encode());
+              progressWriter.println("Created job folder \"" + folderName +
+                   "\" for job \"" + jobID + "\"." + lineBreak);
+            }
+
+            put(txn, jobDB, jobID, encodedJob);
+            commitTransaction(txn);
+          }
+          catch (final Exception e)
+          {
+            abortTransaction(txn);
+            throw e;
+          }
+
+          updateJobStateLists(job);
+          progressWriter.println("Successfully wrote job \"" + jobID +
+               "\" to database \"" + Constants.DB_NAME_JOB + "\"." +
+               lineBreak);
+        }
+      }
+      catch (final Exception e)
+      {
+        progressWriter.println("Unable to write job \"" + jobID +
+             "\" to database \"" + Constants.DB_NAME_JOB + "\":  " + e +
+             lineBreak);
+        completeSuccess = false;
+      }
+    }
+
+    if (! reader.isComplete())
+    {
+      progressWriter.println("The job archive is incomplete.  The last job " +
+           "read was \"" + reader.getLastJobID() + "\"." + lineBreak);
+      completeSuccess = false;
+    }
+
+    try
+    {
+      reader.close();
+    } catch (Exception e) {}
+
+    final long endTime = System.currentTimeMillis();
+    progressWriter.println(lineBreak);
+    progressWriter.println("Import complete." + lineBreak);
+    progressWriter.println("Processed " + numRecords + " jobs in " +
+                           (endTime - startTime) + " milliseconds." +
+                           lineBreak);
+
+    return completeSuccess;
+  }
+
+
+
   /**
    * Retrieves the next ASN.1 element from the provided reader.
    *
@@ -1558,7 +2132,11 @@ public final class SLAMDDB
     {
       db = fileDB;
     }
-    else if (dbName.equals(Constants.DB_NAME_FOLDER))
+    else if (dbName.equals(Constants.DB_NAME_FILE_DATA))
+    {
+      db = fileDataDB;
+    }
+    else if (dbName.equals(Constants.DB_NAME_FOLDER))
     {
       db = folderDB;
     }
@@ -1998,7 +2576,9 @@ public final class SLAMDDB
 
 
   /**
-   * Retrieves the specified folder from the configuration database.
+   * Retrieves the specified folder from the configuration database.  The
+   * folder will not list the jobs, optimizing jobs, or uploaded files that it
+   * contains, since those are obtained from the folder indexes.
    *
    * @param  folderName  The name of the folder to retrieve.
    *
@@ -2076,6 +2656,341 @@ public final class SLAMDDB
 
 
 
+  /**
+   * Retrieves the job IDs of the jobs contained in the specified folder, in
+   * ascending order.  This may be used to page through a large folder without
+   * retrieving all of its contents at once.
+   *
+   * @param  folderName  The name of the folder for which to retrieve the job
+   *                     IDs.
+   * @param  afterJobID  The job ID after which to start returning results.  It
+   *                     may be {@code null} to start with the first job in the
+   *                     folder.
+   * @param  maxJobIDs   The maximum number of job IDs to return.  A value that
+   *                     is less than or equal to zero indicates that there
+   *                     should be no limit.
+   *
+   * @return  The requested job IDs, or {@code null} if there is no such
+   *          folder.
+   *
+   * @throws  DatabaseException  If a problem occurs while interacting with the
+   *                             configuration database.
+   *
+   * @throws  DecodeException  If a problem occurs while attempting to decode
+   *                           the specified folder.
+   */
+  public String[] getJobIDs(final String folderName, final String afterJobID,
+                            final int maxJobIDs)
+         throws DatabaseException, DecodeException
+  {
+    final JobFolder folder = getFolder(folderName);
+    if (folder == null)
+    {
+      return null;
+    }
+
+    return getFolderMembers(null, folderJobIndex, folderName,
+                            folder.getJobIDs(), afterJobID, maxJobIDs);
+  }
+
+
+
+  /**
+   * Retrieves the optimizing job IDs of the optimizing jobs contained in the
+   * specified folder, in ascending order.  This may be used to page through a
+   * large folder without retrieving all of its contents at once.
+   *
+   * @param  folderName            The name of the folder for which to retrieve
+   *                               the optimizing job IDs.
+   * @param  afterOptimizingJobID  The optimizing job ID after which to start
+   *                               returning results.  It may be {@code null}
+   *                               to start with the first optimizing job in
+   *                               the folder.
+   * @param  maxOptimizingJobIDs   The maximum number of optimizing job IDs to
+   *                               return.  A value that is less than or equal
+   *                               to zero indicates that there should be no
+   *                               limit.
+   *
+   * @return  The requested optimizing job IDs, or {@code null} if there is no
+   *          such folder.
+   *
+   * @throws  DatabaseException  If a problem occurs while interacting with the
+   *                             configuration database.
+   *
+   * @throws  DecodeException  If a problem occurs while attempting to decode
+   *                           the specified folder.
+   */
+  public String[] getOptimizingJobIDs(final String folderName,
+                                      final String afterOptimizingJobID,
+                                      final int maxOptimizingJobIDs)
+         throws DatabaseException, DecodeException
+  {
+    final JobFolder folder = getFolder(folderName);
+    if (folder == null)
+    {
+      return null;
+    }
+
+    return getFolderMembers(null, folderOptimizingJobIndex, folderName,
+                            folder.getOptimizingJobIDs(), afterOptimizingJobID,
+                            maxOptimizingJobIDs);
+  }
+
+
+
+  /**
+   * Retrieves the job IDs of the jobs contained in the provided folder.
+   *
+   * @param  txn     The transaction to use to protect the reads.  This may be
+   *                 {@code null} if no transaction is needed.
+   * @param  folder  The folder for which to retrieve the job IDs.
+   *
+   * @return  The job IDs of the jobs contained in the provided folder.
+   *
+   * @throws  DatabaseException  If a problem occurs while interacting with the
+   *                             configuration database.
+   */
+  private String[] getFolderJobIDs(final Transaction txn,
+                                   final JobFolder folder)
+         throws DatabaseException
+  {
+    return getFolderMembers(txn, folderJobIndex, folder.getFolderName(),
+                            folder.getJobIDs(), null, 0);
+  }
+
+
+
+  /**
+   * Retrieves the optimizing job IDs of the optimizing jobs contained in the
+   * provided folder.
+   *
+   * @param  txn     The transaction to use to protect the reads.  This may be
+   *                 {@code null} if no transaction is needed.
+   * @param  folder  The folder for which to retrieve the optimizing job IDs.
+   *
+   * @return  The optimizing job IDs of the optimizing jobs contained in the
+   *          provided folder.
+   *
+   * @throws  DatabaseException  If a problem occurs while interacting with the
+   *                             configuration database.
+   */
+  private String[] getFolderOptimizingJobIDs(final Transaction txn,
+                                             final JobFolder folder)
+         throws DatabaseException
+  {
+    return getFolderMembers(txn, folderOptimizingJobIndex,
+                            folder.getFolderName(),
+                            folder.getOptimizingJobIDs(), null, 0);
+  }
+
+
+
+  /**
+   * Retrieves the keys of the records contained in a folder, using the given
+   * folder index if it is available or the member list from the folder record
+   * if it is not.
+   *
+   * @param  txn            The transaction to use to protect the reads.  This
+   *                        may be {@code null} if no transaction is needed.
+   * @param  index          The folder index to use.  It may be {@code null} if
+   *                        the index is not available.
+   * @param  folderName     The name of the folder for which to retrieve the
+   *                        member keys.
+   * @param  recordMembers  The member keys from the folder record, which will
+   *                        only be used if there is no index.
+   * @param  afterKey       The key after which to start returning results.  It
+   *                        may be {@code null} to start with the first member.
+   * @param  maxMembers     The maximum number of keys to return.  A value that
+   *                        is less than or equal to zero indicates that there
+   *                        should be no limit.
+   *
+   * @return  The requested member keys, in ascending order.
+   *
+   * @throws  DatabaseException  If a problem occurs while interacting with the
+   *                             configuration database.
+   */
+  private String[] getFolderMembers(final Transaction txn,
+                                    final SecondaryDatabase index,
+                                    final String folderName,
+                                    final String[] recordMembers,
+                                    final String afterKey,
+                                    final int maxMembers)
+         throws DatabaseException
+  {
+    final ArrayList<String> memberList = new ArrayList<String>();
+    if (index == null)
+    {
+      // Page through the members in the same order that the index would use.
+      final String[] sortedMembers = recordMembers.clone();
+      Arrays.sort(sortedMembers);
+      for (final String member : sortedMembers)
+      {
+        if ((maxMembers > 0) && (memberList.size() >= maxMembers))
+        {
+          break;
+        }
+
+        if ((afterKey == null) || (member.compareTo(afterKey) > 0))
+        {
+          memberList.add(member);
+        }
+      }
+
+      final String[] members = new String[memberList.size()];
+      return memberList.toArray(members);
+    }
+
+    synchronized (dbMutex)
+    {
+      // Make sure that the databases are open before trying to use the index.
+      if (! dbsOpen)
+      {
+        final String message = "Cannot retrieve the contents of folder " +
+             folderName + " because the databases are not open.";
+        slamdServer.logMessage(Constants.LOG_LEVEL_CONFIG, message);
+        throw new SLAMDDatabaseException(message);
+      }
+
+
+      // Only the primary keys are needed, so don't bother retrieving the
+      // records themselves.
+      final DatabaseEntry key =
+           new DatabaseEntry(StaticUtils.getBytes(folderName));
+      final DatabaseEntry primaryKey = new DatabaseEntry();
+      final DatabaseEntry data = new DatabaseEntry();
+      data.setPartial(0, 0, true);
+
+      final SecondaryCursor cursor = index.openCursor(txn, null);
+      try
+      {
+        OperationStatus status;
+        if (afterKey == null)
+        {
+          status = cursor.getSearchKey(key, primaryKey, data, LockMode.DEFAULT);
+        }
+        else
+        {
+          primaryKey.setData(StaticUtils.getBytes(afterKey));
+          status = cursor.getSearchBothRange(key, primaryKey, data,
+                                             LockMode.DEFAULT);
+          if ((status == OperationStatus.SUCCESS) && afterKey.equals(
+               StaticUtils.toUTF8String(primaryKey.getData())))
+          {
+            status = cursor.getNextDup(key, primaryKey, data, LockMode.DEFAULT);
+          }
+        }
+
+        while ((status == OperationStatus.SUCCESS) &&
+               ((maxMembers <= 0) || (memberList.size() < maxMembers)))
+        {
+          memberList.add(StaticUtils.toUTF8String(primaryKey.getData()));
+          status = cursor.getNextDup(key, primaryKey, data, LockMode.DEFAULT);
+        }
+      }
+      finally
+      {
+        cursor.close();
+      }
+    }
+
+    final String[] members = new String[memberList.size()];
+    return memberList.toArray(members);
+  }
+
+
+
+  /**
+   * Retrieves the names of the uploaded files contained in the specified
+   * folder.  Uploaded file keys are the folder name and file name separated by
+   * a tab, so the files in a folder are adjacent in the file database and can
+   * be found with a range search.
+   *
+   * @param  txn         The transaction to use to protect the reads.  This may
+   *                     be {@code null} if no transaction is needed.
+   * @param  folderName  The name of the folder for which to retrieve the file
+   *                     names.
+   *
+   * @return  The names of the uploaded files contained in the specified
+   *          folder, in ascending order.
+   *
+   * @throws  DatabaseException  If a problem occurs while interacting with the
+   *                             configuration database.
+   */
+  private String[] getFolderFileNames(final Transaction txn,
+                                      final String folderName)
+         throws DatabaseException
+  {
+    final ArrayList<String> fileNameList = new ArrayList<String>();
+    synchronized (dbMutex)
+    {
+      // Make sure that the databases are open before trying to use the cursor.
+      if (! dbsOpen)
+      {
+        final String message = "Cannot retrieve the files in folder " +
+             folderName + " because the databases are not open.";
+        slamdServer.logMessage(Constants.LOG_LEVEL_CONFIG, message);
+        throw new SLAMDDatabaseException(message);
+      }
+
+      final String prefix = folderName + '\t';
+      final DatabaseEntry key =
+           new DatabaseEntry(StaticUtils.getBytes(prefix));
+      final DatabaseEntry data = new DatabaseEntry();
+      data.setPartial(0, 0, true);
+
+      final Cursor cursor = fileDB.openCursor(txn, null);
+      try
+      {
+        OperationStatus status =
+             cursor.getSearchKeyRange(key, data, LockMode.DEFAULT);
+        while (status == OperationStatus.SUCCESS)
+        {
+          final String keyString = StaticUtils.toUTF8String(key.getData());
+          if (! keyString.startsWith(prefix))
+          {
+            break;
+          }
+
+          fileNameList.add(keyString.substring(prefix.length()));
+          status = cursor.getNext(key, data, LockMode.DEFAULT);
+        }
+      }
+      finally
+      {
+        cursor.close();
+      }
+    }
+
+    final String[] fileNames = new String[fileNameList.size()];
+    return fileNameList.toArray(fileNames);
+  }
+
+
+
+  /**
+   * Ensures that the specified job folder exists.
+   *
+   * @param  txn         The transaction to use to protect the read.  This may
+   *                     be {@code null} if no transaction is needed.
+   * @param  folderName  The name of the folder that should exist.
+   *
+   * @throws  DatabaseException  If the folder does not exist or a problem
+   *                             occurs while interacting with the
+   *                             configuration database.
+   */
+  private void ensureFolderExists(final Transaction txn,
+                                  final String folderName)
+         throws DatabaseException
+  {
+    if (get(txn, folderDB, folderName, false) == null)
+    {
+      throw new SLAMDDatabaseException("Job folder " + folderName +
+           " does not exist in the configuration database.");
+    }
+  }
+
+
+
   /**
    * Writes information about the provided job folder into the configuration
    * database.  If the specified folder already exists, then it will be
@@ -2137,8 +3052,26 @@ public final class SLAMDDB
     }
 
 
-    final String[] jobIDs = folder.getJobIDs();
-    if ((jobIDs != null) && (jobIDs.length > 0))
+    final String[] jobIDs;
+    final String[] optimizingJobIDs;
+    final String[] fileNames;
+    try
+    {
+      jobIDs           = getFolderJobIDs(txn, folder);
+      optimizingJobIDs = getFolderOptimizingJobIDs(txn, folder);
+      fileNames        = getFolderFileNames(txn, folderName);
+    }
+    catch (final Exception e)
+    {
+      abortTransaction(txn);
+      throw new SLAMDDatabaseException(
+           "Unable to determine the contents of job folder " + folderName +
+                " -- " + e,
+           e);
+    }
+
+
+    if (jobIDs.length > 0)
     {
       if (deleteContents)
       {
@@ -2167,8 +3100,7 @@ public final class SLAMDDB
     }
 
 
-    final String[] optimizingJobIDs = folder.getOptimizingJobIDs();
-    if ((optimizingJobIDs != null) && (optimizingJobIDs.length > 0))
+    if (optimizingJobIDs.length > 0)
     {
       if (deleteContents)
       {
@@ -2198,8 +3130,7 @@ public final class SLAMDDB
     }
 
 
-    final String[] fileNames = folder.getFileNames();
-    if ((fileNames != null) && (fileNames.length > 0))
+    if (fileNames.length > 0)
     {
       if (deleteContents)
       {
@@ -2240,6 +3171,13 @@ public final class SLAMDDB
       throw new SLAMDDatabaseException(
            "Cannot delete job folder " + folderName +  " -- " + e, e);
     }
+
+
+    // Remove the data for any uploaded files that were in the folder.
+    if (fileNames.length > 0)
+    {
+      removeFileChunks(folderName + '\t');
+    }
   }
 
 
@@ -2437,7 +3375,7 @@ public final class SLAMDDB
       return null;
     }
 
-    final String[] jobIDs  = folder.getJobIDs();
+    final String[] jobIDs  = getFolderJobIDs(null, folder);
     final ArrayList<Job> jobList = new ArrayList<>(jobIDs.length);
     for (final String jobID : jobIDs)
     {
@@ -2485,7 +3423,7 @@ public final class SLAMDDB
       return null;
     }
 
-    final String[] jobIDs = folder.getJobIDs();
+    final String[] jobIDs = getFolderJobIDs(null, folder);
     final ArrayList<Job> jobList = new ArrayList<>(jobIDs.length);
     for (final String jobID : jobIDs)
     {
@@ -2581,7 +3519,7 @@ public final class SLAMDDB
       return null;
     }
 
-    final String[] jobIDs  = folder.getJobIDs();
+    final String[] jobIDs  = getFolderJobIDs(null, folder);
     final ArrayList<Job> jobList = new ArrayList<>(jobIDs.length);
     for (final String jobID : jobIDs)
     {
@@ -2629,7 +3567,7 @@ public final class SLAMDDB
       return null;
     }
 
-    final String[] jobIDs = folder.getJobIDs();
+    final String[] jobIDs = getFolderJobIDs(null, folder);
     final ArrayList<Job> jobList = new ArrayList<>(jobIDs.length);
     for (final String jobID : jobIDs)
     {
@@ -2722,8 +3660,9 @@ public final class SLAMDDB
     }
 
 
-    // If the job exists, then just overwrite it.  If not, then store it and
-    // update the folder in which the job is stored.
+    // If the job exists, then just overwrite it.  If not, then make sure that
+    // the folder in which it is to be stored exists before adding it.  The
+    // folder index will be updated automatically.
     if (j != null)
     {
       put(null, jobDB, job.getJobID(), job.encode());
@@ -2734,11 +3673,7 @@ public final class SLAMDDB
 
       try
       {
-        final byte[] folderBytes =
-             get(txn, folderDB, job.getFolderName(), true);
-        final JobFolder folder = JobFolder.decode(folderBytes);
-        folder.addJobID(job.getJobID());
-        put(txn, folderDB, job.getFolderName(), folder.encode());
+        ensureFolderExists(txn, job.getFolderName());
         put(txn, jobDB, job.getJobID(), job.encode());
         commitTransaction(txn);
       }
@@ -2759,9 +3694,23 @@ public final class SLAMDDB
       }
     }
 
+    updateJobStateLists(job);
+  }
+
 
-    // Check to see if the job is in the disabled, pending, or running job lists
-    // and update them as necessary.
+
+  /**
+   * Updates the disabled, pending, and running job lists so that they reflect
+   * the state of the provided job.
+   *
+   * @param  job  The job whose state should be reflected in the job lists.
+   *
+   * @throws  DatabaseException  If a problem occurs while attempting to write
+   *                             any of the updated job lists.
+   */
+  private void updateJobStateLists(final Job job)
+          throws DatabaseException
+  {
     final boolean isDisabled =
          (job.getJobState() == Constants.JOB_STATE_DISABLED);
     final boolean isPending =
@@ -3124,50 +4073,9 @@ public final class SLAMDDB
   public void removeJob(final String jobID)
          throws DatabaseException
   {
-    final Job j;
-    try
-    {
-      j = getJob(jobID);
-    }
-    catch (final DecodeException de)
-    {
-      // This means that the job exists but can't be decoded for some reason.
-      // In this case, just remove the job.
-      delete(null, jobDB, jobID);
-      return;
-    }
-
-
-    // At this point, we need to remove the job as well as the reference to the
-    // job in its corresponding folder.  First, create a transaction to use to
-    // protect the entire operation.
-    final Transaction txn = getTransaction();
-
-    try
-    {
-      final byte[] folderBytes = get(txn, folderDB, j.getFolderName(), true);
-      final JobFolder folder = JobFolder.decode(folderBytes);
-      folder.removeJobID(jobID);
-      put(txn, folderDB, j.getFolderName(), folder.encode());
-      delete(txn, jobDB, jobID);
-      commitTransaction(txn);
-    }
-    catch (final DatabaseException de)
-    {
-      abortTransaction(txn);
-      throw de;
-    }
-    catch (final Exception e)
-    {
-      abortTransaction(txn);
-
-      final String message =
-           "Unexpected exception caught while removing job:  " + e;
-      slamdServer.logMessage(Constants.LOG_LEVEL_CONFIG, message);
-      slamdServer.logMessage(Constants.LOG_LEVEL_EXCEPTION_DEBUG,
-           JobClass.stackTraceToString(e));
-      throw new SLAMDDatabaseException(message, e);
-    }
+    // The folder index is updated along with the job database, so there's
+    // no need to decode the job or update the folder that contains it.
+    delete(null, jobDB, jobID);
   }
 
 
@@ -3190,17 +4098,7 @@ public final class SLAMDDB
     {
       final Job j = getJob(jobID);
 
-      final byte[] currentFolderBytes =
-           get(txn, folderDB, j.getFolderName(), true);
-      final JobFolder currentFolder = JobFolder.decode(currentFolderBytes);
-      currentFolder.removeJobID(jobID);
-      put(txn, folderDB, j.getFolderName(), currentFolder.encode());
-
-      final byte[] newFolderBytes = get(txn, folderDB, folderName, true);
-      final JobFolder newFolder = JobFolder.decode(newFolderBytes);
-      newFolder.addJobID(jobID);
-      put(txn, folderDB, folderName, newFolder.encode());
-
+      ensureFolderExists(txn, folderName);
       j.setFolderName(folderName);
       put(txn, jobDB, jobID, j.encode());
 
@@ -3312,7 +4210,7 @@ public final class SLAMDDB
       return null;
     }
 
-    final String[] optimizingJobIDs  = folder.getOptimizingJobIDs();
+    final String[] optimizingJobIDs  = getFolderOptimizingJobIDs(null, folder);
     final ArrayList<OptimizingJob> optimizingJobList =
          new ArrayList<>(optimizingJobIDs.length);
     for (final String optimizingJobID : optimizingJobIDs)
@@ -3362,7 +4260,7 @@ public final class SLAMDDB
       return null;
     }
 
-    final String[] optimizingJobIDs  = folder.getOptimizingJobIDs();
+    final String[] optimizingJobIDs  = getFolderOptimizingJobIDs(null, folder);
     final ArrayList<OptimizingJob> optimizingJobList =
          new ArrayList<>(optimizingJobIDs.length);
     for (final String optimizingJobID : optimizingJobIDs)
@@ -3414,8 +4312,9 @@ public final class SLAMDDB
     }
 
 
-    // If the job exists, then just overwrite it.  If not, then store it and
-    // update the folder in which the job is stored.
+    // If the job exists, then just overwrite it.  If not, then make sure that
+    // the folder in which it is to be stored exists before adding it.  The
+    // folder index will be updated automatically.
     if (oj != null)
     {
       put(null, optimizingJobDB, optimizingJob.getOptimizingJobID(),
@@ -3427,11 +4326,7 @@ public final class SLAMDDB
 
       try
       {
-        final byte[] folderBytes =
-             get(txn, folderDB, optimizingJob.getFolderName(), true);
-        final JobFolder folder = JobFolder.decode(folderBytes);
-        folder.addOptimizingJobID(optimizingJob.getOptimizingJobID());
-        put(txn, folderDB, optimizingJob.getFolderName(), folder.encode());
+        ensureFolderExists(txn, optimizingJob.getFolderName());
         put(txn, optimizingJobDB, optimizingJob.getOptimizingJobID(),
             optimizingJob.encode());
         commitTransaction(txn);
@@ -3470,50 +4365,10 @@ public final class SLAMDDB
   public void removeOptimizingJob(final String optimizingJobID)
          throws DatabaseException
   {
-    OptimizingJob oj;
-    try
-    {
-      oj = getOptimizingJob(optimizingJobID);
-    }
-    catch (final DecodeException de)
-    {
-      // This means that the job exists but can't be decoded for some reason.
-      // In this case, just remove the job.
-      delete(null, optimizingJobDB, optimizingJobID);
-      return;
-    }
-
-
-    // At this point, we need to remove the job as well as the reference to the
-    // job in its corresponding folder.  First, create a transaction to use to
-    // protect the entire operation.
-    final Transaction txn = getTransaction();
-
-    try
-    {
-      final byte[] folderBytes = get(txn, folderDB, oj.getFolderName(), true);
-      final JobFolder folder = JobFolder.decode(folderBytes);
-      folder.removeOptimizingJobID(optimizingJobID);
-      put(txn, folderDB, oj.getFolderName(), folder.encode());
-      delete(txn, optimizingJobDB, optimizingJobID);
-      commitTransaction(txn);
-    }
-    catch (final DatabaseException de)
-    {
-      abortTransaction(txn);
-      throw de;
-    }
-    catch (final Exception e)
-    {
-      abortTransaction(txn);
-
-      final String message = "Unexpected exception caught while removing " +
-           "optimizing job:  " + e;
-      slamdServer.logMessage(Constants.LOG_LEVEL_CONFIG, message);
-      slamdServer.logMessage(Constants.LOG_LEVEL_EXCEPTION_DEBUG,
-           JobClass.stackTraceToString(e));
-      throw new SLAMDDatabaseException(message, e);
-    }
+    // The folder index is updated along with the optimizing job database, so
+    // there's no need to decode the optimizing job or update the folder that
+    // contains it.
+    delete(null, optimizingJobDB, optimizingJobID);
   }
 
 
@@ -3539,17 +4394,7 @@ public final class SLAMDDB
     {
       final OptimizingJob oj = getOptimizingJob(optimizingJobID);
 
-      final byte[] currentFolderBytes =
-           get(txn, folderDB, oj.getFolderName(), true);
-      final JobFolder currentFolder = JobFolder.decode(currentFolderBytes);
-      currentFolder.removeOptimizingJobID(optimizingJobID);
-      put(txn, folderDB, oj.getFolderName(), currentFolder.encode());
-
-      final byte[] newFolderBytes = get(txn, folderDB, folderName, true);
-      final JobFolder newFolder = JobFolder.decode(newFolderBytes);
-      newFolder.addOptimizingJobID(optimizingJobID);
-      put(txn, folderDB, folderName, newFolder.encode());
-
+      ensureFolderExists(txn, folderName);
       oj.setFolderName(folderName);
       put(txn, optimizingJobDB, optimizingJobID, oj.encode());
 
@@ -3749,6 +4594,9 @@ public final class SLAMDDB
 
   /**
    * Retrieves the specified uploaded file from the configuration database.
+   * The entire file data will be held in memory, so
+   * {@code getUploadedFileData} should be used instead for files that may be
+   * large.
    *
    * @param  folderName  The name of the folder in which the specified file is
    *                     located.
@@ -3774,7 +4622,92 @@ public final class SLAMDDB
       return null;
     }
 
-    return UploadedFile.decode(fileBytes);
+    final UploadedFile file = UploadedFile.decode(fileBytes);
+    if (file.getDataID() == null)
+    {
+      return file;
+    }
+
+    if (file.getFileSize() > Integer.MAX_VALUE)
+    {
+      throw new DecodeException("Uploaded file " + fileName + " is too " +
+           "large to be held in memory and must be read as a stream.");
+    }
+
+    final ByteArrayOutputStream outputStream =
+         new ByteArrayOutputStream((int) file.getFileSize());
+    final InputStream inputStream = new UploadedFileInputStream(this,
+         getFileChunkPrefix(folderName, fileName, file.getDataID()),
+         file.getFileSize());
+    try
+    {
+      final byte[] buffer = new byte[FILE_CHUNK_SIZE];
+      while (true)
+      {
+        final int bytesRead = inputStream.read(buffer);
+        if (bytesRead < 0)
+        {
+          break;
+        }
+
+        outputStream.write(buffer, 0, bytesRead);
+      }
+    }
+    catch (final IOException ioe)
+    {
+      throw new DecodeException("Unable to read the data for uploaded file " +
+           fileName + ":  " + ioe, ioe);
+    }
+
+    return new UploadedFile(file.getFileName(), file.getFileType(),
+         file.getFileSize(), file.getFileDescription(),
+         outputStream.toByteArray());
+  }
+
+
+
+  /**
+   * Retrieves an input stream that may be used to read the data for the
+   * specified uploaded file.  Files stored in chunks will be read one chunk at
+   * a time, so the entire file will not be held in memory.
+   *
+   * @param  folderName  The name of the folder in which the specified file is
+   *                     located.
+   * @param  fileName    The name of the uploaded file to retrieve.
+   *
+   * @return  An input stream that may be used to read the file data, or
+   *          {@code null} if no such file exists.
+   *
+   * @throws  DatabaseException  If a problem occurs while interacting with the
+   *                             configuration database.
+   *
+   * @throws  DecodeException  If the uploaded file cannot be decoded for some
+   *                           reason.
+   */
+  public InputStream getUploadedFileData(final String folderName,
+                                         final String fileName)
+         throws DatabaseException, DecodeException
+  {
+    final String key = folderName + '\t' + fileName;
+    final byte[] fileBytes = get(null, fileDB, key, false);
+    if (fileBytes == null)
+    {
+      return null;
+    }
+
+    final UploadedFile file = UploadedFile.decodeWithoutData(fileBytes);
+    if (file.getDataID() == null)
+    {
+      // The data is held in the file record itself.
+      final byte[] fileData = UploadedFile.decode(fileBytes).getFileData();
+      return new ByteArrayInputStream((fileData == null)
+                                      ? new byte[0]
+                                      : fileData);
+    }
+
+    return new UploadedFileInputStream(this,
+         getFileChunkPrefix(folderName, fileName, file.getDataID()),
+         file.getFileSize());
   }
 
 
@@ -3849,7 +4782,7 @@ public final class SLAMDDB
     }
 
 
-    final String[] fileNames = folder.getFileNames();
+    final String[] fileNames = getFolderFileNames(null, folderName);
     ArrayList<UploadedFile> fileList = new ArrayList<>();
     for (final String fileName : fileNames)
     {
@@ -3870,7 +4803,9 @@ public final class SLAMDDB
   /**
    * Writes information about the provided uploaded file into the configuration
    * database.  If the file already exists, then it will be overwritten.
-   * Otherwise, it will be added and the corresponding folder will be updated.
+   * Otherwise, it will be added to the specified folder.  If the provided file
+   * does not include any file data, then only the type and description will be
+   * updated and the existing data will be preserved.
    *
    * @param  uploadedFile  The uploaded file to be written to the configuration
    *                       database.
@@ -3885,65 +4820,403 @@ public final class SLAMDDB
                                 final String folderName)
          throws DatabaseException
   {
+    final byte[] fileData = uploadedFile.getFileData();
+    if (fileData != null)
+    {
+      try
+      {
+        writeUploadedFile(uploadedFile, folderName,
+                          new ByteArrayInputStream(fileData));
+        return;
+      }
+      catch (final IOException ioe)
+      {
+        // This should never happen when reading from a byte array.
+        throw new SLAMDDatabaseException("Unable to read the data for " +
+             "uploaded file " + uploadedFile.getFileName() + ":  " + ioe, ioe);
+      }
+    }
+
+
+    // Only the file information is being updated, so keep whatever data is
+    // already associated with the file.
     final String key = folderName + '\t' + uploadedFile.getFileName();
+    final Transaction txn = getTransaction();
 
-    final UploadedFile currentFile;
     try
     {
-      currentFile = getUploadedFileWithoutData(folderName,
-           uploadedFile.getFileName());
+      final byte[] currentBytes = get(txn, fileDB, key, true);
+      if (currentBytes == null)
+      {
+        ensureFolderExists(txn, folderName);
+        put(txn, fileDB, key, uploadedFile.encode());
+      }
+      else
+      {
+        final UploadedFile currentFile = UploadedFile.decode(currentBytes);
+        final UploadedFile updatedFile =
+             new UploadedFile(uploadedFile.getFileName(),
+                  uploadedFile.getFileType(), currentFile.getFileSize(),
+                  uploadedFile.getFileDescription(),
+                  currentFile.getFileData());
+        updatedFile.setDataID(currentFile.getDataID());
+        put(txn, fileDB, key, updatedFile.encode());
+      }
+
+      commitTransaction(txn);
     }
-    catch (final DecodeException de)
+    catch (final DatabaseException de)
     {
-      // This means that the file exists but cannot be decoded for some reason.
-      // In this case, just overwrite that file.
       slamdServer.logMessage(Constants.LOG_LEVEL_EXCEPTION_DEBUG,
            JobClass.stackTraceToString(de));
-      put(null, fileDB, key, uploadedFile.encode());
-      return;
+      abortTransaction(txn);
+      throw de;
+    }
+    catch (final Exception e)
+    {
+      slamdServer.logMessage(Constants.LOG_LEVEL_EXCEPTION_DEBUG,
+           JobClass.stackTraceToString(e));
+      abortTransaction(txn);
+
+      final String message = "Unexpected exception caught while updating " +
+           "uploaded file in DB:  " + e;
+      slamdServer.logMessage(Constants.LOG_LEVEL_CONFIG, message);
+      throw new SLAMDDatabaseException(message, e);
     }
+  }
 
 
-    if (currentFile == null)
+
+  /**
+   * Writes the provided uploaded file into the configuration database, reading
+   * its data from the given input stream.  The data will be stored in
+   * fixed-size chunks so that the entire file never needs to be held in
+   * memory.  If the file already exists, then it will be replaced, but anyone
+   * reading the existing file will continue to see its previous contents until
+   * the new data has been completely written.
+   *
+   * @param  fileInfo     The uploaded file providing the name, type, and
+   *                      description for the file.  Any file data or size
+   *                      that it contains will be ignored.
+   * @param  folderName   The name of the folder in which the specified file
+   *                      should be placed.
+   * @param  inputStream  The input stream from which to read the file data.
+   *                      It will not be closed.
+   *
+   * @throws  DatabaseException  If a problem occurs while writing information
+   *                             about the specified file to the configuration
+   *                             database.
+   *
+   * @throws  IOException  If a problem occurs while reading from the provided
+   *                       input stream.
+   */
+  public void writeUploadedFile(final UploadedFile fileInfo,
+                                final String folderName,
+                                final InputStream inputStream)
+         throws DatabaseException, IOException
+  {
+    if (fileDataDB == null)
     {
-      // The file does not exist, so add it and also update the corresponding
-      // folder.  Use a transaction to wrap all these operations.
-      final Transaction txn = getTransaction();
+      throw new SLAMDDatabaseException("Cannot write uploaded file " +
+           fileInfo.getFileName() + " because the file data database is not " +
+           "available.");
+    }
+
+
+    // Write the data under a new data ID so that it doesn't interfere with any
+    // existing data for the file until the file record is updated.
+    final String fileName = fileInfo.getFileName();
+    final String dataID = UUID.randomUUID().toString();
+    final String chunkPrefix = getFileChunkPrefix(folderName, fileName, dataID);
+    final String key = folderName + '\t' + fileName;
+    String previousDataID = null;
 
+    try
+    {
+      final byte[] buffer = new byte[FILE_CHUNK_SIZE];
+      long fileSize = 0L;
+      int chunkNumber = 0;
+      while (true)
+      {
+        final int chunkSize = readFileChunk(inputStream, buffer);
+        if (chunkSize <= 0)
+        {
+          break;
+        }
+
+        put(null, fileDataDB, getFileChunkKey(chunkPrefix, chunkNumber),
+            Arrays.copyOf(buffer, chunkSize));
+        fileSize += chunkSize;
+        chunkNumber++;
+      }
+
+      final UploadedFile storedFile = new UploadedFile(fileName,
+           fileInfo.getFileType(), fileSize, fileInfo.getFileDescription());
+      storedFile.setDataID(dataID);
+
+      final Transaction txn = getTransaction();
       try
       {
-        final byte[] folderBytes = get(txn, folderDB, folderName, true);
-        final JobFolder folder = JobFolder.decode(folderBytes);
-        folder.addFileName(uploadedFile.getFileName());
-        put(txn, folderDB, folderName, folder.encode());
-        put(txn, fileDB, key, uploadedFile.encode());
+        // Find the data that is being replaced while holding the lock on the
+        // file record, so that only that data is removed and not the data for
+        // a concurrent upload of the same file.
+        ensureFolderExists(txn, folderName);
+        final byte[] previousBytes = get(txn, fileDB, key, true);
+        if (previousBytes != null)
+        {
+          previousDataID =
+               UploadedFile.decodeWithoutData(previousBytes).getDataID();
+        }
+
+        put(txn, fileDB, key, storedFile.encode());
         commitTransaction(txn);
       }
       catch (final DatabaseException de)
       {
-        slamdServer.logMessage(Constants.LOG_LEVEL_EXCEPTION_DEBUG,
-             JobClass.stackTraceToString(de));
         abortTransaction(txn);
         throw de;
       }
-      catch (final Exception e)
+      catch (final DecodeException de)
       {
-        slamdServer.logMessage(Constants.LOG_LEVEL_EXCEPTION_DEBUG,
-             JobClass.stackTraceToString(e));
         abortTransaction(txn);
+        throw new SLAMDDatabaseException("Unable to decode the existing " +
+             "record for uploaded file " + fileName + ":  " + de, de);
+      }
+    }
+    catch (final IOException | RuntimeException e)
+    {
+      slamdServer.logMessage(Constants.LOG_LEVEL_EXCEPTION_DEBUG,
+           JobClass.stackTraceToString(e));
 
-        final String message = "Unexpected exception caught while adding " +
-             "uploaded file to DB:  " + e;
-        slamdServer.logMessage(Constants.LOG_LEVEL_CONFIG, message);
+      try
+      {
+        removeFileChunks(chunkPrefix);
+      }
+      catch (final Exception e2)
+      {
         slamdServer.logMessage(Constants.LOG_LEVEL_EXCEPTION_DEBUG,
-             JobClass.stackTraceToString(e));
-        throw new SLAMDDatabaseException(message, e);
+             JobClass.stackTraceToString(e2));
       }
+
+      throw e;
+    }
+
+
+    // Remove the data for the version of the file that was replaced.  Files
+    // written before the data was stored in chunks don't have any.
+    if ((previousDataID != null) && (! previousDataID.equals(dataID)))
+    {
+      removeFileChunks(
+           getFileChunkPrefix(folderName, fileName, previousDataID));
+    }
+  }
+
+
+
+  /**
+   * Reads data from the provided input stream until the buffer is full or the
+   * end of the stream is reached.
+   *
+   * @param  inputStream  The input stream from which to read the data.
+   * @param  buffer       The buffer into which the data should be read.
+   *
+   * @return  The number of bytes read, which will only be less than the size
+   *          of the buffer if the end of the stream was reached.
+   *
+   * @throws  IOException  If a problem occurs while reading from the input
+   *                       stream.
+   */
+  private static int readFileChunk(final InputStream inputStream,
+                                   final byte[] buffer)
+          throws IOException
+  {
+    int totalBytesRead = 0;
+    while (totalBytesRead < buffer.length)
+    {
+      final int bytesRead = inputStream.read(buffer, totalBytesRead,
+                                             buffer.length - totalBytesRead);
+      if (bytesRead < 0)
+      {
+        break;
+      }
+
+      totalBytesRead += bytesRead;
+    }
+
+    return totalBytesRead;
+  }
+
+
+
+  /**
+   * Retrieves the specified chunk of uploaded file data.
+   *
+   * @param  chunkPrefix  The prefix for the keys of the chunks that make up the
+   *                      file data.
+   * @param  chunkNumber  The position of the chunk to retrieve, starting at
+   *                      zero.
+   *
+   * @return  The requested chunk of data, or {@code null} if there is no such
+   *          chunk.
+   *
+   * @throws  DatabaseException  If a problem occurs while interacting with the
+   *                             configuration database.
+   */
+  byte[] getFileChunk(final String chunkPrefix, final int chunkNumber)
+         throws DatabaseException
+  {
+    if (fileDataDB == null)
+    {
+      return null;
+    }
+
+    return get(null, fileDataDB, getFileChunkKey(chunkPrefix, chunkNumber),
+               false);
+  }
+
+
+
+  /**
+   * Retrieves the prefix for the keys of the chunks that hold the data for the
+   * specified uploaded file.
+   *
+   * @param  folderName  The name of the folder containing the file.
+   * @param  fileName    The name of the file.
+   * @param  dataID      The identifier for the file data.  It may be
+   *                     {@code null} to obtain a prefix that matches the keys
+   *                     for all data associated with the file.
+   *
+   * @return  The prefix for the keys of the chunks that hold the data for the
+   *          specified uploaded file.
+   */
+  private static String getFileChunkPrefix(final String folderName,
+                                           final String fileName,
+                                           final String dataID)
+  {
+    if (dataID == null)
+    {
+      return folderName + '\t' + fileName + '\t';
     }
     else
     {
-      // The file already exists, so just update it in the file database.
-      put(null, fileDB, key, uploadedFile.encode());
+      return folderName + '\t' + fileName + '\t' + dataID + '\t';
+    }
+  }
+
+
+
+  /**
+   * Retrieves the key for the specified chunk of uploaded file data.  The
+   * chunk number is zero-padded so that the chunks of a file are stored in
+   * order.
+   *
+   * @param  chunkPrefix  The prefix for the keys of the chunks that make up the
+   *                      file data.
+   * @param  chunkNumber  The position of the chunk, starting at zero.
+   *
+   * @return  The key for the specified chunk of uploaded file data.
+   */
+  private static String getFileChunkKey(final String chunkPrefix,
+                                        final int chunkNumber)
+  {
+    final String numberString = String.valueOf(chunkNumber);
+    final StringBuilder buffer = new StringBuilder(chunkPrefix.length() + 10);
+    buffer.append(chunkPrefix);
+    for (int i=numberString.length(); i < 10; i++)
+    {
+      buffer.append('0');
+    }
+    buffer.append(numberString);
+    return buffer.toString();
+  }
+
+
+
+  /**
+   * Removes the chunks of uploaded file data whose keys start with the given
+   * prefix.  The chunks are removed in small batches so that other database
+   * operations are not blocked while removing a large file.
+   *
+   * @param  prefix  The prefix for the keys of the chunks to remove.
+   *
+   * @throws  DatabaseException  If a problem occurs while interacting with the
+   *                             configuration database.
+   */
+  private void removeFileChunks(final String prefix)
+          throws DatabaseException
+  {
+    if (fileDataDB == null)
+    {
+      return;
+    }
+
+    final byte[] prefixBytes = StaticUtils.getBytes(prefix);
+    byte[] startKey = prefixBytes;
+    while (true)
+    {
+      final ArrayList<String> keyList =
+           new ArrayList<String>(FILE_CHUNK_REMOVE_BATCH_SIZE);
+      synchronized (dbMutex)
+      {
+        if (! dbsOpen)
+        {
+          final String message = "Cannot remove uploaded file data because " +
+               "the databases are not open.";
+          slamdServer.logMessage(Constants.LOG_LEVEL_CONFIG, message);
+          throw new SLAMDDatabaseException(message);
+        }
+
+        final DatabaseEntry key = new DatabaseEntry(startKey);
+        final DatabaseEntry data = new DatabaseEntry();
+        data.setPartial(0, 0, true);
+
+        final Cursor cursor = fileDataDB.openCursor(null, null);
+        try
+        {
+          int numExamined = 0;
+          OperationStatus status =
+               cursor.getSearchKeyRange(key, data, LockMode.DEFAULT);
+          while ((status == OperationStatus.SUCCESS) &&
+                 (numExamined < FILE_CHUNK_REMOVE_BATCH_SIZE))
+          {
+            final String keyString = StaticUtils.toUTF8String(key.getData());
+            if (! keyString.startsWith(prefix))
+            {
+              break;
+            }
+
+            keyList.add(keyString);
+
+            numExamined++;
+            status = cursor.getNext(key, data, LockMode.DEFAULT);
+          }
+
+          if ((status == OperationStatus.SUCCESS) &&
+              StaticUtils.toUTF8String(key.getData()).startsWith(prefix))
+          {
+            // There are more chunks to examine, so pick up from the next one.
+            startKey = key.getData();
+          }
+          else
+          {
+            startKey = null;
+          }
+        }
+        finally
+        {
+          cursor.close();
+        }
+      }
+
+      for (final String chunkKey : keyList)
+      {
+        delete(null, fileDataDB, chunkKey);
+      }
+
+      if (startKey == null)
+      {
+        return;
+      }
     }
   }
 
@@ -3962,16 +5235,12 @@ public final class SLAMDDB
   public void removeUploadedFile(final String folderName, final String fileName)
          throws DatabaseException
   {
-    // We need to both remove the file and update the associated folder.  Do
-    // this under a transaction.
+    // The file key includes the folder name, so only the file itself needs to
+    // be removed.  Do this under a transaction.
     final Transaction txn = getTransaction();
 
     try
     {
-      final byte[] folderBytes = get(txn, folderDB, folderName, true);
-      final JobFolder folder = JobFolder.decode(folderBytes);
-      folder.removeFileName(fileName);
-      put(txn, folderDB, folderName, folder.encode());
       delete(txn, fileDB, folderName + '\t' + fileName);
       commitTransaction(txn);
     }
@@ -3991,6 +5260,10 @@ public final class SLAMDDB
            JobClass.stackTraceToString(e));
       throw new SLAMDDatabaseException(message, e);
     }
+
+
+    // Now that the file is no longer visible, remove any data stored for it.
+    removeFileChunks(getFileChunkPrefix(folderName, fileName, null));
   }
 
 
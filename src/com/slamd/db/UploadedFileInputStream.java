@@ -0,0 +1,199 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.db;
+
+
+
+import java.io.IOException;
+import java.io.InputStream;
+
+
+
+/**
+ * This class provides an input stream that reads the data for an uploaded file
+ * that is stored in chunks in the file data database.  Only one chunk is held
+ * in memory at a time, and each chunk is retrieved when it is first needed.
+ */
+final class UploadedFileInputStream
+       extends InputStream
+{
+  // The chunk of data currently being read.
+  private byte[] chunk;
+
+  // The position of the next byte to read from the current chunk.
+  private int chunkPosition;
+
+  // The number of the next chunk to retrieve from the database.
+  private int nextChunkNumber;
+
+  // The total number of bytes that have been read from the stream.
+  private long bytesRead;
+
+  // The total number of bytes that the file is expected to contain.
+  private final long fileSize;
+
+  // The database from which the chunks will be retrieved.
+  private final SLAMDDB slamdDB;
+
+  // The prefix for the keys of the chunks that hold the file data.
+  private final String chunkPrefix;
+
+
+
+  /**
+   * Creates a new uploaded file input stream with the provided information.
+   *
+   * @param  slamdDB      The database from which the chunks will be retrieved.
+   * @param  chunkPrefix  The prefix for the keys of the chunks that hold the
+   *                      file data.
+   * @param  fileSize     The total number of bytes that the file is expected
+   *                      to contain.
+   */
+  UploadedFileInputStream(final SLAMDDB slamdDB, final String chunkPrefix,
+                          final long fileSize)
+  {
+    this.slamdDB     = slamdDB;
+    this.chunkPrefix = chunkPrefix;
+    this.fileSize    = fileSize;
+
+    chunk           = new byte[0];
+    chunkPosition   = 0;
+    nextChunkNumber = 0;
+    bytesRead       = 0L;
+  }
+
+
+
+  /**
+   * Reads a single byte of data from the file.
+   *
+   * @return  The byte that was read, or -1 if the end of the file has been
+   *          reached.
+   *
+   * @throws  IOException  If a problem occurs while retrieving the file data.
+   */
+  @Override()
+  public int read()
+         throws IOException
+  {
+    if (! ensureDataAvailable())
+    {
+      return -1;
+    }
+
+    bytesRead++;
+    return (chunk[chunkPosition++] & 0xFF);
+  }
+
+
+
+  /**
+   * Reads data from the file into the provided array.
+   *
+   * @param  b       The array into which the data should be read.
+   * @param  offset  The position in the array at which to start writing data.
+   * @param  length  The maximum number of bytes to read.
+   *
+   * @return  The number of bytes that were read, or -1 if the end of the file
+   *          has been reached.
+   *
+   * @throws  IOException  If a problem occurs while retrieving the file data.
+   */
+  @Override()
+  public int read(final byte[] b, final int offset, final int length)
+         throws IOException
+  {
+    if (length == 0)
+    {
+      return 0;
+    }
+
+    if (! ensureDataAvailable())
+    {
+      return -1;
+    }
+
+    final int bytesToCopy = Math.min(length, chunk.length - chunkPosition);
+    System.arraycopy(chunk, chunkPosition, b, offset, bytesToCopy);
+    chunkPosition += bytesToCopy;
+    bytesRead     += bytesToCopy;
+    return bytesToCopy;
+  }
+
+
+
+  /**
+   * Retrieves the number of bytes that may be read without retrieving another
+   * chunk from the database.
+   *
+   * @return  The number of bytes remaining in the current chunk.
+   */
+  @Override()
+  public int available()
+  {
+    return (chunk.length - chunkPosition);
+  }
+
+
+
+  /**
+   * Ensures that there is data available in the current chunk, retrieving the
+   * next chunk from the database if necessary.
+   *
+   * @return  {@code true} if there is data available, or {@code false} if the
+   *          end of the file has been reached.
+   *
+   * @throws  IOException  If the next chunk could not be retrieved, or if the
+   *                       file data ended before the expected size was
+   *                       reached because the file was replaced or removed
+   *                       while it was being read.
+   */
+  private boolean ensureDataAvailable()
+          throws IOException
+  {
+    while (chunkPosition >= chunk.length)
+    {
+      if (bytesRead >= fileSize)
+      {
+        return false;
+      }
+
+      final byte[] nextChunk;
+      try
+      {
+        nextChunk = slamdDB.getFileChunk(chunkPrefix, nextChunkNumber);
+      }
+      catch (final Exception e)
+      {
+        throw new IOException("Unable to retrieve uploaded file data:  " + e,
+                              e);
+      }
+
+      if (nextChunk == null)
+      {
+        throw new IOException("The uploaded file data ended after " +
+             bytesRead + " of " + fileSize + " bytes.  The file may have " +
+             "been replaced or removed while it was being read.");
+      }
+
+      chunk         = nextChunk;
+      chunkPosition = 0;
+      nextChunkNumber++;
+    }
+
+    return true;
+  }
+}
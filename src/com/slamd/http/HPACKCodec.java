@@ -0,0 +1,687 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.http;
+
+
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.unboundid.util.StaticUtils;
+
+
+
+/**
+ * This class provides an implementation of the HPACK header compression format
+ * described in RFC 7541, for use by HTTP/2 connections.  Encoding is stateless:
+ * each header is written either as a reference to the static table or as a
+ * literal that is not added to the dynamic table, and Huffman coding is not
+ * used.  This costs a little bandwidth but keeps request generation cheap and
+ * means that the encoder never needs to be synchronized with the server.
+ * Decoding is fully supported, including the dynamic table and Huffman-coded
+ * strings, since servers are free to use either.  The decoder is stateful, so
+ * each connection must use its own instance, and header blocks must be decoded
+ * in the order in which they were received.
+ */
+final class HPACKCodec
+{
+  /**
+   * The default size, in octets, of the dynamic table.
+   */
+  static final int DEFAULT_TABLE_SIZE = 4096;
+
+
+
+  /**
+   * The name-value pairs in the static table, in index order starting from
+   * one.
+   */
+  private static final String[][] STATIC_TABLE =
+  {
+    { ":authority", "" },
+    { ":method", "GET" },
+    { ":method", "POST" },
+    { ":path", "/" },
+    { ":path", "/index.html" },
+    { ":scheme", "http" },
+    { ":scheme", "https" },
+    { ":status", "200" },
+    { ":status", "204" },
+    { ":status", "206" },
+    { ":status", "304" },
+    { ":status", "400" },
+    { ":status", "404" },
+    { ":status", "500" },
+    { "accept-charset", "" },
+    { "accept-encoding", "gzip, deflate" },
+    { "accept-language", "" },
+    { "accept-ranges", "" },
+    { "accept", "" },
+    { "access-control-allow-origin", "" },
+    { "age", "" },
+    { "allow", "" },
+    { "authorization", "" },
+    { "cache-control", "" },
+    { "content-disposition", "" },
+    { "content-encoding", "" },
+    { "content-language", "" },
+    { "content-length", "" },
+    { "content-location", "" },
+    { "content-range", "" },
+    { "content-type", "" },
+    { "cookie", "" },
+    { "date", "" },
+    { "etag", "" },
+    { "expect", "" },
+    { "expires", "" },
+    { "from", "" },
+    { "host", "" },
+    { "if-match", "" },
+    { "if-modified-since", "" },
+    { "if-none-match", "" },
+    { "if-range", "" },
+    { "if-unmodified-since", "" },
+    { "last-modified", "" },
+    { "link", "" },
+    { "location", "" },
+    { "max-forwards", "" },
+    { "proxy-authenticate", "" },
+    { "proxy-authorization", "" },
+    { "range", "" },
+    { "referer", "" },
+    { "refresh", "" },
+    { "retry-after", "" },
+    { "server", "" },
+    { "set-cookie", "" },
+    { "strict-transport-security", "" },
+    { "transfer-encoding", "" },
+    { "user-agent", "" },
+    { "vary", "" },
+    { "via", "" },
+    { "www-authenticate", "" }
+  };
+
+
+
+  /**
+   * The Huffman codes for each symbol, with the end-of-string symbol last.
+   */
+  private static final int[] HUFFMAN_CODES =
+  {
+    0x00001ff8, 0x007fffd8, 0x0fffffe2, 0x0fffffe3, 0x0fffffe4, 0x0fffffe5,
+    0x0fffffe6, 0x0fffffe7, 0x0fffffe8, 0x00ffffea, 0x3ffffffc, 0x0fffffe9,
+    0x0fffffea, 0x3ffffffd, 0x0fffffeb, 0x0fffffec, 0x0fffffed, 0x0fffffee,
+    0x0fffffef, 0x0ffffff0, 0x0ffffff1, 0x0ffffff2, 0x3ffffffe, 0x0ffffff3,
+    0x0ffffff4, 0x0ffffff5, 0x0ffffff6, 0x0ffffff7, 0x0ffffff8, 0x0ffffff9,
+    0x0ffffffa, 0x0ffffffb, 0x00000014, 0x000003f8, 0x000003f9, 0x00000ffa,
+    0x00001ff9, 0x00000015, 0x000000f8, 0x000007fa, 0x000003fa, 0x000003fb,
+    0x000000f9, 0x000007fb, 0x000000fa, 0x00000016, 0x00000017, 0x00000018,
+    0x00000000, 0x00000001, 0x00000002, 0x00000019, 0x0000001a, 0x0000001b,
+    0x0000001c, 0x0000001d, 0x0000001e, 0x0000001f, 0x0000005c, 0x000000fb,
+    0x00007ffc, 0x00000020, 0x00000ffb, 0x000003fc, 0x00001ffa, 0x00000021,
+    0x0000005d, 0x0000005e, 0x0000005f, 0x00000060, 0x00000061, 0x00000062,
+    0x00000063, 0x00000064, 0x00000065, 0x00000066, 0x00000067, 0x00000068,
+    0x00000069, 0x0000006a, 0x0000006b, 0x0000006c, 0x0000006d, 0x0000006e,
+    0x0000006f, 0x00000070, 0x00000071, 0x00000072, 0x000000fc, 0x00000073,
+    0x000000fd, 0x00001ffb, 0x0007fff0, 0x00001ffc, 0x00003ffc, 0x00000022,
+    0x00007ffd, 0x00000003, 0x00000023, 0x00000004, 0x00000024, 0x00000005,
+    0x00000025, 0x00000026, 0x00000027, 0x00000006, 0x00000074, 0x00000075,
+    0x00000028, 0x00000029, 0x0000002a, 0x00000007, 0x0000002b, 0x00000076,
+    0x0000002c, 0x00000008, 0x00000009, 0x0000002d, 0x00000077, 0x00000078,
+    0x00000079, 0x0000007a, 0x0000007b, 0x00007ffe, 0x000007fc, 0x00003ffd,
+    0x00001ffd, 0x0ffffffc, 0x000fffe6, 0x003fffd2, 0x000fffe7, 0x000fffe8,
+    0x003fffd3, 0x003fffd4, 0x003fffd5, 0x007fffd9, 0x003fffd6, 0x007fffda,
+    0x007fffdb, 0x007fffdc, 0x007fffdd, 0x007fffde, 0x00ffffeb, 0x007fffdf,
+    0x00ffffec, 0x00ffffed, 0x003fffd7, 0x007fffe0, 0x00ffffee, 0x007fffe1,
+    0x007fffe2, 0x007fffe3, 0x007fffe4, 0x001fffdc, 0x003fffd8, 0x007fffe5,
+    0x003fffd9, 0x007fffe6, 0x007fffe7, 0x00ffffef, 0x003fffda, 0x001fffdd,
+    0x000fffe9, 0x003fffdb, 0x003fffdc, 0x007fffe8, 0x007fffe9, 0x001fffde,
+    0x007fffea, 0x003fffdd, 0x003fffde, 0x00fffff0, 0x001fffdf, 0x003fffdf,
+    0x007fffeb, 0x007fffec, 0x001fffe0, 0x001fffe1, 0x003fffe0, 0x001fffe2,
+    0x007fffed, 0x003fffe1, 0x007fffee, 0x007fffef, 0x000fffea, 0x003fffe2,
+    0x003fffe3, 0x003fffe4, 0x007ffff0, 0x003fffe5, 0x003fffe6, 0x007ffff1,
+    0x03ffffe0, 0x03ffffe1, 0x000fffeb, 0x0007fff1, 0x003fffe7, 0x007ffff2,
+    0x003fffe8, 0x01ffffec, 0x03ffffe2, 0x03ffffe3, 0x03ffffe4, 0x07ffffde,
+    0x07ffffdf, 0x03ffffe5, 0x00fffff1, 0x01ffffed, 0x0007fff2, 0x001fffe3,
+    0x03ffffe6, 0x07ffffe0, 0x07ffffe1, 0x03ffffe7, 0x07ffffe2, 0x00fffff2,
+    0x001fffe4, 0x001fffe5, 0x03ffffe8, 0x03ffffe9, 0x0ffffffd, 0x07ffffe3,
+    0x07ffffe4, 0x07ffffe5, 0x000fffec, 0x00fffff3, 0x000fffed, 0x001fffe6,
+    0x003fffe9, 0x001fffe7, 0x001fffe8, 0x007ffff3, 0x003fffea, 0x003fffeb,
+    0x01ffffee, 0x01ffffef, 0x00fffff4, 0x00fffff5, 0x03ffffea, 0x007ffff4,
+    0x03ffffeb, 0x07ffffe6, 0x03ffffec, 0x03ffffed, 0x07ffffe7, 0x07ffffe8,
+    0x07ffffe9, 0x07ffffea, 0x07ffffeb, 0x0ffffffe, 0x07ffffec, 0x07ffffed,
+    0x07ffffee, 0x07ffffef, 0x07fffff0, 0x03ffffee, 0x3fffffff
+  };
+
+
+
+  /**
+   * The number of bits in the Huffman code for each symbol.
+   */
+  private static final byte[] HUFFMAN_CODE_LENGTHS =
+  {
+    13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28,
+    28, 28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28,
+     6, 10, 10, 12, 13,  6,  8, 11, 10, 10,  8, 11,  8,  6,  6,  6,
+     5,  5,  5,  6,  6,  6,  6,  6,  6,  6,  7,  8, 15,  6, 12, 10,
+    13,  6,  7,  7,  7,  7,  7,  7,  7,  7,  7,  7,  7,  7,  7,  7,
+     7,  7,  7,  7,  7,  7,  7,  7,  8,  7,  8, 13, 19, 13, 14,  6,
+    15,  5,  6,  5,  6,  5,  6,  6,  6,  5,  7,  7,  6,  6,  6,  5,
+     6,  7,  6,  5,  5,  6,  7,  7,  7,  7,  7, 15, 11, 14, 13, 28,
+    20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23,
+    24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,
+    22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23,
+    21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,
+    26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25,
+    19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27,
+    20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23,
+    26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26,
+    30
+  };
+
+
+
+  /**
+   * The tree used to decode Huffman-coded strings.  Each internal node uses
+   * two elements holding the positions of its children, and a negative value
+   * identifies a leaf whose symbol is the complement of that value.
+   */
+  private static final int[] HUFFMAN_TREE = buildHuffmanTree();
+
+
+
+  // The entries in the dynamic table, with the oldest entry first.
+  private final ArrayList<String[]> dynamicTable;
+
+  // The current size, in octets, of the dynamic table.
+  private int dynamicTableSize;
+
+  // The maximum size, in octets, of the dynamic table.
+  private int maxTableSize;
+
+
+
+  /**
+   * Creates a new HPACK codec with the default dynamic table size.
+   */
+  HPACKCodec()
+  {
+    dynamicTable     = new ArrayList<String[]>();
+    dynamicTableSize = 0;
+    maxTableSize     = DEFAULT_TABLE_SIZE;
+  }
+
+
+
+  /**
+   * Encodes the provided list of headers into a header block.
+   *
+   * @param  headers  The headers to encode, with each element holding a
+   *                  lowercase name and a value.
+   *
+   * @return  The encoded header block.
+   */
+  static byte[] encode(List<String[]> headers)
+  {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    for (String[] header : headers)
+    {
+      int nameIndex = 0;
+      int fullIndex = 0;
+      for (int i=0; i < STATIC_TABLE.length; i++)
+      {
+        if (STATIC_TABLE[i][0].equals(header[0]))
+        {
+          if (nameIndex == 0)
+          {
+            nameIndex = i+1;
+          }
+
+          if (STATIC_TABLE[i][1].equals(header[1]))
+          {
+            fullIndex = i+1;
+            break;
+          }
+        }
+      }
+
+      if (fullIndex > 0)
+      {
+        // Indexed header field representation.
+        encodeInteger(buffer, 0x80, 7, fullIndex);
+      }
+      else
+      {
+        // Literal header field without indexing, using an indexed name if
+        // possible.
+        encodeInteger(buffer, 0x00, 4, nameIndex);
+        if (nameIndex == 0)
+        {
+          encodeString(buffer, header[0]);
+        }
+        encodeString(buffer, header[1]);
+      }
+    }
+
+    return buffer.toByteArray();
+  }
+
+
+
+  /**
+   * Writes the provided integer using the HPACK integer representation.
+   *
+   * @param  buffer      The buffer to which the integer should be written.
+   * @param  flags       The bits to set in the first byte above the prefix.
+   * @param  prefixBits  The number of bits in the first byte that are available
+   *                     for the integer.
+   * @param  value       The integer to write.
+   */
+  private static void encodeInteger(ByteArrayOutputStream buffer, int flags,
+                                    int prefixBits, int value)
+  {
+    int maxPrefix = (1 << prefixBits) - 1;
+    if (value < maxPrefix)
+    {
+      buffer.write(flags | value);
+      return;
+    }
+
+    buffer.write(flags | maxPrefix);
+    value -= maxPrefix;
+    while (value >= 0x80)
+    {
+      buffer.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer.write(value);
+  }
+
+
+
+  /**
+   * Writes the provided string as a literal without Huffman coding.
+   *
+   * @param  buffer  The buffer to which the string should be written.
+   * @param  s       The string to write.
+   */
+  private static void encodeString(ByteArrayOutputStream buffer, String s)
+  {
+    byte[] bytes = StaticUtils.getBytes(s);
+    encodeInteger(buffer, 0x00, 7, bytes.length);
+    buffer.write(bytes, 0, bytes.length);
+  }
+
+
+
+  /**
+   * Decodes the provided header block.
+   *
+   * @param  block  The header block to decode.
+   *
+   * @return  The decoded headers, with each element holding a name and a
+   *          value.
+   *
+   * @throws  HTTPException  If the header block cannot be decoded.
+   */
+  List<String[]> decode(byte[] block)
+         throws HTTPException
+  {
+    ArrayList<String[]> headers = new ArrayList<String[]>();
+    int[] pos = new int[] { 0 };
+
+    try
+    {
+      while (pos[0] < block.length)
+      {
+        int b = block[pos[0]] & 0xFF;
+        if ((b & 0x80) != 0)
+        {
+          // Indexed header field.
+          int index = decodeInteger(block, pos, 7);
+          String[] entry = getEntry(index);
+          headers.add(new String[] { entry[0], entry[1] });
+        }
+        else if ((b & 0xC0) == 0x40)
+        {
+          // Literal header field with incremental indexing.
+          String[] header = decodeLiteral(block, pos, 6);
+          headers.add(header);
+          addEntry(header);
+        }
+        else if ((b & 0xE0) == 0x20)
+        {
+          // Dynamic table size update.
+          int newSize = decodeInteger(block, pos, 5);
+          if (newSize > DEFAULT_TABLE_SIZE)
+          {
+            throw new HTTPException("Dynamic table size update to " + newSize +
+                                    " exceeds the limit of " +
+                                    DEFAULT_TABLE_SIZE);
+          }
+
+          maxTableSize = newSize;
+          evict(0);
+        }
+        else
+        {
+          // Literal header field without indexing or never indexed.
+          headers.add(decodeLiteral(block, pos, 4));
+        }
+      }
+    }
+    catch (ArrayIndexOutOfBoundsException aioobe)
+    {
+      throw new HTTPException("Truncated HPACK header block", aioobe);
+    }
+
+    return headers;
+  }
+
+
+
+  /**
+   * Decodes a literal header field representation.
+   *
+   * @param  block       The header block containing the field.
+   * @param  pos         A single-element array holding the position of the
+   *                     field, which will be updated to the position after it.
+   * @param  prefixBits  The number of bits in the first byte used for the name
+   *                     index.
+   *
+   * @return  The decoded name and value.
+   *
+   * @throws  HTTPException  If the field cannot be decoded.
+   */
+  private String[] decodeLiteral(byte[] block, int[] pos, int prefixBits)
+          throws HTTPException
+  {
+    int nameIndex = decodeInteger(block, pos, prefixBits);
+
+    String name;
+    if (nameIndex == 0)
+    {
+      name = decodeString(block, pos);
+    }
+    else
+    {
+      name = getEntry(nameIndex)[0];
+    }
+
+    return new String[] { name, decodeString(block, pos) };
+  }
+
+
+
+  /**
+   * Decodes an integer using the HPACK integer representation.
+   *
+   * @param  block       The header block containing the integer.
+   * @param  pos         A single-element array holding the position of the
+   *                     integer, which will be updated to the position after
+   *                     it.
+   * @param  prefixBits  The number of bits in the first byte used for the
+   *                     integer.
+   *
+   * @return  The decoded integer.
+   *
+   * @throws  HTTPException  If the integer is too large.
+   */
+  private static int decodeInteger(byte[] block, int[] pos, int prefixBits)
+          throws HTTPException
+  {
+    int maxPrefix = (1 << prefixBits) - 1;
+    int value     = block[pos[0]++] & maxPrefix;
+    if (value < maxPrefix)
+    {
+      return value;
+    }
+
+    int shift = 0;
+    while (true)
+    {
+      int b = block[pos[0]++] & 0xFF;
+      value += (b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+      {
+        break;
+      }
+
+      shift += 7;
+      if (shift > 21)
+      {
+        throw new HTTPException("HPACK integer value is too large");
+      }
+    }
+
+    return value;
+  }
+
+
+
+  /**
+   * Decodes a string literal, which may be Huffman-coded.
+   *
+   * @param  block  The header block containing the string.
+   * @param  pos    A single-element array holding the position of the string,
+   *                which will be updated to the position after it.
+   *
+   * @return  The decoded string.
+   *
+   * @throws  HTTPException  If the string cannot be decoded.
+   */
+  private static String decodeString(byte[] block, int[] pos)
+          throws HTTPException
+  {
+    boolean huffman = ((block[pos[0]] & 0x80) != 0);
+    int     length  = decodeInteger(block, pos, 7);
+    if ((pos[0] + length) > block.length)
+    {
+      throw new HTTPException("Truncated HPACK string literal");
+    }
+
+    String s;
+    if (huffman)
+    {
+      s = decodeHuffman(block, pos[0], length);
+    }
+    else
+    {
+      s = StaticUtils.toUTF8String(block, pos[0], length);
+    }
+
+    pos[0] += length;
+    return s;
+  }
+
+
+
+  /**
+   * Decodes a Huffman-coded string.
+   *
+   * @param  block   The array containing the encoded string.
+   * @param  offset  The position of the encoded string in the array.
+   * @param  length  The number of bytes in the encoded string.
+   *
+   * @return  The decoded string.
+   *
+   * @throws  HTTPException  If the string is not properly encoded.
+   */
+  private static String decodeHuffman(byte[] block, int offset, int length)
+          throws HTTPException
+  {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(length * 2);
+    int node = 0;
+    int bitsSinceSymbol = 0;
+    for (int i=offset; i < (offset+length); i++)
+    {
+      int b = block[i] & 0xFF;
+      for (int bit=7; bit >= 0; bit--)
+      {
+        node = HUFFMAN_TREE[node + ((b >>> bit) & 0x01)];
+        bitsSinceSymbol++;
+        if (node < 0)
+        {
+          int symbol = ~node;
+          if (symbol == 256)
+          {
+            throw new HTTPException("Huffman-coded string contains the " +
+                                    "end-of-string symbol");
+          }
+
+          buffer.write(symbol);
+          node = 0;
+          bitsSinceSymbol = 0;
+        }
+        else if (node == 0)
+        {
+          throw new HTTPException("Invalid Huffman-coded string");
+        }
+      }
+    }
+
+    if (bitsSinceSymbol > 7)
+    {
+      throw new HTTPException("Huffman-coded string has invalid padding");
+    }
+
+    return StaticUtils.toUTF8String(buffer.toByteArray());
+  }
+
+
+
+  /**
+   * Builds the tree used to decode Huffman-coded strings.
+   *
+   * @return  The tree used to decode Huffman-coded strings.
+   */
+  private static int[] buildHuffmanTree()
+  {
+    // A complete code with 257 leaves has 256 internal nodes.
+    int[] tree     = new int[512];
+    int   nextNode = 2;
+    for (int symbol=0; symbol < HUFFMAN_CODES.length; symbol++)
+    {
+      int code   = HUFFMAN_CODES[symbol];
+      int length = HUFFMAN_CODE_LENGTHS[symbol];
+      int node   = 0;
+      for (int bit=length-1; bit > 0; bit--)
+      {
+        int slot = node + ((code >>> bit) & 0x01);
+        if (tree[slot] == 0)
+        {
+          tree[slot] = nextNode;
+          nextNode += 2;
+        }
+        node = tree[slot];
+      }
+
+      tree[node + (code & 0x01)] = ~symbol;
+    }
+
+    return tree;
+  }
+
+
+
+  /**
+   * Retrieves the entry with the specified index from the static or dynamic
+   * table.
+   *
+   * @param  index  The index of the entry to retrieve.
+   *
+   * @return  The name and value for the specified entry.
+   *
+   * @throws  HTTPException  If there is no entry with the specified index.
+   */
+  private String[] getEntry(int index)
+          throws HTTPException
+  {
+    if (index <= 0)
+    {
+      throw new HTTPException("Invalid HPACK table index " + index);
+    }
+    else if (index <= STATIC_TABLE.length)
+    {
+      return STATIC_TABLE[index-1];
+    }
+
+    int dynamicIndex = index - STATIC_TABLE.length;
+    if (dynamicIndex > dynamicTable.size())
+    {
+      throw new HTTPException("Invalid HPACK table index " + index);
+    }
+
+    return dynamicTable.get(dynamicTable.size() - dynamicIndex);
+  }
+
+
+
+  /**
+   * Adds the provided header to the dynamic table, evicting older entries as
+   * necessary.
+   *
+   * @param  header  The name and value to add.
+   */
+  private void addEntry(String[] header)
+  {
+    int size = entrySize(header);
+    if (size > maxTableSize)
+    {
+      dynamicTable.clear();
+      dynamicTableSize = 0;
+      return;
+    }
+
+    evict(size);
+    dynamicTable.add(header);
+    dynamicTableSize += size;
+  }
+
+
+
+  /**
+   * Evicts the oldest entries from the dynamic table until an entry of the
+   * given size will fit.
+   *
+   * @param  spaceNeeded  The number of octets of space required.
+   */
+  private void evict(int spaceNeeded)
+  {
+    while ((! dynamicTable.isEmpty()) &&
+           ((dynamicTableSize + spaceNeeded) > maxTableSize))
+    {
+      dynamicTableSize -= entrySize(dynamicTable.remove(0));
+    }
+  }
+
+
+
+  /**
+   * Retrieves the size of the provided entry for the purposes of the dynamic
+   * table size limit.
+   *
+   * @param  header  The name and value for the entry.
+   *
+   * @return  The size of the provided entry.
+   */
+  private static int entrySize(String[] header)
+  {
+    return StaticUtils.getBytes(header[0]).length +
+           StaticUtils.getBytes(header[1]).length + 32;
+  }
+}
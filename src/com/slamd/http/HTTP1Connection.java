@@ -0,0 +1,315 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.http;
+
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.LinkedList;
+
+import com.unboundid.util.StaticUtils;
+
+
+
+/**
+ * This class defines a pooled HTTP/1.1 connection that is kept alive across
+ * requests and that may have several requests pipelined on it.  Requests are
+ * written as soon as they are submitted, and responses are read in the same
+ * order by the threads that sent the corresponding requests, each waiting
+ * until all responses ahead of its own have been read.  Because each response
+ * is read by the client that sent the request, its stat trackers and cookies
+ * are updated exactly as they would be for a dedicated connection, except that
+ * the time spent waiting for earlier responses is included in the header
+ * time.
+ */
+final class HTTP1Connection
+      extends HTTPPooledConnection
+{
+  // The requests that have been written but whose responses have not yet been
+  // read, in the order in which they were written.  This also serves as the
+  // lock for reading responses.
+  private final LinkedList<Object> pendingResponses;
+
+  // The input stream used to read responses.
+  private final HTTPPushbackInputStream inputStream;
+
+  // The lock used to serialize writes to the connection.
+  private final Object writeLock;
+
+  // The output stream used to write requests.
+  private final OutputStream outputStream;
+
+  // The socket for this connection.
+  private final Socket socket;
+
+  // Indicates whether this connection has failed and any pending requests
+  // should be abandoned.
+  private volatile boolean failed;
+
+  // Indicates whether the server has asked for this connection to be closed,
+  // so that no more requests should be written to it.
+  private volatile boolean closing;
+
+
+
+  /**
+   * Creates a new HTTP/1.1 connection using the provided socket.
+   *
+   * @param  serverKey  The key that identifies the server to which the socket
+   *                    is connected.
+   * @param  socket     The socket to use for the connection.
+   *
+   * @throws  IOException  If the streams for the socket cannot be obtained.
+   */
+  HTTP1Connection(String serverKey, Socket socket)
+       throws IOException
+  {
+    super(serverKey);
+
+    this.socket      = socket;
+    inputStream      = new HTTPPushbackInputStream(socket.getInputStream());
+    outputStream     = socket.getOutputStream();
+    writeLock        = new Object();
+    pendingResponses = new LinkedList<Object>();
+    failed           = false;
+    closing          = false;
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  int getServerConcurrencyLimit()
+  {
+    return Integer.MAX_VALUE;
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  boolean isUsable()
+  {
+    return ((! failed) && (! closing) && (! socket.isClosed()));
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  HTTPResponse sendRequest(HTTPClient client, HTTPRequest request,
+                           boolean keepStats)
+           throws HTTPException
+  {
+    Object ticket = new Object();
+    String requestStr = request.generateHTTPRequest(client, true);
+
+    synchronized (writeLock)
+    {
+      if (! isUsable())
+      {
+        throw new RequestNotProcessedException("The pooled connection to " +
+                                               serverKey +
+                                               " is no longer available");
+      }
+
+      try
+      {
+        outputStream.write(StaticUtils.getBytes(requestStr));
+        outputStream.flush();
+      }
+      catch (IOException ioe)
+      {
+        fail();
+        throw new RequestNotProcessedException("Unable to send request to " +
+                                               "the server " + serverKey +
+                                               " -- " + ioe, ioe);
+      }
+
+      synchronized (pendingResponses)
+      {
+        pendingResponses.add(ticket);
+      }
+    }
+
+
+    // Wait until the responses to all earlier requests have been read.
+    synchronized (pendingResponses)
+    {
+      while (pendingResponses.getFirst() != ticket)
+      {
+        if (failed)
+        {
+          pendingResponses.remove(ticket);
+          throw abandoned(request);
+        }
+
+        try
+        {
+          pendingResponses.wait();
+        }
+        catch (InterruptedException ie)
+        {
+          fail();
+          pendingResponses.remove(ticket);
+          throw new HTTPException("Interrupted while waiting for the " +
+                                  "response from " + serverKey, ie);
+        }
+      }
+    }
+
+
+    try
+    {
+      if (failed)
+      {
+        throw abandoned(request);
+      }
+
+      // If the server closed the connection without starting the response,
+      // then it did not respond to this request.
+      int firstByte;
+      try
+      {
+        firstByte = inputStream.read();
+      }
+      catch (IOException ioe)
+      {
+        fail();
+        throw new HTTPException("Unable to read the response from the " +
+                                "server " + serverKey + " -- " + ioe, ioe);
+      }
+
+      if (firstByte < 0)
+      {
+        fail();
+        throw abandoned(request);
+      }
+
+      inputStream.unread(new byte[] { (byte) firstByte }, 0, 1);
+
+      HTTPResponse response;
+      try
+      {
+        response = client.readResponse(request.getBaseURL(), inputStream,
+                                       keepStats);
+      }
+      catch (Exception e)
+      {
+        fail();
+        throw new HTTPException("Unable to read or parse the response from " +
+                                "the server " + serverKey + " -- " + e, e);
+      }
+
+      // HTTP/1.1 connections are persistent unless the server says otherwise,
+      // while earlier versions are closed unless the server says otherwise.
+      String connStr = response.getHeader("connection");
+      if (connStr == null)
+      {
+        if (! "HTTP/1.1".equalsIgnoreCase(response.getProtocolVersion()))
+        {
+          closing = true;
+        }
+      }
+      else if (! connStr.equalsIgnoreCase("keep-alive"))
+      {
+        closing = true;
+      }
+
+      return response;
+    }
+    finally
+    {
+      synchronized (pendingResponses)
+      {
+        pendingResponses.remove(ticket);
+        if (closing && pendingResponses.isEmpty())
+        {
+          close();
+        }
+
+        pendingResponses.notifyAll();
+      }
+    }
+  }
+
+
+
+  /**
+   * Creates an exception for a request whose response will never be read
+   * because the connection failed or was closed before the response started.
+   * A pipelined GET request may safely be retried in this case, but other
+   * requests will not be because the server may have processed them.
+   *
+   * @param  request  The request that was abandoned.
+   *
+   * @return  The exception to throw for the request.
+   */
+  private HTTPException abandoned(HTTPRequest request)
+  {
+    String message = "The pooled connection to " + serverKey +
+                     " was closed before the response was received";
+    if (request.isGet())
+    {
+      return new RequestNotProcessedException(message);
+    }
+    else
+    {
+      return new HTTPException(message);
+    }
+  }
+
+
+
+  /**
+   * Marks this connection as failed and closes it so that all pending requests
+   * will be abandoned.
+   */
+  private void fail()
+  {
+    failed = true;
+    close();
+
+    synchronized (pendingResponses)
+    {
+      pendingResponses.notifyAll();
+    }
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  void close()
+  {
+    closing = true;
+
+    try
+    {
+      socket.close();
+    } catch (Exception e) {}
+  }
+}
@@ -0,0 +1,1381 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.http;
+
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.unboundid.util.StaticUtils;
+
+
+
+/**
+ * This class defines a pooled HTTP/2 connection on which any number of
+ * requests may be multiplexed, subject to the limit on concurrent streams
+ * advertised by the server.  A single reader thread reads all frames from the
+ * server and dispatches the headers and data for each stream to the thread
+ * that sent the corresponding request, which then assembles the response and
+ * updates the stat trackers for its own client.  Flow control windows are
+ * made large enough that the server is rarely blocked, and are replenished as
+ * data is received.  Server push is disabled.
+ */
+final class HTTP2Connection
+      extends HTTPPooledConnection
+      implements Runnable
+{
+  /**
+   * The connection preface that the client must send before any frames.
+   */
+  private static final byte[] CONNECTION_PREFACE =
+       StaticUtils.getBytes("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n");
+
+
+
+  /**
+   * The frame type for DATA frames.
+   */
+  private static final int FRAME_TYPE_DATA = 0x0;
+
+
+
+  /**
+   * The frame type for HEADERS frames.
+   */
+  private static final int FRAME_TYPE_HEADERS = 0x1;
+
+
+
+  /**
+   * The frame type for RST_STREAM frames.
+   */
+  private static final int FRAME_TYPE_RST_STREAM = 0x3;
+
+
+
+  /**
+   * The frame type for SETTINGS frames.
+   */
+  private static final int FRAME_TYPE_SETTINGS = 0x4;
+
+
+
+  /**
+   * The frame type for PUSH_PROMISE frames.
+   */
+  private static final int FRAME_TYPE_PUSH_PROMISE = 0x5;
+
+
+
+  /**
+   * The frame type for PING frames.
+   */
+  private static final int FRAME_TYPE_PING = 0x6;
+
+
+
+  /**
+   * The frame type for GOAWAY frames.
+   */
+  private static final int FRAME_TYPE_GOAWAY = 0x7;
+
+
+
+  /**
+   * The frame type for WINDOW_UPDATE frames.
+   */
+  private static final int FRAME_TYPE_WINDOW_UPDATE = 0x8;
+
+
+
+  /**
+   * The frame type for CONTINUATION frames.
+   */
+  private static final int FRAME_TYPE_CONTINUATION = 0x9;
+
+
+
+  /**
+   * The flag that indicates the end of a stream, or an acknowledgement for
+   * SETTINGS and PING frames.
+   */
+  private static final int FLAG_END_STREAM = 0x01;
+
+
+
+  /**
+   * The flag that indicates the end of a header block.
+   */
+  private static final int FLAG_END_HEADERS = 0x04;
+
+
+
+  /**
+   * The flag that indicates that a frame is padded.
+   */
+  private static final int FLAG_PADDED = 0x08;
+
+
+
+  /**
+   * The flag that indicates that a HEADERS frame includes priority
+   * information.
+   */
+  private static final int FLAG_PRIORITY = 0x20;
+
+
+
+  /**
+   * The identifier for the setting that disables server push.
+   */
+  private static final int SETTING_ENABLE_PUSH = 0x2;
+
+
+
+  /**
+   * The identifier for the setting that limits the number of concurrent
+   * streams.
+   */
+  private static final int SETTING_MAX_CONCURRENT_STREAMS = 0x3;
+
+
+
+  /**
+   * The identifier for the setting that specifies the initial stream flow
+   * control window size.
+   */
+  private static final int SETTING_INITIAL_WINDOW_SIZE = 0x4;
+
+
+
+  /**
+   * The identifier for the setting that specifies the maximum frame size.
+   */
+  private static final int SETTING_MAX_FRAME_SIZE = 0x5;
+
+
+
+  /**
+   * The error code used when cancelling a stream.
+   */
+  private static final int ERROR_CANCEL = 0x8;
+
+
+
+  /**
+   * The default flow control window size defined by the specification.
+   */
+  private static final int DEFAULT_WINDOW_SIZE = 65535;
+
+
+
+  /**
+   * The flow control window size that will be advertised for the connection
+   * and for each stream.
+   */
+  private static final int RECEIVE_WINDOW_SIZE = 16 * 1024 * 1024;
+
+
+
+  /**
+   * The default maximum frame size defined by the specification.
+   */
+  private static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+
+
+
+  // The streams that are currently open, mapped from their identifiers.
+  private final ConcurrentHashMap<Integer,Stream> streams;
+
+  // The stream used to read frames from the server.
+  private final DataInputStream inputStream;
+
+  // The codec used to decode the header blocks received from the server.
+  private final HPACKCodec hpackCodec;
+
+  // The lock used to serialize writes to the connection and the allocation of
+  // stream identifiers.
+  private final Object writeLock;
+
+  // The lock used to wait for the send flow control windows to open.
+  private final Object flowLock;
+
+  // The output stream used to write frames.
+  private final OutputStream outputStream;
+
+  // The socket for this connection.
+  private final Socket socket;
+
+  // The maximum length of time in milliseconds to wait for each frame of a
+  // response, or zero to wait indefinitely.
+  private final int readTimeout;
+
+  // The reason that the connection failed, if it has.
+  private volatile String failureReason;
+
+  // Indicates whether no new streams may be created on this connection, either
+  // because the server has sent a GOAWAY frame or because the stream
+  // identifiers have been exhausted.
+  private volatile boolean draining;
+
+  // The maximum number of concurrent streams allowed by the server.
+  private volatile int maxConcurrentStreams;
+
+  // The maximum frame size allowed by the server.
+  private volatile int maxFrameSize;
+
+  // The amount of data that may be sent on the connection before the server
+  // opens the window further.  This is protected by the flow lock.
+  private int connectionSendWindow;
+
+  // The initial send window for new streams.  This is protected by the flow
+  // lock.
+  private int initialStreamSendWindow;
+
+  // The amount of data received on the connection that has not yet been
+  // acknowledged with a WINDOW_UPDATE frame.  This is only accessed by the
+  // reader thread.
+  private int unacknowledgedBytes;
+
+  // The identifier to use for the next stream.
+  private int nextStreamID;
+
+
+
+  /**
+   * Creates a new HTTP/2 connection using the provided socket, which must
+   * already be connected and, if appropriate, have negotiated HTTP/2 with the
+   * server.  The connection preface will be sent and a thread will be started
+   * to read frames from the server.
+   *
+   * @param  serverKey  The key that identifies the server to which the socket
+   *                    is connected.
+   * @param  socket     The socket to use for the connection.
+   *
+   * @throws  IOException  If a problem occurs while sending the connection
+   *                       preface.
+   */
+  HTTP2Connection(String serverKey, Socket socket)
+       throws IOException
+  {
+    super(serverKey);
+
+    this.socket             = socket;
+    inputStream             = new DataInputStream(socket.getInputStream());
+    outputStream            = socket.getOutputStream();
+    streams                 = new ConcurrentHashMap<Integer,Stream>();
+    hpackCodec              = new HPACKCodec();
+    writeLock               = new Object();
+    flowLock                = new Object();
+    failureReason           = null;
+    draining                = false;
+    maxConcurrentStreams    = Integer.MAX_VALUE;
+    maxFrameSize            = DEFAULT_MAX_FRAME_SIZE;
+    connectionSendWindow    = DEFAULT_WINDOW_SIZE;
+    initialStreamSendWindow = DEFAULT_WINDOW_SIZE;
+    unacknowledgedBytes     = 0;
+    nextStreamID            = 1;
+
+    // The reader thread will block waiting for frames, so the socket timeout
+    // is instead applied by the threads waiting for responses.
+    readTimeout = socket.getSoTimeout();
+    socket.setSoTimeout(0);
+
+    synchronized (writeLock)
+    {
+      outputStream.write(CONNECTION_PREFACE);
+
+      byte[] settings = new byte[12];
+      encodeSetting(settings, 0, SETTING_ENABLE_PUSH, 0);
+      encodeSetting(settings, 6, SETTING_INITIAL_WINDOW_SIZE,
+                    RECEIVE_WINDOW_SIZE);
+      writeFrame(FRAME_TYPE_SETTINGS, 0, 0, settings, 0, settings.length);
+      writeWindowUpdate(0, (RECEIVE_WINDOW_SIZE - DEFAULT_WINDOW_SIZE));
+      outputStream.flush();
+    }
+
+    Thread readerThread = new Thread(this, "HTTP/2 Reader for " + serverKey);
+    readerThread.setDaemon(true);
+    readerThread.start();
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  int getServerConcurrencyLimit()
+  {
+    return maxConcurrentStreams;
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  boolean isUsable()
+  {
+    return ((failureReason == null) && (! draining));
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  HTTPResponse sendRequest(HTTPClient client, HTTPRequest request,
+                           boolean keepStats)
+           throws HTTPException
+  {
+    byte[]  headerBlock =
+         HPACKCodec.encode(request.generateHTTP2Headers(client));
+    byte[]  body        = request.getBodyBytes();
+    boolean hasBody     = ((body != null) && (body.length > 0));
+
+    Stream stream;
+    synchronized (writeLock)
+    {
+      if (! isUsable())
+      {
+        throw new RequestNotProcessedException("The pooled connection to " +
+                                               serverKey +
+                                               " is no longer available");
+      }
+
+      synchronized (flowLock)
+      {
+        stream = new Stream(nextStreamID, initialStreamSendWindow);
+      }
+
+      // Once the stream identifiers have been exhausted, no new streams may be
+      // created on this connection.
+      nextStreamID += 2;
+      if (nextStreamID < 0)
+      {
+        draining = true;
+      }
+
+      streams.put(stream.streamID, stream);
+      try
+      {
+        writeHeaderBlock(stream.streamID, headerBlock, (! hasBody));
+        outputStream.flush();
+      }
+      catch (IOException ioe)
+      {
+        streams.remove(stream.streamID);
+        fail("Unable to send request -- " + ioe);
+        throw new RequestNotProcessedException("Unable to send request to " +
+                                               "the server " + serverKey +
+                                               " -- " + ioe, ioe);
+      }
+    }
+
+
+    try
+    {
+      if (hasBody)
+      {
+        writeBody(stream, body);
+      }
+
+      return readResponse(client, request.getBaseURL(), stream, keepStats);
+    }
+    finally
+    {
+      streams.remove(stream.streamID);
+      if (! stream.complete)
+      {
+        resetStream(stream.streamID);
+      }
+    }
+  }
+
+
+
+  /**
+   * Writes the provided request body to the specified stream, waiting for the
+   * flow control windows to open as necessary.
+   *
+   * @param  stream  The stream to which the body should be written.
+   * @param  body    The request body to write.
+   *
+   * @throws  HTTPException  If a problem occurs while writing the body.
+   */
+  private void writeBody(Stream stream, byte[] body)
+          throws HTTPException
+  {
+    int offset = 0;
+    while (offset < body.length)
+    {
+      int length;
+      synchronized (flowLock)
+      {
+        while (true)
+        {
+          if (failureReason != null)
+          {
+            throw new HTTPException("The pooled connection to " + serverKey +
+                                    " failed -- " + failureReason);
+          }
+
+          int window = Math.min(connectionSendWindow, stream.sendWindow);
+          if (window > 0)
+          {
+            length = Math.min(Math.min(window, maxFrameSize),
+                              (body.length - offset));
+            connectionSendWindow -= length;
+            stream.sendWindow    -= length;
+            break;
+          }
+
+          long startTime = System.currentTimeMillis();
+          try
+          {
+            flowLock.wait(readTimeout);
+          }
+          catch (InterruptedException ie)
+          {
+            throw new HTTPException("Interrupted while waiting to send the " +
+                                    "request body to " + serverKey, ie);
+          }
+
+          if ((readTimeout > 0) &&
+              ((System.currentTimeMillis() - startTime) >= readTimeout))
+          {
+            throw new HTTPException("Timed out waiting for the server " +
+                                    serverKey + " to accept the request " +
+                                    "body");
+          }
+        }
+      }
+
+      synchronized (writeLock)
+      {
+        try
+        {
+          int flags = (((offset + length) == body.length)
+                       ? FLAG_END_STREAM
+                       : 0);
+          writeFrame(FRAME_TYPE_DATA, flags, stream.streamID, body, offset,
+                     length);
+          outputStream.flush();
+        }
+        catch (IOException ioe)
+        {
+          fail("Unable to send request body -- " + ioe);
+          throw new HTTPException("Unable to send the request body to the " +
+                                  "server " + serverKey + " -- " + ioe, ioe);
+        }
+      }
+
+      offset += length;
+    }
+  }
+
+
+
+  /**
+   * Reads the response for the specified stream from the events dispatched by
+   * the reader thread.
+   *
+   * @param  client      The client on whose behalf the request was sent.
+   * @param  requestURL  The URL used in the request.
+   * @param  stream      The stream on which the request was sent.
+   * @param  keepStats   Indicates whether to update the stat trackers.
+   *
+   * @return  The response read from the server.
+   *
+   * @throws  HTTPException  If a problem occurs while reading the response.
+   */
+  private HTTPResponse readResponse(HTTPClient client, URL requestURL,
+                                    Stream stream, boolean keepStats)
+          throws HTTPException
+  {
+    HTTPResponse          response   = null;
+    ByteArrayOutputStream content    = null;
+    boolean               discard    = false;
+    long                  totalBytes = 0L;
+
+    while (true)
+    {
+      StreamEvent event = nextEvent(stream);
+      if (event.error != null)
+      {
+        throw event.error;
+      }
+
+      if (event.headers != null)
+      {
+        if (response == null)
+        {
+          int statusCode = getStatusCode(event.headers);
+          if ((statusCode >= 100) && (statusCode < 200))
+          {
+            // This is an informational response, so wait for the real one.
+            continue;
+          }
+
+          client.firstByteReceived(keepStats);
+
+          response = new HTTPResponse(requestURL, statusCode, "HTTP/2", "");
+          for (String[] header : event.headers)
+          {
+            if (! header[0].startsWith(":"))
+            {
+              response.addHeader(header[0], header[1]);
+            }
+          }
+
+          client.headerReceived(keepStats);
+
+          discard = client.shouldDiscardContent(response);
+          if (discard)
+          {
+            client.startDiscarding();
+          }
+          else
+          {
+            content = new ByteArrayOutputStream();
+          }
+        }
+
+        // Otherwise, this is a trailer, which will be ignored.
+      }
+      else if (event.data != null)
+      {
+        if (response == null)
+        {
+          throw new HTTPException("Received response data from " + serverKey +
+                                  " before the response header");
+        }
+
+        if (discard)
+        {
+          client.discard(event.data, 0, event.data.length);
+        }
+        else
+        {
+          content.write(event.data, 0, event.data.length);
+        }
+
+        totalBytes += event.data.length;
+      }
+
+      if (event.endStream)
+      {
+        break;
+      }
+    }
+
+    stream.complete = true;
+
+    if (response == null)
+    {
+      throw new HTTPException("The server " + serverKey + " ended the " +
+                              "stream without sending a response");
+    }
+
+
+    int statusCode = response.getStatusCode();
+    try
+    {
+      if ((statusCode == 204) || (statusCode == 304))
+      {
+        response.setResponseData(null);
+      }
+      else if (discard)
+      {
+        client.finishDiscarding(response, totalBytes);
+      }
+      else
+      {
+        response.setResponseData(content.toByteArray());
+      }
+    }
+    catch (IOException ioe)
+    {
+      throw new HTTPException("Unable to decode the response data from " +
+                              serverKey + " -- " + ioe, ioe);
+    }
+
+    client.responseComplete(requestURL, response, keepStats);
+    return response;
+  }
+
+
+
+  /**
+   * Retrieves the next event for the specified stream, waiting up to the
+   * socket timeout for it to arrive.
+   *
+   * @param  stream  The stream for which to retrieve the next event.
+   *
+   * @return  The next event for the specified stream.
+   *
+   * @throws  HTTPException  If no event arrives before the timeout or the
+   *                         thread is interrupted.
+   */
+  private StreamEvent nextEvent(Stream stream)
+          throws HTTPException
+  {
+    try
+    {
+      StreamEvent event;
+      if (readTimeout > 0)
+      {
+        event = stream.events.poll(readTimeout, TimeUnit.MILLISECONDS);
+      }
+      else
+      {
+        event = stream.events.take();
+      }
+
+      if (event == null)
+      {
+        throw new HTTPException("Timed out waiting for the response from " +
+                                serverKey);
+      }
+
+      return event;
+    }
+    catch (InterruptedException ie)
+    {
+      throw new HTTPException("Interrupted while waiting for the response " +
+                              "from " + serverKey, ie);
+    }
+  }
+
+
+
+  /**
+   * Retrieves the status code from the provided response headers.
+   *
+   * @param  headers  The headers from which to retrieve the status code.
+   *
+   * @return  The status code from the provided response headers.
+   *
+   * @throws  HTTPException  If the headers do not include a valid status code.
+   */
+  private int getStatusCode(List<String[]> headers)
+          throws HTTPException
+  {
+    for (String[] header : headers)
+    {
+      if (header[0].equals(":status"))
+      {
+        try
+        {
+          return Integer.parseInt(header[1]);
+        }
+        catch (NumberFormatException nfe)
+        {
+          throw new HTTPException("Unable to parse response header -- could " +
+                                  "not interpret status code \"" + header[1] +
+                                  "\" as an integer");
+        }
+      }
+    }
+
+    throw new HTTPException("Unable to parse response header -- no status " +
+                            "code was provided");
+  }
+
+
+
+  /**
+   * Reads and processes frames from the server until the connection is closed
+   * or fails.
+   */
+  public void run()
+  {
+    // The header block currently being assembled from HEADERS and CONTINUATION
+    // frames, and the stream with which it is associated.
+    ByteArrayOutputStream headerBlock       = new ByteArrayOutputStream();
+    int                   headerBlockStream = 0;
+    boolean               headerBlockEnd    = false;
+
+    byte[] frameHeader = new byte[9];
+    try
+    {
+      while (true)
+      {
+        inputStream.readFully(frameHeader);
+        int length   = ((frameHeader[0] & 0xFF) << 16) |
+                       ((frameHeader[1] & 0xFF) << 8) |
+                       (frameHeader[2] & 0xFF);
+        int type     = frameHeader[3] & 0xFF;
+        int flags    = frameHeader[4] & 0xFF;
+        int streamID = decodeInt(frameHeader, 5) & 0x7FFFFFFF;
+
+        byte[] payload = new byte[length];
+        inputStream.readFully(payload);
+
+        if ((headerBlockStream != 0) &&
+            ((type != FRAME_TYPE_CONTINUATION) ||
+             (streamID != headerBlockStream)))
+        {
+          fail("Expected a CONTINUATION frame for stream " + headerBlockStream);
+          return;
+        }
+
+        switch (type)
+        {
+          case FRAME_TYPE_DATA:
+            handleData(streamID, flags, payload);
+            break;
+
+          case FRAME_TYPE_HEADERS:
+            int offset     = 0;
+            int padLength  = 0;
+            if ((flags & FLAG_PADDED) != 0)
+            {
+              padLength = payload[0] & 0xFF;
+              offset++;
+            }
+            if ((flags & FLAG_PRIORITY) != 0)
+            {
+              offset += 5;
+            }
+
+            headerBlock.reset();
+            headerBlock.write(payload, offset, (length - offset - padLength));
+            headerBlockEnd = ((flags & FLAG_END_STREAM) != 0);
+            if ((flags & FLAG_END_HEADERS) == 0)
+            {
+              headerBlockStream = streamID;
+            }
+            else
+            {
+              handleHeaders(streamID, headerBlock.toByteArray(),
+                            headerBlockEnd);
+            }
+            break;
+
+          case FRAME_TYPE_CONTINUATION:
+            headerBlock.write(payload, 0, length);
+            if ((flags & FLAG_END_HEADERS) != 0)
+            {
+              headerBlockStream = 0;
+              handleHeaders(streamID, headerBlock.toByteArray(),
+                            headerBlockEnd);
+            }
+            break;
+
+          case FRAME_TYPE_RST_STREAM:
+            Stream stream = streams.get(streamID);
+            if (stream != null)
+            {
+              stream.events.add(new StreamEvent(new HTTPException(
+                   "The server " + serverKey + " reset the stream with " +
+                   "error code " + decodeInt(payload, 0))));
+            }
+            break;
+
+          case FRAME_TYPE_SETTINGS:
+            if ((flags & FLAG_END_STREAM) == 0)
+            {
+              handleSettings(payload);
+            }
+            break;
+
+          case FRAME_TYPE_PUSH_PROMISE:
+            fail("Received a PUSH_PROMISE frame even though server push is " +
+                 "disabled");
+            return;
+
+          case FRAME_TYPE_PING:
+            if ((flags & FLAG_END_STREAM) == 0)
+            {
+              synchronized (writeLock)
+              {
+                writeFrame(FRAME_TYPE_PING, FLAG_END_STREAM, 0, payload, 0,
+                           length);
+                outputStream.flush();
+              }
+            }
+            break;
+
+          case FRAME_TYPE_GOAWAY:
+            handleGoAway(payload);
+            break;
+
+          case FRAME_TYPE_WINDOW_UPDATE:
+            handleWindowUpdate(streamID, payload);
+            break;
+
+          default:
+            // PRIORITY frames and unknown frame types are ignored.
+            break;
+        }
+      }
+    }
+    catch (Exception e)
+    {
+      fail("Unable to read from the server -- " + e);
+    }
+  }
+
+
+
+  /**
+   * Handles a complete header block received from the server.
+   *
+   * @param  streamID   The stream with which the header block is associated.
+   * @param  block      The encoded header block.
+   * @param  endStream  Indicates whether the header block ends the stream.
+   *
+   * @throws  HTTPException  If the header block cannot be decoded.
+   */
+  private void handleHeaders(int streamID, byte[] block, boolean endStream)
+          throws HTTPException
+  {
+    // The header block must be decoded even if the stream has been abandoned
+    // so that the decoder state remains consistent with the server.
+    List<String[]> headers = hpackCodec.decode(block);
+
+    Stream stream = streams.get(streamID);
+    if (stream != null)
+    {
+      stream.events.add(new StreamEvent(headers, null, endStream));
+    }
+  }
+
+
+
+  /**
+   * Handles a DATA frame received from the server, replenishing the flow
+   * control windows as necessary.
+   *
+   * @param  streamID  The stream with which the frame is associated.
+   * @param  flags     The flags for the frame.
+   * @param  payload   The payload of the frame.
+   *
+   * @throws  IOException  If a problem occurs while sending a WINDOW_UPDATE
+   *                       frame.
+   */
+  private void handleData(int streamID, int flags, byte[] payload)
+          throws IOException
+  {
+    byte[] data = payload;
+    if ((flags & FLAG_PADDED) != 0)
+    {
+      int padLength = payload[0] & 0xFF;
+      data = new byte[payload.length - padLength - 1];
+      System.arraycopy(payload, 1, data, 0, data.length);
+    }
+
+    boolean endStream = ((flags & FLAG_END_STREAM) != 0);
+    Stream  stream    = streams.get(streamID);
+    if (stream != null)
+    {
+      stream.events.add(new StreamEvent(null, data, endStream));
+    }
+
+    if (payload.length == 0)
+    {
+      return;
+    }
+
+    unacknowledgedBytes += payload.length;
+    int connectionIncrement = 0;
+    if (unacknowledgedBytes >= (RECEIVE_WINDOW_SIZE / 2))
+    {
+      connectionIncrement = unacknowledgedBytes;
+      unacknowledgedBytes = 0;
+    }
+
+    int streamIncrement = 0;
+    if ((stream != null) && (! endStream))
+    {
+      stream.unacknowledgedBytes += payload.length;
+      if (stream.unacknowledgedBytes >= (RECEIVE_WINDOW_SIZE / 2))
+      {
+        streamIncrement            = stream.unacknowledgedBytes;
+        stream.unacknowledgedBytes = 0;
+      }
+    }
+
+    if ((connectionIncrement > 0) || (streamIncrement > 0))
+    {
+      synchronized (writeLock)
+      {
+        if (connectionIncrement > 0)
+        {
+          writeWindowUpdate(0, connectionIncrement);
+        }
+
+        if (streamIncrement > 0)
+        {
+          writeWindowUpdate(streamID, streamIncrement);
+        }
+
+        outputStream.flush();
+      }
+    }
+  }
+
+
+
+  /**
+   * Handles a SETTINGS frame received from the server and acknowledges it.
+   *
+   * @param  payload  The payload of the frame.
+   *
+   * @throws  IOException  If a problem occurs while sending the
+   *                       acknowledgement.
+   */
+  private void handleSettings(byte[] payload)
+          throws IOException
+  {
+    for (int i=0; (i+6) <= payload.length; i += 6)
+    {
+      int identifier = ((payload[i] & 0xFF) << 8) | (payload[i+1] & 0xFF);
+      int value      = decodeInt(payload, (i+2));
+      switch (identifier)
+      {
+        case SETTING_MAX_CONCURRENT_STREAMS:
+          maxConcurrentStreams = Math.max(1, value);
+          break;
+
+        case SETTING_INITIAL_WINDOW_SIZE:
+          synchronized (flowLock)
+          {
+            int delta = value - initialStreamSendWindow;
+            initialStreamSendWindow = value;
+
+            Iterator<Stream> iterator = streams.values().iterator();
+            while (iterator.hasNext())
+            {
+              iterator.next().sendWindow += delta;
+            }
+
+            flowLock.notifyAll();
+          }
+          break;
+
+        case SETTING_MAX_FRAME_SIZE:
+          maxFrameSize = value;
+          break;
+
+        default:
+          // The header table size can be ignored because the encoder never
+          // uses the dynamic table, and other settings do not apply.
+          break;
+      }
+    }
+
+    synchronized (writeLock)
+    {
+      writeFrame(FRAME_TYPE_SETTINGS, FLAG_END_STREAM, 0, new byte[0], 0, 0);
+      outputStream.flush();
+    }
+  }
+
+
+
+  /**
+   * Handles a GOAWAY frame received from the server.  No new streams will be
+   * created on this connection, and any streams that the server did not
+   * process will fail.
+   *
+   * @param  payload  The payload of the frame.
+   */
+  private void handleGoAway(byte[] payload)
+  {
+    int lastStreamID = decodeInt(payload, 0) & 0x7FFFFFFF;
+    int errorCode    = decodeInt(payload, 4);
+
+    // Hold the write lock so that no new stream can be created without either
+    // seeing that the connection is draining or being failed here.
+    synchronized (writeLock)
+    {
+      draining = true;
+
+      Iterator<Stream> iterator = streams.values().iterator();
+      while (iterator.hasNext())
+      {
+        Stream stream = iterator.next();
+        if (stream.streamID > lastStreamID)
+        {
+          stream.events.add(new StreamEvent(new RequestNotProcessedException(
+               "The server " + serverKey + " is closing the connection " +
+               "(error code " + errorCode + ") and did not process the " +
+               "request")));
+        }
+      }
+    }
+  }
+
+
+
+  /**
+   * Handles a WINDOW_UPDATE frame received from the server.
+   *
+   * @param  streamID  The stream with which the frame is associated, or zero
+   *                   if it applies to the connection.
+   * @param  payload   The payload of the frame.
+   */
+  private void handleWindowUpdate(int streamID, byte[] payload)
+  {
+    int increment = decodeInt(payload, 0) & 0x7FFFFFFF;
+    synchronized (flowLock)
+    {
+      if (streamID == 0)
+      {
+        connectionSendWindow += increment;
+      }
+      else
+      {
+        Stream stream = streams.get(streamID);
+        if (stream != null)
+        {
+          stream.sendWindow += increment;
+        }
+      }
+
+      flowLock.notifyAll();
+    }
+  }
+
+
+
+  /**
+   * Writes the provided header block as a HEADERS frame followed by as many
+   * CONTINUATION frames as are needed.  The caller must hold the write lock.
+   *
+   * @param  streamID   The stream on which to write the header block.
+   * @param  block      The encoded header block.
+   * @param  endStream  Indicates whether the header block ends the stream.
+   *
+   * @throws  IOException  If a problem occurs while writing the frames.
+   */
+  private void writeHeaderBlock(int streamID, byte[] block, boolean endStream)
+          throws IOException
+  {
+    int length = Math.min(block.length, maxFrameSize);
+    int flags  = (endStream ? FLAG_END_STREAM : 0);
+    if (length == block.length)
+    {
+      flags |= FLAG_END_HEADERS;
+    }
+
+    writeFrame(FRAME_TYPE_HEADERS, flags, streamID, block, 0, length);
+
+    int offset = length;
+    while (offset < block.length)
+    {
+      length = Math.min((block.length - offset), maxFrameSize);
+      flags  = (((offset + length) == block.length) ? FLAG_END_HEADERS : 0);
+      writeFrame(FRAME_TYPE_CONTINUATION, flags, streamID, block, offset,
+                 length);
+      offset += length;
+    }
+  }
+
+
+
+  /**
+   * Writes a WINDOW_UPDATE frame.  The caller must hold the write lock.
+   *
+   * @param  streamID   The stream for which to update the window, or zero to
+   *                    update the window for the connection.
+   * @param  increment  The number of bytes by which to increase the window.
+   *
+   * @throws  IOException  If a problem occurs while writing the frame.
+   */
+  private void writeWindowUpdate(int streamID, int increment)
+          throws IOException
+  {
+    byte[] payload = new byte[4];
+    encodeInt(payload, 0, increment);
+    writeFrame(FRAME_TYPE_WINDOW_UPDATE, 0, streamID, payload, 0, 4);
+  }
+
+
+
+  /**
+   * Writes a frame to the server.  The caller must hold the write lock.
+   *
+   * @param  type      The type of frame to write.
+   * @param  flags     The flags for the frame.
+   * @param  streamID  The stream with which the frame is associated.
+   * @param  data      The array containing the payload for the frame.
+   * @param  offset    The position in the array at which the payload starts.
+   * @param  length    The number of bytes in the payload.
+   *
+   * @throws  IOException  If a problem occurs while writing the frame.
+   */
+  private void writeFrame(int type, int flags, int streamID, byte[] data,
+                          int offset, int length)
+          throws IOException
+  {
+    byte[] frame = new byte[9 + length];
+    frame[0] = (byte) ((length >>> 16) & 0xFF);
+    frame[1] = (byte) ((length >>> 8) & 0xFF);
+    frame[2] = (byte) (length & 0xFF);
+    frame[3] = (byte) type;
+    frame[4] = (byte) flags;
+    encodeInt(frame, 5, streamID);
+    System.arraycopy(data, offset, frame, 9, length);
+
+    outputStream.write(frame);
+  }
+
+
+
+  /**
+   * Sends a RST_STREAM frame to cancel the specified stream, if the connection
+   * is still available.
+   *
+   * @param  streamID  The stream to cancel.
+   */
+  private void resetStream(int streamID)
+  {
+    if (failureReason != null)
+    {
+      return;
+    }
+
+    byte[] payload = new byte[4];
+    encodeInt(payload, 0, ERROR_CANCEL);
+
+    synchronized (writeLock)
+    {
+      try
+      {
+        writeFrame(FRAME_TYPE_RST_STREAM, 0, streamID, payload, 0, 4);
+        outputStream.flush();
+      }
+      catch (IOException ioe)
+      {
+        fail("Unable to reset stream -- " + ioe);
+      }
+    }
+  }
+
+
+
+  /**
+   * Marks this connection as failed, closes it, and fails all outstanding
+   * requests.
+   *
+   * @param  reason  The reason that the connection failed.
+   */
+  private void fail(String reason)
+  {
+    synchronized (flowLock)
+    {
+      if (failureReason != null)
+      {
+        return;
+      }
+
+      failureReason = reason;
+      flowLock.notifyAll();
+    }
+
+    try
+    {
+      socket.close();
+    } catch (Exception e) {}
+
+    Iterator<Stream> iterator = streams.values().iterator();
+    while (iterator.hasNext())
+    {
+      iterator.next().events.add(new StreamEvent(new HTTPException(
+           "The pooled connection to " + serverKey + " failed -- " + reason)));
+    }
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  void close()
+  {
+    fail("The connection has been closed");
+  }
+
+
+
+  /**
+   * Writes a setting to the provided array.
+   *
+   * @param  buffer      The array to which the setting should be written.
+   * @param  offset      The position in the array at which to write it.
+   * @param  identifier  The identifier for the setting.
+   * @param  value       The value for the setting.
+   */
+  private static void encodeSetting(byte[] buffer, int offset, int identifier,
+                                    int value)
+  {
+    buffer[offset]   = (byte) ((identifier >>> 8) & 0xFF);
+    buffer[offset+1] = (byte) (identifier & 0xFF);
+    encodeInt(buffer, (offset+2), value);
+  }
+
+
+
+  /**
+   * Writes a four-byte big-endian integer to the provided array.
+   *
+   * @param  buffer  The array to which the integer should be written.
+   * @param  offset  The position in the array at which to write it.
+   * @param  value   The integer to write.
+   */
+  private static void encodeInt(byte[] buffer, int offset, int value)
+  {
+    buffer[offset]   = (byte) ((value >>> 24) & 0xFF);
+    buffer[offset+1] = (byte) ((value >>> 16) & 0xFF);
+    buffer[offset+2] = (byte) ((value >>> 8) & 0xFF);
+    buffer[offset+3] = (byte) (value & 0xFF);
+  }
+
+
+
+  /**
+   * Reads a four-byte big-endian integer from the provided array.
+   *
+   * @param  buffer  The array from which to read the integer.
+   * @param  offset  The position in the array at which the integer starts.
+   *
+   * @return  The integer that was read.
+   */
+  private static int decodeInt(byte[] buffer, int offset)
+  {
+    return ((buffer[offset] & 0xFF) << 24) |
+           ((buffer[offset+1] & 0xFF) << 16) |
+           ((buffer[offset+2] & 0xFF) << 8) |
+           (buffer[offset+3] & 0xFF);
+  }
+
+
+
+  /**
+   * This class holds the state for a single stream.
+   */
+  private static final class Stream
+  {
+    // The events dispatched to this stream by the reader thread.
+    private final LinkedBlockingQueue<StreamEvent> events;
+
+    // The identifier for this stream.
+    private final int streamID;
+
+    // Indicates whether the response has been completely read.
+    private volatile boolean complete;
+
+    // The amount of data that may be sent on this stream before the server
+    // opens the window further.  This is protected by the flow lock.
+    private int sendWindow;
+
+    // The amount of data received on this stream that has not yet been
+    // acknowledged.  This is only accessed by the reader thread.
+    private int unacknowledgedBytes;
+
+
+
+    /**
+     * Creates a new stream.
+     *
+     * @param  streamID    The identifier for the stream.
+     * @param  sendWindow  The initial send window for the stream.
+     */
+    private Stream(int streamID, int sendWindow)
+    {
+      this.streamID   = streamID;
+      this.sendWindow = sendWindow;
+
+      events              = new LinkedBlockingQueue<StreamEvent>();
+      complete            = false;
+      unacknowledgedBytes = 0;
+    }
+  }
+
+
+
+  /**
+   * This class defines an event dispatched to a stream by the reader thread.
+   */
+  private static final class StreamEvent
+  {
+    // Indicates whether this event ends the stream.
+    private final boolean endStream;
+
+    // The data received, if this is a data event.
+    private final byte[] data;
+
+    // The error that occurred, if this is an error event.
+    private final HTTPException error;
+
+    // The headers received, if this is a header event.
+    private final List<String[]> headers;
+
+
+
+    /**
+     * Creates a new header or data event.
+     *
+     * @param  headers    The headers received, or {@code null} for a data
+     *                    event.
+     * @param  data       The data received, or {@code null} for a header
+     *                    event.
+     * @param  endStream  Indicates whether this event ends the stream.
+     */
+    private StreamEvent(List<String[]> headers, byte[] data, boolean endStream)
+    {
+      this.headers   = headers;
+      this.data      = data;
+      this.endStream = endStream;
+
+      error = null;
+    }
+
+
+
+    /**
+     * Creates a new error event.
+     *
+     * @param  error  The error that occurred.
+     */
+    private StreamEvent(HTTPException error)
+    {
+      this.error = error;
+
+      headers   = null;
+      data      = null;
+      endStream = true;
+    }
+  }
+}
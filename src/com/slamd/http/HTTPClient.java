@@ -26,16 +26,25 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.net.InetAddress;
+import java.net.MalformedURLException;
 import java.net.Socket;
 import java.net.URL;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 
@@ -88,6 +97,50 @@ public class HTTPClient
 
 
 
+  /**
+   * The size of the buffer that will be used for reading content that is to be
+   * discarded.
+   */
+  public static final int DISCARD_BUFFER_SIZE = 65536;
+
+
+
+  /**
+   * The default maximum number of connections that will be used in parallel
+   * to retrieve the associated files from a single server when browser
+   * emulation is enabled.
+   */
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 6;
+
+
+
+  /**
+   * The display name for the stat tracker used to keep track of the results of
+   * the attempts to retrieve associated files.
+   */
+  public static final String STAT_TRACKER_ASSOCIATED_FILE_RESULTS =
+       "HTTP Associated File Results";
+
+
+
+  /**
+   * The display name for the stat tracker used to keep track of the length of
+   * time required to retrieve each associated file.
+   */
+  public static final String STAT_TRACKER_ASSOCIATED_FILE_TIME =
+       "HTTP Associated File Request Time";
+
+
+
+  /**
+   * The display name for the stat tracker used to keep track of the length of
+   * time required to retrieve a page, including all of its associated files.
+   */
+  public static final String STAT_TRACKER_PAGE_LOAD_TIME =
+       "HTTP Page Load Time";
+
+
+
   /**
    * The display name for the stat tracker used to keep track of the number of
    * redirects followed.
@@ -142,6 +195,26 @@ public class HTTPClient
 
 
 
+  /**
+   * The display name for the stat tracker used to keep track of the length of
+   * time between starting a request and receiving the first byte of the
+   * response.
+   */
+  public static final String STAT_TRACKER_TIME_TO_FIRST_BYTE =
+       "HTTP Time to First Byte";
+
+
+
+  /**
+   * The display name for the stat tracker used to keep track of the length of
+   * time between starting a request and receiving the last byte of the
+   * response.
+   */
+  public static final String STAT_TRACKER_TIME_TO_LAST_BYTE =
+       "HTTP Time to Last Byte";
+
+
+
   /**
    * The display name for the stat tracker used to keep track of the total
    * length of time required to handle a request.
@@ -211,19 +284,34 @@ public class HTTPClient
   // The list of cookies held by this client.
   private ArrayList<HTTPCookie> cookieList;
 
+  // Indicates whether to compute a checksum of any content that is discarded.
+  private boolean checksumContent;
+
   // Indicates whether cookie support is enabled for this client.
   private boolean cookiesEnabled;
 
   // Indicates whether this client is operating in debug mode.
   private boolean debugMode;
 
+  // Indicates whether the content of responses should be read and discarded
+  // rather than retained.
+  private boolean discardContent;
+
   // Indicates whether the client should automatically delete any cookie whose
   // value is set to "LOGOUT".
   private boolean deleteLogoutCookies;
 
+  // Indicates whether the client should emulate the way that a Web browser
+  // retrieves associated files, using parallel connections and a cache.
+  private boolean emulateBrowser;
+
   // Indicates whether to automatically follow redirects returned by the server.
   private boolean followRedirects;
 
+  // Indicates whether this client is used to retrieve associated files on
+  // behalf of another client.
+  private boolean isFetchClient;
+
   // Indicates whether to maintain statistics for the client.
   private boolean keepStats;
 
@@ -234,9 +322,27 @@ public class HTTPClient
   // Indicates whether the stat trackers are currently active.
   private boolean trackersActive;
 
+  // The buffer used to read content that is to be discarded.
+  private byte[] discardBuffer;
+
+  // The stat tracker used to keep track of the results of the attempts to
+  // retrieve associated files.
+  private CategoricalTracker associatedFileResults;
+
   // The stat tracker used to keep track of the response codes for the requests.
   private CategoricalTracker responseCodes;
 
+  // The checksum computed for content that is discarded.
+  private CRC32 contentChecksum;
+
+  // The idle clients that may be used to retrieve associated files in parallel
+  // when browser emulation is enabled.
+  private ConcurrentLinkedQueue<HTTPClient> idleFetchClients;
+
+  // The executor used to retrieve associated files in parallel when browser
+  // emulation is enabled.
+  private ExecutorService fetchExecutor;
+
   // A map that associates a host/port pair with a socket so that existing
   // connections can be re-used if available.
   private HashMap<String,Socket> socketHash;
@@ -247,9 +353,20 @@ public class HTTPClient
   // The stat tracker used to keep track of the number of requests processed.
   private IncrementalTracker requestsProcessed;
 
+  // The cache used to avoid retrieving associated files that have not changed
+  // when browser emulation is enabled.
+  private HTTPResourceCache resourceCache;
+
+  // The connection pool through which requests will be sent, if any.
+  private HTTPConnectionPool connectionPool;
+
   // The address that should be used for the client system.
   private InetAddress clientAddress;
 
+  // The maximum number of connections to use in parallel to retrieve the
+  // associated files from a single server when browser emulation is enabled.
+  private int maxConnectionsPerHost;
+
   // The port number of the proxy server to use.
   private int proxyPort;
 
@@ -257,6 +374,10 @@ public class HTTPClient
   // data from the client.
   private int socketTimeout;
 
+  // The time that the current request was started, for use in computing the
+  // time to first and last byte.
+  private long requestStartTime;
+
   // The stat tracker used to keep track of the average size of each response.
   private IntegerValueTracker responseSizes;
 
@@ -266,14 +387,30 @@ public class HTTPClient
   // The socket factory used to create SSL sockets.
   private SSLSocketFactory sslSocketFactory;
 
+  // The stat tracker used to keep track of the length of time required to
+  // retrieve each associated file.
+  private TimeTracker associatedFileTimer;
+
   // The stat tracker used to keep track of the length of time required to
   // retrieve the content of the response.
   private TimeTracker contentTimer;
 
+  // The stat tracker used to keep track of the time to the first byte of the
+  // response.
+  private TimeTracker firstByteTimer;
+
+  // The stat tracker used to keep track of the time to the last byte of the
+  // response.
+  private TimeTracker lastByteTimer;
+
   // The stat tracker used to keep track of the length of time required to
   // retrieve the header of the response.
   private TimeTracker headerTimer;
 
+  // The stat tracker used to keep track of the length of time required to
+  // retrieve a page, including all of its associated files.
+  private TimeTracker pageTimer;
+
   // The stat tracker used to keep track of the total length of time required to
   // process the request.
   private TimeTracker requestTimer;
@@ -287,12 +424,16 @@ public class HTTPClient
    */
   public HTTPClient()
   {
+    checksumContent         = false;
     cookiesEnabled          = true;
     enableGZIP              = true;
     debugMode               = false;
     debugWriter             = null;
     deleteLogoutCookies     = false;
+    discardContent          = false;
+    emulateBrowser          = false;
     followRedirects         = false;
+    isFetchClient           = false;
     keepStats               = false;
     trackersActive          = false;
     retrieveAssociatedFiles = false;
@@ -307,6 +448,13 @@ public class HTTPClient
     sslSocketFactory        = null;
     clientAddress           = null;
     socketTimeout           = 0;
+    maxConnectionsPerHost   = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+    resourceCache           = new HTTPResourceCache();
+    connectionPool          = null;
+    idleFetchClients        = new ConcurrentLinkedQueue<HTTPClient>();
+    fetchExecutor           = null;
+    discardBuffer           = null;
+    contentChecksum         = null;
 
 
     // We'll allow the use of a client property for use when configuring a
@@ -868,6 +1016,181 @@ public class HTTPClient
 
 
 
+  /**
+   * Indicates whether this client will emulate the way that a Web browser
+   * retrieves the files associated with HTML documents.  In that case, the
+   * associated files will be retrieved in parallel using up to
+   * <CODE>getMaxConnectionsPerHost()</CODE> connections to each server, and
+   * files that have been retrieved before will only be requested again if the
+   * cache rules provided by the server require it.  This setting only has an
+   * effect if associated files are to be retrieved.
+   *
+   * @return  {@code true} if this client will emulate a Web browser when
+   *          retrieving associated files, or {@code false} if it will retrieve
+   *          them one at a time without any caching.
+   */
+  public boolean emulateBrowser()
+  {
+    return emulateBrowser;
+  }
+
+
+
+  /**
+   * Specifies whether this client should emulate the way that a Web browser
+   * retrieves the files associated with HTML documents.
+   *
+   * @param  emulateBrowser  Indicates whether this client should emulate a Web
+   *                         browser when retrieving associated files.
+   */
+  public void setEmulateBrowser(boolean emulateBrowser)
+  {
+    this.emulateBrowser = emulateBrowser;
+  }
+
+
+
+  /**
+   * Retrieves the maximum number of connections that will be used in parallel
+   * to retrieve the associated files from a single server when browser
+   * emulation is enabled.
+   *
+   * @return  The maximum number of connections that will be used in parallel
+   *          to retrieve the associated files from a single server.
+   */
+  public int getMaxConnectionsPerHost()
+  {
+    return maxConnectionsPerHost;
+  }
+
+
+
+  /**
+   * Specifies the maximum number of connections that will be used in parallel
+   * to retrieve the associated files from a single server when browser
+   * emulation is enabled.
+   *
+   * @param  maxConnectionsPerHost  The maximum number of connections that will
+   *                                be used in parallel to retrieve the
+   *                                associated files from a single server.  If
+   *                                this is less than one, then a single
+   *                                connection will be used.
+   */
+  public void setMaxConnectionsPerHost(int maxConnectionsPerHost)
+  {
+    this.maxConnectionsPerHost = Math.max(1, maxConnectionsPerHost);
+  }
+
+
+
+  /**
+   * Retrieves the cache used to avoid retrieving associated files that have not
+   * changed when browser emulation is enabled.  It may be cleared to simulate a
+   * new user with an empty browser cache.
+   *
+   * @return  The cache used for associated files.
+   */
+  public HTTPResourceCache getResourceCache()
+  {
+    return resourceCache;
+  }
+
+
+
+  /**
+   * Retrieves the connection pool through which this client sends its
+   * requests.
+   *
+   * @return  The connection pool through which this client sends its requests,
+   *          or {@code null} if it uses its own connections.
+   */
+  public HTTPConnectionPool getConnectionPool()
+  {
+    return connectionPool;
+  }
+
+
+
+  /**
+   * Specifies the connection pool through which this client should send its
+   * requests.  A pool may be shared by any number of clients, and can keep
+   * connections open across requests and have several requests outstanding on
+   * each connection, either pipelined over HTTP/1.1 or multiplexed over
+   * HTTP/2.  Proxies are not supported when a pool is in use.
+   *
+   * @param  connectionPool  The connection pool through which this client
+   *                         should send its requests, or {@code null} if it
+   *                         should use its own connections.
+   */
+  public void setConnectionPool(HTTPConnectionPool connectionPool)
+  {
+    this.connectionPool = connectionPool;
+  }
+
+
+
+  /**
+   * Indicates whether this client will read and discard the content of each
+   * response rather than retaining it.  Discarded content is read through a
+   * single reused buffer, so the memory used does not depend on the size of
+   * the response.  Only the number of bytes read and optionally a checksum
+   * will be available in the response.  HTML documents will still be retained
+   * if associated files are to be retrieved.
+   *
+   * @return  {@code true} if the content of responses will be discarded, or
+   *          {@code false} if it will be retained.
+   */
+  public boolean discardContent()
+  {
+    return discardContent;
+  }
+
+
+
+  /**
+   * Specifies whether this client should read and discard the content of each
+   * response rather than retaining it.
+   *
+   * @param  discardContent  Indicates whether this client should discard the
+   *                         content of responses.
+   */
+  public void setDiscardContent(boolean discardContent)
+  {
+    this.discardContent = discardContent;
+  }
+
+
+
+  /**
+   * Indicates whether this client will compute a CRC-32 checksum of the content
+   * of each response that is discarded.
+   *
+   * @return  {@code true} if a checksum will be computed for discarded content,
+   *          or {@code false} if not.
+   */
+  public boolean checksumContent()
+  {
+    return checksumContent;
+  }
+
+
+
+  /**
+   * Specifies whether this client should compute a CRC-32 checksum of the
+   * content of each response that is discarded.  The checksum will be
+   * available through the <CODE>getContentChecksum()</CODE> method of the
+   * response.
+   *
+   * @param  checksumContent  Indicates whether this client should compute a
+   *                          checksum for discarded content.
+   */
+  public void setChecksumContent(boolean checksumContent)
+  {
+    this.checksumContent = checksumContent;
+  }
+
+
+
   /**
    * Retrieves a two-dimensional array containing the names and values of all
    * headers that will always be included in requests sent using this client.
@@ -1033,12 +1356,15 @@ public class HTTPClient
     ArrayList<HTTPCookie> matchingCookies = new ArrayList<HTTPCookie>();
 
     long currentTime = System.currentTimeMillis();
-    for (int i=0; i < cookieList.size(); i++)
+    synchronized (cookieList)
     {
-      HTTPCookie cookie = cookieList.get(i);
-      if (cookie.appliesToRequest(requestURL, currentTime))
+      for (int i=0; i < cookieList.size(); i++)
       {
-        matchingCookies.add(cookie);
+        HTTPCookie cookie = cookieList.get(i);
+        if (cookie.appliesToRequest(requestURL, currentTime))
+        {
+          matchingCookies.add(cookie);
+        }
       }
     }
 
@@ -1065,6 +1391,22 @@ public class HTTPClient
       return;
     }
 
+    synchronized (cookieList)
+    {
+      addCookieInternal(cookie);
+    }
+  }
+
+
+
+  /**
+   * Adds the specified cookie to the set of cookies associated with this
+   * client.  The caller must hold the lock on the cookie list.
+   *
+   * @param  cookie  The cookie to be added to this client.
+   */
+  private void addCookieInternal(HTTPCookie cookie)
+  {
 
     // See if the provided cookie is expired and therefore should be deleted.
     if ((cookie.getExpirationDate() > 0) &&
@@ -1131,13 +1473,16 @@ public class HTTPClient
 
 
     // See if the specified cookie exists.  If so, then remove it.
-    for (int i=0; i < cookieList.size(); i++)
+    synchronized (cookieList)
     {
-      HTTPCookie cookie = cookieList.get(i);
-      if (cookie.getName().equals(name))
+      for (int i=0; i < cookieList.size(); i++)
       {
-        cookieList.remove(i);
-        return true;
+        HTTPCookie cookie = cookieList.get(i);
+        if (cookie.getName().equals(name))
+        {
+          cookieList.remove(i);
+          return true;
+        }
       }
     }
 
@@ -1167,13 +1512,16 @@ public class HTTPClient
 
 
     // See if the specified cookie exists.  If so, then remove it.
-    for (int i=0; i < cookieList.size(); i++)
+    synchronized (cookieList)
     {
-      HTTPCookie cookie = cookieList.get(i);
-      if (cookie.getName().equals(name) && cookie.getValue().equals(value))
+      for (int i=0; i < cookieList.size(); i++)
       {
-        cookieList.remove(i);
-        return true;
+        HTTPCookie cookie = cookieList.get(i);
+        if (cookie.getName().equals(name) && cookie.getValue().equals(value))
+        {
+          cookieList.remove(i);
+          return true;
+        }
       }
     }
 
@@ -1187,7 +1535,10 @@ public class HTTPClient
    */
   public void clearCookies()
   {
-    cookieList.clear();
+    synchronized (cookieList)
+    {
+      cookieList.clear();
+    }
   }
 
 
@@ -1269,6 +1620,25 @@ public class HTTPClient
                                    STAT_TRACKER_RESPONSE_CONTENT_TIME,
                                    collectionInterval);
 
+    firstByteTimer = new TimeTracker(clientID, threadID,
+                                     STAT_TRACKER_TIME_TO_FIRST_BYTE,
+                                     collectionInterval);
+
+    lastByteTimer = new TimeTracker(clientID, threadID,
+                                    STAT_TRACKER_TIME_TO_LAST_BYTE,
+                                    collectionInterval);
+
+    pageTimer = new TimeTracker(clientID, threadID, STAT_TRACKER_PAGE_LOAD_TIME,
+                                collectionInterval);
+
+    associatedFileTimer = new TimeTracker(clientID, threadID,
+                                          STAT_TRACKER_ASSOCIATED_FILE_TIME,
+                                          collectionInterval);
+
+    associatedFileResults = new CategoricalTracker(clientID, threadID,
+                                 STAT_TRACKER_ASSOCIATED_FILE_RESULTS,
+                                 collectionInterval);
+
     if ((statReporter != null) && (jobID != null))
     {
       requestsProcessed.enableRealTimeStats(statReporter, jobID);
@@ -1277,6 +1647,10 @@ public class HTTPClient
       redirectsFollowed.enableRealTimeStats(statReporter, jobID);
       headerTimer.enableRealTimeStats(statReporter, jobID);
       contentTimer.enableRealTimeStats(statReporter, jobID);
+      firstByteTimer.enableRealTimeStats(statReporter, jobID);
+      lastByteTimer.enableRealTimeStats(statReporter, jobID);
+      pageTimer.enableRealTimeStats(statReporter, jobID);
+      associatedFileTimer.enableRealTimeStats(statReporter, jobID);
     }
 
     requestsProcessed.startTracker();
@@ -1286,6 +1660,11 @@ public class HTTPClient
     redirectsFollowed.startTracker();
     headerTimer.startTracker();
     contentTimer.startTracker();
+    firstByteTimer.startTracker();
+    lastByteTimer.startTracker();
+    pageTimer.startTracker();
+    associatedFileTimer.startTracker();
+    associatedFileResults.startTracker();
 
     keepStats = true;
     trackersActive = true;
@@ -1307,6 +1686,11 @@ public class HTTPClient
     redirectsFollowed.stopTracker();
     headerTimer.stopTracker();
     contentTimer.stopTracker();
+    firstByteTimer.stopTracker();
+    lastByteTimer.stopTracker();
+    pageTimer.stopTracker();
+    associatedFileTimer.stopTracker();
+    associatedFileResults.stopTracker();
 
     trackersActive = false;
   }
@@ -1362,7 +1746,23 @@ public class HTTPClient
                       collectionInterval),
 
       new TimeTracker(clientID, threadID, STAT_TRACKER_RESPONSE_CONTENT_TIME,
-                      collectionInterval)
+                      collectionInterval),
+
+      new TimeTracker(clientID, threadID, STAT_TRACKER_TIME_TO_FIRST_BYTE,
+                      collectionInterval),
+
+      new TimeTracker(clientID, threadID, STAT_TRACKER_TIME_TO_LAST_BYTE,
+                      collectionInterval),
+
+      new TimeTracker(clientID, threadID, STAT_TRACKER_PAGE_LOAD_TIME,
+                      collectionInterval),
+
+      new TimeTracker(clientID, threadID, STAT_TRACKER_ASSOCIATED_FILE_TIME,
+                      collectionInterval),
+
+      new CategoricalTracker(clientID, threadID,
+                             STAT_TRACKER_ASSOCIATED_FILE_RESULTS,
+                             collectionInterval)
     };
   }
 
@@ -1388,6 +1788,11 @@ public class HTTPClient
         redirectsFollowed.stopTracker();
         headerTimer.stopTracker();
         contentTimer.stopTracker();
+        firstByteTimer.stopTracker();
+        lastByteTimer.stopTracker();
+        pageTimer.stopTracker();
+        associatedFileTimer.stopTracker();
+        associatedFileResults.stopTracker();
 
         trackersActive = false;
       }
@@ -1400,7 +1805,12 @@ public class HTTPClient
         responseSizes,
         redirectsFollowed,
         headerTimer,
-        contentTimer
+        contentTimer,
+        firstByteTimer,
+        lastByteTimer,
+        pageTimer,
+        associatedFileTimer,
+        associatedFileResults
       };
     }
     else
@@ -1414,6 +1824,9 @@ public class HTTPClient
   /**
    * Sends the provided request to the specified server and returns the
    * response.  If so configured, any associated files will also be retrieved.
+   * The total request time statistic covers only the requested document, while
+   * the page load time statistic also includes the time required to retrieve
+   * all of its associated files.
    *
    * @param  request  The request to send to the server.
    *
@@ -1425,8 +1838,13 @@ public class HTTPClient
   public HTTPResponse sendRequest(HTTPRequest request)
          throws HTTPException
   {
+    // Capture the tracker state so that the timers that are started will also
+    // be stopped.
+    boolean trackersActive = this.trackersActive;
     if (trackersActive)
     {
+      requestStartTime = System.currentTimeMillis();
+      pageTimer.startTimer();
       requestTimer.startTimer();
       headerTimer.startTimer();
     }
@@ -1442,7 +1860,19 @@ public class HTTPClient
 
       requestsProcessed.increment();
       responseCodes.increment(String.valueOf(response.getStatusCode()));
-      responseSizes.addValue(response.getResponseData().length);
+      responseSizes.addValue((int) response.getContentSize());
+    }
+
+
+    // See if we should retrieve the files associated with this response.
+    if (retrieveAssociatedFiles)
+    {
+      retrieveAssociatedFiles(response, trackersActive);
+    }
+
+    if (trackersActive)
+    {
+      pageTimer.stopTimer();
     }
 
     return response;
@@ -1465,7 +1895,6 @@ public class HTTPClient
           throws HTTPException
   {
     String protocol = request.baseURL.getProtocol().toLowerCase();
-    URL    url      = request.baseURL;
 
     boolean useSSL;
     if (protocol.equals("http"))
@@ -1487,47 +1916,118 @@ public class HTTPClient
       debugWriter.println();
     }
 
-    Socket socket = null;
-    String hashKey;
-    if (proxyHost == null)
+    HTTPResponse response;
+    if (connectionPool == null)
     {
-      String urlHost = url.getHost();
-      int    urlPort = request.baseURL.getPort();
-      if (urlPort == -1)
-      {
-        urlPort = (useSSL? 443 : 80);
-      }
+      response = sendRequestOverSocket(request, protocol, useSSL,
+                                       trackersActive);
+    }
+    else
+    {
+      response = connectionPool.sendRequest(this, request, trackersActive);
+    }
 
-      hashKey = protocol + "://" + urlHost + ':' + urlPort;
-      socket = socketHash.remove(hashKey);
-      if ((socket == null) || (! socket.isConnected()))
+
+    // See if this is a redirect that should be followed.
+    if (followRedirects && isRedirect(response.getStatusCode()))
+    {
+      String redirectURL = response.getHeader("location");
+      if (redirectURL != null)
       {
-        if (useSSL)
+        if (debugMode)
         {
-          try
-          {
-            if (sslSocketFactory == null)
-            {
-              sslSocketFactory =
-                   (SSLSocketFactory) SSLSocketFactory.getDefault();
-            }
-
-            if (clientAddress == null)
-            {
-              socket = sslSocketFactory.createSocket(urlHost, urlPort);
-            }
-            else
-            {
-              socket = sslSocketFactory.createSocket(urlHost, urlPort,
-                                                     clientAddress, 0);
-            }
+          debug("Following redirect to " + redirectURL);
+        }
 
-            socket.setReuseAddress(true);
-            socket.setSoLinger(true, 0);
-            socket.setSoTimeout(socketTimeout);
+        try
+        {
+          HTTPRequest redirectRequest = request.clone(new URL(redirectURL));
+          HTTPResponse redirectResponse = sendRequestInternal(redirectRequest,
+                                                              false);
 
-            if (debugMode)
-            {
+          if (trackersActive)
+          {
+            redirectsFollowed.increment();
+          }
+
+          return redirectResponse;
+        }
+        catch (Exception e)
+        {
+          throw new HTTPException("Unable to follow redirect to " +
+                                  redirectURL + ":  " + e, e);
+        }
+      }
+    }
+
+    return response;
+  }
+
+
+
+  /**
+   * Sends the provided request over a connection held by this client and reads
+   * the response.  The connection will be retained for re-use if the server
+   * indicates that it should be kept alive.
+   *
+   * @param  request         The request to send to the server.
+   * @param  protocol        The protocol to use for the request.
+   * @param  useSSL          Indicates whether the connection should be secured
+   *                         with SSL.
+   * @param  trackersActive  Indicates whether to use the stat trackers.
+   *
+   * @return  The response read from the server.
+   *
+   * @throws  HTTPException  If a problem occurs while processing the request.
+   */
+  private HTTPResponse sendRequestOverSocket(HTTPRequest request,
+                                             String protocol, boolean useSSL,
+                                             boolean trackersActive)
+          throws HTTPException
+  {
+    URL url = request.baseURL;
+
+    Socket socket = null;
+    String hashKey;
+    if (proxyHost == null)
+    {
+      String urlHost = url.getHost();
+      int    urlPort = request.baseURL.getPort();
+      if (urlPort == -1)
+      {
+        urlPort = (useSSL? 443 : 80);
+      }
+
+      hashKey = protocol + "://" + urlHost + ':' + urlPort;
+      socket = socketHash.remove(hashKey);
+      if ((socket == null) || (! socket.isConnected()))
+      {
+        if (useSSL)
+        {
+          try
+          {
+            if (sslSocketFactory == null)
+            {
+              sslSocketFactory =
+                   (SSLSocketFactory) SSLSocketFactory.getDefault();
+            }
+
+            if (clientAddress == null)
+            {
+              socket = sslSocketFactory.createSocket(urlHost, urlPort);
+            }
+            else
+            {
+              socket = sslSocketFactory.createSocket(urlHost, urlPort,
+                                                     clientAddress, 0);
+            }
+
+            socket.setReuseAddress(true);
+            socket.setSoLinger(true, 0);
+            socket.setSoTimeout(socketTimeout);
+
+            if (debugMode)
+            {
               debug("Established SSL connection " + hashKey);
             }
           }
@@ -1706,66 +2206,383 @@ public class HTTPClient
       socketHash.put(hashKey, socket);
     }
 
+    return response;
+  }
 
-    // See if this is a redirect that should be followed.
-    if (followRedirects && isRedirect(response.getStatusCode()))
+
+
+  /**
+   * Retrieves the files associated with the HTML document contained in the
+   * provided response, if any.  If any of the associated files are themselves
+   * HTML documents (e.g., frames), then their associated files will be
+   * retrieved as well.  Each file will be requested at most once per call.
+   *
+   * @param  response        The response containing the HTML document for
+   *                         which to retrieve the associated files.
+   * @param  trackersActive  Indicates whether to use the stat trackers.
+   */
+  private void retrieveAssociatedFiles(HTTPResponse response,
+                                       boolean trackersActive)
+  {
+    HTMLDocument document = response.getHTMLDocument();
+    if (document == null)
     {
-      String redirectURL = response.getHeader("location");
-      if (redirectURL != null)
+      return;
+    }
+
+    HashSet<String> requestedURLs = new HashSet<String>();
+    requestedURLs.add(response.getRequestURL().toExternalForm());
+
+    ArrayList<HTMLDocument> documents = new ArrayList<HTMLDocument>();
+    documents.add(document);
+    while (! documents.isEmpty())
+    {
+      ArrayList<String> urls = new ArrayList<String>();
+      for (HTMLDocument d : documents)
       {
-        if (debugMode)
+        for (String url : d.getAssociatedFiles())
         {
-          debug("Following redirect to " + redirectURL);
+          if (requestedURLs.add(url))
+          {
+            urls.add(url);
+          }
         }
+      }
 
-        try
+      if (emulateBrowser)
+      {
+        documents = retrieveInParallel(urls, trackersActive);
+      }
+      else
+      {
+        documents = new ArrayList<HTMLDocument>();
+        for (String url : urls)
         {
-          HTTPRequest redirectRequest = request.clone(new URL(redirectURL));
-          HTTPResponse redirectResponse = sendRequestInternal(redirectRequest,
-                                                              false);
-
-          if (trackersActive)
+          HTTPResponse r = retrieveAssociatedFile(this, url, trackersActive,
+                                                  false);
+          if ((r != null) && (r.getHTMLDocument() != null))
           {
-            redirectsFollowed.increment();
+            documents.add(r.getHTMLDocument());
           }
-
-          return redirectResponse;
         }
-        catch (Exception e)
+      }
+    }
+  }
+
+
+
+  /**
+   * Retrieves the provided associated files in the manner of a Web browser.
+   * Files with a fresh copy in the resource cache will not be requested at
+   * all.  The remaining files will be grouped by server, and up to
+   * <CODE>maxConnectionsPerHost</CODE> connections will be used in parallel to
+   * retrieve the files from each server.  This method will not return until
+   * all of the files have been processed.
+   *
+   * @param  urls            The URLs of the associated files to retrieve.
+   * @param  trackersActive  Indicates whether to use the stat trackers.
+   *
+   * @return  The HTML documents contained in any of the retrieved files.
+   */
+  private ArrayList<HTMLDocument> retrieveInParallel(List<String> urls,
+                                                     boolean trackersActive)
+  {
+    LinkedHashMap<String,ConcurrentLinkedQueue<String>> hostQueues =
+         new LinkedHashMap<String,ConcurrentLinkedQueue<String>>();
+    for (String url : urls)
+    {
+      if (resourceCache.isFresh(url))
+      {
+        recordAssociatedFile(trackersActive, -1L,
+                             HTTPResourceCache.RESULT_CACHE_HIT);
+        continue;
+      }
+
+      String hostKey;
+      try
+      {
+        URL u = new URL(url);
+        hostKey = u.getProtocol() + "://" + u.getHost() + ':' + u.getPort();
+      }
+      catch (MalformedURLException mue)
+      {
+        recordAssociatedFile(trackersActive, -1L,
+                             HTTPResourceCache.RESULT_ERROR);
+        continue;
+      }
+
+      ConcurrentLinkedQueue<String> queue = hostQueues.get(hostKey);
+      if (queue == null)
+      {
+        queue = new ConcurrentLinkedQueue<String>();
+        hostQueues.put(hostKey, queue);
+      }
+      queue.add(url);
+    }
+
+    final ConcurrentLinkedQueue<HTMLDocument> documents =
+         new ConcurrentLinkedQueue<HTMLDocument>();
+    if (hostQueues.isEmpty())
+    {
+      return new ArrayList<HTMLDocument>(documents);
+    }
+
+    ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+    ExecutorService executor = getFetchExecutor();
+    for (final ConcurrentLinkedQueue<String> queue : hostQueues.values())
+    {
+      int numConnections = Math.min(maxConnectionsPerHost, queue.size());
+      for (int i=0; i < numConnections; i++)
+      {
+        futures.add(executor.submit(new AssociatedFileFetcher(queue, documents,
+                                                              trackersActive)));
+      }
+    }
+
+    for (Future<?> f : futures)
+    {
+      try
+      {
+        f.get();
+      } catch (Exception e) {}
+    }
+
+    return new ArrayList<HTMLDocument>(documents);
+  }
+
+
+
+  /**
+   * Retrieves a single associated file.  Any failure will be recorded in the
+   * associated file statistics rather than being reported to the caller.
+   *
+   * @param  fetcher         The client to use to send the request.
+   * @param  url             The URL of the file to retrieve.
+   * @param  trackersActive  Indicates whether to use the stat trackers.
+   * @param  useCache        Indicates whether to use the resource cache to
+   *                         issue a conditional request.
+   *
+   * @return  The response received from the server, or {@code null} if the
+   *          file could not be retrieved.
+   */
+  private HTTPResponse retrieveAssociatedFile(HTTPClient fetcher, String url,
+                                              boolean trackersActive,
+                                              boolean useCache)
+  {
+    if (debugMode)
+    {
+      debug("Trying to retrieve associated file " + url);
+    }
+
+    long startTime = System.currentTimeMillis();
+    try
+    {
+      HTTPRequest associatedFileRequest = new HTTPRequest(true, new URL(url));
+      if (useCache)
+      {
+        resourceCache.addValidators(url, associatedFileRequest);
+      }
+
+      HTTPResponse response =
+           fetcher.sendRequestInternal(associatedFileRequest, false);
+
+      String result;
+      if (useCache)
+      {
+        result = resourceCache.update(url, response);
+      }
+      else if (response.getStatusCode() < 400)
+      {
+        result = HTTPResourceCache.RESULT_RETRIEVED;
+      }
+      else
+      {
+        result = HTTPResourceCache.RESULT_ERROR;
+      }
+
+      recordAssociatedFile(trackersActive,
+                           (System.currentTimeMillis() - startTime), result);
+      return response;
+    }
+    catch (Exception e)
+    {
+      if (debugMode)
+      {
+        debug("Unable to retrieve associated file " + url + ":  " + e);
+      }
+
+      recordAssociatedFile(trackersActive,
+                           (System.currentTimeMillis() - startTime),
+                           HTTPResourceCache.RESULT_ERROR);
+      return null;
+    }
+  }
+
+
+
+  /**
+   * Updates the associated file statistics.  This may be called concurrently
+   * by multiple fetcher threads.
+   *
+   * @param  trackersActive  Indicates whether to use the stat trackers.
+   * @param  elapsedTime     The time in milliseconds required to process the
+   *                         file, or a negative value if no request was sent.
+   * @param  result          The result of processing the file.
+   */
+  private synchronized void recordAssociatedFile(boolean trackersActive,
+                                                 long elapsedTime,
+                                                 String result)
+  {
+    if (! trackersActive)
+    {
+      return;
+    }
+
+    if (elapsedTime >= 0L)
+    {
+      associatedFileTimer.updateTimer((int) elapsedTime);
+    }
+
+    associatedFileResults.increment(result);
+  }
+
+
+
+  /**
+   * Retrieves the executor used to retrieve associated files in parallel,
+   * creating it if necessary.  Its threads are daemon threads so that they
+   * will not prevent the JVM from exiting.
+   *
+   * @return  The executor used to retrieve associated files in parallel.
+   */
+  private synchronized ExecutorService getFetchExecutor()
+  {
+    if (fetchExecutor == null)
+    {
+      fetchExecutor = Executors.newCachedThreadPool(new ThreadFactory()
+      {
+        public Thread newThread(Runnable r)
         {
-          throw new HTTPException("Unable to follow redirect to " +
-                                  redirectURL + ":  " + e, e);
+          Thread t = new Thread(r, "HTTP Associated File Fetcher");
+          t.setDaemon(true);
+          return t;
         }
-      }
+      });
     }
 
+    return fetchExecutor;
+  }
+
 
-    // See if we should retrieve the files associated with this response.
-    if (retrieveAssociatedFiles)
+
+  /**
+   * Obtains a client that may be used to retrieve associated files in parallel
+   * with other fetchers.  It will have the same configuration as this client
+   * and will share its cookies, but will hold its own connections so that they
+   * may be re-used across pages.
+   *
+   * @return  A client that may be used to retrieve associated files.
+   */
+  private HTTPClient borrowFetchClient()
+  {
+    HTTPClient c = idleFetchClients.poll();
+    if (c == null)
     {
-      HTMLDocument document = response.getHTMLDocument();
-      if (document != null)
+      c = new HTTPClient();
+    }
+
+    c.enableGZIP              = enableGZIP;
+    c.useKeepAlive            = useKeepAlive;
+    c.commonHeaderMap         = commonHeaderMap;
+    c.authID                  = authID;
+    c.authPW                  = authPW;
+    c.proxyAuthID             = proxyAuthID;
+    c.proxyAuthPW             = proxyAuthPW;
+    c.proxyHost               = proxyHost;
+    c.proxyPort               = proxyPort;
+    c.cookieList              = cookieList;
+    c.cookiesEnabled          = cookiesEnabled;
+    c.deleteLogoutCookies     = deleteLogoutCookies;
+    c.followRedirects         = followRedirects;
+    c.isFetchClient           = true;
+    c.retrieveAssociatedFiles = false;
+    c.discardContent          = discardContent;
+    c.checksumContent         = false;
+    c.sslSocketFactory        = sslSocketFactory;
+    c.clientAddress           = clientAddress;
+    c.socketTimeout           = socketTimeout;
+    c.debugMode               = debugMode;
+    c.debugWriter             = debugWriter;
+    c.connectionPool          = connectionPool;
+
+    return c;
+  }
+
+
+
+  /**
+   * This class defines a task that retrieves associated files from a single
+   * server until there are none left to retrieve.
+   */
+  private final class AssociatedFileFetcher
+          implements Runnable
+  {
+    // The HTML documents found in the retrieved files.
+    private final ConcurrentLinkedQueue<HTMLDocument> documents;
+
+    // The URLs of the files still to be retrieved from the server.
+    private final ConcurrentLinkedQueue<String> queue;
+
+    // Indicates whether to use the stat trackers.
+    private final boolean trackersActive;
+
+
+
+    /**
+     * Creates a new associated file fetcher.
+     *
+     * @param  queue           The URLs of the files to retrieve.
+     * @param  documents       The queue to which any HTML documents found in
+     *                         the retrieved files should be added.
+     * @param  trackersActive  Indicates whether to use the stat trackers.
+     */
+    private AssociatedFileFetcher(ConcurrentLinkedQueue<String> queue,
+                 ConcurrentLinkedQueue<HTMLDocument> documents,
+                 boolean trackersActive)
+    {
+      this.queue          = queue;
+      this.documents      = documents;
+      this.trackersActive = trackersActive;
+    }
+
+
+
+    /**
+     * Retrieves files from the queue until it is empty.
+     */
+    public void run()
+    {
+      HTTPClient fetcher = borrowFetchClient();
+      try
       {
-        String[] associatedFiles = document.getAssociatedFiles();
-        for (int i=0; i < associatedFiles.length; i++)
+        String url = queue.poll();
+        while (url != null)
         {
-          if (debugMode)
+          HTTPResponse response =
+               retrieveAssociatedFile(fetcher, url, trackersActive, true);
+          if ((response != null) && (response.getHTMLDocument() != null))
           {
-            debug("Trying to retrieve associated file " + associatedFiles[i]);
+            documents.add(response.getHTMLDocument());
           }
 
-          try
-          {
-            HTTPRequest associatedFileRequest =
-                 new HTTPRequest(true, new URL(associatedFiles[i]));
-            sendRequestInternal(associatedFileRequest, false);
-          } catch (Exception e) {}
+          url = queue.poll();
         }
       }
+      finally
+      {
+        idleFetchClients.offer(fetcher);
+      }
     }
-
-
-    return response;
   }
 
 
@@ -1815,8 +2632,8 @@ public class HTTPClient
    * @throws  HTTPException  If a problem occurs while trying to interpret the
    *                         response from the server.
    */
-  private HTTPResponse readResponse(URL requestURL, InputStream inputStream,
-                                    boolean keepStats)
+  HTTPResponse readResponse(URL requestURL, InputStream inputStream,
+                            boolean keepStats)
           throws IOException, HTTPException
   {
     byte[] buffer  = new byte[BUFFER_SIZE];
@@ -1828,6 +2645,8 @@ public class HTTPClient
       throw new IOException("Unexpected end of input stream from server");
     }
 
+    firstByteReceived(keepStats);
+
     // Hopefully, this initial chunk will contain the entire header, so look for
     // it.  Technically, HTTP is supposed to use CRLF as the end-of-line
     // character, so look for that first, but also check for LF by itself just
@@ -2186,21 +3005,38 @@ public class HTTPClient
 
     // At this point, we're transitioning from the header to the content.  Stop
     // the header timer and start the content timer.
-    if (keepStats)
-    {
-      headerTimer.stopTimer();
-      contentTimer.startTimer();
-    }
+    headerReceived(keepStats);
 
 
     // Now that we have parsed the header, use it to determine how much data
     // there is.  If we're lucky, the server will have told us using the
     // "Content-Length" header.
-    int contentLength = response.getContentLength();
-    if (contentLength >= 0)
+    int     contentLength = response.getContentLength();
+    int     statusCode    = response.getStatusCode();
+    boolean discard       = shouldDiscardContent(response);
+    int     dataEndPos    = bytesRead;
+    if (((statusCode >= 100) && (statusCode < 200)) || (statusCode == 204) ||
+        (statusCode == 304))
     {
-      readContentDataUsingLength(response, inputStream, contentLength, buffer,
-                                 dataStartPos, bytesRead);
+      // These responses never include any content, regardless of the headers.
+      response.setResponseData(null);
+      dataEndPos = dataStartPos;
+    }
+    else if (contentLength >= 0)
+    {
+      if (discard)
+      {
+        discardContentDataUsingLength(response, inputStream, contentLength,
+                                      buffer, dataStartPos, bytesRead);
+      }
+      else
+      {
+        readContentDataUsingLength(response, inputStream, contentLength,
+                                   buffer, dataStartPos, bytesRead);
+      }
+
+      dataEndPos = (int) Math.min(bytesRead,
+                                  ((long) dataStartPos + contentLength));
     }
     else
     {
@@ -2223,8 +3059,8 @@ public class HTTPClient
 
       if (useChunkedEncoding)
       {
-        readContentDataUsingChunkedEncoding(response, inputStream, buffer,
-                                            dataStartPos, bytesRead);
+        dataEndPos = readContentDataUsingChunkedEncoding(response, inputStream,
+                          buffer, dataStartPos, bytesRead, discard);
       }
       else
       {
@@ -2243,12 +3079,86 @@ public class HTTPClient
         else
         {
           readContentDataUsingConnectionClose(response, inputStream, buffer,
-                                              dataStartPos, bytesRead);
+                                              dataStartPos, bytesRead,
+                                              discard);
         }
       }
     }
 
 
+    // If the server sent more data than was part of this response (e.g., the
+    // start of the next pipelined response), then push it back so that it will
+    // be available for the next read.
+    if ((dataEndPos < bytesRead) &&
+        (inputStream instanceof HTTPPushbackInputStream))
+    {
+      ((HTTPPushbackInputStream) inputStream).unread(buffer, dataEndPos,
+                                                     (bytesRead - dataEndPos));
+    }
+
+
+    responseComplete(requestURL, response, keepStats);
+
+
+    // Finally, return the response to the caller.
+    return response;
+  }
+
+
+
+  /**
+   * Records that the first byte of a response has been received.
+   *
+   * @param  keepStats  Indicates whether to update the stat trackers.
+   */
+  void firstByteReceived(boolean keepStats)
+  {
+    if (keepStats)
+    {
+      firstByteTimer.updateTimer(
+           (int) (System.currentTimeMillis() - requestStartTime));
+    }
+  }
+
+
+
+  /**
+   * Records that the header of a response has been received and that the
+   * content will be read next.
+   *
+   * @param  keepStats  Indicates whether to update the stat trackers.
+   */
+  void headerReceived(boolean keepStats)
+  {
+    if (keepStats)
+    {
+      headerTimer.stopTimer();
+      contentTimer.startTimer();
+    }
+  }
+
+
+
+  /**
+   * Performs the processing required once a response has been completely read,
+   * including recording the time to the last byte and handling any cookies
+   * that the server has set.
+   *
+   * @param  requestURL  The URL used in the request that triggered the
+   *                     response.
+   * @param  response    The response that has been read.
+   * @param  keepStats   Indicates whether to update the stat trackers.
+   */
+  void responseComplete(URL requestURL, HTTPResponse response,
+                        boolean keepStats)
+  {
+    if (keepStats)
+    {
+      lastByteTimer.updateTimer(
+           (int) (System.currentTimeMillis() - requestStartTime));
+    }
+
+
     // Read the cookies from the response and set them as appropriate.
     String[] cookieValues = response.getCookieValues();
     for (int i=0; i < cookieValues.length; i++)
@@ -2269,10 +3179,6 @@ public class HTTPClient
         he.printStackTrace();
       }
     }
-
-
-    // Finally, return the response to the caller.
-    return response;
   }
 
 
@@ -2324,17 +3230,16 @@ public class HTTPClient
       startPos = bytesToCopy;
     }
 
-    byte[] buffer = new byte[BUFFER_SIZE];
     while (startPos < contentBytes.length)
     {
-      int bytesRead = inputStream.read(buffer);
+      int bytesRead = inputStream.read(contentBytes, startPos,
+                                       (contentBytes.length - startPos));
       if (bytesRead < 0)
       {
         throw new IOException("Unexpected end of input stream reached when " +
                               "reading data from the server");
       }
 
-      System.arraycopy(buffer, 0, contentBytes, startPos, bytesRead);
       startPos += bytesRead;
     }
 
@@ -2360,6 +3265,11 @@ public class HTTPClient
    *                        array that should be considered part of the
    *                        response (the number of header bytes is included in
    *                        this count).
+   * @param  discard        Indicates whether the data should be discarded
+   *                        rather than retained in the response.
+   *
+   * @return  The position in the provided array immediately after the last
+   *          byte that was part of the response.
    *
    * @throws  IOException  If a problem occurs while reading data from the
    *                       server.
@@ -2367,20 +3277,27 @@ public class HTTPClient
    * @throws  HTTPException  If the data read cannot be properly interpreted
    *                         using chunked encoding.
    */
-  private void readContentDataUsingChunkedEncoding(HTTPResponse response,
+  private int readContentDataUsingChunkedEncoding(HTTPResponse response,
                                                    InputStream inputStream,
                                                    byte[] dataRead,
                                                    int dataStartPos,
-                                                   int dataBytesRead)
+                                                   int dataBytesRead,
+                                                   boolean discard)
           throws IOException, HTTPException
   {
+    if (discard)
+    {
+      startDiscarding();
+    }
+
+
     // Create an array list that we will use to hold the chunks of information
     // read from the server.
     ArrayList<byte[]> dataList = new ArrayList<byte[]>();
 
 
     // Create a variable to hold the total number of bytes in the data.
-    int totalBytes = 0;
+    long totalBytes = 0L;
 
 
     // Create a variable that will be used in reading chunk size data.
@@ -2516,25 +3433,41 @@ public class HTTPClient
 
 
       // Now we should know the chunk size.  If it is zero, then we don't need
-      // to continue.
+      // to continue other than to skip over any trailer.
       if (chunkSize == 0)
       {
+        skipChunkedTrailer(dataRead, bufferPosInfo, inputStream);
         break;
       }
 
 
-      // Read the actual chunk data and store it in the array list.
-      byte[] chunkData = new byte[chunkSize];
-      readBytes(dataRead, bufferPosInfo, inputStream, chunkData);
-      dataList.add(chunkData);
+      // Read the actual chunk data and store it in the array list, or discard
+      // it if it is not to be retained.
+      if (discard)
+      {
+        discardBytes(dataRead, bufferPosInfo, inputStream, chunkSize);
+      }
+      else
+      {
+        byte[] chunkData = new byte[chunkSize];
+        readBytes(dataRead, bufferPosInfo, inputStream, chunkData);
+        dataList.add(chunkData);
+      }
       totalBytes += chunkSize;
     }
 
 
+    if (discard)
+    {
+      finishDiscarding(response, totalBytes);
+      return bufferPosInfo[0];
+    }
+
+
     // Assemble the contents of all the buffers into a big array and store that
     // array in the response.
     int startPos = 0;
-    byte[] contentData = new byte[totalBytes];
+    byte[] contentData = new byte[(int) totalBytes];
     for (int i=0; i < dataList.size(); i++)
     {
       byte[] chunkData = dataList.get(i);
@@ -2542,6 +3475,52 @@ public class HTTPClient
       startPos += chunkData.length;
     }
     response.setResponseData(contentData);
+    return bufferPosInfo[0];
+  }
+
+
+
+  /**
+   * Reads and ignores the trailer that follows the last chunk of a response
+   * using chunked encoding, up to and including the empty line that ends it.
+   *
+   * @param  buffer         The byte buffer from which to read the trailer if
+   *                        possible.
+   * @param  bufferPosInfo  Information about the current position and end of
+   *                        the data in the byte buffer.
+   * @param  inputStream    The input stream from which to read the trailer if
+   *                        there is no more unread data in the buffer.
+   *
+   * @throws  IOException  If a problem occurs while trying to read data from
+   *                       the input stream.
+   */
+  private void skipChunkedTrailer(byte[] buffer, int[] bufferPosInfo,
+                                  InputStream inputStream)
+          throws IOException
+  {
+    int lineLength = 0;
+    while (true)
+    {
+      int nextByte = nextByte(buffer, bufferPosInfo, inputStream);
+      if (nextByte < 0)
+      {
+        // Some servers close the connection without sending the final line.
+        return;
+      }
+      else if (nextByte == '\n')
+      {
+        if (lineLength == 0)
+        {
+          return;
+        }
+
+        lineLength = 0;
+      }
+      else if (nextByte != '\r')
+      {
+        lineLength++;
+      }
+    }
   }
 
 
@@ -2658,6 +3637,8 @@ public class HTTPClient
    *                        array that should be considered part of the
    *                        response (the number of header bytes is included in
    *                        this count).
+   * @param  discard        Indicates whether the data should be discarded
+   *                        rather than retained in the response.
    *
    * @throws  IOException  If a problem occurs while reading data from the
    *                       server.
@@ -2666,9 +3647,18 @@ public class HTTPClient
                                                    InputStream inputStream,
                                                    byte[] dataRead,
                                                    int dataStartPos,
-                                                   int dataBytesRead)
+                                                   int dataBytesRead,
+                                                   boolean discard)
           throws IOException
   {
+    if (discard)
+    {
+      discardContentDataUntilClose(response, inputStream, dataRead,
+                                   dataStartPos, dataBytesRead);
+      return;
+    }
+
+
     // Create an array list that we will use to hold the chunks of information
     // read from the server.
     ArrayList<ByteBuffer> bufferList = new ArrayList<ByteBuffer>();
@@ -2736,6 +3726,238 @@ public class HTTPClient
 
 
 
+  /**
+   * Indicates whether the content of the provided response should be discarded
+   * rather than retained.  HTML documents are retained if their associated
+   * files may need to be retrieved.
+   *
+   * @param  response  The response for which to make the determination.  Its
+   *                   headers must have been read.
+   *
+   * @return  {@code true} if the content should be discarded, or
+   *          {@code false} if it should be retained.
+   */
+  boolean shouldDiscardContent(HTTPResponse response)
+  {
+    if (! discardContent)
+    {
+      return false;
+    }
+
+    if (retrieveAssociatedFiles || isFetchClient)
+    {
+      String contentType = response.getContentType();
+      if ((contentType != null) &&
+          contentType.toLowerCase().contains("text/html"))
+      {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+
+
+  /**
+   * Prepares to discard the content of a response, allocating the discard
+   * buffer if necessary and resetting the checksum.
+   */
+  void startDiscarding()
+  {
+    if (discardBuffer == null)
+    {
+      discardBuffer = new byte[DISCARD_BUFFER_SIZE];
+    }
+
+    if (checksumContent)
+    {
+      if (contentChecksum == null)
+      {
+        contentChecksum = new CRC32();
+      }
+      else
+      {
+        contentChecksum.reset();
+      }
+    }
+  }
+
+
+
+  /**
+   * Processes data that is being discarded, updating the checksum if
+   * appropriate.
+   *
+   * @param  data    The array containing the data.
+   * @param  offset  The position in the array at which the data starts.
+   * @param  length  The number of bytes of data.
+   */
+  void discard(byte[] data, int offset, int length)
+  {
+    if (checksumContent)
+    {
+      contentChecksum.update(data, offset, length);
+    }
+  }
+
+
+
+  /**
+   * Records the size and checksum of the discarded content in the response.
+   *
+   * @param  response  The response whose content was discarded.
+   * @param  size      The number of bytes of content that were discarded.
+   */
+  void finishDiscarding(HTTPResponse response, long size)
+  {
+    if (checksumContent)
+    {
+      response.setDiscardedContent(size, contentChecksum.getValue());
+    }
+    else
+    {
+      response.setDiscardedContent(size, -1L);
+    }
+  }
+
+
+
+  /**
+   * Reads and discards the specified number of bytes, first from the provided
+   * buffer and then from the input stream.
+   *
+   * @param  buffer         The byte buffer from which to read the data if
+   *                        possible.
+   * @param  bufferPosInfo  Information about the current position and end of
+   *                        the data in the byte buffer.
+   * @param  inputStream    The input stream from which to read the data if
+   *                        there is no more unread data in the buffer.
+   * @param  length         The number of bytes to discard.
+   *
+   * @throws  IOException  If a problem occurs while trying to read data from
+   *                       the input stream.
+   */
+  private void discardBytes(byte[] buffer, int[] bufferPosInfo,
+                            InputStream inputStream, long length)
+          throws IOException
+  {
+    long remaining   = length;
+    int  bufferBytes = (int) Math.min(remaining,
+                                      (bufferPosInfo[1] - bufferPosInfo[0]));
+    if (bufferBytes > 0)
+    {
+      discard(buffer, bufferPosInfo[0], bufferBytes);
+      bufferPosInfo[0] += bufferBytes;
+      remaining        -= bufferBytes;
+    }
+
+    while (remaining > 0L)
+    {
+      int bytesRead = inputStream.read(discardBuffer, 0,
+           (int) Math.min(discardBuffer.length, remaining));
+      if (bytesRead < 0)
+      {
+        throw new IOException("Unexpected end of input stream while reading " +
+                              "data from the server");
+      }
+
+      discard(discardBuffer, 0, bytesRead);
+      remaining -= bytesRead;
+    }
+  }
+
+
+
+  /**
+   * Reads and discards the content of the response based on the content length
+   * provided by the server in the response header.
+   *
+   * @param  response       The response with which the data is associated.
+   * @param  inputStream    The input stream from which to read the response.
+   * @param  contentLength  The number of bytes that the server said are in the
+   *                        response.
+   * @param  dataRead       The data that we have already read, including the
+   *                        header.
+   * @param  dataStartPos   The position in the provided array at which the
+   *                        content data starts.
+   * @param  dataBytesRead  The total number of valid bytes in the provided
+   *                        array.
+   *
+   * @throws  IOException  If a problem occurs while reading data from the
+   *                       server.
+   */
+  private void discardContentDataUsingLength(HTTPResponse response,
+                                             InputStream inputStream,
+                                             int contentLength,
+                                             byte[] dataRead,
+                                             int dataStartPos,
+                                             int dataBytesRead)
+          throws IOException
+  {
+    startDiscarding();
+
+    int[] bufferPosInfo = new int[] { dataStartPos, dataBytesRead };
+    discardBytes(dataRead, bufferPosInfo, inputStream, contentLength);
+    finishDiscarding(response, contentLength);
+  }
+
+
+
+  /**
+   * Reads and discards the content of the response until the server closes the
+   * connection.
+   *
+   * @param  response       The response with which the data is associated.
+   * @param  inputStream    The input stream from which to read the response.
+   * @param  dataRead       The data that we have already read, including the
+   *                        header.
+   * @param  dataStartPos   The position in the provided array at which the
+   *                        content data starts.
+   * @param  dataBytesRead  The total number of valid bytes in the provided
+   *                        array.
+   */
+  private void discardContentDataUntilClose(HTTPResponse response,
+                                            InputStream inputStream,
+                                            byte[] dataRead, int dataStartPos,
+                                            int dataBytesRead)
+  {
+    startDiscarding();
+
+    long totalBytes    = 0L;
+    int  existingBytes = dataBytesRead - dataStartPos;
+    if (existingBytes > 0)
+    {
+      discard(dataRead, dataStartPos, existingBytes);
+      totalBytes += existingBytes;
+    }
+
+    while (true)
+    {
+      try
+      {
+        int bytesRead = inputStream.read(discardBuffer);
+        if (bytesRead < 0)
+        {
+          break;
+        }
+
+        discard(discardBuffer, 0, bytesRead);
+        totalBytes += bytesRead;
+      }
+      catch (IOException ioe)
+      {
+        // As when retaining the data, assume that this is the end of the
+        // stream.
+        break;
+      }
+    }
+
+    finishDiscarding(response, totalBytes);
+  }
+
+
+
   /**
    * Closes all open connections that are associated with this HTTP client.  The
    * client will still be available for use.
@@ -2753,6 +3975,22 @@ public class HTTPClient
     }
 
     socketHash.clear();
+
+    HTTPClient c = idleFetchClients.poll();
+    while (c != null)
+    {
+      c.closeAll();
+      c = idleFetchClients.poll();
+    }
+
+    synchronized (this)
+    {
+      if (fetchExecutor != null)
+      {
+        fetchExecutor.shutdown();
+        fetchExecutor = null;
+      }
+    }
   }
 
 
@@ -2774,6 +4012,11 @@ public class HTTPClient
         ((SSLSocket) s).getSession().invalidate();
       }
     }
+
+    for (HTTPClient c : idleFetchClients)
+    {
+      c.invalidateSSLSessions();
+    }
   }
 
 
@@ -0,0 +1,646 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.http;
+
+
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+
+
+/**
+ * This class defines a pool of connections that may be shared by any number of
+ * HTTP clients, so that a load can be generated against a server with fewer
+ * connections than there are client threads, and without the overhead of
+ * establishing a new connection for every request.  Connections are kept open
+ * across requests, and each may have several requests outstanding at once.
+ * With HTTP/1.1, those requests are pipelined on the connection and their
+ * responses are read in order.  With HTTP/2, they are multiplexed as separate
+ * streams.  HTTP/2 is negotiated with ALPN for HTTPS URLs, falling back to
+ * HTTP/1.1 if the server does not support it, and is used with prior knowledge
+ * (i.e., without an upgrade) for HTTP URLs.
+ * <BR><BR>
+ * Each client that uses the pool still keeps its own statistics and cookies,
+ * so a pool may be shared by all of the threads in a job.  The pool will open
+ * up to the configured number of connections to each server, and will then
+ * assign each request to the connection with the fewest outstanding requests.
+ * Once every connection has reached the maximum number of outstanding
+ * requests, additional requests will wait until one completes.  Proxies are
+ * not supported.
+ */
+public class HTTPConnectionPool
+{
+  /**
+   * The name of the protocol used for HTTP/1.1 connections.
+   */
+  public static final String PROTOCOL_HTTP_1_1 = "HTTP/1.1";
+
+
+
+  /**
+   * The name of the protocol used for HTTP/2 connections.
+   */
+  public static final String PROTOCOL_HTTP_2 = "HTTP/2";
+
+
+
+  /**
+   * The default maximum number of connections that will be established to
+   * each server.
+   */
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_SERVER = 4;
+
+
+
+  /**
+   * The default maximum number of requests that may be outstanding on each
+   * connection.
+   */
+  public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 16;
+
+
+
+  /**
+   * The maximum number of times that a request will be attempted if the
+   * connection used for it is closed before the server processes it.
+   */
+  private static final int MAX_ATTEMPTS = 3;
+
+
+
+  // The shared pools that have been created, mapped from the string
+  // representation of their configuration.
+  private static final HashMap<String,HTTPConnectionPool> sharedPools =
+       new HashMap<String,HTTPConnectionPool>();
+
+
+
+  // The connections that have been established, mapped from the keys for
+  // their servers.
+  private final HashMap<String,ArrayList<HTTPPooledConnection>> connections;
+
+  // Indicates whether to use HTTP/2 where possible.
+  private final boolean useHTTP2;
+
+  // The maximum number of requests that may be outstanding on each
+  // connection.
+  private final int maxConcurrentRequests;
+
+  // The maximum number of connections to establish to each server.
+  private final int maxConnectionsPerServer;
+
+  // Indicates whether this pool has been closed.
+  private boolean closed;
+
+  // The number of users of this pool if it is shared.
+  private int referenceCount;
+
+  // The key for this pool in the set of shared pools, if it is shared.
+  private String sharedKey;
+
+
+
+  /**
+   * Creates a new connection pool with the provided configuration.
+   *
+   * @param  protocol                 The protocol to use, which should be
+   *                                  either {@code PROTOCOL_HTTP_1_1} or
+   *                                  {@code PROTOCOL_HTTP_2}.
+   * @param  maxConnectionsPerServer  The maximum number of connections to
+   *                                  establish to each server.
+   * @param  maxConcurrentRequests    The maximum number of requests that may
+   *                                  be outstanding on each connection.  For
+   *                                  HTTP/1.1, this is the pipeline depth,
+   *                                  and a value of one disables pipelining.
+   *                                  For HTTP/2, the limit advertised by the
+   *                                  server will also be honored.
+   *
+   * @throws  HTTPException  If the provided configuration is not valid.
+   */
+  public HTTPConnectionPool(String protocol, int maxConnectionsPerServer,
+                            int maxConcurrentRequests)
+         throws HTTPException
+  {
+    if (PROTOCOL_HTTP_2.equalsIgnoreCase(protocol) ||
+        "h2".equalsIgnoreCase(protocol) || "h2c".equalsIgnoreCase(protocol))
+    {
+      useHTTP2 = true;
+    }
+    else if (PROTOCOL_HTTP_1_1.equalsIgnoreCase(protocol))
+    {
+      useHTTP2 = false;
+    }
+    else
+    {
+      throw new HTTPException("Unsupported connection pool protocol \"" +
+                              protocol + "\" -- must be " + PROTOCOL_HTTP_1_1 +
+                              " or " + PROTOCOL_HTTP_2);
+    }
+
+    if (maxConnectionsPerServer <= 0)
+    {
+      throw new HTTPException("The maximum number of connections per server " +
+                              "must be greater than zero");
+    }
+
+    if (maxConcurrentRequests <= 0)
+    {
+      throw new HTTPException("The maximum number of concurrent requests " +
+                              "per connection must be greater than zero");
+    }
+
+    this.maxConnectionsPerServer = maxConnectionsPerServer;
+    this.maxConcurrentRequests   = maxConcurrentRequests;
+
+    connections    = new HashMap<String,ArrayList<HTTPPooledConnection>>();
+    closed         = false;
+    referenceCount = 0;
+    sharedKey      = null;
+  }
+
+
+
+  /**
+   * Retrieves a connection pool with the provided configuration that is shared
+   * with all other callers in this JVM that request the same configuration.
+   * Each call to this method must be matched by a call to {@code release} once
+   * the pool is no longer needed, and the pool will be closed when it has been
+   * released by all of its users.
+   *
+   * @param  protocol                 The protocol to use, which should be
+   *                                  either {@code PROTOCOL_HTTP_1_1} or
+   *                                  {@code PROTOCOL_HTTP_2}.
+   * @param  maxConnectionsPerServer  The maximum number of connections to
+   *                                  establish to each server.
+   * @param  maxConcurrentRequests    The maximum number of requests that may
+   *                                  be outstanding on each connection.
+   *
+   * @return  The shared connection pool.
+   *
+   * @throws  HTTPException  If the provided configuration is not valid.
+   */
+  public static HTTPConnectionPool getSharedInstance(String protocol,
+                                        int maxConnectionsPerServer,
+                                        int maxConcurrentRequests)
+         throws HTTPException
+  {
+    synchronized (sharedPools)
+    {
+      String key = protocol.toLowerCase() + ':' + maxConnectionsPerServer +
+                   ':' + maxConcurrentRequests;
+      HTTPConnectionPool pool = sharedPools.get(key);
+      if (pool == null)
+      {
+        pool = new HTTPConnectionPool(protocol, maxConnectionsPerServer,
+                                      maxConcurrentRequests);
+        pool.sharedKey = key;
+        sharedPools.put(key, pool);
+      }
+
+      pool.referenceCount++;
+      return pool;
+    }
+  }
+
+
+
+  /**
+   * Indicates that the caller is no longer using this shared connection pool.
+   * The pool will be closed once all of its users have released it.  This has
+   * no effect for a pool that is not shared.
+   */
+  public void release()
+  {
+    synchronized (sharedPools)
+    {
+      if (sharedKey == null)
+      {
+        return;
+      }
+
+      referenceCount--;
+      if (referenceCount <= 0)
+      {
+        sharedPools.remove(sharedKey);
+        sharedKey = null;
+        close();
+      }
+    }
+  }
+
+
+
+  /**
+   * Indicates whether this pool will use HTTP/2 where possible.
+   *
+   * @return  {@code true} if this pool will use HTTP/2 where possible, or
+   *          {@code false} if it will only use HTTP/1.1.
+   */
+  public boolean useHTTP2()
+  {
+    return useHTTP2;
+  }
+
+
+
+  /**
+   * Retrieves the maximum number of connections that will be established to
+   * each server.
+   *
+   * @return  The maximum number of connections that will be established to
+   *          each server.
+   */
+  public int getMaxConnectionsPerServer()
+  {
+    return maxConnectionsPerServer;
+  }
+
+
+
+  /**
+   * Retrieves the maximum number of requests that may be outstanding on each
+   * connection.
+   *
+   * @return  The maximum number of requests that may be outstanding on each
+   *          connection.
+   */
+  public int getMaxConcurrentRequests()
+  {
+    return maxConcurrentRequests;
+  }
+
+
+
+  /**
+   * Retrieves the number of connections currently established by this pool.
+   *
+   * @return  The number of connections currently established by this pool.
+   */
+  public synchronized int getConnectionCount()
+  {
+    int count = 0;
+    for (ArrayList<HTTPPooledConnection> list : connections.values())
+    {
+      count += list.size();
+    }
+
+    return count;
+  }
+
+
+
+  /**
+   * Sends the provided request on behalf of the given client using a pooled
+   * connection, and reads the response.
+   *
+   * @param  client     The client on whose behalf the request is sent.  Its
+   *                    settings will be used when establishing connections,
+   *                    and its stat trackers and cookies will be updated.
+   * @param  request    The request to send.
+   * @param  keepStats  Indicates whether to update the stat trackers.
+   *
+   * @return  The response read from the server.
+   *
+   * @throws  HTTPException  If a problem occurs while processing the request.
+   */
+  HTTPResponse sendRequest(HTTPClient client, HTTPRequest request,
+                           boolean keepStats)
+           throws HTTPException
+  {
+    if (client.proxyHost != null)
+    {
+      throw new HTTPException("Proxies are not supported when using a " +
+                              "connection pool");
+    }
+
+    URL     url      = request.getBaseURL();
+    String  protocol = url.getProtocol().toLowerCase();
+    boolean useSSL   = protocol.equals("https");
+    int     port     = url.getPort();
+    if (port == -1)
+    {
+      port = (useSSL ? 443 : 80);
+    }
+
+    // If a connection is closed by the server before it has processed the
+    // request, then the request will be retried on another connection.  This
+    // commonly happens when the server closes idle connections or limits the
+    // number of requests per connection.
+    String serverKey = protocol + "://" + url.getHost() + ':' + port;
+    for (int attempt=1; ; attempt++)
+    {
+      HTTPPooledConnection connection =
+           acquireConnection(client, serverKey, url.getHost(), port, useSSL);
+
+      try
+      {
+        return connection.sendRequest(client, request, keepStats);
+      }
+      catch (HTTPPooledConnection.RequestNotProcessedException rnpe)
+      {
+        if (attempt >= MAX_ATTEMPTS)
+        {
+          throw rnpe;
+        }
+      }
+      finally
+      {
+        releaseConnection(connection);
+      }
+    }
+  }
+
+
+
+  /**
+   * Obtains a connection to the specified server with capacity for another
+   * request, establishing a new one or waiting for an outstanding request to
+   * complete if necessary.  The number of outstanding requests for the
+   * connection will be incremented.
+   *
+   * @param  client     The client whose settings should be used if a new
+   *                    connection is established.
+   * @param  serverKey  The key that identifies the server.
+   * @param  host       The address of the server.
+   * @param  port       The port of the server.
+   * @param  useSSL     Indicates whether the connection should be secured
+   *                    with SSL.
+   *
+   * @return  The connection to use for the request.
+   *
+   * @throws  HTTPException  If a connection cannot be obtained.
+   */
+  private synchronized HTTPPooledConnection acquireConnection(
+                            HTTPClient client, String serverKey, String host,
+                            int port, boolean useSSL)
+          throws HTTPException
+  {
+    while (true)
+    {
+      if (closed)
+      {
+        throw new HTTPException("The connection pool has been closed");
+      }
+
+      ArrayList<HTTPPooledConnection> list = connections.get(serverKey);
+      if (list == null)
+      {
+        list = new ArrayList<HTTPPooledConnection>(maxConnectionsPerServer);
+        connections.put(serverKey, list);
+      }
+
+      // Discard any connections that are no longer usable, and find the one
+      // with the fewest outstanding requests that can accept another.
+      HTTPPooledConnection best = null;
+      Iterator<HTTPPooledConnection> iterator = list.iterator();
+      while (iterator.hasNext())
+      {
+        HTTPPooledConnection c = iterator.next();
+        if (! c.isUsable())
+        {
+          iterator.remove();
+          if (c.outstandingRequests == 0)
+          {
+            c.close();
+          }
+          continue;
+        }
+
+        int limit = Math.min(maxConcurrentRequests,
+                             c.getServerConcurrencyLimit());
+        if ((c.outstandingRequests < limit) &&
+            ((best == null) ||
+             (c.outstandingRequests < best.outstandingRequests)))
+        {
+          best = c;
+        }
+      }
+
+      // Prefer an idle connection, then a new connection, and only then add to
+      // the requests outstanding on a busy connection.
+      if (((best == null) || (best.outstandingRequests > 0)) &&
+          (list.size() < maxConnectionsPerServer))
+      {
+        best = connect(client, serverKey, host, port, useSSL);
+        list.add(best);
+      }
+
+      if (best != null)
+      {
+        best.outstandingRequests++;
+        return best;
+      }
+
+      try
+      {
+        wait();
+      }
+      catch (InterruptedException ie)
+      {
+        throw new HTTPException("Interrupted while waiting for a pooled " +
+                                "connection to " + serverKey, ie);
+      }
+    }
+  }
+
+
+
+  /**
+   * Indicates that a request on the provided connection has completed.
+   *
+   * @param  connection  The connection on which the request was sent.
+   */
+  private synchronized void releaseConnection(HTTPPooledConnection connection)
+  {
+    connection.outstandingRequests--;
+    if ((connection.outstandingRequests == 0) && (! connection.isUsable()))
+    {
+      ArrayList<HTTPPooledConnection> list =
+           connections.get(connection.serverKey);
+      if (list != null)
+      {
+        list.remove(connection);
+      }
+
+      connection.close();
+    }
+
+    notifyAll();
+  }
+
+
+
+  /**
+   * Establishes a new connection to the specified server.
+   *
+   * @param  client     The client whose settings should be used for the
+   *                    connection.
+   * @param  serverKey  The key that identifies the server.
+   * @param  host       The address of the server.
+   * @param  port       The port of the server.
+   * @param  useSSL     Indicates whether the connection should be secured
+   *                    with SSL.
+   *
+   * @return  The new connection.
+   *
+   * @throws  HTTPException  If the connection cannot be established.
+   */
+  private HTTPPooledConnection connect(HTTPClient client, String serverKey,
+                                       String host, int port, boolean useSSL)
+          throws HTTPException
+  {
+    Socket socket = null;
+    try
+    {
+      InetAddress clientAddress = client.getClientAddress();
+      if (useSSL)
+      {
+        SSLSocketFactory socketFactory = client.getSSLSocketFactory();
+        if (socketFactory == null)
+        {
+          socketFactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+        }
+
+        if (clientAddress == null)
+        {
+          socket = socketFactory.createSocket(host, port);
+        }
+        else
+        {
+          socket = socketFactory.createSocket(host, port, clientAddress, 0);
+        }
+      }
+      else
+      {
+        if (clientAddress == null)
+        {
+          socket = new Socket(host, port);
+        }
+        else
+        {
+          socket = new Socket(host, port, clientAddress, 0);
+        }
+      }
+
+      socket.setTcpNoDelay(true);
+      socket.setSoTimeout(client.getSocketTimeout());
+
+      boolean http2 = useHTTP2;
+      if (useSSL)
+      {
+        http2 = negotiateProtocol((SSLSocket) socket);
+      }
+
+      if (http2)
+      {
+        return new HTTP2Connection(serverKey, socket);
+      }
+      else
+      {
+        return new HTTP1Connection(serverKey, socket);
+      }
+    }
+    catch (IOException ioe)
+    {
+      if (socket != null)
+      {
+        try
+        {
+          socket.close();
+        } catch (Exception e) {}
+      }
+
+      throw new HTTPException("Unable to establish connection to " +
+                              serverKey + " -- " + ioe, ioe);
+    }
+  }
+
+
+
+  /**
+   * Performs the SSL handshake on the provided socket, using ALPN to request
+   * HTTP/2 if appropriate.  ALPN is only available in Java 8 update 252 and
+   * later, so HTTP/1.1 will be used on earlier versions.
+   *
+   * @param  socket  The socket on which to perform the handshake.
+   *
+   * @return  {@code true} if HTTP/2 was negotiated, or {@code false} if
+   *          HTTP/1.1 should be used.
+   *
+   * @throws  IOException  If a problem occurs during the handshake.
+   */
+  private boolean negotiateProtocol(SSLSocket socket)
+          throws IOException
+  {
+    boolean alpnAvailable = false;
+    if (useHTTP2)
+    {
+      try
+      {
+        SSLParameters parameters = socket.getSSLParameters();
+        parameters.setApplicationProtocols(new String[] { "h2", "http/1.1" });
+        socket.setSSLParameters(parameters);
+        alpnAvailable = true;
+      }
+      catch (NoSuchMethodError nsme)
+      {
+        // ALPN is not supported by this JVM.
+      }
+    }
+
+    socket.startHandshake();
+
+    if (alpnAvailable)
+    {
+      return "h2".equals(socket.getApplicationProtocol());
+    }
+    else
+    {
+      return false;
+    }
+  }
+
+
+
+  /**
+   * Closes all connections in this pool.  Any requests still outstanding will
+   * fail, and the pool may not be used for any further requests.
+   */
+  public synchronized void close()
+  {
+    closed = true;
+
+    for (ArrayList<HTTPPooledConnection> list : connections.values())
+    {
+      for (HTTPPooledConnection connection : list)
+      {
+        connection.close();
+      }
+    }
+
+    connections.clear();
+    notifyAll();
+  }
+}
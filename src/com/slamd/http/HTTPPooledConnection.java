@@ -0,0 +1,138 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.http;
+
+
+
+/**
+ * This class defines the common interface for connections that are held in an
+ * {@link HTTPConnectionPool} and that may have several requests outstanding at
+ * once.  The number of outstanding requests is maintained by the pool while
+ * holding its lock.
+ */
+abstract class HTTPPooledConnection
+{
+  // The key that identifies the server to which this connection is
+  // established.
+  final String serverKey;
+
+  // The number of requests currently outstanding on this connection.  This is
+  // only accessed while holding the lock on the pool.
+  int outstandingRequests;
+
+
+
+  /**
+   * Creates a new pooled connection.
+   *
+   * @param  serverKey  The key that identifies the server to which this
+   *                    connection is established.
+   */
+  HTTPPooledConnection(String serverKey)
+  {
+    this.serverKey      = serverKey;
+    outstandingRequests = 0;
+  }
+
+
+
+  /**
+   * Retrieves the maximum number of requests that the server will allow to be
+   * outstanding on this connection at once.
+   *
+   * @return  The maximum number of requests that the server will allow to be
+   *          outstanding on this connection at once.
+   */
+  abstract int getServerConcurrencyLimit();
+
+
+
+  /**
+   * Indicates whether this connection may be used for new requests.
+   *
+   * @return  {@code true} if this connection may be used for new requests, or
+   *          {@code false} if it has been closed or is being shut down.
+   */
+  abstract boolean isUsable();
+
+
+
+  /**
+   * Sends the provided request over this connection and reads the response.
+   *
+   * @param  client     The client on whose behalf the request is sent.  Its
+   *                    stat trackers and cookies will be updated.
+   * @param  request    The request to send.
+   * @param  keepStats  Indicates whether to update the stat trackers.
+   *
+   * @return  The response read from the server.
+   *
+   * @throws  HTTPException  If a problem occurs while processing the request.
+   */
+  abstract HTTPResponse sendRequest(HTTPClient client, HTTPRequest request,
+                                    boolean keepStats)
+           throws HTTPException;
+
+
+
+  /**
+   * Closes this connection.  Any requests still outstanding will fail.
+   */
+  abstract void close();
+
+
+
+  /**
+   * This class defines an exception that indicates that a request could not be
+   * processed on a pooled connection but that it is known not to have been
+   * processed by the server, so that it may safely be retried on another
+   * connection.
+   */
+  static final class RequestNotProcessedException
+        extends HTTPException
+  {
+    /**
+     * The serial version UID for this serializable class.
+     */
+    private static final long serialVersionUID = 5207382164913524061L;
+
+
+
+    /**
+     * Creates a new request not processed exception with the provided message.
+     *
+     * @param  message  The message that explains the problem that occurred.
+     */
+    RequestNotProcessedException(String message)
+    {
+      super(message);
+    }
+
+
+
+    /**
+     * Creates a new request not processed exception with the provided message
+     * and cause.
+     *
+     * @param  message  The message that explains the problem that occurred.
+     * @param  cause    The underlying cause for this exception.
+     */
+    RequestNotProcessedException(String message, Throwable cause)
+    {
+      super(message, cause);
+    }
+  }
+}
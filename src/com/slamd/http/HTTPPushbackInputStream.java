@@ -0,0 +1,171 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.http;
+
+
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+
+/**
+ * This class defines an input stream that allows data that has been read to be
+ * pushed back so that it will be returned by subsequent reads.  It is used on
+ * pooled HTTP/1.1 connections, where a single read may return the end of one
+ * response along with the start of the next.  Unlike
+ * {@code java.io.PushbackInputStream}, a read that can be satisfied from
+ * pushed back data will never block waiting for more data from the underlying
+ * stream.
+ */
+final class HTTPPushbackInputStream
+      extends FilterInputStream
+{
+  // The data that has been pushed back.
+  private byte[] pushbackBuffer;
+
+  // The number of bytes of pushed back data that remain to be read.
+  private int pushbackLength;
+
+  // The position of the next byte of pushed back data to be read.
+  private int pushbackPos;
+
+
+
+  /**
+   * Creates a new pushback input stream that wraps the provided stream.
+   *
+   * @param  inputStream  The input stream to wrap.
+   */
+  HTTPPushbackInputStream(InputStream inputStream)
+  {
+    super(inputStream);
+
+    pushbackBuffer = new byte[0];
+    pushbackLength = 0;
+    pushbackPos    = 0;
+  }
+
+
+
+  /**
+   * Pushes back the specified data so that it will be returned before any
+   * further data from the underlying stream.
+   *
+   * @param  data    The array containing the data to push back.
+   * @param  offset  The position in the array at which the data starts.
+   * @param  length  The number of bytes to push back.
+   */
+  void unread(byte[] data, int offset, int length)
+  {
+    byte[] newBuffer = new byte[pushbackLength + length];
+    System.arraycopy(data, offset, newBuffer, 0, length);
+    System.arraycopy(pushbackBuffer, pushbackPos, newBuffer, length,
+                     pushbackLength);
+
+    pushbackBuffer = newBuffer;
+    pushbackLength = newBuffer.length;
+    pushbackPos    = 0;
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public int read()
+         throws IOException
+  {
+    if (pushbackLength > 0)
+    {
+      pushbackLength--;
+      return (pushbackBuffer[pushbackPos++] & 0xFF);
+    }
+
+    return in.read();
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public int read(byte[] b, int off, int len)
+         throws IOException
+  {
+    if (len == 0)
+    {
+      return 0;
+    }
+
+    if (pushbackLength > 0)
+    {
+      int bytesToCopy = Math.min(len, pushbackLength);
+      System.arraycopy(pushbackBuffer, pushbackPos, b, off, bytesToCopy);
+      pushbackPos    += bytesToCopy;
+      pushbackLength -= bytesToCopy;
+      return bytesToCopy;
+    }
+
+    return in.read(b, off, len);
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public int available()
+         throws IOException
+  {
+    return pushbackLength + in.available();
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public long skip(long n)
+         throws IOException
+  {
+    if (pushbackLength > 0)
+    {
+      int bytesToSkip = (int) Math.min(n, pushbackLength);
+      pushbackPos    += bytesToSkip;
+      pushbackLength -= bytesToSkip;
+      return bytesToSkip;
+    }
+
+    return in.skip(n);
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public boolean markSupported()
+  {
+    return false;
+  }
+}
@@ -534,95 +534,30 @@ public class HTTPRequest
    */
   public String generateHTTPRequest(HTTPClient client)
   {
-    StringBuilder buffer      = new StringBuilder();
-    StringBuilder paramBuffer = null;
+    return generateHTTPRequest(client, client.useKeepAlive);
+  }
 
-    String baseURLStr;
-    if (client.proxyHost == null)
-    {
-      baseURLStr = baseURL.getFile();
-    }
-    else
-    {
-      baseURLStr = baseURL.toExternalForm();
-    }
 
-    if (isGet)
-    {
-      buffer.append("GET ");
-      buffer.append(baseURLStr);
 
-      if (! parameterNames.isEmpty())
-      {
-        if (baseURL.getQuery() == null)
-        {
-          buffer.append('?');
-          buffer.append(parameterNames.get(0));
-          buffer.append('=');
-          buffer.append(encodeValue(parameterValues.get(0)));
-
-          for (int i=1; i < parameterNames.size(); i++)
-          {
-            buffer.append('&');
-            buffer.append(parameterNames.get(i));
-            buffer.append('=');
-            buffer.append(encodeValue(parameterValues.get(i)));
-          }
-        }
-        else
-        {
-          for (int i=0; i < parameterNames.size(); i++)
-          {
-            buffer.append('&');
-            buffer.append(parameterNames.get(i));
-            buffer.append('=');
-            buffer.append(encodeValue(parameterValues.get(i)));
-          }
-        }
-      }
-
-      buffer.append(" HTTP/1.1\r\n");
-    }
-    else
-    {
-      buffer.append("POST ");
-      buffer.append(baseURLStr);
-      buffer.append(" HTTP/1.1\r\n");
-
-      if (! parameterNames.isEmpty())
-      {
-        String name = parameterNames.get(0);
-        if ((name == null) || (name.length() == 0))
-        {
-          paramBuffer = new StringBuilder();
-          paramBuffer.append(parameterValues.get(0));
-        }
-        else
-        {
-          paramBuffer = new StringBuilder();
-          paramBuffer.append(parameterNames.get(0));
-          paramBuffer.append('=');
-          paramBuffer.append(encodeValue(parameterValues.get(0)));
-        }
+  /**
+   * Generates the string that should be sent to the HTTP server or proxy to
+   * send this request, using the specified connection handling.
+   *
+   * @param  client     The client that will be sending the request.
+   * @param  keepAlive  Indicates whether to ask the server to keep the
+   *                    connection open after the response.
+   *
+   * @return  The string for sending to the HTTP server or proxy.
+   */
+  String generateHTTPRequest(HTTPClient client, boolean keepAlive)
+  {
+    StringBuilder buffer = new StringBuilder();
+    String        body   = getRequestBody();
 
-        for (int i=1; i < parameterNames.size(); i++)
-        {
-          name = parameterNames.get(i);
-          if ((name == null) || (name.length() == 0))
-          {
-            paramBuffer.append('&');
-            paramBuffer.append(parameterValues.get(i));
-          }
-          else
-          {
-            paramBuffer.append('&');
-            paramBuffer.append(parameterNames.get(i));
-            paramBuffer.append('=');
-            paramBuffer.append(encodeValue(parameterValues.get(i)));
-          }
-        }
-      }
-    }
+    buffer.append(getRequestMethod());
+    buffer.append(' ');
+    buffer.append(getRequestTarget(client.proxyHost != null));
+    buffer.append(" HTTP/1.1\r\n");
 
     buffer.append("Host: ");
     buffer.append(baseURL.getHost());
@@ -634,7 +569,7 @@ public class HTTPRequest
     buffer.append("\r\n");
 
     buffer.append("Connection: ");
-    if (client.useKeepAlive)
+    if (keepAlive)
     {
       buffer.append("Keep-Alive\r\n");
     }
@@ -648,19 +583,221 @@ public class HTTPRequest
       buffer.append("Accept-Encoding: gzip\r\n");
     }
 
-    if (paramBuffer != null)
+    if (body != null)
     {
       buffer.append("Content-Length: ");
-      buffer.append(paramBuffer.length());
+      buffer.append(body.length());
       buffer.append("\r\n");
     }
-    else if (body != null)
+
+    for (String[] header : getHeaders(client, true))
     {
-      buffer.append("Content-Length: ");
-      buffer.append(body.length());
+      buffer.append(header[0]);
+      buffer.append(": ");
+      buffer.append(header[1]);
       buffer.append("\r\n");
     }
 
+    buffer.append("\r\n");
+
+    if (body != null)
+    {
+      buffer.append(body);
+    }
+
+    return buffer.toString();
+  }
+
+
+
+  /**
+   * Generates the header list that should be sent to an HTTP/2 server for this
+   * request, including the pseudo-header fields.  Header names will be in
+   * lowercase, and headers that are specific to HTTP/1.1 connections will be
+   * omitted.
+   *
+   * @param  client  The client that will be sending the request.
+   *
+   * @return  The header list for this request, with each element holding a
+   *          name and a value.
+   */
+  ArrayList<String[]> generateHTTP2Headers(HTTPClient client)
+  {
+    ArrayList<String[]> headers = new ArrayList<String[]>();
+
+    String authority = baseURL.getHost();
+    if (baseURL.getPort() > 0)
+    {
+      authority += ":" + baseURL.getPort();
+    }
+
+    headers.add(new String[] { ":method", getRequestMethod() });
+    headers.add(new String[] { ":scheme",
+                               baseURL.getProtocol().toLowerCase() });
+    headers.add(new String[] { ":authority", authority });
+    headers.add(new String[] { ":path", getRequestTarget(false) });
+
+    if (client.enableGZIP)
+    {
+      headers.add(new String[] { "accept-encoding", "gzip" });
+    }
+
+    String body = getRequestBody();
+    if (body != null)
+    {
+      headers.add(new String[] { "content-length",
+                                 String.valueOf(getBodyBytes().length) });
+    }
+
+    for (String[] header : getHeaders(client, false))
+    {
+      String name = header[0].toLowerCase();
+      if (name.equals("connection") || name.equals("host") ||
+          name.equals("keep-alive") || name.equals("proxy-connection") ||
+          name.equals("transfer-encoding") || name.equals("upgrade"))
+      {
+        continue;
+      }
+
+      headers.add(new String[] { name, header[1] });
+    }
+
+    return headers;
+  }
+
+
+
+  /**
+   * Retrieves the encoded body of this request, if any.
+   *
+   * @return  The encoded body of this request, or {@code null} if there is no
+   *          body.
+   */
+  byte[] getBodyBytes()
+  {
+    String body = getRequestBody();
+    if (body == null)
+    {
+      return null;
+    }
+    else
+    {
+      return StaticUtils.getBytes(body);
+    }
+  }
+
+
+
+  /**
+   * Retrieves the target of this request as it should appear in the request
+   * line, including any parameters for a GET request.
+   *
+   * @param  absolute  Indicates whether the absolute URL should be used, as is
+   *                   required when sending the request through a proxy.
+   *
+   * @return  The target of this request.
+   */
+  private String getRequestTarget(boolean absolute)
+  {
+    StringBuilder buffer = new StringBuilder();
+    if (absolute)
+    {
+      buffer.append(baseURL.toExternalForm());
+    }
+    else if (baseURL.getFile().length() == 0)
+    {
+      buffer.append('/');
+    }
+    else
+    {
+      buffer.append(baseURL.getFile());
+    }
+
+    if (isGet && (! parameterNames.isEmpty()))
+    {
+      if (baseURL.getQuery() == null)
+      {
+        buffer.append('?');
+      }
+      else
+      {
+        buffer.append('&');
+      }
+
+      for (int i=0; i < parameterNames.size(); i++)
+      {
+        if (i > 0)
+        {
+          buffer.append('&');
+        }
+
+        buffer.append(parameterNames.get(i));
+        buffer.append('=');
+        buffer.append(encodeValue(parameterValues.get(i)));
+      }
+    }
+
+    return buffer.toString();
+  }
+
+
+
+  /**
+   * Retrieves the body of this request.  For a POST request with parameters,
+   * this will be the encoded parameters.
+   *
+   * @return  The body of this request, or {@code null} if there is no body.
+   */
+  private String getRequestBody()
+  {
+    if (isGet || parameterNames.isEmpty())
+    {
+      return body;
+    }
+
+    StringBuilder paramBuffer = new StringBuilder();
+    for (int i=0; i < parameterNames.size(); i++)
+    {
+      if (i > 0)
+      {
+        paramBuffer.append('&');
+      }
+
+      String name = parameterNames.get(i);
+      if ((name == null) || (name.length() == 0))
+      {
+        paramBuffer.append(parameterValues.get(i));
+      }
+      else
+      {
+        paramBuffer.append(name);
+        paramBuffer.append('=');
+        paramBuffer.append(encodeValue(parameterValues.get(i)));
+      }
+    }
+
+    return paramBuffer.toString();
+  }
+
+
+
+  /**
+   * Retrieves the headers to include in this request after the headers that
+   * describe the connection and content.  This includes the common headers
+   * defined in the client, the headers defined in this request, any
+   * authentication headers, and any cookies.
+   *
+   * @param  client            The client that will be sending the request.
+   * @param  includeProxyAuth  Indicates whether to include the proxy
+   *                           authentication header if appropriate.
+   *
+   * @return  The headers to include in this request, with each element holding
+   *          a name and a value.
+   */
+  private ArrayList<String[]> getHeaders(HTTPClient client,
+                                         boolean includeProxyAuth)
+  {
+    ArrayList<String[]> headers = new ArrayList<String[]>();
     boolean hasContentType = false;
 
     Iterator<String> iterator = client.commonHeaderMap.keySet().iterator();
@@ -674,10 +811,8 @@ public class HTTPRequest
 
       if (headerMap.get(headerName) == null)
       {
-        buffer.append(headerName);
-        buffer.append(": ");
-        buffer.append(client.commonHeaderMap.get(headerName));
-        buffer.append("\r\n");
+        headers.add(new String[] { headerName,
+                                   client.commonHeaderMap.get(headerName) });
       }
     }
 
@@ -690,10 +825,7 @@ public class HTTPRequest
         hasContentType = true;
       }
 
-      buffer.append(headerName);
-      buffer.append(": ");
-      buffer.append(headerMap.get(headerName));
-      buffer.append("\r\n");
+      headers.add(new String[] { headerName, headerMap.get(headerName) });
     }
 
 
@@ -701,57 +833,46 @@ public class HTTPRequest
     // then automatically include a default content type.
     if ((! isGet) && (! hasContentType))
     {
-      buffer.append("Content-Type: application/x-www-form-urlencoded\r\n");
+      headers.add(new String[] { "Content-Type",
+                                 "application/x-www-form-urlencoded" });
     }
 
 
-    if ((client.proxyAuthID != null) && (client.proxyAuthPW != null))
+    if (includeProxyAuth && (client.proxyAuthID != null) &&
+        (client.proxyAuthPW != null))
     {
       String authStr = client.proxyAuthID + ':' + client.proxyAuthPW;
-      buffer.append(HTTPClient.PROXY_AUTH_HEADER_PREFIX);
-      buffer.append(Base64.encode(StaticUtils.getBytes(authStr)));
-      buffer.append("\r\n");
+      headers.add(new String[] { "Proxy-Authorization",
+           "Basic " + Base64.encode(StaticUtils.getBytes(authStr)) });
     }
 
     if ((client.authID != null) && (client.authPW != null))
     {
       String authStr = client.authID + ':' + client.authPW;
-      buffer.append(HTTPClient.AUTH_HEADER_PREFIX);
-      buffer.append(Base64.encode(StaticUtils.getBytes(authStr)));
-      buffer.append("\r\n");
+      headers.add(new String[] { "Authorization",
+           "Basic " + Base64.encode(StaticUtils.getBytes(authStr)) });
     }
 
     HTTPCookie[] cookies = client.getCookies(baseURL);
     if (cookies.length > 0)
     {
-      buffer.append("Cookie: ");
-      buffer.append(cookies[0].getName());
-      buffer.append('=');
-      buffer.append(cookies[0].getValue());
+      StringBuilder cookieBuffer = new StringBuilder();
+      cookieBuffer.append(cookies[0].getName());
+      cookieBuffer.append('=');
+      cookieBuffer.append(cookies[0].getValue());
 
       for (int i=1; i < cookies.length; i++)
       {
-        buffer.append("; ");
-        buffer.append(cookies[i].getName());
-        buffer.append('=');
-        buffer.append(cookies[i].getValue());
+        cookieBuffer.append("; ");
+        cookieBuffer.append(cookies[i].getName());
+        cookieBuffer.append('=');
+        cookieBuffer.append(cookies[i].getValue());
       }
 
-      buffer.append("\r\n");
-    }
-
-    buffer.append("\r\n");
-
-    if (paramBuffer != null)
-    {
-      buffer.append(paramBuffer);
-    }
-    else
-    {
-      buffer.append(body);
+      headers.add(new String[] { "Cookie", cookieBuffer.toString() });
     }
 
-    return buffer.toString();
+    return headers;
   }
 
 
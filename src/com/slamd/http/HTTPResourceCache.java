@@ -0,0 +1,403 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.http;
+
+
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.TimeZone;
+
+
+
+/**
+ * This class defines an in-memory cache that an HTTP client may use to emulate
+ * the way that a Web browser caches the files associated with HTML documents.
+ * It does not hold any content, but only the information needed to decide
+ * whether a file must be requested again:  how long the cached copy may be
+ * used without contacting the server (based on the Cache-Control, Expires,
+ * and Last-Modified headers), and the ETag and Last-Modified validators that
+ * may be used to revalidate a stale copy with a conditional request.  Each
+ * cache is intended to represent a single simulated user, and all methods are
+ * threadsafe so that the associated files for a page may be retrieved in
+ * parallel.
+ */
+public class HTTPResourceCache
+{
+  /**
+   * The default maximum number of entries that will be held in the cache.
+   */
+  public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+
+
+  /**
+   * The result that indicates that a file could be used from the cache without
+   * contacting the server.
+   */
+  public static final String RESULT_CACHE_HIT = "Fresh in Cache";
+
+
+
+  /**
+   * The result that indicates that a stale cached copy of a file was
+   * revalidated by the server with a "304 Not Modified" response.
+   */
+  public static final String RESULT_NOT_MODIFIED = "Not Modified";
+
+
+
+  /**
+   * The result that indicates that a file was retrieved from the server.
+   */
+  public static final String RESULT_RETRIEVED = "Retrieved";
+
+
+
+  /**
+   * The result that indicates that an error occurred while trying to retrieve
+   * a file.
+   */
+  public static final String RESULT_ERROR = "Error";
+
+
+
+  /**
+   * The fraction of the time since a file was last modified that will be used
+   * as its freshness lifetime if the server did not provide an explicit one.
+   */
+  private static final double HEURISTIC_FRESHNESS_FRACTION = 0.1;
+
+
+
+  // The formatter used to parse and generate HTTP dates.
+  private final SimpleDateFormat dateFormat;
+
+  // The cached entries, in least-recently-used order.
+  private final LinkedHashMap<String,CacheEntry> entries;
+
+
+
+  /**
+   * Creates a new, empty resource cache with the default maximum number of
+   * entries.
+   */
+  public HTTPResourceCache()
+  {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+
+
+  /**
+   * Creates a new, empty resource cache with the specified maximum number of
+   * entries.
+   *
+   * @param  maxEntries  The maximum number of entries to hold in the cache.
+   *                     When the cache is full, the least recently used entry
+   *                     will be discarded.
+   */
+  public HTTPResourceCache(final int maxEntries)
+  {
+    dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz",
+                                      Locale.US);
+    dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+    entries = new LinkedHashMap<String,CacheEntry>(16, 0.75f, true)
+    {
+      private static final long serialVersionUID = 1L;
+
+      @Override()
+      protected boolean removeEldestEntry(
+                             final Map.Entry<String,CacheEntry> eldest)
+      {
+        return (size() > maxEntries);
+      }
+    };
+  }
+
+
+
+  /**
+   * Indicates whether the cache holds a copy of the specified URL that may
+   * still be used without contacting the server.
+   *
+   * @param  url  The URL for which to make the determination.
+   *
+   * @return  {@code true} if a fresh copy of the URL is cached, or
+   *          {@code false} if the URL must be requested from the server.
+   */
+  public synchronized boolean isFresh(final String url)
+  {
+    final CacheEntry entry = entries.get(url);
+    return ((entry != null) &&
+            (entry.expirationTime > System.currentTimeMillis()));
+  }
+
+
+
+  /**
+   * Adds the headers needed to conditionally revalidate a stale cached copy of
+   * the URL to the provided request.  If the cache does not hold any validators
+   * for the URL, then the request will not be altered.
+   *
+   * @param  url      The URL being requested.
+   * @param  request  The request to which the headers should be added.
+   */
+  public synchronized void addValidators(final String url,
+                                         final HTTPRequest request)
+  {
+    final CacheEntry entry = entries.get(url);
+    if (entry == null)
+    {
+      return;
+    }
+
+    if (entry.eTag != null)
+    {
+      request.setHeader("If-None-Match", entry.eTag);
+    }
+
+    if (entry.lastModified != null)
+    {
+      request.setHeader("If-Modified-Since", entry.lastModified);
+    }
+  }
+
+
+
+  /**
+   * Updates the cache with the information in the response received for the
+   * specified URL.
+   *
+   * @param  url       The URL that was requested.
+   * @param  response  The response received from the server.
+   *
+   * @return  The result of the request, which will be either
+   *          {@code RESULT_NOT_MODIFIED}, {@code RESULT_RETRIEVED}, or
+   *          {@code RESULT_ERROR}.
+   */
+  public synchronized String update(final String url,
+                                    final HTTPResponse response)
+  {
+    final int statusCode = response.getStatusCode();
+    final long now = System.currentTimeMillis();
+
+    if (statusCode == 304)
+    {
+      final CacheEntry entry = entries.get(url);
+      if (entry != null)
+      {
+        final String eTag = response.getHeader("etag");
+        if (eTag != null)
+        {
+          entry.eTag = eTag;
+        }
+
+        final String lastModified = response.getHeader("last-modified");
+        if (lastModified != null)
+        {
+          entry.lastModified = lastModified;
+        }
+
+        final long lifetime = getFreshnessLifetime(response, entry, now);
+        if (lifetime < 0L)
+        {
+          entries.remove(url);
+        }
+        else
+        {
+          entry.expirationTime = now + lifetime;
+        }
+      }
+
+      return RESULT_NOT_MODIFIED;
+    }
+
+    if ((statusCode < 200) || (statusCode >= 400))
+    {
+      entries.remove(url);
+      return RESULT_ERROR;
+    }
+
+    if (statusCode != 200)
+    {
+      entries.remove(url);
+      return RESULT_RETRIEVED;
+    }
+
+    final CacheEntry entry = new CacheEntry();
+    entry.eTag         = response.getHeader("etag");
+    entry.lastModified = response.getHeader("last-modified");
+
+    final long lifetime = getFreshnessLifetime(response, entry, now);
+    if ((lifetime < 0L) ||
+        ((lifetime == 0L) && (entry.eTag == null) &&
+         (entry.lastModified == null)))
+    {
+      // The response may not be stored, or there would be no way to use it.
+      entries.remove(url);
+    }
+    else
+    {
+      entry.expirationTime = now + lifetime;
+      entries.put(url, entry);
+    }
+
+    return RESULT_RETRIEVED;
+  }
+
+
+
+  /**
+   * Removes all entries from the cache.
+   */
+  public synchronized void clear()
+  {
+    entries.clear();
+  }
+
+
+
+  /**
+   * Retrieves the number of entries currently held in the cache.
+   *
+   * @return  The number of entries currently held in the cache.
+   */
+  public synchronized int size()
+  {
+    return entries.size();
+  }
+
+
+
+  /**
+   * Determines how long a response may be used from the cache without
+   * revalidating it with the server.
+   *
+   * @param  response  The response for which to make the determination.
+   * @param  entry     The cache entry with the validators for the response.
+   * @param  now       The time the response was received.
+   *
+   * @return  The freshness lifetime in milliseconds, zero if the response must
+   *          be revalidated before each use, or a negative value if the
+   *          response may not be stored at all.
+   */
+  private long getFreshnessLifetime(final HTTPResponse response,
+                                    final CacheEntry entry, final long now)
+  {
+    final String cacheControl = response.getHeader("cache-control");
+    if (cacheControl != null)
+    {
+      long maxAge = -1L;
+      final StringTokenizer tokenizer =
+           new StringTokenizer(cacheControl.toLowerCase(), ",");
+      while (tokenizer.hasMoreTokens())
+      {
+        final String directive = tokenizer.nextToken().trim();
+        if (directive.equals("no-store"))
+        {
+          return -1L;
+        }
+        else if (directive.equals("no-cache"))
+        {
+          return 0L;
+        }
+        else if (directive.startsWith("max-age="))
+        {
+          try
+          {
+            maxAge = Long.parseLong(directive.substring(8).trim());
+          } catch (NumberFormatException nfe) {}
+        }
+      }
+
+      if (maxAge >= 0L)
+      {
+        return (maxAge * 1000L);
+      }
+    }
+
+    final long date = parseDate(response.getHeader("date"));
+    final long expires = parseDate(response.getHeader("expires"));
+    if (response.getHeader("expires") != null)
+    {
+      // An invalid Expires value means that the response is already expired.
+      final long base = ((date > 0L) ? date : now);
+      return Math.max(0L, (expires - base));
+    }
+
+    final long lastModified = parseDate(entry.lastModified);
+    if (lastModified > 0L)
+    {
+      final long base = ((date > 0L) ? date : now);
+      return Math.max(0L,
+           (long) ((base - lastModified) * HEURISTIC_FRESHNESS_FRACTION));
+    }
+
+    return 0L;
+  }
+
+
+
+  /**
+   * Parses the provided HTTP date value.
+   *
+   * @param  value  The value to parse.  It may be {@code null}.
+   *
+   * @return  The parsed time, or zero if the value was {@code null} or could
+   *          not be parsed.
+   */
+  private long parseDate(final String value)
+  {
+    if (value == null)
+    {
+      return 0L;
+    }
+
+    try
+    {
+      final Date d = dateFormat.parse(value.trim());
+      return d.getTime();
+    }
+    catch (ParseException pe)
+    {
+      return 0L;
+    }
+  }
+
+
+
+  /**
+   * This class holds the information cached for a single URL.
+   */
+  private static final class CacheEntry
+  {
+    // The time at which the cached copy will become stale.
+    private long expirationTime;
+
+    // The entity tag provided by the server, if any.
+    private String eTag;
+
+    // The Last-Modified value provided by the server, if any.
+    private String lastModified;
+  }
+}
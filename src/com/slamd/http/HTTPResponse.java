@@ -44,6 +44,10 @@ public class HTTPResponse
   // The values of the headers included in this response.
   private ArrayList<String> headerValueList;
 
+  // Indicates whether the content of this response was read and discarded
+  // rather than retained.
+  private boolean contentDiscarded;
+
   // The actual data associated with this response.
   private byte[] responseData;
 
@@ -53,6 +57,12 @@ public class HTTPResponse
   // The number of bytes contained in the content of the response.
   private int contentLength;
 
+  // The CRC-32 checksum of the discarded content, or -1 if none was computed.
+  private long contentChecksum;
+
+  // The number of bytes of content that were read and discarded.
+  private long discardedContentSize;
+
   // The HTTP status code for the response.
   private int statusCode;
 
@@ -91,6 +101,11 @@ public class HTTPResponse
     contentType     = null;
     contentLength   = -1;
     responseData    = new byte[0];
+
+    contentDiscarded     = false;
+    contentChecksum      = -1L;
+    discardedContentSize = 0L;
+
     cookieValueList = new ArrayList<String>();
     headerNameList  = new ArrayList<String>();
     headerValueList = new ArrayList<String>();
@@ -313,6 +328,73 @@ public class HTTPResponse
 
 
 
+  /**
+   * Indicates that the content of this response was read from the server but
+   * not retained.  The response data will be empty.
+   *
+   * @param  size      The number of bytes of content that were read.
+   * @param  checksum  The CRC-32 checksum of the content, or -1 if no checksum
+   *                   was computed.
+   */
+  void setDiscardedContent(long size, long checksum)
+  {
+    contentDiscarded     = true;
+    discardedContentSize = size;
+    contentChecksum      = checksum;
+    responseData         = new byte[0];
+  }
+
+
+
+  /**
+   * Indicates whether the content of this response was read from the server
+   * and discarded rather than retained.
+   *
+   * @return  {@code true} if the content was discarded, or {@code false} if it
+   *          is available through <CODE>getResponseData()</CODE>.
+   */
+  public boolean contentDiscarded()
+  {
+    return contentDiscarded;
+  }
+
+
+
+  /**
+   * Retrieves the size in bytes of the content of this response.  If the
+   * content was discarded, then this will be the number of bytes read from the
+   * server, before any decompression.  Otherwise, it will be the size of the
+   * response data.
+   *
+   * @return  The size in bytes of the content of this response.
+   */
+  public long getContentSize()
+  {
+    if (contentDiscarded)
+    {
+      return discardedContentSize;
+    }
+    else
+    {
+      return responseData.length;
+    }
+  }
+
+
+
+  /**
+   * Retrieves the CRC-32 checksum of the content of this response, if it was
+   * discarded and the client was configured to compute a checksum.
+   *
+   * @return  The CRC-32 checksum of the content, or -1 if none is available.
+   */
+  public long getContentChecksum()
+  {
+    return contentChecksum;
+  }
+
+
+
   /**
    * Retrieves the content length associated with this response.
    *
@@ -363,7 +445,8 @@ public class HTTPResponse
    */
   public HTMLDocument getHTMLDocument()
   {
-    if ((htmlDocument == null) && (contentType != null) &&
+    if ((htmlDocument == null) && (! contentDiscarded) &&
+        (contentType != null) &&
         (contentType.toLowerCase().contains("text/html")))
     {
       parseAsHTMLDocument(requestURL);
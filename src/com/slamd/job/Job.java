@@ -17,6 +17,7 @@ package com.slamd.job;
 
 
 
+import java.io.ByteArrayInputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -31,6 +32,8 @@ import com.unboundid.asn1.ASN1Element;
 import com.unboundid.asn1.ASN1Integer;
 import com.unboundid.asn1.ASN1OctetString;
 import com.unboundid.asn1.ASN1Sequence;
+import com.unboundid.asn1.ASN1StreamReader;
+import com.unboundid.asn1.ASN1StreamReaderSequence;
 
 import com.slamd.common.Constants;
 import com.slamd.common.SLAMDException;
@@ -38,6 +41,8 @@ import com.slamd.db.DecodeException;
 import com.slamd.message.JobCompletedMessage;
 import com.slamd.message.JobControlResponseMessage;
 import com.slamd.message.JobResponseMessage;
+import com.slamd.message.RateQuotaMessage;
+import com.slamd.message.RateReportMessage;
 import com.slamd.parameter.LabelParameter;
 import com.slamd.parameter.Parameter;
 import com.slamd.parameter.ParameterList;
@@ -46,9 +51,12 @@ import com.slamd.parameter.StringParameter;
 import com.slamd.resourcemonitor.LegacyResourceMonitor;
 import com.slamd.resourcemonitor.ResourceMonitor;
 import com.slamd.server.ClientConnection;
+import com.slamd.server.CoordinatedRateAllocator;
+import com.slamd.server.JobProfileSummary;
 import com.slamd.server.RealTimeJobStats;
 import com.slamd.server.ResourceMonitorClientConnection;
 import com.slamd.server.SLAMDServer;
+import com.slamd.server.UploadedFile;
 import com.slamd.stat.ResourceMonitorStatTracker;
 import com.slamd.stat.StatEncoder;
 import com.slamd.stat.StatTracker;
@@ -186,6 +194,22 @@ public final class Job
 
 
 
+  /**
+   * The name of the encoded element that holds the flight recorder settings
+   * that the clients should use to profile the job.
+   */
+  private static final String ELEMENT_PROFILE_SETTINGS = "profile_settings";
+
+
+
+  /**
+   * The maximum number of methods to include in the profile summary written
+   * to the job's log when it has completed.
+   */
+  private static final int MAX_PROFILE_SUMMARY_METHODS = 20;
+
+
+
   /**
    * The name of the encoded element that holds the number of threads per
    * client.
@@ -264,7 +288,7 @@ public final class Job
   /**
    * The name of the encoded element that holds the job statistics.
    */
-  private static final String ELEMENT_STATS = "stats";
+  public static final String ELEMENT_STATS = "stats";
 
 
 
@@ -279,7 +303,7 @@ public final class Job
   /**
    * The name of the encoded element that holds resource monitor statistics.
    */
-  private static final String ELEMENT_RESOURCE_MONITOR_STATS = "resource_stats";
+  public static final String ELEMENT_RESOURCE_MONITOR_STATS = "resource_stats";
 
 
 
@@ -380,9 +404,16 @@ public final class Job
   // this job.
   private ClientConnection[] clientConnections;
 
+  // The allocator used to divide the aggregate rate among clients for jobs
+  // that use coordinated rate limiting.
+  private CoordinatedRateAllocator rateAllocator;
+
   // The real-time stats associated with this job.
   private RealTimeJobStats realTimeStats;
 
+  // The summary of the flight recordings returned by the clients, if any.
+  private JobProfileSummary profileSummary;
+
   // The set of connections to the resource monitor clients for this job.
   private ResourceMonitorClientConnection[] monitorConnections;
 
@@ -411,6 +442,10 @@ public final class Job
   // The job ID of the optimizing job with which this job is associated.
   private String optimizingJobID;
 
+  // The flight recorder settings that the clients should use to profile the
+  // job, if any.
+  private String profileSettings;
+
   // The addresses of the users that should be notified when this job is
   // complete.
   private String[] notifyAddresses;
@@ -1064,6 +1099,38 @@ public final class Job
 
 
 
+  /**
+   * Retrieves the flight recorder settings that the clients should use to
+   * capture a profile of this job while it is running.
+   *
+   * @return  The flight recorder settings that the clients should use to
+   *          profile this job, or {@code null} if it should not be profiled.
+   */
+  public String getProfileSettings()
+  {
+    return profileSettings;
+  }
+
+
+
+  /**
+   * Specifies the flight recorder settings that the clients should use to
+   * capture a profile of this job while it is running.  The value should be
+   * the name of a flight recorder configuration available on the clients
+   * (e.g., "profile") or the path to a .jfc file, optionally followed by
+   * semicolon-delimited overrides in the form "event#setting=value".
+   *
+   * @param  profileSettings  The flight recorder settings that the clients
+   *                          should use to profile this job, or {@code null}
+   *                          if it should not be profiled.
+   */
+  public void setProfileSettings(final String profileSettings)
+  {
+    this.profileSettings = profileSettings;
+  }
+
+
+
   /**
    * Indicates whether this job should be displayed in restricted read-only
    * mode.
@@ -2361,6 +2428,47 @@ public final class Job
 
 
 
+  /**
+   * Handles a report of the rate achieved by a client for a job that uses
+   * coordinated rate limiting, and determines the client's new share of the
+   * aggregate rate.  The aggregate rate is the per-client rate requested by
+   * the job multiplied by the number of clients scheduled to run it.
+   *
+   * @param  clientConnection  The connection to the client that provided the
+   *                           report.
+   * @param  report            The rate report provided by the client.
+   *
+   * @return  The rate quota message that should be sent to the client.
+   */
+  public RateQuotaMessage handleRateReport(
+                               final ClientConnection clientConnection,
+                               final RateReportMessage report)
+  {
+    final CoordinatedRateAllocator allocator;
+    synchronized (activeClientMutex)
+    {
+      if (rateAllocator == null)
+      {
+        final long aggregateRate =
+             ((long) report.getRequestedRate()) * Math.max(1, numClients);
+        rateAllocator = new CoordinatedRateAllocator(slamdServer, jobID,
+             aggregateRate, Math.max(1, numClients));
+        addLogMessage("Coordinating an aggregate rate of " + aggregateRate +
+             " operations per second across " + numClients + " clients.");
+      }
+
+      allocator = rateAllocator;
+    }
+
+    final int quota = allocator.reportRate(clientConnection.getClientID(),
+         report.getRequestedRate(), report.getAchievedRate(),
+         report.getIntervalMillis());
+    return new RateQuotaMessage(report.getMessageID(), jobID, quota,
+         allocator.getActiveClientCount());
+  }
+
+
+
   /**
    * Indicates that the specified client has completed its processing for this
    * job.
@@ -2375,11 +2483,26 @@ public final class Job
   {
     boolean jobDone = false;
 
+    // If the client returned a flight recording, then store it and add it to
+    // the profile summary.  This must be done before the client is removed
+    // from the active list so that it is included in the summary when the
+    // last client completes.
+    final byte[] profileData = jobCompletedMessage.getProfileData();
+    if (profileData != null)
+    {
+      handleProfileData(clientConnection.getClientID(), profileData);
+    }
+
     synchronized (activeClientMutex)
     {
       // First, remove the connection from the list of active connections
       removeActiveClient(clientConnection);
 
+      if (rateAllocator != null)
+      {
+        rateAllocator.removeClient(clientConnection.getClientID());
+      }
+
 
       // See if we need to update the tentative job state.  It will be updated
       // as long as it currently indicates that the job has completed
@@ -2462,6 +2585,7 @@ public final class Job
       // If this was the last active connection, then run the per-job
       // finalization, update the job info to indicate that the job is done, and
       // update the scheduler.
+      logProfileSummary();
       infoJobThread.finalizeJob();
       this.jobState = tentativeJobState;
       slamdServer.getScheduler().jobDone(this);
@@ -2470,6 +2594,98 @@ public final class Job
 
 
 
+  /**
+   * Stores the flight recording returned by a client as an uploaded file in
+   * the job's folder and adds it to the profile summary for this job.
+   *
+   * @param  clientID     The client ID of the client that captured the
+   *                      recording.
+   * @param  profileData  The gzip-compressed flight recording returned by the
+   *                      client.
+   */
+  private void handleProfileData(final String clientID,
+                                 final byte[] profileData)
+  {
+    final String fileName =
+         jobID + '-' + clientID.replaceAll("[^A-Za-z0-9._-]", "_") +
+         ".jfr.gz";
+    final String fileFolder = (folderName == null)
+                              ? Constants.FOLDER_NAME_UNCLASSIFIED
+                              : folderName;
+    try
+    {
+      final UploadedFile file = new UploadedFile(fileName, "application/gzip",
+           profileData.length,
+           "Flight recording captured by client " + clientID + " for job " +
+                jobID,
+           profileData);
+      slamdServer.getConfigDB().writeUploadedFile(file, fileFolder);
+    }
+    catch (final Exception e)
+    {
+      final String message = "Unable to store the flight recording from " +
+           "client " + clientID + ":  " + e;
+      slamdServer.logMessage(Constants.LOG_LEVEL_JOB_PROCESSING, message);
+      logMessages.add(message);
+    }
+
+    try
+    {
+      synchronized (activeClientMutex)
+      {
+        if (profileSummary == null)
+        {
+          profileSummary = new JobProfileSummary();
+        }
+      }
+
+      profileSummary.addRecording(profileData);
+    }
+    catch (final SLAMDException se)
+    {
+      final String message = "Unable to summarize the flight recording from " +
+           "client " + clientID + ":  " + se.getMessage();
+      slamdServer.logMessage(Constants.LOG_LEVEL_JOB_PROCESSING, message);
+      logMessages.add(message);
+    }
+    catch (final Exception | LinkageError e)
+    {
+      // A linkage error will happen if the server is running on a JVM that
+      // does not provide the flight recorder API.  The recording has still
+      // been stored as an uploaded file, so it can be analyzed elsewhere.
+      final String message = "Unable to summarize the flight recording from " +
+           "client " + clientID + ":  " + e;
+      slamdServer.logMessage(Constants.LOG_LEVEL_JOB_PROCESSING, message);
+      logMessages.add(message);
+    }
+  }
+
+
+
+  /**
+   * Adds a summary of the hottest methods from the flight recordings returned
+   * by the clients to the job's log, if any recordings were returned.
+   */
+  private void logProfileSummary()
+  {
+    if (profileSummary == null)
+    {
+      return;
+    }
+
+    for (final String line :
+         profileSummary.getSummaryLines(MAX_PROFILE_SUMMARY_METHODS))
+    {
+      slamdServer.logWithoutFormatting(Constants.LOG_LEVEL_JOB_PROCESSING,
+           line);
+      logMessages.add(line);
+    }
+
+    profileSummary = null;
+  }
+
+
+
   /**
    * Indicates that the specified resource monitor client has completed its
    * processing and that its resource statistics are available.
@@ -2565,6 +2781,7 @@ public final class Job
       // If this was the last active connection, then run the per-job
       // finalization, update the job info to indicate that the job is done, and
       // update the scheduler.
+      logProfileSummary();
       infoJobThread.finalizeJob();
       this.jobState = tentativeJobState;
       slamdServer.getScheduler().jobDone(this);
@@ -2711,6 +2928,13 @@ public final class Job
     elementList.add(new ASN1Boolean(monitorClientsIfAvailable));
     elementList.add(new ASN1OctetString(ELEMENT_WAIT_FOR_CLIENTS));
     elementList.add(new ASN1Boolean(waitForClients));
+
+    if (profileSettings != null)
+    {
+      elementList.add(new ASN1OctetString(ELEMENT_PROFILE_SETTINGS));
+      elementList.add(new ASN1OctetString(profileSettings));
+    }
+
     elementList.add(new ASN1OctetString(ELEMENT_THREADS_PER_CLIENT));
     elementList.add(new ASN1Integer(threadsPerClient));
     elementList.add(new ASN1OctetString(ELEMENT_THREAD_STARTUP_DELAY));
@@ -2827,6 +3051,40 @@ public final class Job
 
 
 
+  /**
+   * Retrieves the name of the folder from the provided encoded job without
+   * decoding the rest of it.  This is used to maintain the index of jobs by
+   * folder, so it only reads as far into the encoded job as necessary.
+   *
+   * @param  encodedJob  The byte array containing the encoded job data.
+   *
+   * @return  The name of the folder, or {@code null} if the folder name is not
+   *          present or the data cannot be decoded.
+   */
+  public static String decodeFolderName(final byte[] encodedJob)
+  {
+    try
+    {
+      final ASN1StreamReader reader =
+           new ASN1StreamReader(new ByteArrayInputStream(encodedJob));
+      final ASN1StreamReaderSequence sequence = reader.beginSequence();
+      while (sequence.hasMoreElements())
+      {
+        final String elementName = reader.readString();
+        if (elementName.equals(ELEMENT_FOLDER))
+        {
+          return reader.readString();
+        }
+
+        reader.readElement();
+      }
+    } catch (final Exception e) {}
+
+    return null;
+  }
+
+
+
   /**
    * Decodes the provided byte array as a SLAMD job.
    *
@@ -2870,6 +3128,7 @@ public final class Job
       String        jobGroup                  = null;
       String        jobID                     = null;
       String        optimizingJobID           = null;
+      String        profileSettings           = null;
       String[]      dependencies              = new String[0];
       String[]      logMessages               = new String[0];
       String[]      monitorClients            = new String[0];
@@ -2972,6 +3231,11 @@ public final class Job
         {
           waitForClients = elements[i+1].decodeAsBoolean().booleanValue();
         }
+        else if (elementName.equals(ELEMENT_PROFILE_SETTINGS))
+        {
+          profileSettings =
+               elements[i+1].decodeAsOctetString().stringValue();
+        }
         else if (elementName.equals(ELEMENT_THREADS_PER_CLIENT))
         {
           threadsPerClient = elements[i+1].decodeAsInteger().intValue();
@@ -3136,6 +3400,7 @@ public final class Job
       job.setResourceMonitorClients(monitorClients);
       job.setMonitorClientsIfAvailable(monitorClientsIfAvailable);
       job.setWaitForClients(waitForClients);
+      job.setProfileSettings(profileSettings);
       job.setDependencies(dependencies);
       job.setNotifyAddresses(notifyAddresses);
       job.setJobComments(comments);
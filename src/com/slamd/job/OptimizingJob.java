@@ -17,6 +17,7 @@ package com.slamd.job;
 
 
 
+import java.io.ByteArrayInputStream;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -32,6 +33,8 @@ import com.unboundid.asn1.ASN1Element;
 import com.unboundid.asn1.ASN1Integer;
 import com.unboundid.asn1.ASN1OctetString;
 import com.unboundid.asn1.ASN1Sequence;
+import com.unboundid.asn1.ASN1StreamReader;
+import com.unboundid.asn1.ASN1StreamReaderSequence;
 
 import com.slamd.common.Constants;
 import com.slamd.db.DecodeException;
@@ -2547,6 +2550,42 @@ public final class OptimizingJob
 
 
 
+  /**
+   * Retrieves the name of the folder from the provided encoded optimizing job
+   * without decoding the rest of it.  This is used to maintain the index of
+   * optimizing jobs by folder, so it only reads as far into the encoded
+   * optimizing job as necessary.
+   *
+   * @param  encodedOptimizingJob  The byte array containing the encoded
+   *                               optimizing job.
+   *
+   * @return  The name of the folder, or {@code null} if the folder name is not
+   *          present or the data cannot be decoded.
+   */
+  public static String decodeFolderName(final byte[] encodedOptimizingJob)
+  {
+    try
+    {
+      final ASN1StreamReader reader =
+           new ASN1StreamReader(new ByteArrayInputStream(encodedOptimizingJob));
+      final ASN1StreamReaderSequence sequence = reader.beginSequence();
+      while (sequence.hasMoreElements())
+      {
+        final String elementName = reader.readString();
+        if (elementName.equals(ELEMENT_FOLDER_NAME))
+        {
+          return reader.readString();
+        }
+
+        reader.readElement();
+      }
+    } catch (final Exception e) {}
+
+    return null;
+  }
+
+
+
   /**
    * Decodes the provided byte array as an optimizing job.
    *
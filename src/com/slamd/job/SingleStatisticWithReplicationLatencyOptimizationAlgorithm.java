@@ -29,6 +29,7 @@ import com.slamd.parameter.ParameterList;
 import com.slamd.parameter.PlaceholderParameter;
 import com.slamd.resourcemonitor.ReplicationLatencyResourceMonitor;
 import com.slamd.server.SLAMDServer;
+import com.slamd.stat.FloatValueTracker;
 import com.slamd.stat.ResourceMonitorStatTracker;
 import com.slamd.stat.StatTracker;
 import com.slamd.stat.TimeTracker;
@@ -43,6 +44,9 @@ import com.slamd.stat.TimeTracker;
  * average latency greater than a given value, and it can also reject any
  * iteration where the average of the last 25% of the iterations is greater than
  * the average of the first 25% of the iterations by a specified percentage.
+ * If the replication latency monitor uses the streaming mode, then it can also
+ * reject any iteration in which the average of the 99th percentile latencies
+ * for each interval is greater than a given value.
  * <BR><BR>
  * For this optimization algorithm to be used, an optimizing job must include
  * the appropriate data from at least one replication latency resource monitor.
@@ -87,6 +91,15 @@ public final class SingleStatisticWithReplicationLatencyOptimizationAlgorithm
 
 
 
+  /**
+   * The name of the parameter that is used to specify the maximum 99th
+   * percentile replication latency that will be acceptable.
+   */
+  private static final String PARAM_MAX_REPLICA_LATENCY_99 =
+       "max_replica_latency_99";
+
+
+
   /**
    * The name of the parameter that is used to specify the maximum allowed
    * percentage of increase in latency between the beginning of the job and the
@@ -123,6 +136,9 @@ public final class SingleStatisticWithReplicationLatencyOptimizationAlgorithm
   // The maximum acceptable value for replication latency.
   private double maxLatency;
 
+  // The maximum acceptable value for the 99th percentile replication latency.
+  private double maxLatency99;
+
   // The minimum percent improvement that must be seen to consider a higher
   // value the new best iteration.
   private float minPctImprovement;
@@ -134,6 +150,10 @@ public final class SingleStatisticWithReplicationLatencyOptimizationAlgorithm
   // The parameter used to specify the maximum acceptable CPU utilization.
   private FloatParameter maxLatencyParameter;
 
+  // The parameter used to specify the maximum acceptable 99th percentile
+  // replication latency.
+  private FloatParameter maxLatency99Parameter;
+
   // The parameter used to specify the minimum percent improvement.
   private FloatParameter minPctImprovementParameter;
 
@@ -168,11 +188,13 @@ public final class SingleStatisticWithReplicationLatencyOptimizationAlgorithm
     optimizeTypeParameter      = null;
     maxIncreaseParameter       = null;
     maxLatencyParameter        = null;
+    maxLatency99Parameter      = null;
     bestValueSoFar             = Double.NaN;
     optimizingJob              = null;
     optimizeStat               = null;
     optimizeType               = -1;
     maxLatency                 = -1.0;
+    maxLatency99               = -1.0;
     maxIncrease                = 5.0;
     minPctImprovement          = 0.0F;
   }
@@ -330,6 +352,14 @@ public final class SingleStatisticWithReplicationLatencyOptimizationAlgorithm
               "be allowed for an iteration to be considered acceptable.  A " +
               "negative value indicates that there will be no maximum latency.",
          false, (float) maxLatency);
+    maxLatency99Parameter = new FloatParameter(PARAM_MAX_REPLICA_LATENCY_99,
+         "Maximum Acceptable 99th Percentile Replication Latency (ms)",
+         "The maximum average of the per-interval 99th percentile " +
+              "replication latencies in milliseconds that will be allowed " +
+              "for an iteration to be considered acceptable.  This requires " +
+              "the replication latency monitor to use the streaming mode.  " +
+              "A negative value indicates that there will be no maximum.",
+         false, (float) maxLatency99);
     maxIncreaseParameter = new FloatParameter(PARAM_MAX_PERCENT_INCREASE,
          "Maximum Acceptable Percent Increase in Latency",
          "The maximum percentage of increase in replication latency that " +
@@ -350,6 +380,7 @@ public final class SingleStatisticWithReplicationLatencyOptimizationAlgorithm
       optimizeStatParameter,
       optimizeTypeParameter,
       maxLatencyParameter,
+      maxLatency99Parameter,
       maxIncreaseParameter,
       minPctImprovementParameter
     };
@@ -374,6 +405,7 @@ public final class SingleStatisticWithReplicationLatencyOptimizationAlgorithm
       optimizeStatParameter,
       optimizeTypeParameter,
       maxLatencyParameter,
+      maxLatency99Parameter,
       maxIncreaseParameter,
       minPctImprovementParameter
     };
@@ -473,6 +505,20 @@ public final class SingleStatisticWithReplicationLatencyOptimizationAlgorithm
     }
 
 
+    // Get the maximum 99th percentile latency parameter and value.
+    maxLatency99Parameter =
+         parameters.getFloatParameter(PARAM_MAX_REPLICA_LATENCY_99);
+    if ((maxLatency99Parameter == null) ||
+        (! maxLatency99Parameter.hasValue()))
+    {
+      maxLatency99 = -1.0;
+    }
+    else
+    {
+      maxLatency99 = maxLatency99Parameter.getFloatValue();
+    }
+
+
     // Get the minimum percent improvement required for a new best iteration.
     minPctImprovement = 0.0F;
     minPctImprovementParameter =
@@ -787,6 +833,16 @@ public final class SingleStatisticWithReplicationLatencyOptimizationAlgorithm
           }
         }
       }
+      else if ((tracker instanceof FloatValueTracker) &&
+               name.endsWith(ReplicationLatencyResourceMonitor.
+                                  STAT_TRACKER_REPLICATION_LATENCY_99))
+      {
+        if ((maxLatency99 > 0) &&
+            (((FloatValueTracker) tracker).getAverageValue() > maxLatency99))
+        {
+          return false;
+        }
+      }
     }
 
     if (! latencyFound)
@@ -20,11 +20,13 @@ package com.slamd.jobs.http;
 import java.io.File;
 import java.net.URL;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
 
 import com.slamd.common.JSSEBlindTrustSocketFactory;
 import com.slamd.http.HTTPClient;
+import com.slamd.http.HTTPConnectionPool;
 import com.slamd.http.HTTPRequest;
 import com.slamd.http.HTTPResponse;
 import com.slamd.job.JobClass;
@@ -33,6 +35,7 @@ import com.slamd.parameter.BooleanParameter;
 import com.slamd.parameter.FileURLParameter;
 import com.slamd.parameter.IntegerParameter;
 import com.slamd.parameter.InvalidValueException;
+import com.slamd.parameter.MultiChoiceParameter;
 import com.slamd.parameter.MultiLineTextParameter;
 import com.slamd.parameter.Parameter;
 import com.slamd.parameter.ParameterList;
@@ -98,6 +101,42 @@ public final class GetRateJob
 
 
 
+  /**
+   * The display name of the stat tracker used to count the number of times that
+   * the content retrieved for a URL differed from the content previously
+   * retrieved for the same URL.
+   */
+  public static final String STAT_TRACKER_CONTENT_CHANGES =
+       "Response Content Changes";
+
+
+
+  /**
+   * The connection mode in which each thread uses its own connections.
+   */
+  public static final String CONNECTION_MODE_PER_THREAD =
+       "Per-Thread Connections";
+
+
+
+  /**
+   * The connection mode in which all threads share a pool of HTTP/1.1
+   * connections, with requests pipelined on each connection.
+   */
+  public static final String CONNECTION_MODE_HTTP_1_1_POOL =
+       "Shared HTTP/1.1 Connection Pool";
+
+
+
+  /**
+   * The connection mode in which all threads share a pool of HTTP/2
+   * connections, with requests multiplexed on each connection.
+   */
+  public static final String CONNECTION_MODE_HTTP_2_POOL =
+       "Shared HTTP/2 Connection Pool";
+
+
+
   // The parameter that indicates whether the client should trust any SSL cert.
   private BooleanParameter blindTrustParameter =
        new BooleanParameter("blind_trust", "Blindly Trust Any Certificate",
@@ -106,6 +145,38 @@ public final class GetRateJob
                             "or whether the key and trust stores should be " +
                             "used.", true);
 
+  // The parameter that indicates whether to checksum discarded content.
+  private BooleanParameter checksumContentParameter =
+       new BooleanParameter("checksum_content", "Detect Content Changes",
+                            "Indicates whether a checksum should be computed " +
+                            "for the discarded content of each response so " +
+                            "that responses for the same URL whose content " +
+                            "differs from the previous response may be " +
+                            "counted.  This only applies if response content " +
+                            "is discarded.", false);
+
+  // The parameter that indicates whether to discard the response content.
+  private BooleanParameter discardContentParameter =
+       new BooleanParameter("discard_content", "Discard Response Content",
+                            "Indicates whether the content of each response " +
+                            "should be read through a fixed-size buffer and " +
+                            "discarded rather than held in memory.  This " +
+                            "avoids allocating memory in proportion to the " +
+                            "size of the responses, which can distort the " +
+                            "response times for large files.", false);
+
+  // The parameter that indicates whether to emulate a Web browser when
+  // retrieving associated files.
+  private BooleanParameter emulateBrowserParameter =
+       new BooleanParameter("emulate_browser", "Emulate Browser",
+                            "Indicates whether associated files should be " +
+                            "retrieved the way a Web browser would, using " +
+                            "multiple connections to each server in " +
+                            "parallel and a per-thread cache that honors the " +
+                            "Cache-Control, Expires, ETag, and Last-Modified " +
+                            "headers.  This only applies if associated files " +
+                            "are to be retrieved.", false);
+
   // The parameter that indicates whether to automatically follow any redirects
   // that are encountered.
   private BooleanParameter followRedirectsParameter =
@@ -131,6 +202,28 @@ public final class GetRateJob
                             "be used to keep the connection open for " +
                             "multiple requests.", false);
 
+  // The parameter that specifies whether the threads should share a pool of
+  // connections and which protocol the pool should use.
+  private MultiChoiceParameter connectionModeParameter =
+       new MultiChoiceParameter("connection_mode", "Connection Mode",
+                                "The way that the threads should communicate " +
+                                "with the server.  Each thread may use its " +
+                                "own connections, or all threads on a client " +
+                                "may share a pool of persistent connections " +
+                                "with several requests outstanding on each, " +
+                                "either pipelined over HTTP/1.1 or " +
+                                "multiplexed over HTTP/2.  HTTP/2 is " +
+                                "negotiated for HTTPS URLs, and is used " +
+                                "without negotiation for HTTP URLs.  Proxies " +
+                                "may not be used with a connection pool.",
+                                new String[]
+                                {
+                                  CONNECTION_MODE_PER_THREAD,
+                                  CONNECTION_MODE_HTTP_1_1_POOL,
+                                  CONNECTION_MODE_HTTP_2_POOL
+                                },
+                                CONNECTION_MODE_PER_THREAD);
+
   // The parameter that specifies the URL to a file containing a list of URLs to
   // retrieve.
   private FileURLParameter urlFileParameter =
@@ -166,6 +259,44 @@ public final class GetRateJob
                             "then no sleep will be performed.", true, 0, true,
                             0, false, 0);
 
+  // The parameter that specifies the maximum number of parallel connections to
+  // use to retrieve associated files from each server.
+  private IntegerParameter maxConnectionsPerHostParameter =
+       new IntegerParameter("max_connections_per_host",
+                            "Max Connections per Server",
+                            "The maximum number of connections that each " +
+                            "thread will use in parallel to retrieve the " +
+                            "associated files from a single server when " +
+                            "emulating a Web browser.", true,
+                            HTTPClient.DEFAULT_MAX_CONNECTIONS_PER_HOST, true,
+                            1, false, 0);
+
+  // The parameter that specifies the maximum number of requests that may be
+  // outstanding on each pooled connection.
+  private IntegerParameter maxConcurrentRequestsParameter =
+       new IntegerParameter("max_concurrent_requests",
+            "Max Concurrent Requests per Connection",
+            "The maximum number of requests that may be outstanding at once " +
+                 "on each pooled connection.  For HTTP/1.1, this is the " +
+                 "number of requests that may be pipelined, and a value of " +
+                 "one disables pipelining.  For HTTP/2, this is the number " +
+                 "of concurrent streams, and any lower limit advertised by " +
+                 "the server will be honored.  This only applies when using " +
+                 "a shared connection pool.",
+            true, HTTPConnectionPool.DEFAULT_MAX_CONCURRENT_REQUESTS, true, 1,
+            false, 0);
+
+  // The parameter that specifies the maximum number of pooled connections to
+  // establish to each server.
+  private IntegerParameter maxPooledConnectionsParameter =
+       new IntegerParameter("max_pooled_connections",
+            "Max Pooled Connections per Server",
+            "The maximum number of connections that the shared connection " +
+                 "pool will establish to each server.  This only applies " +
+                 "when using a shared connection pool.",
+            true, HTTPConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_SERVER, true,
+            1, false, 0);
+
   // The parameter that specifies the maximum request rate.
   private IntegerParameter maxRateParameter = new IntegerParameter("maxRate",
        "Max Request Rate (Requests/Second/Client)",
@@ -277,11 +408,15 @@ public final class GetRateJob
 
   // Instance variables that correspond to the parameter values.
   private static boolean       blindTrust;
+  private static boolean       checksumContent;
+  private static boolean       discardContent;
+  private static boolean       emulateBrowser;
   private static boolean       followRedirects;
   private static boolean       retrieveAssociatedFiles;
   private static boolean       useKeepAlive;
   private static HTTPRequest[] requests;
   private static int           coolDownTime;
+  private static int           maxConnectionsPerHost;
   private static int           numIterations;
   private static int           proxyPort;
   private static int           timeBetweenRequests;
@@ -296,6 +431,10 @@ public final class GetRateJob
   private static FixedRateBarrier rateLimiter;
 
 
+  // The connection pool shared by all threads, if one is to be used.
+  private static HTTPConnectionPool connectionPool;
+
+
   // The HTTP client that will be used by this thread to actually handle the
   // requests.
   private HTTPClient httpClient;
@@ -305,6 +444,13 @@ public final class GetRateJob
   // caught.
   private IncrementalTracker exceptionsCaught;
 
+  // The stat tracker that will be used to track the number of responses whose
+  // content differed from the previous response for the same URL.
+  private IncrementalTracker contentChanges;
+
+  // The checksum of the last content retrieved by this thread for each URL.
+  private HashMap<String,Long> lastChecksums;
+
 
   // A random number generator to use for the client and the thread.
   private static Random parentRandom;
@@ -382,8 +528,15 @@ public final class GetRateJob
       urlParameter,
       urlFileParameter,
       useKeepaliveParameter,
+      connectionModeParameter,
+      maxPooledConnectionsParameter,
+      maxConcurrentRequestsParameter,
       followRedirectsParameter,
       retrieveAssociatedFilesParameter,
+      emulateBrowserParameter,
+      maxConnectionsPerHostParameter,
+      discardContentParameter,
+      checksumContentParameter,
       placeholder,
       proxyHostParameter,
       proxyPortParameter,
@@ -421,10 +574,12 @@ public final class GetRateJob
     final StatTracker[] clientStubs = new HTTPClient().getStatTrackerStubs(
          clientID, threadID, collectionInterval);
 
-    final StatTracker[] stubs = new StatTracker[clientStubs.length+1];
+    final StatTracker[] stubs = new StatTracker[clientStubs.length+2];
     System.arraycopy(clientStubs, 0, stubs, 0, clientStubs.length);
     stubs[clientStubs.length] = new IncrementalTracker(clientID, threadID,
          STAT_TRACKER_EXCEPTIONS_CAUGHT, collectionInterval);
+    stubs[clientStubs.length+1] = new IncrementalTracker(clientID, threadID,
+         STAT_TRACKER_CONTENT_CHANGES, collectionInterval);
 
     return stubs;
   }
@@ -439,6 +594,15 @@ public final class GetRateJob
   {
     final StatTracker[] clientStats = httpClient.getStatTrackers();
 
+    if (discardContent && checksumContent)
+    {
+      final StatTracker[] stats = new StatTracker[clientStats.length+2];
+      System.arraycopy(clientStats, 0, stats, 0, clientStats.length);
+      stats[clientStats.length] = exceptionsCaught;
+      stats[clientStats.length+1] = contentChanges;
+      return stats;
+    }
+
     final StatTracker[] stats = new StatTracker[clientStats.length+1];
     System.arraycopy(clientStats, 0, stats, 0, clientStats.length);
     stats[clientStats.length] = exceptionsCaught;
@@ -501,6 +665,21 @@ public final class GetRateJob
     }
 
 
+    final MultiChoiceParameter connectionModeParam =
+         parameters.getMultiChoiceParameter(connectionModeParameter.getName());
+    final StringParameter proxyHostParam =
+         parameters.getStringParameter(proxyHostParameter.getName());
+    if ((connectionModeParam != null) && connectionModeParam.hasValue() &&
+        (! connectionModeParam.getValueString().equals(
+             CONNECTION_MODE_PER_THREAD)) &&
+        (proxyHostParam != null) && proxyHostParam.hasValue())
+    {
+      throw new InvalidValueException("A proxy server may not be used with " +
+           "the \"" + connectionModeParam.getValueString() +
+           "\" connection mode.");
+    }
+
+
     if (numClients > 1)
     {
       final MultiLineTextParameter clientAddrsParam =
@@ -831,6 +1010,58 @@ public final class GetRateJob
     }
 
 
+    // See if the threads should share a connection pool.
+    String connectionMode = CONNECTION_MODE_PER_THREAD;
+    connectionModeParameter =
+         parameters.getMultiChoiceParameter(connectionModeParameter.getName());
+    if ((connectionModeParameter != null) && connectionModeParameter.hasValue())
+    {
+      connectionMode = connectionModeParameter.getValueString();
+    }
+
+    int maxPooledConnections =
+         HTTPConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_SERVER;
+    maxPooledConnectionsParameter = parameters.getIntegerParameter(
+         maxPooledConnectionsParameter.getName());
+    if ((maxPooledConnectionsParameter != null) &&
+        maxPooledConnectionsParameter.hasValue())
+    {
+      maxPooledConnections = maxPooledConnectionsParameter.getIntValue();
+    }
+
+    int maxConcurrentRequests =
+         HTTPConnectionPool.DEFAULT_MAX_CONCURRENT_REQUESTS;
+    maxConcurrentRequestsParameter = parameters.getIntegerParameter(
+         maxConcurrentRequestsParameter.getName());
+    if ((maxConcurrentRequestsParameter != null) &&
+        maxConcurrentRequestsParameter.hasValue())
+    {
+      maxConcurrentRequests = maxConcurrentRequestsParameter.getIntValue();
+    }
+
+    connectionPool = null;
+    try
+    {
+      if (connectionMode.equals(CONNECTION_MODE_HTTP_1_1_POOL))
+      {
+        connectionPool = new HTTPConnectionPool(
+             HTTPConnectionPool.PROTOCOL_HTTP_1_1, maxPooledConnections,
+             maxConcurrentRequests);
+      }
+      else if (connectionMode.equals(CONNECTION_MODE_HTTP_2_POOL))
+      {
+        connectionPool = new HTTPConnectionPool(
+             HTTPConnectionPool.PROTOCOL_HTTP_2, maxPooledConnections,
+             maxConcurrentRequests);
+      }
+    }
+    catch (final Exception e)
+    {
+      throw new UnableToRunException(
+           "Unable to create the shared connection pool:  " + e, e);
+    }
+
+
     // See if we should follow redirects.
     followRedirects = true;
     followRedirectsParameter =
@@ -853,6 +1084,46 @@ public final class GetRateJob
     }
 
 
+    // See if we should emulate a browser when retrieving associated files.
+    emulateBrowser = false;
+    emulateBrowserParameter =
+         parameters.getBooleanParameter(emulateBrowserParameter.getName());
+    if (emulateBrowserParameter != null)
+    {
+      emulateBrowser = emulateBrowserParameter.getBooleanValue();
+    }
+
+
+    // See if we should discard the response content, and if so whether it
+    // should be checksummed.
+    discardContent = false;
+    discardContentParameter =
+         parameters.getBooleanParameter(discardContentParameter.getName());
+    if (discardContentParameter != null)
+    {
+      discardContent = discardContentParameter.getBooleanValue();
+    }
+
+    checksumContent = false;
+    checksumContentParameter =
+         parameters.getBooleanParameter(checksumContentParameter.getName());
+    if (checksumContentParameter != null)
+    {
+      checksumContent = checksumContentParameter.getBooleanValue();
+    }
+
+
+    // Get the maximum number of parallel connections to use for each server.
+    maxConnectionsPerHost = HTTPClient.DEFAULT_MAX_CONNECTIONS_PER_HOST;
+    maxConnectionsPerHostParameter = parameters.getIntegerParameter(
+         maxConnectionsPerHostParameter.getName());
+    if ((maxConnectionsPerHostParameter != null) &&
+        maxConnectionsPerHostParameter.hasValue())
+    {
+      maxConnectionsPerHost = maxConnectionsPerHostParameter.getIntValue();
+    }
+
+
     // See if we should use a proxy host.
     proxyHost = null;
     proxyHostParameter =
@@ -1036,6 +1307,9 @@ public final class GetRateJob
     // Initialize the exceptionsCaught tracker.
     exceptionsCaught = new IncrementalTracker(clientID, threadID,
          STAT_TRACKER_EXCEPTIONS_CAUGHT, collectionInterval);
+    contentChanges = new IncrementalTracker(clientID, threadID,
+         STAT_TRACKER_CONTENT_CHANGES, collectionInterval);
+    lastChecksums = new HashMap<String,Long>();
 
 
     // Create and initialize the HTTP client that we will use for handling the
@@ -1043,7 +1317,12 @@ public final class GetRateJob
     httpClient = new HTTPClient();
     httpClient.setFollowRedirects(followRedirects);
     httpClient.setRetrieveAssociatedFiles(retrieveAssociatedFiles);
+    httpClient.setEmulateBrowser(emulateBrowser);
+    httpClient.setMaxConnectionsPerHost(maxConnectionsPerHost);
+    httpClient.setDiscardContent(discardContent);
+    httpClient.setChecksumContent(checksumContent);
     httpClient.setUseKeepAlive(useKeepAlive);
+    httpClient.setConnectionPool(connectionPool);
 
     if ((clientAddresses != null) && (clientAddresses.length > 0))
     {
@@ -1128,12 +1407,14 @@ public final class GetRateJob
         httpClient.enableStatisticsCollection(getClientID(), getThreadID(),
              getCollectionInterval(), getJobID(), getStatReporter());
         exceptionsCaught.startTracker();
+        contentChanges.startTracker();
         collectingStats = true;
       }
       else if ((collectingStats) && (currentTime >= stopCollectingTime))
       {
         httpClient.stopTrackers();
         exceptionsCaught.stopTracker();
+        contentChanges.stopTracker();
         collectingStats = false;
       }
 
@@ -1146,6 +1427,18 @@ public final class GetRateJob
       {
         final HTTPResponse response =
              httpClient.sendRequest(getRandomRequest());
+
+        final long checksum = response.getContentChecksum();
+        if (checksum >= 0L)
+        {
+          final Long previousChecksum = lastChecksums.put(
+               response.getRequestURL().toExternalForm(), checksum);
+          if ((previousChecksum != null) &&
+              (previousChecksum.longValue() != checksum) && collectingStats)
+          {
+            contentChanges.increment();
+          }
+        }
       }
       catch (final Exception e)
       {
@@ -1174,6 +1467,7 @@ public final class GetRateJob
     {
       httpClient.stopTrackers();
       exceptionsCaught.stopTracker();
+      contentChanges.stopTracker();
       collectingStats = false;
     }
 
@@ -1196,6 +1490,21 @@ public final class GetRateJob
 
 
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public void finalizeClient()
+  {
+    if (connectionPool != null)
+    {
+      connectionPool.close();
+      connectionPool = null;
+    }
+  }
+
+
+
   /**
    * Retrieves the next request that should be sent.
    *
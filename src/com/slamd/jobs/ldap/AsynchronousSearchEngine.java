@@ -0,0 +1,604 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.jobs.ldap;
+
+
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.unboundid.ldap.sdk.AsyncRequestID;
+import com.unboundid.ldap.sdk.AsyncSearchResultListener;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultReference;
+import com.unboundid.ldap.sdk.SearchScope;
+
+import com.slamd.stat.CategoricalTracker;
+import com.slamd.stat.IncrementalTracker;
+import com.slamd.stat.IntegerValueTracker;
+import com.slamd.stat.TimeTracker;
+
+
+
+/**
+ * This class provides an asynchronous search engine that may be shared by all
+ * of the threads for a client.  It manages a set of LDAP connections, each of
+ * which may have a number of requests pipelined on it at any time, and picks
+ * the connection to use for each request without scanning all of them.
+ * Completions are processed on the reader thread of the connection on which
+ * the search was sent, so each connection has its own set of stat trackers.
+ * A search that fails before it can be sent is reported through the same
+ * listener on the calling thread, so tracker updates for each connection are
+ * made while holding that connection's lock, which is almost never
+ * contended.  No tracker is updated once statistics collection has stopped.
+ * <BR><BR>
+ * If a maximum number of outstanding requests is configured, then it is
+ * divided evenly across the connections, and callers block until a request
+ * can be sent without exceeding it.  Connections are chosen either in a
+ * round-robin manner, or by comparing the outstanding request counts of the
+ * connection that most recently completed a request and one chosen at random
+ * and using whichever has fewer.  The latter is a constant-time approximation
+ * of picking the least-loaded connection that stays close to it in practice,
+ * because a connection that just completed a request is almost always one of
+ * the least loaded.
+ */
+final class AsynchronousSearchEngine
+{
+  // The set of connections used to send requests.
+  private final LDAPConnection[] conns;
+
+  // The number of requests currently outstanding on each connection.
+  private final AtomicIntegerArray outstandingCounts;
+
+  // The slot of the connection that most recently completed a request.
+  private final AtomicInteger lastCompletedSlot;
+
+  // The counter used to select connections in round-robin mode.
+  private final AtomicInteger nextRoundRobinSlot;
+
+  // Indicates whether connections should be selected in a round-robin manner.
+  private final boolean useRoundRobin;
+
+  // Indicates whether statistics are currently being collected.
+  private volatile boolean collectingStats;
+
+  // The maximum number of outstanding requests allowed on any single
+  // connection, or zero if there is no limit.
+  private final int maxOutstandingPerConnection;
+
+  // The response time threshold in milliseconds.
+  private final long responseTimeThreshold;
+
+  // The semaphore used to limit the total number of outstanding requests, or
+  // null if there is no limit.
+  private final Semaphore outstandingRequests;
+
+  // The locks used to serialize updates to the stat trackers for each
+  // connection.
+  private final Object[] trackerLocks;
+
+  // Stat trackers maintained for each connection.
+  private final CategoricalTracker[]  resultCodes;
+  private final IncrementalTracker[]  searchesCompleted;
+  private final IncrementalTracker[]  searchesExceedingThreshold;
+  private final IntegerValueTracker[] entriesReturned;
+  private final TimeTracker[]         searchTimers;
+
+
+
+  /**
+   * Creates a new asynchronous search engine with the provided information.
+   *
+   * @param  conns                  The set of connections to use to send
+   *                                requests.  It must not be empty.
+   * @param  maxOutstanding         The maximum number of requests that may be
+   *                                outstanding across all connections at any
+   *                                time, or a value less than or equal to zero
+   *                                if there should be no limit.
+   * @param  useRoundRobin          Indicates whether connections should be
+   *                                selected in a round-robin manner rather
+   *                                than by load.
+   * @param  responseTimeThreshold  The response time threshold in
+   *                                milliseconds, or a value less than or equal
+   *                                to zero if there is none.
+   * @param  clientID               The client ID to use for the stat trackers.
+   * @param  threadID               The thread ID to use as the base for the
+   *                                stat trackers.
+   * @param  collectionInterval     The statistics collection interval.
+   * @param  trackerNames           The display names to use for the searches
+   *                                completed, search duration, entries
+   *                                returned, result codes, and searches
+   *                                exceeding threshold trackers, in that
+   *                                order.
+   */
+  AsynchronousSearchEngine(final LDAPConnection[] conns,
+                           final int maxOutstanding,
+                           final boolean useRoundRobin,
+                           final long responseTimeThreshold,
+                           final String clientID, final String threadID,
+                           final int collectionInterval,
+                           final String... trackerNames)
+  {
+    this.conns                 = conns;
+    this.useRoundRobin         = useRoundRobin;
+    this.responseTimeThreshold = responseTimeThreshold;
+
+    outstandingCounts  = new AtomicIntegerArray(conns.length);
+    lastCompletedSlot  = new AtomicInteger(0);
+    nextRoundRobinSlot = new AtomicInteger(0);
+    collectingStats    = false;
+
+    if (maxOutstanding > 0)
+    {
+      outstandingRequests = new Semaphore(maxOutstanding, true);
+      maxOutstandingPerConnection =
+           (maxOutstanding + conns.length - 1) / conns.length;
+    }
+    else
+    {
+      outstandingRequests = null;
+      maxOutstandingPerConnection = 0;
+    }
+
+    trackerLocks               = new Object[conns.length];
+    searchesCompleted          = new IncrementalTracker[conns.length];
+    searchTimers               = new TimeTracker[conns.length];
+    entriesReturned            = new IntegerValueTracker[conns.length];
+    resultCodes                = new CategoricalTracker[conns.length];
+    searchesExceedingThreshold = new IncrementalTracker[conns.length];
+    for (int i=0; i < conns.length; i++)
+    {
+      final String connThreadID = threadID + '-' + i;
+      trackerLocks[i] = new Object();
+      searchesCompleted[i] = new IncrementalTracker(clientID, connThreadID,
+           trackerNames[0], collectionInterval);
+      searchTimers[i] = new TimeTracker(clientID, connThreadID,
+           trackerNames[1], collectionInterval);
+      entriesReturned[i] = new IntegerValueTracker(clientID, connThreadID,
+           trackerNames[2], collectionInterval);
+      resultCodes[i] = new CategoricalTracker(clientID, connThreadID,
+           trackerNames[3], collectionInterval);
+      searchesExceedingThreshold[i] = new IncrementalTracker(clientID,
+           connThreadID, trackerNames[4], collectionInterval);
+    }
+  }
+
+
+
+  /**
+   * Sends an asynchronous search request with the provided information on the
+   * connection selected for it, waiting first if the maximum number of
+   * outstanding requests has been reached.
+   *
+   * @param  baseDN      The base DN for the search.
+   * @param  scope       The scope for the search.
+   * @param  filter      The filter for the search.
+   * @param  attributes  The attributes to return from matching entries.
+   * @param  sizeLimit   The size limit for the search.
+   * @param  timeLimit   The time limit in seconds for the search.
+   *
+   * @throws  InterruptedException  If the thread is interrupted while waiting
+   *                                for a request to complete.
+   */
+  void search(final String baseDN, final SearchScope scope,
+              final Filter filter, final String[] attributes,
+              final int sizeLimit, final int timeLimit)
+       throws InterruptedException
+  {
+    if (outstandingRequests != null)
+    {
+      outstandingRequests.acquire();
+    }
+
+    final int slot = selectConnection();
+    final EngineSearchListener listener =
+         new EngineSearchListener(slot, collectingStats);
+    final SearchRequest searchRequest =
+         new SearchRequest(listener, baseDN, scope, filter, attributes);
+    searchRequest.setSizeLimit(sizeLimit);
+    searchRequest.setTimeLimitSeconds(timeLimit);
+
+    try
+    {
+      conns[slot].asyncSearch(searchRequest);
+    }
+    catch (final LDAPException le)
+    {
+      listener.searchResultReceived(null, new SearchResult(le));
+    }
+  }
+
+
+
+  /**
+   * Selects the connection that should be used for the next request and
+   * increments its outstanding request count.  If a limit is in place, then
+   * the caller must already hold a permit from the outstanding requests
+   * semaphore, which guarantees that at least one connection is below its
+   * individual limit.
+   *
+   * @return  The slot of the connection that should be used.
+   */
+  private int selectConnection()
+  {
+    if (useRoundRobin)
+    {
+      int slot = (nextRoundRobinSlot.getAndIncrement() & Integer.MAX_VALUE) %
+                 conns.length;
+      if (maxOutstandingPerConnection <= 0)
+      {
+        outstandingCounts.incrementAndGet(slot);
+        return slot;
+      }
+
+      for (int i=0; i < conns.length; i++)
+      {
+        if (tryReserve(slot))
+        {
+          return slot;
+        }
+        slot = (slot + 1) % conns.length;
+      }
+    }
+    else
+    {
+      final int hintSlot = lastCompletedSlot.get();
+      final int randomSlot = ThreadLocalRandom.current().nextInt(conns.length);
+      final int slot;
+      if (outstandingCounts.get(randomSlot) < outstandingCounts.get(hintSlot))
+      {
+        slot = randomSlot;
+      }
+      else
+      {
+        slot = hintSlot;
+      }
+
+      if (maxOutstandingPerConnection <= 0)
+      {
+        outstandingCounts.incrementAndGet(slot);
+        return slot;
+      }
+
+      if (tryReserve(slot))
+      {
+        return slot;
+      }
+
+      // Both candidates are full, which can only happen when nearly all of the
+      // connections are at their limit.  Probe from the random slot.
+      for (int i=1; i < conns.length; i++)
+      {
+        final int probeSlot = (randomSlot + i) % conns.length;
+        if (tryReserve(probeSlot))
+        {
+          return probeSlot;
+        }
+      }
+    }
+
+    // Another thread took the last available slot between the checks above.
+    // The semaphore guarantees that this is transient, so keep trying.
+    while (true)
+    {
+      for (int i=0; i < conns.length; i++)
+      {
+        if (tryReserve(i))
+        {
+          return i;
+        }
+      }
+
+      Thread.yield();
+    }
+  }
+
+
+
+  /**
+   * Attempts to increment the outstanding request count for the specified
+   * connection without exceeding the per-connection limit.
+   *
+   * @param  slot  The slot of the connection to reserve.
+   *
+   * @return  {@code true} if the connection was reserved, or {@code false} if
+   *          it is already at its limit.
+   */
+  private boolean tryReserve(final int slot)
+  {
+    while (true)
+    {
+      final int count = outstandingCounts.get(slot);
+      if (count >= maxOutstandingPerConnection)
+      {
+        return false;
+      }
+
+      if (outstandingCounts.compareAndSet(slot, count, count+1))
+      {
+        return true;
+      }
+    }
+  }
+
+
+
+  /**
+   * Indicates that a request on the specified connection has completed.
+   *
+   * @param  slot  The slot of the connection on which the request was sent.
+   */
+  private void requestDone(final int slot)
+  {
+    outstandingCounts.decrementAndGet(slot);
+    lastCompletedSlot.lazySet(slot);
+
+    if (outstandingRequests != null)
+    {
+      outstandingRequests.release();
+    }
+  }
+
+
+
+  /**
+   * Starts collecting statistics for requests sent from this point on.  This
+   * may be called by any number of threads, but only the first call will have
+   * any effect.
+   */
+  synchronized void startCollecting()
+  {
+    if (collectingStats)
+    {
+      return;
+    }
+
+    for (int i=0; i < conns.length; i++)
+    {
+      searchesCompleted[i].startTracker();
+      searchTimers[i].startTracker();
+      entriesReturned[i].startTracker();
+      resultCodes[i].startTracker();
+      searchesExceedingThreshold[i].startTracker();
+    }
+
+    collectingStats = true;
+  }
+
+
+
+  /**
+   * Stops collecting statistics.  This may be called by any number of threads,
+   * but only the first call after statistics collection has started will have
+   * any effect.
+   */
+  synchronized void stopCollecting()
+  {
+    if (! collectingStats)
+    {
+      return;
+    }
+
+    collectingStats = false;
+
+    for (int i=0; i < conns.length; i++)
+    {
+      synchronized (trackerLocks[i])
+      {
+        searchesCompleted[i].stopTracker();
+        searchTimers[i].stopTracker();
+        entriesReturned[i].stopTracker();
+        resultCodes[i].stopTracker();
+        searchesExceedingThreshold[i].stopTracker();
+      }
+    }
+  }
+
+
+
+  /**
+   * Retrieves the per-connection trackers used to count completed searches.
+   *
+   * @return  The per-connection trackers used to count completed searches.
+   */
+  IncrementalTracker[] getSearchesCompletedTrackers()
+  {
+    return searchesCompleted;
+  }
+
+
+
+  /**
+   * Retrieves the per-connection trackers used to time searches.
+   *
+   * @return  The per-connection trackers used to time searches.
+   */
+  TimeTracker[] getSearchTimers()
+  {
+    return searchTimers;
+  }
+
+
+
+  /**
+   * Retrieves the per-connection trackers used to count entries returned.
+   *
+   * @return  The per-connection trackers used to count entries returned.
+   */
+  IntegerValueTracker[] getEntriesReturnedTrackers()
+  {
+    return entriesReturned;
+  }
+
+
+
+  /**
+   * Retrieves the per-connection trackers used to count result codes.
+   *
+   * @return  The per-connection trackers used to count result codes.
+   */
+  CategoricalTracker[] getResultCodeTrackers()
+  {
+    return resultCodes;
+  }
+
+
+
+  /**
+   * Retrieves the per-connection trackers used to count searches exceeding
+   * the response time threshold.
+   *
+   * @return  The per-connection trackers used to count searches exceeding the
+   *          response time threshold.
+   */
+  IncrementalTracker[] getSearchesExceedingThresholdTrackers()
+  {
+    return searchesExceedingThreshold;
+  }
+
+
+
+  /**
+   * Closes all of the connections used by this engine.
+   */
+  void close()
+  {
+    for (final LDAPConnection conn : conns)
+    {
+      conn.close();
+    }
+  }
+
+
+
+  /**
+   * This class provides the listener used for each search sent by the engine.
+   * It is invoked on the reader thread of the connection on which the search
+   * was sent, or on the calling thread if the search could not be sent.
+   */
+  private final class EngineSearchListener
+          implements AsyncSearchResultListener
+  {
+    /**
+     * The serial version UID for this serializable class.
+     */
+    private static final long serialVersionUID = 4417360251876903412L;
+
+
+
+    // Indicates whether statistics should be collected for the search.
+    private final boolean collecting;
+
+    // The slot of the connection on which the search was sent.
+    private final int slot;
+
+    // The time that the search was sent.
+    private final long startTimeNanos;
+
+
+
+    /**
+     * Creates a new listener for a search sent on the specified connection.
+     *
+     * @param  slot        The slot of the connection on which the search is
+     *                     sent.
+     * @param  collecting  Indicates whether statistics should be collected for
+     *                     the search.
+     */
+    private EngineSearchListener(final int slot, final boolean collecting)
+    {
+      this.slot       = slot;
+      this.collecting = collecting;
+
+      startTimeNanos = System.nanoTime();
+    }
+
+
+
+    /**
+     * Indicates that the provided search result entry has been received for
+     * the associated search.
+     *
+     * @param  entry  The entry that was received.
+     */
+    public void searchEntryReturned(final SearchResultEntry entry)
+    {
+      // No implementation is required.
+    }
+
+
+
+    /**
+     * Indicates that the provided search result reference has been received
+     * for the associated search.
+     *
+     * @param  reference  The reference that was received.
+     */
+    public void searchReferenceReturned(final SearchResultReference reference)
+    {
+      // No implementation is required.
+    }
+
+
+
+    /**
+     * Indicates that the associated search operation has completed.
+     *
+     * @param  id      The asynchronous request ID for the search, or
+     *                 {@code null} if the search could not be sent.
+     * @param  result  The result received for the search.
+     */
+    public void searchResultReceived(final AsyncRequestID id,
+                                     final SearchResult result)
+    {
+      final long elapsedMillis =
+           (System.nanoTime() - startTimeNanos) / 1000000L;
+
+      requestDone(slot);
+
+      if (! collecting)
+      {
+        return;
+      }
+
+      synchronized (trackerLocks[slot])
+      {
+        if (! collectingStats)
+        {
+          return;
+        }
+
+        resultCodes[slot].increment(result.getResultCode().toString());
+        searchesCompleted[slot].increment();
+        entriesReturned[slot].addValue(result.getEntryCount());
+        searchTimers[slot].updateTimer((int) elapsedMillis);
+
+        if ((responseTimeThreshold > 0L) &&
+            (elapsedMillis > responseTimeThreshold))
+        {
+          searchesExceedingThreshold[slot].increment();
+        }
+      }
+    }
+  }
+}
@@ -26,12 +26,10 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Random;
-import java.util.concurrent.Semaphore;
 
 import com.unboundid.ldap.sdk.Filter;
 import com.unboundid.ldap.sdk.LDAPConnection;
 import com.unboundid.ldap.sdk.LDAPException;
-import com.unboundid.ldap.sdk.SearchRequest;
 import com.unboundid.ldap.sdk.SearchResultEntry;
 import com.unboundid.ldap.sdk.SearchScope;
 import com.unboundid.util.FixedRateBarrier;
@@ -57,11 +55,14 @@ import com.slamd.stat.TimeTracker;
 
 /**
  * This class provides a SLAMD job class that may be used to perform
- * asynchronous searches against an LDAP directory server.  Each client should
- * have a single thread that will be used to send requests to the server.  That
- * thread can have any number of connections, and requests will be sent across
- * those connections in a round-robin manner.  The rate at which requests are
- * sent to the server can be controlled in either or both of the following ways:
+ * asynchronous searches against an LDAP directory server.  Each client has a
+ * single search engine with any number of connections that is shared by all of
+ * the threads on that client, and requests will be pipelined across those
+ * connections either in a round-robin manner or by sending each request on a
+ * lightly-loaded connection.  A single thread is usually enough to keep the
+ * connections busy, but a handful of threads may be used to drive very high
+ * request rates.  The rate at which requests are sent to the server can be
+ * controlled in either or both of the following ways:
  * <UL>
  *   <LI>You can specify a maximum request rate (in terms of the maximum number
  *       of requests per second) that the client should maintain.  Note that
@@ -178,6 +179,13 @@ public final class AsynchronousSearchRateJob
 
 
 
+  /**
+   * The thread ID used for the stat trackers maintained by the search engine.
+   */
+  private static final String ENGINE_THREAD_ID = "Search Engine";
+
+
+
   /**
    * The set of defined connection selection modes.
    */
@@ -190,7 +198,6 @@ public final class AsynchronousSearchRateJob
 
 
   // Variables used to hold the values of the parameters.
-  private boolean      useRoundRobin;
   private int          coolDownTime;
   private int          filter1Percentage;
   private int          responseTimeThreshold;
@@ -201,41 +208,26 @@ public final class AsynchronousSearchRateJob
   private String       baseDN;
   private String[]     attributes;
 
-  // Stat trackers used by this job.  We will maintain a separate set of
-  // statistics per connection, and then will merge them all before returning
-  // them to the server.
-  private CategoricalTracker[]  resultCodes;
-  private IncrementalTracker [] searchesCompleted;
-  private IncrementalTracker[]  searchesExceedingThreshold;
-  private IntegerValueTracker[] entriesReturned;
-  private TimeTracker[]         searchTimers;
-
   // The random number generator used for this job.
   private Random random;
 
-  // The semaphore used to control the maximum number of outstanding requests.
-  private Semaphore outstandingRequests;
+  // The request rate limiter shared by all threads on this client.
+  private static FixedRateBarrier rateLimiter;
 
-  // The request rate limiter for this job.
-  private FixedRateBarrier rateLimiter;
+  // The search engine shared by all threads on this client.
+  private static AsynchronousSearchEngine engine;
 
   // Value patterns used for the filters.
   private ValuePattern filter1Pattern;
   private ValuePattern filter2Pattern;
 
-  // The set of LDAP connections that will be used by this thread.
-  private LDAPConnection[] conns;
-
-  // A counter that will be used to determine which connection to use for the
-  // next request.
-  private int nextConnSlot;
-
   // The parameters used by this job.
   private IntegerParameter connsPerClientParameter = new IntegerParameter(
        "connsPerClient", "Connections per Client",
        "Specifies the number of connections to establish per client.  " +
-            "Requests will be spread across the client connections in a " +
-            "round-robin manner",
+            "Requests from all threads on the client will be spread " +
+            "across these connections according to the connection " +
+            "selection mode.",
        true, 1, true, 1, false, 0);
   private IntegerParameter coolDownParameter = new IntegerParameter(
        "coolDownTime", "Cool Down Time",
@@ -248,9 +240,10 @@ public final class AsynchronousSearchRateJob
             "Specifies the maximum number of outstanding search requests to " +
                  "allow at any given time for each client.  If multiple " +
                  "clients are used, then each client will be allowed to " +
-                 "have up to this many concurrent outstanding requests.  A " +
-                 "value less than or equal to zero indicates that no " +
-                 "limit should be enforced.",
+                 "have up to this many concurrent outstanding requests, " +
+                 "divided evenly across its connections.  A value less " +
+                 "than or equal to zero indicates that no limit should be " +
+                 "enforced.",
             true, -1);
   private IntegerParameter maxRateParameter = new IntegerParameter("maxRate",
        "Max Request Rate (Requests/Second/Client)",
@@ -378,17 +371,6 @@ public final class AsynchronousSearchRateJob
 
 
 
-  /**
-   * {@inheritDoc}
-   */
-  @Override()
-  public int overrideThreadsPerClient()
-  {
-    return 1;
-  }
-
-
-
   /**
    * {@inheritDoc}
    */
@@ -462,6 +444,14 @@ public final class AsynchronousSearchRateJob
   @Override()
   public StatTracker[] getStatTrackers()
   {
+    // The trackers are maintained by the search engine rather than by the
+    // individual threads, so only the first thread should report them.
+    final AsynchronousSearchEngine e = engine;
+    if ((e == null) || (getThreadNumber() != 0))
+    {
+      return new StatTracker[0];
+    }
+
     final ArrayList<StatTracker> trackerList = new ArrayList<>(5);
 
     final int    collectionInterval = getCollectionInterval();
@@ -471,23 +461,23 @@ public final class AsynchronousSearchRateJob
     final IncrementalTracker aggregateSearchesCompleted =
          new IncrementalTracker(clientID, threadID, STAT_SEARCHES_COMPLETED,
               collectionInterval);
-    aggregateSearchesCompleted.aggregate(searchesCompleted);
+    aggregateSearchesCompleted.aggregate(e.getSearchesCompletedTrackers());
     trackerList.add(aggregateSearchesCompleted);
 
     final TimeTracker aggregateSearchTimer = new TimeTracker(clientID, threadID,
          STAT_SEARCH_DURATION, collectionInterval);
-    aggregateSearchTimer.aggregate(searchTimers);
+    aggregateSearchTimer.aggregate(e.getSearchTimers());
     trackerList.add(aggregateSearchTimer);
 
     final IntegerValueTracker aggregateEntriesReturned =
          new IntegerValueTracker(clientID, threadID, STAT_ENTRIES_RETURNED,
               collectionInterval);
-    aggregateEntriesReturned.aggregate(entriesReturned);
+    aggregateEntriesReturned.aggregate(e.getEntriesReturnedTrackers());
     trackerList.add(aggregateEntriesReturned);
 
     final CategoricalTracker aggregateResultCodes = new CategoricalTracker(
          clientID, threadID, STAT_RESULT_CODES, collectionInterval);
-    aggregateResultCodes.aggregate(resultCodes);
+    aggregateResultCodes.aggregate(e.getResultCodeTrackers());
     trackerList.add(aggregateResultCodes);
 
     if (responseTimeThreshold > 0)
@@ -495,7 +485,8 @@ public final class AsynchronousSearchRateJob
       final IncrementalTracker aggregateSearchesExceedingThreshold =
            new IncrementalTracker(clientID, threadID,
                 STAT_SEARCHES_EXCEEDING_THRESHOLD, collectionInterval);
-      aggregateSearchesExceedingThreshold.aggregate(searchesExceedingThreshold);
+      aggregateSearchesExceedingThreshold.aggregate(
+           e.getSearchesExceedingThresholdTrackers());
       trackerList.add(aggregateSearchesExceedingThreshold);
     }
 
@@ -627,6 +618,110 @@ public final class AsynchronousSearchRateJob
 
 
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  protected void initializeClientNonLDAP(final String clientID,
+                                         final ParameterList parameters)
+            throws UnableToRunException
+  {
+    rateLimiter = null;
+    maxRateParameter =
+         parameters.getIntegerParameter(maxRateParameter.getName());
+    if ((maxRateParameter != null) && maxRateParameter.hasValue())
+    {
+      final int maxRate = maxRateParameter.getIntValue();
+      if (maxRate > 0)
+      {
+        int rateIntervalSeconds = 0;
+        rateLimitDurationParameter = parameters.getIntegerParameter(
+             rateLimitDurationParameter.getName());
+        if ((rateLimitDurationParameter != null) &&
+            rateLimitDurationParameter.hasValue())
+        {
+          rateIntervalSeconds = rateLimitDurationParameter.getIntValue();
+        }
+
+        if (rateIntervalSeconds <= 0)
+        {
+          rateIntervalSeconds = getClientSideJob().getCollectionInterval();
+        }
+
+        rateLimiter = new FixedRateBarrier(rateIntervalSeconds * 1000L,
+             maxRate * rateIntervalSeconds);
+      }
+    }
+
+
+    int maxOutstandingRequests = -1;
+    maxOutstandingRequestsParameter = parameters.getIntegerParameter(
+         maxOutstandingRequestsParameter.getName());
+    if ((maxOutstandingRequestsParameter != null) &&
+        maxOutstandingRequestsParameter.hasValue())
+    {
+      maxOutstandingRequests = maxOutstandingRequestsParameter.getIntValue();
+    }
+
+
+    boolean useRoundRobin = false;
+    selectModeParameter =
+         parameters.getMultiChoiceParameter(selectModeParameter.getName());
+    if ((selectModeParameter != null) && selectModeParameter.hasValue())
+    {
+      final String selectModeStr = selectModeParameter.getStringValue();
+      if (selectModeStr.equalsIgnoreCase(SELECT_MODE_STR_ROUND_ROBIN))
+      {
+        useRoundRobin = true;
+      }
+    }
+
+
+    int threshold = -1;
+    thresholdParameter =
+         parameters.getIntegerParameter(thresholdParameter.getName());
+    if ((thresholdParameter != null) && thresholdParameter.hasValue())
+    {
+      threshold = thresholdParameter.getIntValue();
+    }
+
+
+    int numConns = 1;
+    connsPerClientParameter = parameters.getIntegerParameter(
+         connsPerClientParameter.getName());
+    if ((connsPerClientParameter != null) && connsPerClientParameter.hasValue())
+    {
+      numConns = connsPerClientParameter.getIntValue();
+    }
+
+    final LDAPConnection[] conns = new LDAPConnection[numConns];
+    for (int i=0; i < conns.length; i++)
+    {
+      try
+      {
+        conns[i] = createConnection();
+      }
+      catch (final LDAPException le)
+      {
+        for (int j=0; j < i; j++)
+        {
+          conns[j].close();
+        }
+        throw new UnableToRunException("An error occurred while attempting " +
+             "to establish an LDAP connection:  " +
+             StaticUtils.getExceptionMessage(le), le);
+      }
+    }
+
+    engine = new AsynchronousSearchEngine(conns, maxOutstandingRequests,
+         useRoundRobin, threshold, clientID, ENGINE_THREAD_ID,
+         getClientSideJob().getCollectionInterval(), STAT_SEARCHES_COMPLETED,
+         STAT_SEARCH_DURATION, STAT_ENTRIES_RETURNED, STAT_RESULT_CODES,
+         STAT_SEARCHES_EXCEEDING_THRESHOLD);
+  }
+
+
+
   /**
    * {@inheritDoc}
    */
@@ -744,33 +839,6 @@ public final class AsynchronousSearchRateJob
     }
 
 
-    rateLimiter = null;
-    maxRateParameter =
-         parameters.getIntegerParameter(maxRateParameter.getName());
-    if ((maxRateParameter != null) && maxRateParameter.hasValue())
-    {
-      final int maxRate = maxRateParameter.getIntValue();
-      if (maxRate > 0)
-      {
-        int rateIntervalSeconds = 0;
-        rateLimitDurationParameter = parameters.getIntegerParameter(
-             rateLimitDurationParameter.getName());
-        if ((rateLimitDurationParameter != null) &&
-            rateLimitDurationParameter.hasValue())
-        {
-          rateIntervalSeconds = rateLimitDurationParameter.getIntValue();
-        }
-
-        if (rateIntervalSeconds <= 0)
-        {
-          rateIntervalSeconds = getClientSideJob().getCollectionInterval();
-        }
-
-        rateLimiter = new FixedRateBarrier(rateIntervalSeconds * 1000L,
-             maxRate * rateIntervalSeconds);
-      }
-    }
-
     try
     {
       filter1Pattern = new ValuePattern(filter1);
@@ -790,100 +858,6 @@ public final class AsynchronousSearchRateJob
       throw new UnableToRunException("Unable to parse filter pattern 2:  " +
                                      stackTraceToString(e), e);
     }
-
-
-    outstandingRequests = null;
-    maxOutstandingRequestsParameter = parameters.getIntegerParameter(
-         maxOutstandingRequestsParameter.getName());
-    if ((maxOutstandingRequestsParameter != null) &&
-        maxOutstandingRequestsParameter.hasValue())
-    {
-      final int maxOutstandingRequests =
-           maxOutstandingRequestsParameter.getIntValue();
-      if (maxOutstandingRequests > 0)
-      {
-        outstandingRequests = new Semaphore(maxOutstandingRequests, true);
-      }
-    }
-
-
-    int numConns = -1;
-    nextConnSlot = 0;
-    conns = null;
-    connsPerClientParameter = parameters.getIntegerParameter(
-         connsPerClientParameter.getName());
-    if ((connsPerClientParameter != null) && connsPerClientParameter.hasValue())
-    {
-      numConns = connsPerClientParameter.getIntValue();
-      conns = new LDAPConnection[numConns];
-      for (int i=0; i < conns.length; i++)
-      {
-        try
-        {
-          conns[i] = createConnection();
-        }
-        catch (final LDAPException le)
-        {
-          for (int j=0; j < (i-1); j++)
-          {
-            conns[j].close();
-          }
-          throw new UnableToRunException("An error occurred while attempting " +
-               "to establish an LDAP connection:  " +
-               StaticUtils.getExceptionMessage(le), le);
-        }
-      }
-    }
-
-
-    useRoundRobin = false;
-    selectModeParameter =
-         parameters.getMultiChoiceParameter(selectModeParameter.getName());
-    if ((selectModeParameter != null) && selectModeParameter.hasValue())
-    {
-      final String selectModeStr = selectModeParameter.getStringValue();
-      if (selectModeStr.equalsIgnoreCase(SELECT_MODE_STR_ROUND_ROBIN))
-      {
-        useRoundRobin = true;
-      }
-    }
-
-
-    searchesCompleted = new IncrementalTracker[numConns];
-    for (int i=0; i < numConns; i++)
-    {
-      searchesCompleted[i] = new IncrementalTracker(clientID,
-           threadID + '-' + i, STAT_SEARCHES_COMPLETED, collectionInterval);
-    }
-
-    searchTimers = new TimeTracker[numConns];
-    for (int i=0; i < numConns; i++)
-    {
-      searchTimers[i] = new TimeTracker(clientID, threadID + '-' + i,
-           STAT_SEARCH_DURATION, collectionInterval);
-    }
-
-    entriesReturned = new IntegerValueTracker[numConns];
-    for (int i=0; i < numConns; i++)
-    {
-      entriesReturned[i] = new IntegerValueTracker(clientID, threadID + '-' + i,
-           STAT_ENTRIES_RETURNED, collectionInterval);
-    }
-
-    resultCodes = new CategoricalTracker[numConns];
-    for (int i=0; i < numConns; i++)
-    {
-      resultCodes[i] = new CategoricalTracker(clientID, threadID + '-' + i,
-           STAT_RESULT_CODES, collectionInterval);
-    }
-
-    searchesExceedingThreshold = new IncrementalTracker[numConns];
-    for (int i=0; i < numConns; i++)
-    {
-      searchesExceedingThreshold[i] = new IncrementalTracker(clientID,
-           threadID + '-' + i, STAT_SEARCHES_EXCEEDING_THRESHOLD,
-           collectionInterval);
-    }
   }
 
 
@@ -892,16 +866,18 @@ public final class AsynchronousSearchRateJob
    * {@inheritDoc}
    */
   @Override()
-  public synchronized void finalizeClient()
+  public void finalizeClient()
   {
-    if (conns != null)
+    synchronized (AsynchronousSearchRateJob.class)
     {
-      for (final LDAPConnection conn : conns)
+      // The engine itself is retained because the client retrieves the stat
+      // trackers after the client has been finalized.  It will be replaced
+      // when the next job of this type is initialized.
+      if (engine != null)
       {
-        conn.close();
+        engine.stopCollecting();
+        engine.close();
       }
-
-      conns = null;
     }
   }
 
@@ -930,7 +906,7 @@ public final class AsynchronousSearchRateJob
     else
     {
       collectingStats = true;
-      startTrackers();
+      engine.startCollecting();
     }
 
 
@@ -938,18 +914,6 @@ public final class AsynchronousSearchRateJob
     boolean doneCollecting = false;
     while (! shouldStop())
     {
-      if (outstandingRequests != null)
-      {
-        try
-        {
-          outstandingRequests.acquire();
-        }
-        catch (final Exception e)
-        {
-          continue;
-        }
-      }
-
       if (rateLimiter != null)
       {
         if (rateLimiter.await())
@@ -963,7 +927,7 @@ public final class AsynchronousSearchRateJob
       if (collectingStats && (coolDownTime > 0) &&
           (searchStartTime >= stopCollectingTime))
       {
-        stopTrackers();
+        engine.stopCollecting();
         collectingStats = false;
         doneCollecting  = true;
       }
@@ -971,42 +935,11 @@ public final class AsynchronousSearchRateJob
                (searchStartTime >= startCollectingTime))
       {
         collectingStats = true;
-        startTrackers();
+        engine.startCollecting();
       }
 
 
-      // Figure out which connection should be used for the search.
-      int connSlot;
-      if (useRoundRobin)
-      {
-        connSlot = nextConnSlot++;
-        if (nextConnSlot >= conns.length)
-        {
-          nextConnSlot = 0;
-        }
-      }
-      else
-      {
-        connSlot = 0;
-        int minActiveCount = Integer.MAX_VALUE;
-        for (int i=0; i < conns.length; i++)
-        {
-          final int activeCount = conns[i].getActiveOperationCount();
-          if (activeCount == 0)
-          {
-            connSlot = i;
-            break;
-          }
-          else if (activeCount < minActiveCount)
-          {
-            connSlot = i;
-            minActiveCount = activeCount;
-          }
-        }
-      }
-
-
-      // Create the search request to use.
+      // Create the filter to use for the search.
       final Filter filter;
       try
       {
@@ -1027,113 +960,22 @@ public final class AsynchronousSearchRateJob
         break;
       }
 
-      final AsynchronousSearchRateListener listener;
-      if (collectingStats)
-      {
-        listener = new AsynchronousSearchRateListener(responseTimeThreshold,
-             outstandingRequests, resultCodes[connSlot],
-             searchesCompleted[connSlot], searchesExceedingThreshold[connSlot],
-             entriesReturned[connSlot], searchTimers[connSlot]);
-      }
-      else
-      {
-        listener = new AsynchronousSearchRateListener(responseTimeThreshold,
-             outstandingRequests, null, null, null, null, null);
-      }
 
-      final SearchRequest searchRequest = new SearchRequest(listener, baseDN,
-           scope, filter, attributes);
-      searchRequest.setSizeLimit(sizeLimit);
-      searchRequest.setTimeLimitSeconds(timeLimit);
-
-
-      // Process the search.
+      // Process the search.  The engine will choose the connection to use
+      // and will wait if too many requests are already outstanding.
       try
       {
-        conns[connSlot].asyncSearch(searchRequest);
+        engine.search(baseDN, scope, filter, attributes, sizeLimit,
+                      timeLimit);
       }
-      catch (LDAPException le)
+      catch (final InterruptedException ie)
       {
-        if (collectingStats)
-        {
-          resultCodes[connSlot].increment(le.getResultCode().toString());
-        }
+        break;
       }
     }
 
-
-    // Stop collecting statistics if the trackers are still active.
-    if (collectingStats)
-    {
-      stopTrackers();
-      collectingStats = false;
-    }
-  }
-
-
-
-  /**
-   * Starts the stat trackers for this job.
-   */
-  private void startTrackers()
-  {
-    for (final IncrementalTracker t : searchesCompleted)
-    {
-      t.startTracker();
-    }
-
-    for (final TimeTracker t : searchTimers)
-    {
-      t.startTracker();
-    }
-
-    for (final IntegerValueTracker t : entriesReturned)
-    {
-      t.startTracker();
-    }
-
-    for (final CategoricalTracker t : resultCodes)
-    {
-      t.startTracker();
-    }
-
-    for (final IncrementalTracker t : searchesExceedingThreshold)
-    {
-      t.startTracker();
-    }
-  }
-
-
-
-  /**
-   * Stops the stat trackers for this job.
-   */
-  private void stopTrackers()
-  {
-    for (final IncrementalTracker t : searchesCompleted)
-    {
-      t.stopTracker();
-    }
-
-    for (final TimeTracker t : searchTimers)
-    {
-      t.stopTracker();
-    }
-
-    for (final IntegerValueTracker t : entriesReturned)
-    {
-      t.stopTracker();
-    }
-
-    for (final CategoricalTracker t : resultCodes)
-    {
-      t.stopTracker();
-    }
-
-    for (final IncrementalTracker t : searchesExceedingThreshold)
-    {
-      t.stopTracker();
-    }
+    // The engine's trackers are shared with the other threads on this client,
+    // so they are stopped in finalizeClient once the last thread has finished.
   }
 
 
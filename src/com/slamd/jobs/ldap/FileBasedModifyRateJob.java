@@ -20,11 +20,13 @@ package com.slamd.jobs.ldap;
 
 
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.slamd.common.IndexedLineFile;
 import com.slamd.job.UnableToRunException;
 import com.slamd.parameter.BooleanParameter;
 import com.slamd.parameter.FileURLParameter;
@@ -107,6 +109,7 @@ public final class FileBasedModifyRateJob
   private static int           valueLength;
   private static long          timeBetweenRequests;
   private static String[]      entryDNs;
+  private static IndexedLineFile dnFile;
   private static String[]      modAttributes;
 
   // Stat trackers used by this job.
@@ -131,6 +134,14 @@ public final class FileBasedModifyRateJob
        "Indicates whether to use the entry DNs in sequential order rather " +
             "than at random.",
        false);
+  private BooleanParameter indexedParameter = new BooleanParameter(
+       "indexDNFile", "Index DN File Rather Than Loading It",
+       "Indicates whether the DN file should be indexed and read on demand " +
+            "rather than loaded in its entirety when the job starts.  This " +
+            "greatly reduces the memory required for very large DN files.  " +
+            "If the file is not on the local filesystem, then it will first " +
+            "be copied to a temporary file.",
+       false);
   private FileURLParameter dnFileParameter = new FileURLParameter(
        "dnFile", "DN File URL",
        "The URL to a file containing the DNs of the entries to modify.",
@@ -255,6 +266,7 @@ public final class FileBasedModifyRateJob
     return Arrays.asList(
          new PlaceholderParameter(),
          dnFileParameter,
+         indexedParameter,
          sequentialParameter,
          new PlaceholderParameter(),
          attributesParameter,
@@ -334,19 +346,45 @@ public final class FileBasedModifyRateJob
     parentRandom = new Random();
 
 
+    entryDNs = null;
+    dnFile   = null;
     dnFileParameter =
          parameters.getFileURLParameter(dnFileParameter.getName());
-    try
+    indexedParameter =
+         parameters.getBooleanParameter(indexedParameter.getName());
+    int numDNs;
+    if ((indexedParameter != null) && indexedParameter.getBooleanValue())
     {
-      entryDNs = dnFileParameter.getNonBlankFileLines();
+      try
+      {
+        final File localFile = dnFileParameter.getLocalFile();
+        dnFile = new IndexedLineFile(localFile,
+             dnFileParameter.isTemporaryLocalFile(localFile));
+      }
+      catch (Exception e)
+      {
+        throw new UnableToRunException("Unable to index DN file " +
+             dnFileParameter.getFileURL() + ":  " + stackTraceToString(e), e);
+      }
+
+      numDNs = dnFile.getLineCount();
     }
-    catch (Exception e)
+    else
     {
-      throw new UnableToRunException("Unable to retrieve DN file " +
-           dnFileParameter.getFileURL() + ":  " + stackTraceToString(e), e);
+      try
+      {
+        entryDNs = dnFileParameter.getNonBlankFileLines();
+      }
+      catch (Exception e)
+      {
+        throw new UnableToRunException("Unable to retrieve DN file " +
+             dnFileParameter.getFileURL() + ":  " + stackTraceToString(e), e);
+      }
+
+      numDNs = entryDNs.length;
     }
 
-    if (entryDNs.length == 0)
+    if (numDNs == 0)
     {
       throw new UnableToRunException("There are no entry DNs in file " +
            dnFileParameter.getFileURL());
@@ -447,6 +485,21 @@ public final class FileBasedModifyRateJob
 
 
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public void finalizeClient()
+  {
+    if (dnFile != null)
+    {
+      dnFile.close();
+      dnFile = null;
+    }
+  }
+
+
+
   /**
    * {@inheritDoc}
    */
@@ -535,6 +588,7 @@ public final class FileBasedModifyRateJob
 
     // Perform the modifications until it's time to stop.
     boolean doneCollecting = false;
+    int numDNs = (dnFile == null) ? entryDNs.length : dnFile.getLineCount();
     while (! shouldStop())
     {
       if (rateLimiter != null)
@@ -563,23 +617,29 @@ public final class FileBasedModifyRateJob
 
 
       // Get the DN of the entry to modify.
-      String dn;
+      int pos;
       if (sequential)
       {
-        int pos = sequentialCounter.incrementAndGet();
-        if (pos >= entryDNs.length)
+        pos = sequentialCounter.incrementAndGet();
+        if (pos >= numDNs)
         {
           sequentialCounter.set(1);
-          dn = entryDNs[0];
-        }
-        else
-        {
-          dn = entryDNs[pos];
+          pos = 0;
         }
       }
       else
       {
-        dn = entryDNs[random.nextInt(entryDNs.length)];
+        pos = random.nextInt(numDNs);
+      }
+
+      String dn;
+      if (dnFile == null)
+      {
+        dn = entryDNs[pos];
+      }
+      else
+      {
+        dn = dnFile.getLine(pos);
       }
 
 
@@ -20,16 +20,23 @@ package com.slamd.jobs.ldap;
 
 
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.slamd.client.CoordinatedRateLimiter;
+import com.slamd.common.IndexedLineFile;
 import com.slamd.job.UnableToRunException;
+import com.slamd.loadvariance.LatencyTargetController;
 import com.slamd.parameter.BooleanParameter;
 import com.slamd.parameter.FileURLParameter;
+import com.slamd.parameter.FloatParameter;
 import com.slamd.parameter.IntegerParameter;
+import com.slamd.parameter.InvalidValueException;
 import com.slamd.parameter.MultiChoiceParameter;
 import com.slamd.parameter.MultiLineTextParameter;
 import com.slamd.parameter.Parameter;
@@ -159,6 +166,8 @@ public final class FileBasedSearchRateJob
   private static AtomicInteger sequentialCounter;
   private static boolean       sequential;
   private static Filter[]      filters;
+  private static IndexedLineFile filterFile;
+  private static int[]         filterLineNumbers;
   private static int           coolDownTime;
   private static int           responseTimeThreshold;
   private static int           sizeLimit;
@@ -183,6 +192,13 @@ public final class FileBasedSearchRateJob
   // The rate limiter for this job.
   private static FixedRateBarrier rateLimiter;
 
+  // The controller used to adjust the rate limiter to meet a response time
+  // target, if one has been configured.
+  private static LatencyTargetController latencyController;
+
+  // The rate limiter used to coordinate the search rate across clients.
+  private static CoordinatedRateLimiter coordinatedRateLimiter;
+
   // The search request to use for this thread.
   private SearchRequest searchRequest;
 
@@ -195,6 +211,15 @@ public final class FileBasedSearchRateJob
        "Indicates whether to use the filters in sequential order rather than " +
             "at random.",
        false);
+  private BooleanParameter indexedParameter = new BooleanParameter(
+       "indexFilterFile", "Index Filter File Rather Than Loading It",
+       "Indicates whether the filter file should be indexed and read on " +
+            "demand rather than loaded and parsed in its entirety when the " +
+            "job starts.  This greatly reduces the memory required for very " +
+            "large filter files, at the cost of parsing each filter as it " +
+            "is used.  If the file is not on the local filesystem, then it " +
+            "will first be copied to a temporary file.",
+       false);
   private FileURLParameter filterFileParameter = new FileURLParameter(
        "filterFile", "Filter File URL",
        "The URL to a file containing the filters to use for search requests.",
@@ -222,6 +247,38 @@ public final class FileBasedSearchRateJob
             "ensure that the rate doesn't exceed the requested level but may " +
             "be less able to achieve the desired rate.",
        true, 0, true,0, false, 0);
+  private BooleanParameter coordinateRateParameter = new BooleanParameter(
+       "coordinateRate", "Coordinate Max Rate Across Clients",
+       "Indicates whether the max search rate should be coordinated across " +
+            "all clients rather than enforced independently by each one.  " +
+            "If so, then the product of the max search rate and the number " +
+            "of clients will be treated as the overall target, and the " +
+            "SLAMD server will periodically shift each client's share of " +
+            "that target based on the rates the clients are actually able " +
+            "to achieve.",
+       false);
+  private IntegerParameter latencyTargetParameter = new IntegerParameter(
+       "latencyTarget", "Response Time Target (ms)",
+       "Specifies a response time target in milliseconds.  If a value " +
+            "greater than zero is provided, then each client will adjust " +
+            "its search rate once per rate enforcement interval in an " +
+            "attempt to find the highest rate at which the target response " +
+            "time percentile stays at or below this value.  In that case, " +
+            "the max search rate will be used as an upper bound for the " +
+            "rate.  A value less than or equal to zero indicates that the " +
+            "rate should not be adjusted.",
+       false, -1);
+  private FloatParameter latencyTargetPercentileParameter = new FloatParameter(
+       "latencyTargetPercentile", "Response Time Target Percentile",
+       "The percentile of search response times that should be kept at or " +
+            "below the response time target.",
+       false, 99.0f, true, 0.0f, true, 100.0f);
+  private IntegerParameter latencyTargetInitialRateParameter =
+       new IntegerParameter("latencyTargetInitialRate",
+            "Response Time Target Initial Rate (Searches/Second/Client)",
+            "The search rate (in searches per second per client) with which " +
+                 "to begin when a response time target is in use.",
+            false, 100, true, 1, false, 0);
   private IntegerParameter sizeLimitParameter = new IntegerParameter(
        "sizeLimit", "Size Limit",
        "The maximum number of entries that should be returned from each " +
@@ -326,6 +383,7 @@ public final class FileBasedSearchRateJob
          attributesParameter,
          new PlaceholderParameter(),
          filterFileParameter,
+         indexedParameter,
          sequentialParameter,
          new PlaceholderParameter(),
          warmUpParameter,
@@ -333,6 +391,10 @@ public final class FileBasedSearchRateJob
          thresholdParameter,
          maxRateParameter,
          rateLimitDurationParameter,
+         coordinateRateParameter,
+         latencyTargetParameter,
+         latencyTargetPercentileParameter,
+         latencyTargetInitialRateParameter,
          sizeLimitParameter,
          timeLimitParameter,
          timeBetweenRequestsParameter);
@@ -348,6 +410,12 @@ public final class FileBasedSearchRateJob
                                            final String threadID,
                                            final int collectionInterval)
   {
+    StatTracker[] controllerStubs =
+         LatencyTargetController.getStatTrackerStubs(clientID,
+                                                      collectionInterval);
+    StatTracker quotaStub =
+         CoordinatedRateLimiter.getStatTrackerStub(clientID,
+                                                   collectionInterval);
     return new StatTracker[]
     {
       new IncrementalTracker(clientID, threadID, STAT_SEARCHES_COMPLETED,
@@ -360,7 +428,10 @@ public final class FileBasedSearchRateJob
                              collectionInterval),
       new IncrementalTracker(clientID, threadID,
                              STAT_SEARCHES_EXCEEDING_THRESHOLD,
-                             collectionInterval)
+                             collectionInterval),
+      controllerStubs[0],
+      controllerStubs[1],
+      quotaStub
     };
   }
 
@@ -372,27 +443,31 @@ public final class FileBasedSearchRateJob
   @Override()
   public StatTracker[] getStatTrackers()
   {
+    ArrayList<StatTracker> trackerList = new ArrayList<>(7);
+    trackerList.add(searchesCompleted);
+    trackerList.add(searchTimer);
+    trackerList.add(entriesReturned);
+    trackerList.add(resultCodes);
+
     if (responseTimeThreshold > 0)
     {
-      return new StatTracker[]
-      {
-        searchesCompleted,
-        searchTimer,
-        entriesReturned,
-        resultCodes,
-        searchesExceedingThreshold
-      };
+      trackerList.add(searchesExceedingThreshold);
     }
-    else
+
+    // The controller trackers are maintained per client rather than per
+    // thread, so only the first thread should report them.
+    if ((latencyController != null) && (getThreadNumber() == 0))
     {
-      return new StatTracker[]
-      {
-        searchesCompleted,
-        searchTimer,
-        entriesReturned,
-        resultCodes
-      };
+      trackerList.addAll(Arrays.asList(latencyController.getStatTrackers()));
+    }
+
+    if ((coordinatedRateLimiter != null) && (getThreadNumber() == 0))
+    {
+      trackerList.add(coordinatedRateLimiter.getStatTracker());
     }
+
+    StatTracker[] trackers = new StatTracker[trackerList.size()];
+    return trackerList.toArray(trackers);
   }
 
 
@@ -444,6 +519,51 @@ public final class FileBasedSearchRateJob
 
 
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  protected void validateNonLDAPJobInfo(final int numClients,
+                                        final int threadsPerClient,
+                                        final int threadStartupDelay,
+                                        final Date startTime,
+                                        final Date stopTime,
+                                        final int duration,
+                                        final int collectionInterval,
+                                        final ParameterList parameters)
+            throws InvalidValueException
+  {
+    BooleanParameter coordinateParam =
+         parameters.getBooleanParameter(coordinateRateParameter.getName());
+    if ((coordinateParam == null) || (! coordinateParam.getBooleanValue()))
+    {
+      return;
+    }
+
+    // Coordinating the rate requires a max rate to coordinate, and can't be
+    // combined with a response time target since that would have each client
+    // choose its own rate.
+    IntegerParameter maxRateParam =
+         parameters.getIntegerParameter(maxRateParameter.getName());
+    if ((maxRateParam == null) || (! maxRateParam.hasValue()) ||
+        (maxRateParam.getIntValue() <= 0))
+    {
+      throw new InvalidValueException("A max search rate must be provided " +
+           "if the rate is to be coordinated across clients.");
+    }
+
+    IntegerParameter latencyParam =
+         parameters.getIntegerParameter(latencyTargetParameter.getName());
+    if ((latencyParam != null) && latencyParam.hasValue() &&
+        (latencyParam.getIntValue() > 0))
+    {
+      throw new InvalidValueException("A response time target may not be " +
+           "used if the rate is to be coordinated across clients.");
+    }
+  }
+
+
+
   /**
    * {@inheritDoc}
    */
@@ -497,42 +617,22 @@ public final class FileBasedSearchRateJob
     }
 
 
-    String[] filterLines;
+    filters    = null;
+    filterFile = null;
     filterFileParameter =
          parameters.getFileURLParameter(filterFileParameter.getName());
-    try
+    indexedParameter =
+         parameters.getBooleanParameter(indexedParameter.getName());
+    filterLineNumbers = null;
+    if ((indexedParameter != null) && indexedParameter.getBooleanValue())
     {
-      filterLines = filterFileParameter.getNonBlankFileLines();
-    }
-    catch (Exception e)
-    {
-      throw new UnableToRunException("Unable to retrieve filter file " +
-           filterFileParameter.getFileURL() + ":  " + stackTraceToString(e), e);
+      indexFilters();
     }
-
-    ArrayList<Filter> filterList = new ArrayList<>(filterLines.length);
-    for (String s : filterLines)
-    {
-      try
-      {
-        filterList.add(Filter.create(s));
-      }
-      catch (LDAPException le)
-      {
-        writeVerbose("Unable to parse string '" + s +
-                     "' as a valid search filter:  " + le.getMessage());
-      }
-    }
-
-    if (filterList.isEmpty())
+    else
     {
-      throw new UnableToRunException("There are no valid search filters in " +
-           "filter file " + filterFileParameter.getFileURL());
+      loadFilters();
     }
 
-    filters = new Filter[filterList.size()];
-    filterList.toArray(filters);
-
 
     sequentialParameter =
          parameters.getBooleanParameter(sequentialParameter.getName());
@@ -595,6 +695,7 @@ public final class FileBasedSearchRateJob
 
 
     rateLimiter = null;
+    coordinatedRateLimiter = null;
     maxRateParameter =
          parameters.getIntegerParameter(maxRateParameter.getName());
     if ((maxRateParameter != null) && maxRateParameter.hasValue())
@@ -618,8 +719,212 @@ public final class FileBasedSearchRateJob
 
         rateLimiter = new FixedRateBarrier(rateIntervalSeconds * 1000L,
              maxRate * rateIntervalSeconds);
+
+        coordinateRateParameter = parameters.getBooleanParameter(
+             coordinateRateParameter.getName());
+        if ((coordinateRateParameter != null) &&
+            coordinateRateParameter.getBooleanValue())
+        {
+          coordinatedRateLimiter = new CoordinatedRateLimiter(
+               getClientSideJob(), rateLimiter, maxRate, rateIntervalSeconds,
+               clientID, getClientSideJob().getCollectionInterval());
+          coordinatedRateLimiter.start();
+        }
       }
     }
+
+
+    latencyController = null;
+    latencyTargetParameter =
+         parameters.getIntegerParameter(latencyTargetParameter.getName());
+    if ((latencyTargetParameter != null) && latencyTargetParameter.hasValue() &&
+        (latencyTargetParameter.getIntValue() > 0))
+    {
+      float targetPercentile = 99.0f;
+      latencyTargetPercentileParameter = parameters.getFloatParameter(
+           latencyTargetPercentileParameter.getName());
+      if ((latencyTargetPercentileParameter != null) &&
+          latencyTargetPercentileParameter.hasValue())
+      {
+        targetPercentile = latencyTargetPercentileParameter.getFloatValue();
+      }
+
+      int initialRate = 100;
+      latencyTargetInitialRateParameter = parameters.getIntegerParameter(
+           latencyTargetInitialRateParameter.getName());
+      if ((latencyTargetInitialRateParameter != null) &&
+          latencyTargetInitialRateParameter.hasValue())
+      {
+        initialRate = latencyTargetInitialRateParameter.getIntValue();
+      }
+
+      int maxRate = Integer.MAX_VALUE;
+      if ((maxRateParameter != null) && maxRateParameter.hasValue() &&
+          (maxRateParameter.getIntValue() > 0))
+      {
+        maxRate = maxRateParameter.getIntValue();
+      }
+
+      int controlIntervalSeconds = 0;
+      rateLimitDurationParameter = parameters.getIntegerParameter(
+           rateLimitDurationParameter.getName());
+      if ((rateLimitDurationParameter != null) &&
+          rateLimitDurationParameter.hasValue())
+      {
+        controlIntervalSeconds = rateLimitDurationParameter.getIntValue();
+      }
+
+      if (controlIntervalSeconds <= 0)
+      {
+        controlIntervalSeconds = getClientSideJob().getCollectionInterval();
+      }
+
+      if (rateLimiter == null)
+      {
+        rateLimiter = new FixedRateBarrier(1000L, initialRate);
+      }
+
+      latencyController = new LatencyTargetController(this, rateLimiter,
+           controlIntervalSeconds, targetPercentile,
+           latencyTargetParameter.getIntValue(), initialRate, 1, maxRate,
+           clientID, getClientSideJob().getCollectionInterval());
+      latencyController.start();
+    }
+  }
+
+
+
+  /**
+   * Indexes the filter file so that filters can be read from it on demand
+   * rather than held in memory.  Each line is parsed once so that lines that
+   * are not valid filters can be skipped without being read again while the
+   * job is running.
+   *
+   * @throws  UnableToRunException  If the filter file cannot be read or does
+   *                                not contain any valid filters.
+   */
+  private void indexFilters()
+          throws UnableToRunException
+  {
+    try
+    {
+      final File localFile = filterFileParameter.getLocalFile();
+      filterFile = new IndexedLineFile(localFile,
+           filterFileParameter.isTemporaryLocalFile(localFile));
+    }
+    catch (Exception e)
+    {
+      throw new UnableToRunException("Unable to index filter file " +
+           filterFileParameter.getFileURL() + ":  " +
+           stackTraceToString(e), e);
+    }
+
+    int lineCount = filterFile.getLineCount();
+    int[] validLines = new int[lineCount];
+    int numValid = 0;
+    for (int i=0; i < lineCount; i++)
+    {
+      String s = filterFile.getLine(i);
+      try
+      {
+        Filter.create(s);
+        validLines[numValid++] = i;
+      }
+      catch (LDAPException le)
+      {
+        writeVerbose("Unable to parse string '" + s +
+                     "' as a valid search filter:  " + le.getMessage());
+      }
+    }
+
+    if (numValid == 0)
+    {
+      filterFile.close();
+      filterFile = null;
+      throw new UnableToRunException("There are no valid search filters in " +
+           "filter file " + filterFileParameter.getFileURL());
+    }
+
+    // The line numbers are only needed if some of the lines must be skipped.
+    if (numValid < lineCount)
+    {
+      filterLineNumbers = Arrays.copyOf(validLines, numValid);
+    }
+  }
+
+
+
+  /**
+   * Reads all of the filters from the filter file and parses them so that
+   * they are held in memory for the duration of the job.  Any lines that
+   * cannot be parsed as filters will be skipped.
+   *
+   * @throws  UnableToRunException  If the filter file cannot be read or does
+   *                                not contain any valid filters.
+   */
+  private void loadFilters()
+          throws UnableToRunException
+  {
+    String[] filterLines;
+    try
+    {
+      filterLines = filterFileParameter.getNonBlankFileLines();
+    }
+    catch (Exception e)
+    {
+      throw new UnableToRunException("Unable to retrieve filter file " +
+           filterFileParameter.getFileURL() + ":  " + stackTraceToString(e), e);
+    }
+
+    ArrayList<Filter> filterList = new ArrayList<>(filterLines.length);
+    for (String s : filterLines)
+    {
+      try
+      {
+        filterList.add(Filter.create(s));
+      }
+      catch (LDAPException le)
+      {
+        writeVerbose("Unable to parse string '" + s +
+                     "' as a valid search filter:  " + le.getMessage());
+      }
+    }
+
+    if (filterList.isEmpty())
+    {
+      throw new UnableToRunException("There are no valid search filters in " +
+           "filter file " + filterFileParameter.getFileURL());
+    }
+
+    filters = new Filter[filterList.size()];
+    filterList.toArray(filters);
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public void finalizeClient()
+  {
+    if (latencyController != null)
+    {
+      latencyController.stopRunning();
+    }
+
+    if (coordinatedRateLimiter != null)
+    {
+      coordinatedRateLimiter.stopRunning();
+    }
+
+    if (filterFile != null)
+    {
+      filterFile.close();
+      filterFile = null;
+    }
+
+    filterLineNumbers = null;
   }
 
 
@@ -719,9 +1024,32 @@ public final class FileBasedSearchRateJob
       startTrackers();
     }
 
+    if (latencyController != null)
+    {
+      latencyController.startRunning();
+    }
+
+    if (coordinatedRateLimiter != null)
+    {
+      coordinatedRateLimiter.startRunning();
+    }
+
 
     // Perform the searches until it's time to stop.
     boolean doneCollecting = false;
+    int numFilters;
+    if (filterFile == null)
+    {
+      numFilters = filters.length;
+    }
+    else if (filterLineNumbers == null)
+    {
+      numFilters = filterFile.getLineCount();
+    }
+    else
+    {
+      numFilters = filterLineNumbers.length;
+    }
     while (! shouldStop())
     {
       if (rateLimiter != null)
@@ -750,22 +1078,39 @@ public final class FileBasedSearchRateJob
 
 
       // Update the search request with an appropriate filter.
+      int pos;
       if (sequential)
       {
-        int pos = sequentialCounter.incrementAndGet();
-        if (pos >= filters.length)
+        pos = sequentialCounter.incrementAndGet();
+        if (pos >= numFilters)
         {
           sequentialCounter.set(1);
-          searchRequest.setFilter(filters[0]);
-        }
-        else
-        {
-          searchRequest.setFilter(filters[pos]);
+          pos = 0;
         }
       }
       else
       {
-        searchRequest.setFilter(filters[random.nextInt(filters.length)]);
+        pos = random.nextInt(numFilters);
+      }
+
+      if (filterFile == null)
+      {
+        searchRequest.setFilter(filters[pos]);
+      }
+      else
+      {
+        String filterString = filterFile.getLine(
+             (filterLineNumbers == null) ? pos : filterLineNumbers[pos]);
+        try
+        {
+          searchRequest.setFilter(filterString);
+        }
+        catch (LDAPException le)
+        {
+          writeVerbose("Unable to parse string '" + filterString +
+                       "' as a valid search filter:  " + le.getMessage());
+          continue;
+        }
       }
 
 
@@ -775,6 +1120,7 @@ public final class FileBasedSearchRateJob
         searchTimer.startTimer();
       }
 
+      long beforeSearchTimeNanos = System.nanoTime();
       try
       {
         SearchResult searchResult = conn.search(searchRequest);
@@ -793,6 +1139,17 @@ public final class FileBasedSearchRateJob
       }
       finally
       {
+        if (latencyController != null)
+        {
+          latencyController.recordResponseTime(
+               System.nanoTime() - beforeSearchTimeNanos);
+        }
+
+        if (coordinatedRateLimiter != null)
+        {
+          coordinatedRateLimiter.operationCompleted();
+        }
+
         if (collectingStats)
         {
           searchTimer.stopTimer();
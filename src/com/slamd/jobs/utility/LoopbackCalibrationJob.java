@@ -0,0 +1,1012 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.jobs.utility;
+
+
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.ModifyRequest;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.ldap.sdk.SimpleBindRequest;
+import com.unboundid.ldap.sdk.SingleServerSet;
+import com.unboundid.util.StaticUtils;
+
+import com.slamd.common.DurationParser;
+import com.slamd.common.SLAMDException;
+import com.slamd.http.HTTPClient;
+import com.slamd.http.HTTPRequest;
+import com.slamd.http.HTTPResponse;
+import com.slamd.job.JobClass;
+import com.slamd.job.UnableToRunException;
+import com.slamd.parameter.IntegerParameter;
+import com.slamd.parameter.InvalidValueException;
+import com.slamd.parameter.LabelParameter;
+import com.slamd.parameter.MultiChoiceParameter;
+import com.slamd.parameter.Parameter;
+import com.slamd.parameter.ParameterList;
+import com.slamd.parameter.PlaceholderParameter;
+import com.slamd.parameter.StringParameter;
+import com.slamd.stat.FloatValueTracker;
+import com.slamd.stat.IncrementalTracker;
+import com.slamd.stat.RealTimeStatReporter;
+import com.slamd.stat.StatTracker;
+import com.slamd.stat.TimeTracker;
+import com.slamd.tools.loopback.LatencyDistribution;
+import com.slamd.tools.loopback.LoopbackHTTPServer;
+import com.slamd.tools.loopback.LoopbackLDAPServer;
+import com.slamd.tools.loopback.LoopbackSMTPServer;
+import com.slamd.tools.loopback.LoopbackServer;
+
+
+
+/**
+ * This class provides a SLAMD job that measures the capacity of the SLAMD
+ * client itself.  Each client starts an in-process loopback server for the
+ * selected protocol and then drives it, as fast as possible, with the same
+ * client stack used by the corresponding load generation job.  Because the
+ * loopback server does almost no work and adds only a known amount of
+ * artificial latency, the resulting throughput is an upper bound on what that
+ * job can generate from the client system.  The time that the in-process
+ * server spends handling each operation is measured and reported separately,
+ * and any response time beyond that and the artificial latency is overhead
+ * added by the client stack.
+ */
+public final class LoopbackCalibrationJob
+       extends JobClass
+{
+  /**
+   * The display name for the stat tracker used to track operations completed.
+   */
+  private static final String STAT_OPERATIONS_COMPLETED =
+       "Operations Completed";
+
+
+
+  /**
+   * The display name for the stat tracker used to track operation durations.
+   */
+  private static final String STAT_OPERATION_DURATION =
+       "Operation Duration (ms)";
+
+
+
+  /**
+   * The display name for the stat tracker used to track the time added by the
+   * client stack.
+   */
+  private static final String STAT_CLIENT_OVERHEAD =
+       "Client Stack Overhead (ms)";
+
+
+
+  /**
+   * The display name for the stat tracker used to track the time spent in the
+   * loopback server.
+   */
+  private static final String STAT_SERVER_TIME = "Loopback Server Time (ms)";
+
+
+
+  /**
+   * The display name for the stat tracker used to track failed operations.
+   */
+  private static final String STAT_FAILED_OPERATIONS = "Failed Operations";
+
+
+
+  /**
+   * The serial version UID for this serializable class.
+   */
+  private static final long serialVersionUID = 3960275112894163071L;
+
+
+
+  // The parameter used to provide a label for the calibration details.
+  private LabelParameter calibrationLabelParameter = new LabelParameter(
+       "Calibration Parameters");
+
+  // The parameter used to specify the client stack to calibrate.
+  private static final String TARGET_LDAP_SEARCH = "LDAP Search";
+  private static final String TARGET_LDAP_MODIFY = "LDAP Modify";
+  private static final String TARGET_HTTP_GET = "HTTP GET";
+  private static final String TARGET_SMTP_SEND = "SMTP Send";
+  private MultiChoiceParameter targetParameter = new MultiChoiceParameter(
+       "target", "Client Stack to Calibrate",
+       "The type of operation to perform against the loopback server.  " +
+            "Each uses the same client stack as the corresponding job:  " +
+            "LDAP Search for Basic Search Rate, LDAP Modify for Basic " +
+            "Modify Rate, HTTP GET for Get Rate, and SMTP Send for SMTP " +
+            "SendRate.",
+       new String[]
+       {
+         TARGET_LDAP_SEARCH,
+         TARGET_LDAP_MODIFY,
+         TARGET_HTTP_GET,
+         TARGET_SMTP_SEND
+       },
+       TARGET_LDAP_SEARCH);
+
+  // The parameter used to specify the latency distribution.
+  private StringParameter latencyParameter = new StringParameter(
+       "latency", "Server Latency Distribution",
+       "The artificial latency that the loopback server should add to each " +
+            "response, in milliseconds.  The value may be 'none', " +
+            "'fixed:{delay}', 'uniform:{min}:{max}', " +
+            "'exponential:{mean}', or 'normal:{mean}:{stddev}'.",
+       true, LatencyDistribution.TYPE_NONE);
+
+  // The parameter used to specify the number of LDAP entries.
+  private IntegerParameter numEntriesParameter = new IntegerParameter(
+       "num_entries", "Number of LDAP Entries",
+       "The number of user entries to create in the loopback LDAP server.",
+       true, LoopbackLDAPServer.DEFAULT_NUM_ENTRIES, true, 1, false, 0);
+
+  // The parameter used to specify the HTTP response size.
+  private IntegerParameter responseSizeParameter = new IntegerParameter(
+       "response_size", "HTTP Response Size",
+       "The number of bytes that the loopback HTTP server should include in " +
+            "the body of each response.",
+       true, LoopbackHTTPServer.DEFAULT_RESPONSE_SIZE, true, 0, false, 0);
+
+  // The parameter used to provide a label for the additional parameters.
+  private LabelParameter additionalLabelParameter = new LabelParameter(
+       "Additional Parameters");
+
+  // The parameter used to specify a warm-up time.
+  private StringParameter warmUpDurationParameter = new StringParameter(
+       "warm_up_duration", "Warm-Up Duration",
+       "The length of time that the job should be allowed to run before it " +
+            "starts collecting statistics.  The value may be a duration with " +
+            "units (for example, '30 seconds' or '2 minutes'), but if " +
+            "the value is only numeric without a unit, then it will be " +
+            "interpreted as a number of seconds.  A nonzero warm-up time " +
+            "gives JIT optimization a chance to complete so that the " +
+            "calibration reflects steady-state performance.",
+       true, "10 seconds");
+
+
+  // Variables needed to perform processing using the parameter values.  These
+  // should be static so that the values are shared across all threads.
+  private static double latencyMeanMillis = 0.0D;
+  private static int numEntries = 0;
+  private static long warmUpDurationMillis = -1L;
+  private static String target = null;
+  private static URL httpURL = null;
+
+
+  // The loopback servers started for this client.  Only one of them will be
+  // in use for any job.
+  private static volatile LoopbackLDAPServer ldapServer = null;
+  private static volatile LoopbackServer socketServer = null;
+
+
+  // Totals across all threads, used to summarize the calibration when the
+  // client finishes.
+  private static final AtomicLong totalOperations = new AtomicLong(0L);
+  private static final AtomicLong totalDurationNanos = new AtomicLong(0L);
+  private static final AtomicLong firstStartTime = new AtomicLong(0L);
+  private static final AtomicLong lastStopTime = new AtomicLong(0L);
+
+  // The number of operations processed by all threads, including any during
+  // the warm-up period, used with the time the loopback server has spent
+  // processing them to find the server time per operation.
+  private static final LongAdder clientOperations = new LongAdder();
+
+
+  // Per-thread state for driving the selected client stack.
+  private HTTPClient httpClient;
+  private HTTPRequest httpRequest;
+  private LDAPConnectionPool connectionPool;
+  private Random random;
+
+
+  // Stat trackers used by this job.  We should have a separate copy per thread,
+  // so these should be non-static.
+  private FloatValueTracker overheadTracker;
+  private FloatValueTracker serverTimeTracker;
+  private IncrementalTracker failedOperations;
+  private IncrementalTracker operationsCompleted;
+  private TimeTracker operationTimer;
+
+
+
+  /**
+   * Creates a new instance of this job class.
+   */
+  public LoopbackCalibrationJob()
+  {
+    super();
+
+    httpClient = null;
+    httpRequest = null;
+    connectionPool = null;
+    random = null;
+
+    overheadTracker = null;
+    serverTimeTracker = null;
+    failedOperations = null;
+    operationsCompleted = null;
+    operationTimer = null;
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public String getJobName()
+  {
+    return "Loopback Calibration";
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public String getShortDescription()
+  {
+    return "Measure the maximum throughput and added latency of a SLAMD " +
+         "client stack against an in-process loopback server";
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public String[] getLongDescription()
+  {
+    return new String[]
+    {
+      "This job starts a minimal LDAP, HTTP, or SMTP server inside each " +
+      "client and drives it as fast as possible using the same client code " +
+      "as the corresponding load generation job.  The server can add an " +
+      "artificial latency to each response.",
+
+      "The operations completed per second show the most load that the " +
+      "client system can generate for that kind of job, and the client " +
+      "stack overhead shows how much each operation's response time exceeds " +
+      "the mean artificial latency.  Comparing these values with the " +
+      "results of a real job helps determine whether the client or the " +
+      "server was the limiting factor.",
+
+      "The same loopback servers can be started outside of SLAMD with the " +
+      "loopback-servers tool so that the regular jobs may be pointed at them."
+    };
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public String getJobCategoryName()
+  {
+    return "Utility";
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public ParameterList getParameterStubs()
+  {
+    final Parameter[] parameters =
+    {
+      new PlaceholderParameter(),
+      calibrationLabelParameter,
+      targetParameter,
+      latencyParameter,
+      numEntriesParameter,
+      responseSizeParameter,
+
+      new PlaceholderParameter(),
+      additionalLabelParameter,
+      warmUpDurationParameter,
+
+      new PlaceholderParameter()
+    };
+
+    return new ParameterList(parameters);
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public StatTracker[] getStatTrackerStubs(final String clientID,
+                                           final String threadID,
+                                           final int collectionInterval)
+  {
+    return new StatTracker[]
+    {
+      new IncrementalTracker(clientID, threadID, STAT_OPERATIONS_COMPLETED,
+           collectionInterval),
+      new TimeTracker(clientID, threadID, STAT_OPERATION_DURATION,
+           collectionInterval),
+      new FloatValueTracker(clientID, threadID, STAT_CLIENT_OVERHEAD,
+           collectionInterval),
+      new FloatValueTracker(clientID, threadID, STAT_SERVER_TIME,
+           collectionInterval),
+      new IncrementalTracker(clientID, threadID, STAT_FAILED_OPERATIONS,
+           collectionInterval)
+    };
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public StatTracker[] getStatTrackers()
+  {
+    return new StatTracker[]
+    {
+      operationsCompleted,
+      operationTimer,
+      overheadTracker,
+      serverTimeTracker,
+      failedOperations
+    };
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public void validateJobInfo(final int numClients, final int threadsPerClient,
+                              final int threadStartupDelay,
+                              final Date startTime, final Date stopTime,
+                              final int duration, final int collectionInterval,
+                              final ParameterList parameters)
+         throws InvalidValueException
+  {
+    // The job will never stop on its own, so it needs a duration or stop time.
+    if ((duration <= 0) && (stopTime == null))
+    {
+      throw new InvalidValueException("Calibration jobs will never stop on " +
+           "their own and must be scheduled with a duration or stop time.");
+    }
+
+
+    // Make sure that the latency distribution can be parsed.
+    final StringParameter latencyParam =
+         parameters.getStringParameter(latencyParameter.getName());
+    if ((latencyParam != null) && latencyParam.hasValue())
+    {
+      LatencyDistribution.parse(latencyParam.getValue());
+    }
+
+
+    // If a warm-up duration was specified, then make sure that we can
+    // parse it.
+    final StringParameter warmUpParam =
+         parameters.getStringParameter(warmUpDurationParameter.getName());
+    if ((warmUpParam != null) && warmUpParam.hasValue())
+    {
+      try
+      {
+        DurationParser.parse(warmUpParam.getValue());
+      }
+      catch (final SLAMDException e)
+      {
+        throw new InvalidValueException(
+             "Unable to parse warm-up duration value '" +
+                  warmUpParam.getValue() + "' as a valid duration:  " +
+                  e.getMessage(),
+             e);
+      }
+    }
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public void initializeClient(final String clientID,
+                               final ParameterList parameters)
+         throws UnableToRunException
+  {
+    // Make sure that nothing is left over from a previous job.
+    shutDownServers();
+    totalOperations.set(0L);
+    totalDurationNanos.set(0L);
+    firstStartTime.set(0L);
+    lastStopTime.set(0L);
+    clientOperations.reset();
+
+
+    // Initialize the target and the latency distribution.
+    target = parameters.getMultiChoiceParameter(
+         targetParameter.getName()).getValueString();
+
+    final LatencyDistribution latency;
+    try
+    {
+      latency = LatencyDistribution.parse(parameters.getStringParameter(
+           latencyParameter.getName()).getValue());
+    }
+    catch (final InvalidValueException ive)
+    {
+      throw new UnableToRunException(ive.getMessage(), ive);
+    }
+    latencyMeanMillis = latency.getMeanMillis();
+
+    numEntries = parameters.getIntegerParameter(
+         numEntriesParameter.getName()).getIntValue();
+    final int responseSize = parameters.getIntegerParameter(
+         responseSizeParameter.getName()).getIntValue();
+
+
+    // Initialize the warm-up duration.
+    final StringParameter warmUpParam = parameters.getStringParameter(
+         warmUpDurationParameter.getName());
+    if ((warmUpParam != null) && warmUpParam.hasValue())
+    {
+      try
+      {
+        warmUpDurationMillis =
+             DurationParser.parse(warmUpParam.getValue()) * 1000L;
+      }
+      catch (final Exception e)
+      {
+        throw new UnableToRunException(
+             "Unable to parse the warm-up duration:  "+
+                  StaticUtils.getExceptionMessage(e),
+             e);
+      }
+    }
+    else
+    {
+      warmUpDurationMillis = -1L;
+    }
+
+
+    // Start the loopback server for the selected target.
+    final InetAddress loopbackAddress = InetAddress.getLoopbackAddress();
+    try
+    {
+      switch (target)
+      {
+        case TARGET_LDAP_SEARCH:
+        case TARGET_LDAP_MODIFY:
+          ldapServer = new LoopbackLDAPServer(loopbackAddress, 0, latency,
+               numEntries);
+          ldapServer.startListening();
+          break;
+        case TARGET_HTTP_GET:
+          socketServer = new LoopbackHTTPServer(loopbackAddress, 0, latency,
+               responseSize);
+          socketServer.setErrorLogger(this::logMessage);
+          socketServer.startListening();
+          httpURL = new URL("http", loopbackAddress.getHostAddress(),
+               socketServer.getListenPort(), "/");
+          break;
+        case TARGET_SMTP_SEND:
+          socketServer = new LoopbackSMTPServer(loopbackAddress, 0, latency);
+          socketServer.setErrorLogger(this::logMessage);
+          socketServer.startListening();
+          break;
+        default:
+          throw new UnableToRunException("Unrecognized calibration target '" +
+               target + "'.");
+      }
+    }
+    catch (final UnableToRunException utre)
+    {
+      throw utre;
+    }
+    catch (final Exception e)
+    {
+      shutDownServers();
+      throw new UnableToRunException(
+           "Unable to start the loopback server:  " +
+                StaticUtils.getExceptionMessage(e),
+           e);
+    }
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public void initializeThread(final String clientID, final String threadID,
+                               final int collectionInterval,
+                               final ParameterList parameters)
+         throws UnableToRunException
+  {
+    // Initialize the stat trackers.
+    operationsCompleted = new IncrementalTracker(clientID, threadID,
+         STAT_OPERATIONS_COMPLETED, collectionInterval);
+    operationTimer = new TimeTracker(clientID, threadID,
+         STAT_OPERATION_DURATION, collectionInterval);
+    overheadTracker = new FloatValueTracker(clientID, threadID,
+         STAT_CLIENT_OVERHEAD, collectionInterval);
+    serverTimeTracker = new FloatValueTracker(clientID, threadID,
+         STAT_SERVER_TIME, collectionInterval);
+    failedOperations = new IncrementalTracker(clientID, threadID,
+         STAT_FAILED_OPERATIONS, collectionInterval);
+
+    final RealTimeStatReporter statReporter = getStatReporter();
+    if (statReporter != null)
+    {
+      String jobID = getJobID();
+      operationsCompleted.enableRealTimeStats(statReporter, jobID);
+      operationTimer.enableRealTimeStats(statReporter, jobID);
+    }
+
+    random = new Random();
+
+
+    // Set up the client stack for the selected target.
+    switch (target)
+    {
+      case TARGET_LDAP_SEARCH:
+      case TARGET_LDAP_MODIFY:
+        try
+        {
+          final SingleServerSet serverSet = new SingleServerSet(
+               InetAddress.getLoopbackAddress().getHostAddress(),
+               ldapServer.getListenPort());
+          final SimpleBindRequest bindRequest = new SimpleBindRequest(
+               LoopbackLDAPServer.BIND_DN, LoopbackLDAPServer.BIND_PASSWORD);
+          connectionPool = new LDAPConnectionPool(serverSet, bindRequest, 1, 1,
+               null, true);
+        }
+        catch (final Exception e)
+        {
+          throw new UnableToRunException(
+               "Unable to create a connection pool to communicate with the " +
+                    "loopback directory server:  " +
+                    StaticUtils.getExceptionMessage(e),
+               e);
+        }
+        break;
+
+      case TARGET_HTTP_GET:
+        httpClient = new HTTPClient();
+        httpClient.setUseKeepAlive(true);
+        httpRequest = new HTTPRequest(true, httpURL);
+        break;
+    }
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public void runJob()
+  {
+    boolean collectingStats;
+    final long startCollectingTime;
+    if (warmUpDurationMillis > 0)
+    {
+      collectingStats = false;
+      startCollectingTime = System.currentTimeMillis() + warmUpDurationMillis;
+    }
+    else
+    {
+      collectingStats = true;
+      startCollectingTime = System.currentTimeMillis();
+      startTrackers();
+    }
+
+
+    // Perform operations until it's time to stop.
+    long operations = 0L;
+    long durationNanos = 0L;
+    while (! shouldStop())
+    {
+      if ((! collectingStats) &&
+          (System.currentTimeMillis() >= startCollectingTime))
+      {
+        collectingStats = true;
+        startTrackers();
+      }
+
+      if (collectingStats)
+      {
+        operationTimer.startTimer();
+      }
+
+      final long beforeNanos = System.nanoTime();
+      final boolean successful = processOperation();
+      final long elapsedNanos = System.nanoTime() - beforeNanos;
+      clientOperations.increment();
+
+      if (collectingStats)
+      {
+        // The loopback server runs in this process, so the time it spends
+        // handling the operation is not part of the client stack overhead.
+        final double serverMillis = getServerMillisPerOperation();
+        operationTimer.stopTimer();
+        operationsCompleted.increment();
+        serverTimeTracker.addValue(serverMillis);
+        overheadTracker.addValue((elapsedNanos / 1000000.0D) -
+             latencyMeanMillis - serverMillis);
+        if (! successful)
+        {
+          failedOperations.increment();
+        }
+
+        operations++;
+        durationNanos += elapsedNanos;
+      }
+    }
+
+
+    // Stop collecting statistics if the trackers are still active.
+    if (collectingStats)
+    {
+      stopTrackers();
+      totalOperations.addAndGet(operations);
+      totalDurationNanos.addAndGet(durationNanos);
+      firstStartTime.compareAndSet(0L, startCollectingTime);
+      lastStopTime.accumulateAndGet(System.currentTimeMillis(), Math::max);
+    }
+  }
+
+
+
+  /**
+   * Processes a single operation against the loopback server using the client
+   * stack for the selected target.
+   *
+   * @return  {@code true} if the operation completed successfully, or
+   *          {@code false} if not.
+   */
+  private boolean processOperation()
+  {
+    try
+    {
+      switch (target)
+      {
+        case TARGET_LDAP_SEARCH:
+          final SearchResult searchResult = connectionPool.search(
+               new SearchRequest(getRandomUserDN(), SearchScope.BASE,
+                    Filter.createPresenceFilter("objectClass")));
+          return (searchResult.getEntryCount() == 1);
+
+        case TARGET_LDAP_MODIFY:
+          connectionPool.modify(new ModifyRequest(getRandomUserDN(),
+               new Modification(ModificationType.REPLACE, "description",
+                    String.valueOf(random.nextLong()))));
+          return true;
+
+        case TARGET_HTTP_GET:
+          final HTTPResponse response = httpClient.sendRequest(httpRequest);
+          return (response.getStatusCode() == 200);
+
+        case TARGET_SMTP_SEND:
+          return sendMessage();
+
+        default:
+          return false;
+      }
+    }
+    catch (final Exception e)
+    {
+      return false;
+    }
+  }
+
+
+
+  /**
+   * Retrieves the DN of a randomly-selected user entry in the loopback
+   * directory server.
+   *
+   * @return  The DN of a randomly-selected user entry.
+   */
+  private String getRandomUserDN()
+  {
+    return "uid=user." + random.nextInt(Math.max(1, numEntries)) + ',' +
+         LoopbackLDAPServer.PEOPLE_BASE_DN;
+  }
+
+
+
+  /**
+   * Sends a single message to the loopback SMTP server in a new session, in
+   * the same way as the SMTP send rate job.
+   *
+   * @return  {@code true} if the message was accepted, or {@code false} if
+   *          not.
+   *
+   * @throws  IOException  If a problem occurs while communicating with the
+   *                       server.
+   */
+  private boolean sendMessage()
+          throws IOException
+  {
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+                                    socketServer.getListenPort()))
+    {
+      final BufferedReader reader = new BufferedReader(
+           new InputStreamReader(socket.getInputStream()));
+      final BufferedWriter writer = new BufferedWriter(
+           new OutputStreamWriter(socket.getOutputStream()));
+
+      if (! expectResponse(reader, "220"))
+      {
+        return false;
+      }
+
+      final String[] commands =
+      {
+        "HELO localhost",
+        "MAIL FROM:<sender@example.com>",
+        "RCPT TO:<recipient@example.com>"
+      };
+      for (final String command : commands)
+      {
+        sendLine(writer, command);
+        if (! expectResponse(reader, "250"))
+        {
+          return false;
+        }
+      }
+
+      sendLine(writer, "DATA");
+      if (! expectResponse(reader, "354"))
+      {
+        return false;
+      }
+
+      writer.write("From: <sender@example.com>\r\n");
+      writer.write("To: <recipient@example.com>\r\n");
+      writer.write("Subject: SLAMD loopback calibration\r\n");
+      writer.write("\r\n");
+      writer.write("This is a SLAMD loopback calibration message.\r\n");
+      sendLine(writer, ".");
+      final boolean accepted = expectResponse(reader, "250");
+
+      sendLine(writer, "QUIT");
+      return accepted;
+    }
+  }
+
+
+
+  /**
+   * Writes the provided line to the SMTP server and flushes it.
+   *
+   * @param  writer  The writer to use to send the line.
+   * @param  line    The line to send.
+   *
+   * @throws  IOException  If a problem occurs while writing the line.
+   */
+  private static void sendLine(final BufferedWriter writer, final String line)
+          throws IOException
+  {
+    writer.write(line);
+    writer.write("\r\n");
+    writer.flush();
+  }
+
+
+
+  /**
+   * Reads a response line from the SMTP server and determines whether it has
+   * the expected result code.
+   *
+   * @param  reader        The reader to use to read the response.
+   * @param  expectedCode  The result code that the response should have.
+   *
+   * @return  {@code true} if the response has the expected result code, or
+   *          {@code false} if not.
+   *
+   * @throws  IOException  If a problem occurs while reading the response.
+   */
+  private static boolean expectResponse(final BufferedReader reader,
+                                        final String expectedCode)
+          throws IOException
+  {
+    final String response = reader.readLine();
+    return ((response != null) && response.startsWith(expectedCode));
+  }
+
+
+
+  /**
+   * Starts the stat trackers for this job.
+   */
+  private void startTrackers()
+  {
+    operationsCompleted.startTracker();
+    operationTimer.startTracker();
+    overheadTracker.startTracker();
+    serverTimeTracker.startTracker();
+    failedOperations.startTracker();
+  }
+
+
+
+  /**
+   * Stops the stat trackers for this job.
+   */
+  private void stopTrackers()
+  {
+    operationsCompleted.stopTracker();
+    operationTimer.stopTracker();
+    overheadTracker.stopTracker();
+    serverTimeTracker.stopTracker();
+    failedOperations.stopTracker();
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public void finalizeThread()
+  {
+    closeClientStack();
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public void finalizeClient()
+  {
+    final long operations = totalOperations.get();
+    final long elapsedMillis = lastStopTime.get() - firstStartTime.get();
+    if ((operations > 0L) && (elapsedMillis > 0L))
+    {
+      final double opsPerSecond = 1000.0D * operations / elapsedMillis;
+      final double meanMillis =
+           totalDurationNanos.get() / 1000000.0D / operations;
+      final double serverMillis = getServerMillisPerOperation();
+      logMessage(String.format("Calibration of the %s client stack:  " +
+           "%.1f operations per second with a mean response time of " +
+           "%.3fms, of which %.3fms was spent in the loopback server and " +
+           "%.3fms was added by the client stack.",
+           target, opsPerSecond, meanMillis, serverMillis,
+           (meanMillis - latencyMeanMillis - serverMillis)));
+    }
+
+    shutDownServers();
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public synchronized void destroyThread()
+  {
+    closeClientStack();
+    shutDownServers();
+  }
+
+
+
+  /**
+   * Closes any connections held by this thread.
+   */
+  private synchronized void closeClientStack()
+  {
+    if (connectionPool != null)
+    {
+      connectionPool.close();
+      connectionPool = null;
+    }
+
+    if (httpClient != null)
+    {
+      httpClient.closeAll();
+      httpClient = null;
+    }
+  }
+
+
+
+  /**
+   * Retrieves the mean time that the loopback server has spent handling each
+   * operation processed by this client, not including the artificial latency.
+   *
+   * @return  The mean time in milliseconds that the loopback server has spent
+   *          handling each operation.
+   */
+  private static double getServerMillisPerOperation()
+  {
+    final long operations = clientOperations.sum();
+    if (operations <= 0L)
+    {
+      return 0.0D;
+    }
+
+    // The servers may be shut down at any time, so only check them once.
+    final LoopbackLDAPServer ldap = ldapServer;
+    final LoopbackServer socket = socketServer;
+    final long serverNanos;
+    if (ldap != null)
+    {
+      serverNanos = ldap.getProcessingNanos();
+    }
+    else if (socket != null)
+    {
+      serverNanos = socket.getProcessingNanos();
+    }
+    else
+    {
+      return 0.0D;
+    }
+
+    return serverNanos / 1000000.0D / operations;
+  }
+
+
+
+  /**
+   * Shuts down any loopback servers that have been started for this client.
+   */
+  private static synchronized void shutDownServers()
+  {
+    if (ldapServer != null)
+    {
+      ldapServer.shutDown();
+      ldapServer = null;
+    }
+
+    if (socketServer != null)
+    {
+      socketServer.shutDown();
+      socketServer = null;
+    }
+  }
+}
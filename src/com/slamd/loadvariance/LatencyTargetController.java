@@ -0,0 +1,448 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.loadvariance;
+
+
+
+import com.unboundid.util.FixedRateBarrier;
+
+import com.slamd.job.JobClass;
+import com.slamd.stat.FloatValueTracker;
+import com.slamd.stat.IntegerValueTracker;
+import com.slamd.stat.LatencyHistogram;
+import com.slamd.stat.StatTracker;
+
+
+
+/**
+ * This class defines a thread that may be used to vary the load generated by a
+ * job in response to the response times that it observes, rather than
+ * following a precomputed schedule like the load variance algorithms.  Job
+ * threads report the duration of each operation, and at the end of every
+ * control interval the controller computes the configured response time
+ * percentile over that interval and adjusts the rate of the associated
+ * {@code FixedRateBarrier}.  The rate is doubled each interval until the
+ * target is first exceeded, and after that it is increased by a small fraction
+ * while the percentile remains at or below the target and decreased
+ * multiplicatively when it exceeds the target, so that the client converges on
+ * the maximum rate that it can sustain while meeting the response time
+ * objective.
+ * <BR><BR>
+ * The target rate and observed percentile for each interval are recorded in
+ * stat trackers so that the control trajectory is available with the job
+ * results.
+ */
+public class LatencyTargetController
+       extends Thread
+{
+  /**
+   * The display name for the stat tracker used to record the target rate
+   * selected by the controller.
+   */
+  public static final String STAT_TARGET_RATE =
+       "Controller Target Rate (Operations/Second)";
+
+
+
+  /**
+   * The display name for the stat tracker used to record the response time
+   * percentile observed by the controller.
+   */
+  public static final String STAT_OBSERVED_PERCENTILE =
+       "Controller Observed Response Time Percentile (ms)";
+
+
+
+  /**
+   * The thread ID that will be used for the stat trackers maintained by the
+   * controller.
+   */
+  public static final String CONTROLLER_THREAD_ID = "Latency Controller";
+
+
+
+  /**
+   * The fraction by which the rate will be increased after an interval in which
+   * the response time target was met.
+   */
+  private static final double RATE_INCREASE_FACTOR = 0.10D;
+
+
+
+  /**
+   * The fraction of the current rate that will be retained after an interval
+   * in which the response time target was exceeded.
+   */
+  private static final double RATE_DECREASE_FACTOR = 0.80D;
+
+
+
+  /**
+   * The fraction of the target rate that must actually be achieved in an
+   * interval before the controller will increase the rate any further.  This
+   * keeps the target from running away when the client itself is the
+   * bottleneck.
+   */
+  private static final double MIN_ACHIEVED_FRACTION = 0.90D;
+
+
+
+  // The histogram of response times, in microseconds, observed during the
+  // current interval.
+  private final LatencyHistogram histogram;
+
+  // Indicates whether the rate should still be doubled after each interval
+  // that meets the target.
+  private boolean slowStart;
+
+  // Indicates whether a request has been received for this thread to start.
+  private volatile boolean startRequested;
+
+  // Indicates whether a request has been received for this thread to stop.
+  private volatile boolean stopRequested;
+
+  // The target response time percentile.
+  private final double targetPercentile;
+
+  // The rate limiter that will be adjusted by this controller.
+  private final FixedRateBarrier rateLimiter;
+
+  // The stat tracker used to record the observed percentile.
+  private final FloatValueTracker observedPercentileTracker;
+
+  // The length of each control interval in milliseconds.
+  private final int intervalMillis;
+
+  // The maximum rate that the controller will select.
+  private final int maxRate;
+
+  // The minimum rate that the controller will select.
+  private final int minRate;
+
+  // The target response time in microseconds.
+  private final long targetMicros;
+
+  // The stat tracker used to record the target rate.
+  private final IntegerValueTracker targetRateTracker;
+
+  // The job thread with which this controller is associated.
+  private final JobClass jobClass;
+
+  // The highest rate for which the response time target was met.
+  private int bestRate;
+
+  // The target rate currently in effect.
+  private int currentRate;
+
+
+
+  /**
+   * Creates a new latency target controller with the provided information.
+   *
+   * @param  jobClass             The job thread with which this controller is
+   *                              associated.  It will be used for logging and
+   *                              to determine when the job should stop.
+   * @param  rateLimiter          The rate limiter that will be adjusted by
+   *                              this controller.
+   * @param  intervalSeconds      The length of each control interval in
+   *                              seconds.
+   * @param  targetPercentile     The response time percentile that should be
+   *                              kept at or below the target, between 0 and
+   *                              100.
+   * @param  targetMillis         The target response time in milliseconds.
+   * @param  initialRate          The rate, in operations per second, with
+   *                              which the controller should begin.
+   * @param  minRate              The minimum rate, in operations per second,
+   *                              that the controller may select.
+   * @param  maxRate              The maximum rate, in operations per second,
+   *                              that the controller may select.
+   * @param  clientID             The client ID to use for the stat trackers.
+   * @param  collectionInterval   The statistics collection interval for the
+   *                              stat trackers.
+   */
+  public LatencyTargetController(JobClass jobClass,
+                                 FixedRateBarrier rateLimiter,
+                                 int intervalSeconds, double targetPercentile,
+                                 int targetMillis, int initialRate,
+                                 int minRate, int maxRate, String clientID,
+                                 int collectionInterval)
+  {
+    this.jobClass         = jobClass;
+    this.rateLimiter      = rateLimiter;
+    this.intervalMillis   = 1000 * Math.max(1, intervalSeconds);
+    this.targetPercentile = Math.min(100.0D, Math.max(0.0D, targetPercentile));
+    this.targetMicros     = 1000L * targetMillis;
+    this.minRate          = Math.max(1, minRate);
+    this.maxRate          = Math.max(this.minRate, maxRate);
+
+    setName("Latency Target Controller Thread");
+    setDaemon(true);
+
+    histogram      = new LatencyHistogram();
+    slowStart      = true;
+    startRequested = false;
+    stopRequested  = false;
+    bestRate       = 0;
+    currentRate    = Math.min(this.maxRate,
+                              Math.max(this.minRate, initialRate));
+
+    targetRateTracker = new IntegerValueTracker(clientID, CONTROLLER_THREAD_ID,
+         STAT_TARGET_RATE, collectionInterval);
+    observedPercentileTracker = new FloatValueTracker(clientID,
+         CONTROLLER_THREAD_ID, STAT_OBSERVED_PERCENTILE, collectionInterval);
+
+    applyRate();
+  }
+
+
+
+  /**
+   * Records the duration of an operation.  This method may be called
+   * concurrently by any number of job threads.
+   *
+   * @param  elapsedNanos  The length of time in nanoseconds required to
+   *                       process the operation.
+   */
+  public void recordResponseTime(long elapsedNanos)
+  {
+    histogram.add(elapsedNanos / 1000L);
+  }
+
+
+
+  /**
+   * Retrieves the stat trackers maintained by this controller.
+   *
+   * @return  The stat trackers maintained by this controller.
+   */
+  public StatTracker[] getStatTrackers()
+  {
+    return new StatTracker[]
+    {
+      targetRateTracker,
+      observedPercentileTracker
+    };
+  }
+
+
+
+  /**
+   * Retrieves stubs for the stat trackers maintained by this controller.
+   *
+   * @param  clientID            The client ID to use for the stubs.
+   * @param  collectionInterval  The collection interval to use for the stubs.
+   *
+   * @return  Stubs for the stat trackers maintained by this controller.
+   */
+  public static StatTracker[] getStatTrackerStubs(String clientID,
+                                                  int collectionInterval)
+  {
+    return new StatTracker[]
+    {
+      new IntegerValueTracker(clientID, CONTROLLER_THREAD_ID, STAT_TARGET_RATE,
+                              collectionInterval),
+      new FloatValueTracker(clientID, CONTROLLER_THREAD_ID,
+                            STAT_OBSERVED_PERCENTILE, collectionInterval)
+    };
+  }
+
+
+
+  /**
+   * Retrieves the target rate currently in effect.
+   *
+   * @return  The target rate currently in effect.
+   */
+  public int getCurrentRate()
+  {
+    return currentRate;
+  }
+
+
+
+  /**
+   * Retrieves the highest rate for which an entire interval completed within
+   * the response time target.
+   *
+   * @return  The highest rate for which an entire interval completed within
+   *          the response time target, or zero if the target was never met.
+   */
+  public int getBestRate()
+  {
+    return bestRate;
+  }
+
+
+
+  /**
+   * Sets a flag that indicates that the controller should start adjusting the
+   * rate.
+   */
+  public void startRunning()
+  {
+    startRequested = true;
+  }
+
+
+
+  /**
+   * Sets a flag that indicates that the controller should stop adjusting the
+   * rate, and waits for it to finish.
+   */
+  public void stopRunning()
+  {
+    stopRequested = true;
+    interrupt();
+
+    try
+    {
+      join();
+    } catch (Exception e) {}
+  }
+
+
+
+  /**
+   * Waits for the job to start, and then adjusts the target rate at the end of
+   * each control interval until the job stops.
+   */
+  @Override()
+  public void run()
+  {
+    // Wait until we either get a request to start or stop running.
+    while (! (startRequested || stopRequested || jobClass.shouldStop()))
+    {
+      try
+      {
+        Thread.sleep(10);
+      } catch (Exception e) {}
+    }
+
+    if (stopRequested || jobClass.shouldStop())
+    {
+      return;
+    }
+
+
+    // Discard anything recorded before the job started, and begin tracking.
+    histogram.snapshot(new long[LatencyHistogram.NUM_BUCKETS]);
+    targetRateTracker.startTracker();
+    observedPercentileTracker.startTracker();
+
+    long[] counts = new long[LatencyHistogram.NUM_BUCKETS];
+    long nextIntervalTime = System.currentTimeMillis() + intervalMillis;
+    while (! (stopRequested || jobClass.shouldStop()))
+    {
+      long now = System.currentTimeMillis();
+      if (now < nextIntervalTime)
+      {
+        try
+        {
+          Thread.sleep(Math.min(100L, nextIntervalTime - now));
+        } catch (Exception e) {}
+        continue;
+      }
+
+      long intervalStart = nextIntervalTime - intervalMillis;
+      nextIntervalTime += intervalMillis;
+
+      long totalCount = histogram.snapshot(counts);
+      double elapsedSeconds = (now - intervalStart) / 1000.0D;
+      adjustRate(counts, totalCount, elapsedSeconds);
+    }
+
+    targetRateTracker.stopTracker();
+    observedPercentileTracker.stopTracker();
+
+    jobClass.logMessage("Latency target controller finished with a rate of " +
+                        currentRate + " operations per second.  The highest " +
+                        "rate that met the " + targetPercentile +
+                        " percentile target of " + (targetMicros / 1000L) +
+                        "ms was " + bestRate + " operations per second.");
+  }
+
+
+
+  /**
+   * Adjusts the target rate based on the response times observed during the
+   * last interval.
+   *
+   * @param  counts          The histogram of response times for the last
+   *                         interval.
+   * @param  totalCount      The total number of operations completed in the
+   *                         last interval.
+   * @param  elapsedSeconds  The length of the last interval in seconds.
+   */
+  private void adjustRate(long[] counts, long totalCount,
+                          double elapsedSeconds)
+  {
+    if (totalCount == 0L)
+    {
+      // Nothing completed, so there's nothing to base a decision on.  This
+      // most likely means that the server has stopped responding, so back off.
+      currentRate = Math.max(minRate,
+                             (int) (currentRate * RATE_DECREASE_FACTOR));
+      applyRate();
+      targetRateTracker.addValue(currentRate);
+      return;
+    }
+
+    long percentileMicros =
+         LatencyHistogram.getPercentile(counts, totalCount, targetPercentile);
+    observedPercentileTracker.addValue(percentileMicros / 1000.0D);
+
+    double achievedRate = totalCount / elapsedSeconds;
+    if (percentileMicros <= targetMicros)
+    {
+      if (achievedRate >= (MIN_ACHIEVED_FRACTION * currentRate))
+      {
+        bestRate = Math.max(bestRate, currentRate);
+
+        int increase;
+        if (slowStart)
+        {
+          increase = currentRate;
+        }
+        else
+        {
+          increase = Math.max(1, (int) (currentRate * RATE_INCREASE_FACTOR));
+        }
+
+        currentRate = (int) Math.min((long) maxRate,
+                                     ((long) currentRate) + increase);
+      }
+    }
+    else
+    {
+      slowStart   = false;
+      currentRate = Math.max(minRate,
+                             (int) (currentRate * RATE_DECREASE_FACTOR));
+    }
+
+    applyRate();
+    targetRateTracker.addValue(currentRate);
+  }
+
+
+
+  /**
+   * Updates the rate limiter to reflect the current target rate.
+   */
+  private void applyRate()
+  {
+    rateLimiter.setRate(1000L, currentRate);
+  }
+}
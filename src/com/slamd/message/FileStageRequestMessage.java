@@ -0,0 +1,180 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.message;
+
+
+
+import com.unboundid.asn1.ASN1Element;
+import com.unboundid.asn1.ASN1Exception;
+import com.unboundid.asn1.ASN1Integer;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.asn1.ASN1Sequence;
+
+import com.slamd.common.Constants;
+import com.slamd.common.SLAMDException;
+import com.slamd.parameter.ParameterList;
+
+
+
+/**
+ * This class defines a message that the server may send to clients some time
+ * before a job is scheduled to start, asking them to retrieve the files that
+ * the job references into their local file caches so that the transfer does not
+ * have to happen when the job starts.  It contains only the file URL
+ * parameters for the job.  Clients that do not have a file cache simply ignore
+ * it, and no response is expected.
+ */
+public class FileStageRequestMessage
+       extends Message
+{
+  // The file URL parameters whose files should be staged.
+  private final ParameterList parameters;
+
+  // The ID of the job with which the files are associated.
+  private final String jobID;
+
+
+
+  /**
+   * Creates a new file stage request message with the provided information.
+   *
+   * @param  messageID   The message ID for this message.
+   * @param  jobID       The ID of the job with which the files are associated.
+   * @param  parameters  The file URL parameters whose files should be staged.
+   */
+  public FileStageRequestMessage(int messageID, String jobID,
+                                 ParameterList parameters)
+  {
+    super(messageID, Constants.MESSAGE_TYPE_FILE_STAGE_REQUEST);
+
+    this.jobID      = jobID;
+    this.parameters = parameters;
+  }
+
+
+
+  /**
+   * Retrieves the ID of the job with which the files are associated.
+   *
+   * @return  The ID of the job with which the files are associated.
+   */
+  public String getJobID()
+  {
+    return jobID;
+  }
+
+
+
+  /**
+   * Retrieves the file URL parameters whose files should be staged.
+   *
+   * @return  The file URL parameters whose files should be staged.
+   */
+  public ParameterList getParameters()
+  {
+    return parameters;
+  }
+
+
+
+  /**
+   * Retrieves a string representation of this message.
+   *
+   * @return  A string representation of this message.
+   */
+  @Override()
+  public String toString()
+  {
+    String eol = System.getProperty("line.separator");
+
+    return "File Stage Request Message" + eol +
+           "  Message ID:  " + messageID + eol +
+           "  Job ID:  " + jobID + eol +
+           "  Files:  " + parameters.getParameters().length + eol;
+  }
+
+
+
+  /**
+   * Decodes the provided ASN.1 element as a file stage request message.
+   *
+   * @param  messageID  The message ID to use for this message.
+   * @param  element    The ASN.1 element containing the FileStageRequest
+   *                    sequence.
+   *
+   * @return  The file stage request message decoded from the ASN.1 element.
+   *
+   * @throws  SLAMDException  If the provided ASN.1 element cannot be decoded
+   *                          as a file stage request message.
+   */
+  public static FileStageRequestMessage decodeFileStageRequest(int messageID,
+                                             ASN1Element element)
+         throws SLAMDException
+  {
+    ASN1Element[] elements;
+    try
+    {
+      elements = element.decodeAsSequence().elements();
+    }
+    catch (ASN1Exception ae)
+    {
+      throw new SLAMDException("Could not decode the provided ASN.1 element " +
+                               "as a sequence", ae);
+    }
+
+    if (elements.length != 2)
+    {
+      throw new SLAMDException("A file stage request message must have two " +
+                               "elements");
+    }
+
+    String jobID = elements[0].decodeAsOctetString().stringValue();
+
+    ParameterList parameters = ParameterList.decode(elements[1]);
+    return new FileStageRequestMessage(messageID, jobID, parameters);
+  }
+
+
+
+  /**
+   * Encodes this message into an ASN.1 element.  A file stage request message
+   * has the following syntax:
+   * <BR><BR>
+   * <CODE>FileStageRequest ::= [APPLICATION 23] SEQUENCE {</CODE>
+   * <CODE>    jobID       OCTET STRING,</CODE>
+   * <CODE>    parameters  ParameterList }</CODE>
+   * <BR>
+   *
+   * @return  An ASN.1 encoded representation of this message.
+   */
+  @Override()
+  public ASN1Element encode()
+  {
+    ASN1Element[] stageElements = new ASN1Element[]
+    {
+      new ASN1OctetString(jobID),
+      parameters.encode()
+    };
+
+    ASN1Element[] messageElements = new ASN1Element[]
+    {
+      new ASN1Integer(messageID),
+      new ASN1Sequence(ASN1_TYPE_FILE_STAGE_REQUEST, stageElements)
+    };
+
+    return new ASN1Sequence(messageElements);
+  }
+}
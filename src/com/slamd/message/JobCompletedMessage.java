@@ -18,6 +18,7 @@ package com.slamd.message;
 
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 
 import com.unboundid.asn1.ASN1Element;
@@ -56,6 +57,10 @@ public class JobCompletedMessage
   // The time that the job actually finished processing.
   private final long actualStopTime;
 
+  // The compressed flight recording captured while the job was running, if
+  // any.
+  private final byte[] profileData;
+
   // The status counters maintained by the job.
   private final StatTracker[] statTrackers;
 
@@ -116,6 +121,36 @@ public class JobCompletedMessage
                              long actualStartTime, long actualStopTime,
                              int actualDuration, StatTracker[] statTrackers,
                              String[] logMessages)
+  {
+    this(messageID, jobID, jobState, actualStartTime, actualStopTime,
+         actualDuration, statTrackers, logMessages, null);
+  }
+
+
+
+  /**
+   * Creates a new job completed message with the provided information.
+   *
+   * @param  messageID        The message ID for this message.
+   * @param  jobID            The ID of the job that has completed.
+   * @param  jobState         The state of the job when processing was complete.
+   * @param  actualStartTime  The time (in number of seconds since January 1,
+   *                          1970) that the job actually started processing.
+   * @param  actualStopTime   The time (in number of seconds since January 1,
+   *                          1970) that the job actually completed/was stopped.
+   * @param  actualDuration   The length of time in seconds that the job was
+   *                          being processed.
+   * @param  statTrackers     The set of stat trackers that were maintained for
+   *                          the job.
+   * @param  logMessages      The messages logged by the job.
+   * @param  profileData      The gzip-compressed flight recording captured
+   *                          while the job was running, or {@code null} if
+   *                          the job was not profiled.
+   */
+  public JobCompletedMessage(int messageID, String jobID, int jobState,
+                             long actualStartTime, long actualStopTime,
+                             int actualDuration, StatTracker[] statTrackers,
+                             String[] logMessages, byte[] profileData)
   {
     super(messageID, Constants.MESSAGE_TYPE_JOB_COMPLETED);
 
@@ -124,6 +159,7 @@ public class JobCompletedMessage
     this.actualStartTime = actualStartTime;
     this.actualStopTime  = actualStopTime;
     this.actualDuration  = actualDuration;
+    this.profileData     = profileData;
 
     if (statTrackers == null)
     {
@@ -230,6 +266,19 @@ public class JobCompletedMessage
 
 
 
+  /**
+   * Retrieves the flight recording captured while the job was running.
+   *
+   * @return  The gzip-compressed flight recording captured while the job was
+   *          running, or {@code null} if the job was not profiled.
+   */
+  public byte[] getProfileData()
+  {
+    return profileData;
+  }
+
+
+
   /**
    * Retrieves a string representation of this message.
    *
@@ -265,6 +314,9 @@ public class JobCompletedMessage
            "  Actual Start Time:  " + startTimeStr + eol +
            "  Actual Stop Time:  " + stopTimeStr + eol +
            "  Actual Duration:  " + actualDuration + eol +
+           ((profileData == null)
+            ? ""
+            : "  Profile Data:  " + profileData.length + " bytes" + eol) +
            "  Stat Trackers:" + eol +
            statTrackersStr +
            "  Log Messages:" + eol +
@@ -302,10 +354,10 @@ public class JobCompletedMessage
 
 
     ASN1Element[] elements = completedSequence.elements();
-    if (elements.length != 7)
+    if ((elements.length != 7) && (elements.length != 8))
     {
-      throw new SLAMDException("A job completed message must have seven " +
-                               "elements");
+      throw new SLAMDException("A job completed message must have seven or " +
+                               "eight elements");
     }
 
 
@@ -391,9 +443,16 @@ public class JobCompletedMessage
     }
 
 
+    byte[] profileData = null;
+    if (elements.length > 7)
+    {
+      profileData = elements[7].decodeAsOctetString().getValue();
+    }
+
+
     return new JobCompletedMessage(messageID, jobID, jobState, actualStartTime,
                                    actualStopTime, actualDuration, statTrackers,
-                                   logMessages);
+                                   logMessages, profileData);
   }
 
 
@@ -409,7 +468,8 @@ public class JobCompletedMessage
    * <CODE>    actualStopTime   OCTET STRING,</CODE>
    * <CODE>    actualDuration   INTEGER,</CODE>
    * <CODE>    statTrackers     StatTrackers,</CODE>
-   * <CODE>    logMessages      LogMessages }</CODE>
+   * <CODE>    logMessages      LogMessages,</CODE>
+   * <CODE>    profileData      OCTET STRING OPTIONAL }</CODE>
    * <BR>
    *
    * @return  An ASN.1 encoded representation of this message.
@@ -436,16 +496,19 @@ public class JobCompletedMessage
     ASN1Sequence logSequence = new ASN1Sequence(messagesElements);
 
 
-    ASN1Element[] jobCompletedElements = new ASN1Element[]
+    ArrayList<ASN1Element> jobCompletedElements = new ArrayList<ASN1Element>();
+    jobCompletedElements.add(idElement);
+    jobCompletedElements.add(stateElement);
+    jobCompletedElements.add(startTimeElement);
+    jobCompletedElements.add(stopTimeElement);
+    jobCompletedElements.add(durationElement);
+    jobCompletedElements.add(trackerElement);
+    jobCompletedElements.add(logSequence);
+
+    if (profileData != null)
     {
-      idElement,
-      stateElement,
-      startTimeElement,
-      stopTimeElement,
-      durationElement,
-      trackerElement,
-      logSequence
-    };
+      jobCompletedElements.add(new ASN1OctetString(profileData));
+    }
 
     ASN1Sequence jobCompletedSequence =
          new ASN1Sequence(ASN1_TYPE_JOB_COMPLETED, jobCompletedElements);
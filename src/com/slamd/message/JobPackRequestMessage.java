@@ -0,0 +1,209 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.message;
+
+
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.unboundid.asn1.ASN1Element;
+import com.unboundid.asn1.ASN1Exception;
+import com.unboundid.asn1.ASN1Integer;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.asn1.ASN1Sequence;
+
+import com.slamd.common.Constants;
+import com.slamd.common.SLAMDException;
+
+
+
+/**
+ * This class defines a message that a client uses to request the job pack that
+ * contains a given job class from the server.  It includes the hashes of the
+ * job pack archives that the client already has in its local cache so that the
+ * server can avoid sending the archive again if the current version is among
+ * them.
+ */
+public class JobPackRequestMessage
+       extends Message
+{
+  // The hashes of the job pack archives already cached by the client.
+  private final List<String> cachedHashes;
+
+  // The name of the job class whose job pack is requested.
+  private final String className;
+
+
+
+  /**
+   * Creates a new job pack request message with the provided information.
+   *
+   * @param  messageID     The message ID for this message.
+   * @param  className     The name of the job class whose job pack is
+   *                       requested.
+   * @param  cachedHashes  The hashes of the job pack archives that the client
+   *                       already has in its local cache.  It may be empty but
+   *                       must not be {@code null}.
+   */
+  public JobPackRequestMessage(int messageID, String className,
+                               List<String> cachedHashes)
+  {
+    super(messageID, Constants.MESSAGE_TYPE_JOB_PACK_REQUEST);
+
+    this.className    = className;
+    this.cachedHashes = Collections.unmodifiableList(cachedHashes);
+  }
+
+
+
+  /**
+   * Retrieves the name of the job class whose job pack is requested.
+   *
+   * @return  The name of the job class whose job pack is requested.
+   */
+  public String getClassName()
+  {
+    return className;
+  }
+
+
+
+  /**
+   * Retrieves the hashes of the job pack archives that the client already has
+   * in its local cache.
+   *
+   * @return  The hashes of the job pack archives that the client already has
+   *          in its local cache.
+   */
+  public List<String> getCachedHashes()
+  {
+    return cachedHashes;
+  }
+
+
+
+  /**
+   * Retrieves a string representation of this message.
+   *
+   * @return  A string representation of this message.
+   */
+  @Override()
+  public String toString()
+  {
+    String eol = System.getProperty("line.separator");
+
+    return "Job Pack Request Message" + eol +
+           "  Message ID:  " + messageID + eol +
+           "  Class Name:  " + className + eol +
+           "  Cached Job Packs:  " + cachedHashes.size() + eol;
+  }
+
+
+
+  /**
+   * Decodes the provided ASN.1 element as a job pack request message.
+   *
+   * @param  messageID  The message ID to use for this message.
+   * @param  element    The ASN.1 element containing the JobPackRequest
+   *                    sequence.
+   *
+   * @return  The job pack request message decoded from the ASN.1 element.
+   *
+   * @throws  SLAMDException  If the provided ASN.1 element cannot be decoded
+   *                          as a job pack request message.
+   */
+  public static JobPackRequestMessage decodeJobPackRequest(int messageID,
+                                           ASN1Element element)
+         throws SLAMDException
+  {
+    ASN1Element[] elements;
+    try
+    {
+      elements = element.decodeAsSequence().elements();
+    }
+    catch (ASN1Exception ae)
+    {
+      throw new SLAMDException("Could not decode the provided ASN.1 element " +
+                               "as a sequence", ae);
+    }
+
+    if (elements.length != 2)
+    {
+      throw new SLAMDException("A job pack request message must have two " +
+                               "elements");
+    }
+
+    String className = elements[0].decodeAsOctetString().stringValue();
+
+    String[] cachedHashes;
+    try
+    {
+      ASN1Element[] hashElements = elements[1].decodeAsSequence().elements();
+      cachedHashes = new String[hashElements.length];
+      for (int i=0; i < hashElements.length; i++)
+      {
+        cachedHashes[i] = hashElements[i].decodeAsOctetString().stringValue();
+      }
+    }
+    catch (ASN1Exception ae)
+    {
+      throw new SLAMDException("Could not decode the cached job pack hashes",
+                               ae);
+    }
+
+    return new JobPackRequestMessage(messageID, className,
+                                     Arrays.asList(cachedHashes));
+  }
+
+
+
+  /**
+   * Encodes this message into an ASN.1 element.  A job pack request message
+   * has the following syntax:
+   * <BR><BR>
+   * <CODE>JobPackRequest ::= [APPLICATION 24] SEQUENCE {</CODE>
+   * <CODE>    className     OCTET STRING,</CODE>
+   * <CODE>    cachedHashes  SEQUENCE OF OCTET STRING }</CODE>
+   * <BR>
+   *
+   * @return  An ASN.1 encoded representation of this message.
+   */
+  @Override()
+  public ASN1Element encode()
+  {
+    ASN1Element[] hashElements = new ASN1Element[cachedHashes.size()];
+    for (int i=0; i < hashElements.length; i++)
+    {
+      hashElements[i] = new ASN1OctetString(cachedHashes.get(i));
+    }
+
+    ASN1Element[] requestElements = new ASN1Element[]
+    {
+      new ASN1OctetString(className),
+      new ASN1Sequence(hashElements)
+    };
+
+    ASN1Element[] messageElements = new ASN1Element[]
+    {
+      new ASN1Integer(messageID),
+      new ASN1Sequence(ASN1_TYPE_JOB_PACK_REQUEST, requestElements)
+    };
+
+    return new ASN1Sequence(messageElements);
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.message;
+
+
+
+import com.unboundid.asn1.ASN1Element;
+import com.unboundid.asn1.ASN1Exception;
+import com.unboundid.asn1.ASN1Integer;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.asn1.ASN1Sequence;
+
+import com.slamd.common.Constants;
+import com.slamd.common.SLAMDException;
+
+
+
+/**
+ * This class defines a message that the server uses to respond to a job pack
+ * request.  If the requested class is part of a job pack, the response will
+ * include the hash of the current version of that job pack, along with the
+ * complete archive unless the client indicated that it already has a copy of
+ * it, in which case the archive data will be empty.  If the requested class is
+ * not part of any job pack, the response code will be
+ * {@code MESSAGE_RESPONSE_CLASS_NOT_FOUND} and the client should fall back to
+ * requesting the class with a class transfer request.
+ */
+public class JobPackResponseMessage
+       extends Message
+{
+  // The complete job pack archive, or an empty array if it was not included.
+  private final byte[] packData;
+
+  // The response code for this message.
+  private final int responseCode;
+
+  // The name of the job class that was requested.
+  private final String className;
+
+  // The hash of the current version of the job pack.
+  private final String packHash;
+
+
+
+  /**
+   * Creates a new job pack response message with the provided information.
+   *
+   * @param  messageID     The message ID for this message.
+   * @param  responseCode  The response code for this message.
+   * @param  className     The name of the job class that was requested.
+   * @param  packHash      The hash of the current version of the job pack, or
+   *                       an empty string if there is none.
+   * @param  packData      The complete job pack archive, or an empty array if
+   *                       the client already has it or there is none.
+   */
+  public JobPackResponseMessage(int messageID, int responseCode,
+                                String className, String packHash,
+                                byte[] packData)
+  {
+    super(messageID, Constants.MESSAGE_TYPE_JOB_PACK_RESPONSE);
+
+    this.responseCode = responseCode;
+    this.className    = className;
+    this.packHash     = packHash;
+    this.packData     = packData;
+  }
+
+
+
+  /**
+   * Retrieves the response code for this message.  The value will be that of
+   * one of the MESSAGE_RESPONSE_* constants.
+   *
+   * @return  The response code for this message.
+   */
+  public int getResponseCode()
+  {
+    return responseCode;
+  }
+
+
+
+  /**
+   * Retrieves the name of the job class that was requested.
+   *
+   * @return  The name of the job class that was requested.
+   */
+  public String getClassName()
+  {
+    return className;
+  }
+
+
+
+  /**
+   * Retrieves the hash of the current version of the job pack.
+   *
+   * @return  The hash of the current version of the job pack, or an empty
+   *          string if there is none.
+   */
+  public String getPackHash()
+  {
+    return packHash;
+  }
+
+
+
+  /**
+   * Retrieves the job pack archive included in this message.
+   *
+   * @return  The job pack archive included in this message, or an empty array
+   *          if it was not included.
+   */
+  public byte[] getPackData()
+  {
+    return packData;
+  }
+
+
+
+  /**
+   * Retrieves a string representation of this message.
+   *
+   * @return  A string representation of this message.
+   */
+  @Override()
+  public String toString()
+  {
+    String eol = System.getProperty("line.separator");
+
+    return "Job Pack Response Message" + eol +
+           "  Message ID:  " + messageID + eol +
+           "  Response Code:  " + responseCode + eol +
+           "  Class Name:  " + className + eol +
+           "  Job Pack Hash:  " + packHash + eol +
+           "  Job Pack Data:  " + packData.length + " bytes" + eol;
+  }
+
+
+
+  /**
+   * Decodes the provided ASN.1 element as a job pack response message.
+   *
+   * @param  messageID  The message ID to use for this message.
+   * @param  element    The ASN.1 element containing the JobPackResponse
+   *                    sequence.
+   *
+   * @return  The job pack response message decoded from the ASN.1 element.
+   *
+   * @throws  SLAMDException  If the provided ASN.1 element cannot be decoded
+   *                          as a job pack response message.
+   */
+  public static JobPackResponseMessage decodeJobPackResponse(int messageID,
+                                            ASN1Element element)
+         throws SLAMDException
+  {
+    ASN1Element[] elements;
+    try
+    {
+      elements = element.decodeAsSequence().elements();
+    }
+    catch (ASN1Exception ae)
+    {
+      throw new SLAMDException("Could not decode the provided ASN.1 element " +
+                               "as a sequence", ae);
+    }
+
+    if (elements.length != 4)
+    {
+      throw new SLAMDException("A job pack response message must have four " +
+                               "elements");
+    }
+
+    int responseCode;
+    try
+    {
+      responseCode = elements[0].decodeAsInteger().intValue();
+    }
+    catch (ASN1Exception ae)
+    {
+      throw new SLAMDException("The response code element cannot be decoded " +
+                               "as an integer", ae);
+    }
+
+    String className = elements[1].decodeAsOctetString().stringValue();
+    String packHash  = elements[2].decodeAsOctetString().stringValue();
+    byte[] packData  = elements[3].decodeAsOctetString().getValue();
+
+    return new JobPackResponseMessage(messageID, responseCode, className,
+                                      packHash, packData);
+  }
+
+
+
+  /**
+   * Encodes this message into an ASN.1 element.  A job pack response message
+   * has the following syntax:
+   * <BR><BR>
+   * <CODE>JobPackResponse ::= [APPLICATION 25] SEQUENCE {</CODE>
+   * <CODE>    responseCode  INTEGER,</CODE>
+   * <CODE>    className     OCTET STRING,</CODE>
+   * <CODE>    packHash      OCTET STRING,</CODE>
+   * <CODE>    packData      OCTET STRING }</CODE>
+   * <BR>
+   *
+   * @return  An ASN.1 encoded representation of this message.
+   */
+  @Override()
+  public ASN1Element encode()
+  {
+    ASN1Element[] responseElements = new ASN1Element[]
+    {
+      new ASN1Integer(responseCode),
+      new ASN1OctetString(className),
+      new ASN1OctetString(packHash),
+      new ASN1OctetString(packData)
+    };
+
+    ASN1Element[] messageElements = new ASN1Element[]
+    {
+      new ASN1Integer(messageID),
+      new ASN1Sequence(ASN1_TYPE_JOB_PACK_RESPONSE, responseElements)
+    };
+
+    return new ASN1Sequence(messageElements);
+  }
+}
@@ -18,6 +18,7 @@ package com.slamd.message;
 
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 
 import com.unboundid.asn1.ASN1Element;
@@ -78,6 +79,10 @@ public class JobRequestMessage
   // The job ID for the job to be run.
   private final String jobID;
 
+  // The flight recorder settings that the client should use to profile the
+  // job, or null if the job should not be profiled.
+  private final String profileSettings;
+
 
 
   /**
@@ -148,6 +153,48 @@ public class JobRequestMessage
                            int duration, int threadsPerClient,
                            int threadStartupDelay, int collectionInterval,
                            ParameterList parameters)
+  {
+    this(messageID, jobID, jobClass, startTime, stopTime, clientNumber,
+         duration, threadsPerClient, threadStartupDelay, collectionInterval,
+         parameters, null);
+  }
+
+
+
+  /**
+   * Creates a new job request message with the specified information.
+   *
+   * @param  messageID           The message ID for this message.
+   * @param  jobID               The job ID of the job to be executed.
+   * @param  jobClass            The name of the Java class that is a subclass
+   *                             of com.slamd.job.JobClass that can be
+   *                             executed to perform the work of this job.
+   * @param  startTime           The time (as a Java Date) at which the job
+   *                             should be started.
+   * @param  stopTime            The time (as a Java Date) at which the job
+   *                             should be stopped if it is still running.
+   * @param  clientNumber        The client number associated with this job
+   *                             request message.
+   * @param  duration            The maximum length of time in seconds that the
+   *                             job should be allowed to run.
+   * @param  threadsPerClient    The number of threads that each client should
+   *                             start to run the job.
+   * @param  threadStartupDelay  The delay in milliseconds that should be used
+   *                             between starting each thread on the client.
+   * @param  collectionInterval  The length of time in seconds to use as the
+   *                             statistics collection interval.
+   * @param  parameters          The list of parameters that can customize the
+   *                             way that the job works.
+   * @param  profileSettings     The flight recorder settings that the client
+   *                             should use to profile the job, or
+   *                             {@code null} if the job should not be
+   *                             profiled.
+   */
+  public JobRequestMessage(int messageID, String jobID, String jobClass,
+                           long startTime, long stopTime, int clientNumber,
+                           int duration, int threadsPerClient,
+                           int threadStartupDelay, int collectionInterval,
+                           ParameterList parameters, String profileSettings)
   {
     super(messageID, Constants.MESSAGE_TYPE_JOB_REQUEST);
 
@@ -161,6 +208,7 @@ public class JobRequestMessage
     this.threadStartupDelay = threadStartupDelay;
     this.collectionInterval = collectionInterval;
     this.parameters         = parameters;
+    this.profileSettings    = profileSettings;
   }
 
 
@@ -311,6 +359,21 @@ public class JobRequestMessage
 
 
 
+  /**
+   * Retrieves the flight recorder settings that the client should use to
+   * profile the job.
+   *
+   * @return  The flight recorder settings that the client should use to
+   *          profile the job, or {@code null} if the job should not be
+   *          profiled.
+   */
+  public String getProfileSettings()
+  {
+    return profileSettings;
+  }
+
+
+
   /**
    * Retrieves a string representation of this message.
    *
@@ -349,6 +412,9 @@ public class JobRequestMessage
            "  Client Number:  " + clientNumber + eol +
            "  Duration:  " + duration + eol +
            "  Collection Interval:  " + collectionInterval + eol +
+           ((profileSettings == null)
+            ? ""
+            : "  Profile Settings:  " + profileSettings + eol) +
            "  Job-Specific Parameters:" + eol +
            paramStr;
   }
@@ -383,10 +449,10 @@ public class JobRequestMessage
 
 
     ASN1Element[] elements = requestSequence.elements();
-    if (elements.length != 10)
+    if ((elements.length != 10) && (elements.length != 11))
     {
-      throw new SLAMDException("There must be ten elements in a job " +
-                               "request sequence -- I counted " +
+      throw new SLAMDException("There must be ten or eleven elements in a " +
+                               "job request sequence -- I counted " +
                                elements.length);
     }
 
@@ -487,10 +553,18 @@ public class JobRequestMessage
     ParameterList parameters = ParameterList.decode(elements[9]);
 
 
+    String profileSettings = null;
+    if (elements.length > 10)
+    {
+      profileSettings = elements[10].decodeAsOctetString().stringValue();
+    }
+
+
     return new JobRequestMessage(messageID, jobID, jobClass, startTime,
                                  stopTime, clientNumber, duration,
                                  threadsPerClient, threadStartupDelay,
-                                 collectionInterval, parameters);
+                                 collectionInterval, parameters,
+                                 profileSettings);
   }
 
 
@@ -509,7 +583,8 @@ public class JobRequestMessage
    * <CODE>    threadsPerClient    INTEGER,</CODE>
    * <CODE>    threadStartupDelay  INTEGER,</CODE>
    * <CODE>    collectionInterval  INTEGER,</CODE>
-   * <CODE>    parameters          Parameters }</CODE>
+   * <CODE>    parameters          Parameters,</CODE>
+   * <CODE>    profileSettings     OCTET STRING OPTIONAL }</CODE>
    * <BR>
    *
    * @return  An ASN.1 encoded representation of this message.
@@ -532,19 +607,22 @@ public class JobRequestMessage
     ASN1Integer collectionIntervalElement = new ASN1Integer(collectionInterval);
     ASN1Element parametersElement = parameters.encode();
 
-    ASN1Element[] jobRequestElements = new ASN1Element[]
+    ArrayList<ASN1Element> jobRequestElements = new ArrayList<ASN1Element>();
+    jobRequestElements.add(jobIDElement);
+    jobRequestElements.add(jobClassElement);
+    jobRequestElements.add(startTimeElement);
+    jobRequestElements.add(stopTimeElement);
+    jobRequestElements.add(clientNumberElement);
+    jobRequestElements.add(durationElement);
+    jobRequestElements.add(threadsElement);
+    jobRequestElements.add(delayElement);
+    jobRequestElements.add(collectionIntervalElement);
+    jobRequestElements.add(parametersElement);
+
+    if (profileSettings != null)
     {
-      jobIDElement,
-      jobClassElement,
-      startTimeElement,
-      stopTimeElement,
-      clientNumberElement,
-      durationElement,
-      threadsElement,
-      delayElement,
-      collectionIntervalElement,
-      parametersElement
-    };
+      jobRequestElements.add(new ASN1OctetString(profileSettings));
+    }
 
 
     ASN1Sequence jobRequestSequence =
@@ -185,6 +185,41 @@ public abstract class Message
 
 
 
+  /**
+   * The ASN.1 type for a rate report message.
+   */
+  public static final byte ASN1_TYPE_RATE_REPORT = 0x75;
+
+
+
+  /**
+   * The ASN.1 type for a rate quota message.
+   */
+  public static final byte ASN1_TYPE_RATE_QUOTA = 0x76;
+
+
+
+  /**
+   * The ASN.1 type for a file stage request message.
+   */
+  public static final byte ASN1_TYPE_FILE_STAGE_REQUEST = 0x77;
+
+
+
+  /**
+   * The ASN.1 type for a job pack request message.
+   */
+  public static final byte ASN1_TYPE_JOB_PACK_REQUEST = 0x78;
+
+
+
+  /**
+   * The ASN.1 type for a job pack response message.
+   */
+  public static final byte ASN1_TYPE_JOB_PACK_RESPONSE = 0x79;
+
+
+
   /**
    * A unique (per connection) identifier that is included in both a request and
    * a response to help determine which responses are associated with which
@@ -394,6 +429,19 @@ public abstract class Message
       case ASN1_TYPE_REPORT_STAT:
            return ReportStatisticMessage.decodeReportStatMessage(messageID,
                                                                  elements[1]);
+      case ASN1_TYPE_RATE_REPORT:
+           return RateReportMessage.decodeRateReport(messageID, elements[1]);
+      case ASN1_TYPE_RATE_QUOTA:
+           return RateQuotaMessage.decodeRateQuota(messageID, elements[1]);
+      case ASN1_TYPE_FILE_STAGE_REQUEST:
+           return FileStageRequestMessage.decodeFileStageRequest(messageID,
+                                                                 elements[1]);
+      case ASN1_TYPE_JOB_PACK_REQUEST:
+           return JobPackRequestMessage.decodeJobPackRequest(messageID,
+                                                             elements[1]);
+      case ASN1_TYPE_JOB_PACK_RESPONSE:
+           return JobPackResponseMessage.decodeJobPackResponse(messageID,
+                                                               elements[1]);
       default:
            throw new SLAMDException("Unknown message body element type:  " +
                                     elements[1].getType());
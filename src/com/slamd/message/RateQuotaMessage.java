@@ -0,0 +1,211 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.message;
+
+
+
+import com.unboundid.asn1.ASN1Element;
+import com.unboundid.asn1.ASN1Exception;
+import com.unboundid.asn1.ASN1Integer;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.asn1.ASN1Sequence;
+
+import com.slamd.common.Constants;
+import com.slamd.common.SLAMDException;
+
+
+
+/**
+ * This class defines a message that the server uses to tell a client what
+ * share of the aggregate rate it should attempt to maintain for a job that
+ * uses coordinated rate limiting.  It is sent in reply to a rate report
+ * message and uses the same message ID.
+ */
+public class RateQuotaMessage
+       extends Message
+{
+  // The rate, in operations per second, that the client should maintain.
+  private final int quota;
+
+  // The number of clients among which the aggregate rate is currently divided.
+  private final int activeClients;
+
+  // The ID of the job with which this quota is associated.
+  private final String jobID;
+
+
+
+  /**
+   * Creates a new rate quota message with the provided information.
+   *
+   * @param  messageID      The message ID for this message.
+   * @param  jobID          The ID of the job with which this quota is
+   *                        associated.
+   * @param  quota          The rate, in operations per second, that the client
+   *                        should maintain.
+   * @param  activeClients  The number of clients among which the aggregate
+   *                        rate is currently divided.
+   */
+  public RateQuotaMessage(int messageID, String jobID, int quota,
+                          int activeClients)
+  {
+    super(messageID, Constants.MESSAGE_TYPE_RATE_QUOTA);
+
+    this.jobID         = jobID;
+    this.quota         = quota;
+    this.activeClients = activeClients;
+  }
+
+
+
+  /**
+   * Retrieves the ID of the job with which this quota is associated.
+   *
+   * @return  The ID of the job with which this quota is associated.
+   */
+  public String getJobID()
+  {
+    return jobID;
+  }
+
+
+
+  /**
+   * Retrieves the rate, in operations per second, that the client should
+   * maintain.
+   *
+   * @return  The rate that the client should maintain.
+   */
+  public int getQuota()
+  {
+    return quota;
+  }
+
+
+
+  /**
+   * Retrieves the number of clients among which the aggregate rate is
+   * currently divided.
+   *
+   * @return  The number of clients among which the aggregate rate is currently
+   *          divided.
+   */
+  public int getActiveClients()
+  {
+    return activeClients;
+  }
+
+
+
+  /**
+   * Retrieves a string representation of this message.
+   *
+   * @return  A string representation of this message.
+   */
+  @Override()
+  public String toString()
+  {
+    String eol = System.getProperty("line.separator");
+
+    return "Rate Quota Message" + eol +
+           "  Message ID:  " + messageID + eol +
+           "  Job ID:  " + jobID + eol +
+           "  Quota:  " + quota + eol +
+           "  Active Clients:  " + activeClients + eol;
+  }
+
+
+
+  /**
+   * Decodes the provided ASN.1 element as a rate quota message.
+   *
+   * @param  messageID  The message ID to use for this message.
+   * @param  element    The ASN.1 element containing the RateQuota sequence.
+   *
+   * @return  The rate quota message decoded from the ASN.1 element.
+   *
+   * @throws  SLAMDException  If the provided ASN.1 element cannot be decoded
+   *                          as a rate quota message.
+   */
+  public static RateQuotaMessage decodeRateQuota(int messageID,
+                                                 ASN1Element element)
+         throws SLAMDException
+  {
+    ASN1Element[] elements;
+    try
+    {
+      elements = element.decodeAsSequence().elements();
+    }
+    catch (ASN1Exception ae)
+    {
+      throw new SLAMDException("Could not decode the provided ASN.1 element " +
+                               "as a sequence", ae);
+    }
+
+    if (elements.length != 3)
+    {
+      throw new SLAMDException("A rate quota message must have three " +
+                               "elements");
+    }
+
+    try
+    {
+      String jobID = elements[0].decodeAsOctetString().stringValue();
+      int quota = elements[1].decodeAsInteger().intValue();
+      int activeClients = elements[2].decodeAsInteger().intValue();
+
+      return new RateQuotaMessage(messageID, jobID, quota, activeClients);
+    }
+    catch (ASN1Exception ae)
+    {
+      throw new SLAMDException("Could not decode the rate quota elements",
+                               ae);
+    }
+  }
+
+
+
+  /**
+   * Encodes this message into an ASN.1 element.  A rate quota message has the
+   * following syntax:
+   * <BR><BR>
+   * <CODE>RateQuota ::= [APPLICATION 22] SEQUENCE {</CODE>
+   * <CODE>    jobID          OCTET STRING,</CODE>
+   * <CODE>    quota          INTEGER,</CODE>
+   * <CODE>    activeClients  INTEGER }</CODE>
+   * <BR>
+   *
+   * @return  An ASN.1 encoded representation of this message.
+   */
+  @Override()
+  public ASN1Element encode()
+  {
+    ASN1Element[] quotaElements = new ASN1Element[]
+    {
+      new ASN1OctetString(jobID),
+      new ASN1Integer(quota),
+      new ASN1Integer(activeClients)
+    };
+
+    ASN1Element[] messageElements = new ASN1Element[]
+    {
+      new ASN1Integer(messageID),
+      new ASN1Sequence(ASN1_TYPE_RATE_QUOTA, quotaElements)
+    };
+
+    return new ASN1Sequence(messageElements);
+  }
+}
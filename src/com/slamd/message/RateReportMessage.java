@@ -0,0 +1,253 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.message;
+
+
+
+import com.unboundid.asn1.ASN1Element;
+import com.unboundid.asn1.ASN1Exception;
+import com.unboundid.asn1.ASN1Integer;
+import com.unboundid.asn1.ASN1Long;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.asn1.ASN1Sequence;
+
+import com.slamd.common.Constants;
+import com.slamd.common.SLAMDException;
+
+
+
+/**
+ * This class defines a message that a client uses to tell the server how many
+ * operations it completed over the last interval for a job that uses
+ * coordinated rate limiting.  The server uses this information to rebalance
+ * the aggregate rate across all clients, and it will reply with a rate quota
+ * message containing the client's new share.
+ */
+public class RateReportMessage
+       extends Message
+{
+  // The length of the interval covered by this report, in milliseconds.
+  private final int intervalMillis;
+
+  // The number of operations completed during the interval.
+  private final long operationsCompleted;
+
+  // The per-client rate, in operations per second, that the job requested.
+  private final int requestedRate;
+
+  // The ID of the job with which this report is associated.
+  private final String jobID;
+
+
+
+  /**
+   * Creates a new rate report message with the provided information.
+   *
+   * @param  messageID            The message ID for this message.
+   * @param  jobID                The ID of the job with which this report is
+   *                              associated.
+   * @param  requestedRate        The per-client rate, in operations per
+   *                              second, that the job requested.
+   * @param  operationsCompleted  The number of operations completed during
+   *                              the interval.
+   * @param  intervalMillis       The length of the interval covered by this
+   *                              report, in milliseconds.
+   */
+  public RateReportMessage(int messageID, String jobID, int requestedRate,
+                           long operationsCompleted, int intervalMillis)
+  {
+    super(messageID, Constants.MESSAGE_TYPE_RATE_REPORT);
+
+    this.jobID               = jobID;
+    this.requestedRate       = requestedRate;
+    this.operationsCompleted = operationsCompleted;
+    this.intervalMillis      = intervalMillis;
+  }
+
+
+
+  /**
+   * Retrieves the ID of the job with which this report is associated.
+   *
+   * @return  The ID of the job with which this report is associated.
+   */
+  public String getJobID()
+  {
+    return jobID;
+  }
+
+
+
+  /**
+   * Retrieves the per-client rate, in operations per second, that the job
+   * requested.
+   *
+   * @return  The per-client rate that the job requested.
+   */
+  public int getRequestedRate()
+  {
+    return requestedRate;
+  }
+
+
+
+  /**
+   * Retrieves the number of operations completed during the interval.
+   *
+   * @return  The number of operations completed during the interval.
+   */
+  public long getOperationsCompleted()
+  {
+    return operationsCompleted;
+  }
+
+
+
+  /**
+   * Retrieves the length of the interval covered by this report.
+   *
+   * @return  The length of the interval covered by this report, in
+   *          milliseconds.
+   */
+  public int getIntervalMillis()
+  {
+    return intervalMillis;
+  }
+
+
+
+  /**
+   * Retrieves the rate, in operations per second, that the client achieved
+   * during the interval.
+   *
+   * @return  The rate that the client achieved during the interval.
+   */
+  public double getAchievedRate()
+  {
+    if (intervalMillis <= 0)
+    {
+      return 0.0D;
+    }
+
+    return (1000.0D * operationsCompleted) / intervalMillis;
+  }
+
+
+
+  /**
+   * Retrieves a string representation of this message.
+   *
+   * @return  A string representation of this message.
+   */
+  @Override()
+  public String toString()
+  {
+    String eol = System.getProperty("line.separator");
+
+    return "Rate Report Message" + eol +
+           "  Message ID:  " + messageID + eol +
+           "  Job ID:  " + jobID + eol +
+           "  Requested Rate:  " + requestedRate + eol +
+           "  Operations Completed:  " + operationsCompleted + eol +
+           "  Interval Duration:  " + intervalMillis + eol;
+  }
+
+
+
+  /**
+   * Decodes the provided ASN.1 element as a rate report message.
+   *
+   * @param  messageID  The message ID to use for this message.
+   * @param  element    The ASN.1 element containing the RateReport sequence.
+   *
+   * @return  The rate report message decoded from the ASN.1 element.
+   *
+   * @throws  SLAMDException  If the provided ASN.1 element cannot be decoded
+   *                          as a rate report message.
+   */
+  public static RateReportMessage decodeRateReport(int messageID,
+                                                   ASN1Element element)
+         throws SLAMDException
+  {
+    ASN1Element[] elements;
+    try
+    {
+      elements = element.decodeAsSequence().elements();
+    }
+    catch (ASN1Exception ae)
+    {
+      throw new SLAMDException("Could not decode the provided ASN.1 element " +
+                               "as a sequence", ae);
+    }
+
+    if (elements.length != 4)
+    {
+      throw new SLAMDException("A rate report message must have four " +
+                               "elements");
+    }
+
+    try
+    {
+      String jobID = elements[0].decodeAsOctetString().stringValue();
+      int requestedRate = elements[1].decodeAsInteger().intValue();
+      long operationsCompleted = elements[2].decodeAsLong().longValue();
+      int intervalMillis = elements[3].decodeAsInteger().intValue();
+
+      return new RateReportMessage(messageID, jobID, requestedRate,
+                                   operationsCompleted, intervalMillis);
+    }
+    catch (ASN1Exception ae)
+    {
+      throw new SLAMDException("Could not decode the rate report elements",
+                               ae);
+    }
+  }
+
+
+
+  /**
+   * Encodes this message into an ASN.1 element.  A rate report message has the
+   * following syntax:
+   * <BR><BR>
+   * <CODE>RateReport ::= [APPLICATION 21] SEQUENCE {</CODE>
+   * <CODE>    jobID                OCTET STRING,</CODE>
+   * <CODE>    requestedRate        INTEGER,</CODE>
+   * <CODE>    operationsCompleted  INTEGER,</CODE>
+   * <CODE>    intervalMillis       INTEGER }</CODE>
+   * <BR>
+   *
+   * @return  An ASN.1 encoded representation of this message.
+   */
+  @Override()
+  public ASN1Element encode()
+  {
+    ASN1Element[] reportElements = new ASN1Element[]
+    {
+      new ASN1OctetString(jobID),
+      new ASN1Integer(requestedRate),
+      new ASN1Long(operationsCompleted),
+      new ASN1Integer(intervalMillis)
+    };
+
+    ASN1Element[] messageElements = new ASN1Element[]
+    {
+      new ASN1Integer(messageID),
+      new ASN1Sequence(ASN1_TYPE_RATE_REPORT, reportElements)
+    };
+
+    return new ASN1Sequence(messageElements);
+  }
+}
@@ -0,0 +1,706 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.parameter;
+
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.slamd.common.SLAMDException;
+
+
+
+/**
+ * This class defines a client-side cache for the files referenced by file URL
+ * parameters, so that clients do not have to retrieve the same large file from
+ * a remote server each time a job that uses it runs.  File contents are stored
+ * under the SHA-256 digest of their contents, so identical content referenced
+ * by different URLs is only stored once.  For each URL, the cache remembers
+ * the digest and size of the content along with the entity tag and last
+ * modification time provided by the server.  HTTP and HTTPS URLs are
+ * revalidated with a conditional request each time they are used, so an
+ * unchanged file costs a single round trip instead of a full transfer.  FTP
+ * URLs offer no means of revalidation and are always transferred, although
+ * content that is already in the cache will not be stored again.  Local file
+ * URLs are never cached.
+ * <BR><BR>
+ * The total size of the cached content is limited to a configurable capacity.
+ * When it is exceeded, the least recently used URLs are evicted, along with
+ * any content that is no longer referenced.  The index of cached URLs is kept
+ * in a properties file in the cache directory so that the cache survives
+ * client restarts.
+ */
+public final class FileURLCache
+{
+  /**
+   * The name of the file in the cache directory that holds the index.
+   */
+  private static final String INDEX_FILE_NAME = "index.properties";
+
+
+
+  /**
+   * The size of the buffer used when transferring files into the cache.
+   */
+  private static final int BUFFER_SIZE = 65536;
+
+
+
+  // The cache used by this client, if one has been configured.
+  private static volatile FileURLCache instance = null;
+
+
+
+  // The directory in which cached content is stored.
+  private final File directory;
+
+  // The cached entries, keyed by URL and ordered from least to most recently
+  // used.
+  private final LinkedHashMap<String,CacheEntry> entries;
+
+  // The cache keys of the URLs that are currently being retrieved.
+  private final HashSet<String> transfersInProgress;
+
+  // The maximum total size in bytes of the content held in the cache.
+  private final long capacity;
+
+
+
+  /**
+   * Creates a new file URL cache that will use the specified directory.
+   *
+   * @param  directory  The directory in which to store cached content.
+   * @param  capacity   The maximum total size in bytes of the content to hold
+   *                    in the cache.
+   *
+   * @throws  IOException  If the directory cannot be created or its index
+   *                       cannot be read.
+   */
+  private FileURLCache(File directory, long capacity)
+          throws IOException
+  {
+    this.directory = directory;
+    this.capacity  = capacity;
+
+    entries = new LinkedHashMap<String,CacheEntry>(16, 0.75f, true);
+    transfersInProgress = new HashSet<String>();
+
+    if ((! directory.isDirectory()) && (! directory.mkdirs()))
+    {
+      throw new IOException("Unable to create file cache directory " +
+                            directory.getAbsolutePath());
+    }
+
+    loadIndex();
+  }
+
+
+
+  /**
+   * Configures the file URL cache for this client.  This should be called
+   * before the client begins processing jobs.
+   *
+   * @param  directory  The directory in which to store cached content.
+   * @param  capacity   The maximum total size in bytes of the content to hold
+   *                    in the cache.
+   *
+   * @return  The configured cache.
+   *
+   * @throws  IOException  If the directory cannot be created or its index
+   *                       cannot be read.
+   */
+  public static synchronized FileURLCache configure(File directory,
+                                                     long capacity)
+         throws IOException
+  {
+    instance = new FileURLCache(directory, capacity);
+    return instance;
+  }
+
+
+
+  /**
+   * Retrieves the file URL cache for this client.
+   *
+   * @return  The file URL cache for this client, or {@code null} if none has
+   *          been configured.
+   */
+  public static FileURLCache getInstance()
+  {
+    return instance;
+  }
+
+
+
+  /**
+   * Indicates whether the file referenced by the provided parameter can be
+   * held in this cache.
+   *
+   * @param  parameter  The parameter for which to make the determination.
+   *
+   * @return  {@code true} if the file can be cached, or {@code false} if it
+   *          should be accessed directly.
+   */
+  static boolean isCacheable(FileURLParameter parameter)
+  {
+    switch (parameter.getURLType())
+    {
+      case FileURLParameter.URL_TYPE_HTTP:
+      case FileURLParameter.URL_TYPE_HTTPS:
+      case FileURLParameter.URL_TYPE_FTP:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+
+
+  /**
+   * Retrieves a local file holding the current content of the file referenced
+   * by the provided parameter, transferring it into the cache if necessary.
+   * A description of how the file was obtained will be recorded in the
+   * parameter so that it may be reported in the job log.  The cache is only
+   * locked while its index is examined or updated, so transfers of different
+   * URLs may proceed at the same time.  Concurrent requests for the same URL
+   * wait for the first one to finish so that it is only transferred once.
+   *
+   * @param  parameter  The parameter referencing the file to retrieve.
+   *
+   * @return  The local file holding the content.
+   *
+   * @throws  IOException  If a problem occurs while retrieving the file.
+   *
+   * @throws  SLAMDException  If a problem is encountered while parsing the
+   *                          file URL.
+   */
+  File getFile(FileURLParameter parameter)
+       throws IOException, SLAMDException
+  {
+    String key = parameter.getCacheKey();
+    beginTransfer(key);
+    try
+    {
+      return getFile(parameter, key);
+    }
+    finally
+    {
+      endTransfer(key);
+    }
+  }
+
+
+
+  /**
+   * Retrieves a local file holding the current content of the file referenced
+   * by the provided parameter.  The caller must have reserved the URL with
+   * {@code beginTransfer}.
+   *
+   * @param  parameter  The parameter referencing the file to retrieve.
+   * @param  key        The cache key for the parameter.
+   *
+   * @return  The local file holding the content.
+   *
+   * @throws  IOException  If a problem occurs while retrieving the file.
+   *
+   * @throws  SLAMDException  If a problem is encountered while parsing the
+   *                          file URL.
+   */
+  private File getFile(FileURLParameter parameter, String key)
+          throws IOException, SLAMDException
+  {
+    String previousDigest = null;
+    String eTag           = null;
+    long   lastModified   = 0L;
+    synchronized (this)
+    {
+      CacheEntry entry = entries.get(key);
+      if (entry != null)
+      {
+        previousDigest = entry.digest;
+        eTag           = entry.eTag;
+        lastModified   = entry.lastModified;
+      }
+    }
+
+    URLConnection conn = parameter.openConnection();
+    if ((previousDigest != null) && (conn instanceof HttpURLConnection))
+    {
+      HttpURLConnection httpConn = (HttpURLConnection) conn;
+      if (eTag != null)
+      {
+        httpConn.setRequestProperty("If-None-Match", eTag);
+      }
+      if (lastModified > 0L)
+      {
+        httpConn.setIfModifiedSince(lastModified);
+      }
+
+      if (httpConn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED)
+      {
+        httpConn.disconnect();
+        synchronized (this)
+        {
+          // Another URL may have caused the entry to be evicted while the
+          // request was in progress.
+          CacheEntry entry = entries.get(key);
+          if ((entry != null) && contentFile(entry.digest).exists())
+          {
+            entry.lastUsed = System.currentTimeMillis();
+            saveIndex();
+
+            parameter.setCacheStatus("Reused the cached copy of " +
+                 parameter.getFileURL() + " (" + entry.size +
+                 " bytes not transferred).");
+            return contentFile(entry.digest);
+          }
+        }
+
+        conn = parameter.openConnection();
+      }
+    }
+
+
+    // Transfer the file into a temporary file in the cache directory, computing
+    // the digest of its contents along the way.
+    File tempFile = File.createTempFile("transfer-", ".tmp", directory);
+    String digest;
+    long size = 0L;
+    try
+    {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      InputStream inputStream =
+           new DigestInputStream(conn.getInputStream(), md);
+      try
+      {
+        OutputStream outputStream = new FileOutputStream(tempFile);
+        try
+        {
+          byte[] buffer = new byte[BUFFER_SIZE];
+          int bytesRead;
+          while ((bytesRead = inputStream.read(buffer)) > 0)
+          {
+            outputStream.write(buffer, 0, bytesRead);
+            size += bytesRead;
+          }
+        }
+        finally
+        {
+          outputStream.close();
+        }
+      }
+      finally
+      {
+        inputStream.close();
+      }
+
+      digest = toHex(md.digest());
+    }
+    catch (NoSuchAlgorithmException nsae)
+    {
+      tempFile.delete();
+      throw new SLAMDException("SHA-256 digests are not supported", nsae);
+    }
+    catch (IOException ioe)
+    {
+      tempFile.delete();
+      throw ioe;
+    }
+
+    File contentFile = contentFile(digest);
+    boolean alreadyCached;
+    synchronized (this)
+    {
+      alreadyCached = contentFile.exists();
+      if (alreadyCached)
+      {
+        tempFile.delete();
+      }
+      else if (! tempFile.renameTo(contentFile))
+      {
+        tempFile.delete();
+        throw new IOException("Unable to move " + tempFile.getAbsolutePath() +
+                              " to " + contentFile.getAbsolutePath());
+      }
+
+      CacheEntry newEntry = new CacheEntry();
+      newEntry.digest       = digest;
+      newEntry.size         = size;
+      newEntry.lastUsed     = System.currentTimeMillis();
+      newEntry.lastModified = conn.getLastModified();
+      newEntry.eTag         = conn.getHeaderField("ETag");
+      CacheEntry oldEntry = entries.put(key, newEntry);
+
+      if ((oldEntry != null) && (! oldEntry.digest.equals(digest)))
+      {
+        deleteIfUnreferenced(oldEntry.digest);
+      }
+
+      evict(key);
+      saveIndex();
+    }
+
+    if (alreadyCached)
+    {
+      parameter.setCacheStatus("Transferred " + parameter.getFileURL() +
+           " (" + size + " bytes), which matched content already in the " +
+           "file cache.");
+    }
+    else
+    {
+      parameter.setCacheStatus("Transferred " + parameter.getFileURL() +
+           " (" + size + " bytes) into the file cache.");
+    }
+
+    return contentFile;
+  }
+
+
+
+  /**
+   * Reserves the specified URL for the current thread, waiting until no other
+   * thread is retrieving it.
+   *
+   * @param  key  The cache key for the URL.
+   *
+   * @throws  IOException  If the thread is interrupted while waiting.
+   */
+  private synchronized void beginTransfer(String key)
+          throws IOException
+  {
+    while (transfersInProgress.contains(key))
+    {
+      try
+      {
+        wait();
+      }
+      catch (InterruptedException ie)
+      {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for " +
+             "another transfer of the same file to complete.");
+      }
+    }
+
+    transfersInProgress.add(key);
+  }
+
+
+
+  /**
+   * Releases the reservation of the specified URL and wakes any threads
+   * waiting to retrieve it.
+   *
+   * @param  key  The cache key for the URL.
+   */
+  private synchronized void endTransfer(String key)
+  {
+    transfersInProgress.remove(key);
+    notifyAll();
+  }
+
+
+
+  /**
+   * Evicts the least recently used entries until the content held in the
+   * cache fits within its capacity.  The entry with the provided key will not
+   * be evicted, even if it alone exceeds the capacity.
+   *
+   * @param  keepKey  The key of the entry that should not be evicted.
+   */
+  private void evict(String keepKey)
+  {
+    long totalSize = 0L;
+    Map<String,Long> contentSizes = new LinkedHashMap<String,Long>();
+    for (CacheEntry e : entries.values())
+    {
+      if (! contentSizes.containsKey(e.digest))
+      {
+        contentSizes.put(e.digest, e.size);
+        totalSize += e.size;
+      }
+    }
+
+    Iterator<Map.Entry<String,CacheEntry>> iterator =
+         entries.entrySet().iterator();
+    while ((totalSize > capacity) && iterator.hasNext())
+    {
+      Map.Entry<String,CacheEntry> mapEntry = iterator.next();
+      if (mapEntry.getKey().equals(keepKey))
+      {
+        continue;
+      }
+
+      iterator.remove();
+      String digest = mapEntry.getValue().digest;
+      if (deleteIfUnreferenced(digest))
+      {
+        totalSize -= contentSizes.get(digest);
+      }
+    }
+  }
+
+
+
+  /**
+   * Deletes the content with the specified digest if it is not referenced by
+   * any remaining entry.
+   *
+   * @param  digest  The digest of the content to delete.
+   *
+   * @return  {@code true} if the content was deleted, or {@code false} if it
+   *          is still referenced.
+   */
+  private boolean deleteIfUnreferenced(String digest)
+  {
+    for (CacheEntry e : entries.values())
+    {
+      if (e.digest.equals(digest))
+      {
+        return false;
+      }
+    }
+
+    contentFile(digest).delete();
+    return true;
+  }
+
+
+
+  /**
+   * Retrieves the file in which content with the specified digest is stored.
+   *
+   * @param  digest  The digest of the content.
+   *
+   * @return  The file in which content with the specified digest is stored.
+   */
+  private File contentFile(String digest)
+  {
+    return new File(directory, digest);
+  }
+
+
+
+  /**
+   * Reads the cache index from the cache directory, discarding any entries
+   * whose content is missing.
+   *
+   * @throws  IOException  If a problem occurs while reading the index.
+   */
+  private void loadIndex()
+          throws IOException
+  {
+    File indexFile = new File(directory, INDEX_FILE_NAME);
+    if (! indexFile.exists())
+    {
+      return;
+    }
+
+    Properties properties = new Properties();
+    InputStream inputStream = new FileInputStream(indexFile);
+    try
+    {
+      properties.load(inputStream);
+    }
+    finally
+    {
+      inputStream.close();
+    }
+
+    final Map<String,CacheEntry> loaded =
+         new LinkedHashMap<String,CacheEntry>();
+    for (String key : properties.stringPropertyNames())
+    {
+      CacheEntry entry = CacheEntry.decode(properties.getProperty(key));
+      if ((entry != null) && contentFile(entry.digest).exists())
+      {
+        loaded.put(key, entry);
+      }
+    }
+
+    List<String> keys = new ArrayList<String>(loaded.keySet());
+    Collections.sort(keys, new Comparator<String>()
+    {
+      /**
+       * Orders keys by the time that their entries were last used.
+       *
+       * @param  k1  The first key to compare.
+       * @param  k2  The second key to compare.
+       *
+       * @return  A negative value if the first key was used less recently, a
+       *          positive value if it was used more recently, or zero if they
+       *          were used at the same time.
+       */
+      @Override()
+      public int compare(String k1, String k2)
+      {
+        return Long.compare(loaded.get(k1).lastUsed, loaded.get(k2).lastUsed);
+      }
+    });
+
+    for (String key : keys)
+    {
+      entries.put(key, loaded.get(key));
+    }
+  }
+
+
+
+  /**
+   * Writes the cache index to the cache directory.
+   *
+   * @throws  IOException  If a problem occurs while writing the index.
+   */
+  private void saveIndex()
+          throws IOException
+  {
+    Properties properties = new Properties();
+    for (Map.Entry<String,CacheEntry> e : entries.entrySet())
+    {
+      properties.setProperty(e.getKey(), e.getValue().encode());
+    }
+
+    File tempFile = new File(directory, INDEX_FILE_NAME + ".new");
+    OutputStream outputStream = new FileOutputStream(tempFile);
+    try
+    {
+      properties.store(outputStream, "SLAMD client file cache index");
+    }
+    finally
+    {
+      outputStream.close();
+    }
+
+    File indexFile = new File(directory, INDEX_FILE_NAME);
+    indexFile.delete();
+    if (! tempFile.renameTo(indexFile))
+    {
+      throw new IOException("Unable to update file cache index " +
+                            indexFile.getAbsolutePath());
+    }
+  }
+
+
+
+  /**
+   * Converts the provided bytes to a hexadecimal string.
+   *
+   * @param  bytes  The bytes to convert.
+   *
+   * @return  The hexadecimal string.
+   */
+  private static String toHex(byte[] bytes)
+  {
+    StringBuilder buffer = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes)
+    {
+      buffer.append(Character.forDigit((b >> 4) & 0x0F, 16));
+      buffer.append(Character.forDigit(b & 0x0F, 16));
+    }
+
+    return buffer.toString();
+  }
+
+
+
+  /**
+   * This class holds the information that the cache keeps about a URL.
+   */
+  private static final class CacheEntry
+  {
+    // The SHA-256 digest of the content, in hexadecimal.
+    private String digest;
+
+    // The entity tag provided by the server, if any.
+    private String eTag;
+
+    // The time that the entry was last used.
+    private long lastUsed;
+
+    // The last modification time provided by the server, or zero if none was
+    // provided.
+    private long lastModified;
+
+    // The size of the content in bytes.
+    private long size;
+
+
+
+    /**
+     * Encodes this entry to a string for storage in the index.
+     *
+     * @return  The encoded representation of this entry.
+     */
+    private String encode()
+    {
+      return digest + ' ' + size + ' ' + lastModified + ' ' + lastUsed +
+             ((eTag == null) ? "" : (" " + eTag));
+    }
+
+
+
+    /**
+     * Decodes an entry from the provided string.
+     *
+     * @param  value  The string to decode.
+     *
+     * @return  The decoded entry, or {@code null} if the string is malformed.
+     */
+    private static CacheEntry decode(String value)
+    {
+      String[] fields = value.split(" ", 5);
+      if (fields.length < 4)
+      {
+        return null;
+      }
+
+      try
+      {
+        CacheEntry entry = new CacheEntry();
+        entry.digest       = fields[0];
+        entry.size         = Long.parseLong(fields[1]);
+        entry.lastModified = Long.parseLong(fields[2]);
+        entry.lastUsed     = Long.parseLong(fields[3]);
+        entry.eTag         = (fields.length == 5) ? fields[4] : null;
+        return entry;
+      }
+      catch (NumberFormatException nfe)
+      {
+        return null;
+      }
+    }
+  }
+}
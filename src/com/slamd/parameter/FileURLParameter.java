@@ -19,6 +19,9 @@ package com.slamd.parameter;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -127,6 +130,14 @@ public class FileURLParameter
   // host, and port).
   private String fileURI;
 
+  // A description of how the file URL cache handled the most recent retrieval
+  // of the file.
+  private String cacheStatus;
+
+  // The temporary copy of the file most recently created by getLocalFile, if
+  // any.
+  private File temporaryLocalFile;
+
   // The address of the server to contact to retrieve the data.
   private String serverAddress;
 
@@ -672,9 +683,8 @@ public class FileURLParameter
   public String[] getFileLines()
          throws IOException, SLAMDException
   {
-    URLConnection conn = getConnection();
     BufferedReader reader =
-         new BufferedReader(new InputStreamReader(conn.getInputStream()));
+         new BufferedReader(new InputStreamReader(getInputStream()));
 
     ArrayList<String> lineList = new ArrayList<String>();
     String line;
@@ -709,9 +719,8 @@ public class FileURLParameter
   public String[] getNonBlankFileLines()
          throws IOException, SLAMDException
   {
-    URLConnection conn = getConnection();
     BufferedReader reader =
-         new BufferedReader(new InputStreamReader(conn.getInputStream()));
+         new BufferedReader(new InputStreamReader(getInputStream()));
 
     ArrayList<String> lineList = new ArrayList<String>();
     String line;
@@ -748,9 +757,8 @@ public class FileURLParameter
   public byte[] getRawFileData()
          throws IOException, SLAMDException
   {
-    URLConnection conn = getConnection();
     BufferedInputStream inputStream =
-         new BufferedInputStream(conn.getInputStream());
+         new BufferedInputStream(getInputStream());
 
 
     byte[] buffer = new byte[BUFFER_SIZE];
@@ -782,9 +790,90 @@ public class FileURLParameter
 
 
 
+  /**
+   * Retrieves a file on the local filesystem that holds the contents of the
+   * file referenced by this parameter.  If the URL refers to a local file, then
+   * that file will be returned directly.  If a file URL cache has been
+   * configured for this client, then the cached copy will be returned.
+   * Otherwise, the contents will be copied into a temporary file that the
+   * caller should delete when it is no longer needed (as indicated by the
+   * <CODE>isTemporaryLocalFile</CODE> method), and that will otherwise be
+   * removed when the JVM exits.
+   * Unlike the other methods used to access the file contents, this does not
+   * read the entire file into memory.
+   *
+   * @return  A file on the local filesystem that holds the contents of the
+   *          file referenced by this parameter.
+   *
+   * @throws  IOException  If a problem occurs while attempting to access the
+   *                       information in the specified file.
+   *
+   * @throws  SLAMDException  If a problem is encountered while parsing the file
+   *                          URL to retrieve the appropriate information from
+   *                          it.
+   */
+  public File getLocalFile()
+         throws IOException, SLAMDException
+  {
+    FileURLCache cache = FileURLCache.getInstance();
+    if ((cache != null) && FileURLCache.isCacheable(this))
+    {
+      return cache.getFile(this);
+    }
+
+    if (urlType == URL_TYPE_FILE)
+    {
+      File f = new File(fileURI);
+      if (! f.exists())
+      {
+        throw new IOException("File " + fileURI + " does not exist");
+      }
+
+      return f;
+    }
+
+    File tempFile = File.createTempFile("slamd-file-url-", ".tmp");
+    tempFile.deleteOnExit();
+
+    InputStream inputStream = getInputStream();
+    try
+    {
+      FileOutputStream outputStream = new FileOutputStream(tempFile);
+      try
+      {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) > 0)
+        {
+          outputStream.write(buffer, 0, bytesRead);
+        }
+      }
+      finally
+      {
+        outputStream.close();
+      }
+    }
+    catch (IOException ioe)
+    {
+      tempFile.delete();
+      throw ioe;
+    }
+    finally
+    {
+      inputStream.close();
+    }
+
+    temporaryLocalFile = tempFile;
+    return tempFile;
+  }
+
+
+
   /**
    * Retrieves an input stream that allows the caller to get access to the
-   * information in the file.
+   * information in the file.  If a file URL cache has been configured for this
+   * client and the file is on a remote server, then the data will be read from
+   * the cache.
    *
    * @return  An input stream that allows the caller to get access to the
    *          information in the file.
@@ -798,12 +887,99 @@ public class FileURLParameter
   public InputStream getInputStream()
          throws IOException, SLAMDException
   {
-    URLConnection conn = getConnection();
+    FileURLCache cache = FileURLCache.getInstance();
+    if ((cache != null) && FileURLCache.isCacheable(this))
+    {
+      return new FileInputStream(cache.getFile(this));
+    }
+
+    URLConnection conn = openConnection();
     return conn.getInputStream();
   }
 
 
 
+  /**
+   * Retrieves the type of URL referenced by this parameter.
+   *
+   * @return  The type of URL referenced by this parameter.
+   */
+  public int getURLType()
+  {
+    return urlType;
+  }
+
+
+
+  /**
+   * Retrieves the key that identifies the referenced file in the file URL
+   * cache.  It includes the authentication ID, if any, since different users
+   * may see different content at the same URL.
+   *
+   * @return  The key that identifies the referenced file in the file URL
+   *          cache.
+   */
+  String getCacheKey()
+  {
+    String url = String.valueOf(getFileURL());
+    if (authID == null)
+    {
+      return url;
+    }
+    else
+    {
+      return authID + ' ' + url;
+    }
+  }
+
+
+
+  /**
+   * Indicates whether the provided file is a temporary copy of the file
+   * contents created by the <CODE>getLocalFile</CODE> method, and should
+   * therefore be deleted by the caller once it is no longer needed.
+   *
+   * @param  file  The file for which to make the determination.
+   *
+   * @return  {@code true} if the provided file is a temporary copy created by
+   *          <CODE>getLocalFile</CODE>, or {@code false} if it is the original
+   *          local file or a file held in the file URL cache.
+   */
+  public boolean isTemporaryLocalFile(File file)
+  {
+    return ((file != null) && file.equals(temporaryLocalFile));
+  }
+
+
+
+  /**
+   * Retrieves a description of how the file URL cache handled the most recent
+   * retrieval of the file, suitable for inclusion in the job log.
+   *
+   * @return  A description of how the file URL cache handled the most recent
+   *          retrieval of the file, or {@code null} if the cache was not used.
+   */
+  public String getCacheStatus()
+  {
+    return cacheStatus;
+  }
+
+
+
+  /**
+   * Specifies a description of how the file URL cache handled the most recent
+   * retrieval of the file.
+   *
+   * @param  cacheStatus  A description of how the file URL cache handled the
+   *                      most recent retrieval of the file.
+   */
+  void setCacheStatus(String cacheStatus)
+  {
+    this.cacheStatus = cacheStatus;
+  }
+
+
+
   /**
    * Creates a URL connection that is ready to start reading the file.
    *
@@ -812,7 +988,7 @@ public class FileURLParameter
    * @throws  IOException  If a problem occurs while establishing the
    *                       connection.
    */
-  private URLConnection getConnection()
+  URLConnection openConnection()
           throws IOException
   {
     switch (urlType)
@@ -19,8 +19,8 @@ package com.slamd.realm;
 
 import java.security.MessageDigest;
 import java.security.Principal;
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 
 import netscape.ldap.LDAPAttribute;
 import netscape.ldap.LDAPConnection;
@@ -229,10 +229,12 @@ public class LDAPRealm
 
 
   /**
-   * A hashtable containing cached credential information so that we don't have
-   * to go to the directory server for every request.
+   * A map containing cached credential information so that we don't have to go
+   * to the directory server for every request.  It may be read without holding
+   * the lock on this realm.
    */
-  protected Hashtable<String,CachedUser> userCache = null;
+  protected final ConcurrentHashMap<String,CachedUser> userCache =
+       new ConcurrentHashMap<String,CachedUser>();
 
 
 
@@ -334,10 +336,7 @@ public class LDAPRealm
   private LDAPConnection searchConnection = null;
 
   // The time at which the next cache cleanup should occur.
-  private long nextCleanupTime;
-
-  // The message digest used to generate SHA-1 hashes.
-  private MessageDigest shaDigest = null;
+  private long nextCleanupTime = 0L;
 
   // The search base from the LDAP URL that will be used to verify membership in
   // a dynamic group.
@@ -744,26 +743,8 @@ public class LDAPRealm
    *          credentials.
    */
   @Override()
-  public synchronized Principal authenticate(String username,
-                                             String credentials)
+  public Principal authenticate(String username, String credentials)
   {
-    // First, see if the user cache exists.  If not, then create it.  If so,
-    // then see if it needs to be pruned.
-    long now = System.currentTimeMillis();
-    if (userCache == null)
-    {
-      userCache = new Hashtable<String,CachedUser>();
-      nextCleanupTime = now + CACHE_CLEANUP_INTERVAL;
-    }
-    else
-    {
-      if (now > nextCleanupTime)
-      {
-        cleanUserCache();
-      }
-    }
-
-
     // First, make sure that the provided credentials are not empty.  If they
     // are, then we cannot verify the user's identity.
     if ((credentials == null) || (credentials.length() == 0))
@@ -780,7 +761,10 @@ public class LDAPRealm
     }
 
 
-    // See if the cache contains information about the user.
+    // See if the cache contains information about the user.  This does not
+    // require the lock, so requests from users that are already cached do not
+    // have to wait behind a request that needs to go to the directory.
+    long now = System.currentTimeMillis();
     CachedUser cachedUser = userCache.get(username);
     if (cachedUser != null)
     {
@@ -792,7 +776,7 @@ public class LDAPRealm
       {
         if (now >= cachedUser.getExpirationTime())
         {
-          userCache.remove(username);
+          userCache.remove(username, cachedUser);
         }
         else
         {
@@ -801,6 +785,36 @@ public class LDAPRealm
       }
     }
 
+    return authenticateUser(username, credentials, hashedPassword);
+  }
+
+
+
+  /**
+   * Verifies the provided credentials against the user directory and caches
+   * the result if they are valid.  The directory connections used by this
+   * realm may only be used by one thread at a time.
+   *
+   * @param  username        The provided username that will be used to find
+   *                         the user entry.
+   * @param  credentials     The credentials that will be used to authenticate
+   *                         the user.
+   * @param  hashedPassword  The SHA-1 hash of the provided credentials.
+   *
+   * @return  The Principal associated with the specified username and
+   *          credentials, or {@code null} if they could not be verified.
+   */
+  private synchronized Principal authenticateUser(String username,
+                                                  String credentials,
+                                                  byte[] hashedPassword)
+  {
+    // See if the user cache needs to be pruned.
+    long now = System.currentTimeMillis();
+    if (now > nextCleanupTime)
+    {
+      cleanUserCache();
+    }
+
     // The user wasn't in the cache, so perform a search in the directory to
     // find the user's entry.
     LDAPEntry userEntry = getUserEntry(username);
@@ -833,8 +847,8 @@ public class LDAPRealm
     // associated with the user.
     Principal userPrincipal = new GenericPrincipal(username, credentials, null);
     long expirationTime = now + CACHE_EXPIRATION_TIME;
-    cachedUser = new CachedUser(username, userDN, hashedPassword, userPrincipal,
-                                expirationTime);
+    CachedUser cachedUser = new CachedUser(username, userDN, hashedPassword,
+                                           userPrincipal, expirationTime);
     userCache.put(username, cachedUser);
     return userPrincipal;
   }
@@ -1036,17 +1050,17 @@ public class LDAPRealm
    */
   private byte[] hashPassword(String credentials)
   {
-    if (shaDigest == null)
+    // A new digest is used for each call because this may be invoked by
+    // multiple threads at once.
+    MessageDigest shaDigest;
+    try
     {
-      try
-      {
-        shaDigest = MessageDigest.getInstance("SHA");
-      }
-      catch (Exception e)
-      {
-        logError("Unable to obtain SHA digest implementation.");
-        return null;
-      }
+      shaDigest = MessageDigest.getInstance("SHA");
+    }
+    catch (Exception e)
+    {
+      logError("Unable to obtain SHA digest implementation.");
+      return null;
     }
 
     return shaDigest.digest(StaticUtils.getBytes(credentials));
@@ -1291,14 +1305,12 @@ public class LDAPRealm
   {
     long now = System.currentTimeMillis();
 
-    Enumeration<String> keys = userCache.keys();
-    while (keys.hasMoreElements())
+    Iterator<CachedUser> iterator = userCache.values().iterator();
+    while (iterator.hasNext())
     {
-      String key = keys.nextElement();
-      CachedUser user = userCache.get(key);
-      if (user.getExpirationTime() < now)
+      if (iterator.next().getExpirationTime() < now)
       {
-        userCache.remove(key);
+        iterator.remove();
       }
     }
 
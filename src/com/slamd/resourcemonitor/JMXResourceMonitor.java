@@ -0,0 +1,1020 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.resourcemonitor;
+
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.TreeSet;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MBeanServerConnection;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+import com.slamd.common.Constants;
+import com.slamd.common.SLAMDException;
+import com.slamd.job.JobClass;
+import com.slamd.stat.FloatValueTracker;
+import com.slamd.stat.RealTimeStatReporter;
+import com.slamd.stat.StatTracker;
+
+
+
+/**
+ * This class defines a SLAMD resource monitor that connects to a Java-based
+ * server over JMX and captures information about its heap usage, garbage
+ * collection activity, and thread count, along with any number of additional
+ * MBean attributes named in the monitor configuration.  Samples are taken
+ * many times per collection interval, and all of the attributes of each MBean
+ * are retrieved with a single request, so that short garbage collection
+ * pauses on the server are visible and can be graphed alongside the response
+ * times measured by the clients.
+ * <BR><BR>
+ * Additional attributes are configured with a set of properties that share a
+ * common label, as in:
+ * <PRE>
+ *   mbean.os.object_name=java.lang:type=OperatingSystem
+ *   mbean.os.attributes=ProcessCpuLoad,SystemLoadAverage
+ *   mbean.os.rate_attributes=ProcessCpuTime
+ * </PRE>
+ * Attributes listed in the "attributes" property are reported as gauges, while
+ * those listed in the "rate_attributes" property are treated as counters and
+ * reported as the rate of change per second.  An attribute whose value is
+ * composite data may be followed by a period and the name of the item to use
+ * (e.g., "HeapMemoryUsage.used").
+ */
+public class JMXResourceMonitor
+       extends ResourceMonitor
+{
+  /**
+   * The display name of the stat tracker that will be used to report the
+   * amount of heap memory in use.
+   */
+  public static final String STAT_TRACKER_HEAP_USED = "Heap Used (MB)";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the
+   * amount of heap memory committed by the JVM.
+   */
+  public static final String STAT_TRACKER_HEAP_COMMITTED =
+       "Heap Committed (MB)";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the
+   * percentage of time spent performing garbage collection.
+   */
+  public static final String STAT_TRACKER_GC_TIME_PERCENT =
+       "Garbage Collection Time Percent";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the
+   * number of garbage collections per second.
+   */
+  public static final String STAT_TRACKER_GC_RATE =
+       "Garbage Collections per Second";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the
+   * number of live threads.
+   */
+  public static final String STAT_TRACKER_THREAD_COUNT = "Live Threads";
+
+
+
+  /**
+   * The name of the configuration property that specifies the JMX service URL
+   * to use to connect to the server.  If this is not provided, then a URL will
+   * be constructed from the host and port.
+   */
+  public static final String PROPERTY_JMX_URL = "jmx_url";
+
+
+
+  /**
+   * The name of the configuration property that specifies the address of the
+   * server's RMI registry.
+   */
+  public static final String PROPERTY_JMX_HOST = "jmx_host";
+
+
+
+  /**
+   * The default address of the server's RMI registry.
+   */
+  public static final String DEFAULT_JMX_HOST = "127.0.0.1";
+
+
+
+  /**
+   * The name of the configuration property that specifies the port of the
+   * server's RMI registry.
+   */
+  public static final String PROPERTY_JMX_PORT = "jmx_port";
+
+
+
+  /**
+   * The default port of the server's RMI registry.
+   */
+  public static final int DEFAULT_JMX_PORT = 9010;
+
+
+
+  /**
+   * The name of the configuration property that specifies the user name to
+   * use when authenticating to the server.
+   */
+  public static final String PROPERTY_JMX_USERNAME = "jmx_username";
+
+
+
+  /**
+   * The name of the configuration property that specifies the password to use
+   * when authenticating to the server.
+   */
+  public static final String PROPERTY_JMX_PASSWORD = "jmx_password";
+
+
+
+  /**
+   * The name of the configuration property that specifies the length of time
+   * in milliseconds between samples.
+   */
+  public static final String PROPERTY_SAMPLE_INTERVAL_MILLIS =
+       "sample_interval_millis";
+
+
+
+  /**
+   * The default sample interval that will be used.
+   */
+  public static final int DEFAULT_SAMPLE_INTERVAL_MILLIS = 250;
+
+
+
+  /**
+   * The name of the configuration property that indicates whether to capture
+   * heap usage.
+   */
+  public static final String PROPERTY_CAPTURE_HEAP = "capture_heap";
+
+
+
+  /**
+   * The default value that will be used for the capture heap property.
+   */
+  public static final boolean DEFAULT_CAPTURE_HEAP = true;
+
+
+
+  /**
+   * The name of the configuration property that indicates whether to capture
+   * garbage collection activity.
+   */
+  public static final String PROPERTY_CAPTURE_GC = "capture_gc";
+
+
+
+  /**
+   * The default value that will be used for the capture GC property.
+   */
+  public static final boolean DEFAULT_CAPTURE_GC = true;
+
+
+
+  /**
+   * The name of the configuration property that indicates whether to capture
+   * the number of live threads.
+   */
+  public static final String PROPERTY_CAPTURE_THREADS = "capture_threads";
+
+
+
+  /**
+   * The default value that will be used for the capture threads property.
+   */
+  public static final boolean DEFAULT_CAPTURE_THREADS = true;
+
+
+
+  /**
+   * The prefix used for the configuration properties that define additional
+   * MBean attributes to capture.
+   */
+  public static final String PROPERTY_MBEAN_PREFIX = "mbean.";
+
+
+
+  /**
+   * The suffix used for the configuration property that specifies the object
+   * name of an MBean whose attributes should be captured.
+   */
+  public static final String PROPERTY_SUFFIX_OBJECT_NAME = ".object_name";
+
+
+
+  /**
+   * The suffix used for the configuration property that specifies the names
+   * of the MBean attributes that should be reported as gauges.
+   */
+  public static final String PROPERTY_SUFFIX_ATTRIBUTES = ".attributes";
+
+
+
+  /**
+   * The suffix used for the configuration property that specifies the names
+   * of the MBean attributes that should be reported as rates.
+   */
+  public static final String PROPERTY_SUFFIX_RATE_ATTRIBUTES =
+       ".rate_attributes";
+
+
+
+  // The object names of the platform MBeans used by this monitor.
+  private static final String OBJECT_NAME_MEMORY = "java.lang:type=Memory";
+  private static final String OBJECT_NAME_THREADING =
+       "java.lang:type=Threading";
+  private static final String OBJECT_NAME_GC_PATTERN =
+       "java.lang:type=GarbageCollector,name=*";
+
+  // The attributes requested from the platform MBeans.
+  private static final String[] MEMORY_ATTRIBUTES = { "HeapMemoryUsage" };
+  private static final String[] THREADING_ATTRIBUTES = { "ThreadCount" };
+  private static final String[] GC_ATTRIBUTES =
+  {
+    "CollectionCount",
+    "CollectionTime"
+  };
+
+
+
+  // The configuration for this resource monitor.
+  private boolean captureGC;
+  private boolean captureHeap;
+  private boolean captureThreads;
+  private int     sampleIntervalMillis;
+  private String  jmxPassword;
+  private String  jmxURL;
+  private String  jmxUsername;
+
+  // The additional MBeans to monitor, keyed by label.
+  private LinkedHashMap<String,MonitoredMBean> monitoredMBeans;
+
+  // The stat trackers that will be used by this resource monitor.
+  private FloatValueTracker gcRate;
+  private FloatValueTracker gcTimePercent;
+  private FloatValueTracker heapCommitted;
+  private FloatValueTracker heapUsed;
+  private FloatValueTracker threadCount;
+
+  // The connection to the server and the garbage collectors that it exposes.
+  private JMXConnector          connector;
+  private MBeanServerConnection mbeanServer;
+  private ObjectName[]          gcNames;
+
+  // The garbage collection counters from the current and previous samples.
+  private long gcCount;
+  private long gcTime;
+  private long previousGCCount;
+  private long previousGCTime;
+
+
+
+  /**
+   * Performs any initialization specific to this resource monitor.
+   *
+   * @throws  SLAMDException  If a problem occurs while performing the
+   *                          initialization.
+   */
+  @Override()
+  public void initializeMonitor()
+         throws SLAMDException
+  {
+    jmxURL = getProperty(PROPERTY_JMX_URL, "");
+    if (jmxURL.length() == 0)
+    {
+      jmxURL = "service:jmx:rmi:///jndi/rmi://" +
+               getProperty(PROPERTY_JMX_HOST, DEFAULT_JMX_HOST) + ':' +
+               getProperty(PROPERTY_JMX_PORT, DEFAULT_JMX_PORT) + "/jmxrmi";
+    }
+
+    jmxUsername = getProperty(PROPERTY_JMX_USERNAME, "");
+    jmxPassword = getProperty(PROPERTY_JMX_PASSWORD, "");
+    sampleIntervalMillis = getProperty(PROPERTY_SAMPLE_INTERVAL_MILLIS,
+                                       DEFAULT_SAMPLE_INTERVAL_MILLIS);
+    captureHeap    = getProperty(PROPERTY_CAPTURE_HEAP, DEFAULT_CAPTURE_HEAP);
+    captureGC      = getProperty(PROPERTY_CAPTURE_GC, DEFAULT_CAPTURE_GC);
+    captureThreads = getProperty(PROPERTY_CAPTURE_THREADS,
+                                 DEFAULT_CAPTURE_THREADS);
+
+    if (sampleIntervalMillis <= 0)
+    {
+      throw new SLAMDException("The " + PROPERTY_SAMPLE_INTERVAL_MILLIS +
+                               " property must have a positive value.");
+    }
+
+    try
+    {
+      new JMXServiceURL(jmxURL);
+    }
+    catch (Exception e)
+    {
+      throw new SLAMDException("Invalid JMX service URL \"" + jmxURL +
+                               "\":  " + e, e);
+    }
+
+
+    // Find the labels of all of the additional MBeans to monitor.  They will be
+    // processed in sorted order so that the stat trackers are always listed
+    // in the same order.
+    TreeSet<String> labels = new TreeSet<String>();
+    for (String propertyName : getMonitorProperties().stringPropertyNames())
+    {
+      if (propertyName.startsWith(PROPERTY_MBEAN_PREFIX) &&
+          propertyName.endsWith(PROPERTY_SUFFIX_OBJECT_NAME))
+      {
+        labels.add(propertyName.substring(PROPERTY_MBEAN_PREFIX.length(),
+             propertyName.length() - PROPERTY_SUFFIX_OBJECT_NAME.length()));
+      }
+    }
+
+    monitoredMBeans = new LinkedHashMap<String,MonitoredMBean>();
+    for (String label : labels)
+    {
+      String propertyBase = PROPERTY_MBEAN_PREFIX + label;
+      String nameStr =
+           getProperty(propertyBase + PROPERTY_SUFFIX_OBJECT_NAME, "");
+
+      ObjectName objectName;
+      try
+      {
+        objectName = new ObjectName(nameStr);
+      }
+      catch (MalformedObjectNameException mone)
+      {
+        throw new SLAMDException("Invalid object name \"" + nameStr +
+                                 "\" for MBean " + label + ":  " + mone, mone);
+      }
+
+      MonitoredMBean mbean = new MonitoredMBean(label, objectName);
+      for (String attr : splitList(
+                getProperty(propertyBase + PROPERTY_SUFFIX_ATTRIBUTES, "")))
+      {
+        mbean.addAttribute(attr, false);
+      }
+
+      for (String attr : splitList(
+                getProperty(propertyBase + PROPERTY_SUFFIX_RATE_ATTRIBUTES,
+                            "")))
+      {
+        mbean.addAttribute(attr, true);
+      }
+
+      if (mbean.attributes.isEmpty())
+      {
+        throw new SLAMDException("No attributes were specified for MBean " +
+                                 label);
+      }
+
+      mbean.finishAttributes();
+      monitoredMBeans.put(label, mbean);
+    }
+  }
+
+
+
+  /**
+   * Indicates whether the current client system is supported for this resource
+   * monitor.
+   *
+   * @return  {@code true} if the current client system is supported for
+   *          this resource monitor, or {@code false} if not.
+   */
+  @Override()
+  public boolean clientSupported()
+  {
+    return true;
+  }
+
+
+
+  /**
+   * Creates a new instance of this resource monitor thread.  Note that the
+   * <CODE>initialize()</CODE> method should have been called on the new
+   * instance before it is returned.
+   *
+   * @return  A new instance of this resource monitor thread.
+   *
+   * @throws  SLAMDException  If a problem occurs while creating or initializing
+   *                          the resource monitor.
+   */
+  @Override()
+  public ResourceMonitor newInstance()
+         throws SLAMDException
+  {
+    JMXResourceMonitor monitor = new JMXResourceMonitor();
+    monitor.initialize(getMonitorClient(), getMonitorProperties());
+
+    return monitor;
+  }
+
+
+
+  /**
+   * Initializes the stat trackers maintained by this resource monitor.
+   *
+   * @param  clientID            The client ID to use for the stubs.
+   * @param  threadID            The thread ID to use for the stubs.
+   * @param  collectionInterval  The collection interval to use for the stubs.
+   */
+  @Override()
+  public void initializeStatistics(String clientID, String threadID,
+                                   int collectionInterval)
+  {
+    String prefix = clientID + ' ';
+
+    heapUsed = new FloatValueTracker(clientID, threadID,
+                                     prefix + STAT_TRACKER_HEAP_USED,
+                                     collectionInterval);
+    heapCommitted = new FloatValueTracker(clientID, threadID,
+                                          prefix + STAT_TRACKER_HEAP_COMMITTED,
+                                          collectionInterval);
+    gcTimePercent = new FloatValueTracker(clientID, threadID,
+                                          prefix +
+                                          STAT_TRACKER_GC_TIME_PERCENT,
+                                          collectionInterval);
+    gcRate = new FloatValueTracker(clientID, threadID,
+                                   prefix + STAT_TRACKER_GC_RATE,
+                                   collectionInterval);
+    threadCount = new FloatValueTracker(clientID, threadID,
+                                        prefix + STAT_TRACKER_THREAD_COUNT,
+                                        collectionInterval);
+
+    for (MonitoredMBean mbean : monitoredMBeans.values())
+    {
+      for (MonitoredAttribute attr : mbean.attributes)
+      {
+        attr.tracker = new FloatValueTracker(clientID, threadID,
+                                             prefix + mbean.label + ' ' +
+                                             attr.displayName,
+                                             collectionInterval);
+      }
+    }
+  }
+
+
+
+  /**
+   * Retrieves the name to use for this resource monitor.
+   *
+   * @return  The name to use for this resource monitor.
+   */
+  @Override()
+  public String getMonitorName()
+  {
+    return "JMX";
+  }
+
+
+
+  /**
+   * Retrieves the statistical data collected by this resource monitor.
+   *
+   * @return  The statistical data collected by this resource monitor.
+   */
+  @Override()
+  public StatTracker[] getResourceStatistics()
+  {
+    ArrayList<StatTracker> statList = getActiveTrackers();
+    StatTracker[] returnTrackers = new StatTracker[statList.size()];
+    statList.toArray(returnTrackers);
+    return returnTrackers;
+  }
+
+
+
+  /**
+   * Retrieves the set of stat trackers for the information that this monitor
+   * has been configured to capture.
+   *
+   * @return  The set of stat trackers for the information that this monitor
+   *          has been configured to capture.
+   */
+  private ArrayList<StatTracker> getActiveTrackers()
+  {
+    ArrayList<StatTracker> statList = new ArrayList<StatTracker>();
+
+    if (captureHeap)
+    {
+      statList.add(heapUsed);
+      statList.add(heapCommitted);
+    }
+
+    if (captureGC)
+    {
+      statList.add(gcTimePercent);
+      statList.add(gcRate);
+    }
+
+    if (captureThreads)
+    {
+      statList.add(threadCount);
+    }
+
+    for (MonitoredMBean mbean : monitoredMBeans.values())
+    {
+      for (MonitoredAttribute attr : mbean.attributes)
+      {
+        statList.add(attr.tracker);
+      }
+    }
+
+    return statList;
+  }
+
+
+
+  /**
+   * Performs the work of actually collecting resource statistics.  This method
+   * should periodically call the <CODE>shouldStop()</CODE> method to determine
+   * whether to stop collecting statistics.
+   *
+   * @return  A value that indicates the status of the monitor when it
+   *          completed.
+   */
+  @Override()
+  public int runMonitor()
+  {
+    int stopReason = Constants.JOB_STATE_COMPLETED_SUCCESSFULLY;
+    ArrayList<StatTracker> trackers = getActiveTrackers();
+
+
+    // Start all of the stat trackers, enabling real-time reporting for them if
+    // appropriate.  The trackers will average all of the samples taken within
+    // each collection interval.
+    ResourceMonitorJob monitorJob = getMonitorJob();
+    for (StatTracker tracker : trackers)
+    {
+      tracker.startTracker();
+      if ((monitorJob != null) && monitorJob.enableRealTimeStats())
+      {
+        RealTimeStatReporter statReporter = monitorJob.getStatReporter();
+        tracker.enableRealTimeStats(statReporter, monitorJob.getJobID());
+      }
+    }
+
+
+    // Take the samples.  If the connection to the server is lost, then the
+    // samples will be skipped until it can be re-established.  The first
+    // sample after connecting only establishes the baseline against which
+    // the counters in the next sample will be compared.
+    boolean firstSample    = true;
+    boolean loggedFailure  = false;
+    long    lastSampleTime = System.nanoTime();
+    long    nextSampleTime = System.currentTimeMillis();
+    while (! shouldStop())
+    {
+      long now = System.currentTimeMillis();
+      if (now < nextSampleTime)
+      {
+        try
+        {
+          Thread.sleep(Math.min(nextSampleTime - now, 100L));
+        } catch (InterruptedException ie) {}
+        continue;
+      }
+      nextSampleTime += sampleIntervalMillis;
+      if (nextSampleTime <= now)
+      {
+        nextSampleTime = now + sampleIntervalMillis;
+      }
+
+      try
+      {
+        if (mbeanServer == null)
+        {
+          connect();
+          firstSample   = true;
+          loggedFailure = false;
+        }
+
+        long   sampleTime     = System.nanoTime();
+        double elapsedSeconds = (sampleTime - lastSampleTime) / 1.0e9;
+        lastSampleTime = sampleTime;
+
+        takeSample(firstSample, elapsedSeconds);
+        firstSample = false;
+      }
+      catch (IOException ioe)
+      {
+        if (! loggedFailure)
+        {
+          logMessage("Unable to retrieve data from " + jmxURL + ":  " + ioe);
+          loggedFailure = true;
+          stopReason    = Constants.JOB_STATE_COMPLETED_WITH_ERRORS;
+        }
+
+        disconnect();
+      }
+      catch (Exception e)
+      {
+        logMessage("Error while retrieving data from " + jmxURL + " -- " +
+                   JobClass.stackTraceToString(e));
+        stopReason = Constants.JOB_STATE_STOPPED_DUE_TO_ERROR;
+        break;
+      }
+    }
+
+    disconnect();
+
+    for (StatTracker tracker : trackers)
+    {
+      tracker.stopTracker();
+    }
+
+    return stopReason;
+  }
+
+
+
+  /**
+   * Establishes a connection to the server and determines which garbage
+   * collectors it uses.
+   *
+   * @throws  IOException  If a problem occurs while establishing the
+   *                       connection.
+   *
+   * @throws  MalformedObjectNameException  If an object name used to find the
+   *                                        garbage collectors is invalid.
+   */
+  private void connect()
+          throws IOException, MalformedObjectNameException
+  {
+    HashMap<String,Object> environment = new HashMap<String,Object>();
+    if (jmxUsername.length() > 0)
+    {
+      environment.put(JMXConnector.CREDENTIALS,
+                      new String[] { jmxUsername, jmxPassword });
+    }
+
+    connector = JMXConnectorFactory.connect(new JMXServiceURL(jmxURL),
+                                            environment);
+    mbeanServer = connector.getMBeanServerConnection();
+
+    Set<ObjectName> names =
+         mbeanServer.queryNames(new ObjectName(OBJECT_NAME_GC_PATTERN), null);
+    gcNames = new ObjectName[names.size()];
+    names.toArray(gcNames);
+  }
+
+
+
+  /**
+   * Closes the connection to the server, if it is established.
+   */
+  private void disconnect()
+  {
+    if (connector != null)
+    {
+      try
+      {
+        connector.close();
+      } catch (Exception e) {}
+    }
+
+    connector   = null;
+    mbeanServer = null;
+  }
+
+
+
+  /**
+   * Retrieves the current values of all of the information to capture from
+   * the server and adds them to the appropriate stat trackers.
+   *
+   * @param  firstSample     Indicates whether this is the first sample since
+   *                         the connection was established, in which case no
+   *                         rates will be reported.
+   * @param  elapsedSeconds  The length of time in seconds since the previous
+   *                         sample.
+   *
+   * @throws  Exception  If a problem occurs while retrieving the information.
+   */
+  private void takeSample(boolean firstSample, double elapsedSeconds)
+          throws Exception
+  {
+    if (captureHeap)
+    {
+      AttributeList values =
+           mbeanServer.getAttributes(new ObjectName(OBJECT_NAME_MEMORY),
+                                     MEMORY_ATTRIBUTES);
+      CompositeData heapUsage = (CompositeData) getValue(values,
+                                                         MEMORY_ATTRIBUTES[0]);
+      if (heapUsage != null)
+      {
+        heapUsed.addValue(
+             ((Number) heapUsage.get("used")).longValue() / (1024.0 * 1024.0));
+        heapCommitted.addValue(
+             ((Number) heapUsage.get("committed")).longValue() /
+             (1024.0 * 1024.0));
+      }
+    }
+
+    if (captureGC)
+    {
+      gcCount = 0L;
+      gcTime  = 0L;
+      for (ObjectName gcName : gcNames)
+      {
+        AttributeList values = mbeanServer.getAttributes(gcName, GC_ATTRIBUTES);
+        Number count = (Number) getValue(values, GC_ATTRIBUTES[0]);
+        Number time  = (Number) getValue(values, GC_ATTRIBUTES[1]);
+        if ((count != null) && (count.longValue() > 0L))
+        {
+          gcCount += count.longValue();
+        }
+        if ((time != null) && (time.longValue() > 0L))
+        {
+          gcTime += time.longValue();
+        }
+      }
+
+      if (! firstSample)
+      {
+        // The collection time is in milliseconds.
+        gcTimePercent.addValue((gcTime - previousGCTime) /
+                               (elapsedSeconds * 10.0));
+        gcRate.addValue((gcCount - previousGCCount) / elapsedSeconds);
+      }
+
+      previousGCCount = gcCount;
+      previousGCTime  = gcTime;
+    }
+
+    if (captureThreads)
+    {
+      AttributeList values =
+           mbeanServer.getAttributes(new ObjectName(OBJECT_NAME_THREADING),
+                                     THREADING_ATTRIBUTES);
+      Number count = (Number) getValue(values, THREADING_ATTRIBUTES[0]);
+      if (count != null)
+      {
+        threadCount.addValue(count.doubleValue());
+      }
+    }
+
+    for (MonitoredMBean mbean : monitoredMBeans.values())
+    {
+      AttributeList values = mbeanServer.getAttributes(mbean.objectName,
+                                                       mbean.attributeNames);
+      for (MonitoredAttribute attr : mbean.attributes)
+      {
+        Object value = getValue(values, attr.attributeName);
+        if ((value != null) && (attr.itemName != null) &&
+            (value instanceof CompositeData))
+        {
+          value = ((CompositeData) value).get(attr.itemName);
+        }
+
+        if (! (value instanceof Number))
+        {
+          if (! attr.loggedNonNumeric)
+          {
+            logMessage("Attribute " + attr.displayName + " of MBean " +
+                       mbean.objectName + " does not have a numeric value.");
+            attr.loggedNonNumeric = true;
+          }
+          continue;
+        }
+
+        double doubleValue = ((Number) value).doubleValue();
+        if (! attr.isRate)
+        {
+          attr.tracker.addValue(doubleValue);
+        }
+        else
+        {
+          if ((! firstSample) && (! Double.isNaN(attr.previousValue)))
+          {
+            attr.tracker.addValue((doubleValue - attr.previousValue) /
+                                  elapsedSeconds);
+          }
+          attr.previousValue = doubleValue;
+        }
+      }
+    }
+  }
+
+
+
+  /**
+   * Retrieves the value of the specified attribute from the provided list.
+   *
+   * @param  values         The list of attribute values returned by the
+   *                        server.
+   * @param  attributeName  The name of the attribute to retrieve.
+   *
+   * @return  The value of the specified attribute, or {@code null} if it was
+   *          not returned.
+   */
+  private static Object getValue(AttributeList values, String attributeName)
+  {
+    for (Attribute attribute : values.asList())
+    {
+      if (attribute.getName().equals(attributeName))
+      {
+        return attribute.getValue();
+      }
+    }
+
+    return null;
+  }
+
+
+
+  /**
+   * Splits the provided comma-delimited list into its elements.
+   *
+   * @param  list  The list to split.
+   *
+   * @return  The elements contained in the provided list.
+   */
+  private static String[] splitList(String list)
+  {
+    ArrayList<String> elementList = new ArrayList<String>();
+    StringTokenizer tokenizer = new StringTokenizer(list, ", \t");
+    while (tokenizer.hasMoreTokens())
+    {
+      elementList.add(tokenizer.nextToken());
+    }
+
+    String[] elements = new String[elementList.size()];
+    elementList.toArray(elements);
+    return elements;
+  }
+
+
+
+  /**
+   * This class holds information about an MBean whose attributes should be
+   * captured.
+   */
+  private static final class MonitoredMBean
+  {
+    // The label used to identify the MBean in the configuration and in the
+    // stat tracker names.
+    private final String label;
+
+    // The object name of the MBean.
+    private final ObjectName objectName;
+
+    // The attributes to capture.
+    private final List<MonitoredAttribute> attributes;
+
+    // The distinct names of the attributes to request from the server.
+    private String[] attributeNames;
+
+
+
+    /**
+     * Creates a new monitored MBean with the provided information.
+     *
+     * @param  label       The label used to identify the MBean.
+     * @param  objectName  The object name of the MBean.
+     */
+    private MonitoredMBean(String label, ObjectName objectName)
+    {
+      this.label      = label;
+      this.objectName = objectName;
+
+      attributes = new ArrayList<MonitoredAttribute>();
+    }
+
+
+
+    /**
+     * Adds an attribute to capture for this MBean.
+     *
+     * @param  name    The name of the attribute, optionally followed by a
+     *                 period and the name of an item within composite data.
+     * @param  isRate  Indicates whether the attribute is a counter that should
+     *                 be reported as a rate.
+     */
+    private void addAttribute(String name, boolean isRate)
+    {
+      attributes.add(new MonitoredAttribute(name, isRate));
+    }
+
+
+
+    /**
+     * Determines the set of attribute names to request from the server once
+     * all of the attributes have been added.
+     */
+    private void finishAttributes()
+    {
+      TreeSet<String> nameSet = new TreeSet<String>();
+      for (MonitoredAttribute attr : attributes)
+      {
+        nameSet.add(attr.attributeName);
+      }
+
+      attributeNames = new String[nameSet.size()];
+      nameSet.toArray(attributeNames);
+    }
+  }
+
+
+
+  /**
+   * This class holds information about an MBean attribute to be captured.
+   */
+  private static final class MonitoredAttribute
+  {
+    // Indicates whether the attribute is a counter that should be reported as
+    // a rate.
+    private final boolean isRate;
+
+    // The name of the attribute.
+    private final String attributeName;
+
+    // The name used for the attribute in the stat tracker name.
+    private final String displayName;
+
+    // The name of the item within composite data to use, if any.
+    private final String itemName;
+
+    // Indicates whether a message has been logged about a non-numeric value.
+    private boolean loggedNonNumeric;
+
+    // The value of the attribute in the previous sample, for rates.
+    private double previousValue;
+
+    // The stat tracker used for this attribute.
+    private FloatValueTracker tracker;
+
+
+
+    /**
+     * Creates a new monitored attribute with the provided information.
+     *
+     * @param  name    The name of the attribute, optionally followed by a
+     *                 period and the name of an item within composite data.
+     * @param  isRate  Indicates whether the attribute is a counter that should
+     *                 be reported as a rate.
+     */
+    private MonitoredAttribute(String name, boolean isRate)
+    {
+      this.isRate = isRate;
+
+      int periodPos = name.indexOf('.');
+      if (periodPos > 0)
+      {
+        attributeName = name.substring(0, periodPos);
+        itemName      = name.substring(periodPos+1);
+      }
+      else
+      {
+        attributeName = name;
+        itemName      = null;
+      }
+
+      displayName      = isRate ? (name + " per Second") : name;
+      loggedNonNumeric = false;
+      previousValue    = Double.NaN;
+    }
+  }
+}
+
@@ -0,0 +1,2084 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.resourcemonitor;
+
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+
+import com.slamd.common.Constants;
+import com.slamd.common.SLAMDException;
+import com.slamd.job.JobClass;
+import com.slamd.stat.FloatValueTracker;
+import com.slamd.stat.RealTimeStatReporter;
+import com.slamd.stat.StackedValueTracker;
+import com.slamd.stat.StatTracker;
+
+
+
+/**
+ * This class defines a SLAMD resource monitor that captures CPU, memory, disk,
+ * network, pressure stall, and process information on Linux systems by reading
+ * the files in the /proc filesystem directly, rather than by running vmstat,
+ * iostat, mpstat, or ps and parsing their output.  Each file is opened once
+ * and re-read into a reusable buffer for every sample, so samples may be taken
+ * much more often than once per second without noticeably loading the client.
+ * All of the samples taken within a collection interval are averaged together
+ * by the stat trackers.
+ * <BR><BR>
+ * In addition to the system-wide CPU utilization, this monitor can report the
+ * utilization of each individual CPU, and it reports disk and network activity
+ * separately for each device.
+ */
+public class ProcFSResourceMonitor
+       extends ResourceMonitor
+{
+  /**
+   * The display name of the stat tracker that will be used to report CPU
+   * utilization, combining user, system, I/O wait, and idle times.
+   */
+  public static final String STAT_TRACKER_CPU_UTILIZATION = "CPU Utilization";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the CPU
+   * busy time.
+   */
+  public static final String STAT_TRACKER_CPU_BUSY = "CPU Busy Time";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the busy
+   * time for an individual CPU.  This will be preceded by the CPU number.
+   */
+  public static final String STAT_TRACKER_PER_CPU_BUSY = "Busy Time";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the
+   * number of context switches per second.
+   */
+  public static final String STAT_TRACKER_CONTEXT_SWITCHES =
+       "Context Switches per Second";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the amount
+   * of memory available for use without swapping.
+   */
+  public static final String STAT_TRACKER_AVAILABLE_MEMORY =
+       "Available Memory (MB)";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the amount
+   * of swap space in use.
+   */
+  public static final String STAT_TRACKER_SWAP_USED = "Swap Used (MB)";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the rate
+   * at which data is read from a disk.
+   */
+  public static final String STAT_TRACKER_KB_READ = "Kilobytes Read/Second";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the rate
+   * at which data is written to a disk.
+   */
+  public static final String STAT_TRACKER_KB_WRITTEN =
+       "Kilobytes Written/Second";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the
+   * percentage of time that a disk was busy.
+   */
+  public static final String STAT_TRACKER_PCT_BUSY = "Percent Busy";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the rate
+   * at which data is received on a network interface.
+   */
+  public static final String STAT_TRACKER_KB_RECEIVED =
+       "Kilobytes Received/Second";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the rate
+   * at which data is transmitted on a network interface.
+   */
+  public static final String STAT_TRACKER_KB_TRANSMITTED =
+       "Kilobytes Transmitted/Second";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the
+   * percentage of time that at least one task was stalled waiting for a
+   * resource.  This will be preceded by the name of the resource.
+   */
+  public static final String STAT_TRACKER_PRESSURE_STALL =
+       "Pressure Stall Percent";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the CPU
+   * utilization of the monitored process.
+   */
+  public static final String STAT_TRACKER_PROCESS_CPU =
+       "Process CPU Utilization";
+
+
+
+  /**
+   * The display name of the stat tracker that will be used to report the
+   * resident set size of the monitored process.
+   */
+  public static final String STAT_TRACKER_PROCESS_RSS =
+       "Process Resident Size (MB)";
+
+
+
+  /**
+   * The category name that will be used for reporting user time.
+   */
+  public static final String UTILIZATION_CATEGORY_USER = "User Time";
+
+
+
+  /**
+   * The category name that will be used for reporting system time.
+   */
+  public static final String UTILIZATION_CATEGORY_SYSTEM = "System Time";
+
+
+
+  /**
+   * The category name that will be used for reporting I/O wait time.
+   */
+  public static final String UTILIZATION_CATEGORY_IO_WAIT = "I/O Wait Time";
+
+
+
+  /**
+   * The category name that will be used for reporting idle time.
+   */
+  public static final String UTILIZATION_CATEGORY_IDLE = "Idle Time";
+
+
+
+  /**
+   * The names of the categories into which CPU utilization will be divided.
+   */
+  public static final String[] CPU_UTILIZATION_CATEGORIES =
+  {
+    UTILIZATION_CATEGORY_USER,
+    UTILIZATION_CATEGORY_SYSTEM,
+    UTILIZATION_CATEGORY_IO_WAIT,
+    UTILIZATION_CATEGORY_IDLE
+  };
+
+
+
+  /**
+   * The names of the resources for which pressure stall information may be
+   * available.
+   */
+  public static final String[] PRESSURE_RESOURCES =
+  {
+    "CPU",
+    "Memory",
+    "I/O"
+  };
+
+
+
+  /**
+   * The name of the configuration property that specifies the length of time
+   * in milliseconds between samples.
+   */
+  public static final String PROPERTY_SAMPLE_INTERVAL_MILLIS =
+       "sample_interval_millis";
+
+
+
+  /**
+   * The default sample interval that will be used.
+   */
+  public static final int DEFAULT_SAMPLE_INTERVAL_MILLIS = 250;
+
+
+
+  /**
+   * The name of the configuration property that indicates whether to capture
+   * system-wide CPU utilization.
+   */
+  public static final String PROPERTY_CAPTURE_CPU_UTILIZATION =
+       "capture_cpu_utilization";
+
+
+
+  /**
+   * The default value that will be used for the capture CPU utilization
+   * property.
+   */
+  public static final boolean DEFAULT_CAPTURE_CPU_UTILIZATION = true;
+
+
+
+  /**
+   * The name of the configuration property that indicates whether to capture
+   * the busy time for each individual CPU.
+   */
+  public static final String PROPERTY_CAPTURE_PER_CPU_UTILIZATION =
+       "capture_per_cpu_utilization";
+
+
+
+  /**
+   * The default value that will be used for the capture per-CPU utilization
+   * property.
+   */
+  public static final boolean DEFAULT_CAPTURE_PER_CPU_UTILIZATION = false;
+
+
+
+  /**
+   * The name of the configuration property that indicates whether to capture
+   * the context switch rate.
+   */
+  public static final String PROPERTY_CAPTURE_CONTEXT_SWITCHES =
+       "capture_context_switches";
+
+
+
+  /**
+   * The default value that will be used for the capture context switches
+   * property.
+   */
+  public static final boolean DEFAULT_CAPTURE_CONTEXT_SWITCHES = false;
+
+
+
+  /**
+   * The name of the configuration property that indicates whether to capture
+   * available memory and swap usage.
+   */
+  public static final String PROPERTY_CAPTURE_MEMORY = "capture_memory";
+
+
+
+  /**
+   * The default value that will be used for the capture memory property.
+   */
+  public static final boolean DEFAULT_CAPTURE_MEMORY = true;
+
+
+
+  /**
+   * The name of the configuration property that indicates whether to capture
+   * disk activity.
+   */
+  public static final String PROPERTY_CAPTURE_DISK_IO = "capture_disk_io";
+
+
+
+  /**
+   * The default value that will be used for the capture disk I/O property.
+   */
+  public static final boolean DEFAULT_CAPTURE_DISK_IO = true;
+
+
+
+  /**
+   * The name of the configuration property that specifies a comma-delimited
+   * list of the disks to monitor.  If this is not provided, then all disks
+   * other than loopback and RAM disks will be monitored.
+   */
+  public static final String PROPERTY_DISK_DEVICES = "disk_devices";
+
+
+
+  /**
+   * The name of the configuration property that indicates whether to capture
+   * network activity.
+   */
+  public static final String PROPERTY_CAPTURE_NETWORK_IO =
+       "capture_network_io";
+
+
+
+  /**
+   * The default value that will be used for the capture network I/O property.
+   */
+  public static final boolean DEFAULT_CAPTURE_NETWORK_IO = true;
+
+
+
+  /**
+   * The name of the configuration property that specifies a comma-delimited
+   * list of the network interfaces to monitor.  If this is not provided, then
+   * all interfaces other than the loopback interface will be monitored.
+   */
+  public static final String PROPERTY_NETWORK_INTERFACES =
+       "network_interfaces";
+
+
+
+  /**
+   * The name of the configuration property that indicates whether to capture
+   * pressure stall information on kernels that provide it.
+   */
+  public static final String PROPERTY_CAPTURE_PRESSURE_STALL =
+       "capture_pressure_stall";
+
+
+
+  /**
+   * The default value that will be used for the capture pressure stall
+   * property.
+   */
+  public static final boolean DEFAULT_CAPTURE_PRESSURE_STALL = true;
+
+
+
+  /**
+   * The name of the configuration property that specifies the process ID of a
+   * process for which to capture CPU utilization and resident size.
+   */
+  public static final String PROPERTY_PROCESS_ID = "process_id";
+
+
+
+  /**
+   * The default process ID that will be used, which indicates that no process
+   * should be monitored.
+   */
+  public static final int DEFAULT_PROCESS_ID = -1;
+
+
+
+  /**
+   * The name of the configuration property that specifies the path to a file
+   * containing the process ID of a process for which to capture CPU
+   * utilization and resident size.
+   */
+  public static final String PROPERTY_PROCESS_ID_FILE = "process_id_file";
+
+
+
+  /**
+   * The name of the configuration property that specifies the number of clock
+   * ticks per second used for CPU times in /proc/[pid]/stat.
+   */
+  public static final String PROPERTY_CLOCK_TICKS_PER_SECOND =
+       "clock_ticks_per_second";
+
+
+
+  /**
+   * The default number of clock ticks per second, which is the value used by
+   * Linux on all common architectures.
+   */
+  public static final int DEFAULT_CLOCK_TICKS_PER_SECOND = 100;
+
+
+
+  /**
+   * The name of the configuration property that specifies the size in bytes of
+   * a memory page, which is used to interpret the resident set size of the
+   * monitored process.
+   */
+  public static final String PROPERTY_PAGE_SIZE = "page_size";
+
+
+
+  /**
+   * The default memory page size.
+   */
+  public static final int DEFAULT_PAGE_SIZE = 4096;
+
+
+
+  // The tokens used when parsing /proc/stat.
+  private static final byte[] TOKEN_CPU  = { 'c', 'p', 'u' };
+  private static final byte[] TOKEN_CTXT = { 'c', 't', 'x', 't' };
+
+  // The tokens used when parsing /proc/meminfo.
+  private static final byte[] TOKEN_MEM_AVAILABLE = toBytes("MemAvailable:");
+  private static final byte[] TOKEN_MEM_FREE      = toBytes("MemFree:");
+  private static final byte[] TOKEN_BUFFERS       = toBytes("Buffers:");
+  private static final byte[] TOKEN_CACHED        = toBytes("Cached:");
+  private static final byte[] TOKEN_SWAP_TOTAL    = toBytes("SwapTotal:");
+  private static final byte[] TOKEN_SWAP_FREE     = toBytes("SwapFree:");
+
+  // The tokens used when parsing the pressure stall files.
+  private static final byte[] TOKEN_SOME  = toBytes("some");
+  private static final byte[] TOKEN_TOTAL = toBytes("total=");
+
+  // The pressure stall files, in the same order as PRESSURE_RESOURCES.
+  private static final String[] PRESSURE_FILES =
+  {
+    "/proc/pressure/cpu",
+    "/proc/pressure/memory",
+    "/proc/pressure/io"
+  };
+
+
+
+  // The configuration for this resource monitor.
+  private boolean captureContextSwitches;
+  private boolean captureCPUUtilization;
+  private boolean captureDiskIO;
+  private boolean captureMemory;
+  private boolean captureNetworkIO;
+  private boolean capturePerCPUUtilization;
+  private boolean capturePressureStall;
+  private int     clockTicksPerSecond;
+  private int     pageSize;
+  private int     processID;
+  private int     sampleIntervalMillis;
+  private String  processIDFile;
+
+  // The names of the disks, CPUs, and network interfaces being monitored, and
+  // the encoded forms of the disk and interface names that are compared
+  // against the contents of the /proc files.
+  private byte[][] diskNameBytes;
+  private byte[][] interfaceNameBytes;
+  private int      numCPUs;
+  private String[] diskNames;
+  private String[] interfaceNames;
+
+  // Flags that indicate which pressure stall files are available.
+  private boolean[] pressureAvailable;
+
+  // The stat trackers that will be used by this resource monitor.
+  private FloatValueTracker   availableMemory;
+  private FloatValueTracker   contextSwitches;
+  private FloatValueTracker   cpuBusyTime;
+  private FloatValueTracker   processCPU;
+  private FloatValueTracker   processRSS;
+  private FloatValueTracker   swapUsed;
+  private FloatValueTracker[] diskBusy;
+  private FloatValueTracker[] diskKBRead;
+  private FloatValueTracker[] diskKBWritten;
+  private FloatValueTracker[] networkKBReceived;
+  private FloatValueTracker[] networkKBTransmitted;
+  private FloatValueTracker[] perCPUBusyTime;
+  private FloatValueTracker[] pressureStall;
+  private StackedValueTracker cpuUtilization;
+
+  // The counters read from the /proc files in the current and previous
+  // samples.  The first row of the CPU counters holds the system-wide values.
+  private long     contextSwitchCount;
+  private long     previousContextSwitchCount;
+  private long     previousProcessTicks;
+  private long     processTicks;
+  private long[]   diskCounters;
+  private long[]   interfaceCounters;
+  private long[]   pressureTotals;
+  private long[]   previousDiskCounters;
+  private long[]   previousInterfaceCounters;
+  private long[]   previousPressureTotals;
+  private long[][] cpuCounters;
+  private long[][] previousCPUCounters;
+
+  // The most recent memory values, in kilobytes, and the most recent resident
+  // set size of the monitored process, in pages.
+  private long memAvailable;
+  private long processRSSPages;
+  private long swapUsedKB;
+
+
+
+  /**
+   * Performs any initialization specific to this resource monitor.
+   *
+   * @throws  SLAMDException  If a problem occurs while performing the
+   *                          initialization.
+   */
+  @Override()
+  public void initializeMonitor()
+         throws SLAMDException
+  {
+    sampleIntervalMillis = getProperty(PROPERTY_SAMPLE_INTERVAL_MILLIS,
+                                       DEFAULT_SAMPLE_INTERVAL_MILLIS);
+    captureCPUUtilization = getProperty(PROPERTY_CAPTURE_CPU_UTILIZATION,
+                                        DEFAULT_CAPTURE_CPU_UTILIZATION);
+    capturePerCPUUtilization =
+         getProperty(PROPERTY_CAPTURE_PER_CPU_UTILIZATION,
+                     DEFAULT_CAPTURE_PER_CPU_UTILIZATION);
+    captureContextSwitches = getProperty(PROPERTY_CAPTURE_CONTEXT_SWITCHES,
+                                         DEFAULT_CAPTURE_CONTEXT_SWITCHES);
+    captureMemory = getProperty(PROPERTY_CAPTURE_MEMORY,
+                                DEFAULT_CAPTURE_MEMORY);
+    captureDiskIO = getProperty(PROPERTY_CAPTURE_DISK_IO,
+                                DEFAULT_CAPTURE_DISK_IO);
+    captureNetworkIO = getProperty(PROPERTY_CAPTURE_NETWORK_IO,
+                                   DEFAULT_CAPTURE_NETWORK_IO);
+    capturePressureStall = getProperty(PROPERTY_CAPTURE_PRESSURE_STALL,
+                                       DEFAULT_CAPTURE_PRESSURE_STALL);
+    processID = getProperty(PROPERTY_PROCESS_ID, DEFAULT_PROCESS_ID);
+    processIDFile = getProperty(PROPERTY_PROCESS_ID_FILE, null);
+    clockTicksPerSecond = getProperty(PROPERTY_CLOCK_TICKS_PER_SECOND,
+                                      DEFAULT_CLOCK_TICKS_PER_SECOND);
+    pageSize = getProperty(PROPERTY_PAGE_SIZE, DEFAULT_PAGE_SIZE);
+
+    if ((processIDFile != null) && (processIDFile.length() == 0))
+    {
+      processIDFile = null;
+    }
+
+    numCPUs           = 0;
+    diskNames         = new String[0];
+    interfaceNames    = new String[0];
+    pressureAvailable = new boolean[PRESSURE_FILES.length];
+
+    if (sampleIntervalMillis <= 0)
+    {
+      throw new SLAMDException("The " + PROPERTY_SAMPLE_INTERVAL_MILLIS +
+                               " property must have a positive value.");
+    }
+
+    if (clockTicksPerSecond <= 0)
+    {
+      throw new SLAMDException("The " + PROPERTY_CLOCK_TICKS_PER_SECOND +
+                               " property must have a positive value.");
+    }
+
+    if (! clientSupported())
+    {
+      return;
+    }
+
+
+    // Determine which CPUs, disks, and network interfaces are present.  These
+    // are needed to create the stat trackers before any data is collected.
+    try
+    {
+      numCPUs = countCPUs();
+
+      if (captureDiskIO)
+      {
+        diskNames = splitList(getProperty(PROPERTY_DISK_DEVICES, ""));
+        if (diskNames.length == 0)
+        {
+          diskNames = findDisks();
+        }
+      }
+
+      if (captureNetworkIO)
+      {
+        interfaceNames =
+             splitList(getProperty(PROPERTY_NETWORK_INTERFACES, ""));
+        if (interfaceNames.length == 0)
+        {
+          interfaceNames = findInterfaces();
+        }
+      }
+    }
+    catch (IOException ioe)
+    {
+      throw new SLAMDException("Unable to read the /proc filesystem:  " + ioe,
+                               ioe);
+    }
+
+    diskNameBytes = new byte[diskNames.length][];
+    for (int i=0; i < diskNames.length; i++)
+    {
+      diskNameBytes[i] = toBytes(diskNames[i]);
+    }
+
+    interfaceNameBytes = new byte[interfaceNames.length][];
+    for (int i=0; i < interfaceNames.length; i++)
+    {
+      interfaceNameBytes[i] = toBytes(interfaceNames[i] + ':');
+    }
+
+    for (int i=0; i < PRESSURE_FILES.length; i++)
+    {
+      pressureAvailable[i] = capturePressureStall &&
+                             new File(PRESSURE_FILES[i]).canRead();
+    }
+  }
+
+
+
+  /**
+   * Indicates whether the current client system is supported for this resource
+   * monitor.
+   *
+   * @return  {@code true} if the current client system is supported for
+   *          this resource monitor, or {@code false} if not.
+   */
+  @Override()
+  public boolean clientSupported()
+  {
+    return ((getClientOS() == OS_TYPE_LINUX) &&
+            new File("/proc/stat").canRead());
+  }
+
+
+
+  /**
+   * Creates a new instance of this resource monitor thread.  Note that the
+   * <CODE>initialize()</CODE> method should have been called on the new
+   * instance before it is returned.
+   *
+   * @return  A new instance of this resource monitor thread.
+   *
+   * @throws  SLAMDException  If a problem occurs while creating or initializing
+   *                          the resource monitor.
+   */
+  @Override()
+  public ResourceMonitor newInstance()
+         throws SLAMDException
+  {
+    ProcFSResourceMonitor monitor = new ProcFSResourceMonitor();
+    monitor.initialize(getMonitorClient(), getMonitorProperties());
+
+    return monitor;
+  }
+
+
+
+  /**
+   * Initializes the stat trackers maintained by this resource monitor.
+   *
+   * @param  clientID            The client ID to use for the stubs.
+   * @param  threadID            The thread ID to use for the stubs.
+   * @param  collectionInterval  The collection interval to use for the stubs.
+   */
+  @Override()
+  public void initializeStatistics(String clientID, String threadID,
+                                   int collectionInterval)
+  {
+    String prefix = clientID + ' ';
+
+    cpuUtilization = new StackedValueTracker(clientID, threadID,
+                                             prefix +
+                                             STAT_TRACKER_CPU_UTILIZATION,
+                                             collectionInterval,
+                                             CPU_UTILIZATION_CATEGORIES);
+    cpuUtilization.setDrawAsStackedGraph(true);
+    cpuUtilization.setIncludeLegend(true);
+    cpuBusyTime = new FloatValueTracker(clientID, threadID,
+                                        prefix + STAT_TRACKER_CPU_BUSY,
+                                        collectionInterval);
+
+    perCPUBusyTime = new FloatValueTracker[numCPUs];
+    for (int i=0; i < numCPUs; i++)
+    {
+      perCPUBusyTime[i] = new FloatValueTracker(clientID, threadID,
+                                                prefix + "CPU " + i + ' ' +
+                                                STAT_TRACKER_PER_CPU_BUSY,
+                                                collectionInterval);
+    }
+
+    contextSwitches = new FloatValueTracker(clientID, threadID,
+                                            prefix +
+                                            STAT_TRACKER_CONTEXT_SWITCHES,
+                                            collectionInterval);
+    availableMemory = new FloatValueTracker(clientID, threadID,
+                                            prefix +
+                                            STAT_TRACKER_AVAILABLE_MEMORY,
+                                            collectionInterval);
+    swapUsed = new FloatValueTracker(clientID, threadID,
+                                     prefix + STAT_TRACKER_SWAP_USED,
+                                     collectionInterval);
+
+    diskKBRead    = new FloatValueTracker[diskNames.length];
+    diskKBWritten = new FloatValueTracker[diskNames.length];
+    diskBusy      = new FloatValueTracker[diskNames.length];
+    for (int i=0; i < diskNames.length; i++)
+    {
+      String diskPrefix = prefix + diskNames[i] + ' ';
+      diskKBRead[i] = new FloatValueTracker(clientID, threadID,
+                                            diskPrefix + STAT_TRACKER_KB_READ,
+                                            collectionInterval);
+      diskKBWritten[i] = new FloatValueTracker(clientID, threadID,
+                                               diskPrefix +
+                                               STAT_TRACKER_KB_WRITTEN,
+                                               collectionInterval);
+      diskBusy[i] = new FloatValueTracker(clientID, threadID,
+                                          diskPrefix + STAT_TRACKER_PCT_BUSY,
+                                          collectionInterval);
+    }
+
+    networkKBReceived    = new FloatValueTracker[interfaceNames.length];
+    networkKBTransmitted = new FloatValueTracker[interfaceNames.length];
+    for (int i=0; i < interfaceNames.length; i++)
+    {
+      String interfacePrefix = prefix + interfaceNames[i] + ' ';
+      networkKBReceived[i] = new FloatValueTracker(clientID, threadID,
+                                                   interfacePrefix +
+                                                   STAT_TRACKER_KB_RECEIVED,
+                                                   collectionInterval);
+      networkKBTransmitted[i] = new FloatValueTracker(clientID, threadID,
+                                     interfacePrefix +
+                                     STAT_TRACKER_KB_TRANSMITTED,
+                                     collectionInterval);
+    }
+
+    pressureStall = new FloatValueTracker[PRESSURE_RESOURCES.length];
+    for (int i=0; i < PRESSURE_RESOURCES.length; i++)
+    {
+      pressureStall[i] = new FloatValueTracker(clientID, threadID,
+                                               prefix + PRESSURE_RESOURCES[i] +
+                                               ' ' +
+                                               STAT_TRACKER_PRESSURE_STALL,
+                                               collectionInterval);
+    }
+
+    processCPU = new FloatValueTracker(clientID, threadID,
+                                       prefix + STAT_TRACKER_PROCESS_CPU,
+                                       collectionInterval);
+    processRSS = new FloatValueTracker(clientID, threadID,
+                                       prefix + STAT_TRACKER_PROCESS_RSS,
+                                       collectionInterval);
+  }
+
+
+
+  /**
+   * Retrieves the name to use for this resource monitor.
+   *
+   * @return  The name to use for this resource monitor.
+   */
+  @Override()
+  public String getMonitorName()
+  {
+    return "ProcFS";
+  }
+
+
+
+  /**
+   * Retrieves the statistical data collected by this resource monitor.
+   *
+   * @return  The statistical data collected by this resource monitor.
+   */
+  @Override()
+  public StatTracker[] getResourceStatistics()
+  {
+    ArrayList<StatTracker> statList = getActiveTrackers();
+    StatTracker[] returnTrackers = new StatTracker[statList.size()];
+    statList.toArray(returnTrackers);
+    return returnTrackers;
+  }
+
+
+
+  /**
+   * Retrieves the set of stat trackers for the information that this monitor
+   * has been configured to capture.
+   *
+   * @return  The set of stat trackers for the information that this monitor
+   *          has been configured to capture.
+   */
+  private ArrayList<StatTracker> getActiveTrackers()
+  {
+    ArrayList<StatTracker> statList = new ArrayList<StatTracker>();
+
+    if (captureCPUUtilization)
+    {
+      statList.add(cpuUtilization);
+      statList.add(cpuBusyTime);
+    }
+
+    if (capturePerCPUUtilization)
+    {
+      statList.addAll(Arrays.asList(perCPUBusyTime));
+    }
+
+    if (captureContextSwitches)
+    {
+      statList.add(contextSwitches);
+    }
+
+    if (captureMemory)
+    {
+      statList.add(availableMemory);
+      statList.add(swapUsed);
+    }
+
+    for (int i=0; i < diskNames.length; i++)
+    {
+      statList.add(diskKBRead[i]);
+      statList.add(diskKBWritten[i]);
+      statList.add(diskBusy[i]);
+    }
+
+    for (int i=0; i < interfaceNames.length; i++)
+    {
+      statList.add(networkKBReceived[i]);
+      statList.add(networkKBTransmitted[i]);
+    }
+
+    for (int i=0; i < pressureAvailable.length; i++)
+    {
+      if (pressureAvailable[i])
+      {
+        statList.add(pressureStall[i]);
+      }
+    }
+
+    if ((processID > 0) || (processIDFile != null))
+    {
+      statList.add(processCPU);
+      statList.add(processRSS);
+    }
+
+    return statList;
+  }
+
+
+
+  /**
+   * Performs the work of actually collecting resource statistics.  This method
+   * should periodically call the <CODE>shouldStop()</CODE> method to determine
+   * whether to stop collecting statistics.
+   *
+   * @return  A value that indicates the status of the monitor when it
+   *          completed.
+   */
+  @Override()
+  public int runMonitor()
+  {
+    // Open all of the files that will be read.  They will be kept open for the
+    // life of the monitor and re-read for each sample.
+    ProcFile   statFile      = null;
+    ProcFile   memInfoFile   = null;
+    ProcFile   diskStatsFile = null;
+    ProcFile   netDevFile    = null;
+    ProcFile   processFile   = null;
+    ProcFile[] pressureFiles = new ProcFile[PRESSURE_FILES.length];
+
+    int stopReason = Constants.JOB_STATE_COMPLETED_SUCCESSFULLY;
+    ArrayList<StatTracker> trackers = getActiveTrackers();
+    try
+    {
+      if (captureCPUUtilization || capturePerCPUUtilization ||
+          captureContextSwitches)
+      {
+        statFile = new ProcFile("/proc/stat");
+      }
+
+      if (captureMemory)
+      {
+        memInfoFile = new ProcFile("/proc/meminfo");
+      }
+
+      if (diskNames.length > 0)
+      {
+        diskStatsFile = new ProcFile("/proc/diskstats");
+      }
+
+      if (interfaceNames.length > 0)
+      {
+        netDevFile = new ProcFile("/proc/net/dev");
+      }
+
+      for (int i=0; i < PRESSURE_FILES.length; i++)
+      {
+        if (pressureAvailable[i])
+        {
+          pressureFiles[i] = new ProcFile(PRESSURE_FILES[i]);
+        }
+      }
+
+      if (processIDFile != null)
+      {
+        processID = getPIDFromFile();
+      }
+
+      if (processID > 0)
+      {
+        processFile = new ProcFile("/proc/" + processID + "/stat");
+      }
+      else if (processIDFile != null)
+      {
+        logMessage("Unable to read a process ID from file \"" +
+                   processIDFile + '"');
+        stopReason = Constants.JOB_STATE_COMPLETED_WITH_ERRORS;
+      }
+    }
+    catch (IOException ioe)
+    {
+      logMessage("Unable to open a file in the /proc filesystem:  " +
+                 JobClass.stackTraceToString(ioe));
+      closeAll(statFile, memInfoFile, diskStatsFile, netDevFile, processFile,
+               pressureFiles);
+      return Constants.JOB_STATE_STOPPED_DUE_TO_ERROR;
+    }
+
+    cpuCounters               = new long[numCPUs+1][8];
+    previousCPUCounters       = new long[numCPUs+1][8];
+    diskCounters              = new long[diskNames.length * 3];
+    previousDiskCounters      = new long[diskNames.length * 3];
+    interfaceCounters         = new long[interfaceNames.length * 2];
+    previousInterfaceCounters = new long[interfaceNames.length * 2];
+    pressureTotals            = new long[PRESSURE_FILES.length];
+    previousPressureTotals    = new long[PRESSURE_FILES.length];
+
+
+    // Start all of the stat trackers, enabling real-time reporting for them if
+    // appropriate.  The trackers will average all of the samples taken within
+    // each collection interval.
+    ResourceMonitorJob monitorJob = getMonitorJob();
+    for (StatTracker tracker : trackers)
+    {
+      tracker.startTracker();
+      if ((monitorJob != null) && monitorJob.enableRealTimeStats())
+      {
+        RealTimeStatReporter statReporter = monitorJob.getStatReporter();
+        tracker.enableRealTimeStats(statReporter, monitorJob.getJobID());
+      }
+    }
+
+
+    // Take the samples.  The first sample only establishes the baseline
+    // against which the counters in the next sample will be compared.
+    boolean firstSample  = true;
+    long    lastSampleTime = System.nanoTime();
+    long    nextSampleTime = System.currentTimeMillis();
+    while (! shouldStop())
+    {
+      long now = System.currentTimeMillis();
+      if (now < nextSampleTime)
+      {
+        try
+        {
+          Thread.sleep(Math.min(nextSampleTime - now, 100L));
+        } catch (InterruptedException ie) {}
+        continue;
+      }
+      nextSampleTime += sampleIntervalMillis;
+      if (nextSampleTime <= now)
+      {
+        nextSampleTime = now + sampleIntervalMillis;
+      }
+
+      long   sampleTime     = System.nanoTime();
+      double elapsedSeconds = (sampleTime - lastSampleTime) / 1.0e9;
+      lastSampleTime = sampleTime;
+
+      try
+      {
+        if (statFile != null)
+        {
+          readStat(statFile);
+          if (! firstSample)
+          {
+            reportCPU(elapsedSeconds);
+          }
+        }
+
+        if (memInfoFile != null)
+        {
+          readMemInfo(memInfoFile);
+          availableMemory.addValue(memAvailable / 1024.0);
+          swapUsed.addValue(swapUsedKB / 1024.0);
+        }
+
+        if (diskStatsFile != null)
+        {
+          readDiskStats(diskStatsFile);
+          if (! firstSample)
+          {
+            reportDisks(elapsedSeconds);
+          }
+        }
+
+        if (netDevFile != null)
+        {
+          readNetDev(netDevFile);
+          if (! firstSample)
+          {
+            reportInterfaces(elapsedSeconds);
+          }
+        }
+
+        for (int i=0; i < pressureFiles.length; i++)
+        {
+          if (pressureFiles[i] != null)
+          {
+            pressureTotals[i] = readPressureTotal(pressureFiles[i]);
+            if (! firstSample)
+            {
+              // The totals are in microseconds.
+              pressureStall[i].addValue(
+                   (pressureTotals[i] - previousPressureTotals[i]) /
+                   (elapsedSeconds * 10000.0));
+            }
+          }
+        }
+      }
+      catch (Exception e)
+      {
+        logMessage("Error while reading the /proc filesystem -- " +
+                   JobClass.stackTraceToString(e));
+        stopReason = Constants.JOB_STATE_STOPPED_DUE_TO_ERROR;
+        break;
+      }
+
+      if (processFile != null)
+      {
+        try
+        {
+          readProcessStat(processFile);
+          if (! firstSample)
+          {
+            processCPU.addValue(100.0 *
+                 (processTicks - previousProcessTicks) /
+                 (elapsedSeconds * clockTicksPerSecond));
+          }
+          processRSS.addValue(1.0 * processRSSPages * pageSize /
+                              (1024.0 * 1024.0));
+          previousProcessTicks = processTicks;
+        }
+        catch (IOException ioe)
+        {
+          // This will happen if the process has exited.  Keep capturing the
+          // other statistics.
+          logMessage("Unable to read information about process " + processID +
+                     ":  " + ioe);
+          processFile.close();
+          processFile = null;
+          stopReason  = Constants.JOB_STATE_COMPLETED_WITH_ERRORS;
+        }
+      }
+
+      swapCounters();
+      firstSample = false;
+    }
+
+    closeAll(statFile, memInfoFile, diskStatsFile, netDevFile, processFile,
+             pressureFiles);
+
+    for (StatTracker tracker : trackers)
+    {
+      tracker.stopTracker();
+    }
+
+    return stopReason;
+  }
+
+
+
+  /**
+   * Reads the CPU counters and the context switch count from /proc/stat.
+   *
+   * @param  statFile  The file to read.
+   *
+   * @throws  IOException  If a problem occurs while reading the file.
+   */
+  private void readStat(ProcFile statFile)
+          throws IOException
+  {
+    statFile.read();
+    do
+    {
+      long[] counters = null;
+      if (statFile.nextTokenEquals(TOKEN_CPU))
+      {
+        counters = cpuCounters[0];
+      }
+      else if (statFile.startsWith(TOKEN_CPU))
+      {
+        statFile.skip(TOKEN_CPU.length);
+        int cpuNumber = (int) statFile.nextLong();
+        if ((cpuNumber >= 0) && (cpuNumber < numCPUs))
+        {
+          counters = cpuCounters[cpuNumber+1];
+        }
+      }
+      else if (statFile.nextTokenEquals(TOKEN_CTXT))
+      {
+        contextSwitchCount = statFile.nextLong();
+      }
+
+      if (counters != null)
+      {
+        for (int i=0; i < counters.length; i++)
+        {
+          counters[i] = statFile.nextLong();
+        }
+      }
+    } while (statFile.nextLine());
+  }
+
+
+
+  /**
+   * Adds samples for the CPU utilization and context switch rate to the
+   * appropriate stat trackers.
+   *
+   * @param  elapsedSeconds  The length of time in seconds since the previous
+   *                         sample.
+   */
+  private void reportCPU(double elapsedSeconds)
+  {
+    if (captureCPUUtilization)
+    {
+      double[] values = getCPUPercentages(cpuCounters[0],
+                                          previousCPUCounters[0]);
+      if (values != null)
+      {
+        cpuUtilization.addData(values);
+        cpuBusyTime.addValue(values[0] + values[1]);
+      }
+    }
+
+    if (capturePerCPUUtilization)
+    {
+      for (int i=0; i < numCPUs; i++)
+      {
+        double[] values = getCPUPercentages(cpuCounters[i+1],
+                                            previousCPUCounters[i+1]);
+        if (values != null)
+        {
+          perCPUBusyTime[i].addValue(values[0] + values[1]);
+        }
+      }
+    }
+
+    if (captureContextSwitches)
+    {
+      contextSwitches.addValue((contextSwitchCount -
+                                previousContextSwitchCount) / elapsedSeconds);
+    }
+  }
+
+
+
+  /**
+   * Computes the percentage of time spent in user, system, I/O wait, and idle
+   * states from two sets of CPU counters.  Nice time is included in the user
+   * time, and interrupt time is included in the system time.
+   *
+   * @param  counters          The current set of counters.
+   * @param  previousCounters  The previous set of counters.
+   *
+   * @return  The user, system, I/O wait, and idle percentages, or
+   *          {@code null} if no time elapsed between the two sets of
+   *          counters.
+   */
+  private static double[] getCPUPercentages(long[] counters,
+                                            long[] previousCounters)
+  {
+    long[] deltas = new long[counters.length];
+    long   total  = 0L;
+    for (int i=0; i < counters.length; i++)
+    {
+      deltas[i] = counters[i] - previousCounters[i];
+      total    += deltas[i];
+    }
+
+    if (total <= 0L)
+    {
+      return null;
+    }
+
+    // The counters are user, nice, system, idle, iowait, irq, softirq, and
+    // steal.  Steal time is not assigned to any category.
+    double scale = 100.0 / total;
+    return new double[]
+    {
+      (deltas[0] + deltas[1]) * scale,
+      (deltas[2] + deltas[5] + deltas[6]) * scale,
+      deltas[4] * scale,
+      deltas[3] * scale
+    };
+  }
+
+
+
+  /**
+   * Reads the available memory and swap usage from /proc/meminfo.  If the
+   * kernel does not report available memory, then it will be estimated from
+   * the free, buffer, and cache memory as vmstat does.
+   *
+   * @param  memInfoFile  The file to read.
+   *
+   * @throws  IOException  If a problem occurs while reading the file.
+   */
+  private void readMemInfo(ProcFile memInfoFile)
+          throws IOException
+  {
+    long available = -1L;
+    long free      = 0L;
+    long swapTotal = 0L;
+    long swapFree  = 0L;
+
+    memInfoFile.read();
+    do
+    {
+      if (memInfoFile.nextTokenEquals(TOKEN_MEM_AVAILABLE))
+      {
+        available = memInfoFile.nextLong();
+      }
+      else if (memInfoFile.nextTokenEquals(TOKEN_MEM_FREE) ||
+               memInfoFile.nextTokenEquals(TOKEN_BUFFERS) ||
+               memInfoFile.nextTokenEquals(TOKEN_CACHED))
+      {
+        free += memInfoFile.nextLong();
+      }
+      else if (memInfoFile.nextTokenEquals(TOKEN_SWAP_TOTAL))
+      {
+        swapTotal = memInfoFile.nextLong();
+      }
+      else if (memInfoFile.nextTokenEquals(TOKEN_SWAP_FREE))
+      {
+        swapFree = memInfoFile.nextLong();
+      }
+    } while (memInfoFile.nextLine());
+
+    memAvailable = (available >= 0L) ? available : free;
+    swapUsedKB   = swapTotal - swapFree;
+  }
+
+
+
+  /**
+   * Reads the sectors read, sectors written, and time spent doing I/O for each
+   * of the monitored disks from /proc/diskstats.
+   *
+   * @param  diskStatsFile  The file to read.
+   *
+   * @throws  IOException  If a problem occurs while reading the file.
+   */
+  private void readDiskStats(ProcFile diskStatsFile)
+          throws IOException
+  {
+    diskStatsFile.read();
+    do
+    {
+      // Each line starts with the major and minor device numbers, followed by
+      // the device name.
+      diskStatsFile.skipToken();
+      diskStatsFile.skipToken();
+      int disk = diskStatsFile.nextTokenIndex(diskNameBytes);
+      if (disk < 0)
+      {
+        continue;
+      }
+
+      diskStatsFile.skipToken(); // Reads completed.
+      diskStatsFile.skipToken(); // Reads merged.
+      diskCounters[disk*3] = diskStatsFile.nextLong();
+      diskStatsFile.skipToken(); // Time spent reading.
+      diskStatsFile.skipToken(); // Writes completed.
+      diskStatsFile.skipToken(); // Writes merged.
+      diskCounters[disk*3+1] = diskStatsFile.nextLong();
+      diskStatsFile.skipToken(); // Time spent writing.
+      diskStatsFile.skipToken(); // I/Os currently in progress.
+      diskCounters[disk*3+2] = diskStatsFile.nextLong();
+    } while (diskStatsFile.nextLine());
+  }
+
+
+
+  /**
+   * Adds samples for the disk activity to the appropriate stat trackers.
+   *
+   * @param  elapsedSeconds  The length of time in seconds since the previous
+   *                         sample.
+   */
+  private void reportDisks(double elapsedSeconds)
+  {
+    for (int i=0; i < diskNames.length; i++)
+    {
+      // Sectors are always 512 bytes in /proc/diskstats, and the busy time is
+      // in milliseconds.
+      int pos = i*3;
+      diskKBRead[i].addValue((diskCounters[pos] - previousDiskCounters[pos]) /
+                             (2.0 * elapsedSeconds));
+      diskKBWritten[i].addValue(
+           (diskCounters[pos+1] - previousDiskCounters[pos+1]) /
+           (2.0 * elapsedSeconds));
+      diskBusy[i].addValue(Math.min(100.0,
+           (diskCounters[pos+2] - previousDiskCounters[pos+2]) /
+           (10.0 * elapsedSeconds)));
+    }
+  }
+
+
+
+  /**
+   * Reads the bytes received and transmitted for each of the monitored network
+   * interfaces from /proc/net/dev.
+   *
+   * @param  netDevFile  The file to read.
+   *
+   * @throws  IOException  If a problem occurs while reading the file.
+   */
+  private void readNetDev(ProcFile netDevFile)
+          throws IOException
+  {
+    netDevFile.read();
+    do
+    {
+      int iface = netDevFile.nextTokenIndex(interfaceNameBytes);
+      if (iface < 0)
+      {
+        continue;
+      }
+
+      interfaceCounters[iface*2] = netDevFile.nextLong();
+      for (int i=0; i < 7; i++)
+      {
+        netDevFile.skipToken();
+      }
+      interfaceCounters[iface*2+1] = netDevFile.nextLong();
+    } while (netDevFile.nextLine());
+  }
+
+
+
+  /**
+   * Adds samples for the network activity to the appropriate stat trackers.
+   *
+   * @param  elapsedSeconds  The length of time in seconds since the previous
+   *                         sample.
+   */
+  private void reportInterfaces(double elapsedSeconds)
+  {
+    for (int i=0; i < interfaceNames.length; i++)
+    {
+      int pos = i*2;
+      networkKBReceived[i].addValue(
+           (interfaceCounters[pos] - previousInterfaceCounters[pos]) /
+           (1024.0 * elapsedSeconds));
+      networkKBTransmitted[i].addValue(
+           (interfaceCounters[pos+1] - previousInterfaceCounters[pos+1]) /
+           (1024.0 * elapsedSeconds));
+    }
+  }
+
+
+
+  /**
+   * Reads the total time in microseconds that at least one task has been
+   * stalled from the provided pressure stall file.
+   *
+   * @param  pressureFile  The file to read.
+   *
+   * @return  The total stall time in microseconds.
+   *
+   * @throws  IOException  If a problem occurs while reading the file.
+   */
+  private static long readPressureTotal(ProcFile pressureFile)
+          throws IOException
+  {
+    pressureFile.read();
+    do
+    {
+      if (pressureFile.nextTokenEquals(TOKEN_SOME) &&
+          pressureFile.skipPast(TOKEN_TOTAL))
+      {
+        return pressureFile.nextLong();
+      }
+    } while (pressureFile.nextLine());
+
+    throw new IOException("No stall total found in the pressure file.");
+  }
+
+
+
+  /**
+   * Reads the CPU time and resident set size of the monitored process from
+   * /proc/[pid]/stat.
+   *
+   * @param  processFile  The file to read.
+   *
+   * @throws  IOException  If a problem occurs while reading the file.
+   */
+  private void readProcessStat(ProcFile processFile)
+          throws IOException
+  {
+    // The command name is enclosed in parentheses and may contain spaces, so
+    // skip to the last closing parenthesis before reading any fields.
+    processFile.read();
+    if (! processFile.skipPastLast((byte) ')'))
+    {
+      throw new IOException("Malformed process stat file.");
+    }
+
+    // Skip the state, parent process ID, process group, session, terminal,
+    // terminal process group, flags, and fault counts.
+    for (int i=0; i < 11; i++)
+    {
+      processFile.skipToken();
+    }
+
+    processTicks = processFile.nextLong() + processFile.nextLong();
+
+    // Skip the child CPU times, priority, nice value, thread count, interval
+    // timer value, start time, and virtual memory size.
+    for (int i=0; i < 8; i++)
+    {
+      processFile.skipToken();
+    }
+
+    processRSSPages = processFile.nextLong();
+  }
+
+
+
+  /**
+   * Saves the counters from the current sample so that they may be compared
+   * against the next sample.  The arrays are swapped rather than copied so
+   * that no memory needs to be allocated.
+   */
+  private void swapCounters()
+  {
+    long[][] cpu = previousCPUCounters;
+    previousCPUCounters = cpuCounters;
+    cpuCounters = cpu;
+
+    long[] disk = previousDiskCounters;
+    previousDiskCounters = diskCounters;
+    diskCounters = disk;
+
+    long[] iface = previousInterfaceCounters;
+    previousInterfaceCounters = interfaceCounters;
+    interfaceCounters = iface;
+
+    long[] pressure = previousPressureTotals;
+    previousPressureTotals = pressureTotals;
+    pressureTotals = pressure;
+
+    previousContextSwitchCount = contextSwitchCount;
+  }
+
+
+
+  /**
+   * Closes all of the provided files, ignoring any that are {@code null}.
+   *
+   * @param  statFile       The /proc/stat file.
+   * @param  memInfoFile    The /proc/meminfo file.
+   * @param  diskStatsFile  The /proc/diskstats file.
+   * @param  netDevFile     The /proc/net/dev file.
+   * @param  processFile    The /proc/[pid]/stat file.
+   * @param  pressureFiles  The pressure stall files.
+   */
+  private static void closeAll(ProcFile statFile, ProcFile memInfoFile,
+                               ProcFile diskStatsFile, ProcFile netDevFile,
+                               ProcFile processFile, ProcFile[] pressureFiles)
+  {
+    ArrayList<ProcFile> files = new ArrayList<ProcFile>();
+    files.add(statFile);
+    files.add(memInfoFile);
+    files.add(diskStatsFile);
+    files.add(netDevFile);
+    files.add(processFile);
+    files.addAll(Arrays.asList(pressureFiles));
+
+    for (ProcFile f : files)
+    {
+      if (f != null)
+      {
+        f.close();
+      }
+    }
+  }
+
+
+
+  /**
+   * Determines the number of CPUs listed in /proc/stat.
+   *
+   * @return  The number of CPUs listed in /proc/stat.
+   *
+   * @throws  IOException  If a problem occurs while reading the file.
+   */
+  private static int countCPUs()
+          throws IOException
+  {
+    int maxCPU = -1;
+    BufferedReader reader = new BufferedReader(new FileReader("/proc/stat"));
+    try
+    {
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        if (line.startsWith("cpu") && (line.length() > 3) &&
+            Character.isDigit(line.charAt(3)))
+        {
+          int spacePos = line.indexOf(' ');
+          int cpuNumber = Integer.parseInt(line.substring(3, spacePos));
+          maxCPU = Math.max(maxCPU, cpuNumber);
+        }
+      }
+    }
+    finally
+    {
+      reader.close();
+    }
+
+    return (maxCPU + 1);
+  }
+
+
+
+  /**
+   * Determines the set of disks to monitor by default, which will include all
+   * block devices other than loopback and RAM disks.
+   *
+   * @return  The names of the disks to monitor by default.
+   *
+   * @throws  IOException  If a problem occurs while reading /proc/diskstats.
+   */
+  private static String[] findDisks()
+          throws IOException
+  {
+    // Partitions are listed in /proc/diskstats but not in /sys/block.
+    File sysBlock = new File("/sys/block");
+    ArrayList<String> diskList = new ArrayList<String>();
+    BufferedReader reader =
+         new BufferedReader(new FileReader("/proc/diskstats"));
+    try
+    {
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        StringTokenizer tokenizer = new StringTokenizer(line);
+        if (tokenizer.countTokens() < 3)
+        {
+          continue;
+        }
+
+        tokenizer.nextToken();
+        tokenizer.nextToken();
+        String name = tokenizer.nextToken();
+        if (name.startsWith("loop") || name.startsWith("ram") ||
+            (sysBlock.isDirectory() && (! new File(sysBlock, name).exists())))
+        {
+          continue;
+        }
+
+        diskList.add(name);
+      }
+    }
+    finally
+    {
+      reader.close();
+    }
+
+    String[] disks = new String[diskList.size()];
+    diskList.toArray(disks);
+    return disks;
+  }
+
+
+
+  /**
+   * Determines the set of network interfaces to monitor by default, which will
+   * include all interfaces other than the loopback interface.
+   *
+   * @return  The names of the network interfaces to monitor by default.
+   *
+   * @throws  IOException  If a problem occurs while reading /proc/net/dev.
+   */
+  private static String[] findInterfaces()
+          throws IOException
+  {
+    ArrayList<String> interfaceList = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(new FileReader("/proc/net/dev"));
+    try
+    {
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        int colonPos = line.indexOf(':');
+        if (colonPos < 0)
+        {
+          // This is one of the header lines.
+          continue;
+        }
+
+        String name = line.substring(0, colonPos).trim();
+        if (! name.equals("lo"))
+        {
+          interfaceList.add(name);
+        }
+      }
+    }
+    finally
+    {
+      reader.close();
+    }
+
+    String[] interfaces = new String[interfaceList.size()];
+    interfaceList.toArray(interfaces);
+    return interfaces;
+  }
+
+
+
+  /**
+   * Reads the process ID to monitor from the configured PID file.
+   *
+   * @return  The process ID to monitor from the specified file, or -1 if no
+   *          process ID could be read.
+   *
+   * @throws  IOException  If a problem occurs while reading the file.
+   */
+  private int getPIDFromFile()
+          throws IOException
+  {
+    BufferedReader reader = new BufferedReader(new FileReader(processIDFile));
+    String line = reader.readLine();
+    reader.close();
+
+    try
+    {
+      return Integer.parseInt(line.trim());
+    }
+    catch (Exception e)
+    {
+      writeVerbose("Unable to read a process ID from file \"" +
+                   processIDFile + "\" -- " + JobClass.stackTraceToString(e));
+      return -1;
+    }
+  }
+
+
+
+  /**
+   * Splits the provided comma-delimited list into its elements.
+   *
+   * @param  list  The list to split.
+   *
+   * @return  The elements of the provided list.
+   */
+  private static String[] splitList(String list)
+  {
+    ArrayList<String> elementList = new ArrayList<String>();
+    StringTokenizer tokenizer = new StringTokenizer(list, ", \t");
+    while (tokenizer.hasMoreTokens())
+    {
+      elementList.add(tokenizer.nextToken());
+    }
+
+    String[] elements = new String[elementList.size()];
+    elementList.toArray(elements);
+    return elements;
+  }
+
+
+
+  /**
+   * Encodes the provided ASCII string as a byte array.
+   *
+   * @param  s  The string to encode.
+   *
+   * @return  The encoded string.
+   */
+  private static byte[] toBytes(String s)
+  {
+    byte[] b = new byte[s.length()];
+    for (int i=0; i < b.length; i++)
+    {
+      b[i] = (byte) s.charAt(i);
+    }
+
+    return b;
+  }
+
+
+
+  /**
+   * This class provides a file in the /proc filesystem that may be read
+   * repeatedly into the same buffer, and a simple parser that extracts tokens
+   * and numbers from that buffer without creating any objects.  The parser
+   * operates on one line at a time, and none of its methods will move beyond
+   * the end of the current line other than <CODE>nextLine()</CODE>.
+   */
+  private static final class ProcFile
+  {
+    // The file being read.
+    private final RandomAccessFile file;
+
+    // The buffer holding the contents of the file.
+    private byte[] buffer;
+
+    // The number of bytes of the buffer that hold the contents of the file.
+    private int length;
+
+    // The position of the parser in the buffer.
+    private int pos;
+
+
+
+    /**
+     * Opens the specified file.
+     *
+     * @param  path  The path to the file to open.
+     *
+     * @throws  IOException  If the file cannot be opened.
+     */
+    private ProcFile(String path)
+            throws IOException
+    {
+      file   = new RandomAccessFile(path, "r");
+      buffer = new byte[4096];
+    }
+
+
+
+    /**
+     * Reads the current contents of the file into the buffer, expanding it if
+     * necessary, and positions the parser at the start of the first line.
+     *
+     * @throws  IOException  If a problem occurs while reading the file.
+     */
+    private void read()
+            throws IOException
+    {
+      // The kernel regenerates the contents of the file when it is read from
+      // the beginning.
+      file.seek(0L);
+      length = 0;
+      while (true)
+      {
+        if (length == buffer.length)
+        {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        int bytesRead = file.read(buffer, length, buffer.length - length);
+        if (bytesRead < 0)
+        {
+          break;
+        }
+
+        length += bytesRead;
+      }
+
+      pos = 0;
+    }
+
+
+
+    /**
+     * Moves the parser to the start of the next line.
+     *
+     * @return  {@code true} if there is another line, or {@code false} if
+     *          the end of the file has been reached.
+     */
+    private boolean nextLine()
+    {
+      while ((pos < length) && (buffer[pos] != '\n'))
+      {
+        pos++;
+      }
+
+      pos++;
+      return (pos < length);
+    }
+
+
+
+    /**
+     * Moves the parser past any spaces or tabs.
+     */
+    private void skipSpaces()
+    {
+      while ((pos < length) && ((buffer[pos] == ' ') || (buffer[pos] == '\t')))
+      {
+        pos++;
+      }
+    }
+
+
+
+    /**
+     * Indicates whether the provided byte ends a token.
+     *
+     * @param  b  The byte to examine.
+     *
+     * @return  {@code true} if the provided byte ends a token, or
+     *          {@code false} if not.
+     */
+    private static boolean isDelimiter(byte b)
+    {
+      return ((b == ' ') || (b == '\t') || (b == '\n'));
+    }
+
+
+
+    /**
+     * Indicates whether the text at the current position, after any spaces,
+     * starts with the provided bytes.
+     *
+     * @param  prefix  The bytes for which to check.
+     *
+     * @return  {@code true} if the text at the current position starts with
+     *          the provided bytes, or {@code false} if not.
+     */
+    private boolean startsWith(byte[] prefix)
+    {
+      skipSpaces();
+      if ((pos + prefix.length) > length)
+      {
+        return false;
+      }
+
+      for (int i=0; i < prefix.length; i++)
+      {
+        if (buffer[pos+i] != prefix[i])
+        {
+          return false;
+        }
+      }
+
+      return true;
+    }
+
+
+
+    /**
+     * Determines whether the next token is equal to the provided bytes, and
+     * moves past it if so.
+     *
+     * @param  token  The bytes for which to check.
+     *
+     * @return  {@code true} if the next token matches, or {@code false} if
+     *          not.
+     */
+    private boolean nextTokenEquals(byte[] token)
+    {
+      if (! startsWith(token))
+      {
+        return false;
+      }
+
+      int end = pos + token.length;
+      if ((end < length) && (! isDelimiter(buffer[end])))
+      {
+        return false;
+      }
+
+      pos = end;
+      return true;
+    }
+
+
+
+    /**
+     * Moves the parser past the next token, returning the index of the
+     * provided value that it matched.  A value may also match the start of a
+     * token if it ends with a colon, since /proc/net/dev does not always
+     * separate an interface name from its first counter.
+     *
+     * @param  values  The values to compare against the next token.
+     *
+     * @return  The index of the value that matched, or -1 if none did.
+     */
+    private int nextTokenIndex(byte[][] values)
+    {
+      skipSpaces();
+      int start = pos;
+      while ((pos < length) && (! isDelimiter(buffer[pos])))
+      {
+        pos++;
+      }
+
+      for (int i=0; i < values.length; i++)
+      {
+        byte[] value = values[i];
+        int    end   = start + value.length;
+        if ((end > pos) ||
+            ((end < pos) && (value[value.length-1] != ':')))
+        {
+          continue;
+        }
+
+        boolean matches = true;
+        for (int j=0; j < value.length; j++)
+        {
+          if (buffer[start+j] != value[j])
+          {
+            matches = false;
+            break;
+          }
+        }
+
+        if (matches)
+        {
+          pos = end;
+          return i;
+        }
+      }
+
+      return -1;
+    }
+
+
+
+    /**
+     * Moves the parser past the given number of bytes.
+     *
+     * @param  count  The number of bytes to skip.
+     */
+    private void skip(int count)
+    {
+      pos = Math.min(length, pos + count);
+    }
+
+
+
+    /**
+     * Moves the parser past the next token.
+     */
+    private void skipToken()
+    {
+      skipSpaces();
+      while ((pos < length) && (! isDelimiter(buffer[pos])))
+      {
+        pos++;
+      }
+    }
+
+
+
+    /**
+     * Moves the parser past the next occurrence of the provided bytes on the
+     * current line.
+     *
+     * @param  marker  The bytes to find.
+     *
+     * @return  {@code true} if the bytes were found, or {@code false} if not.
+     */
+    private boolean skipPast(byte[] marker)
+    {
+      while (true)
+      {
+        skipSpaces();
+        if ((pos >= length) || (buffer[pos] == '\n'))
+        {
+          return false;
+        }
+
+        if (startsWith(marker))
+        {
+          pos += marker.length;
+          return true;
+        }
+
+        pos++;
+      }
+    }
+
+
+
+    /**
+     * Moves the parser past the last occurrence of the provided byte on the
+     * current line.
+     *
+     * @param  b  The byte to find.
+     *
+     * @return  {@code true} if the byte was found, or {@code false} if not.
+     */
+    private boolean skipPastLast(byte b)
+    {
+      int lastPos = -1;
+      for (int i=pos; (i < length) && (buffer[i] != '\n'); i++)
+      {
+        if (buffer[i] == b)
+        {
+          lastPos = i;
+        }
+      }
+
+      if (lastPos < 0)
+      {
+        return false;
+      }
+
+      pos = lastPos + 1;
+      return true;
+    }
+
+
+
+    /**
+     * Reads the next token as a decimal integer.  Any characters that are not
+     * digits will end the number.
+     *
+     * @return  The value that was read, or zero if the next token does not
+     *          start with a number.
+     */
+    private long nextLong()
+    {
+      skipSpaces();
+
+      boolean negative = false;
+      if ((pos < length) && (buffer[pos] == '-'))
+      {
+        negative = true;
+        pos++;
+      }
+
+      long value = 0L;
+      while ((pos < length) && (buffer[pos] >= '0') && (buffer[pos] <= '9'))
+      {
+        value = (value * 10L) + (buffer[pos] - '0');
+        pos++;
+      }
+
+      return (negative ? -value : value);
+    }
+
+
+
+    /**
+     * Closes the file.
+     */
+    private void close()
+    {
+      try
+      {
+        file.close();
+      } catch (Exception e) {}
+    }
+  }
+}
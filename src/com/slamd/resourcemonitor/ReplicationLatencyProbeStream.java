@@ -0,0 +1,536 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.resourcemonitor;
+
+
+
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.unboundid.ldap.sdk.AsyncRequestID;
+import com.unboundid.ldap.sdk.AsyncResultListener;
+import com.unboundid.ldap.sdk.AsyncSearchResultListener;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPResult;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.ModifyRequest;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultReference;
+import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.ldap.sdk.controls.PersistentSearchChangeType;
+import com.unboundid.ldap.sdk.controls.PersistentSearchRequestControl;
+
+import com.slamd.stat.CategoricalTracker;
+import com.slamd.stat.LatencyHistogram;
+import com.slamd.stat.TimeTracker;
+
+
+
+/**
+ * This class provides the streaming mode of the replication latency resource
+ * monitor.  Rather than making one change on the master and waiting for it to
+ * appear on the replica before making the next, it issues a steady stream of
+ * asynchronous modifications with many of them in flight at once, and uses a
+ * single persistent search on the replica to learn when each one has been
+ * applied there.
+ * <BR><BR>
+ * Each modification replaces the value of the target attribute with a value
+ * that embeds an identifier for this stream, the sequence number of the probe,
+ * and the high-resolution time at which the probe was sent.  The latency of a
+ * probe is the time between that embedded send time and the replica reporting
+ * the value for that probe, measured with {@code System.nanoTime}.
+ * <BR><BR>
+ * Modifications that are in flight at the same time may be applied in any
+ * order, so a notification only resolves the probe whose value it holds.  A
+ * probe whose value has been overwritten before it could be seen on the
+ * replica will never be reported.  Such a probe is discarded without being
+ * measured once the replica reports a probe that was sent after the master
+ * acknowledged it, since the master must then have applied the later change
+ * on top of it.
+ */
+final class ReplicationLatencyProbeStream
+      implements AsyncSearchResultListener
+{
+  /**
+   * The serial version UID for this serializable class.
+   */
+  private static final long serialVersionUID = -3161624208931853617L;
+
+
+
+  /**
+   * The upper bounds, in microseconds, of the categories used to report the
+   * distribution of replication latencies.
+   */
+  private static final long[] DISTRIBUTION_BOUNDS =
+  {
+    1000L, 5000L, 10000L, 50000L, 100000L, 500000L, 1000000L
+  };
+
+
+
+  /**
+   * The names of the categories used to report the distribution of
+   * replication latencies.
+   */
+  static final String[] DISTRIBUTION_CATEGORIES =
+  {
+    "Less than 1 ms",
+    "1-5 ms",
+    "5-10 ms",
+    "10-50 ms",
+    "50-100 ms",
+    "100-500 ms",
+    "500-1000 ms",
+    "1000 ms or more"
+  };
+
+
+
+  // The connections to the master and replica servers.
+  private final LDAPConnection masterConn;
+  private final LDAPConnection replicaConn;
+
+  // The semaphore used to limit the number of probes in flight.
+  private final Semaphore probePermits;
+
+  // The histogram of latencies in the current interval.
+  private final LatencyHistogram histogram;
+
+  // The lock used to protect the probe state and the stat trackers.
+  private final Object probeLock;
+
+  // The probes that have not yet been seen on the replica, keyed by sequence
+  // number.
+  private final TreeMap<Long,PendingProbe> pendingProbes;
+
+  // The monitor with which this stream is associated.
+  private final ReplicationLatencyResourceMonitor monitor;
+
+  // The DN of the entry to modify and the attribute to replace.
+  private final String entryDN;
+  private final String attrToModify;
+
+  // The prefix used for all probe values written by this stream.
+  private final String valuePrefix;
+
+  // The stat trackers to update for each probe.
+  private final CategoricalTracker distributionTracker;
+  private final TimeTracker latencyTimer;
+
+  // The persistent search registered with the replica.
+  private AsyncRequestID psearchID;
+
+  // The sequence number for the next probe.
+  private long nextSeq;
+
+  // The message for the first error encountered by the stream, if any.
+  private volatile String errorMessage;
+
+
+
+  /**
+   * Creates a new probe stream with the provided information.
+   *
+   * @param  monitor              The monitor with which this stream is
+   *                              associated.
+   * @param  masterConn           The connection to the master server.
+   * @param  replicaConn          The connection to the replica server.
+   * @param  entryDN              The DN of the entry to modify.
+   * @param  attrToModify         The name of the attribute to replace.
+   * @param  maxProbesInFlight    The maximum number of probes that may be
+   *                              outstanding at any time.
+   * @param  latencyTimer         The timer to update for each probe.
+   * @param  distributionTracker  The tracker used to report the distribution of
+   *                              latencies.
+   */
+  ReplicationLatencyProbeStream(ReplicationLatencyResourceMonitor monitor,
+                                LDAPConnection masterConn,
+                                LDAPConnection replicaConn, String entryDN,
+                                String attrToModify, int maxProbesInFlight,
+                                TimeTracker latencyTimer,
+                                CategoricalTracker distributionTracker)
+  {
+    this.monitor             = monitor;
+    this.masterConn          = masterConn;
+    this.replicaConn         = replicaConn;
+    this.entryDN             = entryDN;
+    this.attrToModify        = attrToModify;
+    this.latencyTimer        = latencyTimer;
+    this.distributionTracker = distributionTracker;
+
+    probePermits  = new Semaphore(maxProbesInFlight);
+    histogram     = new LatencyHistogram();
+    probeLock     = new Object();
+    pendingProbes = new TreeMap<Long,PendingProbe>();
+    valuePrefix   = "slamd-" + Long.toHexString(new SecureRandom().nextLong()) +
+                    ':';
+
+    nextSeq      = 0L;
+    errorMessage = null;
+  }
+
+
+
+  /**
+   * Registers the persistent search with the replica server.
+   *
+   * @throws  LDAPException  If a problem occurs while registering the search.
+   */
+  void start()
+       throws LDAPException
+  {
+    SearchRequest searchRequest = new SearchRequest(this, entryDN,
+         SearchScope.BASE, "(|(objectClass=*)(objectClass=ldapSubentry))",
+         attrToModify);
+    searchRequest.addControl(new PersistentSearchRequestControl(
+         PersistentSearchChangeType.MODIFY, true, false));
+    psearchID = replicaConn.asyncSearch(searchRequest);
+  }
+
+
+
+  /**
+   * Sends the next probe to the master server, waiting if the maximum number
+   * of probes are already in flight.
+   *
+   * @param  maxWaitMillis  The maximum length of time in milliseconds to wait
+   *                        for an earlier probe to complete if the maximum
+   *                        number are already in flight.
+   *
+   * @return  {@code true} if a probe was sent, or {@code false} if none could
+   *          be sent within the provided length of time.
+   *
+   * @throws  InterruptedException  If the thread is interrupted while waiting.
+   *
+   * @throws  LDAPException  If a problem occurs while sending the probe.
+   */
+  boolean sendProbe(long maxWaitMillis)
+          throws InterruptedException, LDAPException
+  {
+    if (! probePermits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS))
+    {
+      return false;
+    }
+
+    long seq;
+    long sendTime = System.nanoTime();
+    synchronized (probeLock)
+    {
+      seq = nextSeq++;
+      pendingProbes.put(seq, new PendingProbe());
+    }
+
+    String value = valuePrefix + seq + ':' + sendTime;
+    ModifyRequest modifyRequest = new ModifyRequest(entryDN,
+         new Modification(ModificationType.REPLACE, attrToModify, value));
+
+    try
+    {
+      masterConn.asyncModify(modifyRequest, new ProbeResultListener(seq));
+    }
+    catch (LDAPException le)
+    {
+      synchronized (probeLock)
+      {
+        pendingProbes.remove(seq);
+      }
+
+      probePermits.release();
+      throw le;
+    }
+
+    return true;
+  }
+
+
+
+  /**
+   * Copies the histogram of latencies recorded since the last call to this
+   * method into the provided array and resets it for the next interval.
+   *
+   * @param  counts  The array into which the histogram should be copied.
+   *
+   * @return  The number of latencies contained in the histogram.
+   */
+  long snapshotHistogram(long[] counts)
+  {
+    return histogram.snapshot(counts);
+  }
+
+
+
+  /**
+   * Retrieves the message for the first error encountered by the stream.
+   *
+   * @return  The message for the first error encountered by the stream, or
+   *          {@code null} if no error has occurred.
+   */
+  String getErrorMessage()
+  {
+    return errorMessage;
+  }
+
+
+
+  /**
+   * Abandons the persistent search registered with the replica.
+   */
+  void stop()
+  {
+    if (psearchID != null)
+    {
+      try
+      {
+        replicaConn.abandon(psearchID);
+      } catch (Exception e) {}
+    }
+  }
+
+
+
+  /**
+   * Indicates that the replica has returned a change notification for the
+   * latency check entry.
+   *
+   * @param  searchEntry  The entry returned by the replica.
+   */
+  @Override()
+  public void searchEntryReturned(SearchResultEntry searchEntry)
+  {
+    long now = System.nanoTime();
+
+    String value = searchEntry.getAttributeValue(attrToModify);
+    if ((value == null) || (! value.startsWith(valuePrefix)))
+    {
+      // This was not a change made by this stream.
+      return;
+    }
+
+    long seq;
+    long sendTime;
+    try
+    {
+      int colonPos = value.indexOf(':', valuePrefix.length());
+      seq = Long.parseLong(value.substring(valuePrefix.length(), colonPos));
+      sendTime = Long.parseLong(value.substring(colonPos+1));
+    }
+    catch (Exception e)
+    {
+      return;
+    }
+
+    synchronized (probeLock)
+    {
+      if (pendingProbes.remove(seq) == null)
+      {
+        // The probe was already reported or has been discarded.
+        return;
+      }
+
+      recordLatency(Math.max(0L, now - sendTime));
+
+      // Any earlier probe that the master acknowledged before this one was
+      // sent has been overwritten by it and will never be seen on the
+      // replica.  Probes sent later can't have been acknowledged by then.
+      Iterator<PendingProbe> iterator =
+           pendingProbes.headMap(seq, false).values().iterator();
+      while (iterator.hasNext())
+      {
+        PendingProbe probe = iterator.next();
+        if (probe.acknowledged && (probe.ackTime - sendTime <= 0L))
+        {
+          iterator.remove();
+          probePermits.release();
+        }
+      }
+    }
+  }
+
+
+
+  /**
+   * Indicates that the replica has returned a search result reference.  This
+   * is not expected for a base-level search and will be ignored.
+   *
+   * @param  searchReference  The reference returned by the replica.
+   */
+  @Override()
+  public void searchReferenceReturned(SearchResultReference searchReference)
+  {
+    // No implementation is required.
+  }
+
+
+
+  /**
+   * Indicates that the persistent search on the replica has ended.  This
+   * should only happen if the search is abandoned or the replica rejects it.
+   *
+   * @param  requestID     The async request ID for the search.
+   * @param  searchResult  The result for the search.
+   */
+  @Override()
+  public void searchResultReceived(AsyncRequestID requestID,
+                                   SearchResult searchResult)
+  {
+    if ((errorMessage == null) && (! monitor.shouldStop()))
+    {
+      errorMessage = "The persistent search on the replica ended " +
+                     "unexpectedly:  " + searchResult;
+      monitor.logMessage(errorMessage);
+    }
+  }
+
+
+
+  /**
+   * Records a successful or failed probe.
+   *
+   * @param  seq           The sequence number of the probe.
+   * @param  result        The result of the modify operation on the master.
+   * @param  responseTime  The time that the result was received.
+   */
+  private void probeCompleted(long seq, LDAPResult result, long responseTime)
+  {
+    if (result.getResultCode() != ResultCode.SUCCESS)
+    {
+      synchronized (probeLock)
+      {
+        if (pendingProbes.remove(seq) != null)
+        {
+          probePermits.release();
+        }
+      }
+
+      if (errorMessage == null)
+      {
+        errorMessage = "Unable to modify entry \"" + entryDN +
+                       "\" on the master server:  " + result;
+        monitor.logMessage(errorMessage);
+      }
+      return;
+    }
+
+    synchronized (probeLock)
+    {
+      // If the probe is no longer pending, then the change was seen on the
+      // replica before the master acknowledged it.
+      PendingProbe probe = pendingProbes.get(seq);
+      if (probe != null)
+      {
+        probe.ackTime      = responseTime;
+        probe.acknowledged = true;
+      }
+    }
+  }
+
+
+
+  /**
+   * Records the provided latency in the stat trackers and releases the permit
+   * for the associated probe.  This must be called while holding the probe
+   * lock.
+   *
+   * @param  latencyNanos  The replication latency in nanoseconds.
+   */
+  private void recordLatency(long latencyNanos)
+  {
+    long latencyMicros = latencyNanos / 1000L;
+    histogram.add(latencyMicros);
+    latencyTimer.updateTimer((int) ((latencyMicros + 500L) / 1000L));
+
+    int category = 0;
+    while ((category < DISTRIBUTION_BOUNDS.length) &&
+           (latencyMicros >= DISTRIBUTION_BOUNDS[category]))
+    {
+      category++;
+    }
+    distributionTracker.increment(DISTRIBUTION_CATEGORIES[category]);
+
+    probePermits.release();
+  }
+
+
+
+  /**
+   * This class holds the state of a probe that has not yet been seen on the
+   * replica.  It must only be accessed while holding the probe lock.
+   */
+  private static final class PendingProbe
+  {
+    // Indicates whether the master has acknowledged the probe.
+    private boolean acknowledged;
+
+    // The time that the master acknowledged the probe.
+    private long ackTime;
+  }
+
+
+
+  /**
+   * This class provides the listener used to receive the result of a single
+   * probe modification from the master server.
+   */
+  private final class ProbeResultListener
+          implements AsyncResultListener
+  {
+    /**
+     * The serial version UID for this serializable class.
+     */
+    private static final long serialVersionUID = 7094132866470123458L;
+
+
+
+    // The sequence number of the probe.
+    private final long seq;
+
+
+
+    /**
+     * Creates a new listener for the specified probe.
+     *
+     * @param  seq  The sequence number of the probe.
+     */
+    private ProbeResultListener(long seq)
+    {
+      this.seq = seq;
+    }
+
+
+
+    /**
+     * Indicates that the result of the probe modification has been received.
+     *
+     * @param  requestID  The async request ID for the operation.
+     * @param  result     The result for the operation.
+     */
+    @Override()
+    public void ldapResultReceived(AsyncRequestID requestID, LDAPResult result)
+    {
+      probeCompleted(seq, result, System.nanoTime());
+    }
+  }
+}
+
@@ -26,8 +26,13 @@ import netscape.ldap.LDAPSearchConstraints;
 import netscape.ldap.LDAPSearchResults;
 import netscape.ldap.controls.LDAPPersistSearchControl;
 
+import com.unboundid.ldap.sdk.LDAPException;
+
 import com.slamd.common.Constants;
 import com.slamd.common.SLAMDException;
+import com.slamd.stat.CategoricalTracker;
+import com.slamd.stat.FloatValueTracker;
+import com.slamd.stat.LatencyHistogram;
 import com.slamd.stat.RealTimeStatReporter;
 import com.slamd.stat.StatTracker;
 import com.slamd.stat.TimeTracker;
@@ -40,6 +45,13 @@ import com.slamd.stat.TimeTracker;
  * Directory Server.  It operates by periodically performing a modify operation
  * on a master directory and using a persistent search on a replica to detect
  * that change.
+ * <BR><BR>
+ * If the streaming mode is enabled, then rather than waiting for each change
+ * to be replicated before making the next, the monitor keeps many changes in
+ * flight at once and measures the latency of each one with sub-millisecond
+ * resolution.  In that case, the median, 99th percentile, 99.9th percentile,
+ * and maximum latency are reported for each collection interval, along with
+ * the overall distribution of latencies.
  *
  *
  * @author   Neil A. Wilson
@@ -56,6 +68,53 @@ public class ReplicationLatencyResourceMonitor
 
 
 
+  /**
+   * The display name of the stat tracker used to keep track of the median
+   * replication latency in each interval when using the streaming mode.
+   */
+  public static final String STAT_TRACKER_REPLICATION_LATENCY_MEDIAN =
+       "Median Replication Latency (ms)";
+
+
+
+  /**
+   * The display name of the stat tracker used to keep track of the 99th
+   * percentile replication latency in each interval when using the streaming
+   * mode.
+   */
+  public static final String STAT_TRACKER_REPLICATION_LATENCY_99 =
+       "99th Percentile Replication Latency (ms)";
+
+
+
+  /**
+   * The display name of the stat tracker used to keep track of the 99.9th
+   * percentile replication latency in each interval when using the streaming
+   * mode.
+   */
+  public static final String STAT_TRACKER_REPLICATION_LATENCY_999 =
+       "99.9th Percentile Replication Latency (ms)";
+
+
+
+  /**
+   * The display name of the stat tracker used to keep track of the maximum
+   * replication latency in each interval when using the streaming mode.
+   */
+  public static final String STAT_TRACKER_REPLICATION_LATENCY_MAX =
+       "Maximum Replication Latency (ms)";
+
+
+
+  /**
+   * The display name of the stat tracker used to keep track of the
+   * distribution of replication latencies when using the streaming mode.
+   */
+  public static final String STAT_TRACKER_REPLICATION_LATENCY_DISTRIBUTION =
+       "Replication Latency Distribution";
+
+
+
   /**
    * The name of the configuration property that specifies the address of the
    * master directory server.
@@ -148,6 +207,49 @@ public class ReplicationLatencyResourceMonitor
 
 
 
+  /**
+   * The name of the configuration property that indicates whether to use the
+   * streaming mode, in which many changes may be in flight at once.
+   */
+  public static final String PROPERTY_STREAMING_MODE = "streaming_mode";
+
+
+
+  /**
+   * The name of the configuration property that specifies the delay in
+   * milliseconds between the changes made on the master server when using the
+   * streaming mode.
+   */
+  public static final String PROPERTY_PROBE_INTERVAL_MILLIS =
+       "probe_interval_millis";
+
+
+
+  /**
+   * The default delay in milliseconds between the changes made on the master
+   * server when using the streaming mode.
+   */
+  public static final int DEFAULT_PROBE_INTERVAL_MILLIS = 10;
+
+
+
+  /**
+   * The name of the configuration property that specifies the maximum number
+   * of changes that may be in flight at once when using the streaming mode.
+   */
+  public static final String PROPERTY_MAX_PROBES_IN_FLIGHT =
+       "max_probes_in_flight";
+
+
+
+  /**
+   * The default maximum number of changes that may be in flight at once when
+   * using the streaming mode.
+   */
+  public static final int DEFAULT_MAX_PROBES_IN_FLIGHT = 100;
+
+
+
   /**
    * Indicates whether this resource monitor is stopped.
    */
@@ -175,14 +277,26 @@ public class ReplicationLatencyResourceMonitor
 
   // Information about the modifications that should be made for latency
   // checking.
-  private int    latencyCheckDelay;
-  private String attrToModify;
-  private String latencyCheckEntryDN;
+  private boolean streamingMode;
+  private int     collectionInterval;
+  private int     latencyCheckDelay;
+  private int     maxProbesInFlight;
+  private int     probeIntervalMillis;
+  private String  attrToModify;
+  private String  latencyCheckEntryDN;
 
 
   // The stat tracker used to measure replication latency.
   private TimeTracker latencyTimer;
 
+  // The stat trackers used to report the latency percentiles and distribution
+  // when using the streaming mode.
+  private CategoricalTracker latencyDistribution;
+  private FloatValueTracker  latency99;
+  private FloatValueTracker  latency999;
+  private FloatValueTracker  latencyMax;
+  private FloatValueTracker  latencyMedian;
+
 
 
   /**
@@ -255,14 +369,33 @@ public class ReplicationLatencyResourceMonitor
                                "\" configuration property");
     }
 
+    streamingMode = getProperty(PROPERTY_STREAMING_MODE, false);
     latencyCheckDelay = getProperty(PROPERTY_LATENCY_CHECK_DELAY, -1);
-    if (latencyCheckDelay < 0)
+    if ((latencyCheckDelay < 0) && (! streamingMode))
     {
       throw new SLAMDException("ERROR:  Missing or invalid value for \"" +
                                PROPERTY_LATENCY_CHECK_DELAY +
                                "\" configuration property");
     }
 
+    probeIntervalMillis = getProperty(PROPERTY_PROBE_INTERVAL_MILLIS,
+                                      DEFAULT_PROBE_INTERVAL_MILLIS);
+    if (probeIntervalMillis < 0)
+    {
+      throw new SLAMDException("ERROR:  Invalid value for \"" +
+                               PROPERTY_PROBE_INTERVAL_MILLIS +
+                               "\" configuration property");
+    }
+
+    maxProbesInFlight = getProperty(PROPERTY_MAX_PROBES_IN_FLIGHT,
+                                    DEFAULT_MAX_PROBES_IN_FLIGHT);
+    if (maxProbesInFlight <= 0)
+    {
+      throw new SLAMDException("ERROR:  Invalid value for \"" +
+                               PROPERTY_MAX_PROBES_IN_FLIGHT +
+                               "\" configuration property");
+    }
+
     isStopped        = true;
     waitingOnPSearch = false;
   }
@@ -319,18 +452,35 @@ public class ReplicationLatencyResourceMonitor
   public void initializeStatistics(String clientID, String threadID,
                                    int collectionInterval)
   {
-    String displayName = masterHost + ':' + masterPort + "->" + replicaHost +
-                         ':' + replicaPort + ' ' +
-                         STAT_TRACKER_REPLICATION_LATENCY;
-    latencyTimer = new TimeTracker(clientID, threadID, displayName,
+    this.collectionInterval = collectionInterval;
+
+    String prefix = masterHost + ':' + masterPort + "->" + replicaHost + ':' +
+                    replicaPort + ' ';
+    latencyTimer = new TimeTracker(clientID, threadID,
+                                   prefix + STAT_TRACKER_REPLICATION_LATENCY,
                                    collectionInterval);
 
+    latencyMedian = new FloatValueTracker(clientID, threadID,
+         prefix + STAT_TRACKER_REPLICATION_LATENCY_MEDIAN, collectionInterval);
+    latency99 = new FloatValueTracker(clientID, threadID,
+         prefix + STAT_TRACKER_REPLICATION_LATENCY_99, collectionInterval);
+    latency999 = new FloatValueTracker(clientID, threadID,
+         prefix + STAT_TRACKER_REPLICATION_LATENCY_999, collectionInterval);
+    latencyMax = new FloatValueTracker(clientID, threadID,
+         prefix + STAT_TRACKER_REPLICATION_LATENCY_MAX, collectionInterval);
+    latencyDistribution = new CategoricalTracker(clientID, threadID,
+         prefix + STAT_TRACKER_REPLICATION_LATENCY_DISTRIBUTION,
+         collectionInterval);
+
     ResourceMonitorJob monitorJob = getMonitorJob();
-    if (monitorJob.enableRealTimeStats())
+    if ((monitorJob != null) && monitorJob.enableRealTimeStats())
     {
       String jobID = monitorJob.getJobID();
       RealTimeStatReporter statReporter = monitorJob.getStatReporter();
-      latencyTimer.enableRealTimeStats(statReporter, jobID);
+      for (StatTracker tracker : getResourceStatistics())
+      {
+        tracker.enableRealTimeStats(statReporter, jobID);
+      }
     }
   }
 
@@ -357,6 +507,19 @@ public class ReplicationLatencyResourceMonitor
   @Override()
   public StatTracker[] getResourceStatistics()
   {
+    if (streamingMode)
+    {
+      return new StatTracker[]
+      {
+        latencyTimer,
+        latencyMedian,
+        latency99,
+        latency999,
+        latencyMax,
+        latencyDistribution
+      };
+    }
+
     StatTracker[] trackers = new StatTracker[]
     {
       latencyTimer
@@ -378,6 +541,12 @@ public class ReplicationLatencyResourceMonitor
   @Override()
   public int runMonitor()
   {
+    if (streamingMode)
+    {
+      return runStreamingMonitor();
+    }
+
+
     // Establish the connection to the master directory server.
     LDAPConnection masterConn = new LDAPConnection();
     try
@@ -561,5 +730,183 @@ public class ReplicationLatencyResourceMonitor
 
     return jobState;
   }
-}
 
+
+
+  /**
+   * Performs the work of collecting replication latency statistics using the
+   * streaming mode, in which changes are made on the master at a fixed rate
+   * with many of them in flight at once.
+   *
+   * @return  A value that indicates the status of the monitor when it
+   *          completed.
+   */
+  private int runStreamingMonitor()
+  {
+    // Establish the connections to the master and replica directory servers.
+    // The streaming mode uses asynchronous operations, so it uses the
+    // UnboundID LDAP SDK rather than the Netscape SDK.
+    com.unboundid.ldap.sdk.LDAPConnection masterConn;
+    try
+    {
+      masterConn = new com.unboundid.ldap.sdk.LDAPConnection(masterHost,
+           masterPort);
+      if ((masterBindDN != null) && (masterBindDN.length() > 0))
+      {
+        masterConn.bind(masterBindDN, masterBindPW);
+      }
+    }
+    catch (LDAPException le)
+    {
+      logMessage("Unable to connect to master directory server " + masterHost +
+                 ':' + masterPort + " -- " + le);
+      return Constants.JOB_STATE_STOPPED_DUE_TO_ERROR;
+    }
+
+    com.unboundid.ldap.sdk.LDAPConnection replicaConn;
+    try
+    {
+      replicaConn = new com.unboundid.ldap.sdk.LDAPConnection(replicaHost,
+           replicaPort);
+      if ((replicaBindDN != null) && (replicaBindDN.length() > 0))
+      {
+        replicaConn.bind(replicaBindDN, replicaBindPW);
+      }
+    }
+    catch (LDAPException le)
+    {
+      logMessage("Unable to connect to replica directory server " +
+                 replicaHost + ':' + replicaPort + " -- " + le);
+      masterConn.close();
+      return Constants.JOB_STATE_STOPPED_DUE_TO_ERROR;
+    }
+
+
+    // Register the persistent search against the replica directory.
+    ReplicationLatencyProbeStream probeStream =
+         new ReplicationLatencyProbeStream(this, masterConn, replicaConn,
+                                           latencyCheckEntryDN, attrToModify,
+                                           maxProbesInFlight, latencyTimer,
+                                           latencyDistribution);
+    try
+    {
+      probeStream.start();
+    }
+    catch (LDAPException le)
+    {
+      logMessage("Unable to register a persistent search with replica " +
+                 "directory server " + replicaHost + ':' + replicaPort +
+                 " -- " + le);
+      masterConn.close();
+      replicaConn.close();
+      return Constants.JOB_STATE_STOPPED_DUE_TO_ERROR;
+    }
+
+
+    // Start the stat trackers.
+    StatTracker[] trackers = getResourceStatistics();
+    for (StatTracker tracker : trackers)
+    {
+      tracker.startTracker();
+    }
+    isStopped = false;
+
+
+    // Loop, sending changes to the master at the configured rate and reporting
+    // the latency percentiles at the end of each collection interval.
+    int    jobState         = Constants.JOB_STATE_COMPLETED_SUCCESSFULLY;
+    long[] counts           = new long[LatencyHistogram.NUM_BUCKETS];
+    long   intervalMillis   = 1000L * collectionInterval;
+    long   nextIntervalTime = System.currentTimeMillis() + intervalMillis;
+    long   nextProbeTime    = System.currentTimeMillis();
+    while (! shouldStop())
+    {
+      long now = System.currentTimeMillis();
+      if (now >= nextIntervalTime)
+      {
+        reportPercentiles(probeStream.snapshotHistogram(counts), counts);
+        nextIntervalTime += intervalMillis;
+        continue;
+      }
+
+      if (probeStream.getErrorMessage() != null)
+      {
+        jobState = Constants.JOB_STATE_STOPPED_DUE_TO_ERROR;
+        break;
+      }
+
+      if (now < nextProbeTime)
+      {
+        try
+        {
+          Thread.sleep(Math.min(nextProbeTime, nextIntervalTime) - now);
+        } catch (InterruptedException ie) {}
+        continue;
+      }
+
+      try
+      {
+        if (probeStream.sendProbe(Math.max(1L, nextIntervalTime - now)))
+        {
+          nextProbeTime += probeIntervalMillis;
+          if (nextProbeTime < now)
+          {
+            nextProbeTime = now;
+          }
+        }
+      }
+      catch (InterruptedException ie)
+      {
+        // This will only happen if the monitor is being stopped.
+      }
+      catch (LDAPException le)
+      {
+        logMessage("Unable to modify entry \"" + latencyCheckEntryDN +
+                   "\" on master server " + masterHost + ':' + masterPort +
+                   " -- " + le);
+        jobState = Constants.JOB_STATE_STOPPED_DUE_TO_ERROR;
+        break;
+      }
+    }
+
+
+    // Stop the trackers, close the connections to the server, and return.
+    reportPercentiles(probeStream.snapshotHistogram(counts), counts);
+    for (StatTracker tracker : trackers)
+    {
+      tracker.stopTracker();
+    }
+    isStopped = true;
+
+    probeStream.stop();
+    masterConn.close();
+    replicaConn.close();
+
+    return jobState;
+  }
+
+
+
+  /**
+   * Reports the latency percentiles for the interval that has just completed.
+   *
+   * @param  totalCount  The number of latencies recorded in the interval.
+   * @param  counts      The histogram of latencies for the interval.
+   */
+  private void reportPercentiles(long totalCount, long[] counts)
+  {
+    if (totalCount == 0L)
+    {
+      return;
+    }
+
+    latencyMedian.addValue(
+         LatencyHistogram.getPercentile(counts, totalCount, 50.0D) / 1000.0D);
+    latency99.addValue(
+         LatencyHistogram.getPercentile(counts, totalCount, 99.0D) / 1000.0D);
+    latency999.addValue(
+         LatencyHistogram.getPercentile(counts, totalCount, 99.9D) / 1000.0D);
+    latencyMax.addValue(
+         LatencyHistogram.getPercentile(counts, totalCount, 100.0D) / 1000.0D);
+  }
+}
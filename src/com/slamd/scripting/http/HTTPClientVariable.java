@@ -23,6 +23,7 @@ import javax.net.ssl.SSLSocketFactory;
 
 import com.slamd.common.JSSEBlindTrustSocketFactory;
 import com.slamd.http.HTTPClient;
+import com.slamd.http.HTTPConnectionPool;
 import com.slamd.http.HTTPRequest;
 import com.slamd.http.HTTPResponse;
 import com.slamd.job.JobClass;
@@ -136,6 +137,15 @@ import com.slamd.stat.StatTracker;
  *       should use the HTTP 1.1 KeepAlive feature to allow multiple requests
  *       to be sent over the same connection.  This method does not return a
  *       value.</LI>
+ *   <LI>useConnectionPool(string protocol, int maxConnections,
+ *       int maxConcurrentRequests) -- Specifies that the client should send
+ *       its requests through a pool of persistent connections shared with all
+ *       other HTTP clients on the same SLAMD client that use the same settings.
+ *       The protocol may be "HTTP/1.1", in which case requests will be
+ *       pipelined, or "HTTP/2", in which case they will be multiplexed.  An
+ *       empty protocol will cause the client to use its own connections again.
+ *       This method will return a Boolean value indicating whether the pool
+ *       could be used.</LI>
  *   <LI>useKeepAlive() -- Returns a boolean value that indicates whether the
  *       client will attempt to use HTTP 1.1 KeepAlive requests in order to
  *       re-use established connections.
@@ -658,6 +668,22 @@ public class HTTPClientVariable
 
 
 
+  /**
+   * The name of the method that specifies whether this client should send its
+   * requests through a shared connection pool.
+   */
+  public static final String USE_CONNECTION_POOL_METHOD_NAME =
+       "useconnectionpool";
+
+
+
+  /**
+   * The method number for the "useConnectionPool" method.
+   */
+  public static final int USE_CONNECTION_POOL_METHOD_NUMBER = 34;
+
+
+
   /**
    * The name of the method that indicates whether this client will use
    * keep-alive in order to try to reuse a connection for multiple requests.
@@ -669,7 +695,7 @@ public class HTTPClientVariable
   /**
    * The method number for the "useKeepAlive" method.
    */
-  public static final int USE_KEEPALIVE_METHOD_NUMBER = 34;
+  public static final int USE_KEEPALIVE_METHOD_NUMBER = 35;
 
 
 
@@ -747,6 +773,11 @@ public class HTTPClientVariable
                new String[] { IntegerVariable.INTEGER_VARIABLE_TYPE }, null),
     new Method(SET_USE_KEEPALIVE_METHOD_NAME,
                new String[] { BooleanVariable.BOOLEAN_VARIABLE_TYPE }, null),
+    new Method(USE_CONNECTION_POOL_METHOD_NAME,
+               new String[] { StringVariable.STRING_VARIABLE_TYPE,
+                              IntegerVariable.INTEGER_VARIABLE_TYPE,
+                              IntegerVariable.INTEGER_VARIABLE_TYPE },
+               BooleanVariable.BOOLEAN_VARIABLE_TYPE),
     new Method(USE_KEEPALIVE_METHOD_NAME, new String[0],
                BooleanVariable.BOOLEAN_VARIABLE_TYPE)
   };
@@ -825,6 +856,7 @@ public class HTTPClientVariable
   public void stopStatTrackers()
   {
     statTrackers = httpClient.getStatTrackers();
+    useConnectionPool(null, 0, 0);
   }
 
 
@@ -1145,6 +1177,13 @@ public class HTTPClientVariable
         bv = (BooleanVariable) arguments[0].getArgumentValue();
         httpClient.setUseKeepAlive(bv.getBooleanValue());
         return null;
+      case USE_CONNECTION_POOL_METHOD_NUMBER:
+        sv1 = (StringVariable) arguments[0].getArgumentValue();
+        iv1 = (IntegerVariable) arguments[1].getArgumentValue();
+        IntegerVariable iv2 = (IntegerVariable) arguments[2].getArgumentValue();
+        return new BooleanVariable(useConnectionPool(sv1.getStringValue(),
+                                                     iv1.getIntValue(),
+                                                     iv2.getIntValue()));
       case USE_KEEPALIVE_METHOD_NUMBER:
         return new BooleanVariable(httpClient.useKeepAlive());
       default:
@@ -1157,6 +1196,51 @@ public class HTTPClientVariable
 
 
 
+  /**
+   * Specifies whether the client should send its requests through a shared
+   * connection pool, releasing any pool that it was previously using.
+   *
+   * @param  protocol               The protocol that the pool should use, or
+   *                                {@code null} or an empty string if the
+   *                                client should use its own connections.
+   * @param  maxConnections         The maximum number of connections that the
+   *                                pool should establish to each server.
+   * @param  maxConcurrentRequests  The maximum number of requests that may be
+   *                                outstanding on each pooled connection.
+   *
+   * @return  {@code true} if the requested configuration is in use, or
+   *          {@code false} if the pool could not be obtained.
+   */
+  private boolean useConnectionPool(String protocol, int maxConnections,
+                                    int maxConcurrentRequests)
+  {
+    HTTPConnectionPool pool = httpClient.getConnectionPool();
+    if (pool != null)
+    {
+      httpClient.setConnectionPool(null);
+      pool.release();
+    }
+
+    if ((protocol == null) || (protocol.length() == 0))
+    {
+      return true;
+    }
+
+    try
+    {
+      httpClient.setConnectionPool(HTTPConnectionPool.getSharedInstance(
+           protocol, maxConnections, maxConcurrentRequests));
+      return true;
+    }
+    catch (Exception e)
+    {
+      failureReason = e.toString();
+      return false;
+    }
+  }
+
+
+
   /**
    * Assigns the value of the provided argument to this variable.  The value of
    * the provided argument must be of the same type as this variable.
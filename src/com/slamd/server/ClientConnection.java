@@ -32,23 +32,30 @@ import com.slamd.admin.AccessManager;
 import com.slamd.admin.AdminAccess;
 import com.slamd.common.Constants;
 import com.slamd.common.JobClassLoader;
+import com.slamd.common.JobPackArchive;
 import com.slamd.common.SLAMDException;
 import com.slamd.job.Job;
 import com.slamd.job.JobClass;
 import com.slamd.message.ClassTransferRequestMessage;
 import com.slamd.message.ClassTransferResponseMessage;
 import com.slamd.message.ClientHelloMessage;
+import com.slamd.message.FileStageRequestMessage;
 import com.slamd.message.HelloResponseMessage;
 import com.slamd.message.JobCompletedMessage;
 import com.slamd.message.JobControlRequestMessage;
 import com.slamd.message.JobControlResponseMessage;
+import com.slamd.message.JobPackRequestMessage;
+import com.slamd.message.JobPackResponseMessage;
 import com.slamd.message.JobRequestMessage;
 import com.slamd.message.JobResponseMessage;
 import com.slamd.message.KeepAliveMessage;
 import com.slamd.message.Message;
+import com.slamd.message.RateQuotaMessage;
+import com.slamd.message.RateReportMessage;
 import com.slamd.message.ServerShutdownMessage;
 import com.slamd.message.StatusRequestMessage;
 import com.slamd.message.StatusResponseMessage;
+import com.slamd.parameter.ParameterList;
 
 
 
@@ -552,6 +559,27 @@ public class ClientConnection
                                  clientID + " for class " + msg.getClassName());
           sendClassFile(msg);
         }
+        else if (message instanceof JobPackRequestMessage)
+        {
+          // This is a request for the job pack containing a Java class.
+          JobPackRequestMessage msg = (JobPackRequestMessage) message;
+          slamdServer.logMessage(Constants.LOG_LEVEL_CLIENT_DEBUG,
+                                 "Job pack request from client " + clientID +
+                                 " for class " + msg.getClassName());
+          sendJobPack(msg);
+        }
+        else if (message instanceof RateReportMessage)
+        {
+          // This is a report of the rate achieved for a job using coordinated
+          // rate limiting.  Reply with the client's new share of the rate.
+          RateReportMessage msg = (RateReportMessage) message;
+          Job job = jobInProgress;
+          if ((job != null) && msg.getJobID().equals(job.getJobID()))
+          {
+            RateQuotaMessage quotaMsg = job.handleRateReport(this, msg);
+            writeElement(quotaMsg.encode());
+          }
+        }
       }
       catch (InterruptedIOException iioe)
       {
@@ -713,6 +741,61 @@ public class ClientConnection
 
 
 
+  /**
+   * Sends a job pack response message to the client.  If the requested class is
+   * contained in a job pack archive, then the response will include the hash
+   * of that archive, and also its contents unless the client already has it.
+   * Otherwise, the response code will indicate that the class was not found so
+   * that the client can request the class by itself.
+   *
+   * @param  packRequest  The job pack request message for which the response
+   *                      is to be provided.
+   */
+  public void sendJobPack(JobPackRequestMessage packRequest)
+  {
+    String className = packRequest.getClassName();
+    JobPackArchive archive =
+         slamdServer.getJobPackRepository().getArchiveForClass(className);
+    if (archive == null)
+    {
+      sendMessage(new JobPackResponseMessage(packRequest.getMessageID(),
+                           Constants.MESSAGE_RESPONSE_CLASS_NOT_FOUND,
+                           className, "", new byte[0]));
+      return;
+    }
+
+    String hash = archive.getHash();
+    if (packRequest.getCachedHashes().contains(hash))
+    {
+      sendMessage(new JobPackResponseMessage(packRequest.getMessageID(),
+                           Constants.MESSAGE_RESPONSE_SUCCESS, className, hash,
+                           new byte[0]));
+      return;
+    }
+
+    try
+    {
+      byte[] packData = archive.readData();
+      slamdServer.logMessage(Constants.LOG_LEVEL_CLIENT_DEBUG,
+                             "Sending job pack " + hash + " (" +
+                             packData.length + " bytes) to client " +
+                             clientID);
+      sendMessage(new JobPackResponseMessage(packRequest.getMessageID(),
+                           Constants.MESSAGE_RESPONSE_SUCCESS, className, hash,
+                           packData));
+    }
+    catch (Exception e)
+    {
+      slamdServer.logMessage(Constants.LOG_LEVEL_EXCEPTION_DEBUG,
+                             JobClass.stackTraceToString(e));
+      sendMessage(new JobPackResponseMessage(packRequest.getMessageID(),
+                           Constants.MESSAGE_RESPONSE_SERVER_ERROR, className,
+                           "", new byte[0]));
+    }
+  }
+
+
+
   /**
    * Retrieves the message ID to use in the next message originating from the
    * server.
@@ -819,6 +902,35 @@ public class ClientConnection
 
 
 
+  /**
+   * Asks the client to stage the files referenced by the provided parameters
+   * into its file cache ahead of a job's start time.  No response is expected.
+   *
+   * @param  jobID       The ID of the job with which the files are associated.
+   * @param  parameters  The file URL parameters whose files should be staged.
+   */
+  public void sendFileStageRequest(String jobID, ParameterList parameters)
+  {
+    FileStageRequestMessage request =
+         new FileStageRequestMessage(getMessageID(), jobID, parameters);
+
+    try
+    {
+      writeElement(request.encode());
+      slamdServer.logMessage(Constants.LOG_LEVEL_CLIENT_DEBUG,
+                             "Sent file stage request to client " + clientID +
+                             " -- " + request.toString());
+    }
+    catch (IOException ioe)
+    {
+      slamdServer.logMessage(Constants.LOG_LEVEL_CLIENT_DEBUG,
+                             "Could not send file stage request to client " +
+                             clientID + ":  " + ioe);
+    }
+  }
+
+
+
   /**
    * Sends a job request message to the client.
    *
@@ -856,14 +968,17 @@ public class ClientConnection
     int messageID = getMessageID();
     String jobID = job.getJobID();
 
+    Date stopTime = job.getStopTime();
     JobRequestMessage request =
          new JobRequestMessage(messageID, jobID, job.getJobClassName(),
-                               job.getStartTime(), job.getStopTime(),
+                               job.getStartTime().getTime(),
+                               ((stopTime == null) ? 0 : stopTime.getTime()),
                                clientNumber, job.getDuration(),
                                job.getThreadsPerClient(),
                                job.getThreadStartupDelay(),
                                job.getCollectionInterval(),
-                               job.getParameterList());
+                               job.getParameterList(),
+                               job.getProfileSettings());
 
     try
     {
@@ -1229,8 +1344,13 @@ public class ClientConnection
   void writeElement(final ASN1Element element)
        throws IOException
   {
-    ASN1Writer.writeElement(element, outputStream);
-    outputStream.flush();
+    // Multiple threads may send messages to the client, so make sure that
+    // they can't interleave.
+    synchronized (outputStream)
+    {
+      ASN1Writer.writeElement(element, outputStream);
+      outputStream.flush();
+    }
   }
 }
 
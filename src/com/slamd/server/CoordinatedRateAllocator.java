@@ -0,0 +1,327 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.server;
+
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import com.slamd.common.Constants;
+
+
+
+/**
+ * This class divides the aggregate rate requested for a job among the clients
+ * that are running it.  Each client periodically reports the rate that it has
+ * achieved, and the allocator uses a water-filling approach to assign quotas:
+ * a client that fell short of its last quota is assumed to be unable to go
+ * much faster and is capped slightly above what it achieved, and whatever it
+ * could not use is divided evenly among the clients that kept up.  The
+ * shares of scheduled clients that have not yet reported are held back rather
+ * than handed to the clients that reported first, so the aggregate rate is
+ * not exceeded while the job is starting.  Clients that stop reporting are
+ * dropped so that their share is redistributed.
+ */
+public class CoordinatedRateAllocator
+{
+  /**
+   * The fraction of its quota that a client must achieve to be considered
+   * able to handle more load.
+   */
+  private static final double SATURATION_FRACTION = 0.95D;
+
+
+
+  /**
+   * The factor by which the achieved rate of a client that could not keep up
+   * will be multiplied to determine its cap, which allows it to recover if it
+   * was only temporarily slow.
+   */
+  private static final double HEADROOM_FACTOR = 1.25D;
+
+
+
+  /**
+   * The number of report intervals without a report after which a client will
+   * be considered to have dropped out.
+   */
+  private static final int STALE_INTERVALS = 3;
+
+
+
+  // The aggregate rate, in operations per second, to maintain across all
+  // clients.
+  private final long aggregateRate;
+
+  // The state for each of the clients that has reported, indexed by client ID.
+  private final LinkedHashMap<String,ClientRateState> clientStates;
+
+  // The number of clients that have been dropped because they stopped
+  // reporting or were removed.
+  private int droppedClients;
+
+  // The number of clients scheduled to run the job.
+  private final int scheduledClients;
+
+  // The job with which this allocator is associated.
+  private final String jobID;
+
+  // The server used for logging.
+  private final SLAMDServer slamdServer;
+
+
+
+  /**
+   * Creates a new coordinated rate allocator with the provided information.
+   *
+   * @param  slamdServer       The SLAMD server used for logging.
+   * @param  jobID             The ID of the job with which this allocator is
+   *                           associated.
+   * @param  aggregateRate     The aggregate rate, in operations per second,
+   *                           to maintain across all clients.
+   * @param  scheduledClients  The number of clients scheduled to run the job.
+   */
+  public CoordinatedRateAllocator(SLAMDServer slamdServer, String jobID,
+                                  long aggregateRate, int scheduledClients)
+  {
+    this.slamdServer      = slamdServer;
+    this.jobID            = jobID;
+    this.aggregateRate    = aggregateRate;
+    this.scheduledClients = scheduledClients;
+
+    clientStates   = new LinkedHashMap<String,ClientRateState>();
+    droppedClients = 0;
+  }
+
+
+
+  /**
+   * Retrieves the aggregate rate that this allocator is trying to maintain.
+   *
+   * @return  The aggregate rate that this allocator is trying to maintain.
+   */
+  public long getAggregateRate()
+  {
+    return aggregateRate;
+  }
+
+
+
+  /**
+   * Retrieves the number of clients among which the aggregate rate is
+   * currently divided.
+   *
+   * @return  The number of clients among which the aggregate rate is currently
+   *          divided.
+   */
+  public synchronized int getActiveClientCount()
+  {
+    return clientStates.size();
+  }
+
+
+
+  /**
+   * Records the rate achieved by a client, rebalances the quotas for all
+   * clients, and retrieves the new quota for the reporting client.
+   *
+   * @param  clientID        The ID of the client providing the report.
+   * @param  initialQuota    The quota to assume for the client if it has not
+   *                         reported before.
+   * @param  achievedRate    The rate, in operations per second, that the client
+   *                         achieved over the last interval.
+   * @param  intervalMillis  The length of the interval over which the client
+   *                         reports its rate, in milliseconds.
+   *
+   * @return  The new quota for the reporting client, in operations per second.
+   */
+  public synchronized int reportRate(String clientID, int initialQuota,
+                                     double achievedRate, int intervalMillis)
+  {
+    long now = System.currentTimeMillis();
+
+    ClientRateState state = clientStates.get(clientID);
+    if (state == null)
+    {
+      state = new ClientRateState(clientID, initialQuota);
+      clientStates.put(clientID, state);
+    }
+
+    state.achievedRate   = achievedRate;
+    state.lastReportTime = now;
+
+    long staleMillis = STALE_INTERVALS * Math.max(1000L, intervalMillis);
+    Iterator<ClientRateState> iterator = clientStates.values().iterator();
+    while (iterator.hasNext())
+    {
+      ClientRateState s = iterator.next();
+      if ((now - s.lastReportTime) > staleMillis)
+      {
+        iterator.remove();
+        droppedClients++;
+        slamdServer.logMessage(Constants.LOG_LEVEL_JOB_PROCESSING,
+             "Client " + s.clientID + " has not reported its rate for job " +
+             jobID + " recently.  Redistributing its share of the aggregate " +
+             "rate among the remaining " + clientStates.size() + " clients.");
+      }
+    }
+
+    rebalance();
+    return state.quota;
+  }
+
+
+
+  /**
+   * Removes the specified client from the set of clients among which the
+   * aggregate rate is divided, so that its share will be redistributed.
+   *
+   * @param  clientID  The ID of the client to remove.
+   */
+  public synchronized void removeClient(String clientID)
+  {
+    if (clientStates.remove(clientID) != null)
+    {
+      droppedClients++;
+      rebalance();
+    }
+  }
+
+
+
+  /**
+   * Recomputes the quotas for all clients.
+   */
+  private void rebalance()
+  {
+    int numClients = clientStates.size();
+    if (numClients == 0)
+    {
+      return;
+    }
+
+    List<ClientRateState> states =
+         new ArrayList<ClientRateState>(clientStates.values());
+    for (ClientRateState s : states)
+    {
+      if (s.achievedRate >= (SATURATION_FRACTION * s.quota))
+      {
+        s.cap = Double.MAX_VALUE;
+      }
+      else
+      {
+        s.cap = Math.max(1.0D, HEADROOM_FACTOR * s.achievedRate);
+      }
+    }
+
+    Collections.sort(states, new Comparator<ClientRateState>()
+    {
+      /**
+       * Orders the provided client states by increasing cap.
+       *
+       * @param  s1  The first client state to compare.
+       * @param  s2  The second client state to compare.
+       *
+       * @return  A negative value, zero, or a positive value if the first
+       *          state's cap is less than, equal to, or greater than the
+       *          second state's cap.
+       */
+      @Override()
+      public int compare(ClientRateState s1, ClientRateState s2)
+      {
+        return Double.compare(s1.cap, s2.cap);
+      }
+    });
+
+
+    // Hold back an even share for each scheduled client that has not reported
+    // yet, so that the clients that report first do not exceed the aggregate.
+    int expectedClients =
+         Math.max(numClients, (scheduledClients - droppedClients));
+    double remaining = ((double) aggregateRate) * numClients / expectedClients;
+
+
+    // Give each client the smaller of its cap and an even share of what is
+    // left.  Because the clients are sorted by cap, anything a constrained
+    // client cannot use flows to the clients that come after it.
+    for (int i=0; i < numClients; i++)
+    {
+      ClientRateState s = states.get(i);
+      double share = remaining / (numClients - i);
+      double quota = Math.min(s.cap, share);
+      s.quota = (int) Math.max(1L, Math.round(quota));
+      remaining -= quota;
+    }
+
+
+    // If every client is constrained, then spread what's left evenly so that
+    // they can all continue to probe for more capacity.
+    if (remaining >= 1.0D)
+    {
+      int extra = (int) Math.ceil(remaining / numClients);
+      for (ClientRateState s : states)
+      {
+        s.quota += extra;
+      }
+    }
+  }
+
+
+
+  /**
+   * This class holds the rate information for a single client.
+   */
+  private static final class ClientRateState
+  {
+    // The rate that the client achieved over its last interval.
+    private double achievedRate;
+
+    // The maximum quota to assign to the client in the current rebalance.
+    private double cap;
+
+    // The quota currently assigned to the client.
+    private int quota;
+
+    // The time that the client last reported its rate.
+    private long lastReportTime;
+
+    // The ID of the client.
+    private final String clientID;
+
+
+
+    /**
+     * Creates a new client rate state with the provided information.
+     *
+     * @param  clientID      The ID of the client.
+     * @param  initialQuota  The quota initially assigned to the client.
+     */
+    private ClientRateState(String clientID, int initialQuota)
+    {
+      this.clientID = clientID;
+
+      quota          = Math.max(1, initialQuota);
+      achievedRate   = 0.0D;
+      cap            = Double.MAX_VALUE;
+      lastReportTime = 0L;
+    }
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.server;
+
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.slamd.common.Constants;
+import com.slamd.common.JobPackArchive;
+import com.slamd.job.JobClass;
+
+
+
+/**
+ * This class maintains the set of job pack archives that the SLAMD server can
+ * provide to clients.  Each job pack installed through the administrative
+ * interface is retained as an archive named with the hash of its contents, so
+ * that clients can retrieve an entire job pack at once and skip the transfer
+ * altogether if they already have the current version.  If more than one
+ * archive contains a given class, the one installed most recently is used.
+ */
+public class JobPackRepository
+{
+  // The archives in the repository, indexed by hash and ordered from the
+  // oldest to the most recently installed.
+  private final LinkedHashMap<String,JobPackArchive> archives;
+
+  // The directory in which the archives are stored.
+  private final File archiveDirectory;
+
+  // The SLAMD server with which this repository is associated.
+  private final SLAMDServer slamdServer;
+
+
+
+  /**
+   * Creates a new job pack repository that will use the job pack archive
+   * directory beneath the provided job class path.  Any archives already in
+   * that directory will be loaded.
+   *
+   * @param  slamdServer  The SLAMD server with which this repository is
+   *                      associated.
+   * @param  classPath    The path to the job class files on the local
+   *                      filesystem.
+   */
+  public JobPackRepository(SLAMDServer slamdServer, String classPath)
+  {
+    this.slamdServer = slamdServer;
+
+    archiveDirectory = new File(classPath, Constants.JOB_PACK_DIRECTORY_NAME);
+    archives         = new LinkedHashMap<String,JobPackArchive>();
+
+    File[] files = archiveDirectory.listFiles();
+    if (files == null)
+    {
+      return;
+    }
+
+    ArrayList<JobPackArchive> archiveList = new ArrayList<JobPackArchive>();
+    for (File f : files)
+    {
+      if (! f.getName().endsWith(JobPackArchive.ARCHIVE_FILE_EXTENSION))
+      {
+        continue;
+      }
+
+      try
+      {
+        archiveList.add(new JobPackArchive(f));
+      }
+      catch (IOException ioe)
+      {
+        slamdServer.logMessage(Constants.LOG_LEVEL_ANY,
+                               "Ignoring invalid job pack archive " +
+                               f.getAbsolutePath() + ":  " + ioe);
+      }
+    }
+
+    while (! archiveList.isEmpty())
+    {
+      JobPackArchive oldest = archiveList.get(0);
+      for (JobPackArchive a : archiveList)
+      {
+        if (a.getFile().lastModified() < oldest.getFile().lastModified())
+        {
+          oldest = a;
+        }
+      }
+
+      archiveList.remove(oldest);
+      archives.put(oldest.getHash(), oldest);
+    }
+  }
+
+
+
+  /**
+   * Adds the provided job pack to this repository, making it the preferred
+   * source for all of the classes that it contains.  Any older archive whose
+   * classes are all contained in the new one will be removed.
+   *
+   * @param  packData  The contents of the job pack JAR file.
+   *
+   * @return  The archive that was added.
+   *
+   * @throws  SLAMDServerException  If a problem occurs while writing the
+   *                                archive.
+   */
+  public synchronized JobPackArchive addJobPack(byte[] packData)
+         throws SLAMDServerException
+  {
+    String hash = JobPackArchive.computeHash(packData);
+    File archiveFile =
+         new File(archiveDirectory,
+                  hash + JobPackArchive.ARCHIVE_FILE_EXTENSION);
+
+    JobPackArchive archive;
+    try
+    {
+      archiveDirectory.mkdirs();
+
+      File tempFile = new File(archiveFile.getPath() + ".tmp");
+      FileOutputStream outputStream = new FileOutputStream(tempFile);
+      try
+      {
+        outputStream.write(packData);
+      }
+      finally
+      {
+        outputStream.close();
+      }
+
+      archiveFile.delete();
+      if (! tempFile.renameTo(archiveFile))
+      {
+        tempFile.delete();
+        throw new IOException("Unable to rename " + tempFile.getPath() +
+                              " to " + archiveFile.getPath());
+      }
+
+      archive = new JobPackArchive(archiveFile);
+    }
+    catch (IOException ioe)
+    {
+      slamdServer.logMessage(Constants.LOG_LEVEL_EXCEPTION_DEBUG,
+                             JobClass.stackTraceToString(ioe));
+      throw new SLAMDServerException("Unable to store job pack archive " +
+                                     archiveFile.getAbsolutePath() + ":  " +
+                                     ioe, ioe);
+    }
+
+
+    // Re-insert the archive so that it becomes the most recent one, and get
+    // rid of any archive that it completely supersedes.
+    archives.remove(hash);
+
+    ArrayList<String> obsoleteHashes = new ArrayList<String>();
+    for (Map.Entry<String,JobPackArchive> e : archives.entrySet())
+    {
+      if (archive.getClassNames().containsAll(e.getValue().getClassNames()))
+      {
+        obsoleteHashes.add(e.getKey());
+      }
+    }
+
+    for (String obsoleteHash : obsoleteHashes)
+    {
+      JobPackArchive obsolete = archives.remove(obsoleteHash);
+      obsolete.getFile().delete();
+    }
+
+    archives.put(hash, archive);
+    return archive;
+  }
+
+
+
+  /**
+   * Retrieves the most recently installed archive that contains the specified
+   * class.
+   *
+   * @param  className  The fully-qualified name of the class to find.
+   *
+   * @return  The most recently installed archive that contains the specified
+   *          class, or {@code null} if no archive contains it.
+   */
+  public synchronized JobPackArchive getArchiveForClass(String className)
+  {
+    JobPackArchive match = null;
+    for (JobPackArchive archive : archives.values())
+    {
+      if (archive.containsClass(className))
+      {
+        match = archive;
+      }
+    }
+
+    return match;
+  }
+}
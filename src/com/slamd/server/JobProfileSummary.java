@@ -0,0 +1,194 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.server;
+
+
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+import com.slamd.common.SLAMDException;
+
+
+
+/**
+ * This class provides a mechanism for merging the flight recordings captured
+ * by each of the clients used to run a job into a single summary of the
+ * methods in which the clients spent the most time.  The summary is based on
+ * the top frame of each execution sample contained in the recordings, so the
+ * number of samples attributed to a method is a reflection of the time spent
+ * executing that method itself rather than the methods that it calls.
+ */
+public final class JobProfileSummary
+{
+  /**
+   * The name of the flight recorder event that holds execution samples.
+   */
+  private static final String EVENT_EXECUTION_SAMPLE = "jdk.ExecutionSample";
+
+
+
+  // The number of execution samples attributed to each method.
+  private final HashMap<String,long[]> methodSamples;
+
+  // The total number of execution samples across all recordings.
+  private long totalSamples;
+
+  // The number of recordings that have been added to this summary.
+  private int numRecordings;
+
+
+
+  /**
+   * Creates a new, empty job profile summary.
+   */
+  public JobProfileSummary()
+  {
+    methodSamples = new HashMap<String,long[]>();
+    totalSamples  = 0L;
+    numRecordings = 0;
+  }
+
+
+
+  /**
+   * Adds the execution samples contained in the provided recording to this
+   * summary.
+   *
+   * @param  profileData  The gzip-compressed flight recording to add to this
+   *                      summary.
+   *
+   * @throws  SLAMDException  If a problem occurs while trying to read the
+   *                          recording.
+   */
+  public synchronized void addRecording(byte[] profileData)
+         throws SLAMDException
+  {
+    File tempFile = null;
+    try
+    {
+      tempFile = File.createTempFile("slamd-profile-", ".jfr");
+      try (GZIPInputStream inputStream =
+                new GZIPInputStream(new ByteArrayInputStream(profileData)))
+      {
+        Files.copy(inputStream, tempFile.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      try (RecordingFile recordingFile = new RecordingFile(tempFile.toPath()))
+      {
+        while (recordingFile.hasMoreEvents())
+        {
+          RecordedEvent event = recordingFile.readEvent();
+          if (! event.getEventType().getName().equals(EVENT_EXECUTION_SAMPLE))
+          {
+            continue;
+          }
+
+          RecordedStackTrace stackTrace = event.getStackTrace();
+          if ((stackTrace == null) || stackTrace.getFrames().isEmpty())
+          {
+            continue;
+          }
+
+          RecordedFrame topFrame = stackTrace.getFrames().get(0);
+          RecordedMethod method = topFrame.getMethod();
+          String methodName = method.getType().getName() + '.' +
+                              method.getName();
+
+          long[] count = methodSamples.get(methodName);
+          if (count == null)
+          {
+            count = new long[1];
+            methodSamples.put(methodName, count);
+          }
+          count[0]++;
+          totalSamples++;
+        }
+      }
+
+      numRecordings++;
+    }
+    catch (Exception | LinkageError e)
+    {
+      throw new SLAMDException("Unable to read the flight recording:  " + e,
+                               e);
+    }
+    finally
+    {
+      if (tempFile != null)
+      {
+        tempFile.delete();
+      }
+    }
+  }
+
+
+
+  /**
+   * Retrieves a set of lines that summarize the methods in which the most
+   * execution samples were captured, in descending order of sample count.
+   *
+   * @param  maxMethods  The maximum number of methods to include in the
+   *                     summary.
+   *
+   * @return  A set of lines that summarize the methods in which the most
+   *          execution samples were captured.
+   */
+  public synchronized List<String> getSummaryLines(int maxMethods)
+  {
+    ArrayList<String> lines = new ArrayList<String>();
+    lines.add("Hot methods from " + totalSamples + " execution samples in " +
+              numRecordings + " client flight recording(s):");
+    if (totalSamples == 0L)
+    {
+      return lines;
+    }
+
+    ArrayList<Map.Entry<String,long[]>> entries =
+         new ArrayList<Map.Entry<String,long[]>>(methodSamples.entrySet());
+    Collections.sort(entries, (e1, e2) ->
+         Long.compare(e2.getValue()[0], e1.getValue()[0]));
+
+    DecimalFormat decimalFormat = new DecimalFormat("0.00");
+    int numLines = Math.min(maxMethods, entries.size());
+    for (int i=0; i < numLines; i++)
+    {
+      Map.Entry<String,long[]> entry = entries.get(i);
+      long count = entry.getValue()[0];
+      lines.add("  " + decimalFormat.format(100.0 * count / totalSamples) +
+                "% (" + count + ")  " + entry.getKey());
+    }
+
+    return lines;
+  }
+}
+
@@ -102,6 +102,10 @@ public class SLAMDServer
   private Scheduler scheduler;
 
 
+  // The repository of job pack archives that may be sent to clients.
+  private JobPackRepository jobPackRepository;
+
+
   // The SLAMD mailer.
   private SMTPMailer mailer;
 
@@ -594,6 +598,24 @@ public class SLAMDServer
 
 
 
+  /**
+   * Retrieves the repository of job pack archives that may be sent to clients.
+   * It will be created the first time this method is called.
+   *
+   * @return  The repository of job pack archives that may be sent to clients.
+   */
+  public synchronized JobPackRepository getJobPackRepository()
+  {
+    if (jobPackRepository == null)
+    {
+      jobPackRepository = new JobPackRepository(this, getClassPath());
+    }
+
+    return jobPackRepository;
+  }
+
+
+
   /**
    * Retrieves the set of job classes defined for use in the configuration
    * directory.
@@ -21,6 +21,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -39,6 +40,7 @@ import com.slamd.job.OptimizingJob;
 import com.slamd.job.UnableToRunException;
 import com.slamd.jobs.utility.NoOpJob;
 import com.slamd.common.Constants;
+import com.slamd.parameter.FileURLParameter;
 import com.slamd.parameter.IntegerParameter;
 import com.slamd.parameter.Parameter;
 import com.slamd.parameter.ParameterList;
@@ -97,6 +99,10 @@ public final class Scheduler
   // requests should be sent to the clients.
   private int startBuffer;
 
+  // The time in milliseconds before the job's actual start time that clients
+  // should be asked to stage the files referenced by the job.
+  private int fileStageLeadTime;
+
   // A queue that will be used to provide new jobs to be scheduled.
   private final LinkedBlockingQueue<Job> toScheduleQueue;
 
@@ -122,6 +128,10 @@ public final class Scheduler
   private final LinkedHashMap<String,Job> runningJobs;
   private final ArrayList<Job> recentlyCompletedJobs;
 
+  // The IDs of the pending jobs for which file stage requests have already
+  // been sent.
+  private final HashSet<String> stagedJobIDs;
+
   // A list that will be used to hold any optimizing jobs that might be
   // associated with pending or running jobs.
   private final HashMap<String,OptimizingJob> optimizingJobs;
@@ -181,6 +191,9 @@ public final class Scheduler
     dateFormat            = new SimpleDateFormat(
                                      Constants.ATTRIBUTE_DATE_FORMAT);
     startBuffer           = Constants.DEFAULT_SCHEDULER_START_BUFFER;
+    fileStageLeadTime     =
+         1000 * Constants.DEFAULT_SCHEDULER_FILE_STAGE_LEAD_TIME;
+    stagedJobIDs          = new HashSet<String>();
     schedulerDelay        = Constants.DEFAULT_SCHEDULER_DELAY;
     schedulerMutex        = new Object();
     pendingJobs           = new LinkedHashMap<String,Job>();
@@ -377,6 +390,11 @@ public final class Scheduler
     }
 
 
+    // Determine how much before the job's start time that clients should be
+    // asked to stage the files referenced by the job.
+    readFileStageLeadTime();
+
+
     // Determine how much time in milliseconds should pass between iterations
     // through the scheduler loop
     final String delayStr =
@@ -1632,6 +1650,8 @@ public final class Scheduler
       long earliestCompareTime = compareTime + schedulerDelay;
       synchronized (schedulerMutex)
       {
+        stagedJobIDs.retainAll(pendingJobs.keySet());
+
         boolean started = false;
         final Iterator<Job> pendingIterator = pendingJobs.values().iterator();
         while (pendingIterator.hasNext())
@@ -1648,6 +1668,13 @@ public final class Scheduler
           }
 
           final long jobStartTime = job.getStartTime().getTime();
+          if ((fileStageLeadTime > 0) &&
+              (jobStartTime <= (startTime + fileStageLeadTime)) &&
+              stagedJobIDs.add(job.getJobID()))
+          {
+            stageFiles(job);
+          }
+
           if (jobStartTime <= compareTime)
           {
             // See if this job has any unresolved dependencies.  If so, then
@@ -2067,11 +2094,21 @@ public final class Scheduler
               "job request should be sent to clients.", true,
          (startBuffer/1000), true, 0, false, 0);
 
+    final IntegerParameter fileStageLeadTimeParameter = new IntegerParameter(
+         Constants.PARAM_SCHEDULER_FILE_STAGE_LEAD_TIME,
+         "File Stage Lead Time",
+         "The time in seconds before the job's actual start time that " +
+              "clients should be asked to retrieve the files referenced by " +
+              "the job into their file caches.  A value of zero disables " +
+              "file staging.", true, (fileStageLeadTime/1000), true, 0,
+         false, 0);
+
 
     final Parameter[] params = new Parameter[]
     {
       schedulerDelayParameter,
-      startBufferParameter
+      startBufferParameter,
+      fileStageLeadTimeParameter
     };
     return new ParameterList(params);
   }
@@ -2140,6 +2177,8 @@ public final class Scheduler
       slamdServer.logMessage(Constants.LOG_LEVEL_SCHEDULER_DEBUG,
            "Setting scheduler start buffer to default of " + startBuffer);
     }
+
+    readFileStageLeadTime();
   }
 
 
@@ -2215,6 +2254,89 @@ public final class Scheduler
              "Setting scheduler start buffer to default of " + startBuffer);
       }
     }
+
+    else if (parameterName.equalsIgnoreCase(
+                  Constants.PARAM_SCHEDULER_FILE_STAGE_LEAD_TIME))
+    {
+      readFileStageLeadTime();
+    }
+  }
+
+
+
+  /**
+   * Reads the file stage lead time from the configuration, using the default
+   * if it has not been set.
+   */
+  private void readFileStageLeadTime()
+  {
+    fileStageLeadTime = 1000 * Constants.DEFAULT_SCHEDULER_FILE_STAGE_LEAD_TIME;
+
+    final String leadTimeStr = configDB.getConfigParameter(
+         Constants.PARAM_SCHEDULER_FILE_STAGE_LEAD_TIME);
+    if ((leadTimeStr != null) && (leadTimeStr.length() > 0))
+    {
+      try
+      {
+        fileStageLeadTime = 1000 * Integer.parseInt(leadTimeStr);
+      }
+      catch (final NumberFormatException nfe)
+      {
+        slamdServer.logMessage(Constants.LOG_LEVEL_CONFIG,
+             "Config parameter " +
+             Constants.PARAM_SCHEDULER_FILE_STAGE_LEAD_TIME +
+             " requires a numeric value");
+        slamdServer.logMessage(Constants.LOG_LEVEL_EXCEPTION_DEBUG,
+             JobClass.stackTraceToString(nfe));
+      }
+    }
+  }
+
+
+
+  /**
+   * Asks all connected clients to stage the files referenced by the provided
+   * job into their file caches, if the job references any remote files.  The
+   * clients that will run the job are not chosen until it starts, so every
+   * connected client is asked.  Clients without a file cache ignore the
+   * request.
+   *
+   * @param  job  The job whose files should be staged.
+   */
+  private void stageFiles(final Job job)
+  {
+    final ArrayList<Parameter> fileParams = new ArrayList<Parameter>();
+    final ParameterList jobParams = job.getParameterList();
+    if (jobParams != null)
+    {
+      for (final Parameter p : jobParams.getParameters())
+      {
+        if ((p instanceof FileURLParameter) && p.hasValue() &&
+            (((FileURLParameter) p).getURLType() !=
+             FileURLParameter.URL_TYPE_FILE))
+        {
+          fileParams.add(p);
+        }
+      }
+    }
+
+    if (fileParams.isEmpty())
+    {
+      return;
+    }
+
+    final Parameter[] paramArray = new Parameter[fileParams.size()];
+    final ParameterList stageParams =
+         new ParameterList(fileParams.toArray(paramArray));
+    final ClientConnection[] conns = listener.getConnectionList();
+    for (final ClientConnection conn : conns)
+    {
+      conn.sendFileStageRequest(job.getJobID(), stageParams);
+    }
+
+    slamdServer.logMessage(Constants.LOG_LEVEL_JOB_PROCESSING,
+         "Asked " + conns.length + " client(s) to stage " + fileParams.size() +
+         " file(s) for job " + job.getJobID());
   }
 }
 
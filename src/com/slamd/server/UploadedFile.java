@@ -17,8 +17,10 @@ package com.slamd.server;
 
 
 
+import java.util.ArrayList;
+
 import com.unboundid.asn1.ASN1Element;
-import com.unboundid.asn1.ASN1Integer;
+import com.unboundid.asn1.ASN1Long;
 import com.unboundid.asn1.ASN1OctetString;
 import com.unboundid.asn1.ASN1Sequence;
 
@@ -28,7 +30,10 @@ import com.slamd.db.DecodeException;
 
 /**
  * This class defines a data type to hold information about a file that has been
- * uploaded and stored in the SLAMD configuration directory.
+ * uploaded and stored in the SLAMD configuration directory.  The file data may
+ * either be held in the uploaded file itself, or stored separately in a
+ * sequence of chunks identified by the data ID so that large files do not need
+ * to be held in memory all at once.
  *
  *
  * @author   Neil A. Wilson
@@ -71,8 +76,17 @@ public class UploadedFile
 
 
 
+  /**
+   * The name of the encoded element that holds the identifier for file data
+   * that is stored separately in chunks.
+   */
+  public static final String ELEMENT_DATA_ID = "data_id";
+
+
+
   private byte[] fileData;
-  private int    fileSize;
+  private long   fileSize;
+  private String dataID;
   private String fileDescription;
   private String fileName;
   private String fileType;
@@ -88,7 +102,7 @@ public class UploadedFile
    * @param  fileSize         The size of the file in bytes.
    * @param  fileDescription  A brief description of the file.
    */
-  public UploadedFile(String fileName, String fileType, int fileSize,
+  public UploadedFile(String fileName, String fileType, long fileSize,
                       String fileDescription)
   {
     this.fileName        = fileName;
@@ -96,6 +110,7 @@ public class UploadedFile
     this.fileSize        = fileSize;
     this.fileDescription = fileDescription;
     this.fileData        = null;
+    this.dataID          = null;
   }
 
 
@@ -109,7 +124,7 @@ public class UploadedFile
    * @param  fileDescription  A brief description of the file.
    * @param  fileData         The actual data contained in the file.
    */
-  public UploadedFile(String fileName, String fileType, int fileSize,
+  public UploadedFile(String fileName, String fileType, long fileSize,
                       String fileDescription, byte[] fileData)
   {
     this.fileName        = fileName;
@@ -117,6 +132,7 @@ public class UploadedFile
     this.fileSize        = fileSize;
     this.fileDescription = fileDescription;
     this.fileData        = fileData;
+    this.dataID          = null;
   }
 
 
@@ -162,7 +178,7 @@ public class UploadedFile
    *
    * @return  The size of the file in bytes.
    */
-  public int getFileSize()
+  public long getFileSize()
   {
     return fileSize;
   }
@@ -206,6 +222,34 @@ public class UploadedFile
 
 
 
+  /**
+   * Retrieves the identifier for the file data if it is stored separately in
+   * chunks rather than in this uploaded file.
+   *
+   * @return  The identifier for the file data, or {@code null} if the data is
+   *          not stored in chunks.
+   */
+  public String getDataID()
+  {
+    return dataID;
+  }
+
+
+
+  /**
+   * Specifies the identifier for the file data if it is stored separately in
+   * chunks rather than in this uploaded file.
+   *
+   * @param  dataID  The identifier for the file data, or {@code null} if the
+   *                 data is not stored in chunks.
+   */
+  public void setDataID(String dataID)
+  {
+    this.dataID = dataID;
+  }
+
+
+
   /**
    * Encodes information about this uploaded file into a byte array.
    *
@@ -213,21 +257,28 @@ public class UploadedFile
    */
   public byte[] encode()
   {
-    ASN1Element[] elements = new ASN1Element[]
+    ArrayList<ASN1Element> elementList = new ArrayList<ASN1Element>(12);
+    elementList.add(new ASN1OctetString(ELEMENT_NAME));
+    elementList.add(new ASN1OctetString(fileName));
+    elementList.add(new ASN1OctetString(ELEMENT_SIZE));
+    elementList.add(new ASN1Long(fileSize));
+    elementList.add(new ASN1OctetString(ELEMENT_TYPE));
+    elementList.add(new ASN1OctetString(fileType));
+    elementList.add(new ASN1OctetString(ELEMENT_DESCRIPTION));
+    elementList.add(new ASN1OctetString(fileDescription));
+
+    if (dataID == null)
     {
-      new ASN1OctetString(ELEMENT_NAME),
-      new ASN1OctetString(fileName),
-      new ASN1OctetString(ELEMENT_SIZE),
-      new ASN1Integer(fileSize),
-      new ASN1OctetString(ELEMENT_TYPE),
-      new ASN1OctetString(fileType),
-      new ASN1OctetString(ELEMENT_DESCRIPTION),
-      new ASN1OctetString(fileDescription),
-      new ASN1OctetString(ELEMENT_DATA),
-      new ASN1OctetString(fileData)
-    };
-
-    return new ASN1Sequence(elements).encode();
+      elementList.add(new ASN1OctetString(ELEMENT_DATA));
+      elementList.add(new ASN1OctetString(fileData));
+    }
+    else
+    {
+      elementList.add(new ASN1OctetString(ELEMENT_DATA_ID));
+      elementList.add(new ASN1OctetString(dataID));
+    }
+
+    return new ASN1Sequence(elementList).encode();
   }
 
 
@@ -248,7 +299,8 @@ public class UploadedFile
     try
     {
       byte[] fileData        = null;
-      int    fileSize        = 0;
+      long   fileSize        = 0L;
+      String dataID          = null;
       String fileDescription = null;
       String fileName        = null;
       String fileType        = null;
@@ -264,7 +316,7 @@ public class UploadedFile
         }
         else if (elementName.equals(ELEMENT_SIZE))
         {
-          fileSize = elements[i+1].decodeAsInteger().intValue();
+          fileSize = elements[i+1].decodeAsLong().longValue();
         }
         else if (elementName.equals(ELEMENT_TYPE))
         {
@@ -279,10 +331,16 @@ public class UploadedFile
         {
           fileData = elements[i+1].decodeAsOctetString().getValue();
         }
+        else if (elementName.equals(ELEMENT_DATA_ID))
+        {
+          dataID = elements[i+1].decodeAsOctetString().stringValue();
+        }
       }
 
-      return new UploadedFile(fileName, fileType, fileSize, fileDescription,
-                              fileData);
+      UploadedFile file = new UploadedFile(fileName, fileType, fileSize,
+                                           fileDescription, fileData);
+      file.setDataID(dataID);
+      return file;
     }
     catch (Exception e)
     {
@@ -308,7 +366,8 @@ public class UploadedFile
   {
     try
     {
-      int    fileSize        = 0;
+      long   fileSize        = 0L;
+      String dataID          = null;
       String fileDescription = null;
       String fileName        = null;
       String fileType        = null;
@@ -324,7 +383,7 @@ public class UploadedFile
         }
         else if (elementName.equals(ELEMENT_SIZE))
         {
-          fileSize = elements[i+1].decodeAsInteger().intValue();
+          fileSize = elements[i+1].decodeAsLong().longValue();
         }
         else if (elementName.equals(ELEMENT_TYPE))
         {
@@ -335,9 +394,16 @@ public class UploadedFile
           fileDescription =
                elements[i+1].decodeAsOctetString().stringValue();
         }
+        else if (elementName.equals(ELEMENT_DATA_ID))
+        {
+          dataID = elements[i+1].decodeAsOctetString().stringValue();
+        }
       }
 
-      return new UploadedFile(fileName, fileType, fileSize, fileDescription);
+      UploadedFile file =
+           new UploadedFile(fileName, fileType, fileSize, fileDescription);
+      file.setDataID(dataID);
+      return file;
     }
     catch (Exception e)
     {
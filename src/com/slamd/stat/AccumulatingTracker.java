@@ -45,7 +45,7 @@ import com.slamd.parameter.ParameterList;
  * @author   Neil A. Wilson
  */
 public class AccumulatingTracker
-       implements StatTracker
+       implements AppendableStatTracker
 {
   // The list that contains the data collected by this tracker, broken up into
   // intervals.
@@ -1003,11 +1003,38 @@ public class AccumulatingTracker
    */
   public byte[] encode()
   {
-    ASN1Element[] elements = new ASN1Element[totalList.size()];
+    return encodeIntervals(0, totalList.size());
+  }
+
+
+
+  /**
+   * Encodes the data for the specified range of completed intervals into a
+   * byte array, using the same format as the <CODE>encode</CODE> method.
+   *
+   * @param  firstInterval  The position of the first interval to encode.
+   * @param  endInterval    The position immediately after the last interval to
+   *                        encode.
+   *
+   * @return  The data for the specified range of intervals encoded as a byte
+   *          array.
+   */
+  public byte[] encodeIntervals(int firstInterval, int endInterval)
+  {
+    if (StatEncoder.useCompactEncoding())
+    {
+      int numIntervals = endInterval - firstInterval;
+      CompactStatWriter writer = new CompactStatWriter(2*numIntervals + 8);
+      writer.writeVarint(numIntervals);
+      writer.writeIntDeltas(totalList, firstInterval, endInterval);
+      return writer.toByteArray();
+    }
+
+    ASN1Element[] elements = new ASN1Element[endInterval - firstInterval];
 
     for (int i=0; i < elements.length; i++)
     {
-      elements[i] = new ASN1Integer(totalList.get(i));
+      elements[i] = new ASN1Integer(totalList.get(firstInterval+i));
     }
 
     return new ASN1Sequence(elements).encode();
@@ -1027,6 +1054,12 @@ public class AccumulatingTracker
   public void decode(byte[] encodedData)
     throws SLAMDException
   {
+    if (CompactStatReader.isCompact(encodedData))
+    {
+      decodeCompact(encodedData);
+      return;
+    }
+
     try
     {
       ASN1Element[] elements =
@@ -1050,6 +1083,50 @@ public class AccumulatingTracker
 
 
 
+  /**
+   * Decodes the provided data, which has been written in the compact format,
+   * and uses it as the data for this stat tracker.
+   *
+   * @param  encodedData  The encoded version of the data to use for this stat
+   *                      tracker.
+   *
+   * @throws  SLAMDException  If the provided data cannot be decoded.
+   */
+  private void decodeCompact(byte[] encodedData)
+          throws SLAMDException
+  {
+    CompactStatReader reader = new CompactStatReader(encodedData);
+    totalList  = reader.readIntDeltas(reader.readCount(1));
+    totalCount = (totalList.isEmpty() ? 0 : totalList.get(totalList.size()-1));
+  }
+
+
+
+  /**
+   * Decodes the provided data, which must have been created by the
+   * <CODE>encodeIntervals</CODE> method, and appends the intervals that it
+   * contains to the data already held in this stat tracker.
+   *
+   * @param  encodedData  The encoded data for the intervals to append.
+   *
+   * @throws  SLAMDException  If the provided data cannot be decoded and
+   *                          appended to this stat tracker.
+   */
+  public void appendIntervals(byte[] encodedData)
+         throws SLAMDException
+  {
+    AccumulatingTracker tracker = new AccumulatingTracker();
+    tracker.decode(encodedData);
+
+    if (! tracker.totalList.isEmpty())
+    {
+      totalList.addAll(tracker.totalList);
+      totalCount = tracker.totalCount;
+    }
+  }
+
+
+
   /**
    * Retrieves the set of parameters that may be specified to customize the
    * graph that is generated based on the statistical information in the stat
@@ -0,0 +1,76 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.stat;
+
+
+
+import com.slamd.common.SLAMDException;
+
+
+
+/**
+ * This interface defines a set of methods that may be implemented by stat
+ * trackers that keep their data as a list of values for each completed
+ * collection interval, so that the data for a range of intervals may be encoded
+ * on its own and later appended to another instance.  This allows the client to
+ * persist only the intervals that have completed since the last time the data
+ * was written, rather than the entire contents of the tracker.
+ * <BR><BR>
+ * The encoding for a range of intervals must use the same format as the
+ * <CODE>encode</CODE> method, so that the encoded data for all intervals may be
+ * provided to the <CODE>decode</CODE> method.  Any summary values that are not
+ * associated with a particular interval (for example, the minimum and maximum
+ * values observed) should reflect the state of the tracker at the time the
+ * range was encoded.
+ * <BR><BR>
+ * Because the intervals may be encoded by a different thread than the one
+ * updating the tracker, implementations that keep more than one list of values
+ * for each interval should update the list used to determine the number of
+ * intervals last, so that every interval that it reports is complete.
+ */
+public interface AppendableStatTracker
+       extends StatTracker
+{
+  /**
+   * Encodes the data for the specified range of completed intervals into a
+   * byte array.  The number of intervals reported by the
+   * <CODE>getNumIntervals</CODE> method must be obtained before calling this
+   * method so that the range only includes intervals that have completed.
+   *
+   * @param  firstInterval  The position of the first interval to encode.
+   * @param  endInterval    The position immediately after the last interval to
+   *                        encode.
+   *
+   * @return  The data for the specified range of intervals encoded as a byte
+   *          array.
+   */
+  byte[] encodeIntervals(int firstInterval, int endInterval);
+
+
+
+  /**
+   * Decodes the provided data, which must have been created by the
+   * <CODE>encodeIntervals</CODE> method, and appends the intervals that it
+   * contains to the data already held in this stat tracker.
+   *
+   * @param  encodedData  The encoded data for the intervals to append.
+   *
+   * @throws  SLAMDException  If the provided data cannot be decoded and
+   *                          appended to this stat tracker.
+   */
+  void appendIntervals(byte[] encodedData)
+       throws SLAMDException;
+}
@@ -455,7 +455,11 @@ public class CategoricalTracker
 
         for (int j=0; j < countList.size(); j++)
         {
-          total += countList.get(j)[i];
+          int[] counts = countList.get(j);
+          if (i < counts.length)
+          {
+            total += counts[i];
+          }
         }
 
         return total;
@@ -482,9 +486,12 @@ public class CategoricalTracker
 
     for (int i=0; i < countList.size(); i++)
     {
-      for (int j=0; j < categoryNames.length; j++)
+      // Intervals that ended before a category was first seen will not have a
+      // count for it.
+      int[] counts = countList.get(i);
+      for (int j=0; j < counts.length; j++)
       {
-        totalCounts[j] += countList.get(i)[j];
+        totalCounts[j] += counts[j];
       }
     }
 
@@ -554,7 +561,11 @@ public class CategoricalTracker
 
         for (int j=0; j < counts.length; j++)
         {
-          counts[j] = countList.get(j)[i];
+          int[] interval = countList.get(j);
+          if (i < interval.length)
+          {
+            counts[j] = interval[i];
+          }
         }
 
         return counts;
@@ -613,7 +624,7 @@ public class CategoricalTracker
            new ArrayList<>(countList.size());
       for (int[] counts : countList)
       {
-        countPerInterval.add(counts[i]);
+        countPerInterval.add((i < counts.length) ? counts[i] : 0);
       }
 
       final CategoricalTrackerCategoryData d =
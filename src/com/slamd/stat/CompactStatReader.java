@@ -0,0 +1,343 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.stat;
+
+
+
+import java.util.ArrayList;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.slamd.common.SLAMDException;
+
+
+
+/**
+ * This class provides a mechanism for reading stat tracker data that has been
+ * written in the compact format by a {@code CompactStatWriter}.
+ */
+public final class CompactStatReader
+{
+  // The payload being read.
+  private final byte[] buffer;
+
+  // The position of the next byte to read.
+  private int pos;
+
+
+
+  /**
+   * Creates a new compact stat reader for the provided encoded data.
+   *
+   * @param  encodedData  The encoded data to read, including the format
+   *                      header.
+   *
+   * @throws  SLAMDException  If the provided data is not in a supported
+   *                          compact format or cannot be decompressed.
+   */
+  public CompactStatReader(byte[] encodedData)
+         throws SLAMDException
+  {
+    if (! isCompact(encodedData))
+    {
+      throw new SLAMDException("The provided data is not in a supported " +
+                               "compact stat encoding format.");
+    }
+
+    if ((encodedData[1] & CompactStatWriter.FLAG_DEFLATE) == 0)
+    {
+      buffer = encodedData;
+      pos    = 2;
+    }
+    else
+    {
+      buffer = inflate(encodedData);
+      pos    = 0;
+    }
+  }
+
+
+
+  /**
+   * Indicates whether the provided data appears to have been written in a
+   * supported compact format rather than the original ASN.1 format.
+   *
+   * @param  encodedData  The encoded data to examine.
+   *
+   * @return  {@code true} if the provided data appears to have been written in
+   *          a supported compact format, or {@code false} if not.
+   */
+  public static boolean isCompact(byte[] encodedData)
+  {
+    return ((encodedData != null) && (encodedData.length >= 2) &&
+            (encodedData[0] == CompactStatWriter.FORMAT_VERSION_1));
+  }
+
+
+
+  /**
+   * Decompresses the payload contained in the provided encoded data.
+   *
+   * @param  encodedData  The encoded data containing the compressed payload.
+   *
+   * @return  The decompressed payload.
+   *
+   * @throws  SLAMDException  If the payload cannot be decompressed.
+   */
+  private static byte[] inflate(byte[] encodedData)
+          throws SLAMDException
+  {
+    long uncompressedLength = 0L;
+    int  offset             = 2;
+    for (int shift=0; ; shift += 7)
+    {
+      if ((offset >= encodedData.length) || (shift > 28))
+      {
+        throw new SLAMDException("Invalid uncompressed stat data length.");
+      }
+
+      byte b = encodedData[offset++];
+      uncompressedLength |= ((long) (b & 0x7F)) << shift;
+      if ((b & 0x80) == 0)
+      {
+        break;
+      }
+    }
+
+    if (uncompressedLength > Integer.MAX_VALUE)
+    {
+      throw new SLAMDException("Invalid uncompressed stat data length " +
+                               uncompressedLength);
+    }
+
+    byte[] uncompressed = new byte[(int) uncompressedLength];
+    Inflater inflater = new Inflater();
+    try
+    {
+      inflater.setInput(encodedData, offset, encodedData.length - offset);
+
+      int inflated = 0;
+      while (inflated < uncompressed.length)
+      {
+        int n = inflater.inflate(uncompressed, inflated,
+                                 uncompressed.length - inflated);
+        if ((n == 0) && (inflater.finished() || inflater.needsInput()))
+        {
+          break;
+        }
+
+        inflated += n;
+      }
+
+      if (inflated != uncompressed.length)
+      {
+        throw new SLAMDException("The compressed stat data ended after " +
+                                 inflated + " of " + uncompressed.length +
+                                 " bytes.");
+      }
+    }
+    catch (DataFormatException dfe)
+    {
+      throw new SLAMDException("Unable to decompress stat data:  " + dfe, dfe);
+    }
+    finally
+    {
+      inflater.end();
+    }
+
+    return uncompressed;
+  }
+
+
+
+  /**
+   * Reads an unsigned variable-length quantity.
+   *
+   * @return  The value that was read.
+   *
+   * @throws  SLAMDException  If the end of the data is reached or the value is
+   *                          too long.
+   */
+  public long readVarint()
+         throws SLAMDException
+  {
+    long value = 0L;
+    for (int shift=0; shift < 64; shift += 7)
+    {
+      if (pos >= buffer.length)
+      {
+        throw new SLAMDException("Unexpected end of compact stat data.");
+      }
+
+      byte b = buffer[pos++];
+      value |= ((long) (b & 0x7F)) << shift;
+      if ((b & 0x80) == 0)
+      {
+        return value;
+      }
+    }
+
+    throw new SLAMDException("Malformed variable-length value in compact " +
+                             "stat data.");
+  }
+
+
+
+  /**
+   * Reads a zig-zag encoded variable-length quantity.
+   *
+   * @return  The value that was read.
+   *
+   * @throws  SLAMDException  If the end of the data is reached or the value is
+   *                          too long.
+   */
+  public long readSignedVarint()
+         throws SLAMDException
+  {
+    long value = readVarint();
+    return ((value >>> 1) ^ -(value & 1L));
+  }
+
+
+
+  /**
+   * Reads a count of values that follow, making sure that it is not larger
+   * than the amount of data remaining.
+   *
+   * @param  bytesPerValue  The minimum number of bytes used by each value.
+   *
+   * @return  The count that was read.
+   *
+   * @throws  SLAMDException  If the count is not valid.
+   */
+  public int readCount(int bytesPerValue)
+         throws SLAMDException
+  {
+    long count = readVarint();
+    if ((count < 0L) ||
+        ((count * bytesPerValue) > (buffer.length - pos)))
+    {
+      throw new SLAMDException("Invalid value count " + count +
+                               " in compact stat data.");
+    }
+
+    return (int) count;
+  }
+
+
+
+  /**
+   * Reads an eight-byte value written in big-endian order.
+   *
+   * @return  The value that was read.
+   *
+   * @throws  SLAMDException  If the end of the data is reached.
+   */
+  public double readDouble()
+         throws SLAMDException
+  {
+    if ((pos + 8) > buffer.length)
+    {
+      throw new SLAMDException("Unexpected end of compact stat data.");
+    }
+
+    long bits = 0L;
+    for (int i=0; i < 8; i++)
+    {
+      bits = (bits << 8) | (buffer[pos++] & 0xFFL);
+    }
+
+    return Double.longBitsToDouble(bits);
+  }
+
+
+
+  /**
+   * Reads the specified number of values written with the
+   * {@code CompactStatWriter.writeIntDeltas} method.
+   *
+   * @param  count  The number of values to read.
+   *
+   * @return  A list containing the values that were read.
+   *
+   * @throws  SLAMDException  If the end of the data is reached.
+   */
+  public ArrayList<Integer> readIntDeltas(int count)
+         throws SLAMDException
+  {
+    ArrayList<Integer> values = new ArrayList<Integer>(count);
+
+    int previous = 0;
+    for (int i=0; i < count; i++)
+    {
+      previous = (int) (previous + readSignedVarint());
+      values.add(previous);
+    }
+
+    return values;
+  }
+
+
+
+  /**
+   * Reads the specified number of values written with the
+   * {@code CompactStatWriter.writeLongDeltas} method.
+   *
+   * @param  count  The number of values to read.
+   *
+   * @return  A list containing the values that were read.
+   *
+   * @throws  SLAMDException  If the end of the data is reached.
+   */
+  public ArrayList<Long> readLongDeltas(int count)
+         throws SLAMDException
+  {
+    ArrayList<Long> values = new ArrayList<Long>(count);
+
+    long previous = 0L;
+    for (int i=0; i < count; i++)
+    {
+      previous += readSignedVarint();
+      values.add(previous);
+    }
+
+    return values;
+  }
+
+
+
+  /**
+   * Reads the specified number of values written with the
+   * {@code CompactStatWriter.writeDoubles} method.
+   *
+   * @param  count  The number of values to read.
+   *
+   * @return  A list containing the values that were read.
+   *
+   * @throws  SLAMDException  If the end of the data is reached.
+   */
+  public ArrayList<Double> readDoubles(int count)
+         throws SLAMDException
+  {
+    ArrayList<Double> values = new ArrayList<Double>(count);
+    for (int i=0; i < count; i++)
+    {
+      values.add(readDouble());
+    }
+
+    return values;
+  }
+}
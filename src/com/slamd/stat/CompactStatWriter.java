@@ -0,0 +1,315 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.stat;
+
+
+
+import java.util.List;
+import java.util.zip.Deflater;
+
+
+
+/**
+ * This class provides a mechanism for writing stat tracker data in a compact
+ * binary format.  Rather than using a separate ASN.1 element for each value,
+ * integer values are written as variable-length quantities (seven bits per
+ * byte, with the high bit set on all but the last byte), and signed values are
+ * zig-zag encoded first so that small negative numbers are also small.  Lists
+ * of per-interval values are written as the difference between each value and
+ * the one before it, which is usually much smaller than the value itself.
+ * <BR><BR>
+ * The encoded data starts with a format version byte that can never be the
+ * first byte of an ASN.1 sequence, so that it may be distinguished from data
+ * written in the original format, followed by a flags byte.  If the payload is
+ * large enough and compression is enabled in the {@code StatEncoder}, then it
+ * will be compressed with the deflate algorithm if that makes it smaller, in
+ * which case the uncompressed length will precede the compressed payload.
+ */
+public final class CompactStatWriter
+{
+  /**
+   * The format version byte for version 1 of the compact encoding.
+   */
+  static final byte FORMAT_VERSION_1 = 0x01;
+
+
+
+  /**
+   * The flag that indicates that the payload has been compressed using the
+   * deflate algorithm.
+   */
+  static final byte FLAG_DEFLATE = 0x01;
+
+
+
+  /**
+   * The minimum payload size in bytes for which compression will be attempted.
+   */
+  private static final int COMPRESSION_THRESHOLD = 512;
+
+
+
+  // The buffer holding the payload written so far.
+  private byte[] buffer;
+
+  // The number of bytes of the buffer that have been used.
+  private int length;
+
+
+
+  /**
+   * Creates a new compact stat writer with a default initial capacity.
+   */
+  public CompactStatWriter()
+  {
+    this(64);
+  }
+
+
+
+  /**
+   * Creates a new compact stat writer with the specified initial capacity.
+   *
+   * @param  initialCapacity  The number of bytes to allocate for the payload
+   *                          initially.  The buffer will grow as needed.
+   */
+  public CompactStatWriter(int initialCapacity)
+  {
+    buffer = new byte[Math.max(16, initialCapacity)];
+    length = 0;
+  }
+
+
+
+  /**
+   * Writes the provided value as an unsigned variable-length quantity.  The
+   * value should not be negative, since negative values always require the
+   * maximum of ten bytes.
+   *
+   * @param  value  The value to write.
+   */
+  public void writeVarint(long value)
+  {
+    ensureCapacity(10);
+
+    while ((value & ~0x7FL) != 0L)
+    {
+      buffer[length++] = (byte) ((value & 0x7FL) | 0x80L);
+      value >>>= 7;
+    }
+
+    buffer[length++] = (byte) value;
+  }
+
+
+
+  /**
+   * Writes the provided value as a zig-zag encoded variable-length quantity.
+   *
+   * @param  value  The value to write.
+   */
+  public void writeSignedVarint(long value)
+  {
+    writeVarint((value << 1) ^ (value >> 63));
+  }
+
+
+
+  /**
+   * Writes the provided value as eight bytes in big-endian order.
+   *
+   * @param  value  The value to write.
+   */
+  public void writeDouble(double value)
+  {
+    ensureCapacity(8);
+
+    long bits = Double.doubleToLongBits(value);
+    for (int shift=56; shift >= 0; shift -= 8)
+    {
+      buffer[length++] = (byte) (bits >>> shift);
+    }
+  }
+
+
+
+  /**
+   * Writes the specified range of the provided list as the difference between
+   * each value and the one before it.  The number of values is not written, so
+   * the caller must write it separately if it is needed for decoding.
+   *
+   * @param  values  The list containing the values to write.
+   * @param  start   The position of the first value to write.
+   * @param  end     The position immediately after the last value to write.
+   */
+  public void writeIntDeltas(List<Integer> values, int start, int end)
+  {
+    int previous = 0;
+    for (int i=start; i < end; i++)
+    {
+      int value = values.get(i);
+      writeSignedVarint(((long) value) - previous);
+      previous = value;
+    }
+  }
+
+
+
+  /**
+   * Writes the specified range of the provided list as the difference between
+   * each value and the one before it.  The number of values is not written, so
+   * the caller must write it separately if it is needed for decoding.
+   *
+   * @param  values  The list containing the values to write.
+   * @param  start   The position of the first value to write.
+   * @param  end     The position immediately after the last value to write.
+   */
+  public void writeLongDeltas(List<Long> values, int start, int end)
+  {
+    // The difference may overflow, but it will wrap back to the correct value
+    // when it is added to the previous value during decoding.
+    long previous = 0L;
+    for (int i=start; i < end; i++)
+    {
+      long value = values.get(i);
+      writeSignedVarint(value - previous);
+      previous = value;
+    }
+  }
+
+
+
+  /**
+   * Writes the specified range of the provided list as a series of eight-byte
+   * values.  The number of values is not written, so the caller must write it
+   * separately if it is needed for decoding.
+   *
+   * @param  values  The list containing the values to write.
+   * @param  start   The position of the first value to write.
+   * @param  end     The position immediately after the last value to write.
+   */
+  public void writeDoubles(List<Double> values, int start, int end)
+  {
+    ensureCapacity(8 * (end - start));
+    for (int i=start; i < end; i++)
+    {
+      writeDouble(values.get(i));
+    }
+  }
+
+
+
+  /**
+   * Retrieves the encoded representation of the data written so far, including
+   * the format header.
+   *
+   * @return  The encoded representation of the data written so far.
+   */
+  public byte[] toByteArray()
+  {
+    if (StatEncoder.compressEncodedData() &&
+        (length >= COMPRESSION_THRESHOLD))
+    {
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try
+      {
+        deflater.setInput(buffer, 0, length);
+        deflater.finish();
+
+        // Leave room for the header and the uncompressed length, and don't
+        // bother with anything that would be larger than the uncompressed data.
+        byte[] compressed = new byte[length];
+        int pos = 7;
+        while ((! deflater.finished()) && (pos < compressed.length))
+        {
+          pos += deflater.deflate(compressed, pos, compressed.length - pos);
+        }
+
+        if (deflater.finished())
+        {
+          int headerLength = 2 + varintLength(length);
+          int payloadLength = pos - 7;
+          byte[] encoded = new byte[headerLength + payloadLength];
+          encoded[0] = FORMAT_VERSION_1;
+          encoded[1] = FLAG_DEFLATE;
+
+          int lengthPos = 2;
+          long remaining = length;
+          while ((remaining & ~0x7FL) != 0L)
+          {
+            encoded[lengthPos++] = (byte) ((remaining & 0x7FL) | 0x80L);
+            remaining >>>= 7;
+          }
+          encoded[lengthPos] = (byte) remaining;
+
+          System.arraycopy(compressed, 7, encoded, headerLength, payloadLength);
+          return encoded;
+        }
+      }
+      finally
+      {
+        deflater.end();
+      }
+    }
+
+    byte[] encoded = new byte[length + 2];
+    encoded[0] = FORMAT_VERSION_1;
+    encoded[1] = 0x00;
+    System.arraycopy(buffer, 0, encoded, 2, length);
+    return encoded;
+  }
+
+
+
+  /**
+   * Ensures that the buffer has room for at least the specified number of
+   * additional bytes.
+   *
+   * @param  needed  The number of additional bytes required.
+   */
+  private void ensureCapacity(int needed)
+  {
+    if ((length + needed) > buffer.length)
+    {
+      byte[] newBuffer =
+           new byte[Math.max(buffer.length * 2, length + needed)];
+      System.arraycopy(buffer, 0, newBuffer, 0, length);
+      buffer = newBuffer;
+    }
+  }
+
+
+
+  /**
+   * Retrieves the number of bytes needed to write the provided value as an
+   * unsigned variable-length quantity.
+   *
+   * @param  value  The value for which to make the determination.
+   *
+   * @return  The number of bytes needed to write the provided value.
+   */
+  private static int varintLength(long value)
+  {
+    int numBytes = 1;
+    while ((value & ~0x7FL) != 0L)
+    {
+      numBytes++;
+      value >>>= 7;
+    }
+
+    return numBytes;
+  }
+}
@@ -44,7 +44,7 @@ import com.slamd.parameter.ParameterList;
  * @author   Neil A. Wilson
  */
 public class IncrementalTracker
-       implements StatTracker
+       implements AppendableStatTracker
 {
   /**
    * The text that will be used to indicate that the comparison between multiple
@@ -1398,11 +1398,38 @@ public class IncrementalTracker
    */
   public byte[] encode()
   {
-    ASN1Element[] elements = new ASN1Element[countList.size()];
+    return encodeIntervals(0, countList.size());
+  }
+
+
+
+  /**
+   * Encodes the data for the specified range of completed intervals into a
+   * byte array, using the same format as the <CODE>encode</CODE> method.
+   *
+   * @param  firstInterval  The position of the first interval to encode.
+   * @param  endInterval    The position immediately after the last interval to
+   *                        encode.
+   *
+   * @return  The data for the specified range of intervals encoded as a byte
+   *          array.
+   */
+  public byte[] encodeIntervals(int firstInterval, int endInterval)
+  {
+    if (StatEncoder.useCompactEncoding())
+    {
+      int numIntervals = endInterval - firstInterval;
+      CompactStatWriter writer = new CompactStatWriter(2*numIntervals + 8);
+      writer.writeVarint(numIntervals);
+      writer.writeIntDeltas(countList, firstInterval, endInterval);
+      return writer.toByteArray();
+    }
+
+    ASN1Element[] elements = new ASN1Element[endInterval - firstInterval];
 
     for (int i=0; i < elements.length; i++)
     {
-      elements[i] = new ASN1Integer(countList.get(i));
+      elements[i] = new ASN1Integer(countList.get(firstInterval+i));
     }
 
     return new ASN1Sequence(elements).encode();
@@ -1422,6 +1449,12 @@ public class IncrementalTracker
   public void decode(byte[] encodedData)
     throws SLAMDException
   {
+    if (CompactStatReader.isCompact(encodedData))
+    {
+      decodeCompact(encodedData);
+      return;
+    }
+
     try
     {
       ASN1Element[] elements =
@@ -1453,6 +1486,70 @@ public class IncrementalTracker
 
 
 
+  /**
+   * Decodes the provided data, which has been written in the compact format,
+   * and uses it as the data for this stat tracker.
+   *
+   * @param  encodedData  The encoded version of the data to use for this stat
+   *                      tracker.
+   *
+   * @throws  SLAMDException  If the provided data cannot be decoded.
+   */
+  private void decodeCompact(byte[] encodedData)
+          throws SLAMDException
+  {
+    CompactStatReader reader = new CompactStatReader(encodedData);
+    countList = reader.readIntDeltas(reader.readCount(1));
+
+    maxPerInterval = 0;
+    minPerInterval = -1;
+    for (int intervalCount : countList)
+    {
+      if (intervalCount > maxPerInterval)
+      {
+        maxPerInterval = intervalCount;
+      }
+      if ((intervalCount < minPerInterval) || (minPerInterval < 0))
+      {
+        minPerInterval = intervalCount;
+      }
+    }
+  }
+
+
+
+  /**
+   * Decodes the provided data, which must have been created by the
+   * <CODE>encodeIntervals</CODE> method, and appends the intervals that it
+   * contains to the data already held in this stat tracker.
+   *
+   * @param  encodedData  The encoded data for the intervals to append.
+   *
+   * @throws  SLAMDException  If the provided data cannot be decoded and
+   *                          appended to this stat tracker.
+   */
+  public void appendIntervals(byte[] encodedData)
+         throws SLAMDException
+  {
+    IncrementalTracker tracker = new IncrementalTracker();
+    tracker.decode(encodedData);
+
+    for (int intervalCount : tracker.countList)
+    {
+      countList.add(intervalCount);
+      if (intervalCount > maxPerInterval)
+      {
+        maxPerInterval = intervalCount;
+      }
+      if ((intervalCount < minPerInterval) || (minPerInterval < 0))
+      {
+        minPerInterval = intervalCount;
+      }
+    }
+  }
+
+
+
   /**
    * Retrieves the set of parameters that may be specified to customize the
    * graph that is generated based on the statistical information in the stat
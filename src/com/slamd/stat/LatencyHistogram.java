@@ -0,0 +1,191 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.stat;
+
+
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+
+/**
+ * This class provides a lock-free histogram of latencies, in microseconds,
+ * that may be updated concurrently by any number of threads and periodically
+ * copied and reset so that percentiles can be computed for each interval.
+ * Values below sixteen microseconds each get their own bucket, and larger
+ * values are divided into sixteen buckets per power of two, which bounds the
+ * relative error of any percentile to about six percent.
+ */
+public final class LatencyHistogram
+{
+  /**
+   * The number of histogram buckets used for each power of two.
+   */
+  private static final int SUB_BUCKETS = 16;
+
+
+
+  /**
+   * The largest power of two (in microseconds) that will be tracked by the
+   * histogram.  Larger values will be placed in the last bucket.
+   */
+  private static final int MAX_EXPONENT = 40;
+
+
+
+  /**
+   * The total number of buckets in the histogram.
+   */
+  public static final int NUM_BUCKETS = (MAX_EXPONENT - 2) * SUB_BUCKETS;
+
+
+
+  // The counts for each of the buckets.
+  private final AtomicLongArray counts;
+
+
+
+  /**
+   * Creates a new, empty latency histogram.
+   */
+  public LatencyHistogram()
+  {
+    counts = new AtomicLongArray(NUM_BUCKETS);
+  }
+
+
+
+  /**
+   * Records the provided latency in the histogram.
+   *
+   * @param  micros  The latency to record, in microseconds.
+   */
+  public void add(long micros)
+  {
+    counts.incrementAndGet(getBucket(micros));
+  }
+
+
+
+  /**
+   * Copies the current contents of the histogram into the provided array and
+   * resets the histogram for the next interval.
+   *
+   * @param  snapshot  The array into which the histogram should be copied.  It
+   *                   must have at least {@code NUM_BUCKETS} elements.
+   *
+   * @return  The total number of values recorded in the histogram.
+   */
+  public long snapshot(long[] snapshot)
+  {
+    long totalCount = 0L;
+    for (int i=0; i < NUM_BUCKETS; i++)
+    {
+      snapshot[i] = counts.getAndSet(i, 0L);
+      totalCount += snapshot[i];
+    }
+
+    return totalCount;
+  }
+
+
+
+  /**
+   * Retrieves the histogram bucket that should be used for the provided
+   * latency.
+   *
+   * @param  micros  The latency in microseconds.
+   *
+   * @return  The histogram bucket that should be used for the provided
+   *          latency.
+   */
+  public static int getBucket(long micros)
+  {
+    if (micros < SUB_BUCKETS)
+    {
+      return (int) Math.max(0L, micros);
+    }
+
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    if (exponent >= MAX_EXPONENT)
+    {
+      return NUM_BUCKETS - 1;
+    }
+
+    int subBucket = (int) ((micros >>> (exponent - 4)) & (SUB_BUCKETS - 1));
+    return ((exponent - 3) * SUB_BUCKETS) + subBucket;
+  }
+
+
+
+  /**
+   * Retrieves the upper bound, in microseconds, of the values that may be
+   * placed in the specified histogram bucket.
+   *
+   * @param  bucket  The histogram bucket for which to retrieve the upper
+   *                 bound.
+   *
+   * @return  The upper bound of the values that may be placed in the specified
+   *          histogram bucket.
+   */
+  public static long getBucketUpperBound(int bucket)
+  {
+    if (bucket < SUB_BUCKETS)
+    {
+      return bucket + 1L;
+    }
+
+    int exponent  = (bucket / SUB_BUCKETS) + 3;
+    int subBucket = bucket % SUB_BUCKETS;
+    return ((long) (SUB_BUCKETS + subBucket + 1)) << (exponent - 4);
+  }
+
+
+
+  /**
+   * Retrieves the specified percentile from the provided histogram snapshot.
+   *
+   * @param  snapshot    The histogram snapshot from which to retrieve the
+   *                     percentile.
+   * @param  totalCount  The total number of values in the snapshot.
+   * @param  percentile  The percentile to retrieve, between 0 and 100.
+   *
+   * @return  The upper bound, in microseconds, of the bucket containing the
+   *          specified percentile.
+   */
+  public static long getPercentile(long[] snapshot, long totalCount,
+                                   double percentile)
+  {
+    long rank = (long) Math.ceil(totalCount * percentile / 100.0D);
+    if (rank < 1L)
+    {
+      rank = 1L;
+    }
+
+    long seen = 0L;
+    for (int i=0; i < NUM_BUCKETS; i++)
+    {
+      seen += snapshot[i];
+      if (seen >= rank)
+      {
+        return getBucketUpperBound(i);
+      }
+    }
+
+    return getBucketUpperBound(NUM_BUCKETS - 1);
+  }
+}
+
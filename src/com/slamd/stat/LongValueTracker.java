@@ -48,7 +48,7 @@ import com.slamd.parameter.ParameterList;
  * @author   Neil A. Wilson
  */
 public class LongValueTracker
-       implements StatTracker
+       implements AppendableStatTracker
 {
   /**
    * The text that will be used to indicate that the comparison between multiple
@@ -259,8 +259,8 @@ public class LongValueTracker
     // sure that the appropriate number of intervals are added.
     else
     {
-      countList.add(intervalCount);
       totalList.add(intervalTotal);
+      countList.add(intervalCount);
       if (enableRealTimeStats)
       {
         statReporter.reportStatToAverage(this, intervalNum++,
@@ -271,8 +271,8 @@ public class LongValueTracker
 
       while (intervalStopTime < now)
       {
-        countList.add(0);
         totalList.add(0L);
+        countList.add(0);
         if (enableRealTimeStats)
         {
           statReporter.reportStatToAverage(this, intervalNum++, 0.0);
@@ -368,8 +368,8 @@ public class LongValueTracker
     // that we add the appropriate number of empty intervals.
     if (intervalStopTime < now)
     {
-      countList.add(intervalCount);
       totalList.add(intervalTotal);
+      countList.add(intervalCount);
       if (enableRealTimeStats)
       {
         statReporter.reportStatToAverage(this, intervalNum++,
@@ -380,8 +380,8 @@ public class LongValueTracker
 
     while (intervalStopTime < now)
     {
-      countList.add(0);
       totalList.add(0L);
+      countList.add(0);
       if (enableRealTimeStats)
       {
         statReporter.reportStatToAverage(this, intervalNum++, 0.0);
@@ -1651,23 +1651,53 @@ public class LongValueTracker
    */
   public byte[] encode()
   {
+    return encodeIntervals(0, countList.size());
+  }
+
+
+
+  /**
+   * Encodes the data for the specified range of completed intervals into a
+   * byte array, using the same format as the <CODE>encode</CODE> method.
+   *
+   * @param  firstInterval  The position of the first interval to encode.
+   * @param  endInterval    The position immediately after the last interval to
+   *                        encode.
+   *
+   * @return  The data for the specified range of intervals encoded as a byte
+   *          array.
+   */
+  public byte[] encodeIntervals(int firstInterval, int endInterval)
+  {
+    if (StatEncoder.useCompactEncoding())
+    {
+      int numIntervals = endInterval - firstInterval;
+      CompactStatWriter writer = new CompactStatWriter(6*numIntervals + 32);
+      writer.writeSignedVarint(maxValue);
+      writer.writeSignedVarint(minValue);
+      writer.writeVarint(numIntervals);
+      writer.writeLongDeltas(totalList, firstInterval, endInterval);
+      writer.writeIntDeltas(countList, firstInterval, endInterval);
+      return writer.toByteArray();
+    }
+
     // OK.  This is cheating because it's not really being encoded in the
     // spirit of ASN.1.  But the encoded representation is much smaller than
     // if I had used sequence of sequence, and this format isn't going to
     // be publicly documented anyway.
-    ASN1Element[] elements = new ASN1Element[(2*countList.size())+2];
+    int numIntervals = endInterval - firstInterval;
+    ASN1Element[] elements = new ASN1Element[(2*numIntervals)+2];
 
     elements[0] = new ASN1OctetString(String.valueOf(maxValue));
     elements[1] = new ASN1OctetString(String.valueOf(minValue));
-    for (int i=0,j=2; i < countList.size(); i++, j += 2)
+    for (int i=0,j=2; i < numIntervals; i++, j += 2)
     {
-      elements[j] =
-           new ASN1OctetString(String.valueOf(totalList.get(i)));
-      elements[j+1] = new ASN1Integer(countList.get(i));
-
+      int k = firstInterval + i;
+      elements[j]   = new ASN1OctetString(String.valueOf(totalList.get(k)));
+      elements[j+1] = new ASN1Integer(countList.get(k));
     }
 
-    return (new ASN1Sequence(elements)).encode();
+    return new ASN1Sequence(elements).encode();
   }
 
 
@@ -1684,6 +1714,12 @@ public class LongValueTracker
   public void decode(byte[] encodedData)
     throws SLAMDException
   {
+    if (CompactStatReader.isCompact(encodedData))
+    {
+      decodeCompact(encodedData);
+      return;
+    }
+
     try
     {
       ASN1Element[] elements =
@@ -1721,6 +1757,63 @@ public class LongValueTracker
 
 
 
+  /**
+   * Decodes the provided data, which has been written in the compact format,
+   * and uses it as the data for this stat tracker.
+   *
+   * @param  encodedData  The encoded version of the data to use for this stat
+   *                      tracker.
+   *
+   * @throws  SLAMDException  If the provided data cannot be decoded.
+   */
+  private void decodeCompact(byte[] encodedData)
+          throws SLAMDException
+  {
+    CompactStatReader reader = new CompactStatReader(encodedData);
+    maxValue = reader.readSignedVarint();
+    minValue = reader.readSignedVarint();
+
+    int numIntervals = reader.readCount(2);
+    totalList = reader.readLongDeltas(numIntervals);
+    countList = reader.readIntDeltas(numIntervals);
+
+    totalValue = 0;
+    totalCount = 0;
+    for (int i=0; i < numIntervals; i++)
+    {
+      totalValue += totalList.get(i);
+      totalCount += countList.get(i);
+    }
+  }
+
+
+
+  /**
+   * Decodes the provided data, which must have been created by the
+   * <CODE>encodeIntervals</CODE> method, and appends the intervals that it
+   * contains to the data already held in this stat tracker.
+   *
+   * @param  encodedData  The encoded data for the intervals to append.
+   *
+   * @throws  SLAMDException  If the provided data cannot be decoded and
+   *                          appended to this stat tracker.
+   */
+  public void appendIntervals(byte[] encodedData)
+         throws SLAMDException
+  {
+    LongValueTracker tracker = new LongValueTracker();
+    tracker.decode(encodedData);
+
+    maxValue = Math.max(maxValue, tracker.maxValue);
+    minValue = Math.min(minValue, tracker.minValue);
+    totalList.addAll(tracker.totalList);
+    countList.addAll(tracker.countList);
+    totalValue += tracker.totalValue;
+    totalCount += tracker.totalCount;
+  }
+
+
+
   /**
    * Retrieves the set of parameters that may be specified to customize the
    * graph that is generated based on the statistical information in the stat
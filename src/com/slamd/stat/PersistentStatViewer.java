@@ -41,7 +41,9 @@ import com.slamd.common.SLAMDException;
 
 /**
  * This class defines a program that may be used to extract and view information
- * contained in encoded persistent stat files.
+ * contained in encoded persistent stat files.  It may also be used to view the
+ * data in a stat journal that was left behind by a client that exited before
+ * the job completed.
  *
  *
  * @author   Neil A. Wilson
@@ -218,7 +220,7 @@ public class PersistentStatViewer
     System.err.println(
 "USAGE:  java com.slamd.stat.PersistentStatViewer {options}" + EOL +
 "        where {options} include:" + EOL +
-"-f {filename} -- Specifies the path to the persistent stat file to use" + EOL +
+"-f {filename} -- Specifies the persistent stat file or journal to use" + EOL +
 "-a            -- Indicates that all threads should be aggregated" + EOL +
 "-v            -- Display verbose statistics" + EOL +
 "-g            -- Display graphs (in a GUI) rather than values" + EOL +
@@ -290,7 +292,8 @@ public class PersistentStatViewer
 
 
   /**
-   * Reads the provided data file and decodes it as a set of stat trackers.
+   * Reads the provided data file and decodes it as a set of stat trackers.  The
+   * file may be either a persistent stat file or a stat journal.
    *
    * @param  filename  The path to the file containing the encoded stat tracker
    *                   information.
@@ -314,6 +317,11 @@ public class PersistentStatViewer
                             "is not a regular file.");
     }
 
+    if (StatJournal.isJournal(statFile))
+    {
+      return StatJournal.readJournal(statFile);
+    }
+
     FileInputStream inputStream = new FileInputStream(filename);
     ASN1StreamReader asn1StreamReader  = new ASN1StreamReader(inputStream);
     ASN1Element     element;
@@ -41,12 +41,35 @@ import com.slamd.common.SLAMDException;
  * <CODE>  collectionInterval  INTEGER,</CODE><BR>
  * <CODE>  duration            INTEGER,</CODE><BR>
  * <CODE>  data                OCTET STRING }</CODE><BR>
+ * <BR>
+ * The data element is created by the tracker's <CODE>encode</CODE> method.
+ * By default, all trackers write their data in the original format so that
+ * it can be read by older clients and servers.  If the
+ * {@code com.slamd.enableCompactStatEncoding} property is enabled, then the
+ * trackers that keep a list of values for each interval use the compact format
+ * written by the {@code CompactStatWriter} instead.  Data in either format can
+ * always be decoded.
  *
  *
  * @author   Neil A. Wilson
  */
 public final class StatEncoder
 {
+  // Indicates whether data written in the compact format should be compressed
+  // if that makes it smaller.  This is disabled by default because the delta
+  // encoding already removes most of the redundancy, so compression costs much
+  // more time than it saves in space for typical data.
+  private static volatile boolean compressEncodedData =
+       isPropertyEnabled(Constants.PROPERTY_COMPRESS_STAT_DATA);
+
+  // Indicates whether the trackers that support it should use the compact
+  // format when encoding their data.  This is disabled by default so that
+  // data written by this version can be read by older clients and servers.
+  private static volatile boolean useCompactEncoding =
+       isPropertyEnabled(Constants.PROPERTY_ENABLE_COMPACT_STAT_ENCODING);
+
+
+
   /**
    * Prevent this utility class from being instantiated.
    */
@@ -57,6 +80,83 @@ public final class StatEncoder
 
 
 
+  /**
+   * Indicates whether the specified Java property has been set with a value of
+   * "true", "yes", "on", or "1".
+   *
+   * @param  propertyName  The name of the property to check.
+   *
+   * @return  {@code true} if the property is enabled, or {@code false} if not.
+   */
+  private static boolean isPropertyEnabled(String propertyName)
+  {
+    String propertyStr = System.getProperty(propertyName);
+    return ((propertyStr != null) &&
+            (propertyStr.equalsIgnoreCase("true") ||
+             propertyStr.equalsIgnoreCase("yes") ||
+             propertyStr.equalsIgnoreCase("on") ||
+             propertyStr.equalsIgnoreCase("1")));
+  }
+
+
+
+  /**
+   * Indicates whether the stat trackers that support it should use the compact
+   * format when encoding their data.
+   *
+   * @return  {@code true} if the compact format should be used, or
+   *          {@code false} if the original ASN.1 format should be used.
+   */
+  public static boolean useCompactEncoding()
+  {
+    return useCompactEncoding;
+  }
+
+
+
+  /**
+   * Specifies whether the stat trackers that support it should use the compact
+   * format when encoding their data.  This affects all trackers in the JVM,
+   * and overrides the {@code com.slamd.enableCompactStatEncoding} property.
+   *
+   * @param  useCompactEncoding  Indicates whether the compact format should be
+   *                             used.
+   */
+  public static void setUseCompactEncoding(boolean useCompactEncoding)
+  {
+    StatEncoder.useCompactEncoding = useCompactEncoding;
+  }
+
+
+
+  /**
+   * Indicates whether data written in the compact format should be compressed
+   * if that makes it smaller.
+   *
+   * @return  {@code true} if data written in the compact format should be
+   *          compressed, or {@code false} if not.
+   */
+  public static boolean compressEncodedData()
+  {
+    return compressEncodedData;
+  }
+
+
+
+  /**
+   * Specifies whether data written in the compact format should be compressed
+   * if that makes it smaller.  This affects all trackers in the JVM.
+   *
+   * @param  compressEncodedData  Indicates whether data written in the compact
+   *                              format should be compressed.
+   */
+  public static void setCompressEncodedData(boolean compressEncodedData)
+  {
+    StatEncoder.compressEncodedData = compressEncodedData;
+  }
+
+
+
   /**
    * Encodes the provided stat tracker into an ASN.1 sequence.
    *
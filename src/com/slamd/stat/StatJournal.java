@@ -0,0 +1,737 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.stat;
+
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+import com.unboundid.asn1.ASN1Element;
+import com.unboundid.asn1.ASN1Integer;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.asn1.ASN1Sequence;
+import com.unboundid.asn1.ASN1StreamReader;
+import com.unboundid.asn1.ASN1Writer;
+
+import com.slamd.common.Constants;
+import com.slamd.common.SLAMDException;
+
+
+
+/**
+ * This class provides an append-only journal that may be used to persist stat
+ * tracker data while a job is running.  Rather than rewriting the complete
+ * contents of every tracker each time the data is saved, each checkpoint only
+ * appends the intervals that have completed since the previous checkpoint for
+ * trackers that implement the {@code AppendableStatTracker} interface.  Other
+ * trackers are written in their entirety, but only if they have completed at
+ * least one interval since they were last written.  Whenever the journal grows
+ * to more than twice the size that it had after it was last compacted, it is
+ * rewritten with a single record for each tracker, so that the total amount of
+ * data written over the life of the job stays proportional to the amount of
+ * data collected.
+ * <BR><BR>
+ * The journal is a series of ASN.1 elements with the following BNF:
+ *
+ * <CODE>Header ::= [APPLICATION 0] OCTET STRING</CODE><BR>
+ * <CODE>Definition ::= [APPLICATION 1] SEQUENCE {</CODE><BR>
+ * <CODE>  trackerID           INTEGER,</CODE><BR>
+ * <CODE>  className           OCTET STRING,</CODE><BR>
+ * <CODE>  clientID            OCTET STRING,</CODE><BR>
+ * <CODE>  threadID            OCTET STRING,</CODE><BR>
+ * <CODE>  displayName         OCTET STRING,</CODE><BR>
+ * <CODE>  collectionInterval  INTEGER }</CODE><BR>
+ * <CODE>Intervals ::= [APPLICATION 2] SEQUENCE {</CODE><BR>
+ * <CODE>  trackerID           INTEGER,</CODE><BR>
+ * <CODE>  firstInterval       INTEGER,</CODE><BR>
+ * <CODE>  duration            INTEGER,</CODE><BR>
+ * <CODE>  data                OCTET STRING }</CODE><BR>
+ * <CODE>Snapshot ::= [APPLICATION 3] SEQUENCE {</CODE><BR>
+ * <CODE>  trackerID           INTEGER,</CODE><BR>
+ * <CODE>  duration            INTEGER,</CODE><BR>
+ * <CODE>  data                OCTET STRING }</CODE><BR>
+ * <BR>
+ * The journal always starts with the header, and each tracker is defined before
+ * any data is written for it.  An intervals record with a first interval of
+ * zero replaces any data previously read for that tracker, as does a snapshot
+ * record.  If the client exits while a record is being written, then the
+ * incomplete record at the end of the journal will be ignored when it is read.
+ * <BR><BR>
+ * Instances of this class are not threadsafe, and the caller must ensure that
+ * only a single thread writes to a journal at any time.
+ */
+public final class StatJournal
+{
+  /**
+   * The suffix that will be appended to the name of the persistent stat file to
+   * obtain the name of the journal file.
+   */
+  public static final String JOURNAL_FILE_SUFFIX = ".journal";
+
+
+
+  /**
+   * The value that will be used for the journal header.
+   */
+  private static final String JOURNAL_HEADER = "SLAMD Stat Journal v1";
+
+
+
+  /**
+   * The BER type for the journal header element.
+   */
+  private static final byte TYPE_HEADER = 0x40;
+
+
+
+  /**
+   * The BER type for the tracker definition element.
+   */
+  private static final byte TYPE_DEFINITION = 0x61;
+
+
+
+  /**
+   * The BER type for the intervals element.
+   */
+  private static final byte TYPE_INTERVALS = 0x62;
+
+
+
+  /**
+   * The BER type for the snapshot element.
+   */
+  private static final byte TYPE_SNAPSHOT = 0x63;
+
+
+
+  /**
+   * The minimum size in bytes that the journal must reach before it will be
+   * compacted.
+   */
+  private static final long MIN_COMPACTION_SIZE = 1024L * 1024L;
+
+
+
+  /**
+   * The factor by which the journal must grow beyond its size after the last
+   * compaction before it will be compacted again.
+   */
+  private static final long COMPACTION_GROWTH_FACTOR = 2L;
+
+
+
+  // The stat trackers that have been written to the journal, in the order of
+  // their tracker IDs.
+  private final ArrayList<StatTracker> trackerList;
+
+  // The number of intervals already written for each tracker, in the order of
+  // their tracker IDs.
+  private final ArrayList<Integer> writtenIntervals;
+
+  // Indicates whether the journal must be compacted before anything else is
+  // appended to it, because it does not exist or a previous write failed.
+  private boolean compactionRequired;
+
+  // The journal file.
+  private final File journalFile;
+
+  // The size of the journal file after it was last compacted.
+  private long compactedSize;
+
+  // The current size of the journal file.
+  private long journalSize;
+
+
+
+  /**
+   * Creates a new stat journal that will write to the specified file.  Any
+   * existing file with that name will be replaced the first time that data is
+   * written.
+   *
+   * @param  journalFile  The file to which the journal should be written.
+   */
+  public StatJournal(File journalFile)
+  {
+    this.journalFile = journalFile;
+
+    trackerList        = new ArrayList<StatTracker>();
+    writtenIntervals   = new ArrayList<Integer>();
+    compactionRequired = true;
+    compactedSize      = 0L;
+    journalSize        = 0L;
+  }
+
+
+
+  /**
+   * Retrieves the file to which this journal is written.
+   *
+   * @return  The file to which this journal is written.
+   */
+  public File getJournalFile()
+  {
+    return journalFile;
+  }
+
+
+
+  /**
+   * Writes the data collected by the provided stat trackers since the last
+   * checkpoint to the journal, compacting the journal first if necessary.  The
+   * trackers must be provided in the same order each time this method is
+   * called, although new trackers may be added to the end of the array.
+   *
+   * @param  trackers  The stat trackers for which to write the data.
+   *
+   * @throws  IOException  If a problem occurs while writing to the journal.
+   */
+  public void checkpoint(StatTracker[] trackers)
+         throws IOException
+  {
+    if (compactionRequired ||
+        ((journalSize >= MIN_COMPACTION_SIZE) &&
+         (journalSize > (COMPACTION_GROWTH_FACTOR * compactedSize))))
+    {
+      compact(trackers);
+      return;
+    }
+
+    compactionRequired = true;
+    OutputStream outputStream =
+         new BufferedOutputStream(new FileOutputStream(journalFile, true));
+    try
+    {
+      for (int i=trackerList.size(); i < trackers.length; i++)
+      {
+        writeDefinition(outputStream, i, trackers[i]);
+      }
+
+      for (int i=0; i < trackers.length; i++)
+      {
+        writeData(outputStream, i, trackers[i], false);
+      }
+    }
+    finally
+    {
+      outputStream.close();
+    }
+
+    // If we've gotten here, then everything was written successfully, so the
+    // journal is still consistent.
+    compactionRequired = false;
+    journalSize        = journalFile.length();
+  }
+
+
+
+  /**
+   * Rewrites the journal so that it contains a single definition and a single
+   * data record for each of the provided trackers.  The new journal is written
+   * to a temporary file which then replaces the current journal.
+   *
+   * @param  trackers  The stat trackers to include in the journal.
+   *
+   * @throws  IOException  If a problem occurs while writing the journal.
+   */
+  public void compact(StatTracker[] trackers)
+         throws IOException
+  {
+    compactionRequired = true;
+    trackerList.clear();
+    writtenIntervals.clear();
+
+    File tempFile = new File(journalFile.getPath() + ".temp");
+    OutputStream outputStream =
+         new BufferedOutputStream(new FileOutputStream(tempFile, false));
+    try
+    {
+      ASN1Writer.writeElement(new ASN1OctetString(TYPE_HEADER, JOURNAL_HEADER),
+                              outputStream);
+
+      for (int i=0; i < trackers.length; i++)
+      {
+        writeDefinition(outputStream, i, trackers[i]);
+      }
+
+      for (int i=0; i < trackers.length; i++)
+      {
+        writeData(outputStream, i, trackers[i], true);
+      }
+    }
+    finally
+    {
+      outputStream.close();
+    }
+
+    if (journalFile.exists() && (! journalFile.delete()))
+    {
+      throw new IOException("Unable to delete the current stat journal " +
+                            journalFile.getAbsolutePath());
+    }
+
+    if (! tempFile.renameTo(journalFile))
+    {
+      throw new IOException("Unable to rename temporary file \"" +
+                            tempFile.getAbsolutePath() +
+                            "\" to desired name");
+    }
+
+    compactionRequired = false;
+    journalSize        = journalFile.length();
+    compactedSize      = journalSize;
+  }
+
+
+
+  /**
+   * Removes the journal file, if it exists.  This should be used once the
+   * complete set of data for the job has been written elsewhere.
+   *
+   * @return  {@code true} if the journal file no longer exists, or
+   *          {@code false} if it could not be removed.
+   */
+  public boolean delete()
+  {
+    compactionRequired = true;
+    return ((! journalFile.exists()) || journalFile.delete());
+  }
+
+
+
+  /**
+   * Writes a definition record for the provided tracker to the journal.
+   *
+   * @param  outputStream  The output stream to which the record should be
+   *                       written.
+   * @param  trackerID     The ID to assign to the tracker.
+   * @param  tracker       The tracker to define.
+   *
+   * @throws  IOException  If a problem occurs while writing the record.
+   */
+  private void writeDefinition(OutputStream outputStream, int trackerID,
+                               StatTracker tracker)
+          throws IOException
+  {
+    ASN1Element[] elements = new ASN1Element[]
+    {
+      new ASN1Integer(trackerID),
+      new ASN1OctetString(tracker.getClass().getName()),
+      new ASN1OctetString(tracker.getClientID()),
+      new ASN1OctetString(tracker.getThreadID()),
+      new ASN1OctetString(tracker.getDisplayName()),
+      new ASN1Integer(tracker.getCollectionInterval())
+    };
+
+    ASN1Writer.writeElement(new ASN1Sequence(TYPE_DEFINITION, elements),
+                            outputStream);
+    trackerList.add(tracker);
+    writtenIntervals.add(0);
+  }
+
+
+
+  /**
+   * Writes a data record for the provided tracker to the journal if it has
+   * completed any intervals since it was last written.
+   *
+   * @param  outputStream   The output stream to which the record should be
+   *                        written.
+   * @param  trackerID      The ID assigned to the tracker.
+   * @param  tracker        The tracker for which to write the data.
+   * @param  includeAll     Indicates whether to write all of the data for the
+   *                        tracker rather than only the intervals that have
+   *                        completed since it was last written.
+   *
+   * @throws  IOException  If a problem occurs while writing the record.
+   */
+  private void writeData(OutputStream outputStream, int trackerID,
+                         StatTracker tracker, boolean includeAll)
+          throws IOException
+  {
+    // Get the number of intervals before encoding anything so that only
+    // intervals that have completed will be included.
+    int numIntervals = tracker.getNumIntervals();
+    int firstInterval = (includeAll ? 0 : writtenIntervals.get(trackerID));
+    if ((numIntervals <= firstInterval) && (! includeAll))
+    {
+      return;
+    }
+
+    ASN1Sequence record;
+    if (tracker instanceof AppendableStatTracker)
+    {
+      byte[] data = ((AppendableStatTracker) tracker).encodeIntervals(
+           firstInterval, numIntervals);
+
+      ASN1Element[] elements = new ASN1Element[]
+      {
+        new ASN1Integer(trackerID),
+        new ASN1Integer(firstInterval),
+        new ASN1Integer(tracker.getDuration()),
+        new ASN1OctetString(data)
+      };
+      record = new ASN1Sequence(TYPE_INTERVALS, elements);
+    }
+    else
+    {
+      ASN1Element[] elements = new ASN1Element[]
+      {
+        new ASN1Integer(trackerID),
+        new ASN1Integer(tracker.getDuration()),
+        new ASN1OctetString(tracker.encode())
+      };
+      record = new ASN1Sequence(TYPE_SNAPSHOT, elements);
+    }
+
+    ASN1Writer.writeElement(record, outputStream);
+    writtenIntervals.set(trackerID, numIntervals);
+  }
+
+
+
+  /**
+   * Indicates whether the specified file appears to be a stat journal rather
+   * than a persistent stat file containing a single encoded set of trackers.
+   *
+   * @param  file  The file to examine.
+   *
+   * @return  {@code true} if the file appears to be a stat journal, or
+   *          {@code false} if not.
+   *
+   * @throws  IOException  If a problem occurs while reading the file.
+   */
+  public static boolean isJournal(File file)
+         throws IOException
+  {
+    InputStream inputStream = new FileInputStream(file);
+    try
+    {
+      return (inputStream.read() == TYPE_HEADER);
+    }
+    finally
+    {
+      inputStream.close();
+    }
+  }
+
+
+
+  /**
+   * Reads the specified journal and rebuilds the stat trackers that it
+   * contains.  If the last record in the journal is incomplete, then it will be
+   * ignored.
+   *
+   * @param  file  The journal file to read.
+   *
+   * @return  The stat trackers rebuilt from the journal.
+   *
+   * @throws  IOException  If a problem occurs while reading the journal.
+   *
+   * @throws  SLAMDException  If the journal contents cannot be decoded.
+   */
+  public static StatTracker[] readJournal(File file)
+         throws IOException, SLAMDException
+  {
+    ArrayList<StatTracker> trackers = new ArrayList<StatTracker>();
+    ASN1StreamReader reader = new ASN1StreamReader(
+         new BufferedInputStream(new FileInputStream(file)));
+
+    try
+    {
+      ASN1Element header = reader.readElement();
+      if ((header == null) || (header.getType() != TYPE_HEADER) ||
+          (! JOURNAL_HEADER.equals(
+                  header.decodeAsOctetString().stringValue())))
+      {
+        throw new SLAMDException('"' + file.getPath() + "\" is not a stat " +
+                                 "journal.");
+      }
+
+      while (true)
+      {
+        ASN1Element element;
+        try
+        {
+          element = reader.readElement();
+        }
+        catch (IOException ioe)
+        {
+          // This means that the end of the file was reached in the middle of a
+          // record, which will happen if the client exited while it was being
+          // written.
+          break;
+        }
+
+        if (element == null)
+        {
+          break;
+        }
+
+        processRecord(trackers, element);
+      }
+    }
+    catch (SLAMDException se)
+    {
+      throw se;
+    }
+    catch (Exception e)
+    {
+      throw new SLAMDException("Unable to decode the contents of stat " +
+                               "journal \"" + file.getPath() + "\" -- " + e, e);
+    }
+    finally
+    {
+      reader.close();
+    }
+
+    StatTracker[] trackerArray = new StatTracker[trackers.size()];
+    for (int i=0; i < trackerArray.length; i++)
+    {
+      // The duration will usually be zero for data written while the job was
+      // still running, so provide an estimate based on the intervals.
+      StatTracker tracker = trackers.get(i);
+      if ((tracker.getDuration() <= 0) &&
+          (tracker.getCollectionInterval() > 0))
+      {
+        tracker.setDuration(tracker.getCollectionInterval() *
+                            tracker.getNumIntervals());
+      }
+
+      trackerArray[i] = tracker;
+    }
+
+    return trackerArray;
+  }
+
+
+
+  /**
+   * Applies the information in the provided journal record to the set of
+   * trackers being rebuilt.
+   *
+   * @param  trackers  The trackers that have been defined so far, in the order
+   *                   of their tracker IDs.
+   * @param  element   The journal record to process.
+   *
+   * @throws  Exception  If a problem occurs while processing the record.
+   */
+  private static void processRecord(ArrayList<StatTracker> trackers,
+                                    ASN1Element element)
+          throws Exception
+  {
+    ASN1Element[] elements = element.decodeAsSequence().elements();
+    int trackerID = elements[0].decodeAsInteger().intValue();
+
+    switch (element.getType())
+    {
+      case TYPE_DEFINITION:
+        if (trackerID != trackers.size())
+        {
+          throw new SLAMDException("Unexpected definition for tracker ID " +
+                                   trackerID + " when " + trackers.size() +
+                                   " trackers have been defined.");
+        }
+
+        String className = elements[1].decodeAsOctetString().stringValue();
+        Class<?> trackerClass = Constants.classForName(className);
+        StatTracker tracker = (StatTracker)
+             trackerClass.getDeclaredConstructor().newInstance();
+        tracker.setClientID(elements[2].decodeAsOctetString().stringValue());
+        tracker.setThreadID(elements[3].decodeAsOctetString().stringValue());
+        tracker.setDisplayName(
+             elements[4].decodeAsOctetString().stringValue());
+        tracker.setCollectionInterval(
+             elements[5].decodeAsInteger().intValue());
+        trackers.add(tracker);
+        break;
+
+      case TYPE_INTERVALS:
+        StatTracker appendTracker = getTracker(trackers, trackerID);
+        if (! (appendTracker instanceof AppendableStatTracker))
+        {
+          throw new SLAMDException("Stat tracker " + trackerID + " does not " +
+                                   "support appending intervals.");
+        }
+
+        int firstInterval = elements[1].decodeAsInteger().intValue();
+        byte[] data = elements[3].decodeAsOctetString().getValue();
+        if (firstInterval == 0)
+        {
+          appendTracker.decode(data);
+        }
+        else if (firstInterval == appendTracker.getNumIntervals())
+        {
+          ((AppendableStatTracker) appendTracker).appendIntervals(data);
+        }
+        else
+        {
+          throw new SLAMDException("Intervals record for stat tracker " +
+                                   trackerID + " starts at interval " +
+                                   firstInterval + " but only " +
+                                   appendTracker.getNumIntervals() +
+                                   " intervals have been read.");
+        }
+
+        appendTracker.setDuration(elements[2].decodeAsInteger().intValue());
+        break;
+
+      case TYPE_SNAPSHOT:
+        StatTracker snapshotTracker = getTracker(trackers, trackerID);
+        snapshotTracker.decode(elements[2].decodeAsOctetString().getValue());
+        snapshotTracker.setDuration(elements[1].decodeAsInteger().intValue());
+        break;
+
+      default:
+        throw new SLAMDException("Unexpected stat journal record type " +
+                                 element.getType());
+    }
+  }
+
+
+
+  /**
+   * Retrieves the tracker with the specified ID.
+   *
+   * @param  trackers   The trackers that have been defined so far, in the order
+   *                    of their tracker IDs.
+   * @param  trackerID  The ID of the tracker to retrieve.
+   *
+   * @return  The tracker with the specified ID.
+   *
+   * @throws  SLAMDException  If no tracker has been defined with the specified
+   *                          ID.
+   */
+  private static StatTracker getTracker(ArrayList<StatTracker> trackers,
+                                        int trackerID)
+          throws SLAMDException
+  {
+    if ((trackerID < 0) || (trackerID >= trackers.size()))
+    {
+      throw new SLAMDException("Stat journal record references undefined " +
+                               "tracker ID " + trackerID);
+    }
+
+    return trackers.get(trackerID);
+  }
+
+
+
+  /**
+   * Rebuilds the stat trackers from a journal and writes them to a persistent
+   * stat file in the format used when a job completes normally.
+   *
+   * @param  args  The command-line arguments provided to this program.
+   *
+   * @throws  Exception  If a problem occurs.
+   */
+  public static void main(String[] args)
+         throws Exception
+  {
+    String journalName = null;
+    String outputName  = null;
+
+    for (int i=0; i < args.length; i++)
+    {
+      if (args[i].equals("-f"))
+      {
+        journalName = args[++i];
+      }
+      else if (args[i].equals("-o"))
+      {
+        outputName = args[++i];
+      }
+      else if (args[i].equals("-H"))
+      {
+        displayUsage();
+        System.exit(0);
+      }
+      else
+      {
+        System.err.println("ERROR:  Unrecognized argument \"" + args[i] + '"');
+        displayUsage();
+        System.exit(1);
+      }
+    }
+
+    if (journalName == null)
+    {
+      System.err.println("ERROR:  No journal file was provided (use -f)");
+      displayUsage();
+      System.exit(1);
+    }
+
+    if (outputName == null)
+    {
+      if (journalName.endsWith(JOURNAL_FILE_SUFFIX))
+      {
+        outputName = journalName.substring(0, journalName.length() -
+                                              JOURNAL_FILE_SUFFIX.length());
+      }
+      else
+      {
+        System.err.println("ERROR:  No output file was provided (use -o)");
+        displayUsage();
+        System.exit(1);
+      }
+    }
+
+    StatTracker[] trackers = readJournal(new File(journalName));
+
+    OutputStream outputStream = new FileOutputStream(outputName, false);
+    try
+    {
+      ASN1Writer.writeElement(StatEncoder.trackersToSequence(trackers),
+                              outputStream);
+    }
+    finally
+    {
+      outputStream.close();
+    }
+
+    System.out.println("Recovered " + trackers.length + " stat trackers " +
+                       "from \"" + journalName + "\" into \"" + outputName +
+                       '"');
+  }
+
+
+
+  /**
+   * Displays usage information for this program.
+   */
+  public static void displayUsage()
+  {
+    String EOL = System.getProperty("line.separator");
+
+    System.err.println(
+"USAGE:  java com.slamd.stat.StatJournal {options}" + EOL +
+"        where {options} include:" + EOL +
+"-f {filename} -- Specifies the path to the stat journal to recover" + EOL +
+"-o {filename} -- Specifies the persistent stat file to write.  If this" + EOL +
+"                 is not provided, then the journal name without the" + EOL +
+"                 " + JOURNAL_FILE_SUFFIX + " suffix will be used." + EOL +
+"-H            -- Displays usage information"
+                      );
+  }
+}
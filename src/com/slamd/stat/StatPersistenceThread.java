@@ -34,7 +34,16 @@ import com.slamd.client.ClientSideJob;
  * information on the client system while a job is in progress so that any
  * data it has collected so far will be preserved so that at least some results
  * may be provided.
- *
+ * <BR><BR>
+ * While the job is running, the data is written to an append-only
+ * {@code StatJournal} so that each save only needs to write the intervals that
+ * have completed since the previous save, and the journal is compacted
+ * periodically so that it does not grow without bound.  When the job completes,
+ * the full set of trackers is written to the persistent stat file and the
+ * journal is removed.  If the client exits before the job completes, then the
+ * journal may be viewed directly with the {@code PersistentStatViewer}, or it
+ * may be converted to a persistent stat file with the {@code StatJournal}
+ * recovery tool.
  *
  * @author   Neil A. Wilson
  */
@@ -58,6 +67,9 @@ public class StatPersistenceThread
   // The interval in seconds between saves of the job data.
   private int saveInterval;
 
+  // The journal to which the data for the current job is being written.
+  private StatJournal journal;
+
   // The mutex used to provide threadsafe access to the stat list.
   private final Object statListMutex;
 
@@ -95,6 +107,7 @@ public class StatPersistenceThread
     statList      = new ArrayList<StatTracker>();
     statListMutex = new Object();
     job           = null;
+    journal       = null;
 
     setName("Stat Persistence Thread");
     setDaemon(true);
@@ -135,8 +148,12 @@ public class StatPersistenceThread
    */
   public void setJob(ClientSideJob job)
   {
-    this.job = job;
-    statList.clear();
+    synchronized (statListMutex)
+    {
+      this.job = job;
+      journal  = null;
+      statList.clear();
+    }
   }
 
 
@@ -167,10 +184,12 @@ public class StatPersistenceThread
   {
     synchronized (statListMutex)
     {
-      String jobID = job.getJobID();
-      job = null;
+      ClientSideJob completedJob = job;
+      StatJournal   jobJournal   = journal;
+      job     = null;
+      journal = null;
 
-      if (statList.isEmpty())
+      if ((completedJob == null) || statList.isEmpty())
       {
         return;
       }
@@ -179,9 +198,7 @@ public class StatPersistenceThread
       statList.toArray(trackers);
       statList.clear();
 
-      String fileName = saveDirectory + File.separator + clientID + "." +
-                        jobID;
-      fileName = fileName.replace(':', '_');
+      String fileName = getFileName(completedJob);
       File statFile = new File(fileName + ".temp");
       OutputStream outputStream = new FileOutputStream(statFile, false);
       ASN1Writer.writeElement(StatEncoder.trackersToSequence(trackers),
@@ -192,9 +209,9 @@ public class StatPersistenceThread
       File origFile = new File(fileName);
       if (origFile.exists() && (! origFile.delete()))
       {
-        job.logMessage("Stat Persistence Thread",
-                       "Unable to delete current persistent stat file " +
-                       fileName);
+        completedJob.logMessage("Stat Persistence Thread",
+                                "Unable to delete current persistent stat " +
+                                "file " + fileName);
       }
 
       if (! statFile.renameTo(new File(fileName)))
@@ -203,11 +220,36 @@ public class StatPersistenceThread
                               statFile.getAbsolutePath() +
                               "\" to desired name");
       }
+
+      // Now that the complete set of data has been written, the journal is no
+      // longer needed.
+      if ((jobJournal != null) && (! jobJournal.delete()))
+      {
+        completedJob.logMessage("Stat Persistence Thread",
+                                "Unable to delete stat journal " +
+                                jobJournal.getJournalFile().getPath());
+      }
     }
   }
 
 
 
+  /**
+   * Retrieves the path to the persistent stat file for the provided job.
+   *
+   * @param  job  The job for which to retrieve the persistent stat file path.
+   *
+   * @return  The path to the persistent stat file for the provided job.
+   */
+  private String getFileName(ClientSideJob job)
+  {
+    String fileName = saveDirectory + File.separator + clientID + "." +
+                      job.getJobID();
+    return fileName.replace(':', '_');
+  }
+
+
+
   /**
    * Periodically writes any statistics collected for the active job to disk.
    */
@@ -243,45 +285,27 @@ public class StatPersistenceThread
           {
             synchronized (statListMutex)
             {
-              if (! statList.isEmpty())
+              ClientSideJob currentJob = job;
+              if ((currentJob != null) && (! statList.isEmpty()))
               {
                 StatTracker[] trackers = new StatTracker[statList.size()];
                 statList.toArray(trackers);
 
                 try
                 {
-                  String fileName = saveDirectory + File.separator +
-                                    clientID + "." + job.getJobID();
-                  fileName = fileName.replace(':', '_');
-                  File statFile = new File(fileName + ".temp");
-                  OutputStream outputStream = new FileOutputStream(statFile,
-                                                                   false);
-                  ASN1Writer.writeElement(
-                       StatEncoder.trackersToSequence(trackers), outputStream);
-                  outputStream.flush();
-                  outputStream.close();
-
-                  File origFile = new File(fileName);
-                  if (origFile.exists() && (! origFile.delete()))
+                  if (journal == null)
                   {
-                    job.logMessage("Stat Persistence Thread",
-                                   "Unable to delete current persistent " +
-                                   "stat file " + fileName);
+                    journal = new StatJournal(new File(getFileName(currentJob) +
+                         StatJournal.JOURNAL_FILE_SUFFIX));
                   }
 
-                  if (! statFile.renameTo(new File(fileName)))
-                  {
-                    job.logMessage("Stat Persistence Thread",
-                                   "Unable to rename temporary file \"" +
-                                   statFile.getAbsolutePath() +
-                                   "\" to desired name");
-                  }
+                  journal.checkpoint(trackers);
                 }
                 catch (Exception e)
                 {
-                  job.logMessage("Stat Persistence Thread",
-                                 "Unable to write statistical data to a " +
-                                 "temporary file -- " + e);
+                  currentJob.logMessage("Stat Persistence Thread",
+                                        "Unable to write statistical data " +
+                                        "to the stat journal -- " + e);
                 }
               }
             }
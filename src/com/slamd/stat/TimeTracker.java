@@ -44,7 +44,7 @@ import com.slamd.parameter.ParameterList;
  * @author   Neil A. Wilson
  */
 public class TimeTracker
-       implements StatTracker
+       implements AppendableStatTracker
 {
   /**
    * The text that will be used to indicate that the comparison between multiple
@@ -274,8 +274,8 @@ public class TimeTracker
     {
       // The previous interval has completed so we need to save the stats for
       // that interval and start a new set.
-      countList.add(intervalCount);
       durationList.add((int) (intervalDuration / 1000000L));
+      countList.add(intervalCount);
       if (enableRealTimeStats)
       {
         statReporter.reportStatToAverage(this, intervalNum++,
@@ -288,8 +288,8 @@ public class TimeTracker
       // intervals could have passed.  If so, then fill in the blanks.
       while (intervalStopTime < now)
       {
-        countList.add(0);
         durationList.add(0);
+        countList.add(0);
         if (enableRealTimeStats)
         {
           statReporter.reportStatToAverage(this, intervalNum++, 0.0);
@@ -341,8 +341,8 @@ public class TimeTracker
     {
       // The previous interval has completed so we need to save the stats for
       // that interval and start a new set.
-      countList.add(intervalCount);
       durationList.add((int) (intervalDuration / 1000000L));
+      countList.add(intervalCount);
       if (enableRealTimeStats)
       {
         statReporter.reportStatToAverage(this, intervalNum++,
@@ -355,8 +355,8 @@ public class TimeTracker
       // intervals could have passed.  If so, then fill in the blanks.
       while (intervalStopTime < now)
       {
-        countList.add(0);
         durationList.add(0);
+        countList.add(0);
         if (enableRealTimeStats)
         {
           statReporter.reportStatToAverage(this, intervalNum++, 0.0);
@@ -905,8 +905,8 @@ public class TimeTracker
     // that we add the appropriate number of empty intervals.
     if (intervalStopTime < now)
     {
-      countList.add(intervalCount);
       durationList.add((int) (intervalDuration / 1000000L));
+      countList.add(intervalCount);
       if (enableRealTimeStats)
       {
         statReporter.reportStatToAverage(this, intervalNum++,
@@ -918,8 +918,8 @@ public class TimeTracker
 
     while (intervalStopTime < now)
     {
-      countList.add(0);
       durationList.add(0);
+      countList.add(0);
       if (enableRealTimeStats)
       {
         statReporter.reportStatToAverage(this, intervalNum++, 0.0);
@@ -1672,18 +1672,50 @@ public class TimeTracker
    */
   public byte[] encode()
   {
+    return encodeIntervals(0, countList.size());
+  }
+
+
+
+  /**
+   * Encodes the data for the specified range of completed intervals into a
+   * byte array, using the same format as the <CODE>encode</CODE> method.
+   *
+   * @param  firstInterval  The position of the first interval to encode.
+   * @param  endInterval    The position immediately after the last interval to
+   *                        encode.
+   *
+   * @return  The data for the specified range of intervals encoded as a byte
+   *          array.
+   */
+  public byte[] encodeIntervals(int firstInterval, int endInterval)
+  {
+    if (StatEncoder.useCompactEncoding())
+    {
+      int numIntervals = endInterval - firstInterval;
+      CompactStatWriter writer = new CompactStatWriter(4*numIntervals + 24);
+      writer.writeSignedVarint(maxDuration / 1000000L);
+      writer.writeSignedVarint(minDuration / 1000000L);
+      writer.writeVarint(numIntervals);
+      writer.writeIntDeltas(durationList, firstInterval, endInterval);
+      writer.writeIntDeltas(countList, firstInterval, endInterval);
+      return writer.toByteArray();
+    }
+
     // OK.  This is cheating because it's not really being encoded in the
     // spirit of ASN.1.  But the encoded representation is much smaller than
     // if I had used sequence of sequence, and this format isn't going to
     // be publicly documented anyway.
-    ASN1Element[] elements = new ASN1Element[(2*countList.size())+2];
+    int numIntervals = endInterval - firstInterval;
+    ASN1Element[] elements = new ASN1Element[(2*numIntervals)+2];
 
     elements[0] = new ASN1Integer((int) (maxDuration / 1000000L));
     elements[1] = new ASN1Integer((int) (minDuration / 1000000L));
-    for (int i=0,j=2; i < countList.size(); i++, j += 2)
+    for (int i=0,j=2; i < numIntervals; i++, j += 2)
     {
-      elements[j] = new ASN1Integer(durationList.get(i));
-      elements[j+1] = new ASN1Integer(countList.get(i));
+      int k = firstInterval + i;
+      elements[j]   = new ASN1Integer(durationList.get(k));
+      elements[j+1] = new ASN1Integer(countList.get(k));
     }
 
     return new ASN1Sequence(elements).encode();
@@ -1703,6 +1735,12 @@ public class TimeTracker
   public void decode(byte[] encodedData)
     throws SLAMDException
   {
+    if (CompactStatReader.isCompact(encodedData))
+    {
+      decodeCompact(encodedData);
+      return;
+    }
+
     try
     {
       ASN1Element[] elements =
@@ -1732,6 +1770,53 @@ public class TimeTracker
 
 
 
+  /**
+   * Decodes the provided data, which has been written in the compact format,
+   * and uses it as the data for this stat tracker.
+   *
+   * @param  encodedData  The encoded version of the data to use for this stat
+   *                      tracker.
+   *
+   * @throws  SLAMDException  If the provided data cannot be decoded.
+   */
+  private void decodeCompact(byte[] encodedData)
+          throws SLAMDException
+  {
+    CompactStatReader reader = new CompactStatReader(encodedData);
+    maxDuration = 1000000L * reader.readSignedVarint();
+    minDuration = 1000000L * reader.readSignedVarint();
+
+    int numIntervals = reader.readCount(2);
+    durationList = reader.readIntDeltas(numIntervals);
+    countList    = reader.readIntDeltas(numIntervals);
+  }
+
+
+
+  /**
+   * Decodes the provided data, which must have been created by the
+   * <CODE>encodeIntervals</CODE> method, and appends the intervals that it
+   * contains to the data already held in this stat tracker.
+   *
+   * @param  encodedData  The encoded data for the intervals to append.
+   *
+   * @throws  SLAMDException  If the provided data cannot be decoded and
+   *                          appended to this stat tracker.
+   */
+  public void appendIntervals(byte[] encodedData)
+         throws SLAMDException
+  {
+    TimeTracker tracker = new TimeTracker();
+    tracker.decode(encodedData);
+
+    maxDuration = Math.max(maxDuration, tracker.maxDuration);
+    minDuration = Math.min(minDuration, tracker.minDuration);
+    durationList.addAll(tracker.durationList);
+    countList.addAll(tracker.countList);
+  }
+
+
+
   /**
    * Retrieves the set of parameters that may be specified to customize the
    * graph that is generated based on the statistical information in the stat
@@ -17,6 +17,7 @@ package com.slamd.tools;
 
 
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -28,6 +29,7 @@ import com.slamd.client.Client;
 import com.slamd.client.ClientException;
 import com.slamd.client.ClientMessageWriter;
 import com.slamd.common.Constants;
+import com.slamd.parameter.FileURLCache;
 
 
 
@@ -235,6 +237,38 @@ public class CommandLineClient
 
 
 
+  /**
+   * The name of the configuration property that specifies the directory to use
+   * for the file URL cache.
+   */
+  public static final String PROPERTY_FILE_CACHE_DIR = "FILE_CACHE_DIRECTORY";
+
+
+
+  /**
+   * The name of the configuration property that specifies the maximum size in
+   * megabytes of the file URL cache.
+   */
+  public static final String PROPERTY_FILE_CACHE_SIZE = "FILE_CACHE_SIZE_MB";
+
+
+
+  /**
+   * The name of the configuration property that specifies the number of child
+   * processes among which the threads for each job should be divided.
+   */
+  public static final String PROPERTY_CHILD_PROCESSES = "CHILD_PROCESSES";
+
+
+
+  /**
+   * The name of the configuration property that specifies the processor lists
+   * to which child processes should be pinned.
+   */
+  public static final String PROPERTY_CHILD_CPU_SETS = "CHILD_PROCESS_CPU_SETS";
+
+
+
   // Indicates whether the data collected by the individual client threads
   // should be aggregated before being sent back to the SLAMD server.
   private boolean aggregateThreadData = false;
@@ -270,6 +304,10 @@ public class CommandLineClient
   // server.
   private boolean useTimeSync = true;
 
+  // The number of child processes among which the threads for each job should
+  // be divided.
+  private int numChildProcesses = 1;
+
   // The interval in seconds between saves of persistent statistical data.
   private int persistenceInterval = Constants.DEFAULT_STAT_PERSISTENCE_INTERVAL;
 
@@ -282,6 +320,9 @@ public class CommandLineClient
   // The interval in seconds to use when reporting stats to the server.
   private int statReportInterval = Constants.DEFAULT_STAT_REPORT_INTERVAL;
 
+  // The maximum size in megabytes of the file URL cache.
+  private long fileCacheSizeMB = 10240L;
+
   // The client code that actually performs all the work of interacting with
   // the SLAMD server.
   private Client client;
@@ -304,6 +345,12 @@ public class CommandLineClient
   // The client ID to use for the client.
   private String clientID;
 
+  // The processor lists to which child processes should be pinned, if any.
+  private String childCPUSets = null;
+
+  // The directory to use for the file URL cache, if any.
+  private String fileCacheDirectory = null;
+
   // The path to the log file to which output should be written.
   private String logFile = null;
 
@@ -453,10 +500,26 @@ public class CommandLineClient
       {
         logFile = args[++i];
       }
+      else if (args[i].equals("-F"))
+      {
+        fileCacheDirectory = args[++i];
+      }
+      else if (args[i].equals("-Z"))
+      {
+        fileCacheSizeMB = Long.parseLong(args[++i]);
+      }
       else if (args[i].equals("-L"))
       {
         useCustomClassLoader = false;
       }
+      else if (args[i].equals("-x"))
+      {
+        numChildProcesses = Integer.parseInt(args[++i]);
+      }
+      else if (args[i].equals("-X"))
+      {
+        childCPUSets = args[++i];
+      }
       else if (args[i].equals("-Y"))
       {
         useTimeSync = false;
@@ -510,6 +573,24 @@ public class CommandLineClient
     }
 
 
+    // If a file cache directory has been provided, then set up the cache.
+    if ((fileCacheDirectory != null) && (fileCacheDirectory.length() > 0))
+    {
+      try
+      {
+        FileURLCache.configure(new File(fileCacheDirectory),
+                               fileCacheSizeMB * 1024L * 1024L);
+      }
+      catch (IOException ioe)
+      {
+        System.err.println("ERROR:  Could not initialize the file cache in " +
+                           "directory \"" + fileCacheDirectory + "\" -- " +
+                           ioe);
+        System.exit(1);
+      }
+    }
+
+
     // Create the client and let it do all the work.
     try
     {
@@ -533,6 +614,7 @@ public class CommandLineClient
                           sslTrustStore, sslTrustStorePassword, this);
 
       client.aggregateThreadData(aggregateThreadData);
+      client.setChildProcesses(numChildProcesses, childCPUSets);
       client.start();
     }
     catch (ClientException sce)
@@ -817,6 +899,22 @@ public class CommandLineClient
       {
         logFile = value;
       }
+      else if (name.equals(PROPERTY_FILE_CACHE_DIR))
+      {
+        fileCacheDirectory = value;
+      }
+      else if (name.equals(PROPERTY_FILE_CACHE_SIZE))
+      {
+        fileCacheSizeMB = Long.parseLong(value);
+      }
+      else if (name.equals(PROPERTY_CHILD_PROCESSES))
+      {
+        numChildProcesses = Integer.parseInt(value);
+      }
+      else if (name.equals(PROPERTY_CHILD_CPU_SETS))
+      {
+        childCPUSets = value;
+      }
     }
   }
 
@@ -869,6 +967,13 @@ public class CommandLineClient
 "                 standard output." + eol +
 "-L           --  Disable the custom class loader." + eol +
 "-Y           --  Disable time synchronization with the SLAMD server." + eol +
+"-F {dir}     --  The directory in which to cache files retrieved from" + eol +
+"                 remote file URLs." + eol +
+"-Z {mb}      --  The maximum size in megabytes of the file cache." + eol +
+"-x {count}   --  The number of child processes among which the" + eol +
+"                 threads for each job should be divided." + eol +
+"-X {cpus}    --  The processor lists to which child processes should" + eol +
+"                 be pinned, separated by slashes, or \"auto\"." + eol +
 "-v           --  Operate in verbose mode." + eol +
 "-q           --  Operate in quiet mode." + eol +
 "-H           --  Show this usage information." + eol
@@ -17,20 +17,29 @@ package com.slamd.tools;
 
 
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.Socket;
 import java.net.URLEncoder;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.StringTokenizer;
 
 import com.slamd.common.Constants;
 import com.slamd.common.JSSEBlindTrustSocketFactory;
+import com.slamd.db.JobArchiveReader;
 
 import com.unboundid.util.Base64;
 
@@ -49,16 +58,21 @@ public class ExportData
 {
   // Variables used processing.
   private boolean  exportAll            = false;
+  private boolean  exportArchive        = false;
   private boolean  exportUnclassified   = false;
+  private boolean  resumeArchive        = false;
   private boolean  useSSL               = false;
   private boolean  verboseMode          = false;
   private int      slamdPort            = 8080;
   private String   authID               = null;
   private String   authPW               = null;
+  private String   endJobID             = null;
   private String   eol                  = Constants.EOL;
   private String   filePath             = null;
   private String   postURI              = "/slamd";
+  private String   resumeAfterJobID     = null;
   private String   slamdHost            = "127.0.0.1";
+  private String   startJobID           = null;
   private String[] realFolderExports    = new String[0];
   private String[] virtualFolderExports = new String[0];
 
@@ -133,6 +147,22 @@ public class ExportData
       {
         exportUnclassified = true;
       }
+      else if (args[i].equals("-c"))
+      {
+        exportArchive = true;
+      }
+      else if (args[i].equals("-s"))
+      {
+        startJobID = args[++i];
+      }
+      else if (args[i].equals("-e"))
+      {
+        endJobID = args[++i];
+      }
+      else if (args[i].equals("-r"))
+      {
+        resumeArchive = true;
+      }
       else if (args[i].equals("-R"))
       {
         realList.add(args[++i]);
@@ -175,8 +205,19 @@ public class ExportData
     virtualList.toArray(virtualFolderExports);
 
 
+    // The job ID range and resume options only apply to job archives.
+    if ((! exportArchive) &&
+        (resumeArchive || (startJobID != null) || (endJobID != null)))
+    {
+      System.err.println("The -s, -e, and -r options may only be used with " +
+                         "-c");
+      displayUsage();
+      System.exit(1);
+    }
+
+
     // Make sure that at the user specified something to export
-    if ((! exportAll) && (! exportUnclassified) &&
+    if ((! exportArchive) && (! exportAll) && (! exportUnclassified) &&
         (realFolderExports.length == 0) && (virtualFolderExports.length == 0))
     {
       System.err.println("No data specified to include in the export");
@@ -195,13 +236,44 @@ public class ExportData
    */
   public boolean sendRequest()
   {
+    // If an interrupted job archive should be resumed, then figure out where
+    // it left off.
+    if (resumeArchive && (! prepareResume()))
+    {
+      return false;
+    }
+
+
     // Construct the data string to POST to the server.
     StringBuilder buf = new StringBuilder();
     addParameter(buf, Constants.SERVLET_PARAM_SECTION,
                  Constants.SERVLET_SECTION_JOB);
     addParameter(buf, Constants.SERVLET_PARAM_SUBSECTION,
                  Constants.SERVLET_SECTION_JOB_EXPORT_JOB_DATA);
-    if (exportAll)
+    if (exportArchive)
+    {
+      addParameter(buf, Constants.SERVLET_PARAM_EXPORT_CHOICE,
+                   Constants.EXPORT_CHOICE_JOB_ARCHIVE);
+
+      if (resumeAfterJobID != null)
+      {
+        addParameter(buf, Constants.SERVLET_PARAM_EXPORT_START_JOB_ID,
+                     resumeAfterJobID);
+        addParameter(buf, Constants.SERVLET_PARAM_EXPORT_RESUME, "true");
+      }
+      else if (startJobID != null)
+      {
+        addParameter(buf, Constants.SERVLET_PARAM_EXPORT_START_JOB_ID,
+                     startJobID);
+      }
+
+      if (endJobID != null)
+      {
+        addParameter(buf, Constants.SERVLET_PARAM_EXPORT_END_JOB_ID,
+                     endJobID);
+      }
+    }
+    else if (exportAll)
     {
       addParameter(buf, Constants.SERVLET_PARAM_EXPORT_CHOICE,
                    Constants.EXPORT_CHOICE_ALL);
@@ -271,10 +343,19 @@ public class ExportData
     }
 
 
-    // Write the HTTP request to the server.
+    // Write the HTTP request to the server.  Job archives are binary data that
+    // will be copied directly to the file, so use HTTP/1.0 to make sure that
+    // the server does not use chunked encoding for the response.
     try
     {
-      writeLine(writer, "POST " + postURI + " HTTP/1.1");
+      if (exportArchive)
+      {
+        writeLine(writer, "POST " + postURI + " HTTP/1.0");
+      }
+      else
+      {
+        writeLine(writer, "POST " + postURI + " HTTP/1.1");
+      }
       writeLine(writer, "Host: " + slamdHost);
       writeLine(writer, "Connection: close");
       writeLine(writer, "Content-Type: application/x-www-form-urlencoded");
@@ -303,6 +384,30 @@ public class ExportData
       return false;
     }
 
+    if (exportArchive)
+    {
+      try
+      {
+        return receiveJobArchive(socket.getInputStream());
+      }
+      catch (IOException ioe)
+      {
+        if (verboseMode)
+        {
+          ioe.printStackTrace();
+        }
+        System.err.println("ERROR:  Unable to read the job archive -- " + ioe);
+        return false;
+      }
+      finally
+      {
+        try
+        {
+          socket.close();
+        } catch (Exception e) {}
+      }
+    }
+
 
     // Read the HTTP response header from the server.
     try
@@ -376,6 +481,265 @@ public class ExportData
 
 
 
+  /**
+   * Examines the existing job archive to determine the last job that it holds,
+   * and truncates any partial record after it so that the rest of the export
+   * may be appended.
+   *
+   * @return  {@code true} if the export should proceed, or {@code false} if
+   *          not.
+   */
+  private boolean prepareResume()
+  {
+    File archiveFile = new File(filePath);
+    if (! archiveFile.exists())
+    {
+      debug("No existing job archive to resume, so starting a new one");
+      return true;
+    }
+
+    long    validLength;
+    boolean complete;
+    int     jobCount;
+    String  lastJobID;
+    try
+    {
+      JobArchiveReader archiveReader =
+           new JobArchiveReader(new BufferedInputStream(
+                                     new FileInputStream(archiveFile)));
+      try
+      {
+        while (archiveReader.readJob() != null)
+        {
+          // No implementation required.  Just find the last complete job.
+        }
+
+        validLength = archiveReader.getValidLength();
+        complete    = archiveReader.isComplete();
+        jobCount    = archiveReader.getJobCount();
+        lastJobID   = archiveReader.getLastJobID();
+      }
+      finally
+      {
+        archiveReader.close();
+      }
+    }
+    catch (Exception e)
+    {
+      if (verboseMode)
+      {
+        e.printStackTrace();
+      }
+      System.err.println("ERROR:  Unable to read the existing job archive " +
+                         filePath + " -- " + e);
+      return false;
+    }
+
+    if (complete)
+    {
+      System.err.println("ERROR:  The job archive " + filePath + " is " +
+                         "already complete");
+      return false;
+    }
+
+    if (jobCount == 0)
+    {
+      debug("The existing job archive holds no complete jobs, so starting a " +
+            "new one");
+      return true;
+    }
+
+    try
+    {
+      RandomAccessFile raf = new RandomAccessFile(archiveFile, "rw");
+      try
+      {
+        raf.setLength(validLength);
+      }
+      finally
+      {
+        raf.close();
+      }
+    }
+    catch (IOException ioe)
+    {
+      if (verboseMode)
+      {
+        ioe.printStackTrace();
+      }
+      System.err.println("ERROR:  Unable to truncate the job archive " +
+                         filePath + " -- " + ioe);
+      return false;
+    }
+
+    System.out.println("Resuming the export after job " + lastJobID + " (" +
+                       jobCount + " jobs already exported)");
+    resumeAfterJobID = lastJobID;
+    return true;
+  }
+
+
+
+  /**
+   * Reads the response containing a job archive from the server and writes
+   * the archive to the export file, appending to it if an interrupted export
+   * is being resumed.  Since the archive is binary data, the response is read
+   * directly from the input stream rather than through a reader.
+   *
+   * @param  inputStream  The input stream from which to read the response.
+   *
+   * @return  {@code true} if the archive was received properly, or
+   *          {@code false} if not.
+   *
+   * @throws  IOException  If a problem occurs while reading the response or
+   *                       writing the archive.
+   */
+  private boolean receiveJobArchive(InputStream inputStream)
+          throws IOException
+  {
+    BufferedInputStream bufferedStream = new BufferedInputStream(inputStream);
+
+    String line;
+    while (((line = readHeaderLine(bufferedStream)) != null) &&
+           (line.length() > 0))
+    {
+      debug("SERVER:  " + line);
+      if (line.toLowerCase().startsWith("http/"))
+      {
+        StringTokenizer st = new StringTokenizer(line, " ");
+        String protocol   = st.nextToken();
+        String resultCode = st.nextToken();
+        if (! resultCode.equals("200"))
+        {
+          System.err.println("ERROR:  Unexpected HTTP result code " +
+                             resultCode);
+          System.err.println("Message was " + line);
+          return false;
+        }
+      }
+      else if (line.toLowerCase().startsWith("content-type:") &&
+               (line.toLowerCase().indexOf("x-slamd-job-archive") < 0))
+      {
+        System.err.println("ERROR:  The server did not return a job " +
+                           "archive.  Make sure that the authentication " +
+                           "information is correct.");
+        return false;
+      }
+    }
+
+    OutputStream outputStream =
+         new FileOutputStream(filePath, (resumeAfterJobID != null));
+    long   bytesRead  = 0L;
+    long   nextTarget = 1024L * 1024L;
+    byte[] buffer     = new byte[65536];
+    try
+    {
+      int length;
+      while ((length = bufferedStream.read(buffer)) >= 0)
+      {
+        outputStream.write(buffer, 0, length);
+        bytesRead += length;
+        if (bytesRead >= nextTarget)
+        {
+          System.out.println(bytesRead + " bytes exported");
+          nextTarget += (1024L * 1024L);
+        }
+      }
+    }
+    finally
+    {
+      outputStream.close();
+    }
+
+    System.out.println("Export complete -- " + bytesRead + " bytes exported");
+
+
+    // The server can't report errors once it has started writing the archive,
+    // so make sure that it is actually complete.
+    JobArchiveReader archiveReader = null;
+    try
+    {
+      archiveReader = new JobArchiveReader(new BufferedInputStream(
+                                                new FileInputStream(filePath)));
+      while (archiveReader.readJob() != null)
+      {
+        // No implementation required.
+      }
+
+      if (! archiveReader.isComplete())
+      {
+        System.err.println("ERROR:  The job archive is incomplete.  The last " +
+                           "job exported was " +
+                           archiveReader.getLastJobID() + ".  Use -r to " +
+                           "resume the export.");
+        return false;
+      }
+
+      System.out.println("The job archive holds " +
+                         archiveReader.getJobCount() + " jobs.");
+    }
+    catch (Exception e)
+    {
+      if (verboseMode)
+      {
+        e.printStackTrace();
+      }
+      System.err.println("ERROR:  Unable to verify the job archive -- " + e);
+      return false;
+    }
+    finally
+    {
+      if (archiveReader != null)
+      {
+        archiveReader.close();
+      }
+    }
+
+    return true;
+  }
+
+
+
+  /**
+   * Reads a line of the HTTP response header from the provided input stream.
+   *
+   * @param  inputStream  The input stream from which to read the line.
+   *
+   * @return  The line read, without the line terminator, or {@code null} if
+   *          the end of the stream was reached.
+   *
+   * @throws  IOException  If a problem occurs while reading the line.
+   */
+  private static String readHeaderLine(InputStream inputStream)
+          throws IOException
+  {
+    ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+    while (true)
+    {
+      int b = inputStream.read();
+      if (b < 0)
+      {
+        if (lineBytes.size() == 0)
+        {
+          return null;
+        }
+        break;
+      }
+      else if (b == '\n')
+      {
+        break;
+      }
+      else if (b != '\r')
+      {
+        lineBytes.write(b);
+      }
+    }
+
+    return lineBytes.toString("ISO-8859-1");
+  }
+
+
+
   /**
    * Adds information about the specified parameter to the list of parameters in
    * a form that may be submitted in an HTTP POST.
@@ -486,6 +850,13 @@ public class ExportData
 "                    export (may be used multiple times)" + eol +
 "-V {folderName}  -- The name of a virtual job folder to include in the" + eol +
 "                    export (may be used multiple times)" + eol +
+"-c               -- Export jobs as a compressed job archive rather" + eol +
+"                    than by folder" + eol +
+"-s {jobID}       -- The job ID at which to start a job archive export" + eol +
+"-e {jobID}       -- The job ID before which to end a job archive" + eol +
+"                    export" + eol +
+"-r               -- Resume an interrupted job archive export," + eol +
+"                    appending to the existing file" + eol +
 "-F {folderName}  -- The name of a folder to include in the export" + eol +
 "-h {slamdHost}   -- The address of the SLAMD server" + eol +
 "-p {slamdPort}   -- The port of the SLAMD server's admin interface" + eol +
@@ -418,7 +418,8 @@ public class ImportData
     System.out.println(
 "USAGE:  java -cp {classpath} ImportData {options}" + eol +
 "        where {options} include:" + eol +
-"-f {filePath}   -- The path to the data file to be imported" + eol +
+"-f {filePath}   -- The path to the data file to be imported.  This may" + eol +
+"                   be a folder export or a job archive." + eol +
 "-h {slamdHost}  -- The address of the SLAMD server" + eol +
 "-p {slamdPort}  -- The port of the SLAMD server's admin interface" + eol +
 "-A {authID}     -- The username to use to authenticate to the server" + eol +
@@ -28,6 +28,8 @@ import java.util.Properties;
 
 import com.slamd.job.UnableToRunException;
 import com.slamd.client.ClientMessageWriter;
+import com.slamd.client.ClientProcessGroup;
+import com.slamd.client.ClientProcessStopMonitor;
 import com.slamd.client.ClientSideJob;
 import com.slamd.common.Constants;
 import com.slamd.common.JobClassLoader;
@@ -81,6 +83,10 @@ public class StandaloneClient
   // run.
   private int duration;
 
+  // The number of child processes among which the job threads should be
+  // divided.
+  private int numProcesses;
+
   // The number of threads to use when running the job.
   private int numThreads;
 
@@ -99,6 +105,9 @@ public class StandaloneClient
   // The path to the configuration file.
   private String configFile;
 
+  // The processor lists with which the child processes should be pinned.
+  private String cpuSets;
+
   // The end-of-line character for this platform.
   private String eol = Constants.EOL;
 
@@ -108,6 +117,10 @@ public class StandaloneClient
   // The name of the job class to run.
   private String jobClassName;
 
+  // The path to the file to which the results should be written if this is a
+  // child process started by another client.
+  private String resultFile;
+
 
 
   /**
@@ -141,6 +154,9 @@ public class StandaloneClient
     duration             = 0;
     collectionInterval   = Constants.DEFAULT_COLLECTION_INTERVAL;
     numThreads           = 1;
+    numProcesses         = 1;
+    cpuSets              = null;
+    resultFile           = null;
 
 
     // Parse the command-line arguments
@@ -203,6 +219,27 @@ public class StandaloneClient
           System.exit(1);
         }
       }
+      else if (args[i].equals("-P"))
+      {
+        try
+        {
+          numProcesses = Integer.parseInt(args[++i]);
+        }
+        catch (NumberFormatException nfe)
+        {
+          System.err.println("ERROR:  Number of processes must be an integer");
+          displayUsage();
+          System.exit(1);
+        }
+      }
+      else if (args[i].equals("-C"))
+      {
+        cpuSets = args[++i];
+      }
+      else if (args[i].equals("-R"))
+      {
+        resultFile = args[++i];
+      }
       else if (args[i].equals("-a"))
       {
         aggregateThreadData = true;
@@ -352,6 +389,16 @@ public class StandaloneClient
     ParameterList parameters = new ParameterList(jobParams);
 
 
+    // If this is a child process started by another client, then the job has
+    // already been validated and initialized, so just run it and write the
+    // results for the parent.
+    if (resultFile != null)
+    {
+      runChildProcess(parameters);
+      return;
+    }
+
+
     // Make sure that the job as a whole is acceptable.
     try
     {
@@ -385,6 +432,7 @@ public class StandaloneClient
                                                 collectionInterval, parameters,
                                                 useCustomClassLoader, false,
                                                 null);
+    clientJob.setChildProcesses(numProcesses, cpuSets);
 
 
     // Start the job and wait for it to complete.
@@ -401,6 +449,21 @@ public class StandaloneClient
     int jobDuration = clientJob.getActualDuration();
     writeMessage("Job Processing Time:  " + jobDuration + " seconds");
     StatTracker[] statTrackers = clientJob.getStatTrackers(aggregateThreadData);
+    if (aggregateThreadData && (numProcesses > 1))
+    {
+      // Show the data for all of the processes combined ahead of the
+      // per-process breakdown.
+      StatTracker[] combinedTrackers =
+           ClientProcessGroup.aggregateByName(statTrackers, "aggregated");
+      StatTracker[] allTrackers =
+           new StatTracker[combinedTrackers.length + statTrackers.length];
+      System.arraycopy(combinedTrackers, 0, allTrackers, 0,
+                       combinedTrackers.length);
+      System.arraycopy(statTrackers, 0, allTrackers, combinedTrackers.length,
+                       statTrackers.length);
+      statTrackers = allTrackers;
+    }
+
     for (int i=0; i < statTrackers.length; i++)
     {
       outputWriter.println();
@@ -422,6 +485,45 @@ public class StandaloneClient
 
 
 
+  /**
+   * Runs the job as a child process started by another client, and writes the
+   * results to the result file for the parent to collect.  The parent may stop
+   * the job by writing a stop command to standard input.
+   *
+   * @param  parameters  The parameters for the job.
+   */
+  private void runChildProcess(ParameterList parameters)
+  {
+    ClientSideJob clientJob = new ClientSideJob(this, classPath, jobClassName,
+                                                numThreads, duration,
+                                                collectionInterval, parameters,
+                                                useCustomClassLoader, false,
+                                                null);
+    new ClientProcessStopMonitor(clientJob, System.in).start();
+    clientJob.startAndWait();
+
+    int exitCode = 0;
+    try
+    {
+      ClientProcessGroup.writeResults(resultFile, clientJob.getJobState(),
+                                      clientJob.getStatTrackers(false));
+    }
+    catch (IOException ioe)
+    {
+      System.err.println("ERROR:  Unable to write the results to " +
+                         resultFile + ":  " + ioe);
+      exitCode = 1;
+    }
+
+    outputWriter.flush();
+
+    // Exit explicitly so that any non-daemon threads left behind by the job
+    // can't keep the parent waiting.
+    System.exit(exitCode);
+  }
+
+
+
   /**
    * Generates a configuration file that can be used to run the specified
    * job.
@@ -675,6 +777,12 @@ public class StandaloneClient
 "-i {value}  -- Specifies the length of time in seconds that should be " + eol +
 "               used as the statistics collection interval" + eol +
 "-t {value}  -- Specifies the number of threads that should be used" + eol +
+"-P {value}  -- Specifies the number of child processes among which" + eol +
+"               the threads should be divided" + eol +
+"-C {cpus}   -- Specifies the processor lists to which the child" + eol +
+"               processes should be pinned, separated by slashes" + eol +
+"               (e.g., \"0-15/16-31\"), or \"auto\" to divide the" + eol +
+"               available processors evenly" + eol +
 "-c {path}   -- Specifies the location of the job class files" + eol +
 "-a          -- Specifies that data from each of the threads should be " + eol +
 "               aggregated before displaying the results" + eol +
@@ -18,13 +18,16 @@ package com.slamd.tools.ldifstructure;
 
 
 import java.util.Iterator;
+import java.util.Map;
 import java.util.TreeMap;
 
 
 
 /**
  * This class defines a data structure that holds information about a given
- * attribute that may be associated with an LDIF entry type.
+ * attribute that may be associated with an LDIF entry type.  Unique values are
+ * summarized with a {@code UniqueValueSketch}, so the amount of memory used
+ * for each attribute is bounded no matter how many entries are processed.
  *
  *
  * @author   Neil A. Wilson
@@ -49,9 +52,6 @@ public class LDIFAttributeInfo
   // in an entry of the associated type.
   private int numEntries;
 
-  // The number of unique values for this attribute across all entries.
-  private int numUniqueValues;
-
   // The total number of values for this attribute across all entries.
   private int numValues;
 
@@ -61,9 +61,9 @@ public class LDIFAttributeInfo
   // The name of the attribute for this attribute info structure.
   private String attributeName;
 
-  // A mapping between the individual values for this attribute and the number
-  // of occurrences for each.
-  private TreeMap<String,Integer> valueCounts;
+  // The summary of the distinct values for this attribute and the number of
+  // occurrences of the most common ones.
+  private UniqueValueSketch valueSketch;
 
 
 
@@ -76,42 +76,14 @@ public class LDIFAttributeInfo
    */
   public LDIFAttributeInfo(LDIFAttribute attribute)
   {
-    attributeName   = attribute.getLowerName();
-    valueCounts     = new TreeMap<String,Integer>();
-    numEntries      = 1;
-    numValues       = 0;
-    numUniqueValues = 0;
-    numCharacters   = 0;
-
-    Iterator<String> iterator = attribute.getValues().iterator();
-    while (iterator.hasNext())
-    {
-      String s = iterator.next();
-      String lowerValue = LDIFReader.toLowerCase(s);
-
-      numValues++;
-      numCharacters += s.length();
-
-      if (s.length() > MAX_UNIQUE_VALUE_LENGTH)
-      {
-        numUniqueValues = -1;
-        continue;
-      }
-
-      if (numUniqueValues >= 0)
-      {
-        Integer count = valueCounts.get(lowerValue);
-        if (count == null)
-        {
-          numUniqueValues++;
-          valueCounts.put(lowerValue, 1);
-        }
-        else
-        {
-          valueCounts.put(lowerValue, (count + 1));
-        }
-      }
-    }
+    attributeName = attribute.getLowerName();
+    valueSketch   = new UniqueValueSketch(MAX_UNIQUE_VALUES,
+                                          MAX_UNIQUE_VALUE_LENGTH);
+    numEntries    = 0;
+    numValues     = 0;
+    numCharacters = 0;
+
+    update(attribute);
   }
 
 
@@ -126,20 +98,17 @@ public class LDIFAttributeInfo
    *                          across all entries.
    * @param  numCharacters    The total number of characters across all values
    *                          in all entries.
-   * @param  numUniqueValues  The number of unique values for this attribute.
-   * @param  valueCounts      The map correlating the unique values for this
-   *                          attribute with the number of occurrences for each.
+   * @param  valueSketch      The summary of the unique values for this
+   *                          attribute.
    */
   LDIFAttributeInfo(String attributeName, int numEntries, int numValues,
-                    long numCharacters, int numUniqueValues,
-                    TreeMap<String,Integer> valueCounts)
+                    long numCharacters, UniqueValueSketch valueSketch)
   {
-    this.attributeName   = attributeName;
-    this.numEntries      = numEntries;
-    this.numValues       = numValues;
-    this.numCharacters   = numCharacters;
-    this.numUniqueValues = numUniqueValues;
-    this.valueCounts     = valueCounts;
+    this.attributeName = attributeName;
+    this.numEntries    = numEntries;
+    this.numValues     = numValues;
+    this.numCharacters = numCharacters;
+    this.valueSketch   = valueSketch;
   }
 
 
@@ -159,32 +128,7 @@ public class LDIFAttributeInfo
     while (iterator.hasNext())
     {
       String s = iterator.next();
-      if (s.length() > MAX_UNIQUE_VALUE_LENGTH)
-      {
-        numUniqueValues = -1;
-      }
-
-      if (numUniqueValues >= 0)
-      {
-        String lowerValue = LDIFReader.toLowerCase(s);
-        Integer count = valueCounts.get(lowerValue);
-        if (count == null)
-        {
-          numUniqueValues++;
-          if (numUniqueValues > MAX_UNIQUE_VALUES)
-          {
-            numUniqueValues = -1;
-          }
-          else
-          {
-            valueCounts.put(lowerValue, 1);
-          }
-        }
-        else
-        {
-          valueCounts.put(lowerValue, (count + 1));
-        }
-      }
+      valueSketch.add(LDIFReader.toLowerCase(s));
 
       numValues++;
       numCharacters += s.length();
@@ -286,7 +230,45 @@ public class LDIFAttributeInfo
    */
   public double getNumUniqueValues()
   {
-    return numUniqueValues;
+    if (valueSketch.isExact())
+    {
+      return valueSketch.getDistinctCount();
+    }
+    else
+    {
+      return -1;
+    }
+  }
+
+
+
+  /**
+   * Retrieves the estimated number of unique values for this attribute.  This
+   * is available even after the maximum number of allowed unique values has
+   * been exceeded, and is exact until that point.
+   *
+   * @return  The estimated number of unique values for this attribute.
+   */
+  public long getEstimatedNumUniqueValues()
+  {
+    return valueSketch.getDistinctCount();
+  }
+
+
+
+  /**
+   * Retrieves the values of this attribute that are known to appear more than
+   * once, along with their estimated number of occurrences, in descending
+   * order of frequency.  This is intended for use when
+   * <CODE>getNumUniqueValues</CODE> returns a negative value, and will include
+   * at most <CODE>MAX_UNIQUE_VALUES</CODE> values.
+   *
+   * @return  A map correlating the most common values for this attribute with
+   *          their estimated number of occurrences.
+   */
+  public Map<String,Long> getMostCommonValues()
+  {
+    return valueSketch.getRepeatedValues();
   }
 
 
@@ -302,7 +284,7 @@ public class LDIFAttributeInfo
    */
   public TreeMap<String,Integer> getUniqueValues()
   {
-    return valueCounts;
+    return valueSketch.getValueCounts();
   }
 
 
@@ -314,9 +296,8 @@ public class LDIFAttributeInfo
    */
   public Object clone()
   {
-    TreeMap<String,Integer> mapClone = new TreeMap<String,Integer>(valueCounts);
     return new LDIFAttributeInfo(attributeName, numEntries, numValues,
-                                 numCharacters, numUniqueValues, mapClone);
+                                 numCharacters, valueSketch.duplicate());
   }
 
 
@@ -334,38 +315,7 @@ public class LDIFAttributeInfo
     numValues     += attributeInfo.numValues;
     numCharacters += attributeInfo.numCharacters;
 
-    if (attributeInfo.numUniqueValues < 0)
-    {
-      numUniqueValues = -1;
-    }
-
-    if (numUniqueValues > 0)
-    {
-      Iterator<String> iterator = attributeInfo.valueCounts.keySet().iterator();
-      while (iterator.hasNext())
-      {
-        String  s             = iterator.next();
-        Integer currentCount  = valueCounts.get(s);
-        Integer providedCount = attributeInfo.valueCounts.get(s);
-
-        if (currentCount != null)
-        {
-          valueCounts.put(s, (currentCount + providedCount));
-        }
-        else
-        {
-          numUniqueValues++;
-          if (numUniqueValues > MAX_UNIQUE_VALUES)
-          {
-            numUniqueValues = -1;
-          }
-          else
-          {
-            valueCounts.put(s, providedCount);
-          }
-        }
-      }
-    }
+    valueSketch.merge(attributeInfo.valueSketch);
   }
 }
 
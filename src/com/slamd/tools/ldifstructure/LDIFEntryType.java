@@ -206,6 +206,34 @@ public class LDIFEntryType
       }
     }
 
+    mergeAttributes(entryType);
+  }
+
+
+
+  /**
+   * Merges the information from the provided entry type, which must have the
+   * same set of objectclasses, into this entry type.  This is used to combine
+   * the results of processing different portions of an LDIF file.
+   *
+   * @param  entryType  The entry type with the information to merge.
+   */
+  void merge(LDIFEntryType entryType)
+  {
+    numEntries += entryType.numEntries;
+    mergeAttributes(entryType);
+  }
+
+
+
+  /**
+   * Merges the attribute information from the provided entry type into this
+   * entry type.
+   *
+   * @param  entryType  The entry type with the attribute information to merge.
+   */
+  private void mergeAttributes(LDIFEntryType entryType)
+  {
     Iterator<String> iterator = entryType.attributes.keySet().iterator();
     while (iterator.hasNext())
     {
@@ -100,6 +100,18 @@ public class LDIFNode
 
 
 
+  /**
+   * Specifies the reference to the parent node for this LDIF node.
+   *
+   * @param  parentNode  The reference to the parent node for this LDIF node.
+   */
+  void setParentNode(LDIFNode parentNode)
+  {
+    this.parentNode = parentNode;
+  }
+
+
+
   /**
    * Retrieves the number of entries that are immediate children of this node.
    *
@@ -256,6 +268,37 @@ public class LDIFNode
 
 
 
+  /**
+   * Merges the child entry information from the provided node, which must have
+   * the same DN, into this node.  This is used to combine the results of
+   * processing different portions of an LDIF file.  Child nodes are not
+   * merged.
+   *
+   * @param  node  The node with the information to merge.
+   */
+  void merge(LDIFNode node)
+  {
+    numChildren += node.numChildren;
+
+    Iterator<String> iterator = node.childEntryTypes.keySet().iterator();
+    while (iterator.hasNext())
+    {
+      String key = iterator.next();
+      LDIFEntryType currentType  = childEntryTypes.get(key);
+      LDIFEntryType providedType = node.childEntryTypes.get(key);
+      if (currentType == null)
+      {
+        childEntryTypes.put(key, providedType);
+      }
+      else
+      {
+        currentType.merge(providedType);
+      }
+    }
+  }
+
+
+
   /**
    * Retrives the set of child nodes for this LDIF node.  There should be a
    * child node for each immediate child entry that itself has one or more
@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.TreeMap;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -50,6 +51,12 @@ import javax.swing.tree.TreePath;
 /**
  * This program defines a utility that can examine an LDIF file and gather
  * summary information about the structure of the associated directory.
+ * <BR><BR>
+ * By default, entries are read one at a time in the order they appear in the
+ * file.  If multiple threads are requested, the file is instead split into
+ * chunks on entry boundaries and processed concurrently by a
+ * {@code ParallelLDIFAnalyzer}, which makes it practical to examine very
+ * large exports.
  *
  *
  * @author   Neil A. Wilson
@@ -122,6 +129,7 @@ public class LDIFStructure
     boolean aggregateOnly   = false;
     boolean ignoreHierarchy = false;
     int     maxEntries      = 0;
+    int     numThreads      = 1;
     String  ldifFile        = null;
     String  outputFile      = null;
 
@@ -139,6 +147,10 @@ public class LDIFStructure
       {
         maxEntries = Integer.parseInt(args[++i]);
       }
+      else if (args[i].equals("-t"))
+      {
+        numThreads = Integer.parseInt(args[++i]);
+      }
       else if (args[i].equals("-i"))
       {
         ignoreHierarchy = true;
@@ -170,7 +182,7 @@ public class LDIFStructure
 
 
     LDIFStructure ldifStructure = new LDIFStructure(ldifFile, ignoreHierarchy,
-                                                    maxEntries);
+                                                    maxEntries, numThreads);
     if (outputFile == null)
     {
       ldifStructure.displayGUI();
@@ -201,6 +213,35 @@ public class LDIFStructure
    */
   public LDIFStructure(String ldifFile, boolean ignoreHierarchy, int maxEntries)
          throws IOException, ParseException
+  {
+    this(ldifFile, ignoreHierarchy, maxEntries, 1);
+  }
+
+
+
+  /**
+   * Processes the provided LDIF file and populates the appropriate internal
+   * structures based on its contents, optionally using multiple threads.
+   *
+   * @param  ldifFile         The path to the LDIF file to process.
+   * @param  ignoreHierarchy  Indicates whether to ignore hierarchy and just
+   *                          look at unique objectclass combinations.
+   * @param  maxEntries       The maximum number of entries to process, or -1 if
+   *                          there should be no maximum.
+   * @param  numThreads       The number of threads to use to process the LDIF
+   *                          file.  If this is greater than one, then the file
+   *                          will be split into chunks that are processed
+   *                          concurrently, and the entries will not need to be
+   *                          in hierarchical order.
+   *
+   * @throws  IOException  If a problem occurs while reading from the LDIF.
+   *
+   * @throws  ParseException  If a problem occurs while parsing an entry from
+   *                          the LDIF.
+   */
+  public LDIFStructure(String ldifFile, boolean ignoreHierarchy, int maxEntries,
+                       int numThreads)
+         throws IOException, ParseException
   {
     // Initialize the appropriate instance variables.
     this.ldifFile        = ldifFile;
@@ -209,6 +250,18 @@ public class LDIFStructure
     rootNodes            = new ArrayList<LDIFNode>();
     nodeMap              = new HashMap<String,LDIFNode>();
 
+    if (numThreads > 1)
+    {
+      ParallelLDIFAnalyzer analyzer = new ParallelLDIFAnalyzer(ldifFile,
+           ignoreHierarchy, maxEntries, numThreads);
+      analyzer.analyze();
+      rootNodes.addAll(analyzer.getRootNodes());
+      nodeMap.putAll(analyzer.getNodeMap());
+      System.out.println("End of LDIF reached.  Processed " +
+                         analyzer.getEntriesRead() + " entries");
+      return;
+    }
+
     String baseDN = null;
 
 
@@ -413,23 +466,7 @@ public class LDIFStructure
                        decimalFormat.format(charsPerValue) +
                        " characters per value");
 
-        if (i.getNumUniqueValues() > 0)
-        {
-          TreeMap<String,Integer> valueCounts = i.getUniqueValues();
-          String separator="";
-
-          writer.print("        <");
-
-          Iterator<String> iterator2 = valueCounts.keySet().iterator();
-          while (iterator2.hasNext())
-          {
-            String value = iterator2.next();
-            writer.print(separator + value + ':' + valueCounts.get(value));
-            separator = ",";
-          }
-
-          writer.println(">");
-        }
+        writer.println("        " + getUniqueValueSummary(i));
       }
 
       writer.println();
@@ -479,23 +516,7 @@ public class LDIFStructure
                          decimalFormat.format(charsPerValue) +
                          " characters per value");
 
-          if (ai.getNumUniqueValues() > 0)
-          {
-            TreeMap<String,Integer> valueCounts = ai.getUniqueValues();
-            String separator="";
-
-            writer.print("        <");
-
-            Iterator<String> iterator2 = valueCounts.keySet().iterator();
-            while (iterator2.hasNext())
-            {
-              String value = iterator2.next();
-              writer.print(separator + value + ':' + valueCounts.get(value));
-              separator = ",";
-            }
-
-            writer.println(">");
-          }
+          writer.println("        " + getUniqueValueSummary(ai));
         }
 
         writer.println();
@@ -516,6 +537,66 @@ public class LDIFStructure
 
 
 
+  /**
+   * Retrieves a summary of the unique values for the provided attribute.  If
+   * the number of unique values is small enough to have been tracked exactly,
+   * then the summary will list each value and its number of occurrences.
+   * Otherwise, it will give the estimated number of unique values along with
+   * the estimated counts for the most common values known to repeat.
+   *
+   * @param  attrInfo  The attribute for which to retrieve the summary.
+   *
+   * @return  A summary of the unique values for the provided attribute.
+   */
+  private static String getUniqueValueSummary(LDIFAttributeInfo attrInfo)
+  {
+    StringBuilder buffer = new StringBuilder();
+    String separator = "";
+
+    if (attrInfo.getNumUniqueValues() > 0)
+    {
+      TreeMap<String,Integer> valueCounts = attrInfo.getUniqueValues();
+
+      buffer.append('<');
+      Iterator<String> iterator = valueCounts.keySet().iterator();
+      while (iterator.hasNext())
+      {
+        String value = iterator.next();
+        buffer.append(separator);
+        buffer.append(value);
+        buffer.append(':');
+        buffer.append(valueCounts.get(value));
+        separator = ",";
+      }
+      buffer.append('>');
+
+      return buffer.toString();
+    }
+
+    buffer.append("approximately ");
+    buffer.append(attrInfo.getEstimatedNumUniqueValues());
+    buffer.append(" unique values");
+
+    Map<String,Long> commonValues = attrInfo.getMostCommonValues();
+    if (! commonValues.isEmpty())
+    {
+      buffer.append(", most common <");
+      for (Map.Entry<String,Long> e : commonValues.entrySet())
+      {
+        buffer.append(separator);
+        buffer.append(e.getKey());
+        buffer.append(":~");
+        buffer.append(e.getValue());
+        separator = ",";
+      }
+      buffer.append('>');
+    }
+
+    return buffer.toString();
+  }
+
+
+
   /**
    * Generates and displays the GUI that may be used to browse the contents of
    * the LDIF.
@@ -811,27 +892,9 @@ public class LDIFStructure
       b.append(" characters per value");
       b.append(EOL);
 
-      if (ai.getNumUniqueValues() > 0)
-      {
-        String separator = "";
-
-        b.append("     <");
-
-        Iterator<String> iterator2 = ai.getUniqueValues().keySet().iterator();
-        while (iterator2.hasNext())
-        {
-          String s = iterator2.next();
-          b.append(separator);
-          b.append(s);
-          b.append(':');
-          b.append(ai.getUniqueValues().get(s));
-
-          separator = ",";
-        }
-
-        b.append('>');
-        b.append(EOL);
-      }
+      b.append("     ");
+      b.append(getUniqueValueSummary(ai));
+      b.append(EOL);
     }
 
     entryTypeArea.setText(b.toString());
@@ -853,6 +916,7 @@ public class LDIFStructure
 "-l {ldifFile} -- The LDIF file to process" + EOL +
 "-o {outFile}  -- The output file to create (instead of showing a GUI)" + EOL +
 "-x {maxCount} -- Process at most this number of entries" + EOL +
+"-t {threads}  -- Process the LDIF in parallel with this many threads" + EOL +
 "-i            -- Ignore hierarchy and only focus on objectclass sets" + EOL +
 "-a            -- Only show aggregate data (ingored in GUI mode)" + EOL +
 "-H            -- Display this usage information"
@@ -0,0 +1,679 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.ldifstructure;
+
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * This class provides a means of examining a very large LDIF file using
+ * multiple threads.  The file is divided into chunks of roughly
+ * <CODE>CHUNK_SIZE</CODE> bytes, with each chunk boundary moved forward to the
+ * blank line that ends an entry.  Worker threads claim chunks in turn,
+ * memory-map them, and parse the entries they contain, and each worker keeps
+ * its own set of nodes keyed by parent DN.  Once all chunks have been
+ * processed, the per-worker nodes are merged and linked into a tree.
+ * <BR><BR>
+ * Because the tree is assembled after all entries have been read, the entries
+ * do not need to appear in hierarchical order.  A node will be created for
+ * every DN that has at least one child entry, even if the entry with that DN
+ * is not itself present in the LDIF file.  The LDIF file is assumed to be
+ * encoded in UTF-8.
+ */
+final class ParallelLDIFAnalyzer
+{
+  /**
+   * The target size in bytes for each chunk of the LDIF file.
+   */
+  static final int CHUNK_SIZE = 32 * 1024 * 1024;
+
+
+
+  /**
+   * The size of the buffer used while looking for chunk boundaries.
+   */
+  private static final int BOUNDARY_BUFFER_SIZE = 64 * 1024;
+
+
+
+  // Indicates whether we should ignore hierarchy when examining the data.
+  private final boolean ignoreHierarchy;
+
+  // Indicates whether processing should stop, because the maximum number of
+  // entries has been reached or a worker has encountered an error.
+  private volatile boolean stopRequested;
+
+  // The maximum number of entries to process.
+  private final int maxEntries;
+
+  // The number of worker threads to use.
+  private final int numThreads;
+
+  // The index of the next chunk to be claimed by a worker.
+  private final AtomicInteger nextChunk;
+
+  // The number of bytes contained in chunks that have been fully processed.
+  private final AtomicLong bytesProcessed;
+
+  // The number of entries that have been read from the LDIF.
+  private final AtomicLong entriesRead;
+
+  // The list of root nodes assembled from the LDIF.
+  private final ArrayList<LDIFNode> rootNodes;
+
+  // The mapping of all nodes assembled from the LDIF.
+  private final HashMap<String,LDIFNode> nodeMap;
+
+  // The offsets of the chunk boundaries, including the start and end of the
+  // file.
+  private long[] boundaries;
+
+  // The DN to use as the parent of all entries if hierarchy is to be ignored.
+  private String baseDN;
+
+  // The LDIF file to be processed.
+  private final String ldifFile;
+
+
+
+  /**
+   * Creates a new parallel LDIF analyzer with the provided information.
+   *
+   * @param  ldifFile         The path to the LDIF file to process.
+   * @param  ignoreHierarchy  Indicates whether to ignore hierarchy and just
+   *                          look at unique objectclass combinations.
+   * @param  maxEntries       The maximum number of entries to process, or a
+   *                          value less than or equal to zero if there should
+   *                          be no maximum.  Because entries are processed
+   *                          concurrently, they will not necessarily be the
+   *                          first entries in the file.
+   * @param  numThreads       The number of worker threads to use.
+   */
+  ParallelLDIFAnalyzer(String ldifFile, boolean ignoreHierarchy,
+                       int maxEntries, int numThreads)
+  {
+    this.ldifFile        = ldifFile;
+    this.ignoreHierarchy = ignoreHierarchy;
+    this.maxEntries      = maxEntries;
+    this.numThreads      = Math.max(1, numThreads);
+
+    stopRequested  = false;
+    nextChunk      = new AtomicInteger(0);
+    bytesProcessed = new AtomicLong(0L);
+    entriesRead    = new AtomicLong(0L);
+    rootNodes      = new ArrayList<LDIFNode>();
+    nodeMap        = new HashMap<String,LDIFNode>();
+  }
+
+
+
+  /**
+   * Processes the LDIF file and assembles the resulting tree.
+   *
+   * @throws  IOException  If a problem occurs while reading from the LDIF.
+   *
+   * @throws  ParseException  If a problem occurs while parsing an entry from
+   *                          the LDIF.
+   */
+  void analyze()
+       throws IOException, ParseException
+  {
+    // If we are to ignore hierarchy, then all entries other than the first
+    // will be placed below the first, so we need to know its DN up front.
+    if (ignoreHierarchy)
+    {
+      LDIFReader reader = new LDIFReader(ldifFile);
+      try
+      {
+        LDIFEntry firstEntry = reader.nextEntry();
+        if (firstEntry == null)
+        {
+          return;
+        }
+
+        baseDN = firstEntry.getNormalizedDN();
+      }
+      finally
+      {
+        reader.close();
+      }
+    }
+
+
+    try (RandomAccessFile raf = new RandomAccessFile(ldifFile, "r");
+         FileChannel channel = raf.getChannel())
+    {
+      boundaries = findChunkBoundaries(channel);
+
+      ExecutorService executor = Executors.newFixedThreadPool(numThreads,
+           r ->
+           {
+             Thread t = new Thread(r, "LDIF Structure Worker");
+             t.setDaemon(true);
+             return t;
+           });
+
+      ArrayList<Future<Worker>> futures = new ArrayList<Future<Worker>>();
+      for (int i=0; i < numThreads; i++)
+      {
+        futures.add(executor.submit(new Worker(channel)));
+      }
+      executor.shutdown();
+
+      ArrayList<Worker> workers = new ArrayList<Worker>();
+      try
+      {
+        for (Future<Worker> f : futures)
+        {
+          workers.add(f.get());
+        }
+      }
+      catch (InterruptedException ie)
+      {
+        stopRequested = true;
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for the LDIF file " +
+                              "to be processed", ie);
+      }
+      catch (ExecutionException ee)
+      {
+        stopRequested = true;
+        Throwable cause = ee.getCause();
+        if (cause instanceof IOException)
+        {
+          throw (IOException) cause;
+        }
+        else if (cause instanceof ParseException)
+        {
+          throw (ParseException) cause;
+        }
+        else
+        {
+          throw new IOException("Unexpected error while processing the " +
+                                "LDIF file:  " + cause, cause);
+        }
+      }
+
+      mergeResults(workers);
+    }
+  }
+
+
+
+  /**
+   * Retrieves the root nodes assembled from the LDIF.
+   *
+   * @return  The root nodes assembled from the LDIF.
+   */
+  ArrayList<LDIFNode> getRootNodes()
+  {
+    return rootNodes;
+  }
+
+
+
+  /**
+   * Retrieves the mapping of all nodes assembled from the LDIF, keyed by
+   * normalized DN.
+   *
+   * @return  The mapping of all nodes assembled from the LDIF.
+   */
+  HashMap<String,LDIFNode> getNodeMap()
+  {
+    return nodeMap;
+  }
+
+
+
+  /**
+   * Retrieves the number of entries that were processed.
+   *
+   * @return  The number of entries that were processed.
+   */
+  long getEntriesRead()
+  {
+    if ((maxEntries > 0) && (entriesRead.get() > maxEntries))
+    {
+      return maxEntries;
+    }
+
+    return entriesRead.get();
+  }
+
+
+
+  /**
+   * Divides the LDIF file into chunks, with each chunk starting at the
+   * beginning of an entry.
+   *
+   * @param  channel  The channel to use to read the LDIF file.
+   *
+   * @return  The offsets of the chunk boundaries, including zero and the size
+   *          of the file.
+   *
+   * @throws  IOException  If a problem occurs while reading the file.
+   */
+  private static long[] findChunkBoundaries(FileChannel channel)
+          throws IOException
+  {
+    long size = channel.size();
+    ArrayList<Long> offsets = new ArrayList<Long>();
+    offsets.add(0L);
+
+    ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_BUFFER_SIZE);
+    long nominalOffset = CHUNK_SIZE;
+    while (nominalOffset < size)
+    {
+      long offset = findEntryStart(channel, nominalOffset, size, buffer);
+      if (offset >= size)
+      {
+        break;
+      }
+
+      offsets.add(offset);
+      nominalOffset = offset + CHUNK_SIZE;
+    }
+
+    offsets.add(size);
+
+    long[] boundaries = new long[offsets.size()];
+    for (int i=0; i < boundaries.length; i++)
+    {
+      boundaries[i] = offsets.get(i);
+    }
+
+    return boundaries;
+  }
+
+
+
+  /**
+   * Finds the offset of the first byte following a blank line at or after the
+   * specified offset.  Since a blank line always ends an entry in LDIF, this
+   * will be the beginning of the next entry (possibly preceded by comments or
+   * additional blank lines, which the LDIF reader will skip).
+   *
+   * @param  channel  The channel to use to read the LDIF file.
+   * @param  offset   The offset at which to begin looking.
+   * @param  size     The size of the LDIF file.
+   * @param  buffer   The buffer to use when reading from the file.
+   *
+   * @return  The offset of the first byte following a blank line, or the size
+   *          of the file if no such line was found.
+   *
+   * @throws  IOException  If a problem occurs while reading the file.
+   */
+  private static long findEntryStart(FileChannel channel, long offset,
+                                     long size, ByteBuffer buffer)
+          throws IOException
+  {
+    // Start one byte early so that a boundary falling exactly on the offset
+    // will be found.
+    long    position    = offset - 1L;
+    boolean lastWasEOL  = false;
+    while (position < size)
+    {
+      buffer.clear();
+      int bytesRead = channel.read(buffer, position);
+      if (bytesRead <= 0)
+      {
+        break;
+      }
+
+      for (int i=0; i < bytesRead; i++)
+      {
+        byte b = buffer.get(i);
+        if (b == '\n')
+        {
+          if (lastWasEOL)
+          {
+            return position + i + 1L;
+          }
+
+          lastWasEOL = true;
+        }
+        else if (b != '\r')
+        {
+          lastWasEOL = false;
+        }
+      }
+
+      position += bytesRead;
+    }
+
+    return size;
+  }
+
+
+
+  /**
+   * Merges the nodes collected by each of the workers and links them into a
+   * tree.
+   *
+   * @param  workers  The workers whose results should be merged.
+   */
+  private void mergeResults(ArrayList<Worker> workers)
+  {
+    TreeMap<String,LDIFNode> mergedNodes = new TreeMap<String,LDIFNode>();
+    TreeSet<String>          rootDNs     = new TreeSet<String>();
+    for (Worker w : workers)
+    {
+      for (Map.Entry<String,LDIFNode> e : w.nodes.entrySet())
+      {
+        LDIFNode existingNode = mergedNodes.get(e.getKey());
+        if (existingNode == null)
+        {
+          mergedNodes.put(e.getKey(), e.getValue());
+        }
+        else
+        {
+          existingNode.merge(e.getValue());
+        }
+      }
+
+      rootDNs.addAll(w.rootDNs);
+    }
+
+    TreeMap<String,LDIFNode> roots = new TreeMap<String,LDIFNode>();
+    for (LDIFNode node : mergedNodes.values())
+    {
+      String parentDN = LDIFEntry.getParentDN(node.getNormalizedDN());
+      LDIFNode parentNode =
+           ((parentDN == null) ? null : mergedNodes.get(parentDN));
+      if (parentNode == null)
+      {
+        roots.put(node.getNormalizedDN(), node);
+      }
+      else
+      {
+        node.setParentNode(parentNode);
+        parentNode.addChildNode(node);
+      }
+    }
+
+    for (String dn : rootDNs)
+    {
+      if (! mergedNodes.containsKey(dn))
+      {
+        LDIFNode node = new LDIFNode(dn, null);
+        mergedNodes.put(dn, node);
+        roots.put(dn, node);
+      }
+    }
+
+    rootNodes.addAll(roots.values());
+    nodeMap.putAll(mergedNodes);
+  }
+
+
+
+  /**
+   * This class defines a task that claims chunks of the LDIF file and
+   * processes the entries they contain until no chunks remain.
+   */
+  private final class Worker
+          implements Callable<Worker>
+  {
+    // The channel to use to read the LDIF file.
+    private final FileChannel channel;
+
+    // The nodes created by this worker, keyed by normalized DN.
+    private final HashMap<String,LDIFNode> nodes;
+
+    // The DNs of the entries read by this worker that do not have a parent.
+    private final ArrayList<String> rootDNs;
+
+
+
+    /**
+     * Creates a new worker that will read from the provided channel.
+     *
+     * @param  channel  The channel to use to read the LDIF file.
+     */
+    private Worker(FileChannel channel)
+    {
+      this.channel = channel;
+
+      nodes   = new HashMap<String,LDIFNode>();
+      rootDNs = new ArrayList<String>();
+    }
+
+
+
+    /**
+     * Processes chunks of the LDIF file until none remain.
+     *
+     * @return  This worker, so that its results may be merged.
+     *
+     * @throws  IOException  If a problem occurs while reading from the LDIF.
+     *
+     * @throws  ParseException  If a problem occurs while parsing an entry.
+     */
+    @Override()
+    public Worker call()
+           throws IOException, ParseException
+    {
+      try
+      {
+        int chunk;
+        while ((! stopRequested) &&
+               ((chunk = nextChunk.getAndIncrement()) <
+                (boundaries.length - 1)))
+        {
+          processChunk(chunk);
+        }
+
+        return this;
+      }
+      catch (IOException | ParseException | RuntimeException e)
+      {
+        stopRequested = true;
+        throw e;
+      }
+    }
+
+
+
+    /**
+     * Processes all entries in the specified chunk of the LDIF file.
+     *
+     * @param  chunk  The index of the chunk to process.
+     *
+     * @throws  IOException  If a problem occurs while reading from the LDIF.
+     *
+     * @throws  ParseException  If a problem occurs while parsing an entry.
+     */
+    private void processChunk(int chunk)
+            throws IOException, ParseException
+    {
+      long start  = boundaries[chunk];
+      long length = boundaries[chunk+1] - start;
+      if (length > Integer.MAX_VALUE)
+      {
+        throw new IOException("Unable to process the portion of the LDIF " +
+                              "file starting at byte offset " + start +
+                              " because it does not contain an entry " +
+                              "boundary within " + Integer.MAX_VALUE +
+                              " bytes");
+      }
+
+      MappedByteBuffer buffer =
+           channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+      LDIFReader reader = new LDIFReader(new BufferedReader(
+           new InputStreamReader(new ByteBufferInputStream(buffer),
+                                 StandardCharsets.UTF_8)));
+
+      boolean firstEntry = true;
+      try
+      {
+        LDIFEntry entry;
+        while ((! stopRequested) && ((entry = reader.nextEntry()) != null))
+        {
+          if ((entriesRead.incrementAndGet() > maxEntries) && (maxEntries > 0))
+          {
+            stopRequested = true;
+            break;
+          }
+
+          if (ignoreHierarchy)
+          {
+            if ((chunk == 0) && firstEntry)
+            {
+              firstEntry = false;
+              rootDNs.add(baseDN);
+              continue;
+            }
+
+            entry.setDN("rdn=x," + baseDN);
+          }
+
+          String parentDN = entry.getParentDN();
+          if (parentDN == null)
+          {
+            rootDNs.add(entry.getNormalizedDN());
+          }
+          else
+          {
+            LDIFNode parentNode = nodes.get(parentDN);
+            if (parentNode == null)
+            {
+              parentNode = new LDIFNode(parentDN, null);
+              nodes.put(parentDN, parentNode);
+            }
+
+            parentNode.addChild(entry);
+          }
+        }
+      }
+      catch (ParseException pe)
+      {
+        throw new ParseException("Error in the portion of the LDIF file " +
+                                 "starting at byte offset " + start + ":  " +
+                                 pe.getMessage(), pe.getErrorOffset());
+      }
+
+      long processed = bytesProcessed.addAndGet(length);
+      System.out.println("Processed " + getEntriesRead() + " entries (" +
+                         (100L * processed / boundaries[boundaries.length-1]) +
+                         "% of the LDIF file).");
+    }
+  }
+
+
+
+  /**
+   * This class defines an input stream that reads from a byte buffer.
+   */
+  private static final class ByteBufferInputStream
+          extends InputStream
+  {
+    // The buffer from which to read.
+    private final ByteBuffer buffer;
+
+
+
+    /**
+     * Creates a new input stream that will read from the provided buffer.
+     *
+     * @param  buffer  The buffer from which to read.
+     */
+    private ByteBufferInputStream(ByteBuffer buffer)
+    {
+      this.buffer = buffer;
+    }
+
+
+
+    /**
+     * Reads a single byte from the buffer.
+     *
+     * @return  The byte that was read, or -1 if the end of the buffer has been
+     *          reached.
+     */
+    @Override()
+    public int read()
+    {
+      if (buffer.hasRemaining())
+      {
+        return (buffer.get() & 0xFF);
+      }
+
+      return -1;
+    }
+
+
+
+    /**
+     * Reads up to the specified number of bytes from the buffer.
+     *
+     * @param  b       The array into which the bytes should be read.
+     * @param  offset  The position in the array at which to start.
+     * @param  length  The maximum number of bytes to read.
+     *
+     * @return  The number of bytes read, or -1 if the end of the buffer has
+     *          been reached.
+     */
+    @Override()
+    public int read(byte[] b, int offset, int length)
+    {
+      if (! buffer.hasRemaining())
+      {
+        return -1;
+      }
+
+      int bytesToRead = Math.min(length, buffer.remaining());
+      buffer.get(b, offset, bytesToRead);
+      return bytesToRead;
+    }
+
+
+
+    /**
+     * Retrieves the number of bytes that remain in the buffer.
+     *
+     * @return  The number of bytes that remain in the buffer.
+     */
+    @Override()
+    public int available()
+    {
+      return buffer.remaining();
+    }
+  }
+}
@@ -0,0 +1,529 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.ldifstructure;
+
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+
+/**
+ * This class defines a bounded-size summary of the values of an attribute.  It
+ * provides two pieces of information:  the number of distinct values, and the
+ * values that occur most frequently along with their counts.
+ * <BR><BR>
+ * The number of distinct values is tracked exactly, using a small set of 64-bit
+ * value hashes, until it exceeds the capacity of the sketch.  At that point the
+ * hashes are folded into a HyperLogLog register array and the count becomes an
+ * estimate with a standard error of about two percent.  The most frequent
+ * values are tracked with the Space-Saving algorithm, which keeps at most as
+ * many counters as the capacity of the sketch.  As long as the number of
+ * distinct values does not exceed that capacity, the counts are exact.  Once it
+ * does, each retained count may overstate the true count by at most the error
+ * recorded for it.
+ * <BR><BR>
+ * Sketches may be merged, which allows separate threads to summarize different
+ * portions of the same data and combine the results at the end.  Instances of
+ * this class are not threadsafe.
+ */
+public final class UniqueValueSketch
+{
+  /**
+   * The number of bits of each hash used to select a HyperLogLog register.
+   */
+  private static final int HLL_PRECISION = 11;
+
+
+
+  /**
+   * The number of HyperLogLog registers.
+   */
+  private static final int HLL_REGISTERS = 1 << HLL_PRECISION;
+
+
+
+  /**
+   * The bias correction constant for the HyperLogLog estimate.
+   */
+  private static final double HLL_ALPHA =
+       0.7213D / (1.0D + (1.079D / HLL_REGISTERS));
+
+
+
+  // The HyperLogLog registers, or null if the distinct values are still being
+  // tracked exactly.
+  private byte[] registers;
+
+  // The maximum number of distinct value hashes and value counters to keep.
+  private final int capacity;
+
+  // The hashes of the distinct values seen so far, if they are still being
+  // tracked exactly.
+  private HashSet<Long> hashes;
+
+  // The Space-Saving counters for the most frequent values.  Each counter holds
+  // the count and the maximum amount by which that count may be overstated.
+  private HashMap<String,long[]> counters;
+
+  // The values whose counters held the smallest count when last examined.
+  private final ArrayList<String> minCandidates;
+
+  // The smallest counter value when the minimum candidates were last found.
+  private long minCandidateCount;
+
+  // Indicates whether a counter has ever been evicted, in which case the
+  // counts are no longer exact.
+  private boolean countersOverflowed;
+
+  // Indicates whether any value was too long to be tracked by the counters.
+  private boolean valuesOmitted;
+
+  // The maximum length of a value that will be tracked by the counters.
+  private final int maxValueLength;
+
+
+
+  /**
+   * Creates a new empty sketch.
+   *
+   * @param  capacity        The maximum number of distinct values that will
+   *                         be counted exactly, and the maximum number of
+   *                         value counters that will be retained.
+   * @param  maxValueLength  The maximum length of a value that will be
+   *                         tracked by the value counters.  Longer values are
+   *                         still included in the distinct value count.
+   */
+  public UniqueValueSketch(int capacity, int maxValueLength)
+  {
+    this.capacity       = capacity;
+    this.maxValueLength = maxValueLength;
+
+    registers          = null;
+    hashes             = new HashSet<Long>();
+    counters           = new HashMap<String,long[]>();
+    minCandidates      = new ArrayList<String>();
+    minCandidateCount  = 0L;
+    countersOverflowed = false;
+    valuesOmitted      = false;
+  }
+
+
+
+  /**
+   * Adds the provided value to this sketch.
+   *
+   * @param  lowerValue  The value to add, which should already have been
+   *                     converted to lowercase.
+   */
+  public void add(String lowerValue)
+  {
+    addHash(hash(lowerValue));
+
+    if (lowerValue.length() > maxValueLength)
+    {
+      valuesOmitted = true;
+      return;
+    }
+
+    long[] counter = counters.get(lowerValue);
+    if (counter != null)
+    {
+      counter[0]++;
+    }
+    else if (counters.size() < capacity)
+    {
+      counters.put(lowerValue, new long[] { 1L, 0L });
+    }
+    else
+    {
+      // Replace a counter with the smallest count.  The new value inherits
+      // that count as its possible overstatement.
+      while (true)
+      {
+        if (minCandidates.isEmpty())
+        {
+          findMinimumCandidates();
+        }
+
+        String minValue   = minCandidates.remove(minCandidates.size() - 1);
+        long[] minCounter = counters.get(minValue);
+        if ((minCounter != null) && (minCounter[0] == minCandidateCount))
+        {
+          counters.remove(minValue);
+          minCounter[1] = minCounter[0];
+          minCounter[0]++;
+          counters.put(lowerValue, minCounter);
+          countersOverflowed = true;
+          return;
+        }
+      }
+    }
+  }
+
+
+
+  /**
+   * Rebuilds the list of values whose counters hold the smallest count.  Since
+   * counts only ever increase, a value in that list whose count has since grown
+   * is simply skipped, and the list only needs to be rebuilt once it has been
+   * exhausted.  For attributes whose values are nearly all distinct, most
+   * counters share the smallest count, so this keeps the cost of an eviction
+   * close to constant.
+   */
+  private void findMinimumCandidates()
+  {
+    minCandidateCount = getMinimumCount(counters);
+    for (Map.Entry<String,long[]> e : counters.entrySet())
+    {
+      if (e.getValue()[0] == minCandidateCount)
+      {
+        minCandidates.add(e.getKey());
+      }
+    }
+  }
+
+
+
+  /**
+   * Merges the contents of the provided sketch into this sketch.  The provided
+   * sketch will not be altered.
+   *
+   * @param  sketch  The sketch to merge into this sketch.
+   */
+  public void merge(UniqueValueSketch sketch)
+  {
+    if (sketch.registers == null)
+    {
+      for (Long h : sketch.hashes)
+      {
+        addHash(h);
+      }
+    }
+    else
+    {
+      if (registers == null)
+      {
+        convertToRegisters();
+      }
+
+      for (int i=0; i < HLL_REGISTERS; i++)
+      {
+        if (sketch.registers[i] > registers[i])
+        {
+          registers[i] = sketch.registers[i];
+        }
+      }
+    }
+
+
+    // A value missing from a sketch whose counters have overflowed may still
+    // have occurred up to that sketch's minimum count times, so that amount is
+    // added to the count and the error for any such value.
+    long thisMin  = (countersOverflowed ? getMinimumCount(counters) : 0L);
+    long otherMin = (sketch.countersOverflowed
+                     ? getMinimumCount(sketch.counters)
+                     : 0L);
+
+    HashMap<String,long[]> merged = new HashMap<String,long[]>();
+    for (Map.Entry<String,long[]> e : counters.entrySet())
+    {
+      long[] c = e.getValue();
+      long[] o = sketch.counters.get(e.getKey());
+      if (o == null)
+      {
+        merged.put(e.getKey(), new long[] { c[0] + otherMin, c[1] + otherMin });
+      }
+      else
+      {
+        merged.put(e.getKey(), new long[] { c[0] + o[0], c[1] + o[1] });
+      }
+    }
+
+    for (Map.Entry<String,long[]> e : sketch.counters.entrySet())
+    {
+      if (! merged.containsKey(e.getKey()))
+      {
+        long[] o = e.getValue();
+        merged.put(e.getKey(), new long[] { o[0] + thisMin, o[1] + thisMin });
+      }
+    }
+
+    countersOverflowed |= sketch.countersOverflowed;
+    valuesOmitted      |= sketch.valuesOmitted;
+
+    if (merged.size() > capacity)
+    {
+      ArrayList<Map.Entry<String,long[]>> entries =
+           new ArrayList<Map.Entry<String,long[]>>(merged.entrySet());
+      entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+
+      merged = new HashMap<String,long[]>();
+      for (int i=0; i < capacity; i++)
+      {
+        merged.put(entries.get(i).getKey(), entries.get(i).getValue());
+      }
+      countersOverflowed = true;
+    }
+
+    counters = merged;
+    minCandidates.clear();
+  }
+
+
+
+  /**
+   * Creates a copy of this sketch.
+   *
+   * @return  A copy of this sketch.
+   */
+  public UniqueValueSketch duplicate()
+  {
+    UniqueValueSketch s = new UniqueValueSketch(capacity, maxValueLength);
+    s.registers          = ((registers == null) ? null : registers.clone());
+    s.hashes             = ((hashes == null)
+                            ? null
+                            : new HashSet<Long>(hashes));
+    s.countersOverflowed = countersOverflowed;
+    s.valuesOmitted      = valuesOmitted;
+
+    for (Map.Entry<String,long[]> e : counters.entrySet())
+    {
+      s.counters.put(e.getKey(), e.getValue().clone());
+    }
+
+    return s;
+  }
+
+
+
+  /**
+   * Indicates whether the information in this sketch is exact, which is the
+   * case if the number of distinct values has not exceeded its capacity and
+   * all of the values were short enough to be counted individually.
+   *
+   * @return  {@code true} if the information in this sketch is exact, or
+   *          {@code false} if it is an estimate.
+   */
+  public boolean isExact()
+  {
+    return ((registers == null) && (! countersOverflowed) &&
+            (! valuesOmitted));
+  }
+
+
+
+  /**
+   * Retrieves the number of distinct values that have been added to this
+   * sketch.  This will be exact as long as the number of distinct values has
+   * not exceeded the capacity of the sketch, and an estimate otherwise.
+   *
+   * @return  The number of distinct values that have been added to this
+   *          sketch.
+   */
+  public long getDistinctCount()
+  {
+    if (registers == null)
+    {
+      return hashes.size();
+    }
+
+    double sum   = 0.0D;
+    int    zeros = 0;
+    for (int i=0; i < HLL_REGISTERS; i++)
+    {
+      sum += 1.0D / (1L << registers[i]);
+      if (registers[i] == 0)
+      {
+        zeros++;
+      }
+    }
+
+    double estimate = HLL_ALPHA * HLL_REGISTERS * HLL_REGISTERS / sum;
+    if ((estimate <= (2.5D * HLL_REGISTERS)) && (zeros > 0))
+    {
+      // Use linear counting for small cardinalities.
+      estimate = HLL_REGISTERS * Math.log((double) HLL_REGISTERS / zeros);
+    }
+
+    return Math.round(estimate);
+  }
+
+
+
+  /**
+   * Retrieves the values that have been counted by this sketch, along with
+   * their counts.  If the sketch is not exact, then each count may be an
+   * overstatement.
+   *
+   * @return  A map correlating the values counted by this sketch with their
+   *          counts.
+   */
+  public TreeMap<String,Integer> getValueCounts()
+  {
+    TreeMap<String,Integer> valueCounts = new TreeMap<String,Integer>();
+    for (Map.Entry<String,long[]> e : counters.entrySet())
+    {
+      valueCounts.put(e.getKey(), (int) e.getValue()[0]);
+    }
+
+    return valueCounts;
+  }
+
+
+
+  /**
+   * Retrieves the values that are known to occur more than once, in descending
+   * order of frequency.  Only values whose counts remain greater than one after
+   * subtracting the maximum possible overstatement are included, so this will
+   * not report noise for attributes whose values are nearly all unique.
+   *
+   * @return  A map correlating the values known to repeat with their estimated
+   *          counts, in descending order of frequency.
+   */
+  public Map<String,Long> getRepeatedValues()
+  {
+    ArrayList<Map.Entry<String,long[]>> entries =
+         new ArrayList<Map.Entry<String,long[]>>();
+    for (Map.Entry<String,long[]> e : counters.entrySet())
+    {
+      if ((e.getValue()[0] - e.getValue()[1]) > 1L)
+      {
+        entries.add(e);
+      }
+    }
+
+    entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+
+    LinkedHashMap<String,Long> repeated = new LinkedHashMap<String,Long>();
+    for (Map.Entry<String,long[]> e : entries)
+    {
+      repeated.put(e.getKey(), e.getValue()[0]);
+    }
+
+    return repeated;
+  }
+
+
+
+  /**
+   * Records the provided value hash in the distinct value count, converting
+   * from exact tracking to HyperLogLog registers if necessary.
+   *
+   * @param  h  The 64-bit hash of the value.
+   */
+  private void addHash(long h)
+  {
+    if (registers == null)
+    {
+      hashes.add(h);
+      if (hashes.size() <= capacity)
+      {
+        return;
+      }
+
+      convertToRegisters();
+      return;
+    }
+
+    int index = (int) (h >>> (64 - HLL_PRECISION));
+    int rank  = Long.numberOfLeadingZeros((h << HLL_PRECISION) |
+                                          (1L << (HLL_PRECISION - 1))) + 1;
+    if (rank > registers[index])
+    {
+      registers[index] = (byte) rank;
+    }
+  }
+
+
+
+  /**
+   * Switches the distinct value count from exact tracking to HyperLogLog
+   * registers.
+   */
+  private void convertToRegisters()
+  {
+    registers = new byte[HLL_REGISTERS];
+
+    Iterator<Long> iterator = hashes.iterator();
+    hashes = null;
+    while (iterator.hasNext())
+    {
+      addHash(iterator.next());
+    }
+  }
+
+
+
+  /**
+   * Retrieves the smallest count held in the provided set of counters.
+   *
+   * @param  counters  The counters to examine.
+   *
+   * @return  The smallest count held in the provided set of counters, or zero
+   *          if there are no counters.
+   */
+  private static long getMinimumCount(HashMap<String,long[]> counters)
+  {
+    if (counters.isEmpty())
+    {
+      return 0L;
+    }
+
+    long min = Long.MAX_VALUE;
+    for (long[] c : counters.values())
+    {
+      min = Math.min(min, c[0]);
+    }
+
+    return min;
+  }
+
+
+
+  /**
+   * Computes a 64-bit hash of the provided string.  This uses the FNV-1a hash
+   * followed by the finalization step from MurmurHash3 so that all bits of the
+   * result are well distributed.
+   *
+   * @param  s  The string to hash.
+   *
+   * @return  The 64-bit hash of the provided string.
+   */
+  static long hash(String s)
+  {
+    long h = 0xCBF29CE484222325L;
+    int length = s.length();
+    for (int i=0; i < length; i++)
+    {
+      h ^= s.charAt(i);
+      h *= 0x100000001B3L;
+    }
+
+    h ^= (h >>> 33);
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= (h >>> 33);
+    h *= 0xC4CEB93F5FE2F6A5L;
+    h ^= (h >>> 33);
+    return h;
+  }
+}
@@ -0,0 +1,325 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.loopback;
+
+
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+import com.slamd.parameter.InvalidValueException;
+
+
+
+/**
+ * This class defines a distribution of artificial latency that a loopback
+ * server may add to each response.  A distribution is described by a string
+ * in one of the following forms, in which all values are in milliseconds and
+ * may include a fractional part:
+ * <UL>
+ *   <LI>{@code none} -- No latency will be added.</LI>
+ *   <LI>{@code fixed:<delay>} -- The same delay will be added to every
+ *       response.</LI>
+ *   <LI>{@code uniform:<min>:<max>} -- Delays will be uniformly distributed
+ *       between the minimum and maximum.</LI>
+ *   <LI>{@code exponential:<mean>} -- Delays will be exponentially distributed
+ *       with the given mean.</LI>
+ *   <LI>{@code normal:<mean>:<stddev>} -- Delays will be normally distributed
+ *       with the given mean and standard deviation, with negative values
+ *       treated as zero.</LI>
+ * </UL>
+ */
+public final class LatencyDistribution
+{
+  /**
+   * The name of the distribution that does not add any latency.
+   */
+  public static final String TYPE_NONE = "none";
+
+
+
+  /**
+   * The name of the distribution that adds a fixed delay.
+   */
+  public static final String TYPE_FIXED = "fixed";
+
+
+
+  /**
+   * The name of the distribution with uniformly-distributed delays.
+   */
+  public static final String TYPE_UNIFORM = "uniform";
+
+
+
+  /**
+   * The name of the distribution with exponentially-distributed delays.
+   */
+  public static final String TYPE_EXPONENTIAL = "exponential";
+
+
+
+  /**
+   * The name of the distribution with normally-distributed delays.
+   */
+  public static final String TYPE_NORMAL = "normal";
+
+
+
+  /**
+   * A distribution that does not add any latency.
+   */
+  public static final LatencyDistribution NONE =
+       new LatencyDistribution(TYPE_NONE, 0.0D, 0.0D);
+
+
+
+  // The first parameter for the distribution, in nanoseconds.
+  private final double param1;
+
+  // The second parameter for the distribution, in nanoseconds.
+  private final double param2;
+
+  // The name of the distribution type.
+  private final String type;
+
+
+
+  /**
+   * Creates a new latency distribution with the provided information.
+   *
+   * @param  type    The name of the distribution type.
+   * @param  param1  The first parameter for the distribution, in nanoseconds.
+   * @param  param2  The second parameter for the distribution, in nanoseconds.
+   */
+  private LatencyDistribution(String type, double param1, double param2)
+  {
+    this.type   = type;
+    this.param1 = param1;
+    this.param2 = param2;
+  }
+
+
+
+  /**
+   * Parses the provided string as a latency distribution.
+   *
+   * @param  spec  The string representation of the distribution.  It may be
+   *               {@code null} or empty if no latency should be added.
+   *
+   * @return  The latency distribution described by the provided string.
+   *
+   * @throws  InvalidValueException  If the provided string does not describe a
+   *                                 valid latency distribution.
+   */
+  public static LatencyDistribution parse(String spec)
+         throws InvalidValueException
+  {
+    if ((spec == null) || (spec.trim().length() == 0))
+    {
+      return NONE;
+    }
+
+    String[] elements = spec.trim().toLowerCase().split(":");
+    double[] values   = new double[elements.length - 1];
+    for (int i=1; i < elements.length; i++)
+    {
+      try
+      {
+        values[i-1] = Double.parseDouble(elements[i].trim()) * 1000000.0D;
+      }
+      catch (NumberFormatException nfe)
+      {
+        throw new InvalidValueException("Invalid latency value \"" +
+                                        elements[i] + "\" in latency " +
+                                        "distribution \"" + spec + '"');
+      }
+
+      if (values[i-1] < 0.0D)
+      {
+        throw new InvalidValueException("Latency values in distribution \"" +
+                                        spec + "\" must not be negative.");
+      }
+    }
+
+    String type = elements[0].trim();
+    switch (type)
+    {
+      case TYPE_NONE:
+        checkValueCount(spec, values, 0);
+        return NONE;
+      case TYPE_FIXED:
+      case TYPE_EXPONENTIAL:
+        checkValueCount(spec, values, 1);
+        return new LatencyDistribution(type, values[0], 0.0D);
+      case TYPE_UNIFORM:
+        checkValueCount(spec, values, 2);
+        if (values[1] < values[0])
+        {
+          throw new InvalidValueException("The maximum latency in " +
+                                          "distribution \"" + spec +
+                                          "\" is less than the minimum.");
+        }
+        return new LatencyDistribution(type, values[0], values[1]);
+      case TYPE_NORMAL:
+        checkValueCount(spec, values, 2);
+        return new LatencyDistribution(type, values[0], values[1]);
+      default:
+        throw new InvalidValueException("Unrecognized latency distribution " +
+                                        "type \"" + type + "\" in \"" + spec +
+                                        '"');
+    }
+  }
+
+
+
+  /**
+   * Ensures that the correct number of values was provided for a distribution.
+   *
+   * @param  spec      The string representation of the distribution.
+   * @param  values    The values provided for the distribution.
+   * @param  expected  The number of values that the distribution requires.
+   *
+   * @throws  InvalidValueException  If the number of values is not correct.
+   */
+  private static void checkValueCount(String spec, double[] values,
+                                      int expected)
+          throws InvalidValueException
+  {
+    if (values.length != expected)
+    {
+      throw new InvalidValueException("Latency distribution \"" + spec +
+                                      "\" requires " + expected +
+                                      " value(s).");
+    }
+  }
+
+
+
+  /**
+   * Indicates whether this distribution will ever add any latency.
+   *
+   * @return  {@code true} if this distribution will never add latency, or
+   *          {@code false} if it may.
+   */
+  public boolean isNone()
+  {
+    return ((param1 == 0.0D) && (param2 == 0.0D));
+  }
+
+
+
+  /**
+   * Retrieves the mean delay for this distribution.
+   *
+   * @return  The mean delay for this distribution, in milliseconds.
+   */
+  public double getMeanMillis()
+  {
+    switch (type)
+    {
+      case TYPE_UNIFORM:
+        return ((param1 + param2) / 2.0D / 1000000.0D);
+      case TYPE_NONE:
+        return 0.0D;
+      default:
+        // The mean of the fixed, exponential, and normal distributions is the
+        // first parameter.  The normal distribution is truncated at zero, so
+        // this will understate its mean if the deviation is large.
+        return (param1 / 1000000.0D);
+    }
+  }
+
+
+
+  /**
+   * Selects a delay from this distribution.
+   *
+   * @param  random  The random number generator to use.
+   *
+   * @return  The selected delay, in nanoseconds.
+   */
+  public long nextDelayNanos(Random random)
+  {
+    double delay;
+    switch (type)
+    {
+      case TYPE_FIXED:
+        delay = param1;
+        break;
+      case TYPE_UNIFORM:
+        delay = param1 + (random.nextDouble() * (param2 - param1));
+        break;
+      case TYPE_EXPONENTIAL:
+        delay = -param1 * Math.log(1.0D - random.nextDouble());
+        break;
+      case TYPE_NORMAL:
+        delay = param1 + (random.nextGaussian() * param2);
+        break;
+      default:
+        delay = 0.0D;
+        break;
+    }
+
+    return Math.max(0L, (long) delay);
+  }
+
+
+
+  /**
+   * Blocks the calling thread for a delay selected from this distribution.
+   */
+  public void delay()
+  {
+    if (isNone())
+    {
+      return;
+    }
+
+    long delayNanos = nextDelayNanos(ThreadLocalRandom.current());
+    long stopTime   = System.nanoTime() + delayNanos;
+    while (delayNanos > 0L)
+    {
+      LockSupport.parkNanos(delayNanos);
+      delayNanos = stopTime - System.nanoTime();
+    }
+  }
+
+
+
+  /**
+   * Retrieves a string representation of this latency distribution.
+   *
+   * @return  A string representation of this latency distribution.
+   */
+  @Override()
+  public String toString()
+  {
+    switch (type)
+    {
+      case TYPE_FIXED:
+      case TYPE_EXPONENTIAL:
+        return type + ':' + (param1 / 1000000.0D);
+      case TYPE_UNIFORM:
+      case TYPE_NORMAL:
+        return type + ':' + (param1 / 1000000.0D) + ':' +
+               (param2 / 1000000.0D);
+      default:
+        return TYPE_NONE;
+    }
+  }
+}
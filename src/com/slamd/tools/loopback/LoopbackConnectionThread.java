@@ -0,0 +1,84 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.loopback;
+
+
+
+import java.io.IOException;
+import java.net.Socket;
+
+
+
+/**
+ * This class defines a thread that services a single client connection
+ * accepted by a loopback server.
+ */
+public class LoopbackConnectionThread
+       extends Thread
+{
+  // The server that accepted the connection.
+  private final LoopbackServer server;
+
+  // The connection to the client.
+  private final Socket socket;
+
+
+
+  /**
+   * Creates a new connection thread with the provided information.
+   *
+   * @param  server  The server that accepted the connection.
+   * @param  socket  The connection to the client.
+   */
+  public LoopbackConnectionThread(LoopbackServer server, Socket socket)
+  {
+    this.server = server;
+    this.socket = socket;
+
+    setName("Loopback " + server.getProtocolName() + " Connection " +
+            socket.getRemoteSocketAddress());
+    setDaemon(true);
+  }
+
+
+
+  /**
+   * Allows the server to interact with the client until the connection is
+   * closed, and then cleans up.
+   */
+  @Override()
+  public void run()
+  {
+    try
+    {
+      server.handleConnection(socket);
+    }
+    catch (IOException ioe)
+    {
+      // This will most commonly happen when the client drops the connection
+      // or the server is shutting down, neither of which is worth reporting.
+    }
+    finally
+    {
+      try
+      {
+        socket.close();
+      } catch (Exception e) {}
+
+      server.connectionClosed(socket);
+    }
+  }
+}
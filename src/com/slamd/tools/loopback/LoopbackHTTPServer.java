@@ -0,0 +1,246 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.loopback;
+
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+
+
+
+/**
+ * This class defines a minimal HTTP server that responds to every request with
+ * the same "200 OK" response containing a body of a configurable size.  It
+ * honors HTTP/1.1 persistent connections and the "Connection" request header,
+ * and it reads and discards any request body indicated by a "Content-Length"
+ * header.  It does not support chunked request bodies.
+ */
+public class LoopbackHTTPServer
+       extends LoopbackServer
+{
+  /**
+   * The default number of bytes to include in each response body.
+   */
+  public static final int DEFAULT_RESPONSE_SIZE = 1024;
+
+
+
+  /**
+   * The end-of-line sequence used in HTTP headers.
+   */
+  private static final String CRLF = "\r\n";
+
+
+
+  // The complete response, including the headers and the body, sent for
+  // requests that keep the connection open.
+  private final byte[] keepAliveResponse;
+
+  // The complete response, including the headers and the body, sent for
+  // requests that close the connection.
+  private final byte[] closeResponse;
+
+  // The length of the response body.
+  private final int responseSize;
+
+
+
+  /**
+   * Creates a new loopback HTTP server with the provided information.
+   *
+   * @param  listenAddress  The address on which the server should listen.  It
+   *                        may be {@code null} to listen on the loopback
+   *                        address.
+   * @param  listenPort     The port on which the server should listen.  It may
+   *                        be zero to listen on an automatically-selected
+   *                        port.
+   * @param  latency        The latency distribution that should be applied to
+   *                        responses.
+   * @param  responseSize   The number of bytes to include in each response
+   *                        body.
+   */
+  public LoopbackHTTPServer(InetAddress listenAddress, int listenPort,
+                            LatencyDistribution latency, int responseSize)
+  {
+    super("HTTP", listenAddress, listenPort, latency);
+
+    this.responseSize = Math.max(0, responseSize);
+
+    keepAliveResponse = buildResponse(this.responseSize, true);
+    closeResponse     = buildResponse(this.responseSize, false);
+  }
+
+
+
+  /**
+   * Retrieves the number of bytes included in each response body.
+   *
+   * @return  The number of bytes included in each response body.
+   */
+  public int getResponseSize()
+  {
+    return responseSize;
+  }
+
+
+
+  /**
+   * Constructs the response that will be returned for each request.
+   *
+   * @param  responseSize  The number of bytes to include in the body.
+   * @param  keepAlive     Indicates whether the connection will remain open
+   *                       after the response.
+   *
+   * @return  The bytes that make up the complete response.
+   */
+  private static byte[] buildResponse(int responseSize, boolean keepAlive)
+  {
+    String header = "HTTP/1.1 200 OK" + CRLF +
+                    "Server: SLAMD Loopback" + CRLF +
+                    "Content-Type: text/plain" + CRLF +
+                    "Content-Length: " + responseSize + CRLF +
+                    "Connection: " + (keepAlive ? "keep-alive" : "close") +
+                    CRLF + CRLF;
+
+    byte[] headerBytes = header.getBytes();
+    byte[] response = new byte[headerBytes.length + responseSize];
+    System.arraycopy(headerBytes, 0, response, 0, headerBytes.length);
+    Arrays.fill(response, headerBytes.length, response.length, (byte) 'x');
+    return response;
+  }
+
+
+
+  /**
+   * Reads requests from the client and responds to each of them until the
+   * client closes the connection or asks that it be closed.
+   *
+   * @param  socket  The connection to the client.
+   *
+   * @throws  IOException  If a problem occurs while communicating with the
+   *                       client.
+   */
+  @Override()
+  protected void handleConnection(Socket socket)
+            throws IOException
+  {
+    InputStream  inputStream  =
+         new BufferedInputStream(socket.getInputStream());
+    OutputStream outputStream =
+         new BufferedOutputStream(socket.getOutputStream());
+
+    while (! stopRequested())
+    {
+      String requestLine = readLine(inputStream);
+      if (requestLine == null)
+      {
+        return;
+      }
+      else if (requestLine.length() == 0)
+      {
+        // Tolerate blank lines between requests.
+        continue;
+      }
+
+      long startNanos = System.nanoTime();
+
+      boolean keepAlive = requestLine.endsWith("HTTP/1.1");
+      boolean isHead    = requestLine.startsWith("HEAD ");
+      long    bodyBytes = 0L;
+      while (true)
+      {
+        String line = readLine(inputStream);
+        if (line == null)
+        {
+          return;
+        }
+        else if (line.length() == 0)
+        {
+          break;
+        }
+
+        int colonPos = line.indexOf(':');
+        if (colonPos <= 0)
+        {
+          continue;
+        }
+
+        String name  = line.substring(0, colonPos).trim();
+        String value = line.substring(colonPos+1).trim();
+        if (name.equalsIgnoreCase("Content-Length"))
+        {
+          try
+          {
+            bodyBytes = Long.parseLong(value);
+          }
+          catch (NumberFormatException nfe)
+          {
+            return;
+          }
+        }
+        else if (name.equalsIgnoreCase("Connection"))
+        {
+          if (value.equalsIgnoreCase("close"))
+          {
+            keepAlive = false;
+          }
+          else if (value.equalsIgnoreCase("keep-alive"))
+          {
+            keepAlive = true;
+          }
+        }
+      }
+
+      while (bodyBytes > 0L)
+      {
+        long skipped = inputStream.skip(bodyBytes);
+        if (skipped <= 0L)
+        {
+          if (inputStream.read() < 0)
+          {
+            return;
+          }
+          skipped = 1L;
+        }
+        bodyBytes -= skipped;
+      }
+
+      long beforeDelayNanos = System.nanoTime();
+      getLatency().delay();
+      long afterDelayNanos = System.nanoTime();
+
+      byte[] response = (keepAlive ? keepAliveResponse : closeResponse);
+      int length = (isHead ? (response.length - responseSize)
+                           : response.length);
+      outputStream.write(response, 0, length);
+      outputStream.flush();
+      addProcessingTime((beforeDelayNanos - startNanos) +
+                        (System.nanoTime() - afterDelayNanos));
+
+      if (! keepAlive)
+      {
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,311 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.loopback;
+
+
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedAddRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedAddResult;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedCompareRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedCompareResult;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedDeleteRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedDeleteResult;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedModifyDNRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedModifyDNResult;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedModifyRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedModifyResult;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedResult;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchResult;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSimpleBindRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSimpleBindResult;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+
+
+
+/**
+ * This class defines an in-memory directory server operation interceptor that
+ * applies a latency distribution to the result of each add, bind, compare,
+ * delete, modify, modify DN, and search operation before it is returned to the
+ * client.  It also records the time that the server spends processing each of
+ * those operations, from the time the request is received until its result is
+ * ready, not including the added latency.
+ */
+final class LoopbackLDAPInterceptor
+      extends InMemoryOperationInterceptor
+{
+  /**
+   * The name of the request property used to hold the time that processing
+   * began for an operation.
+   */
+  private static final String PROPERTY_START_NANOS =
+       LoopbackLDAPInterceptor.class.getName() + ".startNanos";
+
+
+
+  // The latency distribution to apply to each result.
+  private final LatencyDistribution latency;
+
+  // The total time in nanoseconds spent processing operations.
+  private final LongAdder processingNanos;
+
+
+
+  /**
+   * Creates a new interceptor that will apply the provided latency
+   * distribution.
+   *
+   * @param  latency  The latency distribution to apply to each result.
+   */
+  LoopbackLDAPInterceptor(LatencyDistribution latency)
+  {
+    this.latency = latency;
+
+    processingNanos = new LongAdder();
+  }
+
+
+
+  /**
+   * Retrieves the total time that the server has spent processing operations,
+   * not including any latency added to the results.
+   *
+   * @return  The total time in nanoseconds spent processing operations.
+   */
+  long getProcessingNanos()
+  {
+    return processingNanos.sum();
+  }
+
+
+
+  /**
+   * Records the time that processing began for the provided request.
+   *
+   * @param  request  The request being processed.
+   */
+  private static void start(InMemoryInterceptedRequest request)
+  {
+    request.setProperty(PROPERTY_START_NANOS, System.nanoTime());
+  }
+
+
+
+  /**
+   * Records the time spent processing the operation for the provided result,
+   * and then delays the result.
+   *
+   * @param  result  The result to be returned to the client.
+   */
+  private void complete(InMemoryInterceptedResult result)
+  {
+    Object startNanos = result.getProperty(PROPERTY_START_NANOS);
+    if (startNanos instanceof Long)
+    {
+      processingNanos.add(System.nanoTime() - (Long) startNanos);
+    }
+
+    latency.delay();
+  }
+
+
+
+  /**
+   * Records the time that an add operation was received.
+   *
+   * @param  request  The request received from the client.
+   */
+  @Override()
+  public void processAddRequest(InMemoryInterceptedAddRequest request)
+  {
+    start(request);
+  }
+
+
+
+  /**
+   * Delays the result of an add operation.
+   *
+   * @param  result  The result to be returned to the client.
+   */
+  @Override()
+  public void processAddResult(InMemoryInterceptedAddResult result)
+  {
+    complete(result);
+  }
+
+
+
+  /**
+   * Records the time that a simple bind operation was received.
+   *
+   * @param  request  The request received from the client.
+   */
+  @Override()
+  public void processSimpleBindRequest(
+                   InMemoryInterceptedSimpleBindRequest request)
+  {
+    start(request);
+  }
+
+
+
+  /**
+   * Delays the result of a simple bind operation.
+   *
+   * @param  result  The result to be returned to the client.
+   */
+  @Override()
+  public void processSimpleBindResult(
+                   InMemoryInterceptedSimpleBindResult result)
+  {
+    complete(result);
+  }
+
+
+
+  /**
+   * Records the time that a compare operation was received.
+   *
+   * @param  request  The request received from the client.
+   */
+  @Override()
+  public void processCompareRequest(InMemoryInterceptedCompareRequest request)
+  {
+    start(request);
+  }
+
+
+
+  /**
+   * Delays the result of a compare operation.
+   *
+   * @param  result  The result to be returned to the client.
+   */
+  @Override()
+  public void processCompareResult(InMemoryInterceptedCompareResult result)
+  {
+    complete(result);
+  }
+
+
+
+  /**
+   * Records the time that a delete operation was received.
+   *
+   * @param  request  The request received from the client.
+   */
+  @Override()
+  public void processDeleteRequest(InMemoryInterceptedDeleteRequest request)
+  {
+    start(request);
+  }
+
+
+
+  /**
+   * Delays the result of a delete operation.
+   *
+   * @param  result  The result to be returned to the client.
+   */
+  @Override()
+  public void processDeleteResult(InMemoryInterceptedDeleteResult result)
+  {
+    complete(result);
+  }
+
+
+
+  /**
+   * Records the time that a modify operation was received.
+   *
+   * @param  request  The request received from the client.
+   */
+  @Override()
+  public void processModifyRequest(InMemoryInterceptedModifyRequest request)
+  {
+    start(request);
+  }
+
+
+
+  /**
+   * Delays the result of a modify operation.
+   *
+   * @param  result  The result to be returned to the client.
+   */
+  @Override()
+  public void processModifyResult(InMemoryInterceptedModifyResult result)
+  {
+    complete(result);
+  }
+
+
+
+  /**
+   * Records the time that a modify DN operation was received.
+   *
+   * @param  request  The request received from the client.
+   */
+  @Override()
+  public void processModifyDNRequest(
+                   InMemoryInterceptedModifyDNRequest request)
+  {
+    start(request);
+  }
+
+
+
+  /**
+   * Delays the result of a modify DN operation.
+   *
+   * @param  result  The result to be returned to the client.
+   */
+  @Override()
+  public void processModifyDNResult(InMemoryInterceptedModifyDNResult result)
+  {
+    complete(result);
+  }
+
+
+
+  /**
+   * Records the time that a search operation was received.
+   *
+   * @param  request  The request received from the client.
+   */
+  @Override()
+  public void processSearchRequest(InMemoryInterceptedSearchRequest request)
+  {
+    start(request);
+  }
+
+
+
+  /**
+   * Delays the result of a search operation.
+   *
+   * @param  result  The result to be returned to the client.
+   */
+  @Override()
+  public void processSearchResult(InMemoryInterceptedSearchResult result)
+  {
+    complete(result);
+  }
+}
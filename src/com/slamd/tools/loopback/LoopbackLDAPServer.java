@@ -0,0 +1,259 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.loopback;
+
+
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+
+
+
+/**
+ * This class provides an in-memory LDAP directory server that LDAP jobs may
+ * target in place of a real directory.  It is populated with a base entry of
+ * "dc=example,dc=com", an "ou=People" entry beneath it, and a configurable
+ * number of user entries named "uid=user.{n},ou=People,dc=example,dc=com",
+ * each with a password of "password".  Clients may also bind as
+ * "cn=Directory Manager" with a password of "password".  The configured
+ * latency is applied to the result of every operation.
+ */
+public class LoopbackLDAPServer
+{
+  /**
+   * The base DN for the data provided by the server.
+   */
+  public static final String BASE_DN = "dc=example,dc=com";
+
+
+
+  /**
+   * The DN of the entry below which the user entries are held.
+   */
+  public static final String PEOPLE_BASE_DN = "ou=People," + BASE_DN;
+
+
+
+  /**
+   * The DN of the administrative account that may be used to bind.
+   */
+  public static final String BIND_DN = "cn=Directory Manager";
+
+
+
+  /**
+   * The password for the administrative account and for all user entries.
+   */
+  public static final String BIND_PASSWORD = "password";
+
+
+
+  /**
+   * The default number of user entries to create.
+   */
+  public static final int DEFAULT_NUM_ENTRIES = 1000;
+
+
+
+  // The in-memory directory server instance.
+  private final InMemoryDirectoryServer directoryServer;
+
+  // The number of user entries held in the server.
+  private final int numEntries;
+
+  // The latency distribution applied to each operation.
+  private final LatencyDistribution latency;
+
+  // The interceptor used to apply the latency and time each operation.
+  private final LoopbackLDAPInterceptor interceptor;
+
+
+
+  /**
+   * Creates a new loopback LDAP server with the provided information.  The
+   * server will be populated but will not accept connections until
+   * {@code startListening} is called.
+   *
+   * @param  listenAddress  The address on which the server should listen.  It
+   *                        may be {@code null} to listen on the loopback
+   *                        address.
+   * @param  listenPort     The port on which the server should listen.  It may
+   *                        be zero to listen on an automatically-selected
+   *                        port.
+   * @param  latency        The latency distribution that should be applied to
+   *                        the result of each operation.
+   * @param  numEntries     The number of user entries to create.
+   *
+   * @throws  LDAPException  If a problem occurs while creating or populating
+   *                         the server.
+   */
+  public LoopbackLDAPServer(InetAddress listenAddress, int listenPort,
+                            LatencyDistribution latency, int numEntries)
+         throws LDAPException
+  {
+    this.numEntries = Math.max(0, numEntries);
+
+    if (latency == null)
+    {
+      this.latency = LatencyDistribution.NONE;
+    }
+    else
+    {
+      this.latency = latency;
+    }
+
+    if (listenAddress == null)
+    {
+      listenAddress = InetAddress.getLoopbackAddress();
+    }
+
+    InMemoryDirectoryServerConfig config =
+         new InMemoryDirectoryServerConfig(BASE_DN);
+    config.addAdditionalBindCredentials(BIND_DN, BIND_PASSWORD);
+    config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig(
+         "LDAP", listenAddress, listenPort, null));
+    config.setAccessLogHandler(null);
+    config.setLDAPDebugLogHandler(null);
+    config.setEnforceAttributeSyntaxCompliance(false);
+    interceptor = new LoopbackLDAPInterceptor(this.latency);
+    config.addInMemoryOperationInterceptor(interceptor);
+
+    directoryServer = new InMemoryDirectoryServer(config);
+    directoryServer.addEntries(generateEntries(this.numEntries));
+  }
+
+
+
+  /**
+   * Generates the entries with which the server will be populated.
+   *
+   * @param  numEntries  The number of user entries to create.
+   *
+   * @return  The entries with which the server will be populated.
+   */
+  private static List<Entry> generateEntries(int numEntries)
+  {
+    ArrayList<Entry> entries = new ArrayList<Entry>(numEntries + 2);
+    entries.add(new Entry(BASE_DN,
+         new Attribute("objectClass", "top", "domain"),
+         new Attribute("dc", "example")));
+    entries.add(new Entry(PEOPLE_BASE_DN,
+         new Attribute("objectClass", "top", "organizationalUnit"),
+         new Attribute("ou", "People")));
+
+    for (int i=0; i < numEntries; i++)
+    {
+      String uid = "user." + i;
+      Entry entry = new Entry("uid=" + uid + ',' + PEOPLE_BASE_DN);
+      entry.addAttribute("objectClass", "top", "person",
+                         "organizationalPerson", "inetOrgPerson");
+      entry.addAttribute("uid", uid);
+      entry.addAttribute("givenName", "User");
+      entry.addAttribute("sn", String.valueOf(i));
+      entry.addAttribute("cn", "User " + i);
+      entry.addAttribute("mail", uid + "@example.com");
+      entry.addAttribute("employeeNumber", String.valueOf(i));
+      entry.addAttribute("description", "This is the description for " +
+                         "User " + i + '.');
+      entry.addAttribute("userPassword", BIND_PASSWORD);
+      entries.add(entry);
+    }
+
+    return entries;
+  }
+
+
+
+  /**
+   * Starts accepting connections from clients.
+   *
+   * @throws  LDAPException  If a problem occurs while starting the listener.
+   */
+  public void startListening()
+         throws LDAPException
+  {
+    directoryServer.startListening();
+  }
+
+
+
+  /**
+   * Retrieves the port on which this server listens.
+   *
+   * @return  The port on which this server listens, or -1 if it is not
+   *          listening.
+   */
+  public int getListenPort()
+  {
+    return directoryServer.getListenPort();
+  }
+
+
+
+  /**
+   * Retrieves the number of user entries held in this server.
+   *
+   * @return  The number of user entries held in this server.
+   */
+  public int getNumEntries()
+  {
+    return numEntries;
+  }
+
+
+
+  /**
+   * Retrieves the latency distribution applied to each operation.
+   *
+   * @return  The latency distribution applied to each operation.
+   */
+  public LatencyDistribution getLatency()
+  {
+    return latency;
+  }
+
+
+
+  /**
+   * Retrieves the total time that this server has spent processing
+   * operations, not including any latency added to the results.
+   *
+   * @return  The total time in nanoseconds that this server has spent
+   *          processing operations.
+   */
+  public long getProcessingNanos()
+  {
+    return interceptor.getProcessingNanos();
+  }
+
+
+
+  /**
+   * Stops this server and closes all client connections.
+   */
+  public void shutDown()
+  {
+    directoryServer.shutDown(true);
+  }
+}
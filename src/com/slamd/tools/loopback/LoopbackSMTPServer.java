@@ -0,0 +1,216 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.loopback;
+
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+
+
+/**
+ * This class defines a minimal SMTP server that accepts and discards every
+ * message it is given.  It understands just enough of the protocol to satisfy
+ * a well-behaved client:  the HELO, EHLO, MAIL, RCPT, RSET, and NOOP commands
+ * always succeed, the DATA command reads the message up to the terminating
+ * line containing only a period, and the QUIT command closes the connection.
+ * The configured latency is applied when the end of each message is received,
+ * which is where a real server would do most of its work.
+ */
+public class LoopbackSMTPServer
+       extends LoopbackServer
+{
+  /**
+   * The greeting sent to clients when they connect.
+   */
+  private static final byte[] GREETING =
+       "220 SLAMD loopback SMTP service ready\r\n".getBytes();
+
+
+
+  /**
+   * The response sent for commands that always succeed.
+   */
+  private static final byte[] RESPONSE_OK = "250 OK\r\n".getBytes();
+
+
+
+  /**
+   * The response sent for the DATA command.
+   */
+  private static final byte[] RESPONSE_START_DATA =
+       "354 End data with <CR><LF>.<CR><LF>\r\n".getBytes();
+
+
+
+  /**
+   * The response sent once a message has been received.
+   */
+  private static final byte[] RESPONSE_MESSAGE_ACCEPTED =
+       "250 OK message accepted\r\n".getBytes();
+
+
+
+  /**
+   * The response sent for the QUIT command.
+   */
+  private static final byte[] RESPONSE_QUIT =
+       "221 SLAMD loopback SMTP service closing connection\r\n".getBytes();
+
+
+
+  /**
+   * The response sent for unrecognized commands.
+   */
+  private static final byte[] RESPONSE_UNRECOGNIZED =
+       "500 Command not recognized\r\n".getBytes();
+
+
+
+  /**
+   * Creates a new loopback SMTP server with the provided information.
+   *
+   * @param  listenAddress  The address on which the server should listen.  It
+   *                        may be {@code null} to listen on the loopback
+   *                        address.
+   * @param  listenPort     The port on which the server should listen.  It may
+   *                        be zero to listen on an automatically-selected
+   *                        port.
+   * @param  latency        The latency distribution that should be applied to
+   *                        responses.
+   */
+  public LoopbackSMTPServer(InetAddress listenAddress, int listenPort,
+                            LatencyDistribution latency)
+  {
+    super("SMTP", listenAddress, listenPort, latency);
+  }
+
+
+
+  /**
+   * Processes SMTP commands from the client until it disconnects or sends the
+   * QUIT command.
+   *
+   * @param  socket  The connection to the client.
+   *
+   * @throws  IOException  If a problem occurs while communicating with the
+   *                       client.
+   */
+  @Override()
+  protected void handleConnection(Socket socket)
+            throws IOException
+  {
+    InputStream  inputStream  =
+         new BufferedInputStream(socket.getInputStream());
+    OutputStream outputStream =
+         new BufferedOutputStream(socket.getOutputStream());
+
+    outputStream.write(GREETING);
+    outputStream.flush();
+
+    while (! stopRequested())
+    {
+      String line = readLine(inputStream);
+      if (line == null)
+      {
+        return;
+      }
+
+      long startNanos = System.nanoTime();
+      String command = line.trim().toUpperCase();
+      int spacePos = command.indexOf(' ');
+      if (spacePos > 0)
+      {
+        command = command.substring(0, spacePos);
+      }
+
+      switch (command)
+      {
+        case "HELO":
+        case "EHLO":
+        case "MAIL":
+        case "RCPT":
+        case "RSET":
+        case "NOOP":
+          outputStream.write(RESPONSE_OK);
+          break;
+
+        case "DATA":
+          outputStream.write(RESPONSE_START_DATA);
+          outputStream.flush();
+          addProcessingTime(System.nanoTime() - startNanos);
+          if (! readMessage(inputStream))
+          {
+            return;
+          }
+
+          getLatency().delay();
+          startNanos = System.nanoTime();
+          outputStream.write(RESPONSE_MESSAGE_ACCEPTED);
+          break;
+
+        case "QUIT":
+          outputStream.write(RESPONSE_QUIT);
+          outputStream.flush();
+          addProcessingTime(System.nanoTime() - startNanos);
+          return;
+
+        default:
+          outputStream.write(RESPONSE_UNRECOGNIZED);
+          break;
+      }
+
+      outputStream.flush();
+      addProcessingTime(System.nanoTime() - startNanos);
+    }
+  }
+
+
+
+  /**
+   * Reads and discards message data up to and including the line that
+   * contains only a period.
+   *
+   * @param  inputStream  The input stream from which to read the message.
+   *
+   * @return  {@code true} if the end of the message was found, or
+   *          {@code false} if the client closed the connection first.
+   *
+   * @throws  IOException  If a problem occurs while reading the message.
+   */
+  private static boolean readMessage(InputStream inputStream)
+          throws IOException
+  {
+    while (true)
+    {
+      String line = readLine(inputStream);
+      if (line == null)
+      {
+        return false;
+      }
+      else if (line.equals("."))
+      {
+        return true;
+      }
+    }
+  }
+}
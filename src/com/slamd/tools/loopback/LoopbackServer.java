@@ -0,0 +1,476 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.loopback;
+
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+
+
+/**
+ * This class provides the framework for a minimal TCP server that SLAMD jobs
+ * may target in place of a real server, so that the cost of the client stack
+ * can be measured in isolation.  It accepts connections in its own thread and
+ * hands each one off to a separate {@code LoopbackConnectionThread}, which
+ * invokes the protocol-specific {@code handleConnection} method.  Each server
+ * has a latency distribution that protocol implementations should apply to
+ * every response they send, and should report the time they spend processing
+ * each request, apart from that latency, so that it can be distinguished from
+ * the cost of the client.
+ */
+public abstract class LoopbackServer
+       extends Thread
+{
+  /**
+   * The maximum length that will be allowed for a single line read from a
+   * client.
+   */
+  private static final int MAX_LINE_LENGTH = 65536;
+
+
+
+  /**
+   * The number of consecutive failures to accept a connection after which the
+   * server will stop listening.
+   */
+  private static final int MAX_CONSECUTIVE_ACCEPT_FAILURES = 10;
+
+
+
+  /**
+   * The length of time in milliseconds to wait after the first failure to
+   * accept a connection.  It doubles with each consecutive failure.
+   */
+  private static final long INITIAL_ACCEPT_RETRY_DELAY_MILLIS = 10L;
+
+
+
+  // Indicates whether a request has been received to stop the server.
+  private volatile boolean stopRequested;
+
+  // The address on which the server should listen.
+  private final InetAddress listenAddress;
+
+  // The port on which the server should listen.  It will be updated with the
+  // actual port once the server is listening.
+  private volatile int listenPort;
+
+  // The latency distribution that should be applied to responses.
+  private final LatencyDistribution latency;
+
+  // The server socket used to accept connections.
+  private ServerSocket serverSocket;
+
+  // The set of connections that are currently established.
+  private final Set<Socket> activeSockets;
+
+  // A human-readable name for the protocol provided by this server.
+  private final String protocolName;
+
+  // The total time in nanoseconds spent processing requests, not including
+  // any added latency.
+  private final LongAdder processingNanos;
+
+  // The logger to which errors should be reported, or null if they should be
+  // written to standard error.
+  private volatile Consumer<String> errorLogger;
+
+
+
+  /**
+   * Creates a new loopback server with the provided information.
+   *
+   * @param  protocolName   A human-readable name for the protocol provided by
+   *                        this server.
+   * @param  listenAddress  The address on which the server should listen.  It
+   *                        may be {@code null} to listen on the loopback
+   *                        address.
+   * @param  listenPort     The port on which the server should listen.  It may
+   *                        be zero to listen on an automatically-selected
+   *                        port.
+   * @param  latency        The latency distribution that should be applied to
+   *                        responses.  It may be {@code null} if no latency
+   *                        should be added.
+   */
+  protected LoopbackServer(String protocolName, InetAddress listenAddress,
+                           int listenPort, LatencyDistribution latency)
+  {
+    this.protocolName = protocolName;
+    this.listenPort   = listenPort;
+
+    if (listenAddress == null)
+    {
+      this.listenAddress = InetAddress.getLoopbackAddress();
+    }
+    else
+    {
+      this.listenAddress = listenAddress;
+    }
+
+    if (latency == null)
+    {
+      this.latency = LatencyDistribution.NONE;
+    }
+    else
+    {
+      this.latency = latency;
+    }
+
+    setName("Loopback " + protocolName + " Server");
+    setDaemon(true);
+
+    stopRequested   = false;
+    activeSockets   = ConcurrentHashMap.newKeySet();
+    processingNanos = new LongAdder();
+    errorLogger     = null;
+  }
+
+
+
+  /**
+   * Creates the server socket and starts accepting connections.  The listen
+   * port will be available as soon as this method returns.
+   *
+   * @throws  IOException  If a problem occurs while creating the server
+   *                       socket.
+   */
+  public synchronized void startListening()
+         throws IOException
+  {
+    serverSocket = new ServerSocket();
+    serverSocket.setReuseAddress(true);
+    serverSocket.bind(new InetSocketAddress(listenAddress, listenPort), 128);
+    listenPort = serverSocket.getLocalPort();
+    start();
+  }
+
+
+
+  /**
+   * Retrieves a human-readable name for the protocol provided by this server.
+   *
+   * @return  A human-readable name for the protocol provided by this server.
+   */
+  public String getProtocolName()
+  {
+    return protocolName;
+  }
+
+
+
+  /**
+   * Retrieves the address on which this server listens.
+   *
+   * @return  The address on which this server listens.
+   */
+  public InetAddress getListenAddress()
+  {
+    return listenAddress;
+  }
+
+
+
+  /**
+   * Retrieves the port on which this server listens.
+   *
+   * @return  The port on which this server listens.
+   */
+  public int getListenPort()
+  {
+    return listenPort;
+  }
+
+
+
+  /**
+   * Retrieves the latency distribution applied to responses.
+   *
+   * @return  The latency distribution applied to responses.
+   */
+  public LatencyDistribution getLatency()
+  {
+    return latency;
+  }
+
+
+
+  /**
+   * Retrieves the number of client connections that are currently
+   * established.
+   *
+   * @return  The number of client connections that are currently established.
+   */
+  public int getActiveConnectionCount()
+  {
+    return activeSockets.size();
+  }
+
+
+
+  /**
+   * Specifies the logger to which errors encountered by this server should be
+   * reported.
+   *
+   * @param  errorLogger  The logger to which errors should be reported.  It
+   *                      may be {@code null} if errors should be written to
+   *                      standard error.
+   */
+  public void setErrorLogger(Consumer<String> errorLogger)
+  {
+    this.errorLogger = errorLogger;
+  }
+
+
+
+  /**
+   * Retrieves the total time that this server has spent processing requests,
+   * not including any latency added to the responses.
+   *
+   * @return  The total time in nanoseconds that this server has spent
+   *          processing requests.
+   */
+  public long getProcessingNanos()
+  {
+    return processingNanos.sum();
+  }
+
+
+
+  /**
+   * Records time spent processing a request.  Protocol implementations should
+   * call this for each request, leaving out any added latency and any time
+   * spent waiting for the client.
+   *
+   * @param  nanos  The time in nanoseconds spent processing the request.
+   */
+  protected void addProcessingTime(long nanos)
+  {
+    processingNanos.add(nanos);
+  }
+
+
+
+  /**
+   * Indicates whether a request has been received to stop this server.
+   *
+   * @return  {@code true} if this server has been asked to stop, or
+   *          {@code false} if not.
+   */
+  public boolean stopRequested()
+  {
+    return stopRequested;
+  }
+
+
+
+  /**
+   * Accepts connections from clients until the server is stopped.  If
+   * connections can't be accepted, then the server will wait before trying
+   * again, and will stop listening if too many attempts fail in a row.
+   */
+  @Override()
+  public void run()
+  {
+    int consecutiveFailures = 0;
+    while (! stopRequested)
+    {
+      try
+      {
+        Socket socket = serverSocket.accept();
+        consecutiveFailures = 0;
+        socket.setTcpNoDelay(true);
+        activeSockets.add(socket);
+        new LoopbackConnectionThread(this, socket).start();
+      }
+      catch (IOException ioe)
+      {
+        if (stopRequested)
+        {
+          break;
+        }
+
+        consecutiveFailures++;
+        if (consecutiveFailures >= MAX_CONSECUTIVE_ACCEPT_FAILURES)
+        {
+          logError("The loopback " + protocolName + " server is no longer " +
+                   "accepting connections after " + consecutiveFailures +
+                   " consecutive failures.  The last error was:  " + ioe);
+          try
+          {
+            serverSocket.close();
+          } catch (Exception e) {}
+          return;
+        }
+
+        logError("Error accepting " + protocolName + " connection:  " + ioe);
+        try
+        {
+          Thread.sleep(INITIAL_ACCEPT_RETRY_DELAY_MILLIS <<
+                       (consecutiveFailures - 1));
+        }
+        catch (InterruptedException ie)
+        {
+          return;
+        }
+      }
+    }
+  }
+
+
+
+  /**
+   * Reports the provided error message to the error logger, or to standard
+   * error if no logger has been specified.
+   *
+   * @param  message  The error message to report.
+   */
+  private void logError(String message)
+  {
+    Consumer<String> logger = errorLogger;
+    if (logger == null)
+    {
+      System.err.println(message);
+    }
+    else
+    {
+      logger.accept(message);
+    }
+  }
+
+
+
+  /**
+   * Stops accepting new connections and closes all established connections.
+   */
+  public void shutDown()
+  {
+    stopRequested = true;
+
+    synchronized (this)
+    {
+      if (serverSocket != null)
+      {
+        try
+        {
+          serverSocket.close();
+        } catch (Exception e) {}
+      }
+    }
+
+    for (Socket socket : activeSockets)
+    {
+      try
+      {
+        socket.close();
+      } catch (Exception e) {}
+    }
+    activeSockets.clear();
+
+    try
+    {
+      join(10000L);
+    } catch (Exception e) {}
+  }
+
+
+
+  /**
+   * Interacts with a client over the provided connection until the client
+   * disconnects or the server is stopped.  The connection will be closed when
+   * this method returns.
+   *
+   * @param  socket  The connection to the client.
+   *
+   * @throws  IOException  If a problem occurs while communicating with the
+   *                       client.
+   */
+  protected abstract void handleConnection(Socket socket)
+            throws IOException;
+
+
+
+  /**
+   * Indicates that the provided connection has been closed and should no
+   * longer be tracked.
+   *
+   * @param  socket  The connection that has been closed.
+   */
+  void connectionClosed(Socket socket)
+  {
+    activeSockets.remove(socket);
+  }
+
+
+
+  /**
+   * Reads a single line terminated by a line feed from the provided input
+   * stream.  Any carriage return preceding the line feed will be removed.
+   *
+   * @param  inputStream  The input stream from which to read the line.
+   *
+   * @return  The line that was read, or {@code null} if the end of the stream
+   *          was reached before any data was read.
+   *
+   * @throws  IOException  If a problem occurs while reading the line, or if
+   *                       it is too long.
+   */
+  protected static String readLine(InputStream inputStream)
+         throws IOException
+  {
+    StringBuilder buffer = new StringBuilder();
+    while (true)
+    {
+      int b = inputStream.read();
+      if (b < 0)
+      {
+        if (buffer.length() == 0)
+        {
+          return null;
+        }
+        break;
+      }
+      else if (b == '\n')
+      {
+        break;
+      }
+      else if (buffer.length() >= MAX_LINE_LENGTH)
+      {
+        throw new IOException("Line exceeds the maximum allowed length of " +
+                              MAX_LINE_LENGTH + " bytes.");
+      }
+
+      buffer.append((char) b);
+    }
+
+    int length = buffer.length();
+    if ((length > 0) && (buffer.charAt(length-1) == '\r'))
+    {
+      buffer.setLength(length-1);
+    }
+
+    return buffer.toString();
+  }
+}
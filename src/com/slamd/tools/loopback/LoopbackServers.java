@@ -0,0 +1,233 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.loopback;
+
+
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+
+import com.slamd.parameter.InvalidValueException;
+
+
+
+/**
+ * This program starts one or more loopback target servers that SLAMD jobs can
+ * be pointed at in place of a real LDAP, HTTP, or SMTP server.  Because these
+ * servers do almost no work of their own, running a job against them shows the
+ * maximum throughput and the latency contributed by the SLAMD client itself,
+ * which helps separate the cost of the load generator from the cost of the
+ * system under test.  Each server may add an artificial latency to its
+ * responses, selected from a configurable distribution, to approximate a
+ * server with a known response time profile.
+ */
+public class LoopbackServers
+{
+  /**
+   * The default address on which to listen.
+   */
+  public static final String DEFAULT_LISTEN_ADDRESS = "127.0.0.1";
+
+
+
+  /**
+   * Parses the command-line arguments, starts the requested servers, and runs
+   * until the process is terminated.
+   *
+   * @param  args  The command-line arguments provided to this program.
+   */
+  public static void main(String[] args)
+  {
+    String listenAddressStr = DEFAULT_LISTEN_ADDRESS;
+    String latencySpec      = LatencyDistribution.TYPE_NONE;
+    int    httpPort         = -1;
+    int    ldapPort         = -1;
+    int    numEntries       = LoopbackLDAPServer.DEFAULT_NUM_ENTRIES;
+    int    responseSize     = LoopbackHTTPServer.DEFAULT_RESPONSE_SIZE;
+    int    smtpPort         = -1;
+
+    try
+    {
+      for (int i=0; i < args.length; i++)
+      {
+        if (args[i].equals("-a"))
+        {
+          listenAddressStr = args[++i];
+        }
+        else if (args[i].equals("-l"))
+        {
+          ldapPort = Integer.parseInt(args[++i]);
+        }
+        else if (args[i].equals("-w"))
+        {
+          httpPort = Integer.parseInt(args[++i]);
+        }
+        else if (args[i].equals("-s"))
+        {
+          smtpPort = Integer.parseInt(args[++i]);
+        }
+        else if (args[i].equals("-d"))
+        {
+          latencySpec = args[++i];
+        }
+        else if (args[i].equals("-n"))
+        {
+          numEntries = Integer.parseInt(args[++i]);
+        }
+        else if (args[i].equals("-r"))
+        {
+          responseSize = Integer.parseInt(args[++i]);
+        }
+        else if (args[i].equals("-H"))
+        {
+          displayUsage();
+          System.exit(0);
+        }
+        else
+        {
+          System.err.println("Unrecognized argument \"" + args[i] + '"');
+          displayUsage();
+          System.exit(1);
+        }
+      }
+    }
+    catch (Exception e)
+    {
+      System.err.println("Unable to parse the command-line arguments:  " + e);
+      displayUsage();
+      System.exit(1);
+    }
+
+    if ((ldapPort < 0) && (httpPort < 0) && (smtpPort < 0))
+    {
+      System.err.println("At least one of the LDAP, HTTP, or SMTP ports " +
+                         "must be provided.");
+      displayUsage();
+      System.exit(1);
+    }
+
+
+    LatencyDistribution latency;
+    InetAddress         listenAddress;
+    try
+    {
+      latency       = LatencyDistribution.parse(latencySpec);
+      listenAddress = InetAddress.getByName(listenAddressStr);
+    }
+    catch (InvalidValueException ive)
+    {
+      System.err.println(ive.getMessage());
+      displayUsage();
+      System.exit(1);
+      return;
+    }
+    catch (Exception e)
+    {
+      System.err.println("Unable to resolve listen address " +
+                         listenAddressStr + ":  " + e);
+      System.exit(1);
+      return;
+    }
+
+
+    ArrayList<LoopbackServer> socketServers = new ArrayList<LoopbackServer>();
+    LoopbackLDAPServer ldapServer = null;
+    try
+    {
+      if (ldapPort >= 0)
+      {
+        ldapServer = new LoopbackLDAPServer(listenAddress, ldapPort, latency,
+                                            numEntries);
+        ldapServer.startListening();
+        System.out.println("Listening for LDAP clients on " +
+                           listenAddress.getHostAddress() + ':' +
+                           ldapServer.getListenPort() + " with " +
+                           numEntries + " entries below " +
+                           LoopbackLDAPServer.PEOPLE_BASE_DN);
+      }
+
+      if (httpPort >= 0)
+      {
+        socketServers.add(new LoopbackHTTPServer(listenAddress, httpPort,
+                                                 latency, responseSize));
+      }
+
+      if (smtpPort >= 0)
+      {
+        socketServers.add(new LoopbackSMTPServer(listenAddress, smtpPort,
+                                                 latency));
+      }
+
+      for (LoopbackServer server : socketServers)
+      {
+        server.startListening();
+        System.out.println("Listening for " + server.getProtocolName() +
+                           " clients on " + listenAddress.getHostAddress() +
+                           ':' + server.getListenPort());
+      }
+    }
+    catch (Exception e)
+    {
+      System.err.println("Unable to start the loopback servers:  " + e);
+      e.printStackTrace();
+      System.exit(1);
+    }
+
+    System.out.println("Applying latency distribution " + latency +
+                       " to all responses");
+
+
+    // All of the servers run in daemon threads, so keep the process alive
+    // until it is killed.
+    while (true)
+    {
+      try
+      {
+        Thread.sleep(60000L);
+      } catch (InterruptedException ie) {}
+    }
+  }
+
+
+
+  /**
+   * Displays usage information for this program.
+   */
+  public static void displayUsage()
+  {
+    String EOL = System.getProperty("line.separator");
+
+    System.err.println(
+"Usage:  java LoopbackServers [options]" + EOL +
+"        where [options] include:" + EOL +
+"-a [address]  -- The address on which to listen (default is " +
+     DEFAULT_LISTEN_ADDRESS + ')' + EOL +
+"-l [port]     -- Start an LDAP server on the specified port" + EOL +
+"-w [port]     -- Start an HTTP server on the specified port" + EOL +
+"-s [port]     -- Start an SMTP server on the specified port" + EOL +
+"-d [dist]     -- The latency distribution to apply to responses, as one" +
+     EOL +
+"                 of none, fixed:{ms}, uniform:{min}:{max}," + EOL +
+"                 exponential:{mean}, or normal:{mean}:{stddev}" + EOL +
+"                 (default is none)" + EOL +
+"-n [count]    -- The number of LDAP user entries to create (default is " +
+     LoopbackLDAPServer.DEFAULT_NUM_ENTRIES + ')' + EOL +
+"-r [size]     -- The size in bytes of each HTTP response body (default " +
+     "is " + LoopbackHTTPServer.DEFAULT_RESPONSE_SIZE + ')' + EOL +
+"-H            -- Displays this usage information"
+                      );
+  }
+}
@@ -17,8 +17,10 @@ package com.slamd.tools.tcpreplay;
 
 
 
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
@@ -43,6 +45,9 @@ import java.util.Iterator;
  */
 public class CaptureDaemon
 {
+  // Indicates whether the capture should be written in the indexed format.
+  private boolean indexedFormat;
+
   // Indicates whether a request has been made to stop this capture daemon.
   private boolean stopRequested;
 
@@ -87,10 +92,38 @@ public class CaptureDaemon
                        String outputFile)
          throws UnknownHostException
   {
-    this.listenPort = listenPort;
-    this.serverHost = serverHost;
-    this.serverPort = serverPort;
-    this.outputFile = outputFile;
+    this(listenPort, serverHost, serverPort, outputFile, false);
+  }
+
+
+
+  /**
+   * Creates a new capture daemon with the provided information.
+   *
+   * @param  listenPort     The port on which to listen for new connections
+   *                        from clients.
+   * @param  serverHost     The address of the server to which client requests
+   *                        should be forwarded.
+   * @param  serverPort     The port of the server to which client requests
+   *                        should be forwarded.
+   * @param  outputFile     The name of the file to which the captured data
+   *                        should be written.
+   * @param  indexedFormat  Indicates whether the capture should be written in
+   *                        the indexed capture format.  If not, then it will be
+   *                        appended to the output file in the original format.
+   *
+   * @throws  UnknownHostException  If the server address cannot be resolved to
+   *                                an IP address.
+   */
+  public CaptureDaemon(int listenPort, String serverHost, int serverPort,
+                       String outputFile, boolean indexedFormat)
+         throws UnknownHostException
+  {
+    this.listenPort    = listenPort;
+    this.serverHost    = serverHost;
+    this.serverPort    = serverPort;
+    this.outputFile    = outputFile;
+    this.indexedFormat = indexedFormat;
 
     stopRequested = false;
 
@@ -119,8 +152,19 @@ public class CaptureDaemon
     selector = Selector.open();
 
 
-    // Open the output stream that should be used to write the capture data.
-    FileOutputStream outputStream = new FileOutputStream(outputFile, true);
+    // Open the output stream or indexed writer that should be used to write the
+    // capture data.
+    OutputStream         outputStream  = null;
+    IndexedCaptureWriter indexedWriter = null;
+    if (indexedFormat)
+    {
+      indexedWriter = new IndexedCaptureWriter(outputFile);
+    }
+    else
+    {
+      outputStream = new BufferedOutputStream(
+           new FileOutputStream(outputFile, true), 65536);
+    }
 
 
     // Create the server socket channel that will be used to accept new
@@ -192,11 +236,18 @@ public class CaptureDaemon
                 if (fromClient)
                 {
                   buffer.flip();
-                  byte[] data = new byte[bytesRead];
-                  buffer.get(data);
-                  CaptureData captureData =
-                       new CaptureData(1, System.currentTimeMillis(), data);
-                  captureData.encodeTo(outputStream);
+                  if (indexedWriter != null)
+                  {
+                    indexedWriter.write(buffer);
+                  }
+                  else
+                  {
+                    byte[] data = new byte[bytesRead];
+                    buffer.get(data);
+                    CaptureData captureData =
+                         new CaptureData(1, System.currentTimeMillis(), data);
+                    captureData.encodeTo(outputStream);
+                  }
                 }
 
                 buffer.flip();
@@ -242,8 +293,15 @@ public class CaptureDaemon
 
 
     // Close the output file.
-    outputStream.flush();
-    outputStream.close();
+    if (indexedWriter != null)
+    {
+      indexedWriter.close();
+    }
+    else
+    {
+      outputStream.flush();
+      outputStream.close();
+    }
 
 
     // Close and cancel all the channels associated with the selector.
@@ -197,29 +197,21 @@ public class CaptureData
   public void encodeTo(OutputStream outputStream)
     throws IOException
   {
-    // First, four bytes will be used to encode the capture version, which is 1.
-    outputStream.write((byte) 0x00);
-    outputStream.write((byte) 0x00);
-    outputStream.write((byte) 0x00);
-    outputStream.write((byte) 0x01);
-
-
-    // Next, use eight bytes for the timestamp.
-    outputStream.write((byte) ((captureTime >> 56) & 0xFF));
-    outputStream.write((byte) ((captureTime >> 48) & 0xFF));
-    outputStream.write((byte) ((captureTime >> 40) & 0xFF));
-    outputStream.write((byte) ((captureTime >> 32) & 0xFF));
-    outputStream.write((byte) ((captureTime >> 24) & 0xFF));
-    outputStream.write((byte) ((captureTime >> 16) & 0xFF));
-    outputStream.write((byte) ((captureTime >> 8) & 0xFF));
-    outputStream.write((byte) (captureTime & 0xFF));
-
-
-    // Next, use four bytes for the number of bytes in the capture.
-    outputStream.write((byte) ((data.length >> 24) & 0xFF));
-    outputStream.write((byte) ((data.length >> 16) & 0xFF));
-    outputStream.write((byte) ((data.length >> 8) & 0xFF));
-    outputStream.write((byte) (data.length & 0xFF));
+    // The header is made up of four bytes for the capture version (which is 1),
+    // eight bytes for the timestamp, and four bytes for the number of bytes in
+    // the capture.  It is assembled first so that it can be written at once.
+    byte[] header = new byte[16];
+    header[3] = (byte) 0x01;
+    for (int i=0; i < 8; i++)
+    {
+      header[4+i] = (byte) ((captureTime >> (56 - (8*i))) & 0xFF);
+    }
+    for (int i=0; i < 4; i++)
+    {
+      header[12+i] = (byte) ((data.length >> (24 - (8*i))) & 0xFF);
+    }
+
+    outputStream.write(header);
 
 
     // Finally, write the actual data.
@@ -0,0 +1,588 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.tcpreplay;
+
+
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+
+/**
+ * This class provides read access to a capture file written in the indexed
+ * capture format.  That format consists of:
+ * <UL>
+ *   <LI>A twenty-byte header containing the eight-byte magic string
+ *       "SLAMDCAP", a four-byte format version, and the eight-byte wall clock
+ *       time in milliseconds at which the capture started.</LI>
+ *   <LI>A sequence of records, each of which has an eight-byte timestamp
+ *       giving the number of nanoseconds since the capture started, a
+ *       four-byte data length, and the data itself.</LI>
+ *   <LI>A block index with one 24-byte entry for each block of consecutive
+ *       records, giving the file offset of the block, the number of the first
+ *       record in the block, and the timestamp of that record.</LI>
+ *   <LI>A 28-byte trailer giving the file offset of the block index, the
+ *       number of blocks, the total number of records, and the magic string
+ *       again.</LI>
+ * </UL>
+ * All integers are big-endian.  The file is memory-mapped in segments that
+ * always begin on a block boundary, so that no record spans two segments, and
+ * records are returned as views into the mapped segments rather than being
+ * copied onto the heap.  If the trailer is missing because the capture was not
+ * closed cleanly, then the index will be rebuilt by scanning the records, and
+ * any partial record at the end of the file will be ignored.
+ * <BR><BR>
+ * Instances of this class may be shared by any number of threads, but each
+ * thread must use its own {@code Cursor}.
+ */
+public final class IndexedCaptureFile
+{
+  /**
+   * The magic string that appears at the beginning and end of an indexed
+   * capture file.
+   */
+  static final byte[] MAGIC = { 'S', 'L', 'A', 'M', 'D', 'C', 'A', 'P' };
+
+
+
+  /**
+   * The version of the indexed capture format.
+   */
+  static final int FORMAT_VERSION = 2;
+
+
+
+  /**
+   * The length in bytes of the file header.
+   */
+  static final int HEADER_LENGTH = 20;
+
+
+
+  /**
+   * The length in bytes of the header for each record.
+   */
+  static final int RECORD_HEADER_LENGTH = 12;
+
+
+
+  /**
+   * The length in bytes of each block index entry.
+   */
+  static final int INDEX_ENTRY_LENGTH = 24;
+
+
+
+  /**
+   * The length in bytes of the file trailer.
+   */
+  static final int TRAILER_LENGTH = 28;
+
+
+
+  /**
+   * The maximum number of records that will be placed in a single block.
+   */
+  static final int MAX_RECORDS_PER_BLOCK = 4096;
+
+
+
+  /**
+   * The size in bytes after which a new block will be started.
+   */
+  static final int TARGET_BLOCK_SIZE = 1024 * 1024;
+
+
+
+  /**
+   * The maximum length in bytes of the data in a single record.
+   */
+  static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+
+
+  /**
+   * The maximum size in bytes of a single mapped segment.
+   */
+  private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+
+
+  // The segment containing each block.
+  private final int[] blockSegments;
+
+  // The offset of each block within its segment.
+  private final int[] blockSegmentOffsets;
+
+  // The number of the first record in each block.
+  private final long[] blockFirstRecords;
+
+  // The wall clock time in milliseconds at which the capture started.
+  private final long captureStartMillis;
+
+  // The total number of records in the capture.
+  private final long recordCount;
+
+  // The mapped segments of the file.
+  private final MappedByteBuffer[] segments;
+
+
+
+  /**
+   * Opens and maps the specified indexed capture file.
+   *
+   * @param  path  The path to the capture file.
+   *
+   * @throws  IOException  If a problem occurs while reading or mapping the
+   *                       file.
+   *
+   * @throws  CaptureException  If the file is not a valid indexed capture
+   *                            file.
+   */
+  public IndexedCaptureFile(String path)
+         throws IOException, CaptureException
+  {
+    try (RandomAccessFile raf = new RandomAccessFile(path, "r");
+         FileChannel channel = raf.getChannel())
+    {
+      long fileSize = channel.size();
+      ByteBuffer header = readFully(channel, 0L, HEADER_LENGTH, fileSize);
+      if ((header == null) || (! hasMagic(header, 0)))
+      {
+        throw new CaptureException("File " + path + " is not an indexed " +
+                                   "capture file.");
+      }
+
+      int version = header.getInt(MAGIC.length);
+      if (version != FORMAT_VERSION)
+      {
+        throw new CaptureException("Unsupported indexed capture format " +
+                                   "version " + version + " in file " + path);
+      }
+
+      captureStartMillis = header.getLong(MAGIC.length + 4);
+
+
+      // Read the block index from the trailer if possible, or rebuild it if
+      // the capture was not closed cleanly.
+      long[] blockOffsets = null;
+      long[] firstRecords = null;
+      long   dataEnd      = fileSize;
+      long   numRecords   = 0L;
+      ByteBuffer trailer = null;
+      if (fileSize >= (HEADER_LENGTH + TRAILER_LENGTH))
+      {
+        trailer = readFully(channel, fileSize - TRAILER_LENGTH, TRAILER_LENGTH,
+                            fileSize);
+      }
+
+      if ((trailer != null) && hasMagic(trailer, 20))
+      {
+        dataEnd       = trailer.getLong(0);
+        int numBlocks = trailer.getInt(8);
+        numRecords    = trailer.getLong(12);
+        if ((dataEnd < HEADER_LENGTH) || (numBlocks < 0) ||
+            ((dataEnd + ((long) numBlocks * INDEX_ENTRY_LENGTH) +
+              TRAILER_LENGTH) != fileSize))
+        {
+          throw new CaptureException("The block index in indexed capture " +
+                                     "file " + path + " is corrupt.");
+        }
+
+        ByteBuffer index = readFully(channel, dataEnd,
+                                     numBlocks * INDEX_ENTRY_LENGTH, fileSize);
+        blockOffsets = new long[numBlocks];
+        firstRecords = new long[numBlocks];
+        for (int i=0; i < numBlocks; i++)
+        {
+          blockOffsets[i] = index.getLong(i * INDEX_ENTRY_LENGTH);
+          firstRecords[i] = index.getLong((i * INDEX_ENTRY_LENGTH) + 8);
+        }
+      }
+      else
+      {
+        ArrayList<long[]> blocks = new ArrayList<long[]>();
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+        long offset = HEADER_LENGTH;
+        while (true)
+        {
+          recordHeader.clear();
+          if ((offset + RECORD_HEADER_LENGTH) > fileSize)
+          {
+            break;
+          }
+
+          channel.read(recordHeader, offset);
+          int length = recordHeader.getInt(8);
+          if ((length < 0) || (length > MAX_RECORD_LENGTH) ||
+              ((offset + RECORD_HEADER_LENGTH + length) > fileSize))
+          {
+            break;
+          }
+
+          if ((numRecords % MAX_RECORDS_PER_BLOCK) == 0L)
+          {
+            blocks.add(new long[] { offset, numRecords });
+          }
+
+          offset += RECORD_HEADER_LENGTH + length;
+          numRecords++;
+        }
+
+        dataEnd      = offset;
+        blockOffsets = new long[blocks.size()];
+        firstRecords = new long[blocks.size()];
+        for (int i=0; i < blockOffsets.length; i++)
+        {
+          blockOffsets[i] = blocks.get(i)[0];
+          firstRecords[i] = blocks.get(i)[1];
+        }
+      }
+
+      recordCount       = numRecords;
+      blockFirstRecords = firstRecords;
+
+
+      // Map the file in segments that begin on block boundaries.
+      blockSegments       = new int[blockOffsets.length];
+      blockSegmentOffsets = new int[blockOffsets.length];
+      ArrayList<MappedByteBuffer> segmentList =
+           new ArrayList<MappedByteBuffer>();
+      int i = 0;
+      while (i < blockOffsets.length)
+      {
+        long segmentStart = blockOffsets[i];
+        int  j            = i + 1;
+        while ((j < blockOffsets.length) &&
+               ((blockOffsets[j] - segmentStart) < MAX_SEGMENT_SIZE))
+        {
+          j++;
+        }
+
+        // Back off if including the last block would make the segment too
+        // large, unless it is the only block in the segment.
+        long segmentEnd = ((j < blockOffsets.length) ? blockOffsets[j]
+                                                     : dataEnd);
+        while (((segmentEnd - segmentStart) > Integer.MAX_VALUE) &&
+               (j > (i + 1)))
+        {
+          j--;
+          segmentEnd = blockOffsets[j];
+        }
+
+        if ((segmentEnd - segmentStart) > Integer.MAX_VALUE)
+        {
+          throw new CaptureException("Block " + i + " of indexed capture " +
+                                     "file " + path + " is too large to map.");
+        }
+
+        for (int k=i; k < j; k++)
+        {
+          blockSegments[k]       = segmentList.size();
+          blockSegmentOffsets[k] = (int) (blockOffsets[k] - segmentStart);
+        }
+
+        segmentList.add(channel.map(FileChannel.MapMode.READ_ONLY,
+                                    segmentStart, segmentEnd - segmentStart));
+        i = j;
+      }
+
+      segments = segmentList.toArray(new MappedByteBuffer[segmentList.size()]);
+    }
+  }
+
+
+
+  /**
+   * Indicates whether the specified file appears to be an indexed capture
+   * file.
+   *
+   * @param  path  The path to the file to examine.
+   *
+   * @return  {@code true} if the file begins with the indexed capture magic
+   *          string, or {@code false} if not.
+   *
+   * @throws  IOException  If a problem occurs while reading the file.
+   */
+  public static boolean isIndexedCaptureFile(String path)
+         throws IOException
+  {
+    try (RandomAccessFile raf = new RandomAccessFile(path, "r");
+         FileChannel channel = raf.getChannel())
+    {
+      ByteBuffer header = readFully(channel, 0L, MAGIC.length, channel.size());
+      return ((header != null) && hasMagic(header, 0));
+    }
+  }
+
+
+
+  /**
+   * Retrieves the wall clock time in milliseconds at which the capture
+   * started.
+   *
+   * @return  The wall clock time in milliseconds at which the capture started.
+   */
+  public long getCaptureStartTime()
+  {
+    return captureStartMillis;
+  }
+
+
+
+  /**
+   * Retrieves the total number of records in the capture.
+   *
+   * @return  The total number of records in the capture.
+   */
+  public long getRecordCount()
+  {
+    return recordCount;
+  }
+
+
+
+  /**
+   * Creates a new cursor positioned before the first record in the capture.
+   *
+   * @return  The new cursor.
+   */
+  public Cursor newCursor()
+  {
+    return new Cursor();
+  }
+
+
+
+  /**
+   * Reads the specified number of bytes from the provided channel.
+   *
+   * @param  channel   The channel from which to read.
+   * @param  offset    The offset at which to start reading.
+   * @param  length    The number of bytes to read.
+   * @param  fileSize  The size of the file.
+   *
+   * @return  A buffer containing the bytes that were read, or {@code null} if
+   *          the file is too short.
+   *
+   * @throws  IOException  If a problem occurs while reading the file.
+   */
+  private static ByteBuffer readFully(FileChannel channel, long offset,
+                                      int length, long fileSize)
+          throws IOException
+  {
+    if ((offset + length) > fileSize)
+    {
+      return null;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining())
+    {
+      if (channel.read(buffer, offset + buffer.position()) < 0)
+      {
+        return null;
+      }
+    }
+
+    return buffer;
+  }
+
+
+
+  /**
+   * Indicates whether the provided buffer contains the magic string at the
+   * specified position.
+   *
+   * @param  buffer    The buffer to examine.
+   * @param  position  The position at which the magic string should appear.
+   *
+   * @return  {@code true} if the magic string is present, or {@code false}
+   *          if not.
+   */
+  private static boolean hasMagic(ByteBuffer buffer, int position)
+  {
+    byte[] b = new byte[MAGIC.length];
+    for (int i=0; i < b.length; i++)
+    {
+      b[i] = buffer.get(position + i);
+    }
+
+    return Arrays.equals(b, MAGIC);
+  }
+
+
+
+  /**
+   * This class provides sequential access to the records in an indexed capture
+   * file.  It does not allocate any memory as it moves between records, which
+   * allows a large number of concurrent replay connections to each have their
+   * own cursor.
+   */
+  public final class Cursor
+  {
+    // The view of the current segment that is used to expose record data.
+    private ByteBuffer dataView;
+
+    // The index of the block containing the current record.
+    private int block;
+
+    // The offset of the current record within its segment.
+    private int offset;
+
+    // The index of the segment for which the data view was created.
+    private int viewSegment;
+
+    // The length of the data in the current record.
+    private int length;
+
+    // The number of the current record.
+    private long record;
+
+    // The timestamp of the current record.
+    private long timestamp;
+
+
+
+    /**
+     * Creates a new cursor positioned before the first record.
+     */
+    private Cursor()
+    {
+      reset();
+    }
+
+
+
+    /**
+     * Positions this cursor before the first record.
+     */
+    public void reset()
+    {
+      block       = 0;
+      offset      = -1;
+      length      = 0;
+      record      = -1L;
+      timestamp   = 0L;
+      dataView    = null;
+      viewSegment = -1;
+    }
+
+
+
+    /**
+     * Advances this cursor to the next record.
+     *
+     * @return  {@code true} if the cursor is now positioned on a record, or
+     *          {@code false} if there are no more records.
+     */
+    public boolean next()
+    {
+      if ((record + 1L) >= recordCount)
+      {
+        return false;
+      }
+
+      record++;
+      if (offset < 0)
+      {
+        block  = 0;
+        offset = blockSegmentOffsets[0];
+      }
+      else if (((block + 1) < blockFirstRecords.length) &&
+               (record == blockFirstRecords[block+1]))
+      {
+        block++;
+        offset = blockSegmentOffsets[block];
+      }
+      else
+      {
+        offset += RECORD_HEADER_LENGTH + length;
+      }
+
+      MappedByteBuffer segment = segments[blockSegments[block]];
+      if (blockSegments[block] != viewSegment)
+      {
+        viewSegment = blockSegments[block];
+        dataView    = segment.duplicate();
+      }
+
+      timestamp = segment.getLong(offset);
+      length    = segment.getInt(offset + 8);
+      return true;
+    }
+
+
+
+    /**
+     * Retrieves the number of the current record.
+     *
+     * @return  The number of the current record.
+     */
+    public long getRecordNumber()
+    {
+      return record;
+    }
+
+
+
+    /**
+     * Retrieves the timestamp of the current record, in nanoseconds since the
+     * start of the capture.
+     *
+     * @return  The timestamp of the current record.
+     */
+    public long getTimestamp()
+    {
+      return timestamp;
+    }
+
+
+
+    /**
+     * Retrieves the length of the data in the current record.
+     *
+     * @return  The length of the data in the current record.
+     */
+    public int getLength()
+    {
+      return length;
+    }
+
+
+
+    /**
+     * Retrieves a view of the data in the current record.  The same buffer
+     * object is reused for every record in a segment, so the returned buffer
+     * must not be used after the cursor has been moved.
+     *
+     * @return  A view of the data in the current record.
+     */
+    public ByteBuffer getData()
+    {
+      int start = offset + RECORD_HEADER_LENGTH;
+      dataView.limit(start + length);
+      dataView.position(start);
+      return dataView;
+    }
+  }
+}
@@ -0,0 +1,368 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.tcpreplay;
+
+
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+
+/**
+ * This class provides a means of writing captured data in the indexed capture
+ * file format described in the {@code IndexedCaptureFile} class.  Records are
+ * accumulated in a direct buffer and written to the file channel in large
+ * batches, and the block index is held in memory and appended to the file when
+ * the writer is closed.
+ * <BR><BR>
+ * Instances of this class are not threadsafe.  The capture daemon writes from
+ * a single selector thread, so no synchronization is needed there.
+ */
+public final class IndexedCaptureWriter
+{
+  /**
+   * The size in bytes of the buffer used to batch writes to the file.
+   */
+  private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+
+
+
+  // The buffer used to batch writes to the file.
+  private final ByteBuffer writeBuffer;
+
+  // The channel used to write to the file.
+  private final FileChannel channel;
+
+  // The number of records in the current block.
+  private int blockRecordCount;
+
+  // The number of index entries that have been recorded.
+  private int numBlocks;
+
+  // The block index, stored as the file offset, first record number, and first
+  // timestamp of each block.
+  private long[] blockIndex;
+
+  // The wall clock time in milliseconds at which the capture started.
+  private final long captureStartMillis;
+
+  // The value of System.nanoTime when the capture started.
+  private final long captureStartNanos;
+
+  // The number of bytes written to the current block.
+  private long blockBytes;
+
+  // The file offset at which the next record will be written.
+  private long position;
+
+  // The total number of records written.
+  private long recordCount;
+
+  // The file to which the capture is being written.
+  private final RandomAccessFile raf;
+
+
+
+  /**
+   * Creates a new writer that will write an indexed capture to the specified
+   * file.  If the file already exists, then it will be overwritten.
+   *
+   * @param  path  The path to the file to write.
+   *
+   * @throws  IOException  If a problem occurs while creating the file.
+   */
+  public IndexedCaptureWriter(String path)
+         throws IOException
+  {
+    this(path, System.currentTimeMillis());
+  }
+
+
+
+  /**
+   * Creates a new writer that will write an indexed capture to the specified
+   * file, using the provided capture start time.  If the file already exists,
+   * then it will be overwritten.
+   *
+   * @param  path                The path to the file to write.
+   * @param  captureStartMillis  The wall clock time in milliseconds at which
+   *                             the capture started.
+   *
+   * @throws  IOException  If a problem occurs while creating the file.
+   */
+  public IndexedCaptureWriter(String path, long captureStartMillis)
+         throws IOException
+  {
+    this.captureStartMillis = captureStartMillis;
+
+    captureStartNanos = System.nanoTime();
+    raf               = new RandomAccessFile(path, "rw");
+    raf.setLength(0L);
+    channel           = raf.getChannel();
+    writeBuffer       = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    blockIndex        = new long[3 * 64];
+    numBlocks         = 0;
+    blockRecordCount  = 0;
+    blockBytes        = 0L;
+    recordCount       = 0L;
+
+    writeBuffer.put(IndexedCaptureFile.MAGIC);
+    writeBuffer.putInt(IndexedCaptureFile.FORMAT_VERSION);
+    writeBuffer.putLong(captureStartMillis);
+    position = IndexedCaptureFile.HEADER_LENGTH;
+  }
+
+
+
+  /**
+   * Writes a record containing the provided data, timestamped with the time
+   * that has elapsed since the capture started.
+   *
+   * @param  data  The buffer containing the data to write.  All of the data
+   *               between its position and its limit will be written, and its
+   *               position will be advanced to its limit.
+   *
+   * @throws  IOException  If a problem occurs while writing to the file.
+   */
+  public void write(ByteBuffer data)
+         throws IOException
+  {
+    write(System.nanoTime() - captureStartNanos, data);
+  }
+
+
+
+  /**
+   * Writes a record containing the provided data with the given timestamp.
+   *
+   * @param  timestampNanos  The time in nanoseconds since the start of the
+   *                         capture at which the data was captured.
+   * @param  data            The buffer containing the data to write.  All of
+   *                         the data between its position and its limit will
+   *                         be written, and its position will be advanced to
+   *                         its limit.
+   *
+   * @throws  IOException  If a problem occurs while writing to the file.
+   */
+  public void write(long timestampNanos, ByteBuffer data)
+         throws IOException
+  {
+    int length = data.remaining();
+    if (length > IndexedCaptureFile.MAX_RECORD_LENGTH)
+    {
+      throw new IOException("Unable to write a capture record of " + length +
+                            " bytes because it exceeds the maximum record " +
+                            "length of " +
+                            IndexedCaptureFile.MAX_RECORD_LENGTH + " bytes.");
+    }
+
+    if ((blockRecordCount == 0) ||
+        (blockRecordCount >= IndexedCaptureFile.MAX_RECORDS_PER_BLOCK) ||
+        (blockBytes >= IndexedCaptureFile.TARGET_BLOCK_SIZE))
+    {
+      startBlock(timestampNanos);
+    }
+
+    if (writeBuffer.remaining() < IndexedCaptureFile.RECORD_HEADER_LENGTH)
+    {
+      flushBuffer();
+    }
+
+    writeBuffer.putLong(timestampNanos);
+    writeBuffer.putInt(length);
+
+    if (length > writeBuffer.remaining())
+    {
+      flushBuffer();
+      if (length > writeBuffer.remaining())
+      {
+        while (data.hasRemaining())
+        {
+          channel.write(data);
+        }
+      }
+      else
+      {
+        writeBuffer.put(data);
+      }
+    }
+    else
+    {
+      writeBuffer.put(data);
+    }
+
+    int recordLength = IndexedCaptureFile.RECORD_HEADER_LENGTH + length;
+    position   += recordLength;
+    blockBytes += recordLength;
+    blockRecordCount++;
+    recordCount++;
+  }
+
+
+
+  /**
+   * Retrieves the number of records that have been written.
+   *
+   * @return  The number of records that have been written.
+   */
+  public long getRecordCount()
+  {
+    return recordCount;
+  }
+
+
+
+  /**
+   * Writes any buffered records along with the block index and trailer, and
+   * closes the file.
+   *
+   * @throws  IOException  If a problem occurs while writing to the file.
+   */
+  public void close()
+         throws IOException
+  {
+    try
+    {
+      long indexOffset = position;
+      for (int i=0; i < numBlocks; i++)
+      {
+        if (writeBuffer.remaining() < IndexedCaptureFile.INDEX_ENTRY_LENGTH)
+        {
+          flushBuffer();
+        }
+
+        writeBuffer.putLong(blockIndex[3*i]);
+        writeBuffer.putLong(blockIndex[(3*i)+1]);
+        writeBuffer.putLong(blockIndex[(3*i)+2]);
+      }
+
+      if (writeBuffer.remaining() < IndexedCaptureFile.TRAILER_LENGTH)
+      {
+        flushBuffer();
+      }
+
+      writeBuffer.putLong(indexOffset);
+      writeBuffer.putInt(numBlocks);
+      writeBuffer.putLong(recordCount);
+      writeBuffer.put(IndexedCaptureFile.MAGIC);
+      flushBuffer();
+      channel.force(false);
+    }
+    finally
+    {
+      raf.close();
+    }
+  }
+
+
+
+  /**
+   * Converts a capture file written in the original capture format into the
+   * indexed capture format.
+   *
+   * @param  legacyFile   The path to the capture file to convert.
+   * @param  indexedFile  The path to the indexed capture file to write.
+   *
+   * @return  The number of records converted.
+   *
+   * @throws  IOException  If a problem occurs while reading or writing either
+   *                       file.
+   *
+   * @throws  CaptureException  If a problem occurs while decoding the legacy
+   *                            capture file.
+   */
+  public static long convert(String legacyFile, String indexedFile)
+         throws IOException, CaptureException
+  {
+    try (FileInputStream inputStream = new FileInputStream(legacyFile))
+    {
+      BufferedInputStream bufferedStream =
+           new BufferedInputStream(inputStream, WRITE_BUFFER_SIZE);
+
+      CaptureData captureData = CaptureData.decodeFrom(bufferedStream);
+      long startTime = ((captureData == null)
+                        ? System.currentTimeMillis()
+                        : captureData.getCaptureTime());
+
+      IndexedCaptureWriter writer =
+           new IndexedCaptureWriter(indexedFile, startTime);
+      try
+      {
+        while (captureData != null)
+        {
+          long timestampNanos =
+               (captureData.getCaptureTime() - startTime) * 1000000L;
+          writer.write(timestampNanos, ByteBuffer.wrap(captureData.getData()));
+          captureData = CaptureData.decodeFrom(bufferedStream);
+        }
+      }
+      finally
+      {
+        writer.close();
+      }
+
+      return writer.getRecordCount();
+    }
+  }
+
+
+
+  /**
+   * Records the start of a new block in the index.
+   *
+   * @param  timestampNanos  The timestamp of the first record in the block.
+   */
+  private void startBlock(long timestampNanos)
+  {
+    if ((3 * (numBlocks + 1)) > blockIndex.length)
+    {
+      long[] newIndex = new long[blockIndex.length * 2];
+      System.arraycopy(blockIndex, 0, newIndex, 0, blockIndex.length);
+      blockIndex = newIndex;
+    }
+
+    blockIndex[3*numBlocks]     = position;
+    blockIndex[(3*numBlocks)+1] = recordCount;
+    blockIndex[(3*numBlocks)+2] = timestampNanos;
+    numBlocks++;
+
+    blockRecordCount = 0;
+    blockBytes       = 0L;
+  }
+
+
+
+  /**
+   * Writes the contents of the write buffer to the file.
+   *
+   * @throws  IOException  If a problem occurs while writing to the file.
+   */
+  private void flushBuffer()
+          throws IOException
+  {
+    writeBuffer.flip();
+    while (writeBuffer.hasRemaining())
+    {
+      channel.write(writeBuffer);
+    }
+    writeBuffer.clear();
+  }
+}
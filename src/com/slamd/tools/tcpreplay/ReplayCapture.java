@@ -33,6 +33,11 @@ import java.util.Iterator;
  * the same or a different server using one or more threads.  It can perform
  * this replay either as quickly as possible, or it can attempt to preserve the
  * original timing (or play back requests at some fraction thereof).
+ * <BR><BR>
+ * Captures written in the original format are read into memory and replayed
+ * with one thread per connection.  Captures written in the indexed format are
+ * memory-mapped and replayed by a {@code ReplayEngine}, which multiplexes the
+ * connections over a small number of selector threads.
  *
  *
  * @author   Neil A. Wilson
@@ -106,6 +111,10 @@ public class ReplayCapture
   // The number of individual capture packets that were replayed.
   private long totalPacketsReplayed;
 
+  // The engine used to replay indexed captures, or null if the capture is in
+  // the original format.
+  private ReplayEngine replayEngine;
+
   // The threads that will be used to actually perform the replay process.
   private ReplayThread[] replayThreads;
 
@@ -170,6 +179,64 @@ public class ReplayCapture
                        int delayBetweenIterations, int maxDuration,
                        int numThreads)
          throws IOException, CaptureException
+  {
+    this(targetHost, targetPort, captureFile, preserveTiming, timeMultiplier,
+         delayBetweenRequests, numIterations, delayBetweenIterations,
+         maxDuration, numThreads,
+         Math.min(4, Runtime.getRuntime().availableProcessors()));
+  }
+
+
+
+  /**
+   * Creates a new instance of this replay utility with the provided
+   * information.
+   *
+   * @param  targetHost              The address of the target server against
+   *                                 which to replay the the capture data.
+   * @param  targetPort              The port of the target server against which
+   *                                 to replay the capture data.
+   * @param  captureFile             The path to the file containing the capture
+   *                                 data to replay.
+   * @param  preserveTiming          Indicates whether an attempt should be made
+   *                                 to replay packets based on the original
+   *                                 times between each request packet.
+   * @param  timeMultiplier          A multiplier that will be applied to the
+   *                                 time between individual packets if the
+   *                                 original timing is to be preserved.
+   * @param  delayBetweenRequests    The length of time in milliseconds to sleep
+   *                                 between each capture packet replayed if the
+   *                                 original timing is not to be preserved.
+   * @param  numIterations           The maximum number of times the entire
+   *                                 capture data set should be replayed (-1 for
+   *                                 no limit).
+   * @param  delayBetweenIterations  The length of time in milliseconds to sleep
+   *                                 between iterations through the entire
+   *                                 capture data set.
+   * @param  maxDuration             The maximum length of time in seconds to
+   *                                 spend replaying the capture data (-1 for no
+   *                                 limit).
+   * @param  numThreads              The number of threads (or, for an indexed
+   *                                 capture, connections) to concurrently
+   *                                 replay the captured data against the target
+   *                                 server.
+   * @param  numSelectorThreads      The number of selector threads to use when
+   *                                 replaying an indexed capture.  It is
+   *                                 ignored for captures in the original
+   *                                 format.
+   *
+   * @throws  IOException  If a problem occurs while attempting to read the
+   *                       capture file containing the data to replay.
+   *
+   * @throws  CaptureException  If a problem occurs while trying to parse the
+   *                            capture file.
+   */
+  public ReplayCapture(String targetHost, int targetPort, String captureFile,
+                       boolean preserveTiming, float timeMultiplier,
+                       int delayBetweenRequests, int numIterations,
+                       int delayBetweenIterations, int maxDuration,
+                       int numThreads, int numSelectorThreads)
+         throws IOException, CaptureException
   {
     // Set the values of all the instance variables based on the arguments.
     this.targetHost             = targetHost;
@@ -189,6 +256,19 @@ public class ReplayCapture
     totalPacketsReplayed     = 0;
 
 
+    // Indexed captures are replayed by the replay engine directly from the
+    // mapped file, so there is no need to read them into memory.
+    if (IndexedCaptureFile.isIndexedCaptureFile(captureFile))
+    {
+      replayEngine = new ReplayEngine(targetHost, targetPort,
+           new IndexedCaptureFile(captureFile), preserveTiming, timeMultiplier,
+           delayBetweenRequests, numIterations, delayBetweenIterations,
+           maxDuration, numThreads, numSelectorThreads);
+      Runtime.getRuntime().addShutdownHook(new ReplayShutdownThread(this));
+      return;
+    }
+
+
     // Parse the capture file and read the data into memory.
     ArrayList<CaptureData> captureList = new ArrayList<CaptureData>();
     FileInputStream inputStream = new FileInputStream(captureFile);
@@ -258,6 +338,12 @@ public class ReplayCapture
    */
   public void replayData()
   {
+    if (replayEngine != null)
+    {
+      replayEngine.replayData();
+      return;
+    }
+
     activeThreads = numThreads;
     for (int i=0; i < numThreads; i++)
     {
@@ -433,6 +519,12 @@ public class ReplayCapture
   public void stopReplay()
   {
     stopRequested = true;
+    if (replayEngine != null)
+    {
+      replayEngine.stopReplay();
+      return;
+    }
+
     selector.wakeup();
   }
 
@@ -443,6 +535,12 @@ public class ReplayCapture
    */
   public void waitForReplayThreads()
   {
+    if (replayEngine != null)
+    {
+      replayEngine.waitForCompletion();
+      return;
+    }
+
     while (activeThreads > 0)
     {
       try
@@ -461,6 +559,11 @@ public class ReplayCapture
    */
   public int getNumPackets()
   {
+    if (replayEngine != null)
+    {
+      return (int) Math.min(Integer.MAX_VALUE, replayEngine.getNumPackets());
+    }
+
     return captureData.length;
   }
 
@@ -475,6 +578,11 @@ public class ReplayCapture
    */
   public long getTotalDisconnects()
   {
+    if (replayEngine != null)
+    {
+      return replayEngine.getTotalDisconnects();
+    }
+
     return totalDisconnects;
   }
 
@@ -490,6 +598,11 @@ public class ReplayCapture
    */
   public long getTotalIterationsCompleted()
   {
+    if (replayEngine != null)
+    {
+      return replayEngine.getTotalIterationsCompleted();
+    }
+
     return totalIterationsCompleted;
   }
 
@@ -502,6 +615,11 @@ public class ReplayCapture
    */
   public long getTotalPacketsReplayed()
   {
+    if (replayEngine != null)
+    {
+      return replayEngine.getTotalPacketsReplayed();
+    }
+
     return totalPacketsReplayed;
   }
 }
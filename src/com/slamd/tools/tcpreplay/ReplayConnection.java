@@ -0,0 +1,508 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.tcpreplay;
+
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+
+
+/**
+ * This class holds the state for a single connection used by the replay
+ * engine.  Rather than dedicating a thread to each connection, a connection is
+ * driven by the selector thread that owns it:  the thread calls
+ * {@code fire} when the next send is due, and calls the appropriate handler
+ * when the channel becomes connectable, readable, or writable.  Sends that
+ * cannot be completed immediately are finished when the channel becomes
+ * writable, so a slow server never blocks the other connections on the same
+ * thread.
+ * <BR><BR>
+ * When the original timing is to be preserved, the deadline for each packet
+ * is computed from the start of the current iteration and the packet's
+ * offset within the capture, rather than from the time that the previous
+ * packet was sent, so that delays do not accumulate over the course of a long
+ * capture.
+ */
+final class ReplayConnection
+{
+  /**
+   * The maximum number of packets that will be sent back-to-back before the
+   * connection yields to the others on the same thread.
+   */
+  private static final int MAX_BURST = 64;
+
+
+
+  /**
+   * The next connection in the same timer wheel slot.
+   */
+  ReplayConnection wheelNext;
+
+  /**
+   * The tick at which this connection is scheduled in the timer wheel.
+   */
+  long wheelTick;
+
+  // Indicates whether this connection has finished replaying.
+  private boolean done;
+
+  // The data for the packet currently being written, if a write is pending.
+  private ByteBuffer pendingData;
+
+  // The cursor used to iterate through the capture.
+  private final IndexedCaptureFile.Cursor cursor;
+
+  // The number of iterations through the capture that have been started.
+  private int iteration;
+
+  // The number of times the connection was unexpectedly closed.
+  long disconnects;
+
+  // The number of complete iterations through the capture.
+  long iterationsCompleted;
+
+  // The number of packets that have been replayed.
+  long packetsReplayed;
+
+  // The timestamp of the first record in the capture.
+  private long firstTimestamp;
+
+  // The value of System.nanoTime at which the current iteration started.
+  private long iterationStartNanos;
+
+  // The replay engine with which this connection is associated.
+  private final ReplayEngine engine;
+
+  // The selector thread that drives this connection.
+  private final ReplaySelectorThread thread;
+
+  // The selection key for the channel.
+  private SelectionKey key;
+
+  // The channel for the connection, or null if it is not connected.
+  private SocketChannel channel;
+
+
+
+  /**
+   * Creates a new replay connection.
+   *
+   * @param  engine  The replay engine with which this connection is
+   *                 associated.
+   * @param  thread  The selector thread that will drive this connection.
+   * @param  cursor  The cursor to use to iterate through the capture.
+   */
+  ReplayConnection(ReplayEngine engine, ReplaySelectorThread thread,
+                   IndexedCaptureFile.Cursor cursor)
+  {
+    this.engine = engine;
+    this.thread = thread;
+    this.cursor = cursor;
+
+    done                = false;
+    pendingData         = null;
+    iteration           = 0;
+    disconnects         = 0L;
+    iterationsCompleted = 0L;
+    packetsReplayed     = 0L;
+    key                 = null;
+    channel             = null;
+  }
+
+
+
+  /**
+   * Positions this connection on the first packet of the capture and schedules
+   * it to be sent.
+   *
+   * @param  now  The current value of System.nanoTime.
+   */
+  void start(long now)
+  {
+    if (! cursor.next())
+    {
+      finish();
+      return;
+    }
+
+    firstTimestamp      = cursor.getTimestamp();
+    iterationStartNanos = now;
+    thread.schedule(this, now);
+  }
+
+
+
+  /**
+   * Indicates whether this connection has finished replaying.
+   *
+   * @return  {@code true} if this connection has finished, or {@code false}
+   *          if not.
+   */
+  boolean isDone()
+  {
+    return done;
+  }
+
+
+
+  /**
+   * Sends the current packet, establishing the connection first if necessary.
+   * This is called by the selector thread when the packet's deadline has been
+   * reached.
+   *
+   * @param  now  The current value of System.nanoTime.
+   */
+  void fire(long now)
+  {
+    if (done || (pendingData != null))
+    {
+      return;
+    }
+
+    if (engine.stopRequested)
+    {
+      finish();
+      return;
+    }
+
+    if (channel == null)
+    {
+      connect(now);
+    }
+    else
+    {
+      send(now);
+    }
+  }
+
+
+
+  /**
+   * Completes a connection attempt that did not finish immediately.
+   *
+   * @param  now  The current value of System.nanoTime.
+   */
+  void handleConnectable(long now)
+  {
+    try
+    {
+      channel.finishConnect();
+      key.interestOps(SelectionKey.OP_READ);
+    }
+    catch (IOException ioe)
+    {
+      System.err.println("ERROR:  Unable to connect to " +
+                         engine.targetAddress + ":  " + ioe);
+      finish();
+      return;
+    }
+
+    connected(now);
+  }
+
+
+
+  /**
+   * Reads and discards any data sent by the server.
+   *
+   * @param  now      The current value of System.nanoTime.
+   * @param  scratch  A buffer that may be used to hold the data read.
+   */
+  void handleReadable(long now, ByteBuffer scratch)
+  {
+    try
+    {
+      while (true)
+      {
+        scratch.clear();
+        int bytesRead = channel.read(scratch);
+        if (bytesRead < 0)
+        {
+          handleDisconnect(now, (pendingData != null));
+          return;
+        }
+        else if (bytesRead == 0)
+        {
+          return;
+        }
+      }
+    }
+    catch (IOException ioe)
+    {
+      handleDisconnect(now, (pendingData != null));
+    }
+  }
+
+
+
+  /**
+   * Continues a write that could not be completed immediately.
+   *
+   * @param  now  The current value of System.nanoTime.
+   */
+  void handleWritable(long now)
+  {
+    if (pendingData == null)
+    {
+      key.interestOps(SelectionKey.OP_READ);
+      return;
+    }
+
+    try
+    {
+      channel.write(pendingData);
+    }
+    catch (IOException ioe)
+    {
+      handleDisconnect(now, true);
+      return;
+    }
+
+    if (! pendingData.hasRemaining())
+    {
+      pendingData = null;
+      key.interestOps(SelectionKey.OP_READ);
+      packetsReplayed++;
+      if (advance(now))
+      {
+        send(now);
+      }
+    }
+  }
+
+
+
+  /**
+   * Closes the connection and stops replaying.
+   */
+  void finish()
+  {
+    if (done)
+    {
+      return;
+    }
+
+    done        = true;
+    pendingData = null;
+    closeChannel();
+    thread.connectionDone(this);
+  }
+
+
+
+  /**
+   * Opens a new connection to the target server.
+   *
+   * @param  now  The current value of System.nanoTime.
+   */
+  private void connect(long now)
+  {
+    try
+    {
+      channel = SocketChannel.open();
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      if (channel.connect(engine.targetAddress))
+      {
+        key = thread.register(channel, SelectionKey.OP_READ, this);
+        connected(now);
+      }
+      else
+      {
+        key = thread.register(channel, SelectionKey.OP_CONNECT, this);
+      }
+    }
+    catch (IOException ioe)
+    {
+      System.err.println("ERROR:  Unable to connect to " +
+                         engine.targetAddress + ":  " + ioe);
+      finish();
+    }
+  }
+
+
+
+  /**
+   * Sends the current packet once a connection has been established.  If this
+   * is the first connection, then the schedule for the first iteration starts
+   * now, so that the time spent connecting is not charged against the gaps
+   * between the first few packets.
+   *
+   * @param  now  The current value of System.nanoTime.
+   */
+  private void connected(long now)
+  {
+    if ((packetsReplayed == 0L) && (iteration == 0))
+    {
+      iterationStartNanos = now;
+    }
+
+    send(now);
+  }
+
+
+
+  /**
+   * Sends the current packet and as many subsequent packets as are already
+   * due, up to the maximum burst size, and then schedules the next one.
+   *
+   * @param  now  The current value of System.nanoTime.
+   */
+  private void send(long now)
+  {
+    for (int i=0; i < MAX_BURST; i++)
+    {
+      ByteBuffer data = cursor.getData();
+      try
+      {
+        channel.write(data);
+      }
+      catch (IOException ioe)
+      {
+        handleDisconnect(now, true);
+        return;
+      }
+
+      if (data.hasRemaining())
+      {
+        pendingData = data;
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        return;
+      }
+
+      packetsReplayed++;
+      if (! advance(now))
+      {
+        return;
+      }
+    }
+
+    // The burst limit was reached, so let the other connections have a turn.
+    thread.schedule(this, now);
+  }
+
+
+
+  /**
+   * Moves to the next packet and computes its deadline.  If the deadline has
+   * not yet been reached, then the connection will be scheduled on the timer
+   * wheel.
+   *
+   * @param  now  The current value of System.nanoTime.
+   *
+   * @return  {@code true} if the next packet is already due and should be sent
+   *          immediately, or {@code false} if it has been scheduled or if
+   *          replay has finished.
+   */
+  private boolean advance(long now)
+  {
+    long deadline;
+    if (cursor.next())
+    {
+      if (engine.preserveTiming)
+      {
+        deadline = iterationStartNanos +
+             (long) ((cursor.getTimestamp() - firstTimestamp) *
+                     engine.timeMultiplier);
+      }
+      else
+      {
+        deadline = now + engine.delayBetweenRequestsNanos;
+      }
+    }
+    else
+    {
+      iterationsCompleted++;
+      iteration++;
+      if ((engine.numIterations > 0) && (iteration >= engine.numIterations))
+      {
+        finish();
+        return false;
+      }
+
+      cursor.reset();
+      cursor.next();
+      iterationStartNanos = now + engine.delayBetweenIterationsNanos;
+      deadline            = iterationStartNanos;
+    }
+
+    if (engine.stopRequested)
+    {
+      finish();
+      return false;
+    }
+
+    if ((deadline - now) <= 0L)
+    {
+      return true;
+    }
+
+    thread.schedule(this, deadline);
+    return false;
+  }
+
+
+
+  /**
+   * Handles the server closing the connection.  A new connection will be
+   * established when the next packet is due.
+   *
+   * @param  now          The current value of System.nanoTime.
+   * @param  skipCurrent  Indicates whether the connection was closed while the
+   *                      current packet was being sent, in which case that
+   *                      packet will be skipped and the next one scheduled.
+   *                      Otherwise, the next packet is already scheduled.
+   */
+  private void handleDisconnect(long now, boolean skipCurrent)
+  {
+    closeChannel();
+    disconnects++;
+    pendingData = null;
+
+    if (skipCurrent && advance(now))
+    {
+      thread.schedule(this, now);
+    }
+  }
+
+
+
+  /**
+   * Closes the channel for this connection, if it is open.
+   */
+  private void closeChannel()
+  {
+    if (key != null)
+    {
+      key.cancel();
+      key = null;
+    }
+
+    if (channel != null)
+    {
+      try
+      {
+        channel.close();
+      } catch (Exception e) {}
+
+      channel = null;
+    }
+  }
+}
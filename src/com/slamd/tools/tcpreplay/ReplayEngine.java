@@ -0,0 +1,290 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.tcpreplay;
+
+
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+
+
+
+/**
+ * This class defines a replay engine for captures written in the indexed
+ * capture format.  The capture file is memory-mapped rather than loaded onto
+ * the heap, and each replay connection reads it through its own cursor.
+ * Instead of a thread per connection that sleeps between packets, the
+ * connections are spread across a small pool of selector threads, each of
+ * which uses a timer wheel to schedule sends.  This allows a single client to
+ * replay captures with millions of packets over thousands of concurrent
+ * connections while keeping the timing between packets accurate to within a
+ * millisecond.
+ */
+public class ReplayEngine
+{
+  /**
+   * Indicates whether an attempt should be made to preserve the original
+   * timing between packets.
+   */
+  final boolean preserveTiming;
+
+  /**
+   * Indicates whether a request has been received to stop the replay.
+   */
+  volatile boolean stopRequested;
+
+  /**
+   * The multiplier applied to the original time between packets.
+   */
+  final float timeMultiplier;
+
+  /**
+   * The maximum number of times each connection should replay the capture, or
+   * a value less than or equal to zero for no limit.
+   */
+  final int numIterations;
+
+  /**
+   * The address of the server against which the capture will be replayed.
+   */
+  final InetSocketAddress targetAddress;
+
+  /**
+   * The delay in nanoseconds to insert between packets if the original timing
+   * is not to be preserved.
+   */
+  final long delayBetweenRequestsNanos;
+
+  /**
+   * The delay in nanoseconds to insert between iterations through the capture.
+   */
+  final long delayBetweenIterationsNanos;
+
+  /**
+   * The value of System.nanoTime at which the replay should stop.
+   */
+  long stopTimeNanos;
+
+  // The capture file being replayed.
+  private final IndexedCaptureFile captureFile;
+
+  // The maximum length of time in seconds to spend replaying data.
+  private final int maxDuration;
+
+  // The number of times a connection was unexpectedly closed.
+  private long totalDisconnects;
+
+  // The number of complete iterations through the capture.
+  private long totalIterationsCompleted;
+
+  // The number of packets replayed.
+  private long totalPacketsReplayed;
+
+  // The selector threads used to drive the connections.
+  private final ReplaySelectorThread[] selectorThreads;
+
+
+
+  /**
+   * Creates a new replay engine with the provided information.
+   *
+   * @param  targetHost              The address of the target server.
+   * @param  targetPort              The port of the target server.
+   * @param  captureFile             The indexed capture file to replay.
+   * @param  preserveTiming          Indicates whether an attempt should be
+   *                                 made to preserve the original timing
+   *                                 between packets.
+   * @param  timeMultiplier          A multiplier to apply to the original
+   *                                 time between packets.
+   * @param  delayBetweenRequests    The delay in milliseconds between packets
+   *                                 if the original timing is not to be
+   *                                 preserved.
+   * @param  numIterations           The maximum number of times each
+   *                                 connection should replay the capture (-1
+   *                                 for no limit).
+   * @param  delayBetweenIterations  The delay in milliseconds between
+   *                                 iterations through the capture.
+   * @param  maxDuration             The maximum length of time in seconds to
+   *                                 spend replaying (-1 for no limit).
+   * @param  numConnections          The number of concurrent connections to
+   *                                 use to replay the capture.
+   * @param  numSelectorThreads      The number of selector threads across
+   *                                 which the connections will be spread.
+   *
+   * @throws  IOException  If a problem occurs while opening a selector.
+   */
+  public ReplayEngine(String targetHost, int targetPort,
+                      IndexedCaptureFile captureFile, boolean preserveTiming,
+                      float timeMultiplier, int delayBetweenRequests,
+                      int numIterations, int delayBetweenIterations,
+                      int maxDuration, int numConnections,
+                      int numSelectorThreads)
+         throws IOException
+  {
+    this.captureFile    = captureFile;
+    this.preserveTiming = preserveTiming;
+    this.timeMultiplier = timeMultiplier;
+    this.numIterations  = numIterations;
+    this.maxDuration    = maxDuration;
+
+    targetAddress = new InetSocketAddress(targetHost, targetPort);
+    delayBetweenRequestsNanos =
+         1000000L * Math.max(0, delayBetweenRequests);
+    delayBetweenIterationsNanos =
+         1000000L * Math.max(0, delayBetweenIterations);
+
+    stopRequested            = false;
+    totalDisconnects         = 0L;
+    totalIterationsCompleted = 0L;
+    totalPacketsReplayed     = 0L;
+
+    int numThreads = Math.max(1, Math.min(numSelectorThreads, numConnections));
+    selectorThreads = new ReplaySelectorThread[numThreads];
+    for (int i=0; i < numThreads; i++)
+    {
+      selectorThreads[i] = new ReplaySelectorThread(this, i);
+    }
+
+    for (int i=0; i < numConnections; i++)
+    {
+      ReplaySelectorThread t = selectorThreads[i % numThreads];
+      t.addConnection(new ReplayConnection(this, t, captureFile.newCursor()));
+    }
+  }
+
+
+
+  /**
+   * Starts the selector threads and waits for them to complete.
+   */
+  public void replayData()
+  {
+    if (maxDuration > 0)
+    {
+      stopTimeNanos = System.nanoTime() + (1000000000L * maxDuration);
+    }
+    else
+    {
+      stopTimeNanos = System.nanoTime() + Long.MAX_VALUE;
+    }
+
+    for (ReplaySelectorThread t : selectorThreads)
+    {
+      t.start();
+    }
+
+    waitForCompletion();
+  }
+
+
+
+  /**
+   * Waits for all of the selector threads to complete.
+   */
+  public void waitForCompletion()
+  {
+    for (ReplaySelectorThread t : selectorThreads)
+    {
+      try
+      {
+        t.join();
+      } catch (InterruptedException ie) {}
+    }
+  }
+
+
+
+  /**
+   * Requests that the replay stop as soon as possible.
+   */
+  public void stopReplay()
+  {
+    stopRequested = true;
+    for (ReplaySelectorThread t : selectorThreads)
+    {
+      t.wakeup();
+    }
+  }
+
+
+
+  /**
+   * Indicates that a selector thread has completed, and records the
+   * statistics for its connections.
+   *
+   * @param  thread       The thread that has completed.
+   * @param  connections  The connections driven by that thread.
+   */
+  synchronized void threadDone(ReplaySelectorThread thread,
+                               List<ReplayConnection> connections)
+  {
+    for (ReplayConnection c : connections)
+    {
+      totalDisconnects         += c.disconnects;
+      totalIterationsCompleted += c.iterationsCompleted;
+      totalPacketsReplayed     += c.packetsReplayed;
+    }
+  }
+
+
+
+  /**
+   * Retrieves the number of packets in the capture file.
+   *
+   * @return  The number of packets in the capture file.
+   */
+  public long getNumPackets()
+  {
+    return captureFile.getRecordCount();
+  }
+
+
+
+  /**
+   * Retrieves the total number of disconnects that were encountered.
+   *
+   * @return  The total number of disconnects that were encountered.
+   */
+  public synchronized long getTotalDisconnects()
+  {
+    return totalDisconnects;
+  }
+
+
+
+  /**
+   * Retrieves the total number of complete iterations through the capture.
+   *
+   * @return  The total number of complete iterations through the capture.
+   */
+  public synchronized long getTotalIterationsCompleted()
+  {
+    return totalIterationsCompleted;
+  }
+
+
+
+  /**
+   * Retrieves the total number of packets that were replayed.
+   *
+   * @return  The total number of packets that were replayed.
+   */
+  public synchronized long getTotalPacketsReplayed()
+  {
+    return totalPacketsReplayed;
+  }
+}
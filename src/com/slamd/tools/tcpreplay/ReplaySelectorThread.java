@@ -0,0 +1,302 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.tcpreplay;
+
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.locks.LockSupport;
+
+
+
+/**
+ * This class defines a thread that drives a set of replay connections using a
+ * single selector and timer wheel.  On each pass it waits for I/O readiness or
+ * for the next timer tick, whichever comes first, dispatches any ready
+ * channels to their connections, and then fires every connection whose next
+ * send has become due.
+ */
+final class ReplaySelectorThread
+      extends Thread
+{
+  /**
+   * The length of each timer wheel tick in nanoseconds.
+   */
+  private static final long TICK_NANOS = 1000000L;
+
+
+
+  /**
+   * The number of slots in the timer wheel.
+   */
+  private static final int WHEEL_SLOTS = 4096;
+
+
+
+  /**
+   * The maximum length of time in milliseconds to block in the selector when
+   * no sends are scheduled.
+   */
+  private static final long IDLE_SELECT_MILLIS = 100L;
+
+
+
+  // The connections that are due to be fired.
+  private final ArrayDeque<ReplayConnection> readyQueue;
+
+  // The connections driven by this thread.
+  private final ArrayList<ReplayConnection> connections;
+
+  // A buffer used to hold data read from the server, which is discarded.
+  private final ByteBuffer scratchBuffer;
+
+  // The number of connections that have not yet finished.
+  private int activeConnections;
+
+  // The replay engine with which this thread is associated.
+  private final ReplayEngine engine;
+
+  // The timer wheel used to schedule sends.
+  private ReplayTimerWheel timerWheel;
+
+  // The selector used to multiplex the connections.
+  private final Selector selector;
+
+
+
+  /**
+   * Creates a new selector thread.
+   *
+   * @param  engine  The replay engine with which this thread is associated.
+   * @param  index   The index of this thread, used in its name.
+   *
+   * @throws  IOException  If a problem occurs while opening the selector.
+   */
+  ReplaySelectorThread(ReplayEngine engine, int index)
+       throws IOException
+  {
+    setName("Replay Selector Thread " + index);
+
+    this.engine = engine;
+
+    readyQueue        = new ArrayDeque<ReplayConnection>();
+    connections       = new ArrayList<ReplayConnection>();
+    scratchBuffer     = ByteBuffer.allocateDirect(65536);
+    activeConnections = 0;
+    selector          = Selector.open();
+  }
+
+
+
+  /**
+   * Adds a connection to be driven by this thread.  This must be called before
+   * the thread is started.
+   *
+   * @param  connection  The connection to add.
+   */
+  void addConnection(ReplayConnection connection)
+  {
+    connections.add(connection);
+    activeConnections++;
+  }
+
+
+
+  /**
+   * Wakes up the selector so that the thread will notice a stop request.
+   */
+  void wakeup()
+  {
+    selector.wakeup();
+  }
+
+
+
+  /**
+   * Drives the connections until they have all finished or the replay is
+   * stopped.
+   */
+  @Override()
+  public void run()
+  {
+    long now = System.nanoTime();
+    timerWheel = new ReplayTimerWheel(TICK_NANOS, WHEEL_SLOTS, now);
+    for (ReplayConnection c : connections)
+    {
+      c.start(now);
+    }
+
+    boolean consecutiveFailures = false;
+    while ((activeConnections > 0) && (! engine.stopRequested) &&
+           ((engine.stopTimeNanos - now) > 0L))
+    {
+      try
+      {
+        if (! readyQueue.isEmpty())
+        {
+          selector.selectNow();
+        }
+        else if (timerWheel.isEmpty())
+        {
+          selector.select(IDLE_SELECT_MILLIS);
+        }
+        else
+        {
+          // The selector can only wait in whole milliseconds, so a shorter
+          // wait is done by parking the thread, which is much more precise
+          // than rounding and avoids spinning until the next tick.
+          long waitNanos = timerWheel.getNanosUntilNextTick(now);
+          if (waitNanos < 1000000L)
+          {
+            LockSupport.parkNanos(waitNanos);
+            selector.selectNow();
+          }
+          else
+          {
+            selector.select(waitNanos / 1000000L);
+          }
+        }
+
+        now = System.nanoTime();
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext())
+        {
+          SelectionKey key = iterator.next();
+          iterator.remove();
+
+          ReplayConnection c = (ReplayConnection) key.attachment();
+          if (! key.isValid())
+          {
+            continue;
+          }
+
+          if (key.isConnectable())
+          {
+            c.handleConnectable(now);
+            continue;
+          }
+
+          if (key.isReadable())
+          {
+            c.handleReadable(now, scratchBuffer);
+          }
+
+          if (key.isValid() && key.isWritable())
+          {
+            c.handleWritable(now);
+          }
+        }
+
+        now = System.nanoTime();
+        timerWheel.expire(now, readyQueue);
+
+        // Only fire the connections that were due at the start of this pass,
+        // so that a connection that reschedules itself immediately cannot
+        // starve the selector.
+        for (int i=readyQueue.size(); i > 0; i--)
+        {
+          readyQueue.poll().fire(now);
+        }
+
+        consecutiveFailures = false;
+      }
+      catch (Exception e)
+      {
+        System.err.println("Caught exception while replaying capture:");
+        e.printStackTrace();
+
+        if (consecutiveFailures)
+        {
+          break;
+        }
+
+        consecutiveFailures = true;
+      }
+    }
+
+    for (ReplayConnection c : connections)
+    {
+      c.finish();
+    }
+
+    try
+    {
+      selector.close();
+    } catch (Exception e) {}
+
+    engine.threadDone(this, connections);
+  }
+
+
+
+  /**
+   * Schedules the provided connection to be fired at the specified time.
+   *
+   * @param  connection  The connection to schedule.
+   * @param  deadline    The value of System.nanoTime at which the connection
+   *                     should be fired.
+   */
+  void schedule(ReplayConnection connection, long deadline)
+  {
+    if ((deadline - System.nanoTime()) <= 0L)
+    {
+      readyQueue.add(connection);
+    }
+    else
+    {
+      timerWheel.schedule(connection, deadline);
+    }
+  }
+
+
+
+  /**
+   * Registers the provided channel with this thread's selector.
+   *
+   * @param  channel     The channel to register.
+   * @param  ops         The initial set of interest operations.
+   * @param  connection  The connection with which the channel is associated.
+   *
+   * @return  The selection key for the channel.
+   *
+   * @throws  IOException  If a problem occurs while registering the channel.
+   */
+  SelectionKey register(SocketChannel channel, int ops,
+                        ReplayConnection connection)
+               throws IOException
+  {
+    return channel.register(selector, ops, connection);
+  }
+
+
+
+  /**
+   * Indicates that the provided connection has finished replaying.
+   *
+   * @param  connection  The connection that has finished.
+   */
+  void connectionDone(ReplayConnection connection)
+  {
+    activeConnections--;
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ *                             Sun Public License
+ *
+ * The contents of this file are subject to the Sun Public License Version
+ * 1.0 (the "License").  You may not use this file except in compliance with
+ * the License.  A copy of the License is available at http://www.sun.com/
+ *
+ * The Original Code is the SLAMD Distributed Load Generation Engine.
+ * The Initial Developer of the Original Code is Neil A. Wilson.
+ * Portions created by Neil A. Wilson are Copyright (C) 2004-2019.
+ * Some preexisting portions Copyright (C) 2002-2006 Sun Microsystems, Inc.
+ * All Rights Reserved.
+ *
+ * Contributor(s):  Neil A. Wilson
+ */
+package com.slamd.tools.tcpreplay;
+
+
+
+import java.util.ArrayDeque;
+
+
+
+/**
+ * This class provides a hashed timer wheel used to schedule the next send for
+ * each replay connection handled by a selector thread.  Time is divided into
+ * ticks of a fixed length, and each connection is placed in the slot for the
+ * tick at or after its deadline.  Slots are singly-linked lists threaded
+ * through the connections themselves, so scheduling a send does not allocate
+ * any memory, and both scheduling and expiring a connection take constant
+ * time regardless of how many connections are waiting.
+ * <BR><BR>
+ * A timer wheel is owned by a single selector thread and is not threadsafe.
+ */
+final class ReplayTimerWheel
+{
+  // The head of the list of connections in each slot.
+  private final ReplayConnection[] slots;
+
+  // The mask used to map a tick number to a slot.
+  private final int slotMask;
+
+  // The number of connections currently scheduled.
+  private int size;
+
+  // The last tick that has been fully processed.
+  private long currentTick;
+
+  // The value of System.nanoTime that corresponds to tick zero.
+  private final long startNanos;
+
+  // The length of each tick in nanoseconds.
+  private final long tickNanos;
+
+
+
+  /**
+   * Creates a new timer wheel.
+   *
+   * @param  tickNanos   The length of each tick in nanoseconds.
+   * @param  numSlots    The number of slots in the wheel.  It will be rounded
+   *                     up to a power of two.
+   * @param  startNanos  The value of System.nanoTime that corresponds to tick
+   *                     zero.
+   */
+  ReplayTimerWheel(long tickNanos, int numSlots, long startNanos)
+  {
+    this.tickNanos  = tickNanos;
+    this.startNanos = startNanos;
+
+    int n = Integer.highestOneBit(Math.max(2, numSlots) - 1) << 1;
+    slots       = new ReplayConnection[n];
+    slotMask    = n - 1;
+    size        = 0;
+    currentTick = 0L;
+  }
+
+
+
+  /**
+   * Indicates whether any connections are scheduled.
+   *
+   * @return  {@code true} if no connections are scheduled, or {@code false}
+   *          if at least one is.
+   */
+  boolean isEmpty()
+  {
+    return (size == 0);
+  }
+
+
+
+  /**
+   * Schedules the provided connection to be expired at the first tick at or
+   * after the given deadline.  The connection must not already be scheduled.
+   *
+   * @param  connection  The connection to schedule.
+   * @param  deadline    The value of System.nanoTime at which the connection
+   *                     should be expired.
+   */
+  void schedule(ReplayConnection connection, long deadline)
+  {
+    long tick = ((deadline - startNanos) + tickNanos - 1L) / tickNanos;
+    if (tick <= currentTick)
+    {
+      tick = currentTick + 1L;
+    }
+
+    int slot = (int) (tick & slotMask);
+    connection.wheelTick = tick;
+    connection.wheelNext = slots[slot];
+    slots[slot] = connection;
+    size++;
+  }
+
+
+
+  /**
+   * Removes all connections whose ticks have been reached as of the provided
+   * time and adds them to the given queue.
+   *
+   * @param  now      The current value of System.nanoTime.
+   * @param  expired  The queue to which expired connections will be added.
+   */
+  void expire(long now, ArrayDeque<ReplayConnection> expired)
+  {
+    long nowTick = (now - startNanos) / tickNanos;
+    if (nowTick <= currentTick)
+    {
+      return;
+    }
+
+    if (size > 0)
+    {
+      // A slot may hold connections for later revolutions of the wheel, so
+      // only those whose ticks have been reached are removed.  There is no
+      // need to visit any slot more than once.
+      long lastTick = Math.min(nowTick, currentTick + slots.length);
+      for (long t=currentTick+1L; t <= lastTick; t++)
+      {
+        int slot = (int) (t & slotMask);
+        ReplayConnection previous = null;
+        ReplayConnection c = slots[slot];
+        while (c != null)
+        {
+          ReplayConnection next = c.wheelNext;
+          if (c.wheelTick <= nowTick)
+          {
+            if (previous == null)
+            {
+              slots[slot] = next;
+            }
+            else
+            {
+              previous.wheelNext = next;
+            }
+
+            c.wheelNext = null;
+            expired.add(c);
+            size--;
+          }
+          else
+          {
+            previous = c;
+          }
+
+          c = next;
+        }
+      }
+    }
+
+    currentTick = nowTick;
+  }
+
+
+
+  /**
+   * Retrieves the length of time until the next tick begins.
+   *
+   * @param  now  The current value of System.nanoTime.
+   *
+   * @return  The number of nanoseconds until the next tick begins.
+   */
+  long getNanosUntilNextTick(long now)
+  {
+    long nextTickNanos = startNanos + ((currentTick + 1L) * tickNanos);
+    return Math.max(0L, nextTickNanos - now);
+  }
+}
@@ -17,6 +17,7 @@ package com.slamd.tools.tcpreplay;
 
 
 
+import java.io.IOException;
 import java.net.UnknownHostException;
 
 
@@ -50,10 +51,12 @@ public final class TCPCapture
   public static void main(String[] args)
   {
     // Specify default values for all the command-line arguments.
-    int    listenPort = -1;
-    int    serverPort = -1;
-    String outputFile = null;
-    String serverHost = null;
+    boolean indexedFormat = false;
+    int     listenPort    = -1;
+    int     serverPort    = -1;
+    String  convertFile   = null;
+    String  outputFile    = null;
+    String  serverHost    = null;
 
 
     // Parse the arguments.
@@ -85,6 +88,14 @@ public final class TCPCapture
       {
         outputFile = args[++i];
       }
+      else if (args[i].equals("-x"))
+      {
+        indexedFormat = true;
+      }
+      else if (args[i].equals("-C"))
+      {
+        convertFile = args[++i];
+      }
       else if (args[i].equals("-H"))
       {
         displayUsage();
@@ -100,6 +111,34 @@ public final class TCPCapture
 
 
 
+    // If a capture is to be converted, then do that and exit.
+    if (convertFile != null)
+    {
+      if (outputFile == null)
+      {
+        System.err.println("ERROR:  No output file provided (use -o)");
+        displayUsage();
+        System.exit(1);
+      }
+
+      try
+      {
+        long numRecords = IndexedCaptureWriter.convert(convertFile,
+                                                       outputFile);
+        System.out.println("Converted " + numRecords + " packets from " +
+                           convertFile + " to indexed capture file " +
+                           outputFile);
+        System.exit(0);
+      }
+      catch (IOException | CaptureException e)
+      {
+        System.err.println("ERROR:  Unable to convert capture file \"" +
+                           convertFile + "\":  " + e);
+        System.exit(1);
+      }
+    }
+
+
     // Verify that all the required parameters were provided.
     if (listenPort < 0)
     {
@@ -135,7 +174,7 @@ public final class TCPCapture
     try
     {
       captureDaemon = new CaptureDaemon(listenPort, serverHost, serverPort,
-                                        outputFile);
+                                        outputFile, indexedFormat);
       System.out.println("Listening for client connections on port " +
                          listenPort);
     }
@@ -179,6 +218,12 @@ public final class TCPCapture
 "                 requests from clients" + EOL +
 "-o {file}     -- Specifies the output file to which the captured data" + EOL +
 "                 should be written" + EOL +
+"-x            -- Indicates that the capture should be written in the" + EOL +
+"                 indexed format rather than appended in the original" + EOL +
+"                 format" + EOL +
+"-C {file}     -- Converts the specified capture file from the original" + EOL +
+"                 format to the indexed format, writing it to the" + EOL +
+"                 output file, and exits" + EOL +
 "-H            -- Displays this usage information"
                       );
   }
@@ -56,6 +56,8 @@ public final class TCPReplay
     int     delayBetweenPackets    = 0;
     int     maxDuration            = -1;
     int     maxIterations          = 1;
+    int     numSelectorThreads     =
+         Math.min(4, Runtime.getRuntime().availableProcessors());
     int     numThreads             = 1;
     int     targetPort             = -1;
     String  captureFile            = null;
@@ -111,6 +113,10 @@ public final class TCPReplay
       {
         numThreads = Integer.parseInt(args[++i]);
       }
+      else if (args[i].equals("-S"))
+      {
+        numSelectorThreads = Integer.parseInt(args[++i]);
+      }
       else if (args[i].equals("-H"))
       {
         displayUsage();
@@ -157,7 +163,7 @@ public final class TCPReplay
                                         preserveTiming, timingMultiplier,
                                         delayBetweenPackets, maxIterations,
                                         delayBetweenIterations, maxDuration,
-                                        numThreads);
+                                        numThreads, numSelectorThreads);
       System.out.println("Read " + replayCapture.getNumPackets() +
                          " packets from capture file \"" + captureFile + "\".");
     }
@@ -228,7 +234,11 @@ public final class TCPReplay
 "-T {value}    -- Specifies the maximum length of time in seconds that" + EOL +
 "                 the replay should be allowed to process" + EOL +
 "-t {value}    -- Specifies the number of threads that should replay" + EOL +
-"                 the data set concurrently" + EOL +
+"                 the data set concurrently (for an indexed capture," + EOL +
+"                 the number of concurrent connections)" + EOL +
+"-S {value}    -- Specifies the number of selector threads to use to" + EOL +
+"                 drive the connections when replaying an indexed" + EOL +
+"                 capture" + EOL +
 "-H            -- Displays this usage information"
                       );
   }